@@ -23,6 +23,7 @@ import org.apache.inlong.agent.metrics.AgentMetricItem;
 import org.apache.inlong.agent.metrics.AgentMetricItemSet;
 import org.apache.inlong.agent.plugin.Channel;
 import org.apache.inlong.agent.plugin.Message;
+import org.apache.inlong.common.metric.MetricItemHandle;
 import org.apache.inlong.common.metric.MetricRegister;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,6 +52,8 @@ public class MemoryChannel implements Channel {
     private LinkedBlockingQueue<Message> queue;
     // metric
     private AgentMetricItemSet metricItemSet;
+    // the metric item of the channel, resolved without building dimensions per message
+    private MetricItemHandle<AgentMetricItem> metricHandle;
     private static final AtomicLong METRIC_INDEX = new AtomicLong(0);
     private String inlongGroupId;
     private String inlongStreamId;
@@ -62,7 +65,7 @@ public class MemoryChannel implements Channel {
     public void push(Message message) {
         try {
             if (message != null) {
-                AgentMetricItem metricItem = getMetricItem(new HashMap<String, String>());
+                AgentMetricItem metricItem = metricHandle.getItem();
                 metricItem.pluginReadCount.incrementAndGet();
                 queue.put(message);
                 metricItem.pluginReadSuccessCount.incrementAndGet();
@@ -76,7 +79,7 @@ public class MemoryChannel implements Channel {
     public boolean push(Message message, long timeout, TimeUnit unit) {
         try {
             if (message != null) {
-                AgentMetricItem metricItem = getMetricItem(new HashMap<String, String>());
+                AgentMetricItem metricItem = metricHandle.getItem();
                 metricItem.pluginReadCount.incrementAndGet();
                 boolean result = queue.offer(message, timeout, unit);
                 if (result) {
@@ -97,7 +100,7 @@ public class MemoryChannel implements Channel {
         try {
             Message message = queue.poll(timeout, unit);
             if (message != null) {
-                AgentMetricItem metricItem = getMetricItem(new HashMap<String, String>());
+                AgentMetricItem metricItem = metricHandle.getItem();
                 metricItem.pluginSendSuccessCount.incrementAndGet();
                 metricItem.pluginSendCount.incrementAndGet();
             }
@@ -119,6 +122,11 @@ public class MemoryChannel implements Channel {
                 String.valueOf(METRIC_INDEX.incrementAndGet()));
         this.metricItemSet = new AgentMetricItemSet(metricName);
         MetricRegister.register(metricItemSet);
+        Map<String, String> dimensions = new HashMap<>();
+        dimensions.put(KEY_PLUGIN_ID, this.getClass().getSimpleName());
+        dimensions.put(KEY_INLONG_GROUP_ID, inlongGroupId);
+        dimensions.put(KEY_INLONG_STREAM_ID, inlongStreamId);
+        this.metricHandle = metricItemSet.createHandle(dimensions);
     }
 
     @Override
@@ -129,36 +137,19 @@ public class MemoryChannel implements Channel {
         LOGGER.info("destroy channel, show memory channel metric:");
     }
 
-    private AgentMetricItem getMetricItem(Map<String, String> dimens) {
-        Map<String, String> dimensions = new HashMap<>();
-        dimensions.put(KEY_PLUGIN_ID, this.getClass().getSimpleName());
-        dimensions.put(KEY_INLONG_GROUP_ID, inlongGroupId);
-        dimensions.put(KEY_INLONG_STREAM_ID, inlongStreamId);
-        dimens.forEach((key, value) -> {
-            dimensions.put(key, value);
-        });
-        return this.metricItemSet.findMetricItem(dimensions);
-    }
-
     private void metricItemReadFailed() {
-        Map<String, String> dimensions = new HashMap<String, String>();
-        dimensions.put(KEY_INLONG_GROUP_ID, inlongGroupId);
-        dimensions.put(KEY_INLONG_STREAM_ID, inlongStreamId);
-        AgentMetricItem metricItem = getMetricItem(dimensions);
+        AgentMetricItem metricItem = metricHandle.getItem();
         metricItem.pluginReadFailCount.incrementAndGet();
-        LOGGER.debug("plugin read failed:{}", dimensions.toString());
+        LOGGER.debug("plugin read failed:{}", metricHandle.getDimensionsKey());
         Thread.currentThread().interrupt();
         return;
     }
 
     private void metricItemSendFailed() {
-        Map<String, String> dimensions = new HashMap<String, String>();
-        dimensions.put(KEY_INLONG_GROUP_ID, inlongGroupId);
-        dimensions.put(KEY_INLONG_STREAM_ID, inlongStreamId);
-        AgentMetricItem metricItem = getMetricItem(dimensions);
+        AgentMetricItem metricItem = metricHandle.getItem();
         metricItem.pluginSendFailCount.incrementAndGet();
         metricItem.pluginSendCount.incrementAndGet();
-        LOGGER.debug("plugin send failed:{}", dimensions.toString());
+        LOGGER.debug("plugin send failed:{}", metricHandle.getDimensionsKey());
         Thread.currentThread().interrupt();
         return;
     }
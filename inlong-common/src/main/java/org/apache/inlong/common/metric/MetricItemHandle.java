@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.common.metric;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * MetricItemHandle, a reusable reference to the metric item of fixed dimensions.
+ *
+ * The dimensions key is built once when the handle is created. The resolved item is
+ * cached together with the item map it belongs to, when the item map is swapped by
+ * {@link MetricItemSet#snapshot()}, the handle resolves the item from the new map
+ * on the next access, so the increments are not written into a reported item.
+ */
+public class MetricItemHandle<T extends MetricItem> {
+
+    private final MetricItemSet<T> itemSet;
+    private final Map<String, String> dimensions;
+    private final String key;
+    private volatile Binding<T> binding;
+
+    /**
+     * Constructor
+     */
+    public MetricItemHandle(MetricItemSet<T> itemSet, Map<String, String> dimensions) {
+        this.itemSet = itemSet;
+        this.dimensions = new HashMap<>(dimensions);
+        this.key = MetricUtils.getDimensionsKey(this.dimensions);
+    }
+
+    /**
+     * getItem, get the metric item of current item map
+     */
+    public T getItem() {
+        Map<String, T> currentMap = itemSet.itemMap;
+        Binding<T> currentBinding = this.binding;
+        if (currentBinding != null && currentBinding.itemMap == currentMap) {
+            return currentBinding.item;
+        }
+        T item = itemSet.findMetricItem(currentMap, key, dimensions);
+        this.binding = new Binding<>(currentMap, item);
+        return item;
+    }
+
+    /**
+     * getDimensionsKey
+     */
+    public String getDimensionsKey() {
+        return key;
+    }
+
+    /**
+     * Binding, the metric item and the item map it belongs to
+     */
+    private static class Binding<T> {
+
+        private final Map<String, T> itemMap;
+        private final T item;
+
+        Binding(Map<String, T> itemMap, T item) {
+            this.itemMap = itemMap;
+            this.item = item;
+        }
+    }
+}
@@ -29,7 +29,7 @@ public abstract class MetricItemSet<T extends MetricItem> implements MetricItemS
 
     protected String name;
 
-    protected Map<String, T> itemMap = new ConcurrentHashMap<>();
+    protected volatile Map<String, T> itemMap = new ConcurrentHashMap<>();
 
     /**
      * Constructor
@@ -54,14 +54,31 @@ public abstract class MetricItemSet<T extends MetricItem> implements MetricItemS
      * findMetricItem
      */
     public T findMetricItem(Map<String, String> dimensions) {
-        String key = MetricUtils.getDimensionsKey(dimensions);
-        T currentItem = this.itemMap.get(key);
+        return findMetricItem(this.itemMap, MetricUtils.getDimensionsKey(dimensions), dimensions);
+    }
+
+    /**
+     * createHandle, resolve the dimensions once, the handle returns the metric item
+     * of the dimensions without building the dimensions key again.
+     *
+     * @param dimensions the dimensions of the metric item, copied by the handle
+     * @return the handle of the metric item
+     */
+    public MetricItemHandle<T> createHandle(Map<String, String> dimensions) {
+        return new MetricItemHandle<>(this, dimensions);
+    }
+
+    /**
+     * findMetricItem in the item map
+     */
+    protected T findMetricItem(Map<String, T> targetMap, String key, Map<String, String> dimensions) {
+        T currentItem = targetMap.get(key);
         if (currentItem != null) {
             return currentItem;
         }
         currentItem = createItem();
         currentItem.setDimensions(dimensions);
-        T oldItem = this.itemMap.putIfAbsent(key, currentItem);
+        T oldItem = targetMap.putIfAbsent(key, currentItem);
         return (oldItem == null) ? currentItem : oldItem;
     }
 
@@ -17,10 +17,13 @@
 
 package org.apache.inlong.common.monitor;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,7 +36,11 @@ public class MonitorIndex {
 
     private IndexCollectThread indexCol;
     private String name;
-    private ConcurrentHashMap<String, String> counterMap = new ConcurrentHashMap<String, String>();
+    private ConcurrentHashMap<String, IndexCounter> counterMap =
+            new ConcurrentHashMap<String, IndexCounter>();
+    // the counters removed from counterMap in the last collect cycle,
+    // the increments made through the stale references are collected once more
+    private List<IndexCounter> retiredCounters = new ArrayList<IndexCounter>();
     private int intervalSec;
     private int maxCnt;
 
@@ -63,24 +70,17 @@ public class MonitorIndex {
      */
     public void addAndGet(String key, int cnt, int packcnt, long packsize, int failcnt) {
         try {
-            if (counterMap.size() < maxCnt) {
-                counterMap.compute(key, (key1, value) -> {
-                    if (value != null) {
-                        String[] va = value.split("#");
-                        value = (Integer.parseInt(va[0]) + cnt) + "#"
-                                + (Integer.parseInt(va[1]) + packcnt) + "#"
-                                + (Long.parseLong(va[2]) + packsize) + "#"
-                                + (Integer.parseInt(va[3]) + failcnt);
-                    } else {
-                        StringBuilder stringBuilder = new StringBuilder();
-                        value = stringBuilder.append(cnt).append("#").append(packcnt).append("#")
-                                .append(packsize).append("#").append(failcnt).toString();
+            IndexCounter counter = counterMap.get(key);
+            if (counter == null) {
+                if (counterMap.size() >= maxCnt) {
+                    if (logPrinter.shouldPrint()) {
+                        logger.error(this.name + "exceed monitor's max size");
                     }
-                    return value;
-                });
-            } else if (logPrinter.shouldPrint()) {
-                logger.error(this.name + "exceed monitor's max size");
+                    return;
+                }
+                counter = counterMap.computeIfAbsent(key, k -> new IndexCounter(k));
             }
+            counter.add(cnt, packcnt, packsize, failcnt);
         } catch (Exception e) {
             if (logPrinter.shouldPrint()) {
                 logger.error("monitor exception", e);
@@ -100,6 +100,79 @@ public class MonitorIndex {
         this.maxCnt = maxCnt;
     }
 
+    /**
+     * Take the values counted since the last call and reset the counters,
+     * the counters without increments are removed.
+     *
+     * @param counterExt  the map to put the values, in the format of cnt#packcnt#packsize#failcnt
+     */
+    void snapshotAndReset(Map<String, String> counterExt) {
+        Map<String, long[]> values = new HashMap<String, long[]>();
+        for (IndexCounter counter : retiredCounters) {
+            counter.sumThenReset(values);
+        }
+        retiredCounters.clear();
+        for (IndexCounter counter : counterMap.values()) {
+            if (!counter.sumThenReset(values)
+                    && counterMap.remove(counter.key, counter)) {
+                retiredCounters.add(counter);
+            }
+        }
+        StringBuilder strBuff = new StringBuilder(64);
+        for (Map.Entry<String, long[]> entry : values.entrySet()) {
+            long[] value = entry.getValue();
+            counterExt.put(entry.getKey(), strBuff.append(value[0]).append("#")
+                    .append(value[1]).append("#").append(value[2]).append("#")
+                    .append(value[3]).toString());
+            strBuff.delete(0, strBuff.length());
+        }
+    }
+
+    /**
+     * The counters of a key, incremented without lock.
+     */
+    private static class IndexCounter {
+
+        private final String key;
+        private final LongAdder msgCnt = new LongAdder();
+        private final LongAdder packCnt = new LongAdder();
+        private final LongAdder packSize = new LongAdder();
+        private final LongAdder failCnt = new LongAdder();
+
+        public IndexCounter(String key) {
+            this.key = key;
+        }
+
+        public void add(int cnt, int packcnt, long packsize, int failcnt) {
+            msgCnt.add(cnt);
+            packCnt.add(packcnt);
+            packSize.add(packsize);
+            failCnt.add(failcnt);
+        }
+
+        /**
+         * Add the values to the map and reset the counters.
+         *
+         * @param values  the values of keys
+         * @return whether any counter is not zero
+         */
+        public boolean sumThenReset(Map<String, long[]> values) {
+            long cnt = msgCnt.sumThenReset();
+            long packcnt = packCnt.sumThenReset();
+            long packsize = packSize.sumThenReset();
+            long failcnt = failCnt.sumThenReset();
+            if (cnt == 0 && packcnt == 0 && packsize == 0 && failcnt == 0) {
+                return false;
+            }
+            long[] value = values.computeIfAbsent(key, k -> new long[4]);
+            value[0] += cnt;
+            value[1] += packcnt;
+            value[2] += packsize;
+            value[3] += failcnt;
+            return true;
+        }
+    }
+
     private class IndexCollectThread
             extends
                 Thread {
@@ -122,12 +195,7 @@ public class MonitorIndex {
             while (!bShutDown) {
                 try {
                     Thread.sleep(intervalSec * 1000L);
-                    for (String str : counterMap.keySet()) {
-                        counterMap.computeIfPresent(str, (s, s2) -> {
-                            counterExt.put(s, s2);
-                            return null;
-                        });
-                    }
+                    snapshotAndReset(counterExt);
                     // get print time (second)
                     currentKey = System.currentTimeMillis() / 1000;
                     for (Map.Entry<String, String> entrys : counterExt.entrySet()) {
@@ -22,13 +22,16 @@ import com.google.common.base.Splitter;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
-import org.xerial.snappy.Snappy;
+import org.apache.inlong.common.msg.compress.CompressType;
+import org.apache.inlong.common.msg.compress.Compressor;
+import org.apache.inlong.common.msg.compress.Compressors;
 
 public class InLongMsg {
 
@@ -36,7 +39,7 @@ public class InLongMsg {
     private final int capacity;
 
     private static final int BIN_MSG_NO_ZIP = 0;
-    private static final int BIN_MSG_SNAPPY_TYPE = 1;
+    private static final int BIN_MSG_COMPRESSED = 1;
 
     private static final int BIN_MSG_TOTALLEN_OFFSET = 0;
     private static final int BIN_MSG_GROUPID_OFFSET = 5;
@@ -46,7 +49,8 @@ public class InLongMsg {
     private static final int BIN_MSG_DATATIME_OFFSET = 11;
     private static final int BIN_MSG_TOTALLEN_SIZE = 4;
     private static final int BIN_MSG_MSGTYPE_OFFSET = 4;
-    private static final int BIN_MSG_SET_SNAPPY = (1 << 5);
+    private static final int BIN_MSG_COMPRESS_SHIFT = 5;
+    private static final int BIN_MSG_SET_COMPRESS = (BIN_MSG_COMPRESSED << BIN_MSG_COMPRESS_SHIFT);
     private static final int BIN_MSG_BODYLEN_SIZE = 4;
     private static final int BIN_MSG_BODYLEN_OFFSET = 21;
     private static final int BIN_MSG_BODY_OFFSET =
@@ -97,6 +101,7 @@ public class InLongMsg {
     private int datalen = 0;
     private int msgcnt = 0;
     private boolean compress;
+    private CompressType compressType;
     private boolean isNumGroupId = false;
     private boolean ischeck = true;
 
@@ -188,7 +193,7 @@ public class InLongMsg {
      * @return InLongMsg
      */
     public static InLongMsg newInLongMsg(int capacity, boolean compress) {
-        return new InLongMsg(capacity, compress, Version.v1);
+        return newInLongMsg(capacity, compress, Version.v1.intValue());
     }
 
     /**
@@ -199,14 +204,27 @@ public class InLongMsg {
      * @return InLongMsg
      */
     public static InLongMsg newInLongMsg(int capacity, boolean compress, int v) {
-        return new InLongMsg(capacity, compress, Version.of(v));
+        return new InLongMsg(capacity,
+                compress ? CompressType.SNAPPY : CompressType.NONE, Version.of(v));
+    }
+
+    /**
+     * newInLongMsg with the compression type
+     * @param capacity     data capacity
+     * @param compressType compression type, the receiver must support it
+     * @param v            version
+     * @return InLongMsg
+     */
+    public static InLongMsg newInLongMsg(int capacity, CompressType compressType, int v) {
+        return new InLongMsg(capacity, compressType, Version.of(v));
     }
 
     // for create
-    private InLongMsg(int capacity, boolean compress, Version v) {
+    private InLongMsg(int capacity, CompressType compressType, Version v) {
         version = v;
         addmode = true;
-        this.compress = compress;
+        this.compressType = (compressType == null) ? CompressType.NONE : compressType;
+        this.compress = (this.compressType != CompressType.NONE);
         this.capacity = capacity;
         attr2MsgBuffer = new LinkedHashMap<String, DataBuffer>();
         parsedInput = null;
@@ -393,13 +411,14 @@ public class InLongMsg {
                     if (version.intValue() == Version.v2.intValue()) {
                         out.writeInt(data.cnt);
                     }
-                    int guessLen =
-                            Snappy.maxCompressedLength(data.out.getLength());
-                    byte[] tmpData = new byte[guessLen];
-                    int len = Snappy.compress(data.out.getData(), 0,
+                    // compress into the reusable buffer of the current thread
+                    Compressor compressor = Compressors.getAvailableCompressor(compressType);
+                    byte[] tmpData = Compressors.getThreadBuffer(
+                            compressor.maxCompressedLength(data.out.getLength()));
+                    int len = compressor.compress(data.out.getData(), 0,
                             data.out.getLength(), tmpData, 0);
                     out.writeInt(len + 1);
-                    out.writeBoolean(compress);
+                    out.writeByte(compressType.getValue());
                     out.write(tmpData, 0, len);
                 }
             } else {
@@ -431,8 +450,8 @@ public class InLongMsg {
             writeMagic(out);
 
             int msgType = getBinMsgtype(binMsgBuffer);
-            int compressType = ((msgType & 0xE0) >> 5);
-            if ((compressType == 0) && (compress)) {
+            int msgCompressType = ((msgType & 0xE0) >> BIN_MSG_COMPRESS_SHIFT);
+            if ((msgCompressType == BIN_MSG_NO_ZIP) && (compress)) {
 
                 binMsgBuffer.position(BIN_MSG_BODYLEN_OFFSET);
                 // copy body data
@@ -440,26 +459,33 @@ public class InLongMsg {
                 byte[] body = new byte[bodyLen];
                 binMsgBuffer.get(body, 0, bodyLen);
 
-                // copy attributes
+                // copy attributes, the compress type other than snappy
+                // is carried by the attribute
                 int attrLen =
                         binMsgBuffer.getShort(BIN_MSG_BODY_OFFSET + bodyLen);
-                byte[] attr =
-                        new byte[BIN_MSG_ATTRLEN_SIZE + attrLen + BIN_MSG_MAGIC_SIZE];
-                binMsgBuffer.get(attr, 0, attr.length);
+                byte[] attr = new byte[attrLen];
+                binMsgBuffer.position(BIN_MSG_BODY_OFFSET + bodyLen + BIN_MSG_ATTRLEN_SIZE);
+                binMsgBuffer.get(attr, 0, attrLen);
+                if (compressType != CompressType.SNAPPY) {
+                    String strAttr = new String(attr, StandardCharsets.UTF_8);
+                    strAttr = (strAttr.isEmpty() ? "" : strAttr + AttributeConstants.SEPARATOR)
+                            + AttributeConstants.COMPRESS_TYPE + AttributeConstants.KEY_VALUE_SEPARATOR
+                            + compressType.getName();
+                    attr = strAttr.getBytes(StandardCharsets.UTF_8);
+                    attrLen = attr.length;
+                }
 
-                int guessLen = Snappy.maxCompressedLength(bodyLen);
-                byte[] tmpData = new byte[guessLen];
-                int realLen = Snappy.compress(body, 0,
+                Compressor compressor = Compressors.getAvailableCompressor(compressType);
+                byte[] tmpData = Compressors.getThreadBuffer(compressor.maxCompressedLength(bodyLen));
+                int realLen = compressor.compress(body, 0,
                         body.length, tmpData, 0);
 
-                int totalDataLen = binMsgBuffer.getInt(BIN_MSG_TOTALLEN_OFFSET);
-                ByteBuffer dataBuf = ByteBuffer.allocate(
-                        totalDataLen + BIN_MSG_TOTALLEN_SIZE - body.length + realLen);
+                ByteBuffer dataBuf = ByteBuffer.allocate(realLen + attrLen + BIN_MSG_FORMAT_SIZE);
 
                 // copy headers
                 dataBuf.put(binMsgBuffer.array(), 0, BIN_MSG_BODYLEN_OFFSET);
                 // set compress flag
-                dataBuf.put(BIN_MSG_MSGTYPE_OFFSET, (byte) (msgType | BIN_MSG_SET_SNAPPY));
+                dataBuf.put(BIN_MSG_MSGTYPE_OFFSET, (byte) (msgType | BIN_MSG_SET_COMPRESS));
                 dataBuf.putInt(BIN_MSG_TOTALLEN_OFFSET,
                         realLen + attrLen + BIN_MSG_FORMAT_SIZE - 4);
                 // set data length
@@ -468,8 +494,11 @@ public class InLongMsg {
                 System.arraycopy(tmpData, 0,
                         dataBuf.array(), BIN_MSG_BODY_OFFSET, realLen);
                 // fill attributes and MAGIC
+                dataBuf.putShort(BIN_MSG_BODY_OFFSET + realLen, (short) attrLen);
                 System.arraycopy(attr, 0, dataBuf.array(),
-                        BIN_MSG_BODY_OFFSET + realLen, attr.length);
+                        BIN_MSG_BODY_OFFSET + realLen + BIN_MSG_ATTRLEN_SIZE, attrLen);
+                dataBuf.putShort(BIN_MSG_BODY_OFFSET + realLen + BIN_MSG_ATTRLEN_SIZE + attrLen,
+                        (short) BIN_MSG_MAGIC);
 
                 out.write(dataBuf.array(), 0, dataBuf.capacity());
             } else {
@@ -678,10 +707,12 @@ public class InLongMsg {
             int compress = parsedInput.readByte();
             int pos = parsedInput.getPosition();
 
-            if (compress == 1) {
-                byte[] uncompressdata = new byte[Snappy.uncompressedLength(
+            if (compress != 0) {
+                Compressor compressor =
+                        Compressors.getAvailableCompressor(CompressType.valueOf(compress));
+                byte[] uncompressdata = new byte[compressor.uncompressedLength(
                         parsedInput.getData(), pos, len - 1)];
-                int msgLen = Snappy.uncompress(parsedInput.getData(), pos, len - 1,
+                int msgLen = compressor.uncompress(parsedInput.getData(), pos, len - 1,
                         uncompressdata, 0);
                 bodyBuffer = ByteBuffer.wrap(uncompressdata, 0, msgLen);
             } else {
@@ -773,24 +804,21 @@ public class InLongMsg {
         byte[] body = new byte[bodyLen + 1];
         parsedBinInput.position(BIN_MSG_BODY_OFFSET);
         parsedBinInput.get(body, 1, bodyLen);
-        int zipType = (msgtype & 0xE0) >> 5;
-        switch (zipType) {
-            case (BIN_MSG_SNAPPY_TYPE):
-                byte[] uncompressdata =
-                        new byte[Snappy.uncompressedLength(body, 1, body.length - 1) + 1];
-                // uncompress flag
-                uncompressdata[0] = 0;
-                int msgLen = Snappy.uncompress(body, 1, body.length - 1,
-                        uncompressdata, 1);
-                bodyBuffer = ByteBuffer.wrap(uncompressdata, 0, msgLen + 1);
-                break;
-
-            case (BIN_MSG_NO_ZIP):
-            default:
-                // set uncompress flag
-                body[0] = 0;
-                bodyBuffer = ByteBuffer.wrap(body, 0, body.length);
-                break;
+        int zipType = (msgtype & 0xE0) >> BIN_MSG_COMPRESS_SHIFT;
+        if (zipType == BIN_MSG_COMPRESSED) {
+            Compressor compressor =
+                    Compressors.getAvailableCompressor(getBinCompressType(commonAttrMap));
+            byte[] uncompressdata =
+                    new byte[compressor.uncompressedLength(body, 1, body.length - 1) + 1];
+            // uncompress flag
+            uncompressdata[0] = 0;
+            int msgLen = compressor.uncompress(body, 1, body.length - 1,
+                    uncompressdata, 1);
+            bodyBuffer = ByteBuffer.wrap(uncompressdata, 0, msgLen + 1);
+        } else {
+            // set uncompress flag
+            body[0] = 0;
+            bodyBuffer = ByteBuffer.wrap(body, 0, body.length);
         }
 
         // number groupId/streamId
@@ -865,6 +893,18 @@ public class InLongMsg {
         }
     }
 
+    /**
+     * Get the compress type of the binary message, which is snappy
+     * if it is not carried by the attribute.
+     */
+    static CompressType getBinCompressType(Map<String, String> commonAttrMap) {
+        String compressName = commonAttrMap.get(AttributeConstants.COMPRESS_TYPE);
+        if (compressName == null || compressName.isEmpty()) {
+            return CompressType.SNAPPY;
+        }
+        return CompressType.forName(compressName);
+    }
+
     private void parse() throws IOException {
         if (parsed) {
             return;
@@ -989,10 +1029,12 @@ public class InLongMsg {
             int rem = rawdata.remaining() - 1;
             int compress = array[pos];
 
-            if (compress == 1) {
-                byte[] uncompressdata = new byte[Snappy.uncompressedLength(
+            if (compress != 0) {
+                Compressor compressor =
+                        Compressors.getAvailableCompressor(CompressType.valueOf(compress));
+                byte[] uncompressdata = new byte[compressor.uncompressedLength(
                         array, pos + 1, rem)];
-                int len = Snappy.uncompress(array, pos + 1, rem,
+                int len = compressor.uncompress(array, pos + 1, rem,
                         uncompressdata, 0);
                 input.reset(uncompressdata, len);
             } else {
@@ -1056,10 +1098,12 @@ public class InLongMsg {
             int rem = rawdata.remaining() - 1;
             int compress = array[pos];
 
-            if (compress == 1) {
-                byte[] uncompressdata = new byte[Snappy.uncompressedLength(
+            if (compress != 0) {
+                Compressor compressor =
+                        Compressors.getAvailableCompressor(CompressType.valueOf(compress));
+                byte[] uncompressdata = new byte[compressor.uncompressedLength(
                         array, pos + 1, rem)];
-                int len = Snappy.uncompress(array, pos + 1, rem,
+                int len = compressor.uncompress(array, pos + 1, rem,
                         uncompressdata, 0);
                 input.reset(uncompressdata, len);
             } else {
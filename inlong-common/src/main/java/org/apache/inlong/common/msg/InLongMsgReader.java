@@ -0,0 +1,591 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.common.msg;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.inlong.common.msg.compress.CompressType;
+import org.apache.inlong.common.msg.compress.Compressor;
+import org.apache.inlong.common.msg.compress.Compressors;
+
+/**
+ * A reusable reader of the InLongMsg.
+ *
+ * Unlike {@link InLongMsg#parseFrom(byte[])}, the reader does not copy and group the
+ * records by attributes: the records are iterated in their natural order as views over
+ * the original buffer, or over the decompression buffer if the data is compressed, and
+ * the attributes of the record are parsed only when they are asked for. The decompression
+ * buffer is kept by the reader and reused across the blocks and the messages.
+ *
+ * Typical usage is something like the following:
+ *
+ * InLongMsgReader reader = new InLongMsgReader();
+ * while (... loop condition ...) {
+ *   if (!reader.reset(data)) {
+ *     ... invalid message ...
+ *   }
+ *   while (reader.next()) {
+ *     String streamId = reader.getAttr("streamId");
+ *     ... read reader.getRecordArray() from reader.getRecordOffset()
+ *         with reader.getRecordLength() ...
+ *   }
+ * }
+ *
+ * The record views and the attributes are valid until the next call of next() or reset().
+ * The reader is not thread-safe.
+ */
+public class InLongMsgReader {
+
+    private static final int DEFAULT_BUFFER_SIZE = 4096;
+
+    private static final int MAGIC_PREFIX = 0xf;
+    private static final int MAX_VERSION = 4;
+
+    private static final int BIN_MSG_COMPRESSED = 1;
+    private static final int BIN_MSG_GROUPID_OFFSET = 5;
+    private static final int BIN_MSG_STREAMID_OFFSET = 7;
+    private static final int BIN_MSG_EXTFIELD_OFFSET = 9;
+    private static final int BIN_MSG_DATATIME_OFFSET = 11;
+    private static final int BIN_MSG_COUNT_OFFSET = 15;
+    private static final int BIN_MSG_MSGTYPE_OFFSET = 4;
+    private static final int BIN_MSG_BODYLEN_OFFSET = 21;
+    private static final int BIN_MSG_BODY_OFFSET = 25;
+    private static final int BIN_MSG_ATTRLEN_SIZE = 2;
+
+    private static final char ATTR_SEPARATOR = AttributeConstants.SEPARATOR.charAt(0);
+    private static final char KEY_VALUE_SEPARATOR = AttributeConstants.KEY_VALUE_SEPARATOR.charAt(0);
+
+    private static final Joiner.MapJoiner MAP_JOINER =
+            Joiner.on(AttributeConstants.SEPARATOR)
+                    .withKeyValueSeparator(AttributeConstants.KEY_VALUE_SEPARATOR);
+    private static final Splitter.MapSplitter MAP_SPLITTER =
+            Splitter.on(AttributeConstants.SEPARATOR).trimResults()
+                    .withKeyValueSeparator(AttributeConstants.KEY_VALUE_SEPARATOR);
+
+    private final DataInputBuffer input = new DataInputBuffer();
+    // the reusable decompression buffer
+    private byte[] uncompressBuf;
+
+    // message
+    private byte[] data;
+    private int version = -1;
+    private long createtime = 0L;
+    private int msgCnt = 0;
+    private int attrCnt = 0;
+    private boolean numGroupId = false;
+    private boolean finished = true;
+
+    // block, the v4 message has only one block
+    private int blockIndex = 0;
+    private String blockAttr;
+    private boolean blockHasPrivateAttr = false;
+    private byte[] body;
+    private int bodyPos = 0;
+    private int bodyLimit = 0;
+    // the remaining length of the record group, only for v3
+    private int groupRemain = 0;
+    // the common attributes of the v4 message
+    private int binOffset = 0;
+    private int binAttrOffset = 0;
+    private int binAttrLength = 0;
+    private Map<String, String> binAttrMap;
+
+    // record
+    private int recordOffset = 0;
+    private int recordLength = 0;
+    private int privateAttrOffset = 0;
+    private int privateAttrLength = 0;
+    private String recordAttr;
+
+    public InLongMsgReader() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs a reader with the initial size of the decompression buffer.
+     *
+     * @param initBufferSize  the initial size of the decompression buffer
+     */
+    public InLongMsgReader(int initBufferSize) {
+        this.uncompressBuf = new byte[Math.max(initBufferSize, 0)];
+    }
+
+    /**
+     * Reset the reader with the message data.
+     *
+     * @param data   the message data
+     * @return       false if the data is not a valid InLongMsg
+     */
+    public boolean reset(byte[] data) {
+        return reset(data, 0, data.length);
+    }
+
+    /**
+     * Reset the reader with the message data in the buffer, the buffer must be backed by an array.
+     *
+     * @param buffer   the message data from position to limit
+     * @return         false if the data is not a valid InLongMsg
+     */
+    public boolean reset(ByteBuffer buffer) {
+        return reset(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+    }
+
+    /**
+     * Reset the reader with the message data.
+     *
+     * @param data     the array holds the message
+     * @param offset   the offset of the message in the array
+     * @param length   the length of the message
+     * @return         false if the data is not a valid InLongMsg
+     */
+    public boolean reset(byte[] data, int offset, int length) {
+        this.data = data;
+        this.version = -1;
+        this.createtime = 0L;
+        this.msgCnt = 0;
+        this.attrCnt = 0;
+        this.numGroupId = false;
+        this.finished = true;
+        this.blockIndex = 0;
+        this.blockAttr = null;
+        this.blockHasPrivateAttr = false;
+        this.body = null;
+        this.bodyPos = 0;
+        this.bodyLimit = 0;
+        this.groupRemain = 0;
+        this.binAttrMap = null;
+        clearRecord();
+        if (data == null || length < 4
+                || data[offset] != MAGIC_PREFIX
+                || data[offset + length - 2] != MAGIC_PREFIX
+                || data[offset + 1] != data[offset + length - 1]
+                || data[offset + 1] < 0 || data[offset + 1] > MAX_VERSION) {
+            return false;
+        }
+        try {
+            if (data[offset + 1] == MAX_VERSION) {
+                if (!resetBinMsg(offset + 2, length - 2)) {
+                    return false;
+                }
+            } else {
+                input.reset(data, offset + 2, length - 4);
+                if (data[offset + 1] >= 1) {
+                    this.createtime = input.readLong();
+                }
+                if (data[offset + 1] >= 2) {
+                    this.msgCnt = input.readInt();
+                }
+                this.attrCnt = input.readInt();
+            }
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+        this.version = data[offset + 1];
+        this.finished = false;
+        return true;
+    }
+
+    /**
+     * Move to the next record.
+     *
+     * @return   false if there are no more records, or the rest of the message is malformed
+     */
+    public boolean next() {
+        clearRecord();
+        if (finished) {
+            return false;
+        }
+        try {
+            while (true) {
+                if (body != null) {
+                    int result = blockHasPrivateAttr ? nextRecordWithAttr() : nextRecord();
+                    if (result > 0) {
+                        return true;
+                    } else if (result < 0) {
+                        break;
+                    }
+                    body = null;
+                }
+                if (version == MAX_VERSION || blockIndex >= attrCnt) {
+                    break;
+                }
+                loadBlock();
+            }
+        } catch (IOException | RuntimeException e) {
+            // malformed data, stop the iteration as the parseFrom does
+        }
+        clearRecord();
+        finished = true;
+        return false;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public long getCreatetime() {
+        return createtime;
+    }
+
+    public int getMsgCnt() {
+        return msgCnt;
+    }
+
+    public boolean isNumGroupId() {
+        return numGroupId;
+    }
+
+    /**
+     * Get the array holds the current record, it is either the message data
+     * or the decompression buffer of the reader.
+     */
+    public byte[] getRecordArray() {
+        return body;
+    }
+
+    public int getRecordOffset() {
+        return recordOffset;
+    }
+
+    public int getRecordLength() {
+        return recordLength;
+    }
+
+    /**
+     * Get a read-only view of the current record.
+     */
+    public ByteBuffer getRecord() {
+        return ByteBuffer.wrap(body, recordOffset, recordLength).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Copy the current record.
+     */
+    public byte[] getRecordBytes() {
+        byte[] record = new byte[recordLength];
+        System.arraycopy(body, recordOffset, record, 0, recordLength);
+        return record;
+    }
+
+    /**
+     * Get an attribute value of the current record without building the attribute map.
+     *
+     * @param key   the attribute key
+     * @return      the attribute value, or null if not found
+     */
+    public String getAttr(String key) {
+        if (version == MAX_VERSION) {
+            // the common attributes override the private attributes
+            String value = getBinAttrMap().get(key);
+            if (value != null || !blockHasPrivateAttr) {
+                return value;
+            }
+            return findAttr(body, privateAttrOffset, privateAttrLength, key);
+        }
+        String value = findAttr(blockAttr, key);
+        if (value == null && blockHasPrivateAttr) {
+            value = findAttr(body, privateAttrOffset, privateAttrLength, key);
+        }
+        return value;
+    }
+
+    /**
+     * Get the attributes of the current record, it is the same as the
+     * attributes the record is grouped by in {@link InLongMsg#getAttrs()}.
+     */
+    public String getAttrs() {
+        if (recordAttr != null) {
+            return recordAttr;
+        }
+        if (version == MAX_VERSION) {
+            if (blockHasPrivateAttr) {
+                Map<String, String> finalAttrMap = new HashMap<String, String>(
+                        MAP_SPLITTER.split(new String(body, privateAttrOffset, privateAttrLength)));
+                finalAttrMap.putAll(getBinAttrMap());
+                recordAttr = MAP_JOINER.join(finalAttrMap);
+            } else {
+                recordAttr = blockAttr;
+            }
+        } else if (blockHasPrivateAttr) {
+            recordAttr = blockAttr + "&" + new String(body, privateAttrOffset, privateAttrLength);
+        } else {
+            recordAttr = blockAttr;
+        }
+        return recordAttr;
+    }
+
+    private boolean resetBinMsg(int binOffset, int binLength) throws IOException {
+        ByteBuffer binInput = ByteBuffer.wrap(data, binOffset, binLength).slice();
+        int bodyLen = binInput.getInt(BIN_MSG_BODYLEN_OFFSET);
+        if (bodyLen < 0 || BIN_MSG_BODY_OFFSET + bodyLen + BIN_MSG_ATTRLEN_SIZE > binLength) {
+            return false;
+        }
+        int attrLen = binInput.getShort(BIN_MSG_BODY_OFFSET + bodyLen);
+        if (attrLen < 0 || BIN_MSG_BODY_OFFSET + bodyLen + BIN_MSG_ATTRLEN_SIZE + attrLen > binLength) {
+            return false;
+        }
+        int extField = binInput.getShort(BIN_MSG_EXTFIELD_OFFSET);
+        this.createtime = binInput.getInt(BIN_MSG_DATATIME_OFFSET) * 1000L;
+        this.msgCnt = binInput.getShort(BIN_MSG_COUNT_OFFSET);
+        this.binOffset = binOffset;
+        this.numGroupId = ((extField & 0x4) == 0x0);
+        this.blockHasPrivateAttr = ((extField & 0x1) == 0x1);
+        this.binAttrOffset = binOffset + BIN_MSG_BODY_OFFSET + bodyLen + BIN_MSG_ATTRLEN_SIZE;
+        this.binAttrLength = attrLen;
+        int zipType = (binInput.get(BIN_MSG_MSGTYPE_OFFSET) & 0xE0) >> 5;
+        if (zipType == BIN_MSG_COMPRESSED) {
+            // the compress type other than snappy is carried by the attribute
+            String compressName = findAttr(data, binAttrOffset, binAttrLength,
+                    AttributeConstants.COMPRESS_TYPE);
+            CompressType compressType = (compressName == null || compressName.isEmpty())
+                    ? CompressType.SNAPPY
+                    : CompressType.forName(compressName);
+            setUncompressedBody(compressType, binOffset + BIN_MSG_BODY_OFFSET, bodyLen);
+        } else {
+            setBody(data, binOffset + BIN_MSG_BODY_OFFSET, bodyLen);
+        }
+        if (!blockHasPrivateAttr) {
+            // all the records share the common attributes
+            this.blockAttr = MAP_JOINER.join(getBinAttrMap());
+        }
+        return true;
+    }
+
+    private Map<String, String> getBinAttrMap() {
+        if (binAttrMap != null) {
+            return binAttrMap;
+        }
+        Map<String, String> commonAttrMap = new HashMap<String, String>();
+        if (binAttrLength != 0) {
+            commonAttrMap = new HashMap<String, String>(
+                    MAP_SPLITTER.split(new String(data, binAttrOffset, binAttrLength)));
+        }
+        commonAttrMap.put(AttributeConstants.DATA_TIME, String.valueOf(createtime));
+        if (numGroupId) {
+            commonAttrMap.put(AttributeConstants.GROUP_ID,
+                    String.valueOf(getShort(data, binOffset + BIN_MSG_GROUPID_OFFSET)));
+            commonAttrMap.put(AttributeConstants.STREAM_ID,
+                    String.valueOf(getShort(data, binOffset + BIN_MSG_STREAMID_OFFSET)));
+        }
+        commonAttrMap.put(AttributeConstants.MESSAGE_COUNT, "1");
+        binAttrMap = commonAttrMap;
+        return binAttrMap;
+    }
+
+    private void loadBlock() throws IOException {
+        blockIndex++;
+        blockAttr = input.readUTF();
+        if (version == 2) {
+            // the record count of the block
+            input.readInt();
+        }
+        int len = input.readInt();
+        int pos = input.getPosition();
+        if (len <= 0 || len > input.getLength() - pos) {
+            throw new IOException("Invalid block length " + len);
+        }
+        input.skip(len);
+        // the first byte is the compress flag
+        if (data[pos] != 0) {
+            setUncompressedBody(CompressType.valueOf(data[pos]), pos + 1, len - 1);
+        } else {
+            setBody(data, pos + 1, len - 1);
+        }
+        blockHasPrivateAttr = (version == 3);
+        groupRemain = 0;
+    }
+
+    private void setBody(byte[] array, int offset, int length) {
+        this.body = array;
+        this.bodyPos = offset;
+        this.bodyLimit = offset + length;
+    }
+
+    private void setUncompressedBody(CompressType compressType,
+            int offset, int length) throws IOException {
+        Compressor compressor = Compressors.getAvailableCompressor(compressType);
+        int uncompressedLen = compressor.uncompressedLength(data, offset, length);
+        if (uncompressBuf.length < uncompressedLen) {
+            uncompressBuf = new byte[Math.max(uncompressedLen, uncompressBuf.length * 2)];
+        }
+        int msgLen = compressor.uncompress(data, offset, length, uncompressBuf, 0);
+        setBody(uncompressBuf, 0, msgLen);
+    }
+
+    /**
+     * Read the record of (int length, data).
+     *
+     * @return  1 if a record is read, 0 if the block ends, -1 if the data is malformed
+     */
+    private int nextRecord() {
+        if (bodyLimit - bodyPos < 4) {
+            return 0;
+        }
+        int msgLen = getInt(body, bodyPos);
+        if (msgLen < 0 || msgLen > bodyLimit - bodyPos - 4) {
+            return -1;
+        }
+        recordOffset = bodyPos + 4;
+        recordLength = msgLen;
+        bodyPos = recordOffset + msgLen;
+        return 1;
+    }
+
+    /**
+     * Read the record of (int length, data, int attribute length, attributes),
+     * the records of the v3 message are wrapped in groups of (int group length, record+).
+     *
+     * @return  1 if a record is read, 0 if the block ends, -1 if the data is malformed
+     */
+    private int nextRecordWithAttr() {
+        int bound;
+        if (version == 3) {
+            if (groupRemain <= 0) {
+                if (bodyLimit - bodyPos < 4) {
+                    return 0;
+                }
+                groupRemain = getInt(body, bodyPos);
+                bodyPos += 4;
+                if (groupRemain > bodyLimit - bodyPos) {
+                    return -1;
+                }
+                if (groupRemain <= 0) {
+                    return nextRecordWithAttr();
+                }
+            }
+            bound = groupRemain;
+        } else {
+            if (bodyLimit - bodyPos <= 0) {
+                return 0;
+            }
+            bound = bodyLimit - bodyPos;
+        }
+        if (bodyLimit - bodyPos < 4) {
+            return -1;
+        }
+        int msgLen = getInt(body, bodyPos);
+        if (msgLen <= 0 || msgLen > bound || msgLen > bodyLimit - bodyPos - 8) {
+            return -1;
+        }
+        int attrPos = bodyPos + 4 + msgLen;
+        int attrLen = getInt(body, attrPos);
+        if (attrLen <= 0 || attrLen > bound || attrLen > bodyLimit - attrPos - 4) {
+            return -1;
+        }
+        recordOffset = bodyPos + 4;
+        recordLength = msgLen;
+        privateAttrOffset = attrPos + 4;
+        privateAttrLength = attrLen;
+        bodyPos = privateAttrOffset + attrLen;
+        if (version == 3) {
+            groupRemain = groupRemain - msgLen - attrLen - 8;
+        }
+        return 1;
+    }
+
+    private void clearRecord() {
+        this.recordOffset = 0;
+        this.recordLength = 0;
+        this.privateAttrOffset = 0;
+        this.privateAttrLength = 0;
+        this.recordAttr = null;
+    }
+
+    private static String findAttr(String attrs, String key) {
+        if (attrs == null) {
+            return null;
+        }
+        int start = 0;
+        int length = attrs.length();
+        while (start <= length) {
+            int end = attrs.indexOf(ATTR_SEPARATOR, start);
+            if (end < 0) {
+                end = length;
+            }
+            int entryStart = start;
+            int entryEnd = end;
+            while (entryStart < entryEnd && attrs.charAt(entryStart) <= ' ') {
+                entryStart++;
+            }
+            while (entryEnd > entryStart && attrs.charAt(entryEnd - 1) <= ' ') {
+                entryEnd--;
+            }
+            int keyEnd = entryStart + key.length();
+            if (keyEnd < entryEnd
+                    && attrs.charAt(keyEnd) == KEY_VALUE_SEPARATOR
+                    && attrs.startsWith(key, entryStart)) {
+                return attrs.substring(keyEnd + 1, entryEnd);
+            }
+            start = end + 1;
+        }
+        return null;
+    }
+
+    private static String findAttr(byte[] array, int offset, int length, String key) {
+        int start = offset;
+        int limit = offset + length;
+        while (start <= limit) {
+            int end = start;
+            while (end < limit && array[end] != ATTR_SEPARATOR) {
+                end++;
+            }
+            int entryStart = start;
+            int entryEnd = end;
+            while (entryStart < entryEnd && (array[entryStart] & 0xFF) <= ' ') {
+                entryStart++;
+            }
+            while (entryEnd > entryStart && (array[entryEnd - 1] & 0xFF) <= ' ') {
+                entryEnd--;
+            }
+            int keyEnd = entryStart + key.length();
+            if (keyEnd < entryEnd
+                    && array[keyEnd] == KEY_VALUE_SEPARATOR
+                    && keyMatches(array, entryStart, key)) {
+                return new String(array, keyEnd + 1, entryEnd - keyEnd - 1);
+            }
+            start = end + 1;
+        }
+        return null;
+    }
+
+    private static boolean keyMatches(byte[] array, int offset, String key) {
+        for (int i = 0; i < key.length(); i++) {
+            if ((array[offset + i] & 0xFF) != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int getInt(byte[] array, int offset) {
+        return ((array[offset] & 0xFF) << 24)
+                | ((array[offset + 1] & 0xFF) << 16)
+                | ((array[offset + 2] & 0xFF) << 8)
+                | (array[offset + 3] & 0xFF);
+    }
+
+    private static short getShort(byte[] array, int offset) {
+        return (short) (((array[offset] & 0xFF) << 8) | (array[offset + 1] & 0xFF));
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.common.msg.compress;
+
+/**
+ * The compression types of the message body.
+ *
+ * The value is carried in the compress flag byte of the InLongMsg blocks, and in the
+ * compress bits (bit 5 to 7) of the message type of the binary message, so it must
+ * not exceed 7; the name is carried in the "cp" attribute of the text messages.
+ */
+public enum CompressType {
+
+    NONE(0, ""),
+    SNAPPY(1, "snappy"),
+    LZ4(2, "lz4"),
+    ZSTD(3, "zstd");
+
+    private final int value;
+    private final String name;
+
+    CompressType(int value, String name) {
+        this.value = value;
+        this.name = name;
+    }
+
+    /**
+     * Get the compression type by the value.
+     *
+     * @param value   the value of the compression type
+     * @return        the compression type, or null if unknown
+     */
+    public static CompressType valueOf(int value) {
+        for (CompressType compressType : CompressType.values()) {
+            if (compressType.value == value) {
+                return compressType;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the compression type by the name, ignoring case.
+     *
+     * @param name   the name of the compression type
+     * @return       the compression type, or null if unknown
+     */
+    public static CompressType forName(String name) {
+        if (name == null) {
+            return null;
+        }
+        for (CompressType compressType : CompressType.values()) {
+            if (compressType.name.equalsIgnoreCase(name.trim())) {
+                return compressType;
+            }
+        }
+        return null;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
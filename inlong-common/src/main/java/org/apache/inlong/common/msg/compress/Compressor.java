@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.common.msg.compress;
+
+import java.io.IOException;
+
+/**
+ * Compressor of the message body, the implementations are thread-safe.
+ *
+ * The compressed data must carry the uncompressed length, so that the receiver
+ * can size the output buffer with {@link #uncompressedLength(byte[], int, int)}.
+ */
+public interface Compressor {
+
+    /**
+     * Get the compression type of the compressor.
+     */
+    CompressType getType();
+
+    /**
+     * Get the max compressed length of the input, the output buffer
+     * of {@link #compress} should not be less than it.
+     *
+     * @param length   the length of the input
+     * @return         the max compressed length
+     */
+    int maxCompressedLength(int length);
+
+    /**
+     * Compress the input into the output buffer.
+     *
+     * @param src         the input array
+     * @param srcOffset   the offset of the input
+     * @param length      the length of the input
+     * @param dst         the output array
+     * @param dstOffset   the offset of the output
+     * @return            the compressed length
+     */
+    int compress(byte[] src, int srcOffset, int length,
+            byte[] dst, int dstOffset) throws IOException;
+
+    /**
+     * Get the uncompressed length of the compressed data.
+     *
+     * @param src         the compressed array
+     * @param srcOffset   the offset of the compressed data
+     * @param length      the length of the compressed data
+     * @return            the uncompressed length
+     */
+    int uncompressedLength(byte[] src, int srcOffset, int length) throws IOException;
+
+    /**
+     * Uncompress the compressed data into the output buffer, the output buffer
+     * should not be less than {@link #uncompressedLength}.
+     *
+     * @param src         the compressed array
+     * @param srcOffset   the offset of the compressed data
+     * @param length      the length of the compressed data
+     * @param dst         the output array
+     * @param dstOffset   the offset of the output
+     * @return            the uncompressed length
+     */
+    int uncompress(byte[] src, int srcOffset, int length,
+            byte[] dst, int dstOffset) throws IOException;
+}
@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.common.msg.compress;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The registry of the compressors, and the reusable per-thread compression buffers.
+ *
+ * The compressors are created on the first use, so the LZ4 and zstd libraries are only
+ * required when those compression types are used. A compressor with other settings,
+ * such as a zstd compressor with a dictionary, can be registered to replace the default one.
+ */
+public final class Compressors {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Compressors.class);
+
+    // the length prefix of the formats which do not carry the uncompressed length
+    static final int LENGTH_PREFIX_SIZE = 4;
+    // the larger buffers are not kept by the threads
+    private static final int MAX_CACHED_BUFFER_SIZE = 4 * 1024 * 1024;
+    private static final int MIN_BUFFER_SIZE = 4096;
+
+    private static final AtomicReferenceArray<Compressor> COMPRESSORS =
+            new AtomicReferenceArray<>(CompressType.values().length);
+    private static final ThreadLocal<byte[]> COMPRESS_BUFFER = new ThreadLocal<>();
+
+    private Compressors() {
+        //
+    }
+
+    /**
+     * Get the compressor of the compression type.
+     *
+     * @param compressType   the compression type
+     * @return               the compressor, or null if the type is NONE or the library is unavailable
+     */
+    public static Compressor getCompressor(CompressType compressType) {
+        if (compressType == null || compressType == CompressType.NONE) {
+            return null;
+        }
+        Compressor compressor = COMPRESSORS.get(compressType.ordinal());
+        if (compressor != null) {
+            return compressor;
+        }
+        try {
+            switch (compressType) {
+                case SNAPPY:
+                    compressor = new SnappyCompressor();
+                    break;
+                case LZ4:
+                    compressor = new Lz4Compressor();
+                    break;
+                case ZSTD:
+                    compressor = new ZstdCompressor();
+                    break;
+                default:
+                    return null;
+            }
+        } catch (LinkageError e) {
+            LOG.error("The library of compress type {} is unavailable", compressType.getName(), e);
+            return null;
+        }
+        if (!COMPRESSORS.compareAndSet(compressType.ordinal(), null, compressor)) {
+            compressor = COMPRESSORS.get(compressType.ordinal());
+        }
+        return compressor;
+    }
+
+    /**
+     * Get the compressor by the value of the compression type.
+     *
+     * @param value   the value of the compression type
+     * @return        the compressor, or null if the type is NONE, unknown or unavailable
+     */
+    public static Compressor getCompressor(int value) {
+        return getCompressor(CompressType.valueOf(value));
+    }
+
+    /**
+     * Register a compressor, which replaces the current one of the same type.
+     *
+     * @param compressor   the compressor
+     */
+    public static void register(Compressor compressor) {
+        if (compressor.getType() == CompressType.NONE) {
+            throw new IllegalArgumentException("Can not register compressor of type NONE");
+        }
+        COMPRESSORS.set(compressor.getType().ordinal(), compressor);
+    }
+
+    /**
+     * Get the compression buffer of the current thread, the content is undefined.
+     *
+     * The buffer is reused by the later calls in the same thread, so it must not be
+     * kept after use; the buffer larger than 4MB is not kept by the thread.
+     *
+     * @param minSize   the min size of the buffer
+     * @return          the buffer
+     */
+    public static byte[] getThreadBuffer(int minSize) {
+        byte[] buffer = COMPRESS_BUFFER.get();
+        if (buffer != null && buffer.length >= minSize) {
+            return buffer;
+        }
+        buffer = new byte[Math.max(minSize, MIN_BUFFER_SIZE)];
+        if (buffer.length <= MAX_CACHED_BUFFER_SIZE) {
+            COMPRESS_BUFFER.set(buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * Compress the data, the data is compressed into the buffer of the current thread,
+     * only the result is allocated.
+     *
+     * @param compressType   the compression type
+     * @param src            the input array
+     * @param srcOffset      the offset of the input
+     * @param length         the length of the input
+     * @return               the compressed data
+     */
+    public static byte[] compress(CompressType compressType,
+            byte[] src, int srcOffset, int length) throws IOException {
+        Compressor compressor = getAvailableCompressor(compressType);
+        byte[] buffer = getThreadBuffer(compressor.maxCompressedLength(length));
+        int compressedLen = compressor.compress(src, srcOffset, length, buffer, 0);
+        byte[] result = new byte[compressedLen];
+        System.arraycopy(buffer, 0, result, 0, compressedLen);
+        return result;
+    }
+
+    /**
+     * Uncompress the data.
+     *
+     * @param compressType   the compression type
+     * @param src            the compressed array
+     * @param srcOffset      the offset of the compressed data
+     * @param length         the length of the compressed data
+     * @return               the uncompressed data
+     */
+    public static byte[] uncompress(CompressType compressType,
+            byte[] src, int srcOffset, int length) throws IOException {
+        Compressor compressor = getAvailableCompressor(compressType);
+        byte[] result = new byte[compressor.uncompressedLength(src, srcOffset, length)];
+        compressor.uncompress(src, srcOffset, length, result, 0);
+        return result;
+    }
+
+    /**
+     * Get the compressor of the compression type.
+     *
+     * @param compressType   the compression type
+     * @return               the compressor
+     * @throws IOException   if the type is NONE, unknown or unavailable
+     */
+    public static Compressor getAvailableCompressor(CompressType compressType) throws IOException {
+        Compressor compressor = getCompressor(compressType);
+        if (compressor == null) {
+            throw new IOException("Unsupported compress type "
+                    + (compressType == null ? "null" : compressType.getName()));
+        }
+        return compressor;
+    }
+
+    static void writeLength(byte[] dst, int offset, int length) {
+        dst[offset] = (byte) (length >>> 24);
+        dst[offset + 1] = (byte) (length >>> 16);
+        dst[offset + 2] = (byte) (length >>> 8);
+        dst[offset + 3] = (byte) length;
+    }
+
+    /**
+     * Read the uncompressed length prefix, which is checked against the compressed length,
+     * so a corrupted prefix does not make the receiver allocate a huge output buffer.
+     *
+     * @param src        the compressed array
+     * @param offset     the offset of the compressed data
+     * @param length     the length of the compressed data, including the prefix
+     * @param maxRatio   the max ratio of the uncompressed length to the compressed one
+     * @return           the uncompressed length
+     * @throws IOException   if the prefix is absent, negative, or exceeds the max ratio
+     */
+    static int readLength(byte[] src, int offset, int length, int maxRatio) throws IOException {
+        if (length < LENGTH_PREFIX_SIZE) {
+            throw new IOException("Invalid compressed data, length " + length);
+        }
+        int uncompressedLen = ((src[offset] & 0xFF) << 24)
+                | ((src[offset + 1] & 0xFF) << 16)
+                | ((src[offset + 2] & 0xFF) << 8)
+                | (src[offset + 3] & 0xFF);
+        if (uncompressedLen < 0
+                || uncompressedLen > (long) (length - LENGTH_PREFIX_SIZE) * maxRatio) {
+            throw new IOException("Invalid uncompressed length " + uncompressedLen
+                    + " of compressed length " + length);
+        }
+        return uncompressedLen;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.common.msg.compress;
+
+import java.io.IOException;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+/**
+ * LZ4 compressor, the compressed data is a 4 bytes uncompressed length
+ * followed by a LZ4 block.
+ *
+ * It trades ratio for speed, and needs the lz4-java library in the classpath.
+ */
+public class Lz4Compressor implements Compressor {
+
+    // each byte of a LZ4 block expands to 255 bytes at most, by the match length bytes
+    static final int MAX_RATIO = 255;
+
+    private final LZ4Compressor compressor;
+    private final LZ4SafeDecompressor decompressor;
+
+    public Lz4Compressor() {
+        this(false);
+    }
+
+    /**
+     * Constructs a LZ4 compressor.
+     *
+     * @param highCompression   whether to use the LZ4 HC compressor, which has a better
+     *                          ratio at a lower compression speed, the data is uncompressed
+     *                          at the same speed
+     */
+    public Lz4Compressor(boolean highCompression) {
+        LZ4Factory factory = LZ4Factory.fastestInstance();
+        this.compressor = highCompression ? factory.highCompressor() : factory.fastCompressor();
+        this.decompressor = factory.safeDecompressor();
+    }
+
+    @Override
+    public CompressType getType() {
+        return CompressType.LZ4;
+    }
+
+    @Override
+    public int maxCompressedLength(int length) {
+        return Compressors.LENGTH_PREFIX_SIZE + compressor.maxCompressedLength(length);
+    }
+
+    @Override
+    public int compress(byte[] src, int srcOffset, int length,
+            byte[] dst, int dstOffset) throws IOException {
+        try {
+            Compressors.writeLength(dst, dstOffset, length);
+            return Compressors.LENGTH_PREFIX_SIZE + compressor.compress(src, srcOffset, length,
+                    dst, dstOffset + Compressors.LENGTH_PREFIX_SIZE,
+                    dst.length - dstOffset - Compressors.LENGTH_PREFIX_SIZE);
+        } catch (LZ4Exception e) {
+            throw new IOException("LZ4 compress error", e);
+        }
+    }
+
+    @Override
+    public int uncompressedLength(byte[] src, int srcOffset, int length) throws IOException {
+        return Compressors.readLength(src, srcOffset, length, MAX_RATIO);
+    }
+
+    @Override
+    public int uncompress(byte[] src, int srcOffset, int length,
+            byte[] dst, int dstOffset) throws IOException {
+        int uncompressedLen = Compressors.readLength(src, srcOffset, length, MAX_RATIO);
+        try {
+            int realLen = decompressor.decompress(src, srcOffset + Compressors.LENGTH_PREFIX_SIZE,
+                    length - Compressors.LENGTH_PREFIX_SIZE, dst, dstOffset, uncompressedLen);
+            if (realLen != uncompressedLen) {
+                throw new IOException("LZ4 uncompressed length mismatch, expected "
+                        + uncompressedLen + ", actual " + realLen);
+            }
+            return realLen;
+        } catch (LZ4Exception e) {
+            throw new IOException("LZ4 uncompress error", e);
+        }
+    }
+}
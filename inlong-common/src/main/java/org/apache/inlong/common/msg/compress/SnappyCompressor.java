@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.common.msg.compress;
+
+import java.io.IOException;
+
+import org.xerial.snappy.Snappy;
+
+/**
+ * Snappy compressor, the raw snappy format carries the uncompressed length itself.
+ */
+public class SnappyCompressor implements Compressor {
+
+    @Override
+    public CompressType getType() {
+        return CompressType.SNAPPY;
+    }
+
+    @Override
+    public int maxCompressedLength(int length) {
+        return Snappy.maxCompressedLength(length);
+    }
+
+    @Override
+    public int compress(byte[] src, int srcOffset, int length,
+            byte[] dst, int dstOffset) throws IOException {
+        return Snappy.compress(src, srcOffset, length, dst, dstOffset);
+    }
+
+    @Override
+    public int uncompressedLength(byte[] src, int srcOffset, int length) throws IOException {
+        return Snappy.uncompressedLength(src, srcOffset, length);
+    }
+
+    @Override
+    public int uncompress(byte[] src, int srcOffset, int length,
+            byte[] dst, int dstOffset) throws IOException {
+        return Snappy.uncompress(src, srcOffset, length, dst, dstOffset);
+    }
+}
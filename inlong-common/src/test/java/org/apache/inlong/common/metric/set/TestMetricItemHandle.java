@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.common.metric.set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.inlong.common.metric.MetricItem;
+import org.apache.inlong.common.metric.MetricItemHandle;
+import org.apache.inlong.common.metric.MetricItemSet;
+import org.apache.inlong.common.metric.MetricUtils;
+import org.junit.Test;
+
+/**
+ * 
+ * TestMetricItemHandle
+ */
+public class TestMetricItemHandle {
+
+    /**
+     * testHandleAcrossSnapshot
+     */
+    @Test
+    public void testHandleAcrossSnapshot() {
+        MetricItemSet<DataProxyMetricItem> itemSet = new MetricItemSet<DataProxyMetricItem>("HandleTest") {
+
+            @Override
+            protected DataProxyMetricItem createItem() {
+                return new DataProxyMetricItem();
+            }
+        };
+        Map<String, String> dimensions = new HashMap<>();
+        dimensions.put("sourceId", "agent-source");
+        dimensions.put("inlongGroupId", "03a00000026");
+        MetricItemHandle<DataProxyMetricItem> handle = itemSet.createHandle(dimensions);
+        assertEquals(MetricUtils.getDimensionsKey(dimensions), handle.getDimensionsKey());
+        // the handle and findMetricItem share the same item
+        DataProxyMetricItem item = handle.getItem();
+        assertSame(item, handle.getItem());
+        assertSame(item, itemSet.findMetricItem(dimensions));
+        item.readSuccessCount.incrementAndGet();
+        // the dimensions are copied by the handle
+        dimensions.put("inlongGroupId", "03a00000126");
+        assertSame(item, handle.getItem());
+        // the handle resolves a new item after snapshot
+        List<MetricItem> items = itemSet.snapshot();
+        assertEquals(1, items.size());
+        assertSame(item, items.get(0));
+        DataProxyMetricItem newItem = handle.getItem();
+        assertNotSame(item, newItem);
+        newItem.readSuccessCount.addAndGet(2);
+        items = itemSet.snapshot();
+        assertEquals(1, items.size());
+        assertEquals(2, items.get(0).snapshot().get("readSuccessCount").value);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.common.monitor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+/**
+ * Test for {@link MonitorIndex}
+ */
+public class MonitorIndexTest {
+
+    @Test
+    public void testSnapshotAndReset() {
+        MonitorIndex monitorIndex = new MonitorIndex("Test", 3600, 2);
+        try {
+            monitorIndex.addAndGet("key1", 1, 1, 100, 0);
+            monitorIndex.addAndGet("key1", 2, 1, 200, 1);
+            monitorIndex.addAndGet("key2", 5, 2, 50, 0);
+            // exceed the max count
+            monitorIndex.addAndGet("key3", 1, 1, 1, 1);
+            Map<String, String> counterExt = new HashMap<>();
+            monitorIndex.snapshotAndReset(counterExt);
+            assertEquals(2, counterExt.size());
+            assertEquals("3#2#300#1", counterExt.get("key1"));
+            assertEquals("5#2#50#0", counterExt.get("key2"));
+            // the values are reset
+            counterExt.clear();
+            monitorIndex.addAndGet("key1", 1, 1, 10, 0);
+            monitorIndex.snapshotAndReset(counterExt);
+            assertEquals(1, counterExt.size());
+            assertEquals("1#1#10#0", counterExt.get("key1"));
+            // the idle key2 is removed, so key3 can be counted
+            counterExt.clear();
+            monitorIndex.addAndGet("key3", 1, 1, 1, 1);
+            monitorIndex.snapshotAndReset(counterExt);
+            assertEquals(1, counterExt.size());
+            assertEquals("1#1#1#1", counterExt.get("key3"));
+        } finally {
+            monitorIndex.shutDown();
+        }
+    }
+
+    @Test
+    public void testConcurrentAdd() throws Exception {
+        final MonitorIndex monitorIndex = new MonitorIndex("Test", 3600, 100);
+        final int threadCnt = 4;
+        final int loopCnt = 100000;
+        final CountDownLatch latch = new CountDownLatch(threadCnt);
+        try {
+            for (int i = 0; i < threadCnt; i++) {
+                new Thread(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        for (int j = 0; j < loopCnt; j++) {
+                            monitorIndex.addAndGet("key" + (j % 10), 1, 1, 10, 0);
+                        }
+                        latch.countDown();
+                    }
+                }).start();
+            }
+            long total = 0;
+            Map<String, String> counterExt = new HashMap<>();
+            while (latch.getCount() > 0) {
+                monitorIndex.snapshotAndReset(counterExt);
+                total += sumMsgCnt(counterExt);
+                counterExt.clear();
+            }
+            // collect the increments through the retired counters
+            monitorIndex.snapshotAndReset(counterExt);
+            total += sumMsgCnt(counterExt);
+            counterExt.clear();
+            monitorIndex.snapshotAndReset(counterExt);
+            total += sumMsgCnt(counterExt);
+            assertEquals((long) threadCnt * loopCnt, total);
+            assertTrue(counterExt.isEmpty());
+        } finally {
+            monitorIndex.shutDown();
+        }
+    }
+
+    private long sumMsgCnt(Map<String, String> counterExt) {
+        long total = 0;
+        for (String value : counterExt.values()) {
+            total += Long.parseLong(value.split("#")[0]);
+        }
+        return total;
+    }
+}
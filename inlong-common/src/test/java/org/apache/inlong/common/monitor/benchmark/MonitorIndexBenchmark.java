@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.common.monitor.benchmark;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.inlong.common.monitor.MonitorIndex;
+
+/**
+ * MonitorIndexBenchmark, compare the per-message cost of {@link MonitorIndex#addAndGet}
+ * with the former implementation, which kept the counters of a key in a '#' joined string
+ * and parsed and rebuilt the string for each increment.
+ *
+ * Usage: MonitorIndexBenchmark [threadCount] [keyCount] [loopCount]
+ */
+public class MonitorIndexBenchmark {
+
+    private final int threadCount;
+    private final int keyCount;
+    private final int loopCount;
+    private final String[] keys;
+
+    public MonitorIndexBenchmark(int threadCount, int keyCount, int loopCount) {
+        this.threadCount = threadCount;
+        this.keyCount = keyCount;
+        this.loopCount = loopCount;
+        this.keys = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            this.keys[i] = "groupId_" + i + "#streamId#127.0.0.1#127.0.0.2";
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threadCount = 8;
+        int keyCount = 100;
+        int loopCount = 2000000;
+        if (args.length > 0) {
+            threadCount = Integer.parseInt(args[0]);
+        }
+        if (args.length > 1) {
+            keyCount = Integer.parseInt(args[1]);
+        }
+        if (args.length > 2) {
+            loopCount = Integer.parseInt(args[2]);
+        }
+        new MonitorIndexBenchmark(threadCount, keyCount, loopCount).start();
+    }
+
+    /**
+     * Start benchmark test, each mode is warmed up before measured.
+     */
+    public void start() throws Exception {
+        final StringCounterIndex stringIndex = new StringCounterIndex();
+        final MonitorIndex monitorIndex = new MonitorIndex("Benchmark", 3600, keyCount * 2);
+        try {
+            IndexWriter stringWriter = new IndexWriter() {
+
+                @Override
+                public void addAndGet(String key) {
+                    stringIndex.addAndGet(key, 1, 1, 1024, 0);
+                }
+            };
+            IndexWriter adderWriter = new IndexWriter() {
+
+                @Override
+                public void addAndGet(String key) {
+                    monitorIndex.addAndGet(key, 1, 1, 1024, 0);
+                }
+            };
+            runWrite(stringWriter, loopCount / 10);
+            runWrite(adderWriter, loopCount / 10);
+            printResult("string-compute", runWrite(stringWriter, loopCount));
+            printResult("long-adder", runWrite(adderWriter, loopCount));
+        } finally {
+            monitorIndex.shutDown();
+        }
+    }
+
+    private long runWrite(final IndexWriter writer, final int count) throws Exception {
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final CountDownLatch endLatch = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            final int offset = i;
+            new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                        for (int j = 0; j < count; j++) {
+                            writer.addAndGet(keys[(j + offset) % keyCount]);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        endLatch.countDown();
+                    }
+                }
+            }).start();
+        }
+        long startTime = System.nanoTime();
+        startLatch.countDown();
+        endLatch.await();
+        return System.nanoTime() - startTime;
+    }
+
+    private void printResult(String mode, long costNs) {
+        long msgCount = (long) threadCount * loopCount;
+        System.out.println(new StringBuilder(256)
+                .append("[Benchmark] mode=").append(mode)
+                .append(", threads=").append(threadCount)
+                .append(", keys=").append(keyCount)
+                .append(", msgCount=").append(msgCount)
+                .append(", ns/msg=").append(costNs * threadCount / msgCount)
+                .append(", msgs/s=").append((long) (msgCount / (costNs / 1000000000.0)))
+                .toString());
+    }
+
+    private interface IndexWriter {
+
+        void addAndGet(String key);
+    }
+
+    /**
+     * The former counter representation of MonitorIndex, used as the baseline.
+     */
+    private static class StringCounterIndex {
+
+        private final ConcurrentHashMap<String, String> counterMap = new ConcurrentHashMap<>();
+
+        public void addAndGet(String key, int cnt, int packcnt, long packsize, int failcnt) {
+            counterMap.compute(key, (key1, value) -> {
+                if (value != null) {
+                    String[] va = value.split("#");
+                    value = (Integer.parseInt(va[0]) + cnt) + "#"
+                            + (Integer.parseInt(va[1]) + packcnt) + "#"
+                            + (Long.parseLong(va[2]) + packsize) + "#"
+                            + (Integer.parseInt(va[3]) + failcnt);
+                } else {
+                    StringBuilder stringBuilder = new StringBuilder();
+                    value = stringBuilder.append(cnt).append("#").append(packcnt).append("#")
+                            .append(packsize).append("#").append(failcnt).toString();
+                }
+                return value;
+            });
+        }
+    }
+}
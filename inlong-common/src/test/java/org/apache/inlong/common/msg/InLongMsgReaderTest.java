@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.common.msg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Test for {@link InLongMsgReader}
+ */
+public class InLongMsgReaderTest {
+
+    @Test
+    public void testReadDefaultVersions() {
+        InLongMsgReader reader = new InLongMsgReader(16);
+        for (int version = 1; version <= 2; version++) {
+            for (boolean compress : new boolean[]{false, true}) {
+                InLongMsg inLongMsg = InLongMsg.newInLongMsg(compress, version);
+                for (int i = 0; i < 100; i++) {
+                    inLongMsg.addMsg("m=0&iname=stream" + (i % 3),
+                            ("message body " + i).getBytes());
+                }
+                byte[] data = inLongMsg.buildArray(1000L);
+                assertReadSame(reader, data);
+                assertEquals(1000L, reader.getCreatetime());
+                assertEquals(version == 2 ? 100 : 0, reader.getMsgCnt());
+                assertTrue(reader.next());
+                assertEquals("stream0", reader.getAttr("iname"));
+                assertEquals("0", reader.getAttr("m"));
+                assertNull(reader.getAttr("i"));
+                assertEquals("message body 0", new String(reader.getRecordBytes()));
+            }
+        }
+    }
+
+    @Test
+    public void testReadMixAttrVersion() throws IOException {
+        InLongMsgReader reader = new InLongMsgReader();
+        for (boolean compress : new boolean[]{false, true}) {
+            InLongMsg inLongMsg = InLongMsg.newInLongMsg(compress, 3);
+            for (int i = 0; i < 20; i++) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                byte[] body = ("message body " + i).getBytes();
+                byte[] attr = ("rt=" + i + "&seq=" + (i % 4)).getBytes();
+                byte[] body2 = ("second body " + i).getBytes();
+                out.writeInt(body.length);
+                out.write(body);
+                out.writeInt(attr.length);
+                out.write(attr);
+                out.writeInt(body2.length);
+                out.write(body2);
+                out.writeInt(attr.length);
+                out.write(attr);
+                assertTrue(inLongMsg.addMsg("iname=stream" + (i % 2), bytes.toByteArray()));
+            }
+            byte[] data = inLongMsg.buildArray(2000L);
+            assertReadSame(reader, data);
+            assertTrue(reader.next());
+            assertEquals("stream0", reader.getAttr("iname"));
+            assertEquals("0", reader.getAttr("rt"));
+            assertEquals("iname=stream0&rt=0&seq=0", reader.getAttrs());
+            assertTrue(reader.next());
+            assertEquals("second body 0", new String(reader.getRecordBytes()));
+            // the messages of the same common attributes are in the same block
+            assertTrue(reader.next());
+            assertEquals("2", reader.getAttr("rt"));
+            assertEquals("2", reader.getAttr("seq"));
+        }
+    }
+
+    @Test
+    public void testReadBinVersion() throws IOException {
+        InLongMsgReader reader = new InLongMsgReader();
+        for (boolean hasOtherAttr : new boolean[]{false, true}) {
+            for (boolean compress : new boolean[]{false, true}) {
+                InLongMsg inLongMsg = InLongMsg.newInLongMsg(compress, 4);
+                assertTrue(inLongMsg.addMsg(buildBinMsg(hasOtherAttr, 50)));
+                byte[] data = inLongMsg.buildArray();
+                assertReadSame(reader, data);
+                assertEquals(1600000000L * 1000, reader.getCreatetime());
+                assertEquals(50, reader.getMsgCnt());
+                assertTrue(reader.isNumGroupId());
+                assertTrue(reader.next());
+                assertEquals("12", reader.getAttr("groupId"));
+                assertEquals("34", reader.getAttr("streamId"));
+                assertEquals("1600000000000", reader.getAttr("dt"));
+                assertEquals("v", reader.getAttr("common"));
+                // the common attributes override the private attributes
+                assertEquals(hasOtherAttr ? "0" : null, reader.getAttr("rt"));
+                assertEquals("binary body 0", new String(reader.getRecordBytes()));
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidMessage() {
+        InLongMsgReader reader = new InLongMsgReader();
+        assertFalse(reader.reset(new byte[]{0x0f, 0x01, 0x00}));
+        assertFalse(reader.reset("not an inlong message".getBytes()));
+        assertFalse(reader.next());
+        // the iteration stops at the malformed block
+        InLongMsg inLongMsg = InLongMsg.newInLongMsg(false, 1);
+        inLongMsg.addMsg("iname=stream", "message body".getBytes());
+        byte[] data = inLongMsg.buildArray();
+        ByteBuffer.wrap(data).putInt(data.length - 2 - 4 - "message body".length(), 1000);
+        assertTrue(reader.reset(data));
+        assertFalse(reader.next());
+        // the reader is reusable with a buffer
+        byte[] buffer = new byte[data.length + 10];
+        inLongMsg.reset();
+        inLongMsg.addMsg("iname=stream", "message body".getBytes());
+        data = inLongMsg.buildArray();
+        System.arraycopy(data, 0, buffer, 5, data.length);
+        assertTrue(reader.reset(ByteBuffer.wrap(buffer, 5, data.length)));
+        assertTrue(reader.next());
+        assertEquals("message body", new String(reader.getRecordArray(),
+                reader.getRecordOffset(), reader.getRecordLength()));
+        assertEquals(ByteBuffer.wrap("message body".getBytes()), reader.getRecord());
+        assertFalse(reader.next());
+    }
+
+    private void assertReadSame(InLongMsgReader reader, byte[] data) {
+        Map<String, List<String>> expected = new LinkedHashMap<>();
+        InLongMsg inLongMsg = InLongMsg.parseFrom(data);
+        for (String attr : inLongMsg.getAttrs()) {
+            List<String> records = new ArrayList<>();
+            Iterator<byte[]> it = inLongMsg.getIterator(attr);
+            while (it.hasNext()) {
+                records.add(new String(it.next()));
+            }
+            expected.put(attr, records);
+        }
+        Map<String, List<String>> actual = new LinkedHashMap<>();
+        assertTrue(reader.reset(data));
+        while (reader.next()) {
+            List<String> records = actual.get(reader.getAttrs());
+            if (records == null) {
+                records = new ArrayList<>();
+                actual.put(reader.getAttrs(), records);
+            }
+            records.add(new String(reader.getRecordArray(),
+                    reader.getRecordOffset(), reader.getRecordLength()));
+        }
+        assertFalse(reader.next());
+        assertEquals(expected, actual);
+        assertTrue(reader.reset(data));
+    }
+
+    private byte[] buildBinMsg(boolean hasOtherAttr, int msgCnt) throws IOException {
+        ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+        DataOutputStream body = new DataOutputStream(bodyBytes);
+        for (int i = 0; i < msgCnt; i++) {
+            byte[] record = ("binary body " + i).getBytes();
+            body.writeInt(record.length);
+            body.write(record);
+            if (hasOtherAttr) {
+                byte[] attr = ("rt=" + (i % 5) + "&common=private").getBytes();
+                body.writeInt(attr.length);
+                body.write(attr);
+            }
+        }
+        byte[] attr = "common=v&node=127.0.0.1".getBytes();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(bodyBytes.size() + attr.length + 29 - 4);
+        // message type
+        out.writeByte(7);
+        // groupId and streamId
+        out.writeShort(12);
+        out.writeShort(34);
+        // extField
+        out.writeShort(hasOtherAttr ? 0x1 : 0x0);
+        // data time in seconds
+        out.writeInt(1600000000);
+        out.writeShort(msgCnt);
+        // unique id
+        out.writeInt(1);
+        out.writeInt(bodyBytes.size());
+        out.write(bodyBytes.toByteArray());
+        out.writeShort(attr.length);
+        out.write(attr);
+        out.writeShort(0xEE01);
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.common.msg.benchmark;
+
+import java.io.IOException;
+
+import org.apache.inlong.common.msg.compress.CompressType;
+import org.apache.inlong.common.msg.compress.Compressor;
+import org.apache.inlong.common.msg.compress.Compressors;
+
+/**
+ * CompressorBenchmark, compare the compression ratio and the compress and uncompress
+ * throughput of the compressors on a batch of synthetic log lines, which is the typical
+ * body of an InLongMsg block.
+ *
+ * The compress types whose library is not in the classpath are skipped.
+ *
+ * Usage: CompressorBenchmark [batchSize] [loopCount]
+ */
+public class CompressorBenchmark {
+
+    private final int batchSize;
+    private final int loopCount;
+    private final byte[] data;
+    private long checksum = 0L;
+
+    public CompressorBenchmark(int batchSize, int loopCount) {
+        this.batchSize = batchSize;
+        this.loopCount = loopCount;
+        this.data = buildData(batchSize);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int batchSize = 64 * 1024;
+        int loopCount = 5000;
+        if (args.length > 0) {
+            batchSize = Integer.parseInt(args[0]);
+        }
+        if (args.length > 1) {
+            loopCount = Integer.parseInt(args[1]);
+        }
+        new CompressorBenchmark(batchSize, loopCount).start();
+    }
+
+    /**
+     * Start benchmark test, each compressor is warmed up before measured.
+     */
+    public void start() throws IOException {
+        for (CompressType compressType : CompressType.values()) {
+            Compressor compressor = Compressors.getCompressor(compressType);
+            if (compressor == null) {
+                continue;
+            }
+            byte[] compressed = new byte[compressor.maxCompressedLength(batchSize)];
+            byte[] uncompressed = new byte[batchSize];
+            int compressedLen = compressor.compress(data, 0, batchSize, compressed, 0);
+            runCompress(compressor, compressed, loopCount / 10);
+            runUncompress(compressor, compressed, compressedLen, uncompressed, loopCount / 10);
+            long compressNs = runCompress(compressor, compressed, loopCount);
+            long uncompressNs = runUncompress(compressor, compressed, compressedLen,
+                    uncompressed, loopCount);
+            printResult(compressType, compressedLen, compressNs, uncompressNs);
+        }
+        System.out.println("[Benchmark] checksum=" + checksum);
+    }
+
+    private long runCompress(Compressor compressor, byte[] compressed, int count) throws IOException {
+        long startTime = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            checksum += compressor.compress(data, 0, batchSize, compressed, 0);
+        }
+        return System.nanoTime() - startTime;
+    }
+
+    private long runUncompress(Compressor compressor, byte[] compressed,
+            int compressedLen, byte[] uncompressed, int count) throws IOException {
+        long startTime = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            checksum += compressor.uncompress(compressed, 0, compressedLen, uncompressed, 0);
+        }
+        return System.nanoTime() - startTime;
+    }
+
+    private void printResult(CompressType compressType,
+            int compressedLen, long compressNs, long uncompressNs) {
+        double totalMb = (double) batchSize * loopCount / (1024 * 1024);
+        System.out.println(new StringBuilder(256)
+                .append("[Benchmark] mode=").append(compressType.getName())
+                .append(", batchSize=").append(batchSize)
+                .append(", loopCount=").append(loopCount)
+                .append(", ratio=").append(String.format("%.3f", (double) compressedLen / batchSize))
+                .append(", compress MB/s=").append((long) (totalMb / (compressNs / 1000000000.0)))
+                .append(", uncompress MB/s=").append((long) (totalMb / (uncompressNs / 1000000000.0)))
+                .toString());
+    }
+
+    private byte[] buildData(int size) {
+        StringBuilder strBuff = new StringBuilder(size + 256);
+        int index = 0;
+        while (strBuff.length() < size) {
+            strBuff.append("2021-01-01 12:00:").append(index % 60)
+                    .append("|INFO|request from 10.0.").append(index % 16).append('.').append(index % 255)
+                    .append("|uid=").append(index * 7919 % 100000)
+                    .append("|path=/api/v1/items/").append(index % 1000)
+                    .append("|cost=").append(index * 31 % 1000).append("ms\n");
+            index++;
+        }
+        return strBuff.substring(0, size).getBytes();
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.common.msg.benchmark;
+
+import com.google.common.base.Splitter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.inlong.common.msg.InLongMsg;
+import org.apache.inlong.common.msg.InLongMsgReader;
+
+/**
+ * InLongMsgReaderBenchmark, compare the per-record cost of reading the v1 to v4 messages
+ * with {@link InLongMsg#parseFrom(byte[])}, which copies and groups the records by attributes,
+ * and with {@link InLongMsgReader}, which iterates the records over the message data.
+ *
+ * The payloads are built by {@link InLongMsg} with snappy compression, and the attribute
+ * "iname" of every record is read in both modes.
+ *
+ * Usage: InLongMsgReaderBenchmark [recordCount] [recordSize] [loopCount]
+ */
+public class InLongMsgReaderBenchmark {
+
+    private static final Splitter.MapSplitter MAP_SPLITTER =
+            Splitter.on("&").trimResults().withKeyValueSeparator("=");
+
+    private final int recordCount;
+    private final int recordSize;
+    private final int loopCount;
+    private long checksum = 0L;
+
+    public InLongMsgReaderBenchmark(int recordCount, int recordSize, int loopCount) {
+        this.recordCount = recordCount;
+        this.recordSize = recordSize;
+        this.loopCount = loopCount;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int recordCount = 200;
+        int recordSize = 256;
+        int loopCount = 20000;
+        if (args.length > 0) {
+            recordCount = Integer.parseInt(args[0]);
+        }
+        if (args.length > 1) {
+            recordSize = Integer.parseInt(args[1]);
+        }
+        if (args.length > 2) {
+            loopCount = Integer.parseInt(args[2]);
+        }
+        new InLongMsgReaderBenchmark(recordCount, recordSize, loopCount).start();
+    }
+
+    /**
+     * Start benchmark test, each mode is warmed up before measured.
+     */
+    public void start() throws IOException {
+        for (int version = 1; version <= 4; version++) {
+            byte[] data = buildPayload(version);
+            runParseFrom(data, loopCount / 10);
+            runReader(data, loopCount / 10);
+            printResult("parse-from", version, data.length, runParseFrom(data, loopCount));
+            printResult("flyweight-reader", version, data.length, runReader(data, loopCount));
+        }
+        System.out.println("[Benchmark] checksum=" + checksum);
+    }
+
+    private long runParseFrom(byte[] data, int count) {
+        long startTime = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            InLongMsg inLongMsg = InLongMsg.parseFrom(data);
+            for (String attr : inLongMsg.getAttrs()) {
+                Map<String, String> attrMap = MAP_SPLITTER.split(attr);
+                Iterator<byte[]> it = inLongMsg.getIterator(attr);
+                while (it.hasNext()) {
+                    checksum += it.next().length + attrMap.get("iname").length();
+                }
+            }
+        }
+        return System.nanoTime() - startTime;
+    }
+
+    private long runReader(byte[] data, int count) {
+        InLongMsgReader reader = new InLongMsgReader();
+        long startTime = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            reader.reset(data);
+            while (reader.next()) {
+                checksum += reader.getRecordLength() + reader.getAttr("iname").length();
+            }
+        }
+        return System.nanoTime() - startTime;
+    }
+
+    private byte[] buildPayload(int version) throws IOException {
+        InLongMsg inLongMsg = InLongMsg.newInLongMsg(1024 * 1024, true, version);
+        if (version == 4) {
+            inLongMsg.addMsg(buildBinMsg());
+            return inLongMsg.buildArray();
+        }
+        for (int i = 0; i < recordCount; i++) {
+            byte[] record = buildRecord(i);
+            if (version == 3) {
+                // the v3 record carries its private attributes
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                byte[] attr = ("rt=" + System.currentTimeMillis()).getBytes();
+                out.writeInt(record.length);
+                out.write(record);
+                out.writeInt(attr.length);
+                out.write(attr);
+                inLongMsg.addMsg("m=0&iname=stream" + (i % 4), bytes.toByteArray());
+            } else {
+                inLongMsg.addMsg("m=0&iname=stream" + (i % 4), record);
+            }
+        }
+        return inLongMsg.buildArray();
+    }
+
+    private byte[] buildBinMsg() throws IOException {
+        ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+        DataOutputStream body = new DataOutputStream(bodyBytes);
+        for (int i = 0; i < recordCount; i++) {
+            byte[] record = buildRecord(i);
+            byte[] attr = ("rt=" + System.currentTimeMillis() + "&iname=stream" + (i % 4)).getBytes();
+            body.writeInt(record.length);
+            body.write(record);
+            body.writeInt(attr.length);
+            body.write(attr);
+        }
+        byte[] attr = "node=127.0.0.1".getBytes();
+        ByteBuffer buffer = ByteBuffer.allocate(bodyBytes.size() + attr.length + 29);
+        buffer.putInt(bodyBytes.size() + attr.length + 29 - 4);
+        // message type
+        buffer.put((byte) 7);
+        // groupId, streamId
+        buffer.putShort((short) 1);
+        buffer.putShort((short) 2);
+        // extField, with private attributes
+        buffer.putShort((short) 0x1);
+        buffer.putInt((int) (System.currentTimeMillis() / 1000));
+        buffer.putShort((short) recordCount);
+        // unique id
+        buffer.putInt(1);
+        buffer.putInt(bodyBytes.size());
+        buffer.put(bodyBytes.toByteArray());
+        buffer.putShort((short) attr.length);
+        buffer.put(attr);
+        buffer.putShort((short) 0xEE01);
+        buffer.flip();
+        return buffer.array();
+    }
+
+    private byte[] buildRecord(int index) {
+        byte[] record = new byte[recordSize];
+        for (int j = 0; j < recordSize; j++) {
+            record[j] = (byte) ('a' + (index + j) % 26);
+        }
+        return record;
+    }
+
+    private void printResult(String mode, int version, int payloadSize, long costNs) {
+        long recordTotal = (long) recordCount * loopCount;
+        System.out.println(new StringBuilder(256)
+                .append("[Benchmark] mode=").append(mode)
+                .append(", version=").append(version)
+                .append(", records=").append(recordCount)
+                .append(", payloadSize=").append(payloadSize)
+                .append(", ns/record=").append(costNs / recordTotal)
+                .append(", records/s=").append((long) (recordTotal / (costNs / 1000000000.0)))
+                .toString());
+    }
+}
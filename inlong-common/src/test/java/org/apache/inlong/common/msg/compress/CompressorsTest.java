@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.common.msg.compress;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.apache.inlong.common.msg.InLongMsg;
+import org.apache.inlong.common.msg.InLongMsgReader;
+import org.junit.Test;
+
+/**
+ * Test for {@link Compressors}
+ */
+public class CompressorsTest {
+
+    private static final CompressType[] COMPRESS_TYPES =
+            {CompressType.SNAPPY, CompressType.LZ4, CompressType.ZSTD};
+
+    @Test
+    public void testCompressType() {
+        for (CompressType compressType : CompressType.values()) {
+            assertEquals(compressType, CompressType.valueOf(compressType.getValue()));
+            assertEquals(compressType, CompressType.forName(compressType.getName().toUpperCase()));
+        }
+        assertNull(CompressType.valueOf(100));
+        assertNull(CompressType.forName("gzip"));
+        assertNull(Compressors.getCompressor(CompressType.NONE));
+        try {
+            Compressors.getAvailableCompressor(CompressType.valueOf(100));
+            fail("unknown compress type should be rejected");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCompressRoundTrip() throws IOException {
+        byte[] data = buildData(64 * 1024);
+        for (CompressType compressType : COMPRESS_TYPES) {
+            Compressor compressor = Compressors.getAvailableCompressor(compressType);
+            assertEquals(compressType, compressor.getType());
+            byte[] compressed = Compressors.compress(compressType, data, 100, 10000);
+            assertEquals(10000, compressor.uncompressedLength(compressed, 0, compressed.length));
+            byte[] uncompressed = Compressors.uncompress(compressType, compressed, 0, compressed.length);
+            assertArrayEquals(Arrays.copyOfRange(data, 100, 10100), uncompressed);
+            // compress into the middle of a buffer
+            byte[] buffer = new byte[compressor.maxCompressedLength(data.length) + 10];
+            int compressedLen = compressor.compress(data, 0, data.length, buffer, 10);
+            byte[] result = new byte[data.length + 5];
+            assertEquals(data.length, compressor.uncompress(buffer, 10, compressedLen, result, 5));
+            assertArrayEquals(data, Arrays.copyOfRange(result, 5, result.length));
+            // empty data
+            compressed = Compressors.compress(compressType, data, 0, 0);
+            assertEquals(0, Compressors.uncompress(compressType, compressed, 0, compressed.length).length);
+        }
+    }
+
+    @Test
+    public void testZstdDictionary() throws IOException {
+        byte[] dictionary = buildData(4096);
+        ZstdCompressor compressor = new ZstdCompressor(ZstdCompressor.DEFAULT_LEVEL, dictionary);
+        byte[] data = buildData(1000);
+        byte[] buffer = new byte[compressor.maxCompressedLength(data.length)];
+        int compressedLen = compressor.compress(data, 0, data.length, buffer, 0);
+        byte[] result = new byte[data.length];
+        assertEquals(data.length, compressor.uncompress(buffer, 0, compressedLen, result, 0));
+        assertArrayEquals(data, result);
+    }
+
+    @Test
+    public void testInLongMsgCompress() {
+        for (CompressType compressType : COMPRESS_TYPES) {
+            for (int version = 1; version <= 3; version++) {
+                InLongMsg inLongMsg = InLongMsg.newInLongMsg(4096, compressType, version);
+                for (int i = 0; i < 100; i++) {
+                    if (version == 3) {
+                        inLongMsg.addMsg("m=0&iname=stream" + (i % 3),
+                                buildMixMsg("message body " + i, "rt=" + i));
+                    } else {
+                        inLongMsg.addMsg("m=0&iname=stream" + (i % 3),
+                                ("message body " + i).getBytes());
+                    }
+                }
+                byte[] data = inLongMsg.buildArray(1000L);
+                InLongMsg parsed = InLongMsg.parseFrom(data);
+                Iterator<byte[]> it = parsed.getIterator(parsed.getAttrs().iterator().next());
+                assertTrue(it.hasNext());
+                assertEquals("message body 0", new String(it.next()));
+                InLongMsgReader reader = new InLongMsgReader();
+                assertTrue(reader.reset(data));
+                int count = 0;
+                while (reader.next()) {
+                    count++;
+                }
+                assertEquals(100, count);
+            }
+        }
+    }
+
+    @Test
+    public void testCorruptedLengthPrefix() throws IOException {
+        byte[] data = buildData(1024);
+        for (CompressType compressType : new CompressType[]{CompressType.LZ4, CompressType.ZSTD}) {
+            Compressor compressor = Compressors.getAvailableCompressor(compressType);
+            byte[] compressed = Compressors.compress(compressType, data, 0, data.length);
+            // a length far beyond what the compressed data can expand to
+            Compressors.writeLength(compressed, 0, Integer.MAX_VALUE - 8);
+            try {
+                compressor.uncompressedLength(compressed, 0, compressed.length);
+                fail("the corrupted length should be rejected");
+            } catch (IOException e) {
+                // expected
+            }
+            try {
+                Compressors.uncompress(compressType, compressed, 0, compressed.length);
+                fail("the corrupted length should be rejected");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+        byte[] prefix = new byte[Compressors.LENGTH_PREFIX_SIZE + 2];
+        Compressors.writeLength(prefix, 0, 20);
+        assertEquals(20, Compressors.readLength(prefix, 0, prefix.length, 10));
+        Compressors.writeLength(prefix, 0, 21);
+        try {
+            Compressors.readLength(prefix, 0, prefix.length, 10);
+            fail("the length over the max ratio should be rejected");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testBinMsgCompressUtf8Attr() throws IOException {
+        String attrStr = "common=v&name=\u4e2d\u6587";
+        for (CompressType compressType : new CompressType[]{CompressType.LZ4, CompressType.ZSTD}) {
+            InLongMsg inLongMsg = InLongMsg.newInLongMsg(4096, compressType, 4);
+            assertTrue(inLongMsg.addMsg(buildBinMsg(2, attrStr)));
+            byte[] data = inLongMsg.buildArray();
+            // the attributes are kept in UTF-8 whatever the platform charset is
+            byte[] expectAttr = (attrStr + "&cp=" + compressType.getName()).getBytes(StandardCharsets.UTF_8);
+            assertTrue(indexOf(data, expectAttr) >= 0);
+        }
+    }
+
+    @Test
+    public void testBinMsgCompress() throws IOException {
+        for (CompressType compressType : COMPRESS_TYPES) {
+            InLongMsg inLongMsg = InLongMsg.newInLongMsg(4096, compressType, 4);
+            assertTrue(inLongMsg.addMsg(buildBinMsg(20)));
+            byte[] data = inLongMsg.buildArray();
+            InLongMsg parsed = InLongMsg.parseFrom(data);
+            String attr = parsed.getAttrs().iterator().next();
+            // the compress type is carried by the attributes except the default snappy
+            assertEquals(compressType != CompressType.SNAPPY,
+                    attr.contains("cp=" + compressType.getName()));
+            Iterator<byte[]> it = parsed.getIterator(attr);
+            for (int i = 0; i < 20; i++) {
+                assertEquals("binary body " + i, new String(it.next()));
+            }
+            assertFalse(it.hasNext());
+            InLongMsgReader reader = new InLongMsgReader();
+            assertTrue(reader.reset(data));
+            assertTrue(reader.next());
+            assertEquals("binary body 0", new String(reader.getRecordBytes()));
+            assertEquals("v", reader.getAttr("common"));
+        }
+    }
+
+    private byte[] buildData(int size) {
+        StringBuilder strBuff = new StringBuilder(size + 128);
+        int index = 0;
+        while (strBuff.length() < size) {
+            strBuff.append("2021-01-01 00:00:").append(index % 60)
+                    .append(" INFO request from 127.0.0.").append(index % 255)
+                    .append(" cost ").append(index * 7 % 1000).append("ms\n");
+            index++;
+        }
+        return strBuff.substring(0, size).getBytes();
+    }
+
+    private byte[] buildMixMsg(String body, String attr) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(body.length());
+            out.write(body.getBytes());
+            out.writeInt(attr.length());
+            out.write(attr.getBytes());
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private int indexOf(byte[] array, byte[] target) {
+        for (int i = 0; i + target.length <= array.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(array, i, i + target.length), target)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private byte[] buildBinMsg(int msgCnt) throws IOException {
+        return buildBinMsg(msgCnt, "common=v&node=127.0.0.1");
+    }
+
+    private byte[] buildBinMsg(int msgCnt, String attrStr) throws IOException {
+        ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+        DataOutputStream body = new DataOutputStream(bodyBytes);
+        for (int i = 0; i < msgCnt; i++) {
+            byte[] record = ("binary body " + i).getBytes();
+            body.writeInt(record.length);
+            body.write(record);
+        }
+        byte[] attr = attrStr.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(bodyBytes.size() + attr.length + 29 - 4);
+        // message type, groupId, streamId and extField
+        out.writeByte(7);
+        out.writeShort(12);
+        out.writeShort(34);
+        out.writeShort(0x0);
+        // data time in seconds, message count and unique id
+        out.writeInt(1600000000);
+        out.writeShort(msgCnt);
+        out.writeInt(1);
+        out.writeInt(bodyBytes.size());
+        out.write(bodyBytes.toByteArray());
+        out.writeShort(attr.length);
+        out.write(attr);
+        out.writeShort(0xEE01);
+        return bytes.toByteArray();
+    }
+}
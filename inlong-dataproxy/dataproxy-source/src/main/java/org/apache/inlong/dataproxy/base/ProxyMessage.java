@@ -17,6 +17,8 @@
 
 package org.apache.inlong.dataproxy.base;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Map;
 import org.apache.inlong.common.msg.AttributeConstants;
 
@@ -29,12 +31,26 @@ public class ProxyMessage {
     private Map<String, String> attributeMap;
 
     private byte[] data;
+    // the range of the message data in the data array
+    private int dataOffset;
+    private int dataLength;
 
     public ProxyMessage(String groupId, String streamId, Map<String, String> attributeMap, byte[] data) {
+        this(groupId, streamId, attributeMap, data, 0, (data == null) ? 0 : data.length);
+    }
+
+    /**
+     * Constructor, the message data is a range of the data array shared by the messages
+     * of a package, the range is copied out only when {@link #getData()} is called.
+     */
+    public ProxyMessage(String groupId, String streamId, Map<String, String> attributeMap,
+            byte[] data, int dataOffset, int dataLength) {
         this.groupId = groupId;
         this.streamId = streamId;
         this.attributeMap = attributeMap;
         this.data = data;
+        this.dataOffset = dataOffset;
+        this.dataLength = dataLength;
     }
 
     public String getGroupId() {
@@ -72,10 +88,23 @@ public class ProxyMessage {
     }
 
     public byte[] getData() {
+        if (data != null && (dataOffset != 0 || dataLength != data.length)) {
+            this.data = Arrays.copyOfRange(data, dataOffset, dataOffset + dataLength);
+            this.dataOffset = 0;
+        }
         return data;
     }
 
+    /**
+     * getDataBuffer, the message data without copy
+     */
+    public ByteBuffer getDataBuffer() {
+        return ByteBuffer.wrap(data, dataOffset, dataLength);
+    }
+
     public void setData(byte[] data) {
         this.data = data;
+        this.dataOffset = 0;
+        this.dataLength = (data == null) ? 0 : data.length;
     }
 }
@@ -0,0 +1,483 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.dataproxy.channel;
+
+import com.google.common.base.Preconditions;
+
+import org.apache.flume.ChannelException;
+import org.apache.flume.Context;
+import org.apache.flume.Event;
+import org.apache.flume.Transaction;
+import org.apache.flume.channel.AbstractChannel;
+import org.apache.inlong.common.metric.MetricRegister;
+import org.apache.inlong.dataproxy.config.holder.CommonPropertiesHolder;
+import org.apache.inlong.dataproxy.metrics.ChannelMetricItem;
+import org.apache.inlong.dataproxy.utils.BufferQueue;
+import org.apache.inlong.dataproxy.utils.SpillFileQueue;
+import org.apache.inlong.sdk.commons.protocol.ProxyEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SpillableBufferQueueChannel, a {@link BufferQueueChannel} which spills the events
+ * to the memory-mapped segment files when the memory buffer is full.
+ *
+ * The events are kept in memory while the memory buffer has room. Once the buffer is
+ * full, the put events are appended to the spill files instead of blocking the source
+ * threads, and the later events are spilled too until the spilled events are taken,
+ * so the events are taken in the order they are put. The put blocks only when both
+ * the memory buffer and the spill files are full.
+ *
+ * The events returned by a rollback are kept in a head queue and taken before the
+ * events in memory and in the spill files, so a rollback does not change the order.
+ */
+public class SpillableBufferQueueChannel extends AbstractChannel {
+
+    public static final Logger LOG = LoggerFactory.getLogger(SpillableBufferQueueChannel.class);
+
+    public static final String KEY_SPILL_DIR = "spillDir";
+    public static final String DEFAULT_SPILL_DIR = "./spill";
+    public static final String KEY_SPILL_SEGMENT_SIZE_MB = "spillSegmentSizeMb";
+    public static final int DEFAULT_SPILL_SEGMENT_SIZE_MB = 64;
+    public static final String KEY_MAX_SPILL_SIZE_MB = "maxSpillSizeMb";
+    public static final long DEFAULT_MAX_SPILL_SIZE_MB = 10 * 1024L;
+    public static final long METRIC_REFRESH_INTERVAL = 1000L;
+
+    private Context context;
+    private int maxBufferQueueCount;
+    private Semaphore countSemaphore;
+    private int maxBufferQueueSizeKb;
+    private BufferQueue<ProxyEvent> bufferQueue;
+    private File spillDir;
+    private int spillSegmentSize;
+    private long maxSpillSize;
+    private SpillFileQueue spillQueue;
+    // the events returned by the rollbacks, taken before the other events
+    private final LinkedBlockingDeque<SpillableTransaction.TakenEvent> rollbackQueue =
+            new LinkedBlockingDeque<>();
+    private ThreadLocal<SpillableTransaction> currentTransaction = new ThreadLocal<SpillableTransaction>();
+    protected Timer channelTimer;
+    private AtomicLong takeCounter = new AtomicLong(0);
+    private AtomicLong putCounter = new AtomicLong(0);
+    private AtomicLong spillTakeCounter = new AtomicLong(0);
+    private AtomicLong spillPutCounter = new AtomicLong(0);
+    private ChannelMetricItem metricItem;
+
+    /**
+     * Constructor
+     */
+    public SpillableBufferQueueChannel() {
+    }
+
+    /**
+     * put
+     *
+     * @param  event
+     * @throws ChannelException
+     */
+    @Override
+    public void put(Event event) throws ChannelException {
+        if (event instanceof ProxyEvent) {
+            putCounter.incrementAndGet();
+            metricItem.putCount.incrementAndGet();
+            SpillableTransaction transaction = currentTransaction.get();
+            Preconditions.checkState(transaction != null, "No transaction exists for this thread");
+            ProxyEvent profile = (ProxyEvent) event;
+            int eventSize = event.getBody().length;
+            SpillFileQueue tmpSpillQueue = this.spillQueue;
+            if (tmpSpillQueue == null) {
+                this.acquireMemory(eventSize);
+                transaction.doPut(profile);
+            } else if (tmpSpillQueue.isEmpty() && this.tryAcquireMemory(eventSize)) {
+                transaction.doPut(profile);
+            } else if (tmpSpillQueue.hasRoom(eventSize)) {
+                transaction.doSpillPut(profile);
+            } else {
+                // both the memory buffer and the spill files are full
+                this.acquireMemory(eventSize);
+                transaction.doPut(profile);
+            }
+        }
+    }
+
+    /**
+     * take
+     *
+     * @return Event
+     * @throws ChannelException
+     */
+    @Override
+    public Event take() throws ChannelException {
+        SpillableTransaction.TakenEvent takenEvent = this.rollbackQueue.pollFirst();
+        if (takenEvent != null) {
+            SpillableTransaction transaction = currentTransaction.get();
+            Preconditions.checkState(transaction != null, "No transaction exists for this thread");
+            transaction.doRetake(takenEvent);
+            takeCounter.incrementAndGet();
+            metricItem.takeCount.incrementAndGet();
+            return takenEvent.getEvent();
+        }
+        ProxyEvent event = this.bufferQueue.pollRecord();
+        if (event != null) {
+            SpillableTransaction transaction = currentTransaction.get();
+            Preconditions.checkState(transaction != null, "No transaction exists for this thread");
+            transaction.doTake(event);
+            takeCounter.incrementAndGet();
+            metricItem.takeCount.incrementAndGet();
+            return event;
+        }
+        event = this.pollSpill();
+        if (event != null) {
+            SpillableTransaction transaction = currentTransaction.get();
+            Preconditions.checkState(transaction != null, "No transaction exists for this thread");
+            transaction.doSpillTake(event);
+            takeCounter.incrementAndGet();
+            spillTakeCounter.incrementAndGet();
+            metricItem.takeCount.incrementAndGet();
+            metricItem.spillTakeCount.incrementAndGet();
+        }
+        return event;
+    }
+
+    /**
+     * getTransaction
+     *
+     * @return new transaction
+     */
+    @Override
+    public Transaction getTransaction() {
+        SpillableTransaction newTransaction = new SpillableTransaction(this);
+        this.currentTransaction.set(newTransaction);
+        return newTransaction;
+    }
+
+    /**
+     * start
+     */
+    @Override
+    public void start() {
+        try {
+            this.spillQueue = new SpillFileQueue(spillDir, spillSegmentSize, maxSpillSize);
+        } catch (IOException e) {
+            // the channel still works as a BufferQueueChannel
+            LOG.error("Open spill files failure, the spill is disabled, channel:" + getName(), e);
+        }
+        this.metricItem = new ChannelMetricItem();
+        this.metricItem.clusterId = CommonPropertiesHolder.getString(
+                CommonPropertiesHolder.KEY_PROXY_CLUSTER_NAME, "DataProxy");
+        this.metricItem.channelId = getName();
+        MetricRegister.register(metricItem);
+        super.start();
+        try {
+            this.setReloadTimer();
+        } catch (Exception e) {
+            LOG.error(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * stop
+     */
+    @Override
+    public void stop() {
+        super.stop();
+        if (channelTimer != null) {
+            channelTimer.cancel();
+        }
+        MetricRegister.unregister(metricItem);
+        SpillFileQueue tmpSpillQueue = this.spillQueue;
+        if (tmpSpillQueue != null) {
+            // the rolled back events read from the spill files may be in deleted segments
+            SpillableTransaction.TakenEvent takenEvent;
+            while ((takenEvent = this.rollbackQueue.pollFirst()) != null) {
+                if (takenEvent.isInMemory()) {
+                    continue;
+                }
+                try {
+                    tmpSpillQueue.append(encodeEvent(takenEvent.getEvent()));
+                } catch (Throwable e) {
+                    LOG.error("Spill rolled back event failure, channel:" + getName(), e);
+                }
+            }
+            this.spillQueue = null;
+            tmpSpillQueue.close();
+        }
+    }
+
+    /**
+     * setReloadTimer
+     */
+    protected void setReloadTimer() {
+        channelTimer = new Timer(true);
+        long reloadInterval = context.getLong(BufferQueueChannel.KEY_RELOADINTERVAL, 60000L);
+        TimerTask channelTask = new TimerTask() {
+
+            public void run() {
+                SpillFileQueue tmpSpillQueue = spillQueue;
+                LOG.info("queueSize:{},availablePermits:{},maxBufferQueueCount:{},availablePermits:{},"
+                        + "put:{},take:{},spillPut:{},spillTake:{},spillCount:{},spillSize:{}",
+                        bufferQueue.size(),
+                        bufferQueue.availablePermits(),
+                        maxBufferQueueCount,
+                        countSemaphore.availablePermits(),
+                        putCounter.getAndSet(0),
+                        takeCounter.getAndSet(0),
+                        spillPutCounter.getAndSet(0),
+                        spillTakeCounter.getAndSet(0),
+                        (tmpSpillQueue == null) ? 0 : tmpSpillQueue.getSpillCount(),
+                        (tmpSpillQueue == null) ? 0 : tmpSpillQueue.getSpillSize());
+            }
+        };
+        channelTimer.schedule(channelTask,
+                new Date(System.currentTimeMillis() + reloadInterval),
+                reloadInterval);
+        TimerTask metricTask = new TimerTask() {
+
+            public void run() {
+                refreshGaugeMetrics();
+            }
+        };
+        channelTimer.schedule(metricTask, METRIC_REFRESH_INTERVAL, METRIC_REFRESH_INTERVAL);
+    }
+
+    /**
+     * configure
+     *
+     * @param context
+     */
+    @Override
+    public void configure(Context context) {
+        this.context = context;
+        this.maxBufferQueueCount = context.getInteger(BufferQueueChannel.KEY_MAX_BUFFERQUEUE_COUNT,
+                BufferQueueChannel.DEFAULT_MAX_BUFFERQUEUE_COUNT);
+        this.countSemaphore = new Semaphore(maxBufferQueueCount, true);
+        this.maxBufferQueueSizeKb = context.getInteger(BufferQueueChannel.KEY_MAX_BUFFERQUEUE_SIZE_KB,
+                BufferQueueChannel.DEFAULT_MAX_BUFFERQUEUE_SIZE_KB);
+        this.bufferQueue = new BufferQueue<>(maxBufferQueueSizeKb);
+        this.spillDir = new File(context.getString(KEY_SPILL_DIR, DEFAULT_SPILL_DIR), getName());
+        this.spillSegmentSize = context.getInteger(KEY_SPILL_SEGMENT_SIZE_MB,
+                DEFAULT_SPILL_SEGMENT_SIZE_MB) * 1024 * 1024;
+        this.maxSpillSize = context.getLong(KEY_MAX_SPILL_SIZE_MB, DEFAULT_MAX_SPILL_SIZE_MB) * 1024 * 1024;
+    }
+
+    /**
+     * offer the event to memory, the memory tokens of the event have been acquired
+     *
+     * @param event
+     */
+    void offerMemory(ProxyEvent event) {
+        this.bufferQueue.offer(event);
+    }
+
+    /**
+     * release the memory tokens of the event
+     *
+     * @param event
+     */
+    void releaseMemory(ProxyEvent event) {
+        this.countSemaphore.release();
+        this.bufferQueue.release(event.getBody().length);
+    }
+
+    /**
+     * append the event to the spill files, the event is kept in memory if the append fails
+     *
+     * @param event
+     */
+    void spill(ProxyEvent event) {
+        SpillFileQueue tmpSpillQueue = this.spillQueue;
+        if (tmpSpillQueue != null) {
+            try {
+                tmpSpillQueue.append(encodeEvent(event));
+                spillPutCounter.incrementAndGet();
+                metricItem.spillPutCount.incrementAndGet();
+                return;
+            } catch (Throwable e) {
+                LOG.error("Spill event failure, channel:" + getName(), e);
+            }
+        }
+        this.acquireMemory(event.getBody().length);
+        this.bufferQueue.offer(event);
+    }
+
+    /**
+     * return the taken events to the head of the channel in the order they were taken,
+     * the events taken from memory keep their memory tokens until they are committed
+     *
+     * @param takenEvents
+     */
+    void restoreHead(List<SpillableTransaction.TakenEvent> takenEvents) {
+        ListIterator<SpillableTransaction.TakenEvent> iterator = takenEvents.listIterator(takenEvents.size());
+        while (iterator.hasPrevious()) {
+            this.rollbackQueue.offerFirst(iterator.previous());
+        }
+    }
+
+    private boolean tryAcquireMemory(int eventSize) {
+        if (!this.countSemaphore.tryAcquire()) {
+            return false;
+        }
+        if (this.bufferQueue.tryAcquire(eventSize)) {
+            return true;
+        }
+        this.countSemaphore.release();
+        return false;
+    }
+
+    private void acquireMemory(int eventSize) {
+        this.countSemaphore.acquireUninterruptibly();
+        this.bufferQueue.acquire(eventSize);
+    }
+
+    private ProxyEvent pollSpill() {
+        SpillFileQueue tmpSpillQueue = this.spillQueue;
+        if (tmpSpillQueue == null) {
+            return null;
+        }
+        byte[] data;
+        while ((data = tmpSpillQueue.poll()) != null) {
+            try {
+                return decodeEvent(data);
+            } catch (Throwable e) {
+                LOG.error("Decode spilled event failure, the event is dropped, channel:" + getName(), e);
+            }
+        }
+        return null;
+    }
+
+    private void refreshGaugeMetrics() {
+        metricItem.queueSize.set(bufferQueue.size() + rollbackQueue.size());
+        SpillFileQueue tmpSpillQueue = this.spillQueue;
+        if (tmpSpillQueue == null) {
+            return;
+        }
+        metricItem.spillCount.set(tmpSpillQueue.getSpillCount());
+        metricItem.spillSize.set(tmpSpillQueue.getSpillSize());
+        long headAppendTime = tmpSpillQueue.getHeadAppendTime();
+        metricItem.spillBacklogAge.set(
+                (headAppendTime == 0L) ? 0L : System.currentTimeMillis() - headAppendTime);
+    }
+
+    /**
+     * encode the event to the spill record
+     *
+     * @param  event
+     * @return the record data
+     * @throws IOException
+     */
+    static byte[] encodeEvent(ProxyEvent event) throws IOException {
+        byte[] body = event.getBody();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length + 256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        Map<String, String> headers = event.getHeaders();
+        out.writeInt(headers.size());
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            writeString(out, entry.getKey());
+            writeString(out, entry.getValue());
+        }
+        writeString(out, event.getInlongGroupId());
+        writeString(out, event.getInlongStreamId());
+        writeString(out, event.getUid());
+        writeString(out, event.getSourceIp());
+        writeString(out, event.getTopic());
+        out.writeLong(event.getMsgTime());
+        out.writeLong(event.getSourceTime());
+        out.writeInt(body.length);
+        out.write(body);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * decode the event from the spill record
+     *
+     * @param  data
+     * @return the event
+     * @throws IOException
+     */
+    static ProxyEvent decodeEvent(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        int headerCount = in.readInt();
+        Map<String, String> headers = new HashMap<>(headerCount * 2);
+        for (int i = 0; i < headerCount; i++) {
+            String key = readString(in);
+            headers.put(key, readString(in));
+        }
+        ProxyEvent event = new ProxyEvent();
+        event.setInlongGroupId(readString(in));
+        event.setInlongStreamId(readString(in));
+        event.setUid(readString(in));
+        String sourceIp = readString(in);
+        String topic = readString(in);
+        event.setMsgTime(in.readLong());
+        event.setSourceTime(in.readLong());
+        byte[] body = new byte[in.readInt()];
+        in.readFully(body);
+        event.setBody(body);
+        // the setters of sourceIp and topic also put the headers
+        event.setHeaders(headers);
+        if (sourceIp != null) {
+            event.setSourceIp(sourceIp);
+        }
+        if (topic != null) {
+            event.setTopic(topic);
+        }
+        return event;
+    }
+
+    /**
+     * write the string as [int length][UTF-8 bytes], the length of null is -1
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
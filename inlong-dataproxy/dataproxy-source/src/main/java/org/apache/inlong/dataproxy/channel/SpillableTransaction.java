@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.dataproxy.channel;
+
+import org.apache.flume.Transaction;
+import org.apache.inlong.sdk.commons.protocol.ProxyEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SpillableTransaction, the transaction of {@link SpillableBufferQueueChannel}.
+ *
+ * It has the same semantics as {@link ProxyTransaction}: the put events are visible
+ * after commit, and the taken events are returned to the head of the channel on
+ * rollback, in the order they were taken. The memory tokens are held only by the
+ * events put to or taken from memory.
+ */
+public class SpillableTransaction implements Transaction {
+
+    private final SpillableBufferQueueChannel channel;
+    // the taken events in the order they were taken
+    private final List<TakenEvent> takeList = new ArrayList<>();
+    private final List<ProxyEvent> putList = new ArrayList<>();
+    private final List<ProxyEvent> spillPutList = new ArrayList<>();
+
+    /**
+     * Constructor
+     *
+     * @param channel
+     */
+    public SpillableTransaction(SpillableBufferQueueChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * begin
+     */
+    @Override
+    public void begin() {
+    }
+
+    /**
+     * commit
+     */
+    @Override
+    public void commit() {
+        for (TakenEvent takenEvent : takeList) {
+            if (takenEvent.inMemory) {
+                channel.releaseMemory(takenEvent.event);
+            }
+        }
+        this.takeList.clear();
+        for (ProxyEvent event : putList) {
+            channel.offerMemory(event);
+        }
+        this.putList.clear();
+        for (ProxyEvent event : spillPutList) {
+            channel.spill(event);
+        }
+        this.spillPutList.clear();
+    }
+
+    /**
+     * rollback
+     */
+    @Override
+    public void rollback() {
+        channel.restoreHead(takeList);
+        this.takeList.clear();
+        for (ProxyEvent event : putList) {
+            channel.releaseMemory(event);
+        }
+        this.putList.clear();
+        this.spillPutList.clear();
+    }
+
+    /**
+     * close
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * doTake, the event is taken from memory
+     *
+     * @param event
+     */
+    public void doTake(ProxyEvent event) {
+        this.takeList.add(new TakenEvent(event, true));
+    }
+
+    /**
+     * doSpillTake, the event is taken from the spill files
+     *
+     * @param event
+     */
+    public void doSpillTake(ProxyEvent event) {
+        this.takeList.add(new TakenEvent(event, false));
+    }
+
+    /**
+     * doRetake, the event is taken again after a rollback
+     *
+     * @param takenEvent
+     */
+    public void doRetake(TakenEvent takenEvent) {
+        this.takeList.add(takenEvent);
+    }
+
+    /**
+     * doPut, the memory tokens of the event have been acquired
+     *
+     * @param event
+     */
+    public void doPut(ProxyEvent event) {
+        this.putList.add(event);
+    }
+
+    /**
+     * doSpillPut, the event is spilled to the disk on commit
+     *
+     * @param event
+     */
+    public void doSpillPut(ProxyEvent event) {
+        this.spillPutList.add(event);
+    }
+
+    /**
+     * TakenEvent, a taken event and whether it holds the memory tokens
+     */
+    public static class TakenEvent {
+
+        private final ProxyEvent event;
+        private final boolean inMemory;
+
+        public TakenEvent(ProxyEvent event, boolean inMemory) {
+            this.event = event;
+            this.inMemory = inMemory;
+        }
+
+        public ProxyEvent getEvent() {
+            return event;
+        }
+
+        public boolean isInMemory() {
+            return inMemory;
+        }
+    }
+}
@@ -73,6 +73,7 @@ public class ConfigConstants {
 
     public static final String UDP_PROTOCOL = "udp";
     public static final String TCP_PROTOCOL = "tcp";
+    public static final String HTTP_PROTOCOL = "http";
 
     public static final String TOPIC_KEY = "topic";
     public static final String REMOTE_IP_KEY = "srcIp";
@@ -28,15 +28,26 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * DispatchManager
+ *
+ * The dispatch profiles are aggregated in stripes selected by the uid, each stripe keeps
+ * the profiles of its uids by the dispatch time and is guarded by its own lock, so the
+ * events of the same uid and minute always go to one profile, and a full profile is
+ * replaced in the lock before it is handed to the dispatch queue. The profiles waiting
+ * in a dispatch queue are bounded, when the workers fall behind the caller waits up to the
+ * offer timeout, then a pack is rejected so that the source resends it, and a profile of
+ * committed events is counted as queue full and keeps waiting. A pack is rejected only while
+ * none of its profiles is queued; once a profile is queued the rest of the pack keeps waiting,
+ * so the source is acked by the final outcome of all the profiles and never resends a part
+ * that is already dispatched.
  */
 public class DispatchManager {
 
@@ -44,23 +55,32 @@ public class DispatchManager {
     public static final String KEY_DISPATCH_TIMEOUT = "dispatchTimeout";
     public static final String KEY_DISPATCH_MAX_PACKCOUNT = "dispatchMaxPackCount";
     public static final String KEY_DISPATCH_MAX_PACKSIZE = "dispatchMaxPackSize";
+    public static final String KEY_DISPATCH_STRIPES = "dispatchStripes";
+    public static final String KEY_DISPATCH_MAX_QUEUE_SIZE = "dispatchMaxQueueSize";
+    public static final String KEY_DISPATCH_OFFER_TIMEOUT = "dispatchOfferTimeout";
     public static final long DEFAULT_DISPATCH_TIMEOUT = 2000;
     public static final long DEFAULT_DISPATCH_MAX_PACKCOUNT = 256;
     public static final long DEFAULT_DISPATCH_MAX_PACKSIZE = 327680;
+    public static final int DEFAULT_DISPATCH_STRIPES = 16;
+    public static final int DEFAULT_DISPATCH_MAX_QUEUE_SIZE = 4096;
+    public static final long DEFAULT_DISPATCH_OFFER_TIMEOUT = 1000;
     public static final long MINUTE_MS = 60L * 1000;
 
     private final long dispatchTimeout;
     private final long maxPackCount;
     private final long maxPackSize;
-    private final ArrayList<LinkedBlockingQueue<DispatchProfile>> dispatchQueues;
+    private final long offerTimeout;
+    private final ArrayList<DispatchQueue> dispatchQueues;
 
     private final AtomicInteger sendIndex = new AtomicInteger();
 
-    private ConcurrentHashMap<String, DispatchProfile> profileCache = new ConcurrentHashMap<>();
+    private final DispatchStripe[] stripes;
     // flag that manager need to output overtime data.
     private AtomicBoolean needOutputOvertimeData = new AtomicBoolean(false);
     private AtomicLong inCounter = new AtomicLong(0);
     private AtomicLong outCounter = new AtomicLong(0);
+    private AtomicLong queueFullCounter = new AtomicLong(0);
+    private AtomicLong rejectCounter = new AtomicLong(0);
 
     /**
      * Constructor
@@ -68,11 +88,17 @@ public class DispatchManager {
      * @param context
      * @param dispatchQueues
      */
-    public DispatchManager(Context context, ArrayList<LinkedBlockingQueue<DispatchProfile>> dispatchQueues) {
+    public DispatchManager(Context context, ArrayList<DispatchQueue> dispatchQueues) {
         this.dispatchQueues = dispatchQueues;
         this.dispatchTimeout = context.getLong(KEY_DISPATCH_TIMEOUT, DEFAULT_DISPATCH_TIMEOUT);
         this.maxPackCount = context.getLong(KEY_DISPATCH_MAX_PACKCOUNT, DEFAULT_DISPATCH_MAX_PACKCOUNT);
         this.maxPackSize = context.getLong(KEY_DISPATCH_MAX_PACKSIZE, DEFAULT_DISPATCH_MAX_PACKSIZE);
+        this.offerTimeout = context.getLong(KEY_DISPATCH_OFFER_TIMEOUT, DEFAULT_DISPATCH_OFFER_TIMEOUT);
+        int stripeCount = Math.max(1, context.getInteger(KEY_DISPATCH_STRIPES, DEFAULT_DISPATCH_STRIPES));
+        this.stripes = new DispatchStripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            this.stripes[i] = new DispatchStripe();
+        }
     }
 
     /**
@@ -84,40 +110,80 @@ public class DispatchManager {
         // parse
         String eventUid = event.getUid();
         long dispatchTime = event.getMsgTime() - event.getMsgTime() % MINUTE_MS;
-        String dispatchKey = eventUid + "." + dispatchTime;
-        // find dispatch profile
-        DispatchProfile dispatchProfile = this.profileCache.get(dispatchKey);
-        if (dispatchProfile == null) {
-            dispatchProfile = new DispatchProfile(eventUid, event.getInlongGroupId(), event.getInlongStreamId(),
-                    dispatchTime);
-            this.profileCache.put(dispatchKey, dispatchProfile);
+        DispatchProfile fullProfile = null;
+        DispatchStripe stripe = this.stripes[(eventUid.hashCode() & Integer.MAX_VALUE) % stripes.length];
+        synchronized (stripe) {
+            // find dispatch profile
+            List<DispatchProfile> uidProfiles = stripe.getUidProfiles(eventUid);
+            int index = DispatchStripe.indexOf(uidProfiles, dispatchTime);
+            DispatchProfile dispatchProfile;
+            if (index < 0) {
+                dispatchProfile = this.newDispatchProfile(eventUid, event, dispatchTime);
+                uidProfiles.add(dispatchProfile);
+            } else {
+                dispatchProfile = uidProfiles.get(index);
+            }
+            // add event, the full profile is replaced before any other event is added to it
+            if (!dispatchProfile.addEvent(event, maxPackCount, maxPackSize)) {
+                fullProfile = dispatchProfile;
+                dispatchProfile = this.newDispatchProfile(eventUid, event, dispatchTime);
+                uidProfiles.set((index < 0) ? uidProfiles.size() - 1 : index, dispatchProfile);
+                dispatchProfile.addEvent(event, maxPackCount, maxPackSize);
+            }
+            addSendIndex(event, dispatchProfile);
         }
-        // add event
-        boolean addResult = dispatchProfile.addEvent(event, maxPackCount, maxPackSize);
-        addSendIndex(event, dispatchProfile);
-        if (!addResult) {
-            DispatchProfile newDispatchProfile = new DispatchProfile(eventUid, event.getInlongGroupId(),
-                    event.getInlongStreamId(), dispatchTime);
-            DispatchProfile oldDispatchProfile = this.profileCache.put(dispatchKey, newDispatchProfile);
-            this.dispatchQueues.get(dispatchProfile.getSendIndex() % dispatchQueues.size())
-                    .offer(dispatchProfile);
-            outCounter.addAndGet(dispatchProfile.getCount());
-            newDispatchProfile.addEvent(event, maxPackCount, maxPackSize);
+        if (fullProfile != null) {
+            this.offerDispatchQueue(fullProfile, false);
         }
         inCounter.incrementAndGet();
     }
 
+    private DispatchProfile newDispatchProfile(String eventUid, ProxyEvent event, long dispatchTime) {
+        DispatchProfile dispatchProfile = new DispatchProfile(eventUid, event.getInlongGroupId(),
+                event.getInlongStreamId(), dispatchTime);
+        dispatchProfile.setSendIndex(sendIndex.incrementAndGet() & Integer.MAX_VALUE);
+        return dispatchProfile;
+    }
+
     private void addSendIndex(Event event, DispatchProfile dispatchProfile) {
         if ((MessageUtils.isSyncSendForOrder(event))) {
             String partitionKey = event.getHeaders().get(AttributeConstants.MESSAGE_PARTITION_KEY);
-            int sendIndex = Math.abs(partitionKey.hashCode());
+            int sendIndex = partitionKey.hashCode() & Integer.MAX_VALUE;
             dispatchProfile.setOrder(true);
             dispatchProfile.setSendIndex(sendIndex);
-        } else {
-            dispatchProfile.setSendIndex(sendIndex.incrementAndGet());
         }
     }
 
+    /**
+     * offer the profile to the dispatch queue of its send index
+     *
+     * @param  dispatchProfile
+     * @param  rejectable      whether the profile can be rejected, or keeps waiting for the workers
+     * @return                 false if the profile is rejected because the queue stays full
+     */
+    private boolean offerDispatchQueue(DispatchProfile dispatchProfile, boolean rejectable) {
+        DispatchQueue dispatchQueue =
+                this.dispatchQueues.get(dispatchProfile.getSendIndex() % dispatchQueues.size());
+        try {
+            while (!dispatchQueue.offerBounded(dispatchProfile, offerTimeout, TimeUnit.MILLISECONDS)) {
+                queueFullCounter.incrementAndGet();
+                if (rejectable) {
+                    return false;
+                }
+                // the events are committed or partly dispatched, keep waiting for the workers
+                LOG.warn("dispatch queue is full over {}ms, wait for the workers, uid:{},count:{}",
+                        offerTimeout, dispatchProfile.getUid(), dispatchProfile.getCount());
+            }
+        } catch (InterruptedException e) {
+            // the sink is stopping, keep the profile beyond the bound rather than lose it
+            Thread.currentThread().interrupt();
+            LOG.warn("interrupted while the dispatch queue is full, uid:{}", dispatchProfile.getUid());
+            dispatchQueue.offer(dispatchProfile);
+        }
+        outCounter.addAndGet(dispatchProfile.getCount());
+        return true;
+    }
+
     /**
      * addPackEvent
      * @param packEvent
@@ -127,34 +193,46 @@ public class DispatchManager {
         long dispatchTime = packEvent.getMsgTime() - packEvent.getMsgTime() % MINUTE_MS;
         DispatchProfile dispatchProfile = new DispatchProfile(eventUid, packEvent.getInlongGroupId(),
                 packEvent.getInlongStreamId(), dispatchTime);
+        dispatchProfile.setSendIndex(sendIndex.incrementAndGet() & Integer.MAX_VALUE);
         // callback
         DispatchProfileCallback callback = new DispatchProfileCallback(packEvent.getEvents().size(),
                 packEvent.getCallback());
         dispatchProfile.setCallback(callback);
-        // offer queue
+        // offer queue, the pack can be rejected only before its first profile is queued
+        boolean dispatched = false;
         for (ProxyEvent event : packEvent.getEvents()) {
             inCounter.incrementAndGet();
             boolean addResult = dispatchProfile.addEvent(event, maxPackCount, maxPackSize);
-            addSendIndex(event, dispatchProfile);
             // dispatch profile is full
             if (!addResult) {
-                outCounter.addAndGet(dispatchProfile.getCount());
-                this.dispatchQueues.get(dispatchProfile.getSendIndex() % dispatchQueues.size())
-                        .offer(dispatchProfile);
+                if (!this.offerDispatchQueue(dispatchProfile, !dispatched)) {
+                    this.rejectPackEvent(packEvent, callback);
+                    return;
+                }
+                dispatched = true;
                 dispatchProfile = new DispatchProfile(eventUid, event.getInlongGroupId(), event.getInlongStreamId(),
                         dispatchTime);
+                dispatchProfile.setSendIndex(sendIndex.incrementAndGet() & Integer.MAX_VALUE);
                 dispatchProfile.setCallback(callback);
                 dispatchProfile.addEvent(event, maxPackCount, maxPackSize);
             }
+            addSendIndex(event, dispatchProfile);
         }
         // last dispatch profile
-        if (dispatchProfile.getEvents().size() > 0) {
-            outCounter.addAndGet(dispatchProfile.getCount());
-            this.dispatchQueues.get(dispatchProfile.getSendIndex() % dispatchQueues.size())
-                    .offer(dispatchProfile);
+        if (dispatchProfile.getEvents().size() > 0
+                && !this.offerDispatchQueue(dispatchProfile, !dispatched)) {
+            this.rejectPackEvent(packEvent, callback);
         }
     }
 
+    private void rejectPackEvent(ProxyPackEvent packEvent, DispatchProfileCallback callback) {
+        // nothing of the pack is queued, the source still holds it and resends the events
+        LOG.warn("dispatch queue is full, reject the pack of uid:{},count:{}",
+                packEvent.getUid(), packEvent.getEvents().size());
+        rejectCounter.addAndGet(packEvent.getEvents().size());
+        callback.fail();
+    }
+
     /**
      * outputOvertimeData
      * 
@@ -164,33 +242,43 @@ public class DispatchManager {
         if (!needOutputOvertimeData.getAndSet(false)) {
             return;
         }
-        LOG.debug("start to outputOvertimeData profileCacheSize:{},dispatchQueueSize:{}",
-                profileCache.size(), dispatchQueues.stream().mapToInt(LinkedBlockingQueue::size).sum());
+        LOG.debug("start to outputOvertimeData dispatchQueueSize:{}",
+                dispatchQueues.stream().mapToInt(DispatchQueue::size).sum());
         long currentTime = System.currentTimeMillis();
         long createThreshold = currentTime - dispatchTimeout;
-        List<String> removeKeys = new ArrayList<>();
+        List<DispatchProfile> timeoutProfiles = new ArrayList<>();
         long eventCount = 0;
-        for (Entry<String, DispatchProfile> entry : this.profileCache.entrySet()) {
-            DispatchProfile dispatchProfile = entry.getValue();
-            eventCount += dispatchProfile.getCount();
-            if (!dispatchProfile.isTimeout(createThreshold)) {
-                continue;
+        int profileCacheSize = 0;
+        for (DispatchStripe stripe : this.stripes) {
+            synchronized (stripe) {
+                Iterator<List<DispatchProfile>> uidIterator = stripe.profiles.values().iterator();
+                while (uidIterator.hasNext()) {
+                    List<DispatchProfile> uidProfiles = uidIterator.next();
+                    Iterator<DispatchProfile> iterator = uidProfiles.iterator();
+                    while (iterator.hasNext()) {
+                        DispatchProfile dispatchProfile = iterator.next();
+                        eventCount += dispatchProfile.getCount();
+                        if (dispatchProfile.isTimeout(createThreshold)) {
+                            iterator.remove();
+                            timeoutProfiles.add(dispatchProfile);
+                        } else {
+                            profileCacheSize++;
+                        }
+                    }
+                    if (uidProfiles.isEmpty()) {
+                        uidIterator.remove();
+                    }
+                }
             }
-            removeKeys.add(entry.getKey());
         }
         // output
-        removeKeys.forEach((key) -> {
-            DispatchProfile dispatchProfile = this.profileCache.remove(key);
-            if (dispatchProfile != null) {
-                this.dispatchQueues.get(dispatchProfile.getSendIndex() % dispatchQueues.size())
-                        .offer(dispatchProfile);
-                outCounter.addAndGet(dispatchProfile.getCount());
-            }
-        });
+        for (DispatchProfile dispatchProfile : timeoutProfiles) {
+            this.offerDispatchQueue(dispatchProfile, false);
+        }
         LOG.debug("end to outputOvertimeData profileCacheSize:{},dispatchQueueSize:{},eventCount:{},"
-                + "inCounter:{},outCounter:{}",
-                profileCache.size(), dispatchQueues.stream().mapToInt(LinkedBlockingQueue::size).sum(), eventCount,
-                inCounter.getAndSet(0), outCounter.getAndSet(0));
+                + "inCounter:{},outCounter:{},queueFullCounter:{},rejectCounter:{}",
+                profileCacheSize, dispatchQueues.stream().mapToInt(DispatchQueue::size).sum(), eventCount,
+                inCounter.getAndSet(0), outCounter.getAndSet(0), queueFullCounter.get(), rejectCounter.get());
     }
 
     /**
@@ -220,10 +308,55 @@ public class DispatchManager {
         return maxPackSize;
     }
 
+    /**
+     * get the count of the offers that timed out on a full dispatch queue
+     *
+     * @return the queueFullCount
+     */
+    public long getQueueFullCount() {
+        return queueFullCounter.get();
+    }
+
+    /**
+     * get the count of the events rejected to the source on a full dispatch queue
+     *
+     * @return the rejectCount
+     */
+    public long getRejectCount() {
+        return rejectCounter.get();
+    }
+
     /**
      * setNeedOutputOvertimeData
      */
     public void setNeedOutputOvertimeData() {
         this.needOutputOvertimeData.getAndSet(true);
     }
+
+    /**
+     * The profiles of a stripe, keyed by the uid and then the dispatch time,
+     * a uid has few dispatch times at the same time, so they are kept in a list.
+     */
+    private static class DispatchStripe {
+
+        private final HashMap<String, List<DispatchProfile>> profiles = new HashMap<>();
+
+        private List<DispatchProfile> getUidProfiles(String uid) {
+            List<DispatchProfile> uidProfiles = profiles.get(uid);
+            if (uidProfiles == null) {
+                uidProfiles = new ArrayList<>(2);
+                profiles.put(uid, uidProfiles);
+            }
+            return uidProfiles;
+        }
+
+        private static int indexOf(List<DispatchProfile> uidProfiles, long dispatchTime) {
+            for (int i = 0; i < uidProfiles.size(); i++) {
+                if (uidProfiles.get(i).getDispatchTime() == dispatchTime) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
 }
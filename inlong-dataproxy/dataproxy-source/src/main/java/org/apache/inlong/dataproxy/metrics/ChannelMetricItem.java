@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.dataproxy.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.inlong.common.metric.CountMetric;
+import org.apache.inlong.common.metric.Dimension;
+import org.apache.inlong.common.metric.GaugeMetric;
+import org.apache.inlong.common.metric.MetricDomain;
+import org.apache.inlong.common.metric.MetricItem;
+
+/**
+ * ChannelMetricItem, the metrics of a buffer channel, the spill metrics are
+ * reported by the channels which spill the events to the disk.
+ */
+@MetricDomain(name = "DataProxyChannel")
+public class ChannelMetricItem extends MetricItem {
+
+    public static final String KEY_CLUSTER_ID = "clusterId";
+    public static final String KEY_CHANNEL_ID = "channelId";
+
+    public static final String M_PUT_COUNT = "putCount";
+    public static final String M_TAKE_COUNT = "takeCount";
+    public static final String M_SPILL_PUT_COUNT = "spillPutCount";
+    public static final String M_SPILL_TAKE_COUNT = "spillTakeCount";
+    public static final String M_QUEUE_SIZE = "queueSize";
+    public static final String M_SPILL_COUNT = "spillCount";
+    public static final String M_SPILL_SIZE = "spillSize";
+    public static final String M_SPILL_BACKLOG_AGE = "spillBacklogAge";
+
+    @Dimension
+    public String clusterId;
+    @Dimension
+    public String channelId;
+
+    @CountMetric
+    public AtomicLong putCount = new AtomicLong(0);
+    @CountMetric
+    public AtomicLong takeCount = new AtomicLong(0);
+    @CountMetric
+    public AtomicLong spillPutCount = new AtomicLong(0);
+    @CountMetric
+    public AtomicLong spillTakeCount = new AtomicLong(0);
+    @GaugeMetric
+    // the event count in memory
+    public AtomicLong queueSize = new AtomicLong(0);
+    @GaugeMetric
+    // the event count on the disk
+    public AtomicLong spillCount = new AtomicLong(0);
+    @GaugeMetric
+    // the event bytes on the disk
+    public AtomicLong spillSize = new AtomicLong(0);
+    @GaugeMetric
+    // now - spillTime of the oldest event on the disk(milliseconds)
+    public AtomicLong spillBacklogAge = new AtomicLong(0);
+}
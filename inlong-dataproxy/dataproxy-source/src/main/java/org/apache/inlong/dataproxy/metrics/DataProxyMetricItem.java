@@ -65,6 +65,15 @@ public class DataProxyMetricItem extends MetricItem {
     public static final String M_SEND_PACK_COUNT = "sendPackCount";
     public static final String M_SEND_PACK_SIZE = "sendPackSize";
 
+    // histogram buckets of the pack duration, sinkCallbackTime - packCreateTime(milliseconds)
+    public static final String M_PACK_DURATION_LE_10MS = "packDurationLe10ms";
+    public static final String M_PACK_DURATION_LE_50MS = "packDurationLe50ms";
+    public static final String M_PACK_DURATION_LE_100MS = "packDurationLe100ms";
+    public static final String M_PACK_DURATION_LE_500MS = "packDurationLe500ms";
+    public static final String M_PACK_DURATION_LE_1S = "packDurationLe1s";
+    public static final String M_PACK_DURATION_LE_5S = "packDurationLe5s";
+    public static final String M_PACK_DURATION_GT_5S = "packDurationGt5s";
+
     @Dimension
     public String clusterId;
     @Dimension
@@ -118,6 +127,44 @@ public class DataProxyMetricItem extends MetricItem {
     public AtomicLong sendPackCount = new AtomicLong(0);
     @CountMetric
     public AtomicLong sendPackSize = new AtomicLong(0);
+    @CountMetric
+    public AtomicLong packDurationLe10ms = new AtomicLong(0);
+    @CountMetric
+    public AtomicLong packDurationLe50ms = new AtomicLong(0);
+    @CountMetric
+    public AtomicLong packDurationLe100ms = new AtomicLong(0);
+    @CountMetric
+    public AtomicLong packDurationLe500ms = new AtomicLong(0);
+    @CountMetric
+    public AtomicLong packDurationLe1s = new AtomicLong(0);
+    @CountMetric
+    public AtomicLong packDurationLe5s = new AtomicLong(0);
+    @CountMetric
+    public AtomicLong packDurationGt5s = new AtomicLong(0);
+
+    /**
+     * addPackDuration, count the pack into the histogram bucket of its duration,
+     * the buckets are not cumulative.
+     *
+     * @param packDuration sinkCallbackTime - packCreateTime(milliseconds)
+     */
+    public void addPackDuration(long packDuration) {
+        if (packDuration <= 10L) {
+            packDurationLe10ms.incrementAndGet();
+        } else if (packDuration <= 50L) {
+            packDurationLe50ms.incrementAndGet();
+        } else if (packDuration <= 100L) {
+            packDurationLe100ms.incrementAndGet();
+        } else if (packDuration <= 500L) {
+            packDurationLe500ms.incrementAndGet();
+        } else if (packDuration <= 1000L) {
+            packDurationLe1s.incrementAndGet();
+        } else if (packDuration <= 5000L) {
+            packDurationLe5s.incrementAndGet();
+        } else {
+            packDurationGt5s.incrementAndGet();
+        }
+    }
 
     /**
      * fillInlongId
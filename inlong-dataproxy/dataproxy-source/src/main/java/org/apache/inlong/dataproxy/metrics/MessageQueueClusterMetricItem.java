@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.dataproxy.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.inlong.common.metric.CountMetric;
+import org.apache.inlong.common.metric.Dimension;
+import org.apache.inlong.common.metric.GaugeMetric;
+import org.apache.inlong.common.metric.MetricDomain;
+import org.apache.inlong.common.metric.MetricItem;
+
+/**
+ * MessageQueueClusterMetricItem, the metrics of a message queue cluster seen by a sink worker,
+ * the share of sendCount among the clusters shows how the traffic shifts between them.
+ */
+@MetricDomain(name = "DataProxyMqCluster")
+public class MessageQueueClusterMetricItem extends MetricItem {
+
+    public static final String KEY_CLUSTER_ID = "clusterId";
+    public static final String KEY_SINK_ID = "sinkId";
+    public static final String KEY_WORKER_ID = "workerId";
+    public static final String KEY_MQ_CLUSTER_NAME = "mqClusterName";
+
+    public static final String M_SEND_COUNT = "sendCount";
+    public static final String M_SEND_FAIL_COUNT = "sendFailCount";
+    public static final String M_EJECT_COUNT = "ejectCount";
+    public static final String M_SEND_LATENCY = "sendLatency";
+    public static final String M_INFLIGHT_COUNT = "inflightCount";
+    public static final String M_SELECT_WEIGHT = "selectWeight";
+    public static final String M_EJECTED = "ejected";
+
+    @Dimension
+    public String clusterId;
+    @Dimension
+    public String sinkId;
+    @Dimension
+    public String workerId;
+    @Dimension
+    public String mqClusterName;
+
+    @CountMetric
+    public AtomicLong sendCount = new AtomicLong(0);
+    @CountMetric
+    public AtomicLong sendFailCount = new AtomicLong(0);
+    @CountMetric
+    public AtomicLong ejectCount = new AtomicLong(0);
+    @GaugeMetric
+    // the moving average of sendCallbackTime - sendTime(milliseconds)
+    public AtomicLong sendLatency = new AtomicLong(0);
+    @GaugeMetric
+    // the count of packs sent and not called back
+    public AtomicLong inflightCount = new AtomicLong(0);
+    @GaugeMetric
+    // 1000 / (sendLatency + 1) / (inflightCount + 1), the higher the more likely to be selected
+    public AtomicLong selectWeight = new AtomicLong(0);
+    @GaugeMetric
+    // 1 if the cluster is ejected from the selection, else 0
+    public AtomicLong ejected = new AtomicLong(0);
+}
@@ -20,6 +20,13 @@ package org.apache.inlong.dataproxy.metrics.prometheus;
 import static org.apache.inlong.common.metric.MetricItemMBean.DOMAIN_SEPARATOR;
 import static org.apache.inlong.common.metric.MetricRegister.JMX_DOMAIN;
 import static org.apache.inlong.dataproxy.metrics.DataProxyMetricItem.M_NODE_DURATION;
+import static org.apache.inlong.dataproxy.metrics.DataProxyMetricItem.M_PACK_DURATION_GT_5S;
+import static org.apache.inlong.dataproxy.metrics.DataProxyMetricItem.M_PACK_DURATION_LE_100MS;
+import static org.apache.inlong.dataproxy.metrics.DataProxyMetricItem.M_PACK_DURATION_LE_10MS;
+import static org.apache.inlong.dataproxy.metrics.DataProxyMetricItem.M_PACK_DURATION_LE_1S;
+import static org.apache.inlong.dataproxy.metrics.DataProxyMetricItem.M_PACK_DURATION_LE_500MS;
+import static org.apache.inlong.dataproxy.metrics.DataProxyMetricItem.M_PACK_DURATION_LE_50MS;
+import static org.apache.inlong.dataproxy.metrics.DataProxyMetricItem.M_PACK_DURATION_LE_5S;
 import static org.apache.inlong.dataproxy.metrics.DataProxyMetricItem.M_READ_FAIL_COUNT;
 import static org.apache.inlong.dataproxy.metrics.DataProxyMetricItem.M_READ_FAIL_SIZE;
 import static org.apache.inlong.dataproxy.metrics.DataProxyMetricItem.M_READ_SUCCESS_COUNT;
@@ -108,6 +115,14 @@ public class PrometheusMetricListener extends Collector implements MetricListene
         metricValueMap.put(M_SINK_DURATION, metricItem.sinkDuration);
         metricValueMap.put(M_NODE_DURATION, metricItem.nodeDuration);
         metricValueMap.put(M_WHOLE_DURATION, metricItem.wholeDuration);
+        // pack duration histogram
+        metricValueMap.put(M_PACK_DURATION_LE_10MS, metricItem.packDurationLe10ms);
+        metricValueMap.put(M_PACK_DURATION_LE_50MS, metricItem.packDurationLe50ms);
+        metricValueMap.put(M_PACK_DURATION_LE_100MS, metricItem.packDurationLe100ms);
+        metricValueMap.put(M_PACK_DURATION_LE_500MS, metricItem.packDurationLe500ms);
+        metricValueMap.put(M_PACK_DURATION_LE_1S, metricItem.packDurationLe1s);
+        metricValueMap.put(M_PACK_DURATION_LE_5S, metricItem.packDurationLe5s);
+        metricValueMap.put(M_PACK_DURATION_GT_5S, metricItem.packDurationGt5s);
 
         int httpPort = CommonPropertiesHolder.getInteger(KEY_PROMETHEUS_HTTP_PORT, DEFAULT_PROMETHEUS_HTTP_PORT);
         try {
@@ -193,6 +208,14 @@ public class PrometheusMetricListener extends Collector implements MetricListene
         totalCounter.addMetric(Arrays.asList(M_SINK_DURATION), metricItem.sinkDuration.get());
         totalCounter.addMetric(Arrays.asList(M_NODE_DURATION), metricItem.nodeDuration.get());
         totalCounter.addMetric(Arrays.asList(M_WHOLE_DURATION), metricItem.wholeDuration.get());
+        // pack duration histogram
+        totalCounter.addMetric(Arrays.asList(M_PACK_DURATION_LE_10MS), metricItem.packDurationLe10ms.get());
+        totalCounter.addMetric(Arrays.asList(M_PACK_DURATION_LE_50MS), metricItem.packDurationLe50ms.get());
+        totalCounter.addMetric(Arrays.asList(M_PACK_DURATION_LE_100MS), metricItem.packDurationLe100ms.get());
+        totalCounter.addMetric(Arrays.asList(M_PACK_DURATION_LE_500MS), metricItem.packDurationLe500ms.get());
+        totalCounter.addMetric(Arrays.asList(M_PACK_DURATION_LE_1S), metricItem.packDurationLe1s.get());
+        totalCounter.addMetric(Arrays.asList(M_PACK_DURATION_LE_5S), metricItem.packDurationLe5s.get());
+        totalCounter.addMetric(Arrays.asList(M_PACK_DURATION_GT_5S), metricItem.packDurationGt5s.get());
         List<MetricFamilySamples> mfs = new ArrayList<>();
         mfs.add(totalCounter);
 
@@ -39,6 +39,10 @@ public class BatchPackProfile {
     private long size = 0;
     private long dispatchTime;
     private BatchPackProfileCallback callback;
+    // the status of the cluster which the pack is being sent to
+    private volatile MessageQueueClusterStatus clusterStatus;
+    // if the pack is the probe of the ejected cluster it is sent to
+    private volatile boolean probe;
 
     /**
      * Constructor
@@ -165,6 +169,51 @@ public class BatchPackProfile {
         return inlongStreamId;
     }
 
+    /**
+     * get createTime
+     * 
+     * @return the createTime
+     */
+    public long getCreateTime() {
+        return createTime;
+    }
+
+    /**
+     * get clusterStatus
+     * 
+     * @return the clusterStatus
+     */
+    public MessageQueueClusterStatus getClusterStatus() {
+        return clusterStatus;
+    }
+
+    /**
+     * set clusterStatus
+     * 
+     * @param clusterStatus the clusterStatus to set
+     */
+    public void setClusterStatus(MessageQueueClusterStatus clusterStatus) {
+        this.clusterStatus = clusterStatus;
+    }
+
+    /**
+     * is probe
+     * 
+     * @return if the pack is the probe of the ejected cluster
+     */
+    public boolean isProbe() {
+        return probe;
+    }
+
+    /**
+     * set probe
+     * 
+     * @param probe if the pack is the probe of the ejected cluster
+     */
+    public void setProbe(boolean probe) {
+        this.probe = probe;
+    }
+
     /**
      * getDispatchTime
      * 
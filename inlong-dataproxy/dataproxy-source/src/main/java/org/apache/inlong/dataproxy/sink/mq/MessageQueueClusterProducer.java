@@ -19,7 +19,9 @@ package org.apache.inlong.dataproxy.sink.mq;
 
 import org.apache.flume.lifecycle.LifecycleAware;
 import org.apache.flume.lifecycle.LifecycleState;
+import org.apache.inlong.common.metric.MetricRegister;
 import org.apache.inlong.dataproxy.config.pojo.CacheClusterConfig;
+import org.apache.inlong.dataproxy.metrics.MessageQueueClusterMetricItem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,6 +39,8 @@ public class MessageQueueClusterProducer implements LifecycleAware {
     private LifecycleState state;
 
     private MessageQueueHandler handler;
+    private final MessageQueueClusterMetricItem metricItem;
+    private final MessageQueueClusterStatus clusterStatus;
 
     /**
      * Constructor
@@ -54,6 +58,14 @@ public class MessageQueueClusterProducer implements LifecycleAware {
         this.cacheClusterName = config.getClusterName();
         this.handler = this.sinkContext.createMessageQueueHandler(config);
         this.handler.init(config, context);
+        // status
+        this.metricItem = new MessageQueueClusterMetricItem();
+        this.metricItem.clusterId = context.getProxyClusterId();
+        this.metricItem.sinkId = context.getSinkName();
+        this.metricItem.workerId = workerName;
+        this.metricItem.mqClusterName = cacheClusterName;
+        this.clusterStatus = new MessageQueueClusterStatus(cacheClusterName, context.getClusterMaxFailCount(),
+                context.getClusterEjectTimeMs(), metricItem);
     }
 
     /**
@@ -63,6 +75,7 @@ public class MessageQueueClusterProducer implements LifecycleAware {
     public void start() {
         this.state = LifecycleState.START;
         this.handler.start();
+        MetricRegister.register(metricItem);
     }
 
     /**
@@ -72,6 +85,7 @@ public class MessageQueueClusterProducer implements LifecycleAware {
     public void stop() {
         this.state = LifecycleState.STOP;
         this.handler.stop();
+        MetricRegister.unregister(metricItem);
     }
 
     /**
@@ -90,6 +104,9 @@ public class MessageQueueClusterProducer implements LifecycleAware {
      * @param event
      */
     public boolean send(BatchPackProfile event) {
+        // the result is reported to the status by the sink context
+        event.setClusterStatus(clusterStatus);
+        event.setProbe(clusterStatus.beforeSend());
         return this.handler.send(event);
     }
 
@@ -102,6 +119,15 @@ public class MessageQueueClusterProducer implements LifecycleAware {
         return cacheClusterName;
     }
 
+    /**
+     * get clusterStatus
+     * 
+     * @return the clusterStatus
+     */
+    public MessageQueueClusterStatus getClusterStatus() {
+        return clusterStatus;
+    }
+
     /**
      * get workerName
      * @return the workerName
@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.dataproxy.sink.mq;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.inlong.dataproxy.metrics.MessageQueueClusterMetricItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * MessageQueueClusterStatus, the send status of a message queue cluster seen by a sink worker.
+ *
+ * The status keeps the moving average of the send latency and the count of in-flight packs,
+ * which make up the score of the cluster, the cluster with the lower score is preferred.
+ * After continuous send failures the cluster is ejected for a while, then a single probe
+ * pack is sent to it, the cluster recovers if the probe succeeds, or else is ejected again.
+ * Every failure of a pack handed to the cluster is counted, whether its latency is known or
+ * not, only a pack cancelled before it is handed to the cluster is not counted.
+ *
+ * The selection and the send are called by the worker thread, the results are reported by
+ * the callback threads of the message queue clients.
+ */
+public class MessageQueueClusterStatus {
+
+    public static final Logger LOG = LoggerFactory.getLogger(MessageQueueClusterStatus.class);
+    // the weight of the latest latency in the moving average
+    public static final double LATENCY_EWMA_ALPHA = 0.2;
+
+    private final String clusterName;
+    private final int maxFailCount;
+    private final long ejectTimeMs;
+    private final MessageQueueClusterMetricItem metricItem;
+
+    private final AtomicInteger inflightCount = new AtomicInteger(0);
+    private final AtomicInteger continuousFailCount = new AtomicInteger(0);
+    // the bits of the moving average of the send latency, updated by the callback threads
+    private final AtomicLong sendLatencyBits = new AtomicLong(Double.doubleToLongBits(0));
+    // 0 if the cluster is not ejected
+    private volatile long ejectEndTime = 0;
+    private volatile boolean probing = false;
+
+    /**
+     * Constructor
+     *
+     * @param clusterName
+     * @param maxFailCount  the continuous fail count to eject the cluster
+     * @param ejectTimeMs   the time before the ejected cluster is probed
+     * @param metricItem
+     */
+    public MessageQueueClusterStatus(String clusterName, int maxFailCount, long ejectTimeMs,
+            MessageQueueClusterMetricItem metricItem) {
+        this.clusterName = clusterName;
+        this.maxFailCount = maxFailCount;
+        this.ejectTimeMs = ejectTimeMs;
+        this.metricItem = metricItem;
+        this.updateGauges();
+    }
+
+    /**
+     * isAvailable, the ejected cluster is available for a single probe after the eject time
+     *
+     * @param  currentTime
+     * @return
+     */
+    public boolean isAvailable(long currentTime) {
+        long endTime = ejectEndTime;
+        return endTime == 0 || (currentTime >= endTime && !probing);
+    }
+
+    /**
+     * getScore
+     *
+     * @return the score of the cluster, the lower the better
+     */
+    public double getScore() {
+        return (this.getSendLatency() + 1) * (inflightCount.get() + 1);
+    }
+
+    /**
+     * beforeSend, called when the cluster is selected to send a pack
+     *
+     * @return if the pack is the probe of the ejected cluster
+     */
+    public boolean beforeSend() {
+        boolean isProbe = false;
+        if (ejectEndTime != 0 && !probing) {
+            this.probing = true;
+            isProbe = true;
+            LOG.info("probe the ejected mq cluster:{}", clusterName);
+        }
+        inflightCount.incrementAndGet();
+        metricItem.sendCount.incrementAndGet();
+        this.updateGauges();
+        return isProbe;
+    }
+
+    /**
+     * afterSend, called when the result of the pack is reported, only the result of the probe
+     * pack recovers or ejects again the ejected cluster, the results of the packs sent before
+     * the ejection are only counted
+     *
+     * @param isProbe  if the pack is the probe of the ejected cluster
+     * @param result   if the pack is sent
+     * @param latency  the send latency in milliseconds, negative if unknown, such as the
+     *                 producer of the cluster is not created, the failure is still counted
+     */
+    public void afterSend(boolean isProbe, boolean result, long latency) {
+        inflightCount.decrementAndGet();
+        if (latency >= 0) {
+            this.updateSendLatency(latency);
+        }
+        if (result) {
+            continuousFailCount.set(0);
+            if (isProbe) {
+                this.ejectEndTime = 0;
+                this.probing = false;
+                LOG.info("recover the ejected mq cluster:{}", clusterName);
+            }
+        } else {
+            metricItem.sendFailCount.incrementAndGet();
+            int failCount = continuousFailCount.incrementAndGet();
+            if (isProbe || (ejectEndTime == 0 && failCount >= maxFailCount)) {
+                this.eject();
+            }
+        }
+        this.updateGauges();
+    }
+
+    /**
+     * cancelSend, called when the pack is not handed to the cluster, such as the topic of the
+     * pack is not configured, the pack is not counted against the cluster
+     *
+     * @param isProbe  if the pack is the probe of the ejected cluster
+     */
+    public void cancelSend(boolean isProbe) {
+        inflightCount.decrementAndGet();
+        if (isProbe) {
+            // let the next pack probe the cluster
+            this.probing = false;
+        }
+        this.updateGauges();
+    }
+
+    /**
+     * updateSendLatency, the results are reported by several callback threads
+     *
+     * @param latency
+     */
+    private void updateSendLatency(long latency) {
+        long prevBits;
+        double nextLatency;
+        do {
+            prevBits = sendLatencyBits.get();
+            nextLatency = Double.longBitsToDouble(prevBits) * (1 - LATENCY_EWMA_ALPHA)
+                    + latency * LATENCY_EWMA_ALPHA;
+        } while (!sendLatencyBits.compareAndSet(prevBits, Double.doubleToLongBits(nextLatency)));
+    }
+
+    /**
+     * eject
+     */
+    private void eject() {
+        this.ejectEndTime = System.currentTimeMillis() + ejectTimeMs;
+        this.probing = false;
+        metricItem.ejectCount.incrementAndGet();
+        LOG.warn("eject the mq cluster:{} for {} ms after {} continuous failures",
+                clusterName, ejectTimeMs, continuousFailCount.get());
+    }
+
+    /**
+     * updateGauges
+     */
+    private void updateGauges() {
+        metricItem.sendLatency.set((long) this.getSendLatency());
+        metricItem.inflightCount.set(inflightCount.get());
+        metricItem.selectWeight.set((long) (1000 / this.getScore()));
+        metricItem.ejected.set(ejectEndTime == 0 ? 0 : 1);
+    }
+
+    /**
+     * get clusterName
+     *
+     * @return the clusterName
+     */
+    public String getClusterName() {
+        return clusterName;
+    }
+
+    /**
+     * get sendLatency
+     *
+     * @return the moving average of the send latency in milliseconds
+     */
+    public double getSendLatency() {
+        return Double.longBitsToDouble(sendLatencyBits.get());
+    }
+
+    /**
+     * get inflightCount
+     *
+     * @return the inflightCount
+     */
+    public int getInflightCount() {
+        return inflightCount.get();
+    }
+
+    /**
+     * isEjected
+     *
+     * @return if the cluster is ejected
+     */
+    public boolean isEjected() {
+        return ejectEndTime != 0;
+    }
+}
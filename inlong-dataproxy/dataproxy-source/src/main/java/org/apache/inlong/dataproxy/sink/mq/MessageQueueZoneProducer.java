@@ -29,6 +29,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -154,14 +155,51 @@ public class MessageQueueZoneProducer {
      * @param event
      */
     public boolean send(BatchPackProfile event) {
+        MessageQueueClusterProducer clusterProducer = this.selectCluster(this.clusterList);
+        return clusterProducer.send(event);
+    }
+
+    /**
+     * selectCluster, pick two clusters at random and select the available one with the lower score,
+     * if both are unavailable, select the next available cluster in turn, or the next cluster in turn
+     * if all clusters are ejected.
+     * 
+     * @param  currentClusterList
+     * @return
+     */
+    private MessageQueueClusterProducer selectCluster(List<MessageQueueClusterProducer> currentClusterList) {
+        int currentSize = currentClusterList.size();
+        if (currentSize == 1) {
+            return currentClusterList.get(0);
+        }
+        long currentTime = System.currentTimeMillis();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int firstIndex = random.nextInt(currentSize);
+        int secondIndex = random.nextInt(currentSize - 1);
+        if (secondIndex >= firstIndex) {
+            secondIndex++;
+        }
+        MessageQueueClusterProducer first = currentClusterList.get(firstIndex);
+        MessageQueueClusterProducer second = currentClusterList.get(secondIndex);
+        boolean firstAvailable = first.getClusterStatus().isAvailable(currentTime);
+        boolean secondAvailable = second.getClusterStatus().isAvailable(currentTime);
+        if (firstAvailable && secondAvailable) {
+            return (first.getClusterStatus().getScore() <= second.getClusterStatus().getScore()) ? first : second;
+        } else if (firstAvailable) {
+            return first;
+        } else if (secondAvailable) {
+            return second;
+        }
         int currentIndex = clusterIndex.getAndIncrement();
         if (currentIndex > MAX_INDEX) {
             clusterIndex.set(0);
         }
-        List<MessageQueueClusterProducer> currentClusterList = this.clusterList;
-        int currentSize = currentClusterList.size();
-        int realIndex = currentIndex % currentSize;
-        MessageQueueClusterProducer clusterProducer = currentClusterList.get(realIndex);
-        return clusterProducer.send(event);
+        for (int i = 0; i < currentSize; i++) {
+            MessageQueueClusterProducer cluster = currentClusterList.get((currentIndex + i) % currentSize);
+            if (cluster.getClusterStatus().isAvailable(currentTime)) {
+                return cluster;
+            }
+        }
+        return currentClusterList.get(currentIndex % currentSize);
     }
 }
@@ -41,6 +41,12 @@ public class MessageQueueZoneSinkContext extends SinkContext {
     public static final String KEY_NODE_ID = "nodeId";
     public static final String PREFIX_PRODUCER = "producer.";
     public static final String KEY_COMPRESS_TYPE = "compressType";
+    public static final String KEY_DISPATCH_BATCH_SIZE = "dispatchBatchSize";
+    public static final int DEFAULT_DISPATCH_BATCH_SIZE = 16;
+    public static final String KEY_CLUSTER_MAX_FAIL_COUNT = "clusterMaxFailCount";
+    public static final int DEFAULT_CLUSTER_MAX_FAIL_COUNT = 3;
+    public static final String KEY_CLUSTER_EJECT_TIME_MS = "clusterEjectTimeMs";
+    public static final long DEFAULT_CLUSTER_EJECT_TIME_MS = 10000L;
 
     private final BufferQueue<BatchPackProfile> dispatchQueue;
 
@@ -51,6 +57,9 @@ public class MessageQueueZoneSinkContext extends SinkContext {
     private final IdTopicConfigHolder idTopicHolder;
     private final CacheClusterConfigHolder cacheHolder;
     private final INLONG_COMPRESSED_TYPE compressType;
+    private final int dispatchBatchSize;
+    private final int clusterMaxFailCount;
+    private final long clusterEjectTimeMs;
 
     /**
      * Constructor
@@ -67,6 +76,13 @@ public class MessageQueueZoneSinkContext extends SinkContext {
         String strCompressionType = CommonPropertiesHolder.getString(KEY_COMPRESS_TYPE,
                 INLONG_COMPRESSED_TYPE.INLONG_SNAPPY.name());
         this.compressType = INLONG_COMPRESSED_TYPE.valueOf(strCompressionType);
+        // dispatchBatchSize
+        this.dispatchBatchSize = Math.max(1, context.getInteger(KEY_DISPATCH_BATCH_SIZE,
+                DEFAULT_DISPATCH_BATCH_SIZE));
+        // cluster ejection
+        this.clusterMaxFailCount = Math.max(1, context.getInteger(KEY_CLUSTER_MAX_FAIL_COUNT,
+                DEFAULT_CLUSTER_MAX_FAIL_COUNT));
+        this.clusterEjectTimeMs = context.getLong(KEY_CLUSTER_EJECT_TIME_MS, DEFAULT_CLUSTER_EJECT_TIME_MS);
         // producerContext
         Map<String, String> producerParams = context.getSubProperties(PREFIX_PRODUCER);
         this.producerContext = new Context(producerParams);
@@ -151,6 +167,33 @@ public class MessageQueueZoneSinkContext extends SinkContext {
         return compressType;
     }
 
+    /**
+     * get dispatchBatchSize
+     * 
+     * @return the dispatchBatchSize
+     */
+    public int getDispatchBatchSize() {
+        return dispatchBatchSize;
+    }
+
+    /**
+     * get clusterMaxFailCount
+     * 
+     * @return the clusterMaxFailCount
+     */
+    public int getClusterMaxFailCount() {
+        return clusterMaxFailCount;
+    }
+
+    /**
+     * get clusterEjectTimeMs
+     * 
+     * @return the clusterEjectTimeMs
+     */
+    public long getClusterEjectTimeMs() {
+        return clusterEjectTimeMs;
+    }
+
     /**
      * get nodeId
      * 
@@ -164,6 +207,7 @@ public class MessageQueueZoneSinkContext extends SinkContext {
      * addSendResultMetric
      */
     public void addSendResultMetric(BatchPackProfile currentRecord, String topic, boolean result, long sendTime) {
+        this.reportClusterResult(currentRecord, result, sendTime);
         if (currentRecord instanceof SimpleBatchPackProfileV0) {
             AuditUtils.add(AuditUtils.AUDIT_ID_DATAPROXY_SEND_SUCCESS,
                     ((SimpleBatchPackProfileV0) currentRecord).getSimpleProfile());
@@ -201,6 +245,29 @@ public class MessageQueueZoneSinkContext extends SinkContext {
                 metricItem.sendFailSize.addAndGet(event.getBody().length);
             }
         });
+        // pack duration
+        if (result && sendTime > 0) {
+            long dispatchTime = currentRecord.getDispatchTime();
+            long auditFormatTime = dispatchTime - dispatchTime % CommonPropertiesHolder.getAuditFormatInterval();
+            dimensions.put(DataProxyMetricItem.KEY_MESSAGE_TIME, String.valueOf(auditFormatTime));
+            DataProxyMetricItem metricItem = this.getMetricItemSet().findMetricItem(dimensions);
+            metricItem.addPackDuration(currentTime - currentRecord.getCreateTime());
+        }
+    }
+
+    /**
+     * addSendConfigFailMetric, the record is not sent as the topic of its uid is not configured,
+     * such a failure is not counted against the cluster
+     */
+    public void addSendConfigFailMetric(BatchPackProfile currentRecord, String topic) {
+        MessageQueueClusterStatus clusterStatus = currentRecord.getClusterStatus();
+        if (clusterStatus != null) {
+            boolean isProbe = currentRecord.isProbe();
+            currentRecord.setClusterStatus(null);
+            currentRecord.setProbe(false);
+            clusterStatus.cancelSend(isProbe);
+        }
+        this.addSendResultMetric(currentRecord, topic, false, 0);
     }
 
     /**
@@ -262,10 +329,28 @@ public class MessageQueueZoneSinkContext extends SinkContext {
      */
     public void processSendFail(BatchPackProfile currentRecord, String topic, long sendTime) {
         if (currentRecord.isResend()) {
-            dispatchQueue.offer(currentRecord);
+            // report before the record is offered to another worker
             this.addSendResultMetric(currentRecord, topic, false, sendTime);
+            dispatchQueue.offer(currentRecord);
         } else {
+            this.reportClusterResult(currentRecord, false, sendTime);
             currentRecord.fail();
         }
     }
+
+    /**
+     * reportClusterResult, report the send result to the cluster which the record is sent to
+     */
+    private void reportClusterResult(BatchPackProfile currentRecord, boolean result, long sendTime) {
+        MessageQueueClusterStatus clusterStatus = currentRecord.getClusterStatus();
+        if (clusterStatus == null) {
+            return;
+        }
+        boolean isProbe = currentRecord.isProbe();
+        currentRecord.setClusterStatus(null);
+        currentRecord.setProbe(false);
+        // the failure without a send time, such as the producer is not created, is still counted
+        long latency = (sendTime > 0) ? System.currentTimeMillis() - sendTime : -1L;
+        clusterStatus.afterSend(isProbe, result, latency);
+    }
 }
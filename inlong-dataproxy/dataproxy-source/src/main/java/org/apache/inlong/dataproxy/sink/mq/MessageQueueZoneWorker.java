@@ -17,7 +17,12 @@
 
 package org.apache.inlong.dataproxy.sink.mq;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import org.apache.flume.lifecycle.LifecycleState;
+import org.apache.inlong.dataproxy.utils.BufferQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,7 +37,7 @@ public class MessageQueueZoneWorker extends Thread {
     private final MessageQueueZoneSinkContext context;
 
     private MessageQueueZoneProducer zoneProducer;
-    private LifecycleState status;
+    private volatile LifecycleState status;
 
     /**
      * Constructor
@@ -70,39 +75,56 @@ public class MessageQueueZoneWorker extends Thread {
     }
 
     /**
-     * run
+     * run, wait on the dispatch queue until a pack arrives, then send the packs drained in a batch
      */
     @Override
     public void run() {
         LOG.info(String.format("start MessageQueueZoneWorker:%s", this.workerName));
+        final BufferQueue<BatchPackProfile> dispatchQueue = context.getDispatchQueue();
+        final List<BatchPackProfile> events = new ArrayList<>(context.getDispatchBatchSize());
         while (status != LifecycleState.STOP) {
-            BatchPackProfile event = null;
+            int sendIndex = 0;
             try {
-                event = context.getDispatchQueue().pollRecord();
-                if (event == null) {
-                    this.sleepOneInterval();
+                // wake up at least once per interval to check the status
+                if (dispatchQueue.pollRecords(events, context.getDispatchBatchSize(),
+                        context.getProcessInterval(), TimeUnit.MILLISECONDS) == 0) {
                     continue;
                 }
                 // send
-                this.zoneProducer.send(event);
+                for (; sendIndex < events.size(); sendIndex++) {
+                    this.zoneProducer.send(events.get(sendIndex));
+                }
+            } catch (InterruptedException e) {
+                // no pack is drained when the poll is interrupted
+                Thread.currentThread().interrupt();
+                if (status == LifecycleState.STOP) {
+                    LOG.info("MessageQueueZoneWorker:{} is interrupted on stop", this.workerName);
+                } else {
+                    LOG.warn("MessageQueueZoneWorker:{} is interrupted, stop the worker", this.workerName);
+                }
+                break;
             } catch (Throwable e) {
                 LOG.error(e.getMessage(), e);
-                if (event != null) {
-                    context.getDispatchQueue().offer(event);
+                // offer back the packs not sent
+                for (; sendIndex < events.size(); sendIndex++) {
+                    dispatchQueue.offer(events.get(sendIndex));
                 }
                 this.sleepOneInterval();
+            } finally {
+                events.clear();
             }
         }
+        LOG.info("stop MessageQueueZoneWorker:{}", this.workerName);
     }
 
     /**
-     * sleepOneInterval
+     * sleepOneInterval, the interrupt status is kept for the next poll to stop the worker
      */
     private void sleepOneInterval() {
         try {
             Thread.sleep(context.getProcessInterval());
         } catch (InterruptedException e1) {
-            LOG.error(e1.getMessage(), e1);
+            Thread.currentThread().interrupt();
         }
     }
 }
@@ -110,13 +110,13 @@ public class KafkaHandler implements MessageQueueHandler {
             // idConfig
             IdTopicConfig idConfig = sinkContext.getIdTopicHolder().getIdConfig(event.getUid());
             if (idConfig == null) {
-                sinkContext.addSendResultMetric(event, event.getUid(), false, 0);
+                sinkContext.addSendConfigFailMetric(event, event.getUid());
                 sinkContext.getDispatchQueue().release(event.getSize());
                 return false;
             }
             String baseTopic = idConfig.getTopicName();
             if (baseTopic == null) {
-                sinkContext.addSendResultMetric(event, event.getUid(), false, 0);
+                sinkContext.addSendConfigFailMetric(event, event.getUid());
                 sinkContext.getDispatchQueue().release(event.getSize());
                 return false;
             }
@@ -190,20 +190,20 @@ public class PulsarHandler implements MessageQueueHandler {
             // idConfig
             IdTopicConfig idConfig = sinkContext.getIdTopicHolder().getIdConfig(event.getUid());
             if (idConfig == null) {
-                sinkContext.addSendResultMetric(event, event.getUid(), false, 0);
+                sinkContext.addSendConfigFailMetric(event, event.getUid());
                 sinkContext.getDispatchQueue().release(event.getSize());
                 return false;
             }
             String baseTopic = idConfig.getTopicName();
             if (baseTopic == null) {
-                sinkContext.addSendResultMetric(event, event.getUid(), false, 0);
+                sinkContext.addSendConfigFailMetric(event, event.getUid());
                 sinkContext.getDispatchQueue().release(event.getSize());
                 return false;
             }
             // topic
             String producerTopic = this.getProducerTopic(baseTopic, idConfig);
             if (producerTopic == null) {
-                sinkContext.addSendResultMetric(event, event.getUid(), false, 0);
+                sinkContext.addSendConfigFailMetric(event, event.getUid());
                 sinkContext.getDispatchQueue().release(event.getSize());
                 event.fail();
                 return false;
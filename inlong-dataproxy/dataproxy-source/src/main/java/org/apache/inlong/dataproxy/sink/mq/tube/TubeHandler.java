@@ -171,13 +171,13 @@ public class TubeHandler implements MessageQueueHandler {
             // idConfig
             IdTopicConfig idConfig = sinkContext.getIdTopicHolder().getIdConfig(event.getUid());
             if (idConfig == null) {
-                sinkContext.addSendResultMetric(event, event.getUid(), false, 0);
+                sinkContext.addSendConfigFailMetric(event, event.getUid());
                 sinkContext.getDispatchQueue().release(event.getSize());
                 return false;
             }
             String topic = getTubeTopic(idConfig);
             if (topic == null) {
-                sinkContext.addSendResultMetric(event, event.getUid(), false, 0);
+                sinkContext.addSendConfigFailMetric(event, event.getUid());
                 sinkContext.getDispatchQueue().release(event.getSize());
                 return false;
             }
@@ -22,7 +22,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import org.apache.flume.Channel;
@@ -34,7 +33,7 @@ import org.apache.flume.Transaction;
 import org.apache.flume.conf.Configurable;
 import org.apache.flume.sink.AbstractSink;
 import org.apache.inlong.dataproxy.dispatch.DispatchManager;
-import org.apache.inlong.dataproxy.dispatch.DispatchProfile;
+import org.apache.inlong.dataproxy.dispatch.DispatchQueue;
 import org.apache.inlong.dataproxy.sink.pulsar.PulsarClientService;
 import org.apache.inlong.sdk.commons.protocol.ProxyEvent;
 import org.apache.inlong.sdk.commons.protocol.ProxyPackEvent;
@@ -50,7 +49,7 @@ public abstract class AbstractZoneSink extends AbstractSink implements Configura
     protected List<AbstactZoneWorker> workers = new ArrayList<>();
     // message group
     protected DispatchManager dispatchManager;
-    protected ArrayList<LinkedBlockingQueue<DispatchProfile>> dispatchQueues = new ArrayList<>();
+    protected ArrayList<DispatchQueue> dispatchQueues = new ArrayList<>();
     // scheduled thread pool
     // reload
     // dispatch
@@ -73,8 +72,10 @@ public abstract class AbstractZoneSink extends AbstractSink implements Configura
                 LOG.error("channel is null");
             }
             this.context.start();
+            int maxQueueSize = parentContext.getInteger(DispatchManager.KEY_DISPATCH_MAX_QUEUE_SIZE,
+                    DispatchManager.DEFAULT_DISPATCH_MAX_QUEUE_SIZE);
             for (int i = 0; i < context.getMaxThreads(); i++) {
-                LinkedBlockingQueue<DispatchProfile> dispatchQueue = new LinkedBlockingQueue<>();
+                DispatchQueue dispatchQueue = new DispatchQueue(maxQueueSize);
                 dispatchQueues.add(dispatchQueue);
             }
             this.dispatchManager = new DispatchManager(parentContext, dispatchQueues);
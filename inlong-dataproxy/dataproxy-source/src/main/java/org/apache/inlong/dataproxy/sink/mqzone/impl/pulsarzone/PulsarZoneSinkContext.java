@@ -20,11 +20,9 @@ package org.apache.inlong.dataproxy.sink.mqzone.impl.pulsarzone;
 import java.util.ArrayList;
 import org.apache.flume.Channel;
 import org.apache.flume.Context;
-import org.apache.inlong.dataproxy.dispatch.DispatchProfile;
+import org.apache.inlong.dataproxy.dispatch.DispatchQueue;
 import org.apache.inlong.dataproxy.sink.mqzone.AbstractZoneSinkContext;
 
-import java.util.concurrent.LinkedBlockingQueue;
-
 /**
  * 
  * PulsarZoneSinkContext
@@ -37,7 +35,7 @@ public class PulsarZoneSinkContext extends AbstractZoneSinkContext {
      * @param context
      */
     public PulsarZoneSinkContext(String sinkName, Context context, Channel channel,
-            ArrayList<LinkedBlockingQueue<DispatchProfile>> dispatchQueues) {
+            ArrayList<DispatchQueue> dispatchQueues) {
         super(sinkName, context, channel, dispatchQueues);
     }
 
@@ -27,11 +27,14 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.Channel;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.inlong.common.msg.AttributeConstants;
 import org.apache.inlong.common.msg.MsgType;
+import org.apache.inlong.common.msg.compress.CompressType;
+import org.apache.inlong.common.msg.compress.Compressors;
 import org.apache.inlong.dataproxy.base.ProxyMessage;
 import org.apache.inlong.dataproxy.consts.AttrConstants;
 import org.apache.inlong.dataproxy.consts.ConfigConstants;
@@ -39,7 +42,6 @@ import org.apache.inlong.dataproxy.exception.ErrorCode;
 import org.apache.inlong.dataproxy.exception.MessageIDException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xerial.snappy.Snappy;
 
 public class DefaultServiceDecoder implements ServiceDecoder {
 
@@ -99,9 +101,8 @@ public class DefaultServiceDecoder implements ServiceDecoder {
         // extract common attr
         String strAttr = null;
         if (attrLen != 0) {
-            byte[] attrData = new byte[attrLen];
-            cb.readBytes(attrData, 0, attrLen);
-            strAttr = new String(attrData, StandardCharsets.UTF_8);
+            strAttr = cb.toString(cb.readerIndex(), attrLen, StandardCharsets.UTF_8);
+            cb.skipBytes(attrLen);
             resultMap.put(ConfigConstants.DECODER_ATTRS, strAttr);
         }
         byte version = cb.getByte(msgHeadPos + 9);
@@ -154,7 +155,7 @@ public class DefaultServiceDecoder implements ServiceDecoder {
     private ByteBuffer handleExtraAppendAttrInfo(Map<String, String> commonAttrMap,
             Channel channel, ByteBuf cb, int extendField,
             int msgHeadPos, int totalDataLen, int attrLen,
-            String strAttr, int bodyLen, long msgRcvTime) {
+            int bodyLen, long msgRcvTime) {
         // get and check report time from report node
         boolean needRebuild = false;
         String rtMs = "";
@@ -190,39 +191,28 @@ public class DefaultServiceDecoder implements ServiceDecoder {
         // rebuild msg attribute
         ByteBuffer dataBuf;
         if (needRebuild) {
-            int newTotalLen = totalDataLen;
-            // add rtms attribute
+            // append to the original attributes, which are copied without decoding
+            StringBuilder strBuff = new StringBuilder(256);
             if (StringUtils.isNotEmpty(rtMs)) {
-                if (StringUtils.isEmpty(strAttr)) {
-                    newTotalLen += rtMs.length();
-                    strAttr = rtMs;
-                } else {
-                    newTotalLen += AttributeConstants.SEPARATOR.length() + rtMs.length();
-                    strAttr = strAttr + AttributeConstants.SEPARATOR + rtMs;
-                }
+                strBuff.append(rtMs);
             }
-            // add trace attribute
             if (StringUtils.isNotEmpty(traceInfo)) {
-                if (StringUtils.isEmpty(strAttr)) {
-                    newTotalLen += traceInfo.length();
-                    strAttr = traceInfo;
-                } else {
-                    newTotalLen += AttributeConstants.SEPARATOR.length() + traceInfo.length();
-                    strAttr = strAttr + AttributeConstants.SEPARATOR + traceInfo;
+                if (strBuff.length() > 0) {
+                    strBuff.append(AttributeConstants.SEPARATOR);
                 }
+                strBuff.append(traceInfo);
             }
+            if (attrLen > 0) {
+                strBuff.insert(0, AttributeConstants.SEPARATOR);
+            }
+            byte[] appendAttr = strBuff.toString().getBytes(StandardCharsets.UTF_8);
+            int newTotalLen = totalDataLen + appendAttr.length;
+            int attrOffset = bodyLen + (BIN_MSG_FORMAT_SIZE - BIN_MSG_MAGIC_SIZE);
             // build message buffer
             dataBuf = ByteBuffer.allocate(newTotalLen + BIN_MSG_TOTALLEN_SIZE);
-            cb.getBytes(msgHeadPos, dataBuf.array(), 0,
-                    bodyLen + (BIN_MSG_FORMAT_SIZE - BIN_MSG_ATTRLEN_SIZE
-                            - BIN_MSG_MAGIC_SIZE));
-            dataBuf.putShort(
-                    bodyLen + (BIN_MSG_FORMAT_SIZE - BIN_MSG_ATTRLEN_SIZE - BIN_MSG_MAGIC_SIZE),
-                    (short) strAttr.length());
-            // copy all attributes
-            System.arraycopy(strAttr.getBytes(StandardCharsets.UTF_8), 0, dataBuf.array(),
-                    bodyLen + (BIN_MSG_FORMAT_SIZE - BIN_MSG_MAGIC_SIZE),
-                    strAttr.length());
+            cb.getBytes(msgHeadPos, dataBuf.array(), 0, attrOffset + attrLen);
+            dataBuf.putShort(attrOffset - BIN_MSG_ATTRLEN_SIZE, (short) (attrLen + appendAttr.length));
+            System.arraycopy(appendAttr, 0, dataBuf.array(), attrOffset + attrLen, appendAttr.length);
             dataBuf.putInt(0, newTotalLen);
             dataBuf.putShort(newTotalLen + BIN_MSG_TOTALLEN_SIZE - BIN_MSG_MAGIC_SIZE,
                     (short) 0xee01);
@@ -271,16 +261,13 @@ public class DefaultServiceDecoder implements ServiceDecoder {
         msgCount = (msgCount != 0) ? msgCount : 1;
         long uniq = cb.readUnsignedInt();
         cb.skipBytes(BIN_MSG_BODYLEN_SIZE + bodyLen + BIN_MSG_ATTRLEN_SIZE);
-        // read body data
-        byte[] bodyData = new byte[bodyLen];
-        cb.getBytes(msgHeadPos + BIN_MSG_BODY_OFFSET, bodyData, 0, bodyLen);
+        // the body is copied with the whole message when the ProxyMessage is built
         // read attr and write to map.
         String strAttr = null;
         Map<String, String> commonAttrMap = new HashMap<>();
         if (attrLen != 0) {
-            byte[] attrData = new byte[attrLen];
-            cb.readBytes(attrData, 0, attrLen);
-            strAttr = new String(attrData, StandardCharsets.UTF_8);
+            strAttr = cb.toString(cb.readerIndex(), attrLen, StandardCharsets.UTF_8);
+            cb.skipBytes(attrLen);
             resultMap.put(ConfigConstants.DECODER_ATTRS, strAttr);
             try {
                 commonAttrMap.putAll(mapSplitter.split(strAttr));
@@ -292,17 +279,22 @@ public class DefaultServiceDecoder implements ServiceDecoder {
                                 + strAttr + " , channel info:" + strRemoteIP));
             }
         }
+        // the compress type other than snappy is carried by the attribute
+        String compressType = commonAttrMap.get(AttributeConstants.COMPRESS_TYPE);
+        if (StringUtils.isNotBlank(compressType)
+                && StringUtils.isNotEmpty((String) resultMap.get(ConfigConstants.COMPRESS_TYPE))) {
+            resultMap.put(ConfigConstants.COMPRESS_TYPE, compressType);
+        }
         // build attributes
         resultMap.put(ConfigConstants.COMMON_ATTR_MAP, commonAttrMap);
         resultMap.put(ConfigConstants.EXTRA_ATTR, ((extendField & 0x1) == 0x1) ? "true" : "false");
-        resultMap.put(ConfigConstants.DECODER_BODY, bodyData);
         try {
             // handle common attribute information
             handleDateTime(commonAttrMap, uniq, dataTime, msgCount, strRemoteIP, msgRcvTime);
             final boolean isIndexMsg =
                     handleExtMap(commonAttrMap, cb, resultMap, extendField, msgHeadPos);
             ByteBuffer dataBuf = handleExtraAppendAttrInfo(commonAttrMap, channel, cb,
-                    extendField, msgHeadPos, totalDataLen, attrLen, strAttr, bodyLen, msgRcvTime);
+                    extendField, msgHeadPos, totalDataLen, attrLen, bodyLen, msgRcvTime);
             // Check if groupId and streamId are number-to-name
             String groupId = commonAttrMap.get(AttributeConstants.GROUP_ID);
             String streamId = commonAttrMap.get(AttributeConstants.STREAM_ID);
@@ -355,10 +347,9 @@ public class DefaultServiceDecoder implements ServiceDecoder {
                     + bodyLen + ",totalDataLen=" + totalDataLen
                     + ", connection info:" + strRemoteIP);
         }
-        // extract body bytes
-        byte[] bodyData = new byte[bodyLen];
-        cb.readBytes(bodyData, 0, bodyLen);
-        resultMap.put(ConfigConstants.DECODER_BODY, bodyData);
+        // skip body bytes, the body is copied or uncompressed once after the attributes are parsed
+        final int bodyIndex = cb.readerIndex();
+        cb.skipBytes(bodyLen);
         // extract attribute
         int attrLen = cb.readInt();
         // 9 means bodyLen bytes(4) + message type bytes(1) + attrLen bytes(4)
@@ -368,12 +359,10 @@ public class DefaultServiceDecoder implements ServiceDecoder {
                             + ",totalDataLen=" + totalDataLen + ",attrDataLen=" + attrLen
                             + ", connection info:" + strRemoteIP);
         }
-        // extract attr bytes
-        byte[] attrData = new byte[attrLen];
-        cb.readBytes(attrData, 0, attrLen);
         // convert attr bytes to map
         Map<String, String> commonAttrMap;
-        String strAttr = new String(attrData, StandardCharsets.UTF_8);
+        String strAttr = cb.toString(cb.readerIndex(), attrLen, StandardCharsets.UTF_8);
+        cb.skipBytes(attrLen);
         try {
             commonAttrMap = new HashMap<>(mapSplitter.split(strAttr));
         } catch (Exception e) {
@@ -382,17 +371,27 @@ public class DefaultServiceDecoder implements ServiceDecoder {
         }
         resultMap.put(ConfigConstants.DECODER_ATTRS, strAttr);
         resultMap.put(ConfigConstants.COMMON_ATTR_MAP, commonAttrMap);
+        // the original body is only returned by the response of MSG_ORIGINAL_RETURN
+        boolean keepOriginalBody = MsgType.MSG_ORIGINAL_RETURN.equals(msgType);
         // decompress body data if compress type exists.
+        byte[] bodyData;
         String compressType = commonAttrMap.get(AttributeConstants.COMPRESS_TYPE);
         if (StringUtils.isNotBlank(compressType)) {
             resultMap.put(ConfigConstants.COMPRESS_TYPE, compressType);
-            byte[] unCompressedData = processUnCompress(bodyData, compressType);
-            if (unCompressedData == null || unCompressedData.length == 0) {
+            if (keepOriginalBody) {
+                resultMap.put(ConfigConstants.DECODER_BODY, ByteBufUtil.getBytes(cb, bodyIndex, bodyLen));
+            }
+            bodyData = processUnCompress(cb, bodyIndex, bodyLen, compressType);
+            if (bodyData == null || bodyData.length == 0) {
                 throw new Exception("Uncompressed data error! compress type:"
                         + compressType + ";attr:" + strAttr
                         + " , connection info:" + strRemoteIP);
             }
-            bodyData = unCompressedData;
+        } else {
+            bodyData = ByteBufUtil.getBytes(cb, bodyIndex, bodyLen);
+            if (keepOriginalBody) {
+                resultMap.put(ConfigConstants.DECODER_BODY, bodyData);
+            }
         }
         // fill up attr map with some keys.
         String groupId = commonAttrMap.get(AttributeConstants.GROUP_ID);
@@ -422,9 +421,10 @@ public class DefaultServiceDecoder implements ServiceDecoder {
                     throw new Exception(
                             "[Malformed Data]Invalid data len! channel is " + strRemoteIP);
                 }
-                byte[] record = new byte[singleMsgLen];
-                bodyBuffer.get(record);
-                ProxyMessage message = new ProxyMessage(groupId, streamId, commonAttrMap, record);
+                // the records share the body array
+                ProxyMessage message = new ProxyMessage(groupId, streamId,
+                        commonAttrMap, bodyData, bodyBuffer.position(), singleMsgLen);
+                bodyBuffer.position(bodyBuffer.position() + singleMsgLen);
                 msgList.add(message);
                 calCnt++;
             }
@@ -440,12 +440,18 @@ public class DefaultServiceDecoder implements ServiceDecoder {
         return resultMap;
     }
 
-    private byte[] processUnCompress(byte[] input, String compressType) {
+    private byte[] processUnCompress(ByteBuf cb, int index, int length, String compressType) {
         byte[] result;
         try {
-            int uncompressedLen = Snappy.uncompressedLength(input, 0, input.length);
-            result = new byte[uncompressedLen];
-            Snappy.uncompress(input, 0, input.length, result, 0);
+            if (cb.hasArray()) {
+                result = Compressors.uncompress(CompressType.forName(compressType),
+                        cb.array(), cb.arrayOffset() + index, length);
+            } else {
+                // the input is only used during the call, copy it into the thread buffer
+                byte[] input = Compressors.getThreadBuffer(length);
+                cb.getBytes(index, input, 0, length);
+                result = Compressors.uncompress(CompressType.forName(compressType), input, 0, length);
+            }
         } catch (IOException e) {
             LOG.error("Uncompressed data error: ", e);
             return null;
@@ -494,7 +500,8 @@ public class DefaultServiceDecoder implements ServiceDecoder {
             }
             // process data message
             if (msgType.getValue() >= MsgType.MSG_BIN_MULTI_BODY.getValue()) {
-                resultMap.put(ConfigConstants.COMPRESS_TYPE, (compressType != 0) ? "snappy" : "");
+                resultMap.put(ConfigConstants.COMPRESS_TYPE,
+                        (compressType != 0) ? CompressType.SNAPPY.getName() : "");
                 return extractNewBinData(resultMap, cb,
                         channel, totalDataLen, msgType,
                         strRemoteIP, msgRcvTime);
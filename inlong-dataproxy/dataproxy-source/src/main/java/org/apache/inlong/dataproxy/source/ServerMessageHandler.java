@@ -496,7 +496,7 @@ public class ServerMessageHandler extends ChannelInboundHandlerAdapter {
                             groupId = message.getGroupId();
                         }
                         message.getAttributeMap().put(AttributeConstants.MESSAGE_COUNT, String.valueOf(1));
-                        inLongMsg.addMsg(mapJoiner.join(message.getAttributeMap()), message.getData());
+                        inLongMsg.addMsg(mapJoiner.join(message.getAttributeMap()), message.getDataBuffer());
                     }
                 } else if (MsgType.MSG_BIN_MULTI_BODY.equals(msgType)) {
                     for (ProxyMessage message : streamIdEntry.getValue()) {
@@ -510,7 +510,7 @@ public class ServerMessageHandler extends ChannelInboundHandlerAdapter {
                         if (StringUtils.isEmpty(groupId)) {
                             groupId = message.getGroupId();
                         }
-                        inLongMsg.addMsg(mapJoiner.join(message.getAttributeMap()), message.getData());
+                        inLongMsg.addMsg(mapJoiner.join(message.getAttributeMap()), message.getDataBuffer());
                     }
                 }
                 commonAttrMap.put(AttributeConstants.MESSAGE_COUNT, String.valueOf(recordMsgCnt));
@@ -380,11 +380,11 @@ public class SimpleMessageHandler extends ChannelInboundHandlerAdapter {
                 for (ProxyMessage message : streamIdEntry.getValue()) {
                     if (MsgType.MSG_MULTI_BODY_ATTR.equals(msgType) || MsgType.MSG_MULTI_BODY.equals(msgType)) {
                         message.getAttributeMap().put(AttributeConstants.MESSAGE_COUNT, String.valueOf(1));
-                        inLongMsg.addMsg(mapJoiner.join(message.getAttributeMap()), message.getData());
+                        inLongMsg.addMsg(mapJoiner.join(message.getAttributeMap()), message.getDataBuffer());
                     } else if (MsgType.MSG_BIN_MULTI_BODY.equals(msgType)) {
                         inLongMsg.addMsg(message.getData());
                     } else {
-                        inLongMsg.addMsg(mapJoiner.join(message.getAttributeMap()), message.getData());
+                        inLongMsg.addMsg(mapJoiner.join(message.getAttributeMap()), message.getDataBuffer());
                     }
                 }
 
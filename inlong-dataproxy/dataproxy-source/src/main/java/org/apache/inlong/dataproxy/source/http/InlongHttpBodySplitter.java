@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.dataproxy.source.http;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+/**
+ * InlongHttpBodySplitter, split the batched body of a http request into records.
+ *
+ * The body is either newline delimited, where the empty lines are skipped and the
+ * trailing '\r' of a line is dropped, or a JSON array, where each element is a record.
+ * The records are copied once out of the request buffer, no string is decoded.
+ */
+public final class InlongHttpBodySplitter {
+
+    private InlongHttpBodySplitter() {
+    }
+
+    /**
+     * split the readable bytes of the body by newline
+     *
+     * @param  body      the request body
+     * @param  maxCount  the max record count
+     * @return the records
+     */
+    public static List<byte[]> splitLines(ByteBuf body, int maxCount) {
+        List<byte[]> records = new ArrayList<>();
+        int index = body.readerIndex();
+        int endIndex = body.writerIndex();
+        while (index < endIndex) {
+            int lineEnd = body.indexOf(index, endIndex, (byte) '\n');
+            int nextIndex = lineEnd + 1;
+            if (lineEnd < 0) {
+                lineEnd = endIndex;
+                nextIndex = endIndex;
+            }
+            int recordEnd = lineEnd;
+            if (recordEnd > index && body.getByte(recordEnd - 1) == '\r') {
+                recordEnd--;
+            }
+            if (recordEnd > index) {
+                addRecord(records, body, index, recordEnd, maxCount);
+            }
+            index = nextIndex;
+        }
+        return records;
+    }
+
+    /**
+     * split the readable bytes of the body as a JSON array, the elements are not validated
+     * beyond the nesting of the brackets and the quoting of the strings
+     *
+     * @param  body      the request body
+     * @param  maxCount  the max record count
+     * @return the records
+     * @throws IllegalArgumentException if the body is not a JSON array
+     */
+    public static List<byte[]> splitJsonArray(ByteBuf body, int maxCount) {
+        int index = skipWhitespace(body, body.readerIndex(), body.writerIndex());
+        int endIndex = body.writerIndex();
+        if (index >= endIndex || body.getByte(index) != '[') {
+            throw new IllegalArgumentException("body is not a JSON array");
+        }
+        List<byte[]> records = new ArrayList<>();
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        int recordStart = ++index;
+        for (; index < endIndex; index++) {
+            byte b = body.getByte(index);
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (b == '\\') {
+                    escaped = true;
+                } else if (b == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+            if (b == '"') {
+                inString = true;
+            } else if (b == '{' || b == '[') {
+                depth++;
+            } else if ((b == '}' || b == ']') && depth > 0) {
+                depth--;
+            } else if (depth == 0 && (b == ',' || b == ']')) {
+                int recordEnd = trimEnd(body, recordStart, index);
+                int start = skipWhitespace(body, recordStart, recordEnd);
+                if (start < recordEnd) {
+                    addRecord(records, body, start, recordEnd, maxCount);
+                } else if (b == ',' || !records.isEmpty()) {
+                    throw new IllegalArgumentException("empty element in JSON array");
+                }
+                if (b == ']') {
+                    if (skipWhitespace(body, index + 1, endIndex) != endIndex) {
+                        throw new IllegalArgumentException("unexpected data after JSON array");
+                    }
+                    return records;
+                }
+                recordStart = index + 1;
+            }
+        }
+        throw new IllegalArgumentException("unterminated JSON array");
+    }
+
+    private static void addRecord(List<byte[]> records, ByteBuf body,
+            int start, int end, int maxCount) {
+        if (records.size() >= maxCount) {
+            throw new IllegalArgumentException("record count exceeds " + maxCount);
+        }
+        records.add(ByteBufUtil.getBytes(body, start, end - start));
+    }
+
+    private static int skipWhitespace(ByteBuf body, int index, int endIndex) {
+        while (index < endIndex && isWhitespace(body.getByte(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private static int trimEnd(ByteBuf body, int startIndex, int index) {
+        while (index > startIndex && isWhitespace(body.getByte(index - 1))) {
+            index--;
+        }
+        return index;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+}
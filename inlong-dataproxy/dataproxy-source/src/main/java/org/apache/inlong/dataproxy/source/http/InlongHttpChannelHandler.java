@@ -0,0 +1,437 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.dataproxy.source.http;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.flume.Event;
+import org.apache.inlong.common.msg.AttributeConstants;
+import org.apache.inlong.dataproxy.config.holder.CommonPropertiesHolder;
+import org.apache.inlong.dataproxy.metrics.DataProxyMetricItem;
+import org.apache.inlong.dataproxy.metrics.audit.AuditUtils;
+import org.apache.inlong.dataproxy.source.SourceContext;
+import org.apache.inlong.sdk.commons.protocol.ProxyEvent;
+import org.apache.inlong.sdk.commons.protocol.ProxyPackEvent;
+import org.apache.inlong.sdk.commons.protocol.ProxySdk.ResultCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.util.AsciiString;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * InlongHttpChannelHandler
+ *
+ * Accept the batched records in the POST body, the inlongGroupId, the inlongStreamId and the
+ * data time are read from the query string or the headers, the records are split by newline,
+ * or as the elements of a JSON array when the content type is application/json.
+ */
+public class InlongHttpChannelHandler extends ChannelInboundHandlerAdapter {
+
+    public static final Logger LOG = LoggerFactory.getLogger(InlongHttpChannelHandler.class);
+    public static final String KEY_MAX_BATCH_COUNT = "maxBatchCount";
+    public static final int DEFAULT_MAX_BATCH_COUNT = 10000;
+
+    private SourceContext sourceContext;
+    private int maxBatchCount;
+    private String sourceIp;
+    // the requests decoded while a response is waiting for the save, only accessed in the event loop
+    private final Queue<FullHttpRequest> pendingRequests = new ArrayDeque<>();
+    private boolean waitingSave = false;
+
+    /**
+     * Constructor
+     *
+     * @param sourceContext
+     */
+    public InlongHttpChannelHandler(SourceContext sourceContext) {
+        this.sourceContext = sourceContext;
+        this.maxBatchCount = sourceContext.getParentContext()
+                .getInteger(KEY_MAX_BATCH_COUNT, DEFAULT_MAX_BATCH_COUNT);
+    }
+
+    /**
+     * channelRead
+     *
+     * @param  ctx
+     * @param  msg
+     * @throws Exception
+     */
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof FullHttpRequest)) {
+            LOG.warn("skip unknown msg {}", msg);
+            ReferenceCountUtil.release(msg);
+            return;
+        }
+        FullHttpRequest request = (FullHttpRequest) msg;
+        // the pipelined requests already decoded are held until the previous response is written
+        if (waitingSave) {
+            pendingRequests.offer(request);
+            return;
+        }
+        try {
+            this.processRequest(ctx, request);
+        } finally {
+            request.release();
+        }
+    }
+
+    /**
+     * resumeRequests, process the held requests in order after the response is written,
+     * and resume the reading of the channel when no response is waiting for the save.
+     *
+     * @param ctx
+     */
+    private void resumeRequests(ChannelHandlerContext ctx) {
+        waitingSave = false;
+        if (!ctx.channel().isActive()) {
+            this.releasePendingRequests();
+            return;
+        }
+        FullHttpRequest request;
+        while (!waitingSave && (request = pendingRequests.poll()) != null) {
+            try {
+                this.processRequest(ctx, request);
+            } finally {
+                request.release();
+            }
+        }
+        if (!waitingSave) {
+            ctx.channel().config().setAutoRead(true);
+        }
+    }
+
+    private void releasePendingRequests() {
+        FullHttpRequest request;
+        while ((request = pendingRequests.poll()) != null) {
+            request.release();
+        }
+    }
+
+    private void processRequest(ChannelHandlerContext ctx, FullHttpRequest request) {
+        boolean keepAlive = HttpUtil.isKeepAlive(request);
+        if (!request.decoderResult().isSuccess()) {
+            this.addMetric(false, 0, 0, null);
+            writeResponse(ctx.channel(), HttpResponseStatus.BAD_REQUEST, "bad request", false);
+            return;
+        }
+        if (!HttpMethod.POST.equals(request.method())) {
+            this.addMetric(false, 0, 0, null);
+            writeResponse(ctx.channel(), HttpResponseStatus.METHOD_NOT_ALLOWED, "only POST is allowed", keepAlive);
+            return;
+        }
+        // reject service
+        if (sourceContext.isRejectService()) {
+            this.addMetric(false, 0, 0, null);
+            writeResponse(ctx.channel(), HttpResponseStatus.SERVICE_UNAVAILABLE, "service rejected", keepAlive);
+            return;
+        }
+        QueryStringDecoder decoder = new QueryStringDecoder(request.uri());
+        String inlongGroupId = getParameter(decoder, request, AttributeConstants.GROUP_ID);
+        String inlongStreamId = getParameter(decoder, request, AttributeConstants.STREAM_ID);
+        if (StringUtils.isBlank(inlongGroupId) || StringUtils.isBlank(inlongStreamId)) {
+            this.addMetric(false, 0, 0, null);
+            writeResponse(ctx.channel(), HttpResponseStatus.BAD_REQUEST,
+                    "groupId and streamId must not be blank", keepAlive);
+            return;
+        }
+        // split the records straight out of the request buffer
+        ByteBuf content = request.content();
+        List<byte[]> records;
+        try {
+            if (AsciiString.contentEqualsIgnoreCase(HttpUtil.getMimeType(request),
+                    HttpHeaderValues.APPLICATION_JSON)) {
+                records = InlongHttpBodySplitter.splitJsonArray(content, maxBatchCount);
+            } else {
+                records = InlongHttpBodySplitter.splitLines(content, maxBatchCount);
+            }
+        } catch (IllegalArgumentException e) {
+            this.addMetric(false, 0, content.readableBytes(), null);
+            writeResponse(ctx.channel(), HttpResponseStatus.BAD_REQUEST, e.getMessage(), keepAlive);
+            return;
+        }
+        // response success if record size is zero
+        if (records.size() == 0) {
+            writeResponse(ctx.channel(), HttpResponseStatus.OK, "0", keepAlive);
+            return;
+        }
+        long msgTime = NumberUtils.toLong(
+                getParameter(decoder, request, AttributeConstants.DATA_TIME), System.currentTimeMillis());
+        inlongGroupId = inlongGroupId.trim();
+        inlongStreamId = inlongStreamId.trim();
+        String sourceIp = this.getSourceIp(ctx);
+        List<ProxyEvent> events = new ArrayList<>(records.size());
+        long totalSize = 0L;
+        for (byte[] record : records) {
+            events.add(new ProxyEvent(inlongGroupId, inlongStreamId, record, msgTime, sourceIp));
+            totalSize += record.length;
+        }
+        String topic = sourceContext.getIdHolder().getTopic(events.get(0).getUid());
+        if (topic != null) {
+            for (ProxyEvent event : events) {
+                event.setTopic(topic);
+            }
+        }
+        // process
+        if (!CommonPropertiesHolder.isResponseAfterSave()) {
+            this.processAndResponse(ctx, events, totalSize, keepAlive);
+        } else {
+            this.processAndWaitingSave(ctx, events, totalSize, keepAlive);
+        }
+    }
+
+    /**
+     * processAndWaitingSave, the response is written by the callback when the events are saved,
+     * the reading of the channel is paused meanwhile to keep the responses in request order.
+     *
+     * @param ctx
+     * @param events
+     * @param totalSize
+     * @param keepAlive
+     */
+    private void processAndWaitingSave(final ChannelHandlerContext ctx, List<ProxyEvent> events,
+            long totalSize, boolean keepAlive) {
+        ProxyEvent firstEvent = events.get(0);
+        final InlongHttpSourceCallback callback = new InlongHttpSourceCallback(ctx.channel(),
+                events.size(), keepAlive, new Runnable() {
+
+                    @Override
+                    public void run() {
+                        resumeRequests(ctx);
+                    }
+                });
+        ProxyPackEvent packEvent = new ProxyPackEvent(firstEvent.getInlongGroupId(),
+                firstEvent.getInlongStreamId(), events, callback);
+        waitingSave = true;
+        ctx.channel().config().setAutoRead(false);
+        // put to channel
+        try {
+            sourceContext.getSource().getChannelProcessor().processEvent(packEvent);
+            this.addMetric(true, events.size(), totalSize, firstEvent);
+            events.forEach(event -> {
+                AuditUtils.add(AuditUtils.AUDIT_ID_DATAPROXY_READ_SUCCESS, event);
+            });
+        } catch (Throwable ex) {
+            LOG.error("Process Controller Event error can't write event to channel.", ex);
+            this.addMetric(false, events.size(), totalSize, firstEvent);
+            callback.callback(ResultCode.ERR_REJECT);
+            return;
+        }
+        callback.setTimeoutFuture(ctx.executor().schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                callback.callback(ResultCode.ERR_REJECT);
+            }
+        }, CommonPropertiesHolder.getMaxResponseTimeout(), TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * processAndResponse
+     *
+     * @param ctx
+     * @param events
+     * @param totalSize
+     * @param keepAlive
+     */
+    private void processAndResponse(ChannelHandlerContext ctx, List<ProxyEvent> events,
+            long totalSize, boolean keepAlive) {
+        int processedCount = 0;
+        long processedSize = 0L;
+        for (ProxyEvent event : events) {
+            // put to channel
+            try {
+                sourceContext.getSource().getChannelProcessor().processEvent(event);
+                AuditUtils.add(AuditUtils.AUDIT_ID_DATAPROXY_READ_SUCCESS, event);
+                processedCount++;
+                processedSize += event.getBody().length;
+            } catch (Throwable ex) {
+                LOG.error("Process Controller Event error can't write event to channel.", ex);
+                this.addMetric(true, processedCount, processedSize, event);
+                this.addMetric(false, events.size() - processedCount, totalSize - processedSize, event);
+                // the records before are accepted, the client resends from the failed one
+                writeResponse(ctx.channel(), HttpResponseStatus.SERVICE_UNAVAILABLE,
+                        String.valueOf(processedCount), keepAlive);
+                return;
+            }
+        }
+        this.addMetric(true, processedCount, processedSize, events.get(0));
+        writeResponse(ctx.channel(), HttpResponseStatus.OK, String.valueOf(processedCount), keepAlive);
+    }
+
+    /**
+     * addMetric, the events of a request share the same dimensions
+     *
+     * @param result
+     * @param count
+     * @param size
+     * @param event
+     */
+    private void addMetric(boolean result, int count, long size, Event event) {
+        Map<String, String> dimensions = new HashMap<>();
+        dimensions.put(DataProxyMetricItem.KEY_CLUSTER_ID, sourceContext.getProxyClusterId());
+        dimensions.put(DataProxyMetricItem.KEY_SOURCE_ID, sourceContext.getSourceId());
+        dimensions.put(DataProxyMetricItem.KEY_SOURCE_DATA_ID, sourceContext.getSourceDataId());
+        DataProxyMetricItem.fillInlongId(event, dimensions);
+        DataProxyMetricItem.fillAuditFormatTime(event, dimensions);
+        DataProxyMetricItem metricItem = this.sourceContext.getMetricItemSet().findMetricItem(dimensions);
+        if (result) {
+            metricItem.readSuccessCount.addAndGet(count);
+            metricItem.readSuccessSize.addAndGet(size);
+        } else {
+            metricItem.readFailCount.addAndGet(Math.max(count, 1));
+            metricItem.readFailSize.addAndGet(size);
+        }
+    }
+
+    private String getParameter(QueryStringDecoder decoder, FullHttpRequest request, String name) {
+        List<String> values = decoder.parameters().get(name);
+        if (values != null && !values.isEmpty()) {
+            return values.get(0);
+        }
+        return request.headers().get(name);
+    }
+
+    private String getSourceIp(ChannelHandlerContext ctx) {
+        if (sourceIp == null) {
+            SocketAddress remoteAddress = ctx.channel().remoteAddress();
+            if (remoteAddress instanceof InetSocketAddress) {
+                sourceIp = ((InetSocketAddress) remoteAddress).getAddress().getHostAddress();
+            } else {
+                sourceIp = String.valueOf(remoteAddress);
+            }
+        }
+        return sourceIp;
+    }
+
+    /**
+     * writeResponse, the body is the accepted record count or the error message
+     *
+     * @param remoteChannel
+     * @param status
+     * @param message
+     * @param keepAlive
+     */
+    public static void writeResponse(Channel remoteChannel, HttpResponseStatus status,
+            String message, boolean keepAlive) {
+        if (!remoteChannel.isWritable()) {
+            LOG.warn("the send buffer is full, so disconnect it!please check remote client"
+                    + "; Connection info:{}", remoteChannel);
+            remoteChannel.close();
+            return;
+        }
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status,
+                Unpooled.copiedBuffer(message, StandardCharsets.UTF_8));
+        response.headers().set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.TEXT_PLAIN);
+        HttpUtil.setContentLength(response, response.content().readableBytes());
+        HttpUtil.setKeepAlive(response, keepAlive);
+        ChannelFuture future = remoteChannel.writeAndFlush(response);
+        if (!keepAlive) {
+            future.addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+    /**
+     * exceptionCaught
+     *
+     * @param  ctx
+     * @param  cause
+     * @throws Exception
+     */
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        LOG.error("exception caught cause = {}", cause);
+        ctx.fireExceptionCaught(cause);
+        if (ctx.channel() != null) {
+            try {
+                ctx.channel().disconnect();
+                ctx.channel().close();
+            } catch (Exception ex) {
+                LOG.error("Close connection error!", ex);
+            }
+            sourceContext.getAllChannels().remove(ctx.channel());
+        }
+    }
+
+    /**
+     * channelInactive
+     *
+     * @param  ctx
+     * @throws Exception
+     */
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        LOG.debug("Connection to {} disconnected.", ctx.channel());
+        this.releasePendingRequests();
+        ctx.fireChannelInactive();
+        try {
+            ctx.channel().disconnect();
+            ctx.channel().close();
+        } catch (Exception ex) {
+            LOG.error("channelInactive has exception e = {}", ex);
+        }
+        sourceContext.getAllChannels().remove(ctx.channel());
+    }
+
+    /**
+     * channelActive
+     *
+     * @param  ctx
+     * @throws Exception
+     */
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) {
+        if (sourceContext.getAllChannels().size() - 1 >= sourceContext.getMaxConnections()) {
+            LOG.warn("refuse to connect , and connections="
+                    + (sourceContext.getAllChannels().size() - 1)
+                    + ", maxConnections="
+                    + sourceContext.getMaxConnections() + ",channel is " + ctx.channel());
+            ctx.channel().disconnect();
+            ctx.channel().close();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.dataproxy.source.http;
+
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import java.lang.reflect.Constructor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.flume.Context;
+import org.apache.flume.conf.Configurable;
+import org.apache.inlong.dataproxy.consts.ConfigConstants;
+import org.apache.inlong.dataproxy.source.SourceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * InlongHttpChannelPipelineFactory
+ */
+public class InlongHttpChannelPipelineFactory extends ChannelInitializer<SocketChannel>
+        implements
+            Configurable {
+
+    public static final Logger LOG = LoggerFactory.getLogger(InlongHttpChannelPipelineFactory.class);
+    public static final String KEY_MAX_INITIAL_LINE_LENGTH = "maxInitialLineLength";
+    public static final int DEFAULT_MAX_INITIAL_LINE_LENGTH = 4096;
+    public static final String KEY_MAX_HEADER_SIZE = "maxHeaderSize";
+    public static final int DEFAULT_MAX_HEADER_SIZE = 8192;
+    public static final String KEY_READ_IDLE_TIME_MS = "readIdleTimeMs";
+    public static final long DEFAULT_READ_IDLE_TIME_MS = 60 * 1000L;
+    private static final int MAX_CHUNK_SIZE = 8192;
+    private SourceContext sourceContext;
+    private String messageHandlerName;
+    private int maxInitialLineLength = DEFAULT_MAX_INITIAL_LINE_LENGTH;
+    private int maxHeaderSize = DEFAULT_MAX_HEADER_SIZE;
+    private long readIdleTimeMs = DEFAULT_READ_IDLE_TIME_MS;
+
+    /**
+     * get server factory
+     *
+     * @param sourceContext
+     * @param protocolType  the protocol name of the source, always http
+     */
+    public InlongHttpChannelPipelineFactory(SourceContext sourceContext, String protocolType) {
+        this.sourceContext = sourceContext;
+    }
+
+    @Override
+    protected void initChannel(SocketChannel ch) {
+        ch.pipeline().addLast("httpCodec",
+                new HttpServerCodec(maxInitialLineLength, maxHeaderSize, MAX_CHUNK_SIZE));
+        // the batched body is aggregated in one buffer, bounded by the max message length
+        ch.pipeline().addLast("httpAggregator",
+                new HttpObjectAggregator(sourceContext.getMaxMsgLength()));
+        // close the idle keep-alive connections
+        ch.pipeline().addLast("readTimeoutHandler",
+                new ReadTimeoutHandler(readIdleTimeMs, TimeUnit.MILLISECONDS));
+
+        if (sourceContext.getSource().getChannelProcessor() != null) {
+            try {
+                Class<? extends ChannelInboundHandlerAdapter> clazz =
+                        (Class<? extends ChannelInboundHandlerAdapter>) Class
+                                .forName(messageHandlerName);
+
+                Constructor<?> ctor = clazz.getConstructor(SourceContext.class);
+
+                ChannelInboundHandlerAdapter messageHandler = (ChannelInboundHandlerAdapter) ctor
+                        .newInstance(sourceContext);
+
+                ch.pipeline().addLast("messageHandler", messageHandler);
+            } catch (Exception e) {
+                LOG.error("InlongHttpChannelHandler.newInstance has error:"
+                        + sourceContext.getSource().getName(), e);
+            }
+        }
+    }
+
+    @Override
+    public void configure(Context context) {
+        LOG.info("context is {}", context);
+        messageHandlerName = context.getString(ConfigConstants.MESSAGE_HANDLER_NAME,
+                InlongHttpChannelHandler.class.getName());
+        messageHandlerName = messageHandlerName.trim();
+        Preconditions.checkArgument(StringUtils.isNotBlank(messageHandlerName),
+                "messageHandlerName is empty");
+        maxInitialLineLength = context.getInteger(KEY_MAX_INITIAL_LINE_LENGTH,
+                DEFAULT_MAX_INITIAL_LINE_LENGTH);
+        maxHeaderSize = context.getInteger(KEY_MAX_HEADER_SIZE, DEFAULT_MAX_HEADER_SIZE);
+        readIdleTimeMs = context.getLong(KEY_READ_IDLE_TIME_MS, DEFAULT_READ_IDLE_TIME_MS);
+        Preconditions.checkArgument(readIdleTimeMs > 0, "readIdleTimeMs must be > 0");
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.dataproxy.source.http;
+
+import org.apache.flume.Context;
+import org.apache.inlong.dataproxy.consts.ConfigConstants;
+import org.apache.inlong.dataproxy.source.tcp.InlongTcpSource;
+
+/**
+ * Inlong http source, accepts the batched records in the bodies of the HTTP/1.1 keep-alive
+ * requests on the netty event loops, and shares the connection limits, the reject service
+ * switch and the metrics of the inlong tcp source.
+ */
+public class InlongHttpSource extends InlongTcpSource {
+
+    /**
+     * Constructor
+     */
+    public InlongHttpSource() {
+        super();
+    }
+
+    /**
+     * configure
+     *
+     * @param context
+     */
+    @Override
+    public void configure(Context context) {
+        super.configure(context);
+        if (context.getString(ConfigConstants.MSG_FACTORY_NAME) == null) {
+            msgFactoryName = InlongHttpChannelPipelineFactory.class.getName();
+        }
+        if (context.getString(ConfigConstants.MESSAGE_HANDLER_NAME) == null) {
+            messageHandlerName = InlongHttpChannelHandler.class.getName();
+        }
+    }
+
+    /**
+     * getProtocolName
+     *
+     * @return
+     */
+    @Override
+    public String getProtocolName() {
+        return ConfigConstants.HTTP_PROTOCOL;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.dataproxy.source.http;
+
+import org.apache.inlong.sdk.commons.protocol.ProxySdk.ResultCode;
+import org.apache.inlong.sdk.commons.protocol.SourceCallback;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http.HttpResponseStatus;
+
+/**
+ * InlongHttpSourceCallback, write the http response when the events are saved or timeout,
+ * and then run the resume task in the event loop of the channel.
+ */
+public class InlongHttpSourceCallback implements SourceCallback {
+
+    private final Channel channel;
+    private final int recordCount;
+    private final boolean keepAlive;
+    private final Runnable resumeTask;
+    private final AtomicBoolean hasResponsed = new AtomicBoolean(false);
+    private volatile ScheduledFuture<?> timeoutFuture;
+
+    /**
+     * Constructor
+     * @param channel
+     * @param recordCount
+     * @param keepAlive
+     * @param resumeTask
+     */
+    public InlongHttpSourceCallback(Channel channel, int recordCount, boolean keepAlive, Runnable resumeTask) {
+        this.channel = channel;
+        this.recordCount = recordCount;
+        this.keepAlive = keepAlive;
+        this.resumeTask = resumeTask;
+    }
+
+    /**
+     * callback
+     * @param resultCode
+     */
+    @Override
+    public void callback(ResultCode resultCode) {
+        // If DataProxy have sent timeout response, DataProxy do not send success response again when
+        // event is success to save.
+        if (this.hasResponsed.getAndSet(true)) {
+            return;
+        }
+        ScheduledFuture<?> future = this.timeoutFuture;
+        if (future != null) {
+            future.cancel(false);
+        }
+        if (resultCode == ResultCode.SUCCUSS) {
+            InlongHttpChannelHandler.writeResponse(channel, HttpResponseStatus.OK,
+                    String.valueOf(recordCount), keepAlive);
+        } else {
+            InlongHttpChannelHandler.writeResponse(channel, HttpResponseStatus.SERVICE_UNAVAILABLE,
+                    String.valueOf(resultCode), keepAlive);
+        }
+        channel.eventLoop().execute(resumeTask);
+    }
+
+    /**
+     * set timeoutFuture, cancelled when the response is written
+     * @param timeoutFuture
+     */
+    public void setTimeoutFuture(ScheduledFuture<?> timeoutFuture) {
+        this.timeoutFuture = timeoutFuture;
+        if (this.hasResponsed.get()) {
+            timeoutFuture.cancel(false);
+        }
+    }
+
+    /**
+     * get hasResponsed
+     * @return the hasResponsed
+     */
+    public AtomicBoolean getHasResponsed() {
+        return hasResponsed;
+    }
+}
@@ -17,7 +17,9 @@
 
 package org.apache.inlong.dataproxy.utils;
 
+import java.util.Collection;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -61,6 +63,29 @@ public class BufferQueue<A> {
         return record;
     }
 
+    /**
+     * pollRecords, wait up to the timeout for the first record, then drain the records
+     * already queued without waiting.
+     *
+     * @param  records   the collection to add the records to
+     * @param  maxCount  the max count of records to poll
+     * @param  timeout   the max time to wait for the first record
+     * @param  unit      the time unit of the timeout
+     * @return           the count of polled records
+     * @throws InterruptedException
+     */
+    public int pollRecords(Collection<? super A> records, int maxCount, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        A record = queue.poll(timeout, unit);
+        if (record == null) {
+            return 0;
+        }
+        records.add(record);
+        int count = 1 + queue.drainTo(records, maxCount - 1);
+        this.pollCount.addAndGet(count);
+        return count;
+    }
+
     /**
      * offer
      */
@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.dataproxy.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SpillFileQueue, a FIFO queue of records kept in memory-mapped segment files.
+ *
+ * The records are appended to the tail segment and read back from the head segment
+ * in order, a segment file is deleted once all of its records are read. A record is
+ * written as [int length][long append time][data], the length is written last, so
+ * the unwritten space of a segment is read as a zero length.
+ *
+ * The segment files left by the last run are read back before the new records, the
+ * records spilled before a restart are delivered at least once.
+ */
+public class SpillFileQueue {
+
+    public static final Logger LOG = LoggerFactory.getLogger(SpillFileQueue.class);
+
+    public static final String SEGMENT_SUFFIX = ".spill";
+    private static final int RECORD_HEADER_SIZE = 12;
+
+    private final File spillDir;
+    private final int segmentSize;
+    private final long maxSpillSize;
+    // the segments from the head to the tail
+    private final LinkedList<Segment> segments = new LinkedList<>();
+    private final AtomicLong spillSize = new AtomicLong(0);
+    private final AtomicLong spillCount = new AtomicLong(0);
+    private long nextSegmentId = 0L;
+    private boolean closed = false;
+
+    /**
+     * Constructor
+     *
+     * @param spillDir       the directory of the segment files
+     * @param segmentSize    the size of a segment file
+     * @param maxSpillSize   the max size of the unread records
+     * @throws IOException   if the directory or the left segment files can not be opened
+     */
+    public SpillFileQueue(File spillDir, int segmentSize, long maxSpillSize) throws IOException {
+        this.spillDir = spillDir;
+        this.segmentSize = segmentSize;
+        this.maxSpillSize = maxSpillSize;
+        if (!spillDir.isDirectory() && !spillDir.mkdirs()) {
+            throw new IOException("Can not create spill directory " + spillDir.getAbsolutePath());
+        }
+        this.recoverSegments();
+    }
+
+    /**
+     * Whether a record of the size can be appended without exceeding the max spill size.
+     *
+     * @param  size   the size of the record
+     * @return        true if there is room for the record
+     */
+    public boolean hasRoom(int size) {
+        return spillSize.get() + size <= maxSpillSize;
+    }
+
+    /**
+     * Append a record to the tail of the queue.
+     *
+     * @param  data          the record data, must not be empty
+     * @throws IOException   if the queue is closed or the segment file can not be created
+     */
+    public synchronized void append(byte[] data) throws IOException {
+        if (closed) {
+            throw new IOException("Spill queue is closed: " + spillDir.getAbsolutePath());
+        }
+        if (data.length == 0) {
+            throw new IllegalArgumentException("Can not append empty record");
+        }
+        int recordSize = RECORD_HEADER_SIZE + data.length;
+        Segment tail = segments.peekLast();
+        if (tail == null || !tail.writable || tail.capacity - tail.writePos < recordSize) {
+            if (tail != null && tail.writable) {
+                tail.writable = false;
+                tail.buffer.force();
+            }
+            tail = createSegment(Math.max(segmentSize, recordSize));
+            segments.addLast(tail);
+        }
+        ByteBuffer dupBuffer = tail.buffer.duplicate();
+        dupBuffer.position(tail.writePos + 4);
+        dupBuffer.putLong(System.currentTimeMillis());
+        dupBuffer.put(data);
+        tail.buffer.putInt(tail.writePos, data.length);
+        tail.writePos += recordSize;
+        spillSize.addAndGet(data.length);
+        spillCount.incrementAndGet();
+    }
+
+    /**
+     * Poll a record from the head of the queue.
+     *
+     * @return   the record data, or null if the queue is empty
+     */
+    public synchronized byte[] poll() {
+        Segment head;
+        while ((head = segments.peekFirst()) != null) {
+            if (head.readPos < head.writePos) {
+                int length = head.buffer.getInt(head.readPos);
+                byte[] data = new byte[length];
+                ByteBuffer dupBuffer = head.buffer.duplicate();
+                dupBuffer.position(head.readPos + RECORD_HEADER_SIZE);
+                dupBuffer.get(data);
+                head.readPos += RECORD_HEADER_SIZE + length;
+                spillSize.addAndGet(-length);
+                spillCount.decrementAndGet();
+                return data;
+            }
+            if (head.writable) {
+                return null;
+            }
+            segments.removeFirst();
+            head.delete();
+        }
+        return null;
+    }
+
+    /**
+     * Get the append time of the head record.
+     *
+     * @return   the append time, or 0 if the queue is empty
+     */
+    public synchronized long getHeadAppendTime() {
+        for (Segment segment : segments) {
+            if (segment.readPos < segment.writePos) {
+                return segment.buffer.getLong(segment.readPos + 4);
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Close the queue, the segment files are kept to be read back by the next run.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Segment segment : segments) {
+            if (segment.writable) {
+                segment.buffer.force();
+            }
+            segment.unmap();
+        }
+        segments.clear();
+    }
+
+    public boolean isEmpty() {
+        return spillCount.get() == 0;
+    }
+
+    /**
+     * get the size of the unread records
+     *
+     * @return the spill size in bytes
+     */
+    public long getSpillSize() {
+        return spillSize.get();
+    }
+
+    /**
+     * get the count of the unread records
+     *
+     * @return the spill count
+     */
+    public long getSpillCount() {
+        return spillCount.get();
+    }
+
+    private void recoverSegments() throws IOException {
+        File[] files = spillDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            String fileName = file.getName();
+            if (!fileName.endsWith(SEGMENT_SUFFIX)) {
+                continue;
+            }
+            long segmentId;
+            try {
+                segmentId = Long.parseLong(fileName.substring(0, fileName.length() - SEGMENT_SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            Segment segment = new Segment(segmentId, file, (int) file.length());
+            segment.writable = false;
+            // scan the records written before the last stop
+            int pos = 0;
+            int length;
+            while (pos + RECORD_HEADER_SIZE <= segment.capacity
+                    && (length = segment.buffer.getInt(pos)) > 0
+                    && length <= segment.capacity - pos - RECORD_HEADER_SIZE) {
+                pos += RECORD_HEADER_SIZE + length;
+                spillSize.addAndGet(length);
+                spillCount.incrementAndGet();
+            }
+            segment.writePos = pos;
+            segments.addLast(segment);
+            nextSegmentId = Math.max(nextSegmentId, segmentId + 1);
+        }
+        if (!segments.isEmpty()) {
+            LOG.info("Recovered {} spill segments of {} records from {}",
+                    segments.size(), spillCount.get(), spillDir.getAbsolutePath());
+        }
+    }
+
+    private Segment createSegment(int capacity) throws IOException {
+        File file = new File(spillDir, String.format("%020d", nextSegmentId) + SEGMENT_SUFFIX);
+        Segment segment = new Segment(nextSegmentId, file, capacity);
+        nextSegmentId++;
+        return segment;
+    }
+
+    /**
+     * A memory-mapped segment file.
+     */
+    private static class Segment {
+
+        private final long segmentId;
+        private final File file;
+        private final int capacity;
+        private MappedByteBuffer buffer;
+        private int writePos = 0;
+        private int readPos = 0;
+        private boolean writable = true;
+
+        Segment(long segmentId, File file, int capacity) throws IOException {
+            this.segmentId = segmentId;
+            this.file = file;
+            this.capacity = capacity;
+            try (RandomAccessFile randFile = new RandomAccessFile(file, "rw");
+                    FileChannel channel = randFile.getChannel()) {
+                randFile.setLength(capacity);
+                // the mapping is valid after the channel is closed
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            }
+        }
+
+        /**
+         * drop the mapping, the memory is unmapped when the buffer is collected by the GC,
+         * a deleted segment file keeps its disk space until then
+         */
+        void unmap() {
+            this.buffer = null;
+        }
+
+        void delete() {
+            unmap();
+            if (!file.delete()) {
+                LOG.warn("Delete spill segment {} failure", segmentId);
+            }
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.dataproxy.channel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.flume.Context;
+import org.apache.flume.Event;
+import org.apache.flume.Transaction;
+import org.apache.inlong.sdk.commons.protocol.ProxyEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TestSpillableBufferQueueChannel
+ */
+public class TestSpillableBufferQueueChannel {
+
+    private static final int MEMORY_COUNT = 3;
+    private static final int EVENT_COUNT = 10;
+
+    private File spillDir;
+    private SpillableBufferQueueChannel channel;
+
+    @Before
+    public void setUp() throws IOException {
+        spillDir = Files.createTempDirectory("spill").toFile();
+        channel = createChannel();
+    }
+
+    @After
+    public void tearDown() {
+        if (channel != null) {
+            channel.stop();
+        }
+        deleteDir(spillDir);
+    }
+
+    @Test
+    public void testPutAndTakeAcrossSpill() {
+        putEvents(0, EVENT_COUNT);
+        // the events over the memory buffer are spilled
+        File[] segments = new File(spillDir, channel.getName()).listFiles();
+        assertTrue(segments != null && segments.length > 0);
+        assertEquals(createBodies(0, EVENT_COUNT), takeBodies(EVENT_COUNT, true));
+        Transaction tx = channel.getTransaction();
+        tx.begin();
+        assertNull(channel.take());
+        tx.commit();
+        tx.close();
+        // the memory tokens are released by the commit
+        putEvents(EVENT_COUNT, MEMORY_COUNT);
+        assertEquals(createBodies(EVENT_COUNT, MEMORY_COUNT), takeBodies(MEMORY_COUNT, true));
+    }
+
+    @Test
+    public void testRollbackRestoresHead() {
+        putEvents(0, EVENT_COUNT);
+        // the taken events come from both the memory and the spill files
+        assertEquals(createBodies(0, 5), takeBodies(5, false));
+        putEvents(EVENT_COUNT, 1);
+        assertEquals(createBodies(0, EVENT_COUNT + 1), takeBodies(EVENT_COUNT + 1, true));
+    }
+
+    @Test
+    public void testRollbackAfterAllTaken() {
+        putEvents(0, EVENT_COUNT);
+        assertEquals(createBodies(0, EVENT_COUNT), takeBodies(EVENT_COUNT, false));
+        // the rolled back events are taken before the events put later
+        putEvents(EVENT_COUNT, 2);
+        assertEquals(createBodies(0, 3), takeBodies(3, false));
+        assertEquals(createBodies(0, EVENT_COUNT + 2), takeBodies(EVENT_COUNT + 2, true));
+    }
+
+    @Test
+    public void testPutRollback() {
+        Transaction tx = channel.getTransaction();
+        tx.begin();
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            channel.put(createEvent(i));
+        }
+        tx.rollback();
+        tx.close();
+        tx = channel.getTransaction();
+        tx.begin();
+        assertNull(channel.take());
+        tx.commit();
+        tx.close();
+        // the memory tokens are released by the rollback
+        putEvents(0, MEMORY_COUNT);
+        assertEquals(createBodies(0, MEMORY_COUNT), takeBodies(MEMORY_COUNT, true));
+    }
+
+    @Test
+    public void testReplayAfterRestart() throws IOException {
+        putEvents(0, EVENT_COUNT);
+        assertEquals(createBodies(0, MEMORY_COUNT + 1), takeBodies(MEMORY_COUNT + 1, true));
+        channel.stop();
+        // the spilled events are read back by the next run, at least once
+        channel = createChannel();
+        List<String> replayed = new ArrayList<>();
+        Transaction tx = channel.getTransaction();
+        tx.begin();
+        Event event;
+        while ((event = channel.take()) != null) {
+            ProxyEvent proxyEvent = (ProxyEvent) event;
+            assertEquals("group_\u6d4b\u8bd5", proxyEvent.getInlongGroupId());
+            assertEquals("topic_\u6d4b\u8bd5", proxyEvent.getTopic());
+            assertEquals(createLongValue(), proxyEvent.getHeaders().get("longHeader"));
+            replayed.add(new String(event.getBody()));
+        }
+        tx.commit();
+        tx.close();
+        List<String> expected = createBodies(MEMORY_COUNT + 1, EVENT_COUNT - MEMORY_COUNT - 1);
+        assertEquals(expected, replayed.subList(replayed.size() - expected.size(), replayed.size()));
+    }
+
+    @Test
+    public void testRollbackKeptAfterRestart() {
+        putEvents(0, EVENT_COUNT);
+        assertEquals(createBodies(0, EVENT_COUNT), takeBodies(EVENT_COUNT, false));
+        channel.stop();
+        // the rolled back events read from the spill files are not lost by the restart
+        channel = createChannel();
+        List<String> replayed = takeBodies(EVENT_COUNT, true);
+        assertTrue(replayed.containsAll(createBodies(MEMORY_COUNT, EVENT_COUNT - MEMORY_COUNT)));
+    }
+
+    @Test
+    public void testEncodeEvent() throws IOException {
+        ProxyEvent event = createEvent(1);
+        ProxyEvent decoded = SpillableBufferQueueChannel.decodeEvent(
+                SpillableBufferQueueChannel.encodeEvent(event));
+        assertEquals(event.getInlongGroupId(), decoded.getInlongGroupId());
+        assertEquals(event.getInlongStreamId(), decoded.getInlongStreamId());
+        assertEquals(event.getUid(), decoded.getUid());
+        assertEquals(event.getSourceIp(), decoded.getSourceIp());
+        assertEquals(event.getTopic(), decoded.getTopic());
+        assertEquals(event.getMsgTime(), decoded.getMsgTime());
+        assertEquals(event.getSourceTime(), decoded.getSourceTime());
+        assertEquals(event.getHeaders(), decoded.getHeaders());
+        assertEquals("event 1", new String(decoded.getBody()));
+    }
+
+    private SpillableBufferQueueChannel createChannel() {
+        Map<String, String> params = new HashMap<>();
+        params.put(BufferQueueChannel.KEY_MAX_BUFFERQUEUE_COUNT, String.valueOf(MEMORY_COUNT));
+        params.put(SpillableBufferQueueChannel.KEY_SPILL_DIR, spillDir.getAbsolutePath());
+        params.put(SpillableBufferQueueChannel.KEY_SPILL_SEGMENT_SIZE_MB, "1");
+        params.put(SpillableBufferQueueChannel.KEY_MAX_SPILL_SIZE_MB, "1");
+        SpillableBufferQueueChannel newChannel = new SpillableBufferQueueChannel();
+        newChannel.setName("spill-channel");
+        newChannel.configure(new Context(params));
+        newChannel.start();
+        return newChannel;
+    }
+
+    private ProxyEvent createEvent(int index) {
+        ProxyEvent event = new ProxyEvent("group_\u6d4b\u8bd5", "stream", ("event " + index).getBytes(),
+                System.currentTimeMillis(), "127.0.0.1");
+        event.setTopic("topic_\u6d4b\u8bd5");
+        // longer than the 64KB limit of DataOutput.writeUTF
+        event.getHeaders().put("longHeader", createLongValue());
+        return event;
+    }
+
+    private String createLongValue() {
+        StringBuilder builder = new StringBuilder(22000);
+        while (builder.length() < 22000) {
+            builder.append("\u503c");
+        }
+        return builder.toString();
+    }
+
+    private void putEvents(int startIndex, int count) {
+        Transaction tx = channel.getTransaction();
+        tx.begin();
+        for (int i = startIndex; i < startIndex + count; i++) {
+            channel.put(createEvent(i));
+        }
+        tx.commit();
+        tx.close();
+    }
+
+    private List<String> takeBodies(int count, boolean commit) {
+        List<String> bodies = new ArrayList<>();
+        Transaction tx = channel.getTransaction();
+        tx.begin();
+        for (int i = 0; i < count; i++) {
+            Event event = channel.take();
+            if (event == null) {
+                break;
+            }
+            bodies.add(new String(event.getBody()));
+        }
+        if (commit) {
+            tx.commit();
+        } else {
+            tx.rollback();
+        }
+        tx.close();
+        return bodies;
+    }
+
+    private List<String> createBodies(int startIndex, int count) {
+        List<String> bodies = new ArrayList<>();
+        for (int i = startIndex; i < startIndex + count; i++) {
+            bodies.add("event " + i);
+        }
+        return bodies;
+    }
+
+    private void deleteDir(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteDir(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.dataproxy.dispatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.flume.Context;
+import org.apache.inlong.sdk.commons.protocol.ProxyEvent;
+import org.apache.inlong.sdk.commons.protocol.ProxyPackEvent;
+import org.apache.inlong.sdk.commons.protocol.ProxySdk.ResultCode;
+import org.apache.inlong.sdk.commons.protocol.SourceCallback;
+import org.junit.Test;
+
+/**
+ * TestDispatchManager
+ */
+public class TestDispatchManager {
+
+    @Test
+    public void testRollover() {
+        ArrayList<DispatchQueue> dispatchQueues = createQueues(1);
+        Context context = new Context();
+        context.put(DispatchManager.KEY_DISPATCH_MAX_PACKCOUNT, "10");
+        context.put(DispatchManager.KEY_DISPATCH_TIMEOUT, "0");
+        DispatchManager dispatchManager = new DispatchManager(context, dispatchQueues);
+        long msgTime = System.currentTimeMillis();
+        for (int i = 0; i < 25; i++) {
+            dispatchManager.addEvent(new ProxyEvent("group", "stream", new byte[10], msgTime, "127.0.0.1"));
+        }
+        // the full profiles are dispatched
+        assertEquals(10, dispatchQueues.get(0).poll().getCount());
+        assertEquals(10, dispatchQueues.get(0).poll().getCount());
+        assertNull(dispatchQueues.get(0).poll());
+        dispatchManager.setNeedOutputOvertimeData();
+        dispatchManager.outputOvertimeData();
+        assertEquals(5, dispatchQueues.get(0).poll().getCount());
+        assertNull(dispatchQueues.get(0).poll());
+    }
+
+    @Test
+    public void testConcurrentAddEvent() throws InterruptedException {
+        final ArrayList<DispatchQueue> dispatchQueues = createQueues(4);
+        Context context = new Context();
+        context.put(DispatchManager.KEY_DISPATCH_MAX_PACKCOUNT, "16");
+        context.put(DispatchManager.KEY_DISPATCH_TIMEOUT, "0");
+        final DispatchManager dispatchManager = new DispatchManager(context, dispatchQueues);
+        final long msgTime = System.currentTimeMillis();
+        final int threadCount = 8;
+        final int eventCount = 10000;
+        final CountDownLatch endLatch = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            final int offset = i;
+            new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < eventCount; j++) {
+                            dispatchManager.addEvent(new ProxyEvent("group" + ((j + offset) % 5), "stream",
+                                    new byte[10], msgTime, "127.0.0.1"));
+                        }
+                    } finally {
+                        endLatch.countDown();
+                    }
+                }
+            }).start();
+        }
+        endLatch.await();
+        dispatchManager.setNeedOutputOvertimeData();
+        dispatchManager.outputOvertimeData();
+        // no event is lost or dispatched twice by the racing adds
+        long dispatchCount = 0;
+        List<DispatchProfile> profiles = new ArrayList<>();
+        for (DispatchQueue dispatchQueue : dispatchQueues) {
+            dispatchQueue.drainTo(profiles);
+        }
+        for (DispatchProfile profile : profiles) {
+            assertEquals(profile.getCount(), profile.getEvents().size());
+            dispatchCount += profile.getCount();
+        }
+        assertEquals((long) threadCount * eventCount, dispatchCount);
+    }
+
+    @Test
+    public void testQueueBound() throws InterruptedException {
+        final ArrayList<DispatchQueue> dispatchQueues = createQueues(1, 2);
+        Context context = new Context();
+        context.put(DispatchManager.KEY_DISPATCH_MAX_PACKCOUNT, "1");
+        context.put(DispatchManager.KEY_DISPATCH_OFFER_TIMEOUT, "60000");
+        final DispatchManager dispatchManager = new DispatchManager(context, dispatchQueues);
+        final long msgTime = System.currentTimeMillis();
+        // every event rolls the previous profile over, the fourth event finds the queue full
+        for (int i = 0; i < 3; i++) {
+            dispatchManager.addEvent(new ProxyEvent("group", "stream", new byte[10], msgTime, "127.0.0.1"));
+        }
+        assertEquals(2, dispatchQueues.get(0).size());
+        final CountDownLatch endLatch = new CountDownLatch(1);
+        new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                dispatchManager.addEvent(new ProxyEvent("group", "stream", new byte[10], msgTime, "127.0.0.1"));
+                endLatch.countDown();
+            }
+        }).start();
+        assertFalse(endLatch.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(2, dispatchQueues.get(0).size());
+        // a worker takes a profile and wakes up the producer
+        assertEquals(1, dispatchQueues.get(0).poll().getCount());
+        assertTrue(endLatch.await(10, TimeUnit.SECONDS));
+        assertEquals(2, dispatchQueues.get(0).size());
+        assertEquals(0, dispatchManager.getQueueFullCount());
+    }
+
+    @Test
+    public void testQueueFullKeepsCommittedEvents() throws InterruptedException {
+        final ArrayList<DispatchQueue> dispatchQueues = createQueues(1, 1);
+        Context context = new Context();
+        context.put(DispatchManager.KEY_DISPATCH_MAX_PACKCOUNT, "1");
+        context.put(DispatchManager.KEY_DISPATCH_OFFER_TIMEOUT, "10");
+        final DispatchManager dispatchManager = new DispatchManager(context, dispatchQueues);
+        final long msgTime = System.currentTimeMillis();
+        dispatchManager.addEvent(new ProxyEvent("group", "stream", new byte[10], msgTime, "127.0.0.1"));
+        dispatchManager.addEvent(new ProxyEvent("group", "stream", new byte[10], msgTime, "127.0.0.1"));
+        final CountDownLatch endLatch = new CountDownLatch(1);
+        new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                dispatchManager.addEvent(new ProxyEvent("group", "stream", new byte[10], msgTime, "127.0.0.1"));
+                endLatch.countDown();
+            }
+        }).start();
+        // the timed out offers are counted, the profile is not dropped
+        assertFalse(endLatch.await(200, TimeUnit.MILLISECONDS));
+        assertTrue(dispatchManager.getQueueFullCount() > 0);
+        assertEquals(0, dispatchManager.getRejectCount());
+        assertEquals(1, dispatchQueues.get(0).poll().getCount());
+        assertTrue(endLatch.await(10, TimeUnit.SECONDS));
+        assertEquals(1, dispatchQueues.get(0).poll().getCount());
+        assertNull(dispatchQueues.get(0).poll());
+    }
+
+    @Test
+    public void testRejectPackOnFullQueue() {
+        ArrayList<DispatchQueue> dispatchQueues = createQueues(1, 1);
+        Context context = new Context();
+        context.put(DispatchManager.KEY_DISPATCH_MAX_PACKCOUNT, "1");
+        context.put(DispatchManager.KEY_DISPATCH_OFFER_TIMEOUT, "10");
+        DispatchManager dispatchManager = new DispatchManager(context, dispatchQueues);
+        long msgTime = System.currentTimeMillis();
+        // the second event rolls the first profile over and fills the queue
+        dispatchManager.addEvent(new ProxyEvent("group", "stream", new byte[10], msgTime, "127.0.0.1"));
+        dispatchManager.addEvent(new ProxyEvent("group", "stream", new byte[10], msgTime, "127.0.0.1"));
+        final AtomicReference<ResultCode> result = new AtomicReference<>();
+        dispatchManager.addPackEvent(new ProxyPackEvent("group", "stream", createEvents(3, msgTime),
+                new SourceCallback() {
+
+                    @Override
+                    public void callback(ResultCode resultCode) {
+                        result.set(resultCode);
+                    }
+                }));
+        // the first profile of the pack does not fit, the source is told to resend the whole pack
+        assertEquals(ResultCode.ERR_REJECT, result.get());
+        assertEquals(1, dispatchManager.getQueueFullCount());
+        assertEquals(3, dispatchManager.getRejectCount());
+        assertEquals(1, dispatchQueues.get(0).size());
+    }
+
+    @Test
+    public void testPartlyDispatchedPackNotRejected() throws InterruptedException {
+        final ArrayList<DispatchQueue> dispatchQueues = createQueues(1, 1);
+        Context context = new Context();
+        context.put(DispatchManager.KEY_DISPATCH_MAX_PACKCOUNT, "1");
+        context.put(DispatchManager.KEY_DISPATCH_OFFER_TIMEOUT, "10");
+        final DispatchManager dispatchManager = new DispatchManager(context, dispatchQueues);
+        final List<ProxyEvent> events = createEvents(3, System.currentTimeMillis());
+        final List<ResultCode> results = new ArrayList<>();
+        final CountDownLatch endLatch = new CountDownLatch(1);
+        new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                dispatchManager.addPackEvent(new ProxyPackEvent("group", "stream", events, new SourceCallback() {
+
+                    @Override
+                    public void callback(ResultCode resultCode) {
+                        synchronized (results) {
+                            results.add(resultCode);
+                        }
+                    }
+                }));
+                endLatch.countDown();
+            }
+        }).start();
+        // the first profile is queued, the later ones wait for the workers instead of a reject
+        assertFalse(endLatch.await(200, TimeUnit.MILLISECONDS));
+        assertTrue(dispatchManager.getQueueFullCount() > 0);
+        List<DispatchProfile> profiles = new ArrayList<>();
+        while (profiles.size() < 3) {
+            DispatchProfile profile = dispatchQueues.get(0).poll(10, TimeUnit.SECONDS);
+            assertTrue(profile != null);
+            profiles.add(profile);
+        }
+        assertTrue(endLatch.await(10, TimeUnit.SECONDS));
+        assertEquals(0, dispatchManager.getRejectCount());
+        // the source is acked once by the outcome of all the profiles
+        for (DispatchProfile profile : profiles) {
+            synchronized (results) {
+                assertTrue(results.isEmpty());
+            }
+            profile.ack();
+        }
+        synchronized (results) {
+            assertEquals(1, results.size());
+            assertEquals(ResultCode.SUCCUSS, results.get(0));
+        }
+    }
+
+    private List<ProxyEvent> createEvents(int eventCount, long msgTime) {
+        List<ProxyEvent> events = new ArrayList<>();
+        for (int i = 0; i < eventCount; i++) {
+            events.add(new ProxyEvent("group", "stream", new byte[10], msgTime, "127.0.0.1"));
+        }
+        return events;
+    }
+
+    private ArrayList<DispatchQueue> createQueues(int queueCount) {
+        return createQueues(queueCount, DispatchManager.DEFAULT_DISPATCH_MAX_QUEUE_SIZE);
+    }
+
+    private ArrayList<DispatchQueue> createQueues(int queueCount, int maxQueueSize) {
+        ArrayList<DispatchQueue> dispatchQueues = new ArrayList<>();
+        for (int i = 0; i < queueCount; i++) {
+            dispatchQueues.add(new DispatchQueue(maxQueueSize));
+        }
+        return dispatchQueues;
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.dataproxy.dispatch.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.flume.Context;
+import org.apache.inlong.dataproxy.dispatch.DispatchManager;
+import org.apache.inlong.dataproxy.dispatch.DispatchProfile;
+import org.apache.inlong.dataproxy.dispatch.DispatchQueue;
+import org.apache.inlong.sdk.commons.protocol.ProxyEvent;
+
+/**
+ * DispatchManagerBenchmark, compare the per-event cost of {@link DispatchManager#addEvent}
+ * with the former implementation, which kept the profiles in a ConcurrentHashMap keyed by
+ * the joined uid and minute string and replaced the full profile without a lock.
+ *
+ * Each producer thread adds events of the shared uids, the workers drain the dispatch
+ * queues and count the dispatched events. The difference between the added and the
+ * dispatched events is reported as diffCount, the racing profiles of the former
+ * implementation lose events or dispatch a profile twice.
+ *
+ * Usage: DispatchManagerBenchmark [uidCount] [eventCountPerThread] [threadCounts]
+ */
+public class DispatchManagerBenchmark {
+
+    private static final int WORKER_COUNT = 8;
+
+    private final int uidCount;
+    private final int eventCount;
+    private final ProxyEvent[] events;
+
+    public DispatchManagerBenchmark(int uidCount, int eventCount) {
+        this.uidCount = uidCount;
+        this.eventCount = eventCount;
+        this.events = new ProxyEvent[uidCount];
+        long msgTime = System.currentTimeMillis();
+        byte[] body = new byte[256];
+        for (int i = 0; i < uidCount; i++) {
+            this.events[i] = new ProxyEvent("groupId_" + i, "streamId", body, msgTime, "127.0.0.1");
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int uidCount = 100;
+        int eventCount = 500000;
+        String threadCounts = "16,32,64";
+        if (args.length > 0) {
+            uidCount = Integer.parseInt(args[0]);
+        }
+        if (args.length > 1) {
+            eventCount = Integer.parseInt(args[1]);
+        }
+        if (args.length > 2) {
+            threadCounts = args[2];
+        }
+        DispatchManagerBenchmark benchmark = new DispatchManagerBenchmark(uidCount, eventCount);
+        for (String threadCount : threadCounts.split(",")) {
+            benchmark.start(Integer.parseInt(threadCount.trim()));
+        }
+    }
+
+    /**
+     * Start benchmark test with the producer threads, each mode is warmed up before measured.
+     */
+    public void start(int threadCount) throws Exception {
+        run(threadCount, eventCount / 10, true);
+        run(threadCount, eventCount / 10, false);
+        printResult("joined-key-map", threadCount, run(threadCount, eventCount, true));
+        printResult("striped", threadCount, run(threadCount, eventCount, false));
+    }
+
+    private long[] run(int threadCount, final int count, final boolean legacy) throws Exception {
+        final ArrayList<DispatchQueue> dispatchQueues = new ArrayList<>();
+        for (int i = 0; i < WORKER_COUNT; i++) {
+            dispatchQueues.add(new DispatchQueue(DispatchManager.DEFAULT_DISPATCH_MAX_QUEUE_SIZE));
+        }
+        Context context = new Context();
+        context.put(DispatchManager.KEY_DISPATCH_TIMEOUT, "100");
+        final DispatchManager dispatchManager = new DispatchManager(context, dispatchQueues);
+        final JoinedKeyDispatchManager legacyManager = new JoinedKeyDispatchManager(dispatchQueues,
+                dispatchManager.getMaxPackCount(), dispatchManager.getMaxPackSize());
+        // workers
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicLong dispatchCount = new AtomicLong(0);
+        List<Thread> workers = new ArrayList<>();
+        for (final DispatchQueue dispatchQueue : dispatchQueues) {
+            Thread worker = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        while (running.get() || !dispatchQueue.isEmpty()) {
+                            DispatchProfile profile = dispatchQueue.poll(10, TimeUnit.MILLISECONDS);
+                            if (profile != null) {
+                                dispatchCount.addAndGet(profile.getCount());
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        // producers
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final CountDownLatch endLatch = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            final int offset = i;
+            new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                        for (int j = 0; j < count; j++) {
+                            ProxyEvent event = events[(j + offset) % uidCount];
+                            if (legacy) {
+                                try {
+                                    legacyManager.addEvent(event);
+                                } catch (RuntimeException e) {
+                                    // the racing adds to a former profile may fail
+                                }
+                            } else {
+                                dispatchManager.addEvent(event);
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        endLatch.countDown();
+                    }
+                }
+            }).start();
+        }
+        long startTime = System.nanoTime();
+        startLatch.countDown();
+        endLatch.await();
+        long costNs = System.nanoTime() - startTime;
+        // flush the left profiles
+        if (legacy) {
+            legacyManager.flush();
+        } else {
+            Thread.sleep(200);
+            dispatchManager.setNeedOutputOvertimeData();
+            dispatchManager.outputOvertimeData();
+        }
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return new long[]{costNs, (long) threadCount * count - dispatchCount.get()};
+    }
+
+    private void printResult(String mode, int threadCount, long[] result) {
+        long msgCount = (long) threadCount * eventCount;
+        System.out.println(new StringBuilder(256)
+                .append("[Benchmark] mode=").append(mode)
+                .append(", threads=").append(threadCount)
+                .append(", uids=").append(uidCount)
+                .append(", msgCount=").append(msgCount)
+                .append(", ns/msg=").append(result[0] * threadCount / msgCount)
+                .append(", msgs/s=").append((long) (msgCount / (result[0] / 1000000000.0)))
+                .append(", diffCount=").append(result[1])
+                .toString());
+    }
+
+    /**
+     * The former aggregation of DispatchManager, used as the baseline.
+     */
+    private static class JoinedKeyDispatchManager {
+
+        private final ArrayList<DispatchQueue> dispatchQueues;
+        private final long maxPackCount;
+        private final long maxPackSize;
+        private final AtomicLong sendIndex = new AtomicLong(0);
+        private final ConcurrentHashMap<String, DispatchProfile> profileCache = new ConcurrentHashMap<>();
+
+        JoinedKeyDispatchManager(ArrayList<DispatchQueue> dispatchQueues,
+                long maxPackCount, long maxPackSize) {
+            this.dispatchQueues = dispatchQueues;
+            this.maxPackCount = maxPackCount;
+            this.maxPackSize = maxPackSize;
+        }
+
+        public void addEvent(ProxyEvent event) {
+            String eventUid = event.getUid();
+            long dispatchTime = event.getMsgTime() - event.getMsgTime() % DispatchManager.MINUTE_MS;
+            String dispatchKey = eventUid + "." + dispatchTime;
+            DispatchProfile dispatchProfile = this.profileCache.get(dispatchKey);
+            if (dispatchProfile == null) {
+                dispatchProfile = new DispatchProfile(eventUid, event.getInlongGroupId(),
+                        event.getInlongStreamId(), dispatchTime);
+                this.profileCache.put(dispatchKey, dispatchProfile);
+            }
+            boolean addResult = dispatchProfile.addEvent(event, maxPackCount, maxPackSize);
+            dispatchProfile.setSendIndex((int) (sendIndex.incrementAndGet() & Integer.MAX_VALUE));
+            if (!addResult) {
+                DispatchProfile newDispatchProfile = new DispatchProfile(eventUid, event.getInlongGroupId(),
+                        event.getInlongStreamId(), dispatchTime);
+                this.profileCache.put(dispatchKey, newDispatchProfile);
+                this.dispatchQueues.get(dispatchProfile.getSendIndex() % dispatchQueues.size())
+                        .offer(dispatchProfile);
+                newDispatchProfile.addEvent(event, maxPackCount, maxPackSize);
+            }
+        }
+
+        public void flush() {
+            for (String key : new ArrayList<>(profileCache.keySet())) {
+                DispatchProfile dispatchProfile = profileCache.remove(key);
+                if (dispatchProfile != null) {
+                    this.dispatchQueues.get(dispatchProfile.getSendIndex() % dispatchQueues.size())
+                            .offer(dispatchProfile);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.dataproxy.sink.mq;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.inlong.dataproxy.metrics.MessageQueueClusterMetricItem;
+import org.junit.Test;
+
+/**
+ * TestMessageQueueClusterStatus
+ */
+public class TestMessageQueueClusterStatus {
+
+    @Test
+    public void testScore() {
+        MessageQueueClusterStatus fast = new MessageQueueClusterStatus("fast", 3, 1000L,
+                new MessageQueueClusterMetricItem());
+        MessageQueueClusterStatus slow = new MessageQueueClusterStatus("slow", 3, 1000L,
+                new MessageQueueClusterMetricItem());
+        for (int i = 0; i < 20; i++) {
+            assertFalse(fast.beforeSend());
+            fast.afterSend(false, true, 5L);
+            assertFalse(slow.beforeSend());
+            slow.afterSend(false, true, 500L);
+        }
+        assertTrue(fast.getScore() < slow.getScore());
+        assertEquals(0, fast.getInflightCount());
+        // the in-flight packs count against the cluster
+        for (int i = 0; i < 200; i++) {
+            fast.beforeSend();
+        }
+        assertTrue(fast.getScore() > slow.getScore());
+    }
+
+    @Test
+    public void testEjectAndRecover() throws InterruptedException {
+        MessageQueueClusterMetricItem metricItem = new MessageQueueClusterMetricItem();
+        MessageQueueClusterStatus status = new MessageQueueClusterStatus("cluster", 3, 50L, metricItem);
+        // the packs cancelled before handed to the cluster are not counted
+        for (int i = 0; i < 5; i++) {
+            assertFalse(status.beforeSend());
+            status.cancelSend(false);
+        }
+        assertFalse(status.isEjected());
+        assertEquals(0, status.getInflightCount());
+        // the failures without a latency, such as the producer is not created, are counted
+        for (int i = 0; i < 2; i++) {
+            assertFalse(status.beforeSend());
+            status.afterSend(false, false, -1L);
+        }
+        assertFalse(status.isEjected());
+        assertEquals(0.0, status.getSendLatency(), 0.0);
+        assertFalse(status.beforeSend());
+        status.afterSend(false, false, 10L);
+        assertTrue(status.isEjected());
+        assertFalse(status.isAvailable(System.currentTimeMillis()));
+        assertEquals(1, metricItem.ejectCount.get());
+        assertEquals(1, metricItem.ejected.get());
+        Thread.sleep(60L);
+        // a single probe after the eject time, failed probe ejects the cluster again
+        assertTrue(status.isAvailable(System.currentTimeMillis()));
+        assertTrue(status.beforeSend());
+        assertFalse(status.isAvailable(System.currentTimeMillis()));
+        status.afterSend(true, false, 10L);
+        assertTrue(status.isEjected());
+        assertFalse(status.isAvailable(System.currentTimeMillis()));
+        assertEquals(2, metricItem.ejectCount.get());
+        Thread.sleep(60L);
+        // the succeeded probe recovers the cluster
+        assertTrue(status.beforeSend());
+        status.afterSend(true, true, 10L);
+        assertFalse(status.isEjected());
+        assertTrue(status.isAvailable(System.currentTimeMillis()));
+        assertEquals(0, metricItem.ejected.get());
+        assertEquals(10, metricItem.sendCount.get());
+        assertEquals(4, metricItem.sendFailCount.get());
+    }
+
+    @Test
+    public void testOnlyProbeRecovers() throws InterruptedException {
+        MessageQueueClusterMetricItem metricItem = new MessageQueueClusterMetricItem();
+        MessageQueueClusterStatus status = new MessageQueueClusterStatus("cluster", 3, 50L, metricItem);
+        // two packs are in flight when the cluster is ejected
+        assertFalse(status.beforeSend());
+        assertFalse(status.beforeSend());
+        for (int i = 0; i < 3; i++) {
+            assertFalse(status.beforeSend());
+            status.afterSend(false, false, 10L);
+        }
+        assertTrue(status.isEjected());
+        // the late success sent before the ejection does not recover the cluster
+        status.afterSend(false, true, 10L);
+        assertTrue(status.isEjected());
+        assertFalse(status.isAvailable(System.currentTimeMillis()));
+        Thread.sleep(60L);
+        assertTrue(status.beforeSend());
+        // the late failure does not eject the cluster again, nor end the probe
+        status.afterSend(false, false, 10L);
+        assertEquals(1, metricItem.ejectCount.get());
+        assertFalse(status.isAvailable(System.currentTimeMillis()));
+        // the probe not handed to the cluster lets the next pack probe it
+        status.cancelSend(true);
+        assertTrue(status.isEjected());
+        assertTrue(status.isAvailable(System.currentTimeMillis()));
+        assertTrue(status.beforeSend());
+        status.afterSend(true, true, 10L);
+        assertFalse(status.isEjected());
+        assertEquals(0, status.getInflightCount());
+    }
+
+    @Test
+    public void testConcurrentLatency() throws InterruptedException {
+        final MessageQueueClusterStatus status = new MessageQueueClusterStatus("cluster", 3, 50L,
+                new MessageQueueClusterMetricItem());
+        final int threadCount = 8;
+        final int resultCount = 5;
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final CountDownLatch endLatch = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount * resultCount; i++) {
+            status.beforeSend();
+        }
+        for (int i = 0; i < threadCount; i++) {
+            new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                        for (int j = 0; j < resultCount; j++) {
+                            status.afterSend(false, true, 100L);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        endLatch.countDown();
+                    }
+                }
+            }).start();
+        }
+        startLatch.countDown();
+        assertTrue(endLatch.await(10, TimeUnit.SECONDS));
+        // the same latency gives the same average in any order, unless an update is lost
+        double expected = 0;
+        for (int i = 0; i < threadCount * resultCount; i++) {
+            expected = expected * (1 - MessageQueueClusterStatus.LATENCY_EWMA_ALPHA)
+                    + 100L * MessageQueueClusterStatus.LATENCY_EWMA_ALPHA;
+        }
+        assertEquals(expected, status.getSendLatency(), 0.0);
+        assertEquals(0, status.getInflightCount());
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.dataproxy.source;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import org.apache.inlong.common.msg.AttributeConstants;
+import org.apache.inlong.common.msg.MsgType;
+import org.apache.inlong.common.msg.compress.CompressType;
+import org.apache.inlong.common.msg.compress.Compressors;
+import org.apache.inlong.dataproxy.base.ProxyMessage;
+import org.apache.inlong.dataproxy.consts.ConfigConstants;
+import org.junit.Assert;
+import org.junit.Test;
+import org.powermock.api.mockito.PowerMockito;
+
+/**
+ * DefaultServiceDecoderTest, decodes the packages built as the sdk does
+ */
+public class DefaultServiceDecoderTest {
+
+    private static final String REMOTE_IP = "127.0.0.2";
+    private static final long RCV_TIME = 1650000000000L;
+    // the attribute value is not ASCII, its UTF-8 length differs from its char count
+    private static final String ATTR_VALUE = "\u4e2d\u6587";
+    private static final String[] RECORDS = {"abc", "hello", "world!!"};
+
+    private final DefaultServiceDecoder decoder = new DefaultServiceDecoder();
+
+    @Test
+    public void testSingleBody() throws Exception {
+        for (boolean direct : new boolean[]{false, true}) {
+            byte[] body = "single body".getBytes(StandardCharsets.UTF_8);
+            Map<String, Object> result = decode(buildPackage(MsgType.MSG_COMMON_SERVICE,
+                    body, "groupId=g1&streamId=s1&dt=1650000000"), direct, null);
+            Assert.assertEquals(MsgType.MSG_COMMON_SERVICE, result.get(ConfigConstants.MSG_TYPE));
+            List<ProxyMessage> msgList = getMsgList(result);
+            Assert.assertEquals(1, msgList.size());
+            Assert.assertEquals("g1", msgList.get(0).getGroupId());
+            Assert.assertEquals("s1", msgList.get(0).getStreamId());
+            Assert.assertArrayEquals(body, msgList.get(0).getData());
+            Map<String, String> attrMap = msgList.get(0).getAttributeMap();
+            Assert.assertEquals("1", attrMap.get(AttributeConstants.MESSAGE_COUNT));
+            Assert.assertEquals(String.valueOf(RCV_TIME), attrMap.get(AttributeConstants.MSG_RPT_TIME));
+            // the original body is only kept for MSG_ORIGINAL_RETURN
+            Assert.assertNull(result.get(ConfigConstants.DECODER_BODY));
+        }
+    }
+
+    @Test
+    public void testMultiBody() throws Exception {
+        for (boolean direct : new boolean[]{false, true}) {
+            Map<String, Object> result = decode(buildPackage(MsgType.MSG_MULTI_BODY,
+                    buildMultiBody(), "groupId=g1&streamId=s1&cnt=3"), direct, null);
+            assertRecords(getMsgList(result));
+        }
+    }
+
+    @Test
+    public void testCompressedMultiBody() throws Exception {
+        byte[] body = buildMultiBody();
+        byte[] compressedBody = Compressors.compress(CompressType.SNAPPY, body, 0, body.length);
+        for (boolean direct : new boolean[]{false, true}) {
+            Map<String, Object> result = decode(buildPackage(MsgType.MSG_MULTI_BODY,
+                    compressedBody, "groupId=g1&streamId=s1&cnt=3&cp=snappy"), direct, null);
+            Assert.assertEquals("snappy", result.get(ConfigConstants.COMPRESS_TYPE));
+            assertRecords(getMsgList(result));
+        }
+    }
+
+    @Test
+    public void testOriginalReturn() throws Exception {
+        byte[] body = "original body".getBytes(StandardCharsets.UTF_8);
+        byte[] compressedBody = Compressors.compress(CompressType.SNAPPY, body, 0, body.length);
+        for (boolean direct : new boolean[]{false, true}) {
+            Map<String, Object> result = decode(buildPackage(MsgType.MSG_ORIGINAL_RETURN,
+                    compressedBody, "groupId=g1&streamId=s1&cp=snappy"), direct, null);
+            Assert.assertArrayEquals(body, getMsgList(result).get(0).getData());
+            // the response echoes the body as it was sent
+            Assert.assertArrayEquals(compressedBody, (byte[]) result.get(ConfigConstants.DECODER_BODY));
+        }
+    }
+
+    @Test
+    public void testAttributeWithNonAscii() throws Exception {
+        String attr = "groupId=g1&streamId=s1&k=" + ATTR_VALUE;
+        byte[] body = buildMultiBody();
+        Map<String, Object> result = decode(buildPackage(MsgType.MSG_MULTI_BODY, body,
+                attr + "&cnt=3"), false, null);
+        Assert.assertEquals(attr + "&cnt=3", result.get(ConfigConstants.DECODER_ATTRS));
+        Assert.assertEquals(ATTR_VALUE, getMsgList(result).get(0).getAttributeMap().get("k"));
+    }
+
+    @Test
+    public void testBinAppendRtms() throws Exception {
+        String attr = "groupId=g1&streamId=s1&k=" + ATTR_VALUE;
+        byte[] body = "bin body".getBytes(StandardCharsets.UTF_8);
+        for (boolean direct : new boolean[]{false, true}) {
+            Map<String, Object> result = decode(buildBinPackage(body, attr, 0), direct, null);
+            ByteBuffer message = ByteBuffer.wrap(getMsgList(result).get(0).getData());
+            String newAttr = assertBinMessage(message, body);
+            Assert.assertTrue(newAttr.startsWith(attr + "&rtms="));
+            long rtms = Long.parseLong(newAttr.substring((attr + "&rtms=").length()));
+            Assert.assertTrue(rtms > 0);
+            // the group and stream names are carried by the attributes
+            Assert.assertEquals(0x4, message.getShort(9) & 0x4);
+        }
+    }
+
+    @Test
+    public void testBinAppendTrace() throws Exception {
+        Channel channel = PowerMockito.mock(Channel.class);
+        PowerMockito.when(channel.localAddress()).thenReturn(new InetSocketAddress("127.0.0.1", 46801));
+        String attr = "groupId=g1&streamId=s1&rtms=1650000000001&k=" + ATTR_VALUE;
+        byte[] body = "bin body".getBytes(StandardCharsets.UTF_8);
+        for (boolean direct : new boolean[]{false, true}) {
+            Map<String, Object> result = decode(buildBinPackage(body, attr, 0x2), direct, channel);
+            String newAttr = assertBinMessage(
+                    ByteBuffer.wrap(getMsgList(result).get(0).getData()), body);
+            Assert.assertEquals(attr + "&node2ip=127.0.0.1&rtime2=" + RCV_TIME, newAttr);
+        }
+    }
+
+    @Test
+    public void testBinAppendToEmptyAttr() throws Exception {
+        byte[] body = "bin body".getBytes(StandardCharsets.UTF_8);
+        Map<String, Object> result = decode(buildBinPackage(body, "", 0), false, null);
+        String newAttr = assertBinMessage(
+                ByteBuffer.wrap(getMsgList(result).get(0).getData()), body);
+        Assert.assertTrue(newAttr.startsWith("rtms="));
+    }
+
+    @Test
+    public void testBinWithoutRebuild() throws Exception {
+        String attr = "groupId=g1&streamId=s1&rtms=1650000000001&k=" + ATTR_VALUE;
+        byte[] body = "bin body".getBytes(StandardCharsets.UTF_8);
+        byte[] binPackage = buildBinPackage(body, attr, 0);
+        Map<String, Object> result = decode(binPackage, true, null);
+        byte[] message = getMsgList(result).get(0).getData();
+        // only the extend field is changed
+        ByteBuffer.wrap(binPackage).putShort(9, (short) 0x4);
+        Assert.assertArrayEquals(binPackage, message);
+    }
+
+    @Test
+    public void testIncompletePackage() throws Exception {
+        byte[] fullPackage = buildPackage(MsgType.MSG_COMMON_SERVICE,
+                "body".getBytes(StandardCharsets.UTF_8), "groupId=g1&streamId=s1");
+        ByteBuf buffer = Unpooled.wrappedBuffer(fullPackage, 0, fullPackage.length - 1);
+        try {
+            Assert.assertNull(decoder.extractData(buffer, REMOTE_IP, RCV_TIME, null));
+            Assert.assertEquals(0, buffer.readerIndex());
+        } finally {
+            buffer.release();
+        }
+    }
+
+    private Map<String, Object> decode(byte[] data, boolean direct, Channel channel) throws Exception {
+        ByteBuf buffer;
+        if (direct) {
+            buffer = Unpooled.directBuffer(data.length);
+            buffer.writeBytes(data);
+        } else {
+            buffer = Unpooled.wrappedBuffer(data);
+        }
+        try {
+            Map<String, Object> result = decoder.extractData(buffer, REMOTE_IP, RCV_TIME, channel);
+            Assert.assertNotNull(result);
+            return result;
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ProxyMessage> getMsgList(Map<String, Object> result) {
+        return (List<ProxyMessage>) result.get(ConfigConstants.MSG_LIST);
+    }
+
+    private void assertRecords(List<ProxyMessage> msgList) {
+        Assert.assertEquals(RECORDS.length, msgList.size());
+        for (int i = 0; i < RECORDS.length; i++) {
+            ByteBuffer dataBuffer = msgList.get(i).getDataBuffer();
+            Assert.assertEquals(RECORDS[i], new String(dataBuffer.array(), dataBuffer.position(),
+                    dataBuffer.remaining(), StandardCharsets.UTF_8));
+            Assert.assertArrayEquals(RECORDS[i].getBytes(StandardCharsets.UTF_8), msgList.get(i).getData());
+        }
+        Assert.assertEquals("3", msgList.get(0).getAttributeMap().get(AttributeConstants.MESSAGE_COUNT));
+    }
+
+    /**
+     * check the frame of the rebuilt bin message and return its attributes
+     */
+    private String assertBinMessage(ByteBuffer message, byte[] body) {
+        Assert.assertEquals(message.capacity(), message.getInt(0) + 4);
+        int bodyLen = message.getInt(21);
+        Assert.assertEquals(body.length, bodyLen);
+        byte[] newBody = new byte[bodyLen];
+        System.arraycopy(message.array(), 25, newBody, 0, bodyLen);
+        Assert.assertArrayEquals(body, newBody);
+        // the attribute length is the UTF-8 byte length
+        int attrLen = message.getShort(25 + bodyLen);
+        Assert.assertEquals(message.capacity(), 29 + bodyLen + attrLen);
+        Assert.assertEquals(0xEE01, message.getShort(27 + bodyLen + attrLen) & 0xFFFF);
+        return new String(message.array(), 27 + bodyLen, attrLen, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * [totalLen][msgType][bodyLen][body][attrLen][attr]
+     */
+    private byte[] buildPackage(MsgType msgType, byte[] body, String attr) {
+        byte[] attrData = attr.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(13 + body.length + attrData.length);
+        buffer.putInt(9 + body.length + attrData.length);
+        buffer.put((byte) msgType.getValue());
+        buffer.putInt(body.length);
+        buffer.put(body);
+        buffer.putInt(attrData.length);
+        buffer.put(attrData);
+        return buffer.array();
+    }
+
+    /**
+     * [totalLen][msgType][groupIdNum][streamIdNum][extendField][dataTime][msgCount][uniq]
+     * [bodyLen][body][attrLen][attr][magic]
+     */
+    private byte[] buildBinPackage(byte[] body, String attr, int extendField) {
+        byte[] attrData = attr.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(29 + body.length + attrData.length);
+        buffer.putInt(25 + body.length + attrData.length);
+        buffer.put((byte) MsgType.MSG_BIN_MULTI_BODY.getValue());
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) extendField);
+        buffer.putInt((int) (RCV_TIME / 1000));
+        buffer.putShort((short) 1);
+        buffer.putInt(9);
+        buffer.putInt(body.length);
+        buffer.put(body);
+        buffer.putShort((short) attrData.length);
+        buffer.put(attrData);
+        buffer.putShort((short) 0xEE01);
+        return buffer.array();
+    }
+
+    private byte[] buildMultiBody() {
+        int length = 0;
+        for (String record : RECORDS) {
+            length += 4 + record.length();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (String record : RECORDS) {
+            buffer.putInt(record.length());
+            buffer.put(record.getBytes(StandardCharsets.UTF_8));
+        }
+        return buffer.array();
+    }
+}
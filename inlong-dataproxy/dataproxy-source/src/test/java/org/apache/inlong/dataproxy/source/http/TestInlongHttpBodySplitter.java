@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.dataproxy.source.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+/**
+ * TestInlongHttpBodySplitter
+ */
+public class TestInlongHttpBodySplitter {
+
+    @Test
+    public void testSplitLines() {
+        List<byte[]> records = InlongHttpBodySplitter.splitLines(
+                buffer("a=1\r\n\nb=2\nc=3"), 10);
+        assertEquals(3, records.size());
+        assertEquals("a=1", string(records.get(0)));
+        assertEquals("b=2", string(records.get(1)));
+        assertEquals("c=3", string(records.get(2)));
+        assertEquals(0, InlongHttpBodySplitter.splitLines(buffer("\r\n\n"), 10).size());
+    }
+
+    @Test
+    public void testSplitJsonArray() {
+        List<byte[]> records = InlongHttpBodySplitter.splitJsonArray(
+                buffer(" [{\"a\":[1,2],\"b\":\"x,]\\\"}\"}, \"s\" ,\n3 ] "), 10);
+        assertEquals(3, records.size());
+        assertEquals("{\"a\":[1,2],\"b\":\"x,]\\\"}\"}", string(records.get(0)));
+        assertEquals("\"s\"", string(records.get(1)));
+        assertEquals("3", string(records.get(2)));
+        assertEquals(0, InlongHttpBodySplitter.splitJsonArray(buffer("[ ]"), 10).size());
+    }
+
+    @Test
+    public void testSplitBadBody() {
+        String[] bodies = {"{\"a\":1}", "[1,2", "[1,,2]", "[1,]", "[1] 2"};
+        for (String body : bodies) {
+            try {
+                InlongHttpBodySplitter.splitJsonArray(buffer(body), 10);
+                fail("bad body is accepted: " + body);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+        try {
+            InlongHttpBodySplitter.splitLines(buffer("1\n2\n3"), 2);
+            fail("record count over the max is accepted");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private ByteBuf buffer(String body) {
+        return Unpooled.wrappedBuffer(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String string(byte[] record) {
+        return new String(record, StandardCharsets.UTF_8);
+    }
+}
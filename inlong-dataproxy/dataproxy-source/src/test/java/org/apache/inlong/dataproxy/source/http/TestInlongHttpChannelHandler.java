@@ -0,0 +1,308 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.dataproxy.source.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import org.apache.flume.ChannelException;
+import org.apache.flume.Context;
+import org.apache.flume.Event;
+import org.apache.flume.channel.ChannelProcessor;
+import org.apache.flume.source.AbstractSource;
+import org.apache.inlong.dataproxy.config.holder.CommonPropertiesHolder;
+import org.apache.inlong.dataproxy.config.holder.IdTopicConfigHolder;
+import org.apache.inlong.dataproxy.metrics.DataProxyMetricItemSet;
+import org.apache.inlong.dataproxy.metrics.audit.AuditUtils;
+import org.apache.inlong.dataproxy.source.SourceContext;
+import org.apache.inlong.sdk.commons.protocol.ProxyEvent;
+import org.apache.inlong.sdk.commons.protocol.ProxyPackEvent;
+import org.apache.inlong.sdk.commons.protocol.ProxySdk.ResultCode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.reflect.Whitebox;
+
+/**
+ * TestInlongHttpChannelHandler
+ */
+public class TestInlongHttpChannelHandler {
+
+    private static final String URI = "/dataproxy/message?groupId=g1&streamId=s1";
+
+    // the events put to the channel processor, a failed put is not kept
+    private final List<Event> processedEvents = new ArrayList<>();
+    // the count of the events accepted before the channel is full, negative means never full
+    private int channelCapacity;
+    private SourceContext sourceContext;
+    private EmbeddedChannel channel;
+
+    @Before
+    public void setUp() throws Exception {
+        Whitebox.setInternalState(AuditUtils.class, "IS_AUDIT", false);
+        Whitebox.setInternalState(CommonPropertiesHolder.class, "isResponseAfterSave", false);
+        Whitebox.setInternalState(CommonPropertiesHolder.class, "maxResponseTimeout",
+                CommonPropertiesHolder.DEFAULT_MAX_RESPONSE_TIMEOUT_MS);
+        channelCapacity = -1;
+        ChannelProcessor channelProcessor = PowerMockito.mock(ChannelProcessor.class);
+        PowerMockito.doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                Event event = invocation.getArgument(0);
+                int count = (event instanceof ProxyPackEvent) ? ((ProxyPackEvent) event).getEvents().size() : 1;
+                if (channelCapacity >= 0 && countRecords() + count > channelCapacity) {
+                    throw new ChannelException("channel is full");
+                }
+                processedEvents.add(event);
+                return null;
+            }
+        }).when(channelProcessor).processEvent(any(Event.class));
+        AbstractSource source = PowerMockito.mock(AbstractSource.class);
+        PowerMockito.when(source.getChannelProcessor()).thenReturn(channelProcessor);
+        sourceContext = PowerMockito.mock(SourceContext.class);
+        PowerMockito.when(sourceContext.getParentContext()).thenReturn(new Context());
+        PowerMockito.when(sourceContext.getSource()).thenReturn(source);
+        PowerMockito.when(sourceContext.getAllChannels()).thenReturn(PowerMockito.mock(ChannelGroup.class));
+        PowerMockito.when(sourceContext.getMaxConnections()).thenReturn(Integer.MAX_VALUE);
+        PowerMockito.when(sourceContext.getIdHolder()).thenReturn(PowerMockito.mock(IdTopicConfigHolder.class));
+        PowerMockito.when(sourceContext.getMetricItemSet()).thenReturn(new DataProxyMetricItemSet("http-test"));
+        channel = new EmbeddedChannel(new InlongHttpChannelHandler(sourceContext));
+    }
+
+    @After
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+        Whitebox.setInternalState(AuditUtils.class, "IS_AUDIT", true);
+        Whitebox.setInternalState(CommonPropertiesHolder.class, "isResponseAfterSave",
+                CommonPropertiesHolder.DEFAULT_RESPONSE_AFTER_SAVE);
+    }
+
+    @Test
+    public void testResponseAcceptedCount() {
+        FullHttpRequest request = post(URI, "a=1\nb=2\nc=3");
+        channel.writeInbound(request);
+        assertEquals(0, request.refCnt());
+        assertResponse(HttpResponseStatus.OK, "3");
+        assertEquals(3, countRecords());
+        ProxyEvent event = (ProxyEvent) processedEvents.get(0);
+        assertEquals("g1", event.getInlongGroupId());
+        assertEquals("s1", event.getInlongStreamId());
+        assertEquals("a=1", new String(event.getBody(), StandardCharsets.UTF_8));
+        assertTrue(channel.isOpen());
+    }
+
+    @Test
+    public void testChannelFullResponsePartialCount() {
+        channelCapacity = 2;
+        FullHttpRequest request = post(URI, "a=1\nb=2\nc=3\nd=4");
+        channel.writeInbound(request);
+        assertEquals(0, request.refCnt());
+        // the first two records are accepted, the client resends from the third one
+        assertResponse(HttpResponseStatus.SERVICE_UNAVAILABLE, "2");
+        assertEquals(2, countRecords());
+        assertTrue(channel.isOpen());
+    }
+
+    @Test
+    public void testErrorRequestReleased() {
+        FullHttpRequest getRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, URI);
+        channel.writeInbound(getRequest);
+        assertEquals(0, getRequest.refCnt());
+        assertResponse(HttpResponseStatus.METHOD_NOT_ALLOWED, "only POST is allowed");
+
+        FullHttpRequest noStreamRequest = post("/dataproxy/message?groupId=g1", "a=1");
+        channel.writeInbound(noStreamRequest);
+        assertEquals(0, noStreamRequest.refCnt());
+        assertStatus(HttpResponseStatus.BAD_REQUEST);
+
+        FullHttpRequest badJsonRequest = post(URI, "[1,,2]");
+        badJsonRequest.headers().set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON);
+        channel.writeInbound(badJsonRequest);
+        assertEquals(0, badJsonRequest.refCnt());
+        assertStatus(HttpResponseStatus.BAD_REQUEST);
+
+        PowerMockito.when(sourceContext.isRejectService()).thenReturn(true);
+        FullHttpRequest rejectRequest = post(URI, "a=1");
+        channel.writeInbound(rejectRequest);
+        assertEquals(0, rejectRequest.refCnt());
+        assertResponse(HttpResponseStatus.SERVICE_UNAVAILABLE, "service rejected");
+        assertEquals(0, countRecords());
+    }
+
+    @Test
+    public void testCloseWithoutKeepAlive() {
+        FullHttpRequest request = post(URI, "a=1");
+        request.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+        channel.writeInbound(request);
+        assertResponse(HttpResponseStatus.OK, "1");
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    public void testResponseAfterSave() {
+        Whitebox.setInternalState(CommonPropertiesHolder.class, "isResponseAfterSave", true);
+        FullHttpRequest request = post(URI, "a=1\nb=2");
+        channel.writeInbound(request);
+        assertEquals(0, request.refCnt());
+        // no response and no reading until the events are saved
+        assertNull(channel.readOutbound());
+        assertFalse(channel.config().isAutoRead());
+        assertEquals(1, processedEvents.size());
+        ProxyPackEvent packEvent = (ProxyPackEvent) processedEvents.get(0);
+        assertEquals(2, packEvent.getEvents().size());
+        packEvent.acknowledge(ResultCode.SUCCUSS);
+        channel.runPendingTasks();
+        assertResponse(HttpResponseStatus.OK, "2");
+        assertTrue(channel.config().isAutoRead());
+        // the timeout does not respond again after the save
+        channel.runScheduledPendingTasks();
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void testResponseAfterSaveTimeout() throws Exception {
+        Whitebox.setInternalState(CommonPropertiesHolder.class, "isResponseAfterSave", true);
+        Whitebox.setInternalState(CommonPropertiesHolder.class, "maxResponseTimeout", 100L);
+        channel.writeInbound(post(URI, "a=1\nb=2"));
+        assertNull(channel.readOutbound());
+        assertFalse(channel.config().isAutoRead());
+        Thread.sleep(200L);
+        channel.runPendingTasks();
+        assertResponse(HttpResponseStatus.SERVICE_UNAVAILABLE, String.valueOf(ResultCode.ERR_REJECT));
+        assertTrue(channel.config().isAutoRead());
+        // the late save does not respond again
+        ((ProxyPackEvent) processedEvents.get(0)).acknowledge(ResultCode.SUCCUSS);
+        channel.runPendingTasks();
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void testResponseAfterSaveChannelFull() {
+        Whitebox.setInternalState(CommonPropertiesHolder.class, "isResponseAfterSave", true);
+        channelCapacity = 0;
+        FullHttpRequest request = post(URI, "a=1\nb=2");
+        channel.writeInbound(request);
+        assertEquals(0, request.refCnt());
+        assertResponse(HttpResponseStatus.SERVICE_UNAVAILABLE, String.valueOf(ResultCode.ERR_REJECT));
+        assertTrue(channel.config().isAutoRead());
+        assertEquals(0, processedEvents.size());
+    }
+
+    @Test
+    public void testKeepAliveResponseOrder() {
+        Whitebox.setInternalState(CommonPropertiesHolder.class, "isResponseAfterSave", true);
+        // the pipelined requests are decoded from one read before the reading is paused
+        FullHttpRequest first = post(URI, "a=1\nb=2");
+        FullHttpRequest second = post(URI, "c=3");
+        FullHttpRequest third = post(URI, "d=4\ne=5\nf=6");
+        channel.writeInbound(first, second, third);
+        assertEquals(0, first.refCnt());
+        assertEquals(1, second.refCnt());
+        assertEquals(1, third.refCnt());
+        assertEquals(1, processedEvents.size());
+        assertNull(channel.readOutbound());
+
+        // the held requests are processed one by one after the previous response
+        ((ProxyPackEvent) processedEvents.get(0)).acknowledge(ResultCode.SUCCUSS);
+        channel.runPendingTasks();
+        assertResponse(HttpResponseStatus.OK, "2");
+        assertNull(channel.readOutbound());
+        assertEquals(0, second.refCnt());
+        assertEquals(1, third.refCnt());
+        assertEquals(2, processedEvents.size());
+        assertFalse(channel.config().isAutoRead());
+
+        ((ProxyPackEvent) processedEvents.get(1)).acknowledge(ResultCode.SUCCUSS);
+        channel.runPendingTasks();
+        assertResponse(HttpResponseStatus.OK, "1");
+        assertEquals(0, third.refCnt());
+        assertEquals(3, processedEvents.size());
+        ((ProxyPackEvent) processedEvents.get(2)).acknowledge(ResultCode.SUCCUSS);
+        channel.runPendingTasks();
+        assertResponse(HttpResponseStatus.OK, "3");
+        assertTrue(channel.config().isAutoRead());
+    }
+
+    @Test
+    public void testPendingRequestReleasedOnClose() {
+        Whitebox.setInternalState(CommonPropertiesHolder.class, "isResponseAfterSave", true);
+        FullHttpRequest first = post(URI, "a=1");
+        FullHttpRequest second = post(URI, "b=2");
+        channel.writeInbound(first, second);
+        assertEquals(1, second.refCnt());
+        channel.close();
+        assertEquals(0, second.refCnt());
+        ((ProxyPackEvent) processedEvents.get(0)).acknowledge(ResultCode.SUCCUSS);
+        channel.runPendingTasks();
+        assertEquals(1, processedEvents.size());
+    }
+
+    private int countRecords() {
+        int count = 0;
+        for (Event event : processedEvents) {
+            count += (event instanceof ProxyPackEvent) ? ((ProxyPackEvent) event).getEvents().size() : 1;
+        }
+        return count;
+    }
+
+    private static FullHttpRequest post(String uri, String body) {
+        return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, uri,
+                Unpooled.copiedBuffer(body, StandardCharsets.UTF_8));
+    }
+
+    private void assertResponse(HttpResponseStatus status, String body) {
+        FullHttpResponse response = channel.readOutbound();
+        try {
+            assertEquals(status, response.status());
+            assertEquals(body, response.content().toString(StandardCharsets.UTF_8));
+        } finally {
+            response.release();
+        }
+    }
+
+    private void assertStatus(HttpResponseStatus status) {
+        FullHttpResponse response = channel.readOutbound();
+        try {
+            assertEquals(status, response.status());
+        } finally {
+            response.release();
+        }
+    }
+}
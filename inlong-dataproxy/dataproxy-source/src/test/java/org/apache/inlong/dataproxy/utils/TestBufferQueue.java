@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.dataproxy.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * TestBufferQueue
+ */
+public class TestBufferQueue {
+
+    @Test
+    public void testPollRecords() throws InterruptedException {
+        BufferQueue<String> queue = new BufferQueue<>(1024);
+        List<String> records = new ArrayList<>();
+        assertEquals(0, queue.pollRecords(records, 2, 10, TimeUnit.MILLISECONDS));
+        assertTrue(records.isEmpty());
+        queue.offer("a");
+        queue.offer("b");
+        queue.offer("c");
+        // drained in order, no more than the max count
+        assertEquals(2, queue.pollRecords(records, 2, 10, TimeUnit.MILLISECONDS));
+        assertEquals("a", records.get(0));
+        assertEquals("b", records.get(1));
+        records.clear();
+        assertEquals(1, queue.pollRecords(records, 2, 10, TimeUnit.MILLISECONDS));
+        assertEquals("c", records.get(0));
+        assertEquals(3, queue.getPollCount());
+    }
+
+    @Test
+    public void testPollRecordsWakeUp() throws InterruptedException {
+        final BufferQueue<String> queue = new BufferQueue<>(1024);
+        final List<String> records = new ArrayList<>();
+        final CountDownLatch pollLatch = new CountDownLatch(1);
+        Thread worker = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    if (queue.pollRecords(records, 16, 10, TimeUnit.SECONDS) > 0) {
+                        pollLatch.countDown();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        worker.start();
+        Thread.sleep(50);
+        long startTime = System.currentTimeMillis();
+        queue.offer("a");
+        // the waiting worker returns on arrival instead of at the timeout
+        assertTrue(pollLatch.await(5, TimeUnit.SECONDS));
+        assertTrue(System.currentTimeMillis() - startTime < 5000);
+        worker.join();
+        assertEquals("a", records.get(0));
+    }
+}
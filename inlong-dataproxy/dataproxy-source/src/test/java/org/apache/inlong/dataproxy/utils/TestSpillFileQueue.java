@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.dataproxy.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * TestSpillFileQueue
+ */
+public class TestSpillFileQueue {
+
+    private File spillDir;
+
+    @Before
+    public void setUp() throws IOException {
+        spillDir = Files.createTempDirectory("spill").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = spillDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        spillDir.delete();
+    }
+
+    @Test
+    public void testAppendAndPoll() throws IOException {
+        SpillFileQueue queue = new SpillFileQueue(spillDir, 1024, 1024 * 1024);
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+        // the records roll over several segments, and a record larger than a segment
+        for (int i = 0; i < 100; i++) {
+            queue.append(("record " + i).getBytes());
+        }
+        queue.append(new byte[4000]);
+        assertEquals(101, queue.getSpillCount());
+        assertTrue(queue.getHeadAppendTime() > 0);
+        assertTrue(spillDir.listFiles().length > 1);
+        for (int i = 0; i < 100; i++) {
+            assertEquals("record " + i, new String(queue.poll()));
+        }
+        assertEquals(4000, queue.poll().length);
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.getSpillSize());
+        assertEquals(0L, queue.getHeadAppendTime());
+        // the read segments are deleted
+        assertEquals(1, spillDir.listFiles().length);
+        queue.append("record after poll".getBytes());
+        assertEquals("record after poll", new String(queue.poll()));
+        queue.close();
+    }
+
+    @Test
+    public void testRecover() throws IOException {
+        SpillFileQueue queue = new SpillFileQueue(spillDir, 1024, 1024 * 1024);
+        for (int i = 0; i < 50; i++) {
+            queue.append(("record " + i).getBytes());
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals("record " + i, new String(queue.poll()));
+        }
+        queue.close();
+        // the records of the left segments are read back before the new records
+        queue = new SpillFileQueue(spillDir, 1024, 1024 * 1024);
+        assertFalse(queue.isEmpty());
+        queue.append("new record".getBytes());
+        String first = new String(queue.poll());
+        assertTrue(first.startsWith("record "));
+        String last = first;
+        String record;
+        while ((record = new String(queue.poll())).startsWith("record ")) {
+            last = record;
+        }
+        assertEquals("record 49", last);
+        assertEquals("new record", record);
+        assertNull(queue.poll());
+        queue.close();
+    }
+
+    @Test
+    public void testMaxSpillSize() throws IOException {
+        SpillFileQueue queue = new SpillFileQueue(spillDir, 1024, 100);
+        assertTrue(queue.hasRoom(100));
+        queue.append(new byte[60]);
+        assertFalse(queue.hasRoom(60));
+        assertTrue(queue.hasRoom(40));
+        queue.poll();
+        assertTrue(queue.hasRoom(100));
+        queue.close();
+    }
+}
@@ -18,6 +18,7 @@
 package org.apache.inlong.sdk.dataproxy;
 
 import org.apache.inlong.common.msg.AttributeConstants;
+import org.apache.inlong.common.msg.compress.CompressType;
 import org.apache.inlong.common.util.MessageUtils;
 import org.apache.inlong.sdk.dataproxy.codec.EncodeObject;
 import org.apache.inlong.sdk.dataproxy.config.ProxyConfigEntry;
@@ -56,6 +57,7 @@ public class DefaultMessageSender implements MessageSender {
     private String groupId;
     private int msgtype = ConfigConstants.MSG_TYPE;
     private boolean isCompress = true;
+    private CompressType compressType = CompressType.SNAPPY;
     private boolean isGroupIdTransfer = false;
     private boolean isReport = false;
     private boolean isSupportLF = false;
@@ -174,6 +176,25 @@ public class DefaultMessageSender implements MessageSender {
         this.isCompress = isCompress;
     }
 
+    public CompressType getCompressType() {
+        return compressType;
+    }
+
+    /**
+     * Set the compress type of the message body, the default type is snappy.
+     *
+     * The DataProxy must support the compress type, LZ4 and zstd need
+     * the lz4-java and zstd-jni libraries in the classpath of the client.
+     *
+     * @param compressType the compress type, NONE is not allowed, use setCompress(false) instead
+     */
+    public void setCompressType(CompressType compressType) {
+        if (compressType == null || compressType == CompressType.NONE) {
+            throw new IllegalArgumentException("Invalid compress type " + compressType);
+        }
+        this.compressType = compressType;
+    }
+
     public String getGroupId() {
         return groupId;
     }
@@ -230,6 +251,7 @@ public class DefaultMessageSender implements MessageSender {
             EncodeObject encodeObject = new EncodeObject(body, msgtype, isCompressEnd, isReport,
                     isGroupIdTransfer, dt / 1000, idGenerator.getNextInt(), groupId, streamId, proxySend);
             encodeObject.setSupportLF(isSupportLF);
+            encodeObject.setCompressType(compressType);
             return sender.syncSendMessage(encodeObject, msgUUID, timeout, timeUnit);
         } else if (msgtype == 3 || msgtype == 5) {
             if (isProxySend) {
@@ -237,8 +259,8 @@ public class DefaultMessageSender implements MessageSender {
             }
             if (isCompressEnd) {
                 return sender.syncSendMessage(new EncodeObject(body, "groupId=" + groupId + "&streamId="
-                        + streamId + "&dt=" + dt + "&cp=snappy" + proxySend, idGenerator.getNextId(),
-                        this.getMsgtype(), true, groupId), msgUUID, timeout, timeUnit);
+                        + streamId + "&dt=" + dt + "&cp=" + compressType.getName() + proxySend,
+                        idGenerator.getNextId(), this.getMsgtype(), true, groupId), msgUUID, timeout, timeUnit);
             } else {
                 return sender.syncSendMessage(new EncodeObject(body,
                         "groupId=" + groupId + "&streamId=" + streamId + "&dt=" + dt + proxySend,
@@ -289,11 +311,12 @@ public class DefaultMessageSender implements MessageSender {
                     isGroupIdTransfer, dt / 1000,
                     idGenerator.getNextInt(), groupId, streamId, attrs.toString());
             encodeObject.setSupportLF(isSupportLF);
+            encodeObject.setCompressType(compressType);
             return sender.syncSendMessage(encodeObject, msgUUID, timeout, timeUnit);
         } else if (msgtype == 3 || msgtype == 5) {
             attrs.append("&groupId=").append(groupId).append("&streamId=").append(streamId).append("&dt=").append(dt);
             if (isCompressEnd) {
-                attrs.append("&cp=snappy");
+                attrs.append("&cp=").append(compressType.getName());
                 return sender.syncSendMessage(new EncodeObject(body, attrs.toString(),
                         idGenerator.getNextId(), this.getMsgtype(), true, groupId),
                         msgUUID, timeout, timeUnit);
@@ -343,6 +366,7 @@ public class DefaultMessageSender implements MessageSender {
                     isGroupIdTransfer, dt / 1000,
                     idGenerator.getNextInt(), groupId, streamId, proxySend);
             encodeObject.setSupportLF(isSupportLF);
+            encodeObject.setCompressType(compressType);
             return sender.syncSendMessage(encodeObject, msgUUID, timeout, timeUnit);
         } else if (msgtype == 3 || msgtype == 5) {
             if (isProxySend) {
@@ -350,7 +374,7 @@ public class DefaultMessageSender implements MessageSender {
             }
             if (isCompress) {
                 return sender.syncSendMessage(new EncodeObject(bodyList, "groupId=" + groupId + "&streamId=" + streamId
-                        + "&dt=" + dt + "&cp=snappy" + "&cnt=" + bodyList.size() + proxySend,
+                        + "&dt=" + dt + "&cp=" + compressType.getName() + "&cnt=" + bodyList.size() + proxySend,
                         idGenerator.getNextId(), this.getMsgtype(), true, groupId), msgUUID, timeout, timeUnit);
             } else {
                 return sender.syncSendMessage(new EncodeObject(bodyList, "groupId=" + groupId + "&streamId=" + streamId
@@ -399,12 +423,13 @@ public class DefaultMessageSender implements MessageSender {
                     isGroupIdTransfer, dt / 1000,
                     idGenerator.getNextInt(), groupId, streamId, attrs.toString());
             encodeObject.setSupportLF(isSupportLF);
+            encodeObject.setCompressType(compressType);
             return sender.syncSendMessage(encodeObject, msgUUID, timeout, timeUnit);
         } else if (msgtype == 3 || msgtype == 5) {
             attrs.append("&groupId=").append(groupId).append("&streamId=").append(streamId)
                     .append("&dt=").append(dt).append("&cnt=").append(bodyList.size());
             if (isCompress) {
-                attrs.append("&cp=snappy");
+                attrs.append("&cp=").append(compressType.getName());
                 return sender.syncSendMessage(new EncodeObject(bodyList, attrs.toString(),
                         idGenerator.getNextId(), this.getMsgtype(), true, groupId),
                         msgUUID, timeout, timeUnit);
@@ -461,6 +486,7 @@ public class DefaultMessageSender implements MessageSender {
                     isGroupIdTransfer, dt / 1000, idGenerator.getNextInt(),
                     groupId, streamId, proxySend);
             encodeObject.setSupportLF(isSupportLF);
+            encodeObject.setCompressType(compressType);
             sender.asyncSendMessage(encodeObject, callback, msgUUID, timeout, timeUnit);
         } else if (msgtype == 3 || msgtype == 5) {
             if (isCompressEnd) {
@@ -468,7 +494,8 @@ public class DefaultMessageSender implements MessageSender {
                     proxySend = "&" + proxySend;
                 }
                 sender.asyncSendMessage(new EncodeObject(body, "groupId="
-                        + groupId + "&streamId=" + streamId + "&dt=" + dt + "&cp=snappy" + proxySend,
+                        + groupId + "&streamId=" + streamId + "&dt=" + dt
+                        + "&cp=" + compressType.getName() + proxySend,
                         idGenerator.getNextId(), this.getMsgtype(), true, groupId),
                         callback, msgUUID, timeout, timeUnit);
             } else {
@@ -523,11 +550,12 @@ public class DefaultMessageSender implements MessageSender {
                     isReport, isGroupIdTransfer, dt / 1000, idGenerator.getNextInt(),
                     groupId, streamId, attrs.toString());
             encodeObject.setSupportLF(isSupportLF);
+            encodeObject.setCompressType(compressType);
             sender.asyncSendMessage(encodeObject, callback, msgUUID, timeout, timeUnit);
         } else if (msgtype == 3 || msgtype == 5) {
             attrs.append("&groupId=").append(groupId).append("&streamId=").append(streamId).append("&dt=").append(dt);
             if (isCompressEnd) {
-                attrs.append("&cp=snappy");
+                attrs.append("&cp=").append(compressType.getName());
                 sender.asyncSendMessage(new EncodeObject(body, attrs.toString(),
                         idGenerator.getNextId(), this.getMsgtype(), true, groupId),
                         callback, msgUUID, timeout, timeUnit);
@@ -575,6 +603,7 @@ public class DefaultMessageSender implements MessageSender {
                     isReport, isGroupIdTransfer, dt / 1000, idGenerator.getNextInt(),
                     groupId, streamId, proxySend);
             encodeObject.setSupportLF(isSupportLF);
+            encodeObject.setCompressType(compressType);
             sender.asyncSendMessage(encodeObject, callback, msgUUID, timeout, timeUnit);
         } else if (msgtype == 3 || msgtype == 5) {
             if (isProxySend) {
@@ -583,7 +612,8 @@ public class DefaultMessageSender implements MessageSender {
             if (isCompress) {
                 sender.asyncSendMessage(
                         new EncodeObject(bodyList, "groupId=" + groupId + "&streamId=" + streamId
-                                + "&dt=" + dt + "&cp=snappy" + "&cnt=" + bodyList.size() + proxySend,
+                                + "&dt=" + dt + "&cp=" + compressType.getName()
+                                + "&cnt=" + bodyList.size() + proxySend,
                                 idGenerator.getNextId(),
                                 this.getMsgtype(), true, groupId),
                         callback, msgUUID, timeout, timeUnit);
@@ -640,12 +670,13 @@ public class DefaultMessageSender implements MessageSender {
                     isCompress, isReport, isGroupIdTransfer, dt / 1000, idGenerator.getNextInt(),
                     groupId, streamId, attrs.toString());
             encodeObject.setSupportLF(isSupportLF);
+            encodeObject.setCompressType(compressType);
             sender.asyncSendMessage(encodeObject, callback, msgUUID, timeout, timeUnit);
         } else if (msgtype == 3 || msgtype == 5) {
             attrs.append("&groupId=").append(groupId).append("&streamId=").append(streamId)
                     .append("&dt=").append(dt).append("&cnt=").append(bodyList.size());
             if (isCompress) {
-                attrs.append("&cp=snappy");
+                attrs.append("&cp=").append(compressType.getName());
                 sender.asyncSendMessage(new EncodeObject(bodyList, attrs.toString(), idGenerator.getNextId(),
                         this.getMsgtype(), true, groupId), callback, msgUUID, timeout, timeUnit);
             } else {
@@ -752,6 +783,7 @@ public class DefaultMessageSender implements MessageSender {
                     isCompress, isReport, isGroupIdTransfer,
                     dt / 1000, sid, groupId, streamId, attrs.toString(), "data", "");
             encodeObject.setSupportLF(isSupportLF);
+            encodeObject.setCompressType(compressType);
             sender.asyncSendMessageIndex(encodeObject, callback, msgUUID, timeout, timeUnit);
         }
     }
@@ -802,6 +834,7 @@ public class DefaultMessageSender implements MessageSender {
                     isReport, isGroupIdTransfer, dt / 1000,
                     sid, groupId, streamId, attrs.toString(), "data", "");
             encodeObject.setSupportLF(isSupportLF);
+            encodeObject.setCompressType(compressType);
             return sender.syncSendMessageIndex(encodeObject, msgUUID, timeout, timeUnit);
         }
         return null;
@@ -22,6 +22,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.inlong.common.enums.DataProxyErrCode;
 import org.apache.inlong.common.msg.AttributeConstants;
 import org.apache.inlong.common.msg.MsgType;
+import org.apache.inlong.common.msg.compress.CompressType;
 import org.apache.inlong.sdk.dataproxy.SendResult;
 import org.apache.inlong.sdk.dataproxy.config.EncryptConfigEntry;
 
@@ -53,6 +54,7 @@ public class EncodeObject {
     private boolean isAuth = false;
     private boolean isEncrypt = false;
     private boolean isCompress = true;
+    private CompressType compressType = CompressType.SNAPPY;
     private int groupIdNum;
     private int streamIdNum;
     private String groupId;
@@ -97,6 +99,7 @@ public class EncodeObject {
         this.msgtype = msgtype;
         this.groupId = groupId;
         this.isCompress = isCompress;
+        this.compressType = parseCompressType(attributes);
         addRTMS(msgtype);
     }
 
@@ -109,6 +112,7 @@ public class EncodeObject {
         this.msgtype = msgtype;
         this.groupId = groupId;
         this.isCompress = isCompress;
+        this.compressType = parseCompressType(attributes);
         addRTMS(msgtype);
     }
 
@@ -211,6 +215,28 @@ public class EncodeObject {
         }
     }
 
+    /**
+     * Get the compress type from the "cp" attribute of the msgtype 3/5 message,
+     * which tells the DataProxy how to uncompress the body.
+     */
+    private static CompressType parseCompressType(String attributes) {
+        String prefix = AttributeConstants.COMPRESS_TYPE + AttributeConstants.KEY_VALUE_SEPARATOR;
+        int start;
+        if (attributes.startsWith(prefix)) {
+            start = prefix.length();
+        } else {
+            start = attributes.indexOf(AttributeConstants.SEPARATOR + prefix);
+            if (start < 0) {
+                return CompressType.SNAPPY;
+            }
+            start += AttributeConstants.SEPARATOR.length() + prefix.length();
+        }
+        int end = attributes.indexOf(AttributeConstants.SEPARATOR, start);
+        CompressType compressType = CompressType.forName(
+                (end < 0) ? attributes.substring(start) : attributes.substring(start, end));
+        return (compressType == null) ? CompressType.SNAPPY : compressType;
+    }
+
     private void addRTMS(int msgtype) {
         if (msgtype == MsgType.MSG_BIN_MULTI_BODY.getValue() || msgtype == MsgType.MSG_BIN_HEARTBEAT.getValue()) {
             if (StringUtils.isBlank(commonattr)) {
@@ -382,6 +408,14 @@ public class EncodeObject {
         return isCompress;
     }
 
+    public CompressType getCompressType() {
+        return compressType;
+    }
+
+    public void setCompressType(CompressType compressType) {
+        this.compressType = compressType;
+    }
+
     public List<byte[]> getBodylist() {
         return bodylist;
     }
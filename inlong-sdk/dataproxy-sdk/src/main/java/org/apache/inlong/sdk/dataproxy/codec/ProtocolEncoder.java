@@ -21,13 +21,15 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToMessageEncoder;
+import org.apache.inlong.common.msg.AttributeConstants;
+import org.apache.inlong.common.msg.compress.CompressType;
+import org.apache.inlong.common.msg.compress.Compressors;
 import org.apache.inlong.sdk.dataproxy.config.EncryptConfigEntry;
 import org.apache.inlong.sdk.dataproxy.config.EncryptInfo;
 import org.apache.inlong.sdk.dataproxy.network.Utils;
 import org.apache.inlong.sdk.dataproxy.utils.EncryptUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xerial.snappy.Snappy;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -122,10 +124,18 @@ public class ProtocolEncoder extends MessageToMessageEncoder<EncodeObject> {
             int totalLength, int cnt) throws UnsupportedEncodingException {
         ByteBuf buf = null;
         if (body != null) {
+            String endAttr = object.getCommonattr();
             if (object.isCompress()) {
-                body = processCompress(body);
+                body = processCompress(body, object.getCompressType());
+                // the compress flag means snappy, the other types are carried by the attribute
+                if (object.getCompressType() != CompressType.SNAPPY) {
+                    if (Utils.isNotBlank(endAttr)) {
+                        endAttr = endAttr + "&";
+                    }
+                    endAttr = endAttr + AttributeConstants.COMPRESS_TYPE + "="
+                            + object.getCompressType().getName();
+                }
             }
-            String endAttr = object.getCommonattr();
             if (object.isEncrypt()) {
                 EncryptConfigEntry encryptEntry = object.getEncryptEntry();
                 if (encryptEntry != null) {
@@ -276,7 +286,7 @@ public class ProtocolEncoder extends MessageToMessageEncoder<EncodeObject> {
             if (body != null) {
                 String msgAttrs = object.getAttributes();
                 if (object.isCompress()) {
-                    body = processCompress(body);
+                    body = processCompress(body, object.getCompressType());
                 }
                 if (object.isEncrypt()) {
                     EncryptConfigEntry encryptEntry = object.getEncryptEntry();
@@ -354,7 +364,7 @@ public class ProtocolEncoder extends MessageToMessageEncoder<EncodeObject> {
             if (body != null) {
                 String msgAttrs = object.getAttributes();
                 if (object.isCompress()) {
-                    body = processCompress(body);
+                    body = processCompress(body, object.getCompressType());
                 }
                 if (object.isEncrypt()) {
                     EncryptConfigEntry encryptEntry = object.getEncryptEntry();
@@ -396,16 +406,10 @@ public class ProtocolEncoder extends MessageToMessageEncoder<EncodeObject> {
         return buf;
     }
 
-    private byte[] processCompress(byte[] body) {
+    private byte[] processCompress(byte[] body, CompressType compressType) {
         try {
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            out.write(body);
-            int guessLen = Snappy.maxCompressedLength(out.size());
-            byte[] tmpData = new byte[guessLen];
-            int len = Snappy.compress(out.toByteArray(), 0, out.size(),
-                    tmpData, 0);
-            body = new byte[len];
-            System.arraycopy(tmpData, 0, body, 0, len);
+            // compressed into the reusable buffer of the current thread
+            body = Compressors.compress(compressType, body, 0, body.length);
         } catch (IOException e) {
             logger.error("{}", e.getMessage());
             e.printStackTrace();
@@ -23,15 +23,23 @@ import org.apache.inlong.sort.standalone.utils.InlongLoggerFactory;
 import org.slf4j.Logger;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * DispatchManager
+ *
+ * The dispatch profiles are aggregated in stripes selected by the uid, each stripe keeps
+ * the profiles of its uids by the dispatch time and is guarded by its own lock, so the
+ * events of the same uid and minute always go to one profile, and a full profile is
+ * replaced in the lock before it is handed to the dispatch queue. The profiles waiting
+ * in the dispatch queue are bounded, when the sink falls behind the caller waits, and every
+ * offer that times out is counted as queue full, the events are taken from the channel and
+ * acked only after they are written, so the profile keeps waiting instead of being dropped.
  */
 public class DispatchManager {
 
@@ -41,23 +49,31 @@ public class DispatchManager {
     public static final String KEY_DISPATCH_MAX_PACKSIZE = "dispatchMaxPackSize";
     public static final String KEY_DISPATCH_AHEAD_TIME = "dispatchAheadTime";
     public static final String KEY_DISPATCH_DELAY_TIME = "dispatchDelayTime";
+    public static final String KEY_DISPATCH_STRIPES = "dispatchStripes";
+    public static final String KEY_DISPATCH_MAX_QUEUE_SIZE = "dispatchMaxQueueSize";
+    public static final String KEY_DISPATCH_OFFER_TIMEOUT = "dispatchOfferTimeout";
     public static final long DEFAULT_DISPATCH_TIMEOUT = 2000;
     public static final long DEFAULT_DISPATCH_MAX_PACKCOUNT = 256;
     public static final long DEFAULT_DISPATCH_MAX_PACKSIZE = 327680;
     public static final long MINUTE_MS = 60L * 1000;
     public static final long DEFAULT_DISPATCH_AHEAD_TIME = 60 * 60 * 1000L;
     public static final long DEFAULT_DISPATCH_DELAY_TIME = 60 * 60 * 1000 * 16L;
+    public static final int DEFAULT_DISPATCH_STRIPES = 16;
+    public static final int DEFAULT_DISPATCH_MAX_QUEUE_SIZE = 4096;
+    public static final long DEFAULT_DISPATCH_OFFER_TIMEOUT = 1000;
     private final long dispatchTimeout;
     private final long maxPackCount;
     private final long maxPackSize;
     private final long dispatchAheadTime;
     private final long dispatchDelayTime;
-    private LinkedBlockingQueue<DispatchProfile> dispatchQueue;
-    private ConcurrentHashMap<String, DispatchProfile> profileCache = new ConcurrentHashMap<>();
+    private final long offerTimeout;
+    private DispatchQueue dispatchQueue;
+    private final DispatchStripe[] stripes;
     // flag that manager need to output overtime data.
     private AtomicBoolean needOutputOvertimeData = new AtomicBoolean(false);
     private AtomicLong inCounter = new AtomicLong(0);
     private AtomicLong outCounter = new AtomicLong(0);
+    private AtomicLong queueFullCounter = new AtomicLong(0);
 
     /**
      * Constructor
@@ -65,13 +81,19 @@ public class DispatchManager {
      * @param context
      * @param dispatchQueue
      */
-    public DispatchManager(Context context, LinkedBlockingQueue<DispatchProfile> dispatchQueue) {
+    public DispatchManager(Context context, DispatchQueue dispatchQueue) {
         this.dispatchQueue = dispatchQueue;
         this.dispatchTimeout = context.getLong(KEY_DISPATCH_TIMEOUT, DEFAULT_DISPATCH_TIMEOUT);
         this.maxPackCount = context.getLong(KEY_DISPATCH_MAX_PACKCOUNT, DEFAULT_DISPATCH_MAX_PACKCOUNT);
         this.maxPackSize = context.getLong(KEY_DISPATCH_MAX_PACKSIZE, DEFAULT_DISPATCH_MAX_PACKSIZE);
         this.dispatchAheadTime = context.getLong(KEY_DISPATCH_AHEAD_TIME, DEFAULT_DISPATCH_AHEAD_TIME);
         this.dispatchDelayTime = -1 * context.getLong(KEY_DISPATCH_DELAY_TIME, DEFAULT_DISPATCH_DELAY_TIME);
+        this.offerTimeout = context.getLong(KEY_DISPATCH_OFFER_TIMEOUT, DEFAULT_DISPATCH_OFFER_TIMEOUT);
+        int stripeCount = Math.max(1, context.getInteger(KEY_DISPATCH_STRIPES, DEFAULT_DISPATCH_STRIPES));
+        this.stripes = new DispatchStripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            this.stripes[i] = new DispatchStripe();
+        }
     }
 
     /**
@@ -83,29 +105,57 @@ public class DispatchManager {
         // parse
         String eventUid = event.getUid();
         long dispatchTime = event.getRawLogTime() - event.getRawLogTime() % MINUTE_MS;
-        String dispatchKey = eventUid + "." + dispatchTime;
-        //
-        DispatchProfile dispatchProfile = this.profileCache.get(dispatchKey);
-        if (dispatchProfile == null) {
-            dispatchProfile = new DispatchProfile(eventUid, event.getInlongGroupId(), event.getInlongStreamId(),
-                    dispatchTime);
-            this.profileCache.put(dispatchKey, dispatchProfile);
+        DispatchProfile fullProfile = null;
+        DispatchStripe stripe = this.stripes[(eventUid.hashCode() & Integer.MAX_VALUE) % stripes.length];
+        synchronized (stripe) {
+            //
+            List<DispatchProfile> uidProfiles = stripe.getUidProfiles(eventUid);
+            int index = DispatchStripe.indexOf(uidProfiles, dispatchTime);
+            DispatchProfile dispatchProfile;
+            if (index < 0) {
+                dispatchProfile = new DispatchProfile(eventUid, event.getInlongGroupId(),
+                        event.getInlongStreamId(), dispatchTime);
+                uidProfiles.add(dispatchProfile);
+            } else {
+                dispatchProfile = uidProfiles.get(index);
+            }
+            // the full profile is replaced before any other event is added to it
+            if (!dispatchProfile.addEvent(event, maxPackCount, maxPackSize)) {
+                fullProfile = dispatchProfile;
+                dispatchProfile = new DispatchProfile(eventUid, event.getInlongGroupId(),
+                        event.getInlongStreamId(), dispatchTime);
+                uidProfiles.set((index < 0) ? uidProfiles.size() - 1 : index, dispatchProfile);
+                dispatchProfile.addEvent(event, maxPackCount, maxPackSize);
+            }
         }
-        //
-        boolean addResult = dispatchProfile.addEvent(event, maxPackCount, maxPackSize);
-        if (!addResult) {
-            DispatchProfile newDispatchProfile = new DispatchProfile(eventUid, event.getInlongGroupId(),
-                    event.getInlongStreamId(), dispatchTime);
-            DispatchProfile oldDispatchProfile = this.profileCache.put(dispatchKey, newDispatchProfile);
-            long curTime = System.currentTimeMillis();
-            this.checkAndResetDispatchTime(dispatchProfile, curTime);
-            this.dispatchQueue.offer(oldDispatchProfile);
-            outCounter.addAndGet(dispatchProfile.getCount());
-            newDispatchProfile.addEvent(event, maxPackCount, maxPackSize);
+        if (fullProfile != null) {
+            this.checkAndResetDispatchTime(fullProfile, System.currentTimeMillis());
+            this.offerDispatchQueue(fullProfile);
         }
         inCounter.incrementAndGet();
     }
 
+    /**
+     * offer the profile to the dispatch queue, wait while the queue is full
+     *
+     * @param dispatchProfile
+     */
+    private void offerDispatchQueue(DispatchProfile dispatchProfile) {
+        try {
+            while (!dispatchQueue.offerBounded(dispatchProfile, offerTimeout, TimeUnit.MILLISECONDS)) {
+                queueFullCounter.incrementAndGet();
+                LOG.warn("dispatch queue is full over {}ms, wait for the sink, uid:{},count:{}",
+                        offerTimeout, dispatchProfile.getUid(), dispatchProfile.getCount());
+            }
+        } catch (InterruptedException e) {
+            // the sink is stopping, keep the profile beyond the bound rather than lose it
+            Thread.currentThread().interrupt();
+            LOG.warn("interrupted while the dispatch queue is full, uid:{}", dispatchProfile.getUid());
+            dispatchQueue.offer(dispatchProfile);
+        }
+        outCounter.addAndGet(dispatchProfile.getCount());
+    }
+
     /**
      * outputOvertimeData
      * 
@@ -115,34 +165,44 @@ public class DispatchManager {
         if (!needOutputOvertimeData.getAndSet(false)) {
             return;
         }
-        LOG.debug("start to outputOvertimeData profileCacheSize:{},dispatchQueueSize:{}",
-                profileCache.size(), dispatchQueue.size());
+        LOG.debug("start to outputOvertimeData dispatchQueueSize:{}", dispatchQueue.size());
         long currentTime = System.currentTimeMillis();
         long createThreshold = currentTime - dispatchTimeout;
-        List<String> removeKeys = new ArrayList<>();
+        List<DispatchProfile> timeoutProfiles = new ArrayList<>();
         long eventCount = 0;
-        for (Entry<String, DispatchProfile> entry : this.profileCache.entrySet()) {
-            DispatchProfile dispatchProfile = entry.getValue();
-            eventCount += dispatchProfile.getCount();
-            if (!dispatchProfile.isTimeout(createThreshold)) {
-                continue;
+        int profileCacheSize = 0;
+        for (DispatchStripe stripe : this.stripes) {
+            synchronized (stripe) {
+                Iterator<List<DispatchProfile>> uidIterator = stripe.profiles.values().iterator();
+                while (uidIterator.hasNext()) {
+                    List<DispatchProfile> uidProfiles = uidIterator.next();
+                    Iterator<DispatchProfile> iterator = uidProfiles.iterator();
+                    while (iterator.hasNext()) {
+                        DispatchProfile dispatchProfile = iterator.next();
+                        eventCount += dispatchProfile.getCount();
+                        if (dispatchProfile.isTimeout(createThreshold)) {
+                            iterator.remove();
+                            timeoutProfiles.add(dispatchProfile);
+                        } else {
+                            profileCacheSize++;
+                        }
+                    }
+                    if (uidProfiles.isEmpty()) {
+                        uidIterator.remove();
+                    }
+                }
             }
-            removeKeys.add(entry.getKey());
         }
         // output
         long curTime = System.currentTimeMillis();
-        removeKeys.forEach((key) -> {
-            DispatchProfile dispatchProfile = this.profileCache.remove(key);
-            if (dispatchProfile != null) {
-                this.checkAndResetDispatchTime(dispatchProfile, curTime);
-                dispatchQueue.offer(dispatchProfile);
-                outCounter.addAndGet(dispatchProfile.getCount());
-            }
+        timeoutProfiles.forEach((dispatchProfile) -> {
+            this.checkAndResetDispatchTime(dispatchProfile, curTime);
+            this.offerDispatchQueue(dispatchProfile);
         });
         LOG.debug("end to outputOvertimeData profileCacheSize:{},dispatchQueueSize:{},eventCount:{},"
-                + "inCounter:{},outCounter:{}",
-                profileCache.size(), dispatchQueue.size(), eventCount,
-                inCounter.getAndSet(0), outCounter.getAndSet(0));
+                + "inCounter:{},outCounter:{},queueFullCounter:{}",
+                profileCacheSize, dispatchQueue.size(), eventCount,
+                inCounter.getAndSet(0), outCounter.getAndSet(0), queueFullCounter.get());
     }
 
     /**
@@ -183,10 +243,46 @@ public class DispatchManager {
         return maxPackSize;
     }
 
+    /**
+     * get the count of the offers that timed out on a full dispatch queue
+     *
+     * @return the queueFullCount
+     */
+    public long getQueueFullCount() {
+        return queueFullCounter.get();
+    }
+
     /**
      * setNeedOutputOvertimeData
      */
     public void setNeedOutputOvertimeData() {
         this.needOutputOvertimeData.getAndSet(true);
     }
+
+    /**
+     * The profiles of a stripe, keyed by the uid and then the dispatch time,
+     * a uid has few dispatch times at the same time, so they are kept in a list.
+     */
+    private static class DispatchStripe {
+
+        private final HashMap<String, List<DispatchProfile>> profiles = new HashMap<>();
+
+        private List<DispatchProfile> getUidProfiles(String uid) {
+            List<DispatchProfile> uidProfiles = profiles.get(uid);
+            if (uidProfiles == null) {
+                uidProfiles = new ArrayList<>(2);
+                profiles.put(uid, uidProfiles);
+            }
+            return uidProfiles;
+        }
+
+        private static int indexOf(List<DispatchProfile> uidProfiles, long dispatchTime) {
+            for (int i = 0; i < uidProfiles.size(); i++) {
+                if (uidProfiles.get(i).getDispatchTime() == dispatchTime) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
 }
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.sort.standalone.dispatch;
+
+import java.util.Collection;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * DispatchQueue
+ *
+ * The dispatch queue of a sink worker. The profiles handed over by {@link #offerBounded} are
+ * bounded by the max size, the producer waits on a condition until a worker takes a profile
+ * or the timeout elapses. The profiles put back by {@link #offer} after a failed send are not
+ * bounded, they were taken from the queue before, and a worker must never wait for itself.
+ */
+public class DispatchQueue extends LinkedBlockingQueue<DispatchProfile> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int maxSize;
+    private final ReentrantLock boundLock = new ReentrantLock();
+    private final Condition notFull = boundLock.newCondition();
+    private final AtomicInteger waitingCount = new AtomicInteger(0);
+
+    /**
+     * Constructor
+     *
+     * @param maxSize
+     */
+    public DispatchQueue(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * offer the profile if the queue is under the max size, wait up to the timeout for a worker
+     * to take a profile otherwise
+     *
+     * @param  profile
+     * @param  timeout
+     * @param  unit
+     * @return                      false if the queue is still full after the timeout
+     * @throws InterruptedException
+     */
+    public boolean offerBounded(DispatchProfile profile, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        // announce the waiter before checking the size, so a take after the check signals it
+        waitingCount.incrementAndGet();
+        try {
+            boundLock.lockInterruptibly();
+            try {
+                while (size() >= maxSize) {
+                    if (nanos <= 0L) {
+                        return false;
+                    }
+                    nanos = notFull.awaitNanos(nanos);
+                }
+                return super.offer(profile);
+            } finally {
+                boundLock.unlock();
+            }
+        } finally {
+            waitingCount.decrementAndGet();
+        }
+    }
+
+    @Override
+    public DispatchProfile poll() {
+        DispatchProfile profile = super.poll();
+        if (profile != null) {
+            this.signalNotFull();
+        }
+        return profile;
+    }
+
+    @Override
+    public DispatchProfile poll(long timeout, TimeUnit unit) throws InterruptedException {
+        DispatchProfile profile = super.poll(timeout, unit);
+        if (profile != null) {
+            this.signalNotFull();
+        }
+        return profile;
+    }
+
+    @Override
+    public DispatchProfile take() throws InterruptedException {
+        DispatchProfile profile = super.take();
+        this.signalNotFull();
+        return profile;
+    }
+
+    @Override
+    public int drainTo(Collection<? super DispatchProfile> c, int maxElements) {
+        int count = super.drainTo(c, maxElements);
+        if (count > 0) {
+            this.signalNotFull();
+        }
+        return count;
+    }
+
+    /**
+     * get maxSize
+     *
+     * @return the maxSize
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    private void signalNotFull() {
+        if (waitingCount.get() <= 0) {
+            return;
+        }
+        boundLock.lock();
+        try {
+            notFull.signalAll();
+        } finally {
+            boundLock.unlock();
+        }
+    }
+}
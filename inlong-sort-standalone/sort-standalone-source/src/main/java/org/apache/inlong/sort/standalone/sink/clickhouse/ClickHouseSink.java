@@ -26,14 +26,13 @@ import org.apache.flume.conf.Configurable;
 import org.apache.flume.sink.AbstractSink;
 import org.apache.inlong.sort.standalone.channel.ProfileEvent;
 import org.apache.inlong.sort.standalone.dispatch.DispatchManager;
-import org.apache.inlong.sort.standalone.dispatch.DispatchProfile;
+import org.apache.inlong.sort.standalone.dispatch.DispatchQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -47,7 +46,7 @@ public class ClickHouseSink extends AbstractSink implements Configurable {
     private Context parentContext;
     private ClickHouseSinkContext context;
     private DispatchManager dispatchManager;
-    private LinkedBlockingQueue<DispatchProfile> dispatchQueue = new LinkedBlockingQueue<>();
+    private DispatchQueue dispatchQueue;
     // workers
     private List<ClickHouseChannelWorker> workers = new ArrayList<>();
     // schedule
@@ -60,6 +59,9 @@ public class ClickHouseSink extends AbstractSink implements Configurable {
     public void start() {
         super.start();
         try {
+            int maxQueueSize = parentContext.getInteger(DispatchManager.KEY_DISPATCH_MAX_QUEUE_SIZE,
+                    DispatchManager.DEFAULT_DISPATCH_MAX_QUEUE_SIZE);
+            this.dispatchQueue = new DispatchQueue(maxQueueSize);
             this.context = new ClickHouseSinkContext(getName(), parentContext, getChannel(), dispatchQueue);
             this.context.start();
             for (int i = 0; i < context.getMaxThreads(); i++) {
@@ -30,6 +30,7 @@ import org.apache.inlong.sort.standalone.config.holder.CommonPropertiesHolder;
 import org.apache.inlong.sort.standalone.config.holder.SortClusterConfigHolder;
 import org.apache.inlong.sort.standalone.config.pojo.InlongId;
 import org.apache.inlong.sort.standalone.dispatch.DispatchProfile;
+import org.apache.inlong.sort.standalone.dispatch.DispatchQueue;
 import org.apache.inlong.sort.standalone.metrics.SortMetricItem;
 import org.apache.inlong.sort.standalone.metrics.audit.AuditUtils;
 import org.apache.inlong.sort.standalone.sink.SinkContext;
@@ -50,7 +51,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * 
@@ -70,7 +70,7 @@ public class ClickHouseSinkContext extends SinkContext {
     private Context parentContext;
     private String nodeId;
     private Map<String, ClickHouseIdConfig> idConfigMap = new ConcurrentHashMap<>();
-    private final LinkedBlockingQueue<DispatchProfile> dispatchQueue;
+    private final DispatchQueue dispatchQueue;
     // jdbc config
     private String jdbcDriver;
     private String jdbcUrl;
@@ -85,7 +85,7 @@ public class ClickHouseSinkContext extends SinkContext {
      * @param channel
      */
     public ClickHouseSinkContext(String sinkName, Context context, Channel channel,
-            LinkedBlockingQueue<DispatchProfile> dispatchQueue) {
+            DispatchQueue dispatchQueue) {
         super(sinkName, context, channel);
         this.parentContext = context;
         this.dispatchQueue = dispatchQueue;
@@ -399,7 +399,7 @@ public class ClickHouseSinkContext extends SinkContext {
      * get dispatchQueue
      * @return the dispatchQueue
      */
-    public LinkedBlockingQueue<DispatchProfile> getDispatchQueue() {
+    public DispatchQueue getDispatchQueue() {
         return dispatchQueue;
     }
 
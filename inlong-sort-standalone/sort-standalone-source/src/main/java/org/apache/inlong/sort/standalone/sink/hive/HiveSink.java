@@ -30,6 +30,7 @@ import org.apache.flume.sink.AbstractSink;
 import org.apache.inlong.sort.standalone.channel.ProfileEvent;
 import org.apache.inlong.sort.standalone.dispatch.DispatchManager;
 import org.apache.inlong.sort.standalone.dispatch.DispatchProfile;
+import org.apache.inlong.sort.standalone.dispatch.DispatchQueue;
 import org.apache.inlong.sort.standalone.utils.InlongLoggerFactory;
 import org.slf4j.Logger;
 
@@ -39,7 +40,6 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -55,7 +55,7 @@ public class HiveSink extends AbstractSink implements Configurable {
     private HiveSinkContext context;
     // message group
     private DispatchManager dispatchManager;
-    private LinkedBlockingQueue<DispatchProfile> dispatchQueue = new LinkedBlockingQueue<>();
+    private DispatchQueue dispatchQueue;
     // message file
     private Map<String, HdfsIdFile> hdfsIdFileMap = new ConcurrentHashMap<>();
     // scheduled thread pool
@@ -70,6 +70,9 @@ public class HiveSink extends AbstractSink implements Configurable {
     @Override
     public void start() {
         try {
+            int maxQueueSize = parentContext.getInteger(DispatchManager.KEY_DISPATCH_MAX_QUEUE_SIZE,
+                    DispatchManager.DEFAULT_DISPATCH_MAX_QUEUE_SIZE);
+            this.dispatchQueue = new DispatchQueue(maxQueueSize);
             this.context = new HiveSinkContext(getName(), parentContext, getChannel(), this.dispatchQueue);
             if (getChannel() == null) {
                 LOG.error("channel is null");
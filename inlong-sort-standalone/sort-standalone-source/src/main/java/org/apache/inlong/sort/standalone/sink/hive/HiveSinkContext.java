@@ -30,6 +30,7 @@ import org.apache.inlong.sort.standalone.config.holder.CommonPropertiesHolder;
 import org.apache.inlong.sort.standalone.config.holder.SortClusterConfigHolder;
 import org.apache.inlong.sort.standalone.config.pojo.InlongId;
 import org.apache.inlong.sort.standalone.dispatch.DispatchProfile;
+import org.apache.inlong.sort.standalone.dispatch.DispatchQueue;
 import org.apache.inlong.sort.standalone.metrics.SortMetricItem;
 import org.apache.inlong.sort.standalone.metrics.audit.AuditUtils;
 import org.apache.inlong.sort.standalone.sink.SinkContext;
@@ -46,7 +47,6 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * 
@@ -79,7 +79,7 @@ public class HiveSinkContext extends SinkContext {
     private Context parentContext;
     private String nodeId;
     private Map<String, HdfsIdConfig> idConfigMap = new ConcurrentHashMap<>();
-    private LinkedBlockingQueue<DispatchProfile> dispatchQueue = new LinkedBlockingQueue<>();
+    private DispatchQueue dispatchQueue;
     // hdfs config
     private String hdfsPath;
     private long maxFileOpenDelayMinute = DEFAULT_MAX_FILE_OPEN_DELAY;
@@ -106,7 +106,7 @@ public class HiveSinkContext extends SinkContext {
      * @param channel
      */
     public HiveSinkContext(String sinkName, Context context, Channel channel,
-            LinkedBlockingQueue<DispatchProfile> dispatchQueue) {
+            DispatchQueue dispatchQueue) {
         super(sinkName, context, channel);
         this.parentContext = context;
         this.dispatchQueue = dispatchQueue;
@@ -315,7 +315,7 @@ public class HiveSinkContext extends SinkContext {
      * 
      * @return the dispatchQueue
      */
-    public LinkedBlockingQueue<DispatchProfile> getDispatchQueue() {
+    public DispatchQueue getDispatchQueue() {
         return dispatchQueue;
     }
 
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.sort.standalone.dispatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class TestDispatchQueue {
+
+    @Test
+    public void testOfferBoundedTimeout() throws InterruptedException {
+        DispatchQueue dispatchQueue = new DispatchQueue(2);
+        Assert.assertTrue(dispatchQueue.offerBounded(newProfile(), 10, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(dispatchQueue.offerBounded(newProfile(), 10, TimeUnit.MILLISECONDS));
+        Assert.assertFalse(dispatchQueue.offerBounded(newProfile(), 10, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(2, dispatchQueue.size());
+        // the profiles put back by a worker are not bounded
+        Assert.assertTrue(dispatchQueue.offer(newProfile()));
+        Assert.assertEquals(3, dispatchQueue.size());
+    }
+
+    @Test
+    public void testPollWakesProducer() throws InterruptedException {
+        final DispatchQueue dispatchQueue = new DispatchQueue(1);
+        Assert.assertTrue(dispatchQueue.offerBounded(newProfile(), 10, TimeUnit.MILLISECONDS));
+        final CountDownLatch endLatch = new CountDownLatch(1);
+        new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    if (dispatchQueue.offerBounded(newProfile(), 60, TimeUnit.SECONDS)) {
+                        endLatch.countDown();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }).start();
+        Assert.assertFalse(endLatch.await(200, TimeUnit.MILLISECONDS));
+        Assert.assertNotNull(dispatchQueue.poll());
+        Assert.assertTrue(endLatch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(1, dispatchQueue.size());
+    }
+
+    private static DispatchProfile newProfile() {
+        return new DispatchProfile("group.stream", "group", "stream", 0L);
+    }
+}
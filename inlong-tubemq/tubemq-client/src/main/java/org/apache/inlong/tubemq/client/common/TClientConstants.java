@@ -39,4 +39,17 @@ public class TClientConstants {
 
     public static final long CFG_DEFAULT_META_QUERY_WAIT_PERIOD_MS = 10000L;
     public static final long CFG_MIN_META_QUERY_WAIT_PERIOD_MS = 5000L;
+
+    // batch sending is disabled when the linger time is 0
+    public static final long CFG_DEFAULT_BATCH_LINGER_MS = 0L;
+    public static final long CFG_MAX_BATCH_LINGER_MS = 5000L;
+    public static final int CFG_DEFAULT_BATCH_MAX_BYTES = 16 * 1024;
+    public static final int CFG_MAX_BATCH_MAX_BYTES = 4 * 1024 * 1024;
+
+    // asynchronous fetch is disabled when the pipeline depth is 0
+    public static final int CFG_DEFAULT_PUSH_FETCH_PIPELINE_DEPTH = 0;
+    public static final int CFG_MAX_PUSH_FETCH_PIPELINE_DEPTH = 16;
+    public static final int CFG_DEFAULT_PUSH_MULTI_FETCH_PART_CNT = 1;
+    public static final long CFG_DEFAULT_PUSH_PREFETCH_MAX_BYTES = 32 * 1024 * 1024L;
+    public static final long CFG_MIN_PUSH_PREFETCH_MAX_BYTES = 1024 * 1024L;
 }
@@ -60,6 +60,16 @@ public class ConsumerConfig extends TubeClientConfig {
     private long pullProtectConfirmTimeoutMs =
             TClientConstants.CFG_DEFAULT_PULL_PROTECT_CONFIRM_WAIT_PERIOD_MS;
     private boolean pullConfirmInLocal = false;
+    // Max in-flight asynchronous fetches per broker of the push consumer,
+    // 0 means the partitions are fetched synchronously by the fetch threads.
+    private int pushFetchPipelineDepth =
+            TClientConstants.CFG_DEFAULT_PUSH_FETCH_PIPELINE_DEPTH;
+    // Max partitions on the same broker fetched by one asynchronous request.
+    private int pushMultiFetchPartCnt =
+            TClientConstants.CFG_DEFAULT_PUSH_MULTI_FETCH_PART_CNT;
+    // Max bytes of the fetched but not yet consumed messages in asynchronous fetch.
+    private long pushPrefetchMaxBytes =
+            TClientConstants.CFG_DEFAULT_PUSH_PREFETCH_MAX_BYTES;
 
     public ConsumerConfig(String masterAddrInfo, String consumerGroup) {
         this(new MasterInfo(masterAddrInfo), consumerGroup);
@@ -183,6 +193,45 @@ public class ConsumerConfig extends TubeClientConfig {
         }
     }
 
+    public int getPushFetchPipelineDepth() {
+        return pushFetchPipelineDepth;
+    }
+
+    public void setPushFetchPipelineDepth(int pushFetchPipelineDepth) {
+        if (pushFetchPipelineDepth <= 0) {
+            this.pushFetchPipelineDepth = TClientConstants.CFG_DEFAULT_PUSH_FETCH_PIPELINE_DEPTH;
+        } else {
+            this.pushFetchPipelineDepth = Math.min(pushFetchPipelineDepth,
+                    TClientConstants.CFG_MAX_PUSH_FETCH_PIPELINE_DEPTH);
+        }
+    }
+
+    public boolean isPushAsyncFetch() {
+        return this.pushFetchPipelineDepth > 0;
+    }
+
+    public int getPushMultiFetchPartCnt() {
+        return pushMultiFetchPartCnt;
+    }
+
+    public void setPushMultiFetchPartCnt(int pushMultiFetchPartCnt) {
+        if (pushMultiFetchPartCnt <= 0) {
+            this.pushMultiFetchPartCnt = TClientConstants.CFG_DEFAULT_PUSH_MULTI_FETCH_PART_CNT;
+        } else {
+            this.pushMultiFetchPartCnt = Math.min(pushMultiFetchPartCnt,
+                    TBaseConstants.META_MAX_MULTI_FETCH_PARTITION_COUNT);
+        }
+    }
+
+    public long getPushPrefetchMaxBytes() {
+        return pushPrefetchMaxBytes;
+    }
+
+    public void setPushPrefetchMaxBytes(long pushPrefetchMaxBytes) {
+        this.pushPrefetchMaxBytes = Math.max(pushPrefetchMaxBytes,
+                TClientConstants.CFG_MIN_PUSH_PREFETCH_MAX_BYTES);
+    }
+
     public boolean isPushListenerWaitTimeoutRollBack() {
         return pushListenerWaitTimeoutRollBack;
     }
@@ -278,6 +327,9 @@ public class ConsumerConfig extends TubeClientConfig {
                 .append(",\"pushListenerWaitTimeoutRollBack\":").append(this.pushListenerWaitTimeoutRollBack)
                 .append(",\"pushListenerThrowedRollBack\":").append(this.pushListenerThrowedRollBack)
                 .append(",\"pushListenerWaitPeriodMs\":").append(this.pushListenerWaitPeriodMs)
+                .append(",\"pushFetchPipelineDepth\":").append(this.pushFetchPipelineDepth)
+                .append(",\"pushMultiFetchPartCnt\":").append(this.pushMultiFetchPartCnt)
+                .append(",\"pushPrefetchMaxBytes\":").append(this.pushPrefetchMaxBytes)
                 .append(",\"pullRebConfirmTimeoutRollBack\":").append(this.pullRebConfirmTimeoutRollBack)
                 .append(",\"pullConfirmWaitPeriodMs\":").append(this.pullRebConfirmWaitPeriodMs)
                 .append(",\"pullProtectConfirmTimeoutPeriodMs\":").append(this.pullProtectConfirmTimeoutMs)
@@ -96,6 +96,14 @@ public class TubeClientConfig {
     private String usrPassWord = "";
     // TLS configuration.
     private TLSConfig tlsConfig = new TLSConfig();
+    // Max wait time of the asynchronously sent messages before their batch is sent,
+    // 0 means the messages are sent one by one.
+    private long batchLingerMs = TClientConstants.CFG_DEFAULT_BATCH_LINGER_MS;
+    // Max bytes of the message batch of a partition.
+    private int batchMaxBytes = TClientConstants.CFG_DEFAULT_BATCH_MAX_BYTES;
+    // Whether the sends are acknowledged after the messages are synced to disk,
+    // only effective on the brokers with group commit enabled.
+    private boolean requireDurableAck = false;
 
     public TubeClientConfig(String masterAddrInfo) {
         this(new MasterInfo(masterAddrInfo));
@@ -461,6 +469,46 @@ public class TubeClientConfig {
         return usrPassWord;
     }
 
+    public long getBatchLingerMs() {
+        return batchLingerMs;
+    }
+
+    public void setBatchLingerMs(long batchLingerMs) {
+        if (batchLingerMs <= 0) {
+            this.batchLingerMs = TClientConstants.CFG_DEFAULT_BATCH_LINGER_MS;
+        } else if (batchLingerMs > TClientConstants.CFG_MAX_BATCH_LINGER_MS) {
+            this.batchLingerMs = TClientConstants.CFG_MAX_BATCH_LINGER_MS;
+        } else {
+            this.batchLingerMs = batchLingerMs;
+        }
+    }
+
+    public boolean isEnableBatchSend() {
+        return this.batchLingerMs > 0;
+    }
+
+    public int getBatchMaxBytes() {
+        return batchMaxBytes;
+    }
+
+    public void setBatchMaxBytes(int batchMaxBytes) {
+        if (batchMaxBytes <= 0) {
+            this.batchMaxBytes = TClientConstants.CFG_DEFAULT_BATCH_MAX_BYTES;
+        } else if (batchMaxBytes > TClientConstants.CFG_MAX_BATCH_MAX_BYTES) {
+            this.batchMaxBytes = TClientConstants.CFG_MAX_BATCH_MAX_BYTES;
+        } else {
+            this.batchMaxBytes = batchMaxBytes;
+        }
+    }
+
+    public boolean isRequireDurableAck() {
+        return requireDurableAck;
+    }
+
+    public void setRequireDurableAck(boolean requireDurableAck) {
+        this.requireDurableAck = requireDurableAck;
+    }
+
     public StatsConfig getStatsConfig() {
         return this.statsConfig;
     }
@@ -566,6 +614,15 @@ public class TubeClientConfig {
         if (!this.statsConfig.equals(that.statsConfig)) {
             return false;
         }
+        if (batchLingerMs != that.batchLingerMs) {
+            return false;
+        }
+        if (batchMaxBytes != that.batchMaxBytes) {
+            return false;
+        }
+        if (requireDurableAck != that.requireDurableAck) {
+            return false;
+        }
         return masterInfo.equals(that.masterInfo);
     }
 
@@ -614,6 +671,9 @@ public class TubeClientConfig {
                 .append(",\"sessionMaxAllowedDelayedMsgCount\":").append(this.sessionMaxAllowedDelayedMsgCount)
                 .append(",\"unAvailableFbdDurationMs\":").append(this.unAvailableFbdDurationMs)
                 .append(",\"enableUserAuthentic\":").append(this.enableUserAuthentic)
+                .append(",\"batchLingerMs\":").append(this.batchLingerMs)
+                .append(",\"batchMaxBytes\":").append(this.batchMaxBytes)
+                .append(",\"requireDurableAck\":").append(this.requireDurableAck)
                 .append(",").append(this.statsConfig.toString())
                 .append(",\"usrName\":\"").append(this.usrName)
                 .append("\",\"usrPassWord\":\"").append(this.usrPassWord)
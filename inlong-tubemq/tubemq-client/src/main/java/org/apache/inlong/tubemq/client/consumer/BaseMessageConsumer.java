@@ -756,6 +756,17 @@ public class BaseMessageConsumer implements MessageConsumer {
         return rmtDataCache.pushSelect();
     }
 
+    /**
+     * Select more idle partitions on the broker of a selected partition
+     *
+     * @param brokerInfo  the broker of the partitions
+     * @param maxCount    the max count of the partitions to select
+     * @return the selected partitions
+     */
+    protected List<PartitionSelectResult> pushSelectBrokerPartitions(BrokerInfo brokerInfo, int maxCount) {
+        return rmtDataCache.pushSelectBrokerParts(brokerInfo, maxCount);
+    }
+
     protected void pushReqReleasePartition(String partitionKey,
             long usedTime,
             boolean isLastPackConsumed) {
@@ -783,6 +794,25 @@ public class BaseMessageConsumer implements MessageConsumer {
         return builder.build();
     }
 
+    /**
+     * Construct a get message request of several partitions on the same broker.
+     *
+     * @param taskContexts   the fetch contexts of the partitions
+     * @return message request
+     */
+    protected ClientBroker.GetMultiMessageRequestC2B createBrokerGetMultiMessageRequest(
+            List<FetchContext> taskContexts) {
+        ClientBroker.GetMultiMessageRequestC2B.Builder builder =
+                ClientBroker.GetMultiMessageRequestC2B.newBuilder();
+        builder.setClientId(this.consumerId);
+        builder.setGroupName(this.consumerConfig.getConsumerGroup());
+        for (FetchContext taskContext : taskContexts) {
+            builder.addRequests(createBrokerGetMessageRequest(
+                    taskContext.getPartition(), taskContext.isLastConsumed()));
+        }
+        return builder.build();
+    }
+
     /**
      * Create a commit request.
      *
@@ -1194,15 +1224,12 @@ public class BaseMessageConsumer implements MessageConsumer {
         return readStatus;
     }
 
-    // #lizard forgives
     protected FetchContext fetchMessage(PartitionSelectResult partSelectResult,
             final StringBuilder strBuffer) {
         // Fetch task context based on selected partition
         FetchContext taskContext =
                 new FetchContext(partSelectResult);
         Partition partition = taskContext.getPartition();
-        String topic = partition.getTopic();
-        String partitionKey = partition.getPartitionKey();
         long startTime = System.currentTimeMillis();
         // Response from broker
         ClientBroker.GetMessageResponseB2C msgRspB2C = null;
@@ -1213,21 +1240,53 @@ public class BaseMessageConsumer implements MessageConsumer {
                                     partition, taskContext.isLastConsumed()),
                                     AddressUtils.getLocalAddress(), consumerConfig.isTlsEnable());
         } catch (Throwable ee) {
-            clientStatsInfo.bookFailRpcCall(TErrCodeConstants.UNSPECIFIED_ABNORMAL);
-            // Process the exception
-            rmtDataCache.errReqRelease(partitionKey, taskContext.getUsedToken(), false);
-            taskContext.setFailProcessResult(400, strBuffer
-                    .append("Get message error, reason is ")
-                    .append(ee.toString()).toString());
-            strBuffer.delete(0, strBuffer.length());
+            processFetchError(taskContext, ee, strBuffer);
             return taskContext;
         }
-        long dltTime = System.currentTimeMillis() - startTime;
+        processFetchResponse(taskContext, msgRspB2C,
+                System.currentTimeMillis() - startTime, strBuffer);
+        return taskContext;
+    }
+
+    /**
+     * Process the failure of the get message request, release the partition.
+     *
+     * @param taskContext   the fetch context of the partition
+     * @param ee            the failure cause
+     * @param strBuffer     the string buffer
+     */
+    protected void processFetchError(FetchContext taskContext,
+            Throwable ee, final StringBuilder strBuffer) {
+        clientStatsInfo.bookFailRpcCall(TErrCodeConstants.UNSPECIFIED_ABNORMAL);
+        // Process the exception
+        rmtDataCache.errReqRelease(taskContext.getPartitionKey(), taskContext.getUsedToken(), false);
+        taskContext.setFailProcessResult(400, strBuffer
+                .append("Get message error, reason is ")
+                .append(ee.toString()).toString());
+        strBuffer.delete(0, strBuffer.length());
+    }
+
+    /**
+     * Process the get message response of the partition, and set the process result
+     * into the fetch context.
+     *
+     * @param taskContext   the fetch context of the partition
+     * @param msgRspB2C     the response from broker
+     * @param dltTime       the elapsed time of the request
+     * @param strBuffer     the string buffer
+     */
+    // #lizard forgives
+    protected void processFetchResponse(FetchContext taskContext,
+            ClientBroker.GetMessageResponseB2C msgRspB2C,
+            long dltTime, final StringBuilder strBuffer) {
+        Partition partition = taskContext.getPartition();
+        String topic = partition.getTopic();
+        String partitionKey = partition.getPartitionKey();
         if (msgRspB2C == null) {
             clientStatsInfo.bookFailRpcCall(TErrCodeConstants.INTERNAL_SERVER_ERROR);
             rmtDataCache.errReqRelease(partitionKey, taskContext.getUsedToken(), false);
             taskContext.setFailProcessResult(500, "Get message null");
-            return taskContext;
+            return;
         }
         try {
             // Process the response based on the return code
@@ -1350,7 +1409,6 @@ public class BaseMessageConsumer implements MessageConsumer {
             if (msgRspB2C.getErrCode() != TErrCodeConstants.SUCCESS) {
                 clientStatsInfo.bookFailRpcCall(msgRspB2C.getErrCode());
             }
-            return taskContext;
         } catch (Throwable ee) {
             clientStatsInfo.bookFailRpcCall(TErrCodeConstants.INTERNAL_SERVER_ERROR);
             logger.error("Process response code error", ee);
@@ -1363,7 +1421,6 @@ public class BaseMessageConsumer implements MessageConsumer {
                             .append(", throw info is ").append(ee.toString()).toString());
             strBuffer.delete(0, strBuffer.length());
         }
-        return taskContext;
     }
 
     protected void checkClientRunning() throws TubeClientException {
@@ -1419,6 +1476,16 @@ public class BaseMessageConsumer implements MessageConsumer {
         return rpcServiceFactory.getService(BrokerReadService.class, brokerInfo, rpcConfig);
     }
 
+    /**
+     * Get the asynchronous broker read service.
+     *
+     * @param brokerInfo broker information
+     * @return asynchronous broker read service
+     */
+    protected BrokerReadService.AsyncService getAsyncBrokerService(BrokerInfo brokerInfo) {
+        return rpcServiceFactory.getService(BrokerReadService.AsyncService.class, brokerInfo, rpcConfig);
+    }
+
     // #lizard forgives
     private class HeartTask2MasterWorker implements Runnable {
 
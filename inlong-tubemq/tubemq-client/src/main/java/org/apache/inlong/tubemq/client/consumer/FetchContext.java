@@ -23,6 +23,7 @@ import org.apache.inlong.tubemq.corebase.Message;
 import org.apache.inlong.tubemq.corebase.TBaseConstants;
 import org.apache.inlong.tubemq.corebase.TErrCodeConstants;
 import org.apache.inlong.tubemq.corebase.cluster.Partition;
+import org.apache.inlong.tubemq.corebase.protobuf.generated.ClientBroker;
 
 public class FetchContext {
 
@@ -36,6 +37,11 @@ public class FetchContext {
     private String confirmContext = "";
     private List<Message> messageList = new ArrayList<>();
     private long maxOffset = TBaseConstants.META_VALUE_UNDEFINED;
+    // the response waiting to be processed by the consume worker in the pipeline mode
+    private ClientBroker.GetMessageResponseB2C fetchResponse = null;
+    private long fetchDltTime = 0L;
+    // the bytes charged to the fetch result buffer
+    private long bufferedBytes = 0L;
 
     public FetchContext(PartitionSelectResult selectResult) {
         this.partition = selectResult.getPartition();
@@ -109,4 +115,35 @@ public class FetchContext {
     public long getMaxOffset() {
         return maxOffset;
     }
+
+    void setFetchResponse(ClientBroker.GetMessageResponseB2C fetchResponse, long fetchDltTime) {
+        this.fetchResponse = fetchResponse;
+        this.fetchDltTime = fetchDltTime;
+    }
+
+    boolean hasFetchResponse() {
+        return fetchResponse != null;
+    }
+
+    ClientBroker.GetMessageResponseB2C getFetchResponse() {
+        return fetchResponse;
+    }
+
+    ClientBroker.GetMessageResponseB2C takeFetchResponse() {
+        ClientBroker.GetMessageResponseB2C response = fetchResponse;
+        fetchResponse = null;
+        return response;
+    }
+
+    long getFetchDltTime() {
+        return fetchDltTime;
+    }
+
+    void setBufferedBytes(long bufferedBytes) {
+        this.bufferedBytes = bufferedBytes;
+    }
+
+    long getBufferedBytes() {
+        return bufferedBytes;
+    }
 }
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.client.consumer;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.inlong.tubemq.corebase.Message;
+import org.apache.inlong.tubemq.corebase.protobuf.generated.ClientBroker;
+
+/**
+ * Buffer of the fetched results waiting to be consumed, used by the asynchronous push fetch.
+ *
+ * The buffered bytes are limited by a soft bound: a new fetch is issued only when the
+ * buffered bytes are under the bound, while the responses of the in-flight requests are
+ * always accepted, so the buffered bytes may exceed the bound by the in-flight results.
+ * A result is charged by the bytes counted when it is buffered, either the fetched messages
+ * or the payload of the response left to the consume worker, and released by the same bytes.
+ */
+public class FetchResultBuffer {
+
+    private final LinkedBlockingQueue<FetchContext> resultQueue =
+            new LinkedBlockingQueue<>();
+    private final AtomicLong bufferedBytes = new AtomicLong(0);
+    private final long maxBufferedBytes;
+    private final Object spaceSync = new Object();
+
+    public FetchResultBuffer(long maxBufferedBytes) {
+        this.maxBufferedBytes = maxBufferedBytes;
+    }
+
+    /**
+     * Add the fetched result into the buffer.
+     *
+     * @param taskContext  the fetched result
+     */
+    public void put(FetchContext taskContext) {
+        long dataSize = getDataSize(taskContext);
+        taskContext.setBufferedBytes(dataSize);
+        bufferedBytes.addAndGet(dataSize);
+        resultQueue.offer(taskContext);
+    }
+
+    /**
+     * Take a fetched result from the buffer.
+     *
+     * @param waitTime  the max wait time in milliseconds
+     * @return  the fetched result, null if the buffer is empty after waiting
+     * @throws InterruptedException  if interrupted while waiting
+     */
+    public FetchContext poll(long waitTime) throws InterruptedException {
+        return resultQueue.poll(waitTime, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Take a fetched result from the buffer without waiting.
+     *
+     * @return  the fetched result, null if the buffer is empty
+     */
+    public FetchContext poll() {
+        return resultQueue.poll();
+    }
+
+    /**
+     * Release the buffered bytes of a consumed result, and wake up the waiting fetch.
+     *
+     * @param taskContext  the consumed result
+     */
+    public void release(FetchContext taskContext) {
+        long curBytes = bufferedBytes.addAndGet(-taskContext.getBufferedBytes());
+        if (curBytes < maxBufferedBytes) {
+            synchronized (spaceSync) {
+                spaceSync.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Wait until the buffered bytes are under the bound.
+     *
+     * @param waitTime  the max wait time in milliseconds
+     * @return  whether the buffered bytes are under the bound
+     * @throws InterruptedException  if interrupted while waiting
+     */
+    public boolean waitForSpace(long waitTime) throws InterruptedException {
+        if (bufferedBytes.get() < maxBufferedBytes) {
+            return true;
+        }
+        synchronized (spaceSync) {
+            if (bufferedBytes.get() >= maxBufferedBytes) {
+                spaceSync.wait(waitTime);
+            }
+        }
+        return bufferedBytes.get() < maxBufferedBytes;
+    }
+
+    public long getBufferedBytes() {
+        return bufferedBytes.get();
+    }
+
+    public int size() {
+        return resultQueue.size();
+    }
+
+    public boolean isEmpty() {
+        return resultQueue.isEmpty();
+    }
+
+    private long getDataSize(FetchContext taskContext) {
+        long dataSize = 0L;
+        if (taskContext.hasFetchResponse()) {
+            // the response is not processed yet, charge its payload
+            for (ClientBroker.TransferedMessage message
+                    : taskContext.getFetchResponse().getMessagesList()) {
+                dataSize += message.getPayLoadData().size();
+            }
+        } else if (taskContext.getMessageList() != null) {
+            for (Message message : taskContext.getMessageList()) {
+                dataSize += message.getData().length;
+            }
+        }
+        return dataSize;
+    }
+}
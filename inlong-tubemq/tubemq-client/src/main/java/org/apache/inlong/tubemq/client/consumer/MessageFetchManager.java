@@ -17,24 +17,50 @@
 
 package org.apache.inlong.tubemq.client.consumer;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.inlong.tubemq.client.config.ConsumerConfig;
 import org.apache.inlong.tubemq.client.exception.TubeClientException;
+import org.apache.inlong.tubemq.corebase.cluster.BrokerInfo;
 import org.apache.inlong.tubemq.corebase.cluster.Partition;
+import org.apache.inlong.tubemq.corebase.protobuf.generated.ClientBroker;
+import org.apache.inlong.tubemq.corebase.utils.AddressUtils;
+import org.apache.inlong.tubemq.corerpc.client.Callback;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Fetch messages with multiple threads.
+ *
+ * In the default mode each worker fetches a partition and then notifies the listener.
+ * If the fetch pipeline is enabled, a dispatch worker issues the asynchronous fetch
+ * requests, at most the pipeline depth in flight on each broker, and fetches several
+ * idle partitions of the same broker by one request; the responses are buffered as they
+ * arrive, and the workers process them and notify the listener off the network threads.
+ * A partition whose broker has no free slot is returned at once, so a slow broker does not
+ * hold up the fetches on the other brokers.
  */
 public class MessageFetchManager {
 
     private static final Logger logger =
             LoggerFactory.getLogger(MessageFetchManager.class);
+    // the wait period of the dispatch and the consume workers in the pipeline mode
+    private static final long ASYNC_FETCH_WAIT_PERIOD_MS = 200L;
     private final ConcurrentHashMap<Long, Integer> fetchWorkerStatusMap =
             new ConcurrentHashMap<>();
+    // the in-flight request slots of each broker in the pipeline mode
+    private final ConcurrentHashMap<BrokerInfo, Semaphore> brokerInflightSlots =
+            new ConcurrentHashMap<>();
+    // the released count of the in-flight slots, the dispatch worker waits on it
+    // when the ready partitions are all on the busy brokers
+    private final AtomicLong slotReleaseCnt = new AtomicLong(0);
+    private final Object slotSync = new Object();
     private final ConsumerConfig consumerConfig;
     private final SimplePushMessageConsumer pushConsumer;
     // Manager status:
@@ -43,6 +69,7 @@ public class MessageFetchManager {
     // 1: Started
     private AtomicInteger managerStatus = new AtomicInteger(-1);
     private Thread[] fetchWorkerPool;
+    private FetchResultBuffer resultBuffer;
 
     public MessageFetchManager(final ConsumerConfig consumerConfig,
             final SimplePushMessageConsumer pushConsumer) {
@@ -66,16 +93,34 @@ public class MessageFetchManager {
         }
         StringBuilder sBuilder = new StringBuilder(256);
         logger.info("Starting Fetch Worker Pool !");
-        this.fetchWorkerPool =
-                new Thread[this.consumerConfig.getPushFetchThreadCnt()];
+        if (this.consumerConfig.isPushAsyncFetch()) {
+            // one more thread to dispatch the fetch requests
+            this.resultBuffer =
+                    new FetchResultBuffer(this.consumerConfig.getPushPrefetchMaxBytes());
+            this.fetchWorkerPool =
+                    new Thread[this.consumerConfig.getPushFetchThreadCnt() + 1];
+        } else {
+            this.fetchWorkerPool =
+                    new Thread[this.consumerConfig.getPushFetchThreadCnt()];
+        }
         logger.info(sBuilder
                 .append("Prepare to start Fetch Worker Pool, total count:")
-                .append(fetchWorkerPool.length).toString());
+                .append(fetchWorkerPool.length).append(", pipeline depth:")
+                .append(this.consumerConfig.getPushFetchPipelineDepth()).toString());
         sBuilder.delete(0, sBuilder.length());
         for (int i = 0; i < this.fetchWorkerPool.length; i++) {
-            this.fetchWorkerPool[i] = new Thread(new FetchTaskWorker());
+            if (this.resultBuffer == null) {
+                this.fetchWorkerPool[i] = new Thread(new FetchTaskWorker());
+                sBuilder.append("Fetch_Worker_");
+            } else if (i == 0) {
+                this.fetchWorkerPool[i] = new Thread(new FetchDispatchWorker());
+                sBuilder.append("Fetch_Dispatcher_");
+            } else {
+                this.fetchWorkerPool[i] = new Thread(new ConsumeTaskWorker());
+                sBuilder.append("Fetch_Worker_");
+            }
             this.fetchWorkerStatusMap.put(this.fetchWorkerPool[i].getId(), -1);
-            this.fetchWorkerPool[i].setName(sBuilder.append("Fetch_Worker_")
+            this.fetchWorkerPool[i].setName(sBuilder
                     .append(this.consumerConfig.getConsumerGroup())
                     .append("-").append(i).toString());
             sBuilder.delete(0, sBuilder.length());
@@ -228,4 +273,323 @@ public class MessageFetchManager {
             fetchWorkerStatusMap.remove(curThreadId);
         }
     }
+
+    /**
+     * Release the selected partitions of the fetched results left in the buffer.
+     */
+    private void releaseBufferedResults() {
+        FetchContext taskContext;
+        while ((taskContext = resultBuffer.poll()) != null) {
+            resultBuffer.release(taskContext);
+            pushConsumer.getBaseConsumer().pushReqReleasePartition(
+                    taskContext.getPartitionKey(), taskContext.getUsedToken(), false);
+        }
+    }
+
+    private void bufferFetchResult(FetchContext taskContext) {
+        resultBuffer.put(taskContext);
+        // the consume workers may have exited
+        if (isShutdown()) {
+            releaseBufferedResults();
+        }
+    }
+
+    /**
+     * Buffer the responses of an asynchronous fetch request, the responses are processed
+     * by the consume workers; the partitions not buffered are released on failure.
+     *
+     * @param taskContexts   the fetch contexts of the partitions
+     * @param responses      the responses of the partitions, in the same order
+     * @param dltTime        the elapsed time of the request
+     */
+    private void bufferFetchResponses(List<FetchContext> taskContexts,
+            List<ClientBroker.GetMessageResponseB2C> responses, long dltTime) {
+        int index = 0;
+        try {
+            for (; index < taskContexts.size(); index++) {
+                taskContexts.get(index).setFetchResponse(responses.get(index), dltTime);
+                bufferFetchResult(taskContexts.get(index));
+            }
+        } catch (Throwable e) {
+            processFetchErrors(taskContexts.subList(index, taskContexts.size()),
+                    e, new StringBuilder(256));
+        }
+    }
+
+    private void releaseInflightSlot(Semaphore inflightSlots) {
+        inflightSlots.release();
+        slotReleaseCnt.incrementAndGet();
+        synchronized (slotSync) {
+            slotSync.notifyAll();
+        }
+    }
+
+    /**
+     * Wait until an in-flight slot is released after the given release count.
+     *
+     * @param releaseCnt  the release count seen before
+     * @param waitTime    the max wait time in milliseconds
+     * @throws InterruptedException  if interrupted while waiting
+     */
+    private void waitForFreeSlot(long releaseCnt, long waitTime) throws InterruptedException {
+        synchronized (slotSync) {
+            if (slotReleaseCnt.get() == releaseCnt) {
+                slotSync.wait(waitTime);
+            }
+        }
+    }
+
+    private Semaphore getInflightSlots(BrokerInfo brokerInfo) {
+        Semaphore inflightSlots = brokerInflightSlots.get(brokerInfo);
+        if (inflightSlots == null) {
+            Semaphore tmpSlots =
+                    new Semaphore(consumerConfig.getPushFetchPipelineDepth());
+            inflightSlots = brokerInflightSlots.putIfAbsent(brokerInfo, tmpSlots);
+            if (inflightSlots == null) {
+                inflightSlots = tmpSlots;
+            }
+        }
+        return inflightSlots;
+    }
+
+    /**
+     * Issue the asynchronous fetch request of the partitions on the same broker,
+     * the results are buffered when the response arrives.
+     *
+     * @param inflightSlots  the in-flight slots of the broker, a slot is held by the request
+     * @param taskContexts   the fetch contexts of the partitions
+     * @param sBuilder       the string buffer
+     */
+    private void asyncFetchMessages(final Semaphore inflightSlots,
+            final List<FetchContext> taskContexts,
+            final StringBuilder sBuilder) {
+        final BaseMessageConsumer baseConsumer = pushConsumer.getBaseConsumer();
+        final FetchContext firstContext = taskContexts.get(0);
+        final long startTime = System.currentTimeMillis();
+        try {
+            if (taskContexts.size() == 1) {
+                baseConsumer.getAsyncBrokerService(firstContext.getPartition().getBroker())
+                        .getMessagesC2B(baseConsumer.createBrokerGetMessageRequest(
+                                firstContext.getPartition(), firstContext.isLastConsumed()),
+                                AddressUtils.getLocalAddress(), consumerConfig.isTlsEnable(),
+                                new Callback<ClientBroker.GetMessageResponseB2C>() {
+
+                                    @Override
+                                    public void handleResult(ClientBroker.GetMessageResponseB2C result) {
+                                        releaseInflightSlot(inflightSlots);
+                                        if (result == null) {
+                                            processFetchErrors(taskContexts,
+                                                    new TubeClientException("Get message null"),
+                                                    new StringBuilder(256));
+                                            return;
+                                        }
+                                        bufferFetchResponses(taskContexts, Collections.singletonList(result),
+                                                System.currentTimeMillis() - startTime);
+                                    }
+
+                                    @Override
+                                    public void handleError(Throwable error) {
+                                        releaseInflightSlot(inflightSlots);
+                                        processFetchErrors(taskContexts, error, new StringBuilder(256));
+                                    }
+                                });
+            } else {
+                baseConsumer.getAsyncBrokerService(firstContext.getPartition().getBroker())
+                        .getMultiMessagesC2B(baseConsumer.createBrokerGetMultiMessageRequest(taskContexts),
+                                AddressUtils.getLocalAddress(), consumerConfig.isTlsEnable(),
+                                new Callback<ClientBroker.GetMultiMessageResponseB2C>() {
+
+                                    @Override
+                                    public void handleResult(ClientBroker.GetMultiMessageResponseB2C result) {
+                                        releaseInflightSlot(inflightSlots);
+                                        StringBuilder strBuffer = new StringBuilder(256);
+                                        if (result == null || !result.getSuccess()
+                                                || result.getResponsesCount() != taskContexts.size()) {
+                                            String errMsg = strBuffer.append("Get multi message failed, ")
+                                                    .append(result == null ? "null response" : result.getErrMsg())
+                                                    .toString();
+                                            strBuffer.delete(0, strBuffer.length());
+                                            processFetchErrors(taskContexts,
+                                                    new TubeClientException(errMsg), strBuffer);
+                                            return;
+                                        }
+                                        bufferFetchResponses(taskContexts, result.getResponsesList(),
+                                                System.currentTimeMillis() - startTime);
+                                    }
+
+                                    @Override
+                                    public void handleError(Throwable error) {
+                                        releaseInflightSlot(inflightSlots);
+                                        processFetchErrors(taskContexts, error, new StringBuilder(256));
+                                    }
+                                });
+            }
+        } catch (Throwable e) {
+            releaseInflightSlot(inflightSlots);
+            processFetchErrors(taskContexts, e, sBuilder);
+        }
+    }
+
+    private void processFetchErrors(List<FetchContext> taskContexts,
+            Throwable error, final StringBuilder sBuilder) {
+        for (FetchContext taskContext : taskContexts) {
+            pushConsumer.getBaseConsumer().processFetchError(taskContext, error, sBuilder);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug(sBuilder.append("Fetch message error: partition count:")
+                    .append(taskContexts.size()).append(", first partition:")
+                    .append(taskContexts.get(0).getPartition().toString())
+                    .append(" error is ").append(error.toString()).toString());
+            sBuilder.delete(0, sBuilder.length());
+        }
+    }
+
+    /**
+     * Process the buffered response of the fetch context, release the partition on failure.
+     *
+     * @param taskContext   the fetch context of the partition
+     * @param sBuilder      the string buffer
+     * @return  whether the fetch result can be notified to the listener
+     */
+    private boolean processFetchResponse(FetchContext taskContext, final StringBuilder sBuilder) {
+        if (!taskContext.hasFetchResponse()) {
+            return true;
+        }
+        try {
+            pushConsumer.getBaseConsumer().processFetchResponse(taskContext,
+                    taskContext.takeFetchResponse(), taskContext.getFetchDltTime(), sBuilder);
+            return true;
+        } catch (Throwable e) {
+            sBuilder.delete(0, sBuilder.length());
+            pushConsumer.getBaseConsumer().processFetchError(taskContext, e, sBuilder);
+            return false;
+        }
+    }
+
+    private class FetchDispatchWorker implements Runnable {
+
+        @Override
+        public void run() {
+            StringBuilder sBuilder = new StringBuilder(256);
+            final Long curThreadId = Thread.currentThread().getId();
+            final BaseMessageConsumer baseConsumer =
+                    MessageFetchManager.this.pushConsumer.getBaseConsumer();
+            // the count of the partitions returned in a row as their brokers have no free slot
+            int busyPartCnt = 0;
+            long lastReleaseCnt = 0L;
+            fetchWorkerStatusMap.put(curThreadId, 0);
+            while (!isShutdown()) {
+                PartitionSelectResult partSelectResult = null;
+                Semaphore inflightSlots = null;
+                fetchWorkerStatusMap.put(curThreadId, 0);
+                try {
+                    MessageFetchManager.this.pushConsumer.allowConsumeWait();
+                    // issue new requests only when the buffered results are under the bound
+                    if (!resultBuffer.waitForSpace(ASYNC_FETCH_WAIT_PERIOD_MS)) {
+                        continue;
+                    }
+                    fetchWorkerStatusMap.put(curThreadId, 1);
+                    partSelectResult = baseConsumer.pushSelectPartition();
+                    if (partSelectResult == null) {
+                        continue;
+                    }
+                    Partition partition = partSelectResult.getPartition();
+                    if (isShutdown()) {
+                        baseConsumer.pushReqReleasePartition(partition.getPartitionKey(),
+                                partSelectResult.getUsedToken(), partSelectResult.isLastPackConsumed());
+                        partSelectResult = null;
+                        break;
+                    }
+                    if (MessageFetchManager.this.pushConsumer.isConsumePaused()) {
+                        boolean result = partSelectResult.isLastPackConsumed();
+                        if (result) {
+                            result = baseConsumer.flushLastRequest(partition);
+                        }
+                        baseConsumer.pushReqReleasePartition(partition.getPartitionKey(),
+                                partSelectResult.getUsedToken(), result);
+                        partSelectResult = null;
+                        continue;
+                    }
+                    // return the partition if its broker has no free slot and select another one,
+                    // waiting for a released slot only after every broker has been found busy
+                    Semaphore brokerSlots = getInflightSlots(partition.getBroker());
+                    if (!brokerSlots.tryAcquire()) {
+                        if (busyPartCnt++ == 0) {
+                            lastReleaseCnt = slotReleaseCnt.get();
+                        }
+                        baseConsumer.pushReqReleasePartition(partition.getPartitionKey(),
+                                partSelectResult.getUsedToken(), partSelectResult.isLastPackConsumed());
+                        partSelectResult = null;
+                        if (busyPartCnt >= brokerInflightSlots.size()) {
+                            waitForFreeSlot(lastReleaseCnt, ASYNC_FETCH_WAIT_PERIOD_MS);
+                            busyPartCnt = 0;
+                        }
+                        continue;
+                    }
+                    busyPartCnt = 0;
+                    inflightSlots = brokerSlots;
+                    List<FetchContext> taskContexts = new ArrayList<>();
+                    taskContexts.add(new FetchContext(partSelectResult));
+                    partSelectResult = null;
+                    for (PartitionSelectResult selectResult : baseConsumer.pushSelectBrokerPartitions(
+                            partition.getBroker(), consumerConfig.getPushMultiFetchPartCnt() - 1)) {
+                        taskContexts.add(new FetchContext(selectResult));
+                    }
+                    fetchWorkerStatusMap.put(curThreadId, 2);
+                    // the slot is released when the request completes
+                    asyncFetchMessages(inflightSlots, taskContexts, sBuilder);
+                    inflightSlots = null;
+                } catch (Throwable e) {
+                    if (inflightSlots != null) {
+                        releaseInflightSlot(inflightSlots);
+                    }
+                    if (partSelectResult != null) {
+                        baseConsumer.pushReqReleasePartition(
+                                partSelectResult.getPartition().getPartitionKey(),
+                                partSelectResult.getUsedToken(), false);
+                    }
+                    sBuilder.delete(0, sBuilder.length());
+                    logger.warn(sBuilder.append("Thread {} has been interrupted 3.")
+                            .append(Thread.currentThread().getName()).toString());
+                    sBuilder.delete(0, sBuilder.length());
+                }
+            }
+            fetchWorkerStatusMap.remove(curThreadId);
+        }
+    }
+
+    private class ConsumeTaskWorker implements Runnable {
+
+        @Override
+        public void run() {
+            StringBuilder sBuilder = new StringBuilder(256);
+            final Long curThreadId = Thread.currentThread().getId();
+            fetchWorkerStatusMap.put(curThreadId, 0);
+            while (!isShutdown()) {
+                FetchContext taskContext = null;
+                fetchWorkerStatusMap.put(curThreadId, 0);
+                try {
+                    taskContext = resultBuffer.poll(ASYNC_FETCH_WAIT_PERIOD_MS);
+                } catch (InterruptedException e) {
+                    logger.warn(sBuilder.append("Thread {} has been interrupted 3.")
+                            .append(Thread.currentThread().getName()).toString());
+                    sBuilder.delete(0, sBuilder.length());
+                }
+                if (taskContext == null) {
+                    continue;
+                }
+                fetchWorkerStatusMap.put(curThreadId, 2);
+                try {
+                    if (processFetchResponse(taskContext, sBuilder)) {
+                        MessageFetchManager.this.pushConsumer.processFetchResult(
+                                taskContext, System.currentTimeMillis(), sBuilder);
+                    }
+                } finally {
+                    resultBuffer.release(taskContext);
+                }
+            }
+            releaseBufferedResults();
+            fetchWorkerStatusMap.remove(curThreadId);
+        }
+    }
 }
@@ -17,6 +17,8 @@
 
 package org.apache.inlong.tubemq.client.consumer;
 
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.inlong.tubemq.corebase.TBaseConstants;
 import org.apache.inlong.tubemq.corebase.TErrCodeConstants;
 import org.apache.inlong.tubemq.corebase.cluster.BrokerInfo;
@@ -33,6 +35,12 @@ import org.apache.inlong.tubemq.corebase.policies.FlowCtrlRuleHandler;
  */
 public class PartitionExt extends Partition {
 
+    // the select status of the partition in the remote data cache:
+    // idle, queued in the ready queue, or waiting for the delay timer
+    public static final int SELECT_STATUS_IDLE = 0;
+    public static final int SELECT_STATUS_READY = 1;
+    public static final int SELECT_STATUS_TIME_WAIT = 2;
+
     private static final long serialVersionUID = 7587342323917872253L;
     private final FlowCtrlRuleHandler groupFlowCtrlRuleHandler;
     private final FlowCtrlRuleHandler defFlowCtrlRuleHandler;
@@ -55,6 +63,11 @@ public class PartitionExt extends Partition {
     private long curDataDlt;
     private boolean isRequireSlow = false;
     private boolean isLastPackConsumed = false;
+    private final AtomicInteger selectStatus =
+            new AtomicInteger(SELECT_STATUS_IDLE);
+    // the token of the consume request holding the partition
+    private final AtomicLong usedToken =
+            new AtomicLong(TBaseConstants.META_VALUE_UNDEFINED);
 
     public PartitionExt(final FlowCtrlRuleHandler groupFlowCtrlRuleHandler,
             final FlowCtrlRuleHandler defFlowCtrlRuleHandler,
@@ -190,6 +203,47 @@ public class PartitionExt extends Partition {
         return curVal;
     }
 
+    public int getSelectStatus() {
+        return selectStatus.get();
+    }
+
+    public boolean compareAndSetSelectStatus(int expect, int update) {
+        return selectStatus.compareAndSet(expect, update);
+    }
+
+    public long getUsedToken() {
+        return usedToken.get();
+    }
+
+    public boolean isInUse() {
+        return usedToken.get() != TBaseConstants.META_VALUE_UNDEFINED;
+    }
+
+    /**
+     * Book the partition for a consume request.
+     *
+     * @param token  the token of the request
+     * @return  whether booked, false if the partition is in use
+     */
+    public boolean bookUsedToken(long token) {
+        return usedToken.compareAndSet(TBaseConstants.META_VALUE_UNDEFINED, token);
+    }
+
+    /**
+     * Release the partition held by the consume request.
+     *
+     * @param token  the token of the request
+     * @return  whether released, false if the partition is not held by the request
+     */
+    public boolean releaseUsedToken(long token) {
+        return token != TBaseConstants.META_VALUE_UNDEFINED
+                && usedToken.compareAndSet(token, TBaseConstants.META_VALUE_UNDEFINED);
+    }
+
+    public long clearUsedToken() {
+        return usedToken.getAndSet(TBaseConstants.META_VALUE_UNDEFINED);
+    }
+
     public void setPullTempData(int reqProcType, int errCode,
             boolean isEscLimit, int msgSize,
             long limitDlt, long curDataDlt,
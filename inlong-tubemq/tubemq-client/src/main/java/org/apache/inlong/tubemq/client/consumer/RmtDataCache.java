@@ -55,6 +55,12 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Remote data cache.
+ *
+ * The select status and the in-use token of each partition are kept as atomic fields
+ * of its PartitionExt, and the ready queue holds the PartitionExt objects, so selecting
+ * and releasing a partition are a few CAS operations without scanning the ready queue.
+ * The entries of the partitions taken out of the ready queue by other ways are left
+ * in the queue, and skipped when polled.
  */
 public class RmtDataCache implements Closeable {
 
@@ -102,14 +108,14 @@ public class RmtDataCache implements Closeable {
     private final AtomicInteger waitCont = new AtomicInteger(0);
     private final ConcurrentHashMap<String, Timeout> timeouts =
             new ConcurrentHashMap<>();
-    private final ConcurrentLinkedQueue<String> indexPartition =
-            new ConcurrentLinkedQueue<String>();
+    private final ConcurrentLinkedQueue<PartitionExt> readyPartitions =
+            new ConcurrentLinkedQueue<>();
+    private final AtomicInteger readyPartCnt = new AtomicInteger(0);
+    private final AtomicInteger inUsePartCnt = new AtomicInteger(0);
     private volatile long lstReportTime = 0;
     private final AtomicLong partMapChgTime = new AtomicLong(0);
     private final ConcurrentHashMap<String /* index */, PartitionExt> partitionMap =
             new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String /* index */, Long> partitionUsedMap =
-            new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String /* index */, ConsumeOffsetInfo> partitionOffsetMap =
             new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String /* index */, Long> partitionFrozenMap =
@@ -666,12 +672,12 @@ public class RmtDataCache implements Closeable {
                     TErrCodeConstants.NO_PARTITION_ASSIGNED,
                     "No partition info in local, please wait and try later");
         }
-        if (indexPartition.isEmpty()) {
+        if (readyPartCnt.get() <= 0) {
             if (!timeouts.isEmpty()) {
                 return new PartitionSelectResult(false,
                         TErrCodeConstants.ALL_PARTITION_WAITING,
                         "All partition in waiting, retry later!");
-            } else if (!partitionUsedMap.isEmpty()) {
+            } else if (inUsePartCnt.get() > 0) {
                 return new PartitionSelectResult(false,
                         TErrCodeConstants.ALL_PARTITION_INUSE,
                         "No idle partition to consume, please wait and try later");
@@ -708,13 +714,13 @@ public class RmtDataCache implements Closeable {
                         TErrCodeConstants.NO_PARTITION_ASSIGNED,
                         "No partition info in local, please wait and try later");
             }
-            String key = indexPartition.poll();
-            if (key == null) {
+            PartitionExt partitionExt = pollReadyPartition();
+            if (partitionExt == null) {
                 if (hasPartitionWait()) {
                     return new PartitionSelectResult(false,
                             TErrCodeConstants.ALL_PARTITION_WAITING,
                             "All partition in waiting, retry later!");
-                } else if (!partitionUsedMap.isEmpty()) {
+                } else if (inUsePartCnt.get() > 0) {
                     return new PartitionSelectResult(false,
                             TErrCodeConstants.ALL_PARTITION_INUSE,
                             "No idle partition to consume, please wait and try later");
@@ -724,15 +730,8 @@ public class RmtDataCache implements Closeable {
                             "All partition are frozen to consume, please unfreeze partition(s) or wait");
                 }
             }
-            PartitionExt partitionExt = partitionMap.get(key);
-            if (partitionExt == null) {
-                return new PartitionSelectResult(false,
-                        TErrCodeConstants.BAD_REQUEST,
-                        "No valid partition to consume, retry later 1");
-            }
             long curTime = System.currentTimeMillis();
-            Long newTime = partitionUsedMap.putIfAbsent(key, curTime);
-            if (newTime != null) {
+            if (!bookPartitionInUse(partitionExt, curTime)) {
                 return new PartitionSelectResult(false,
                         TErrCodeConstants.BAD_REQUEST,
                         "No valid partition to consume, retry later 2");
@@ -775,12 +774,12 @@ public class RmtDataCache implements Closeable {
                 return null;
             }
             int cycleCnt = 0;
-            String key = null;
+            PartitionExt partitionExt = null;
             do {
-                if (!indexPartition.isEmpty()) {
+                if (readyPartCnt.get() > 0) {
                     // If there are idle partitions, poll
-                    key = indexPartition.poll();
-                    if (key != null) {
+                    partitionExt = pollReadyPartition();
+                    if (partitionExt != null) {
                         break;
                     }
                 }
@@ -790,16 +789,11 @@ public class RmtDataCache implements Closeable {
                 ThreadUtils.sleep(300);
                 // if no idle partitions to get, wait and cycle 500 times
             } while (cycleCnt++ < 500);
-            if (key == null) {
-                return null;
-            }
-            PartitionExt partitionExt = partitionMap.get(key);
             if (partitionExt == null) {
                 return null;
             }
             long curTime = System.currentTimeMillis();
-            Long newTime = partitionUsedMap.putIfAbsent(key, curTime);
-            if (newTime != null) {
+            if (!bookPartitionInUse(partitionExt, curTime)) {
                 return null;
             }
             return new PartitionSelectResult(partitionExt,
@@ -811,13 +805,51 @@ public class RmtDataCache implements Closeable {
         }
     }
 
+    /**
+     * Select the idle partitions on the given broker without waiting, used to
+     * fetch several partitions of a broker by one request.
+     *
+     * @param brokerInfo   the broker of the partitions
+     * @param maxCount     the max count of the partitions to select
+     * @return the selected partitions, empty if no idle partition on the broker
+     */
+    public List<PartitionSelectResult> pushSelectBrokerParts(BrokerInfo brokerInfo, int maxCount) {
+        List<PartitionSelectResult> selectResults = new ArrayList<>();
+        if (maxCount <= 0 || this.isClosed.get() || isRebProcessing()) {
+            return selectResults;
+        }
+        ConcurrentLinkedQueue<Partition> brokerPartQue =
+                brokerPartitionConMap.get(brokerInfo);
+        if (brokerPartQue == null) {
+            return selectResults;
+        }
+        waitCont.incrementAndGet();
+        try {
+            for (Partition partition : brokerPartQue) {
+                PartitionExt partitionExt = partitionMap.get(partition.getPartitionKey());
+                // only take the partitions waiting in the ready queue
+                if (partitionExt == null || !takeReadyPartition(partitionExt)) {
+                    continue;
+                }
+                long curTime = System.currentTimeMillis();
+                if (!bookPartitionInUse(partitionExt, curTime)) {
+                    continue;
+                }
+                selectResults.add(new PartitionSelectResult(partitionExt,
+                        curTime, partitionExt.getAndResetLastPackConsumed()));
+                if (selectResults.size() >= maxCount) {
+                    break;
+                }
+            }
+        } finally {
+            waitCont.decrementAndGet();
+        }
+        return selectResults;
+    }
+
     protected boolean isPartitionInUse(String partitionKey, long usedToken) {
         PartitionExt partitionExt = partitionMap.get(partitionKey);
-        if (partitionExt != null) {
-            Long curToken = partitionUsedMap.get(partitionKey);
-            return curToken != null && curToken == usedToken;
-        }
-        return false;
+        return partitionExt != null && partitionExt.getUsedToken() == usedToken;
     }
 
     public boolean isPartitionInUse(String partitionKey) {
@@ -863,17 +895,10 @@ public class RmtDataCache implements Closeable {
 
     protected void errReqRelease(String partitionKey, long usedToken, boolean isLastPackConsumed) {
         PartitionExt partitionExt = partitionMap.get(partitionKey);
-        if (partitionExt != null) {
-            if (!indexPartition.contains(partitionKey) && !isTimeWait(partitionKey)) {
-                Long oldUsedToken = partitionUsedMap.get(partitionKey);
-                if (oldUsedToken != null && oldUsedToken == usedToken) {
-                    oldUsedToken = partitionUsedMap.remove(partitionKey);
-                    if (oldUsedToken != null) {
-                        partitionExt.setLastPackConsumed(isLastPackConsumed);
-                        releaseIdlePartition(partitionKey);
-                    }
-                }
-            }
+        if (partitionExt != null
+                && relPartitionInUse(partitionExt, usedToken)) {
+            partitionExt.setLastPackConsumed(isLastPackConsumed);
+            releaseIdlePartition(partitionExt);
         }
     }
 
@@ -882,19 +907,14 @@ public class RmtDataCache implements Closeable {
             boolean isFilterConsume, long currOffset,
             long maxOffset) {
         PartitionExt partitionExt = this.partitionMap.get(partitionKey);
-        if (partitionExt != null) {
-            if (!indexPartition.contains(partitionKey) && !isTimeWait(partitionKey)) {
-                Long oldUsedToken = partitionUsedMap.get(partitionKey);
-                if (oldUsedToken != null && oldUsedToken == usedToken) {
-                    updateOffsetCache(partitionKey, currOffset, maxOffset);
-                    oldUsedToken = partitionUsedMap.remove(partitionKey);
-                    if (oldUsedToken != null) {
-                        partitionExt.setLastPackConsumed(isLastPackConsumed);
-                        long waitDlt =
-                                partitionExt.procConsumeResult(isFilterConsume);
-                        releaseIdlePartition(waitDlt, partitionKey);
-                    }
-                }
+        if (partitionExt != null
+                && partitionExt.getUsedToken() == usedToken) {
+            updateOffsetCache(partitionKey, currOffset, maxOffset);
+            if (relPartitionInUse(partitionExt, usedToken)) {
+                partitionExt.setLastPackConsumed(isLastPackConsumed);
+                long waitDlt =
+                        partitionExt.procConsumeResult(isFilterConsume);
+                releaseIdlePartition(waitDlt, partitionExt);
             }
         }
     }
@@ -922,20 +942,15 @@ public class RmtDataCache implements Closeable {
             boolean isEscLimit, int msgSize, long limitDlt,
             boolean isFilterConsume, long curDataDlt, long maxOffset) {
         PartitionExt partitionExt = this.partitionMap.get(partitionKey);
-        if (partitionExt != null) {
-            if (!indexPartition.contains(partitionKey) && !isTimeWait(partitionKey)) {
-                Long oldUsedToken = partitionUsedMap.get(partitionKey);
-                if (oldUsedToken != null && oldUsedToken == usedToken) {
-                    updateOffsetCache(partitionKey, currOffset, maxOffset);
-                    oldUsedToken = partitionUsedMap.remove(partitionKey);
-                    if (oldUsedToken != null) {
-                        partitionExt.setLastPackConsumed(isLastPackConsumed);
-                        long waitDlt =
-                                partitionExt.procConsumeResult(isFilterConsume, reqProcType,
-                                        errCode, msgSize, isEscLimit, limitDlt, curDataDlt, false);
-                        releaseIdlePartition(waitDlt, partitionKey);
-                    }
-                }
+        if (partitionExt != null
+                && partitionExt.getUsedToken() == usedToken) {
+            updateOffsetCache(partitionKey, currOffset, maxOffset);
+            if (relPartitionInUse(partitionExt, usedToken)) {
+                partitionExt.setLastPackConsumed(isLastPackConsumed);
+                long waitDlt =
+                        partitionExt.procConsumeResult(isFilterConsume, reqProcType,
+                                errCode, msgSize, isEscLimit, limitDlt, curDataDlt, false);
+                releaseIdlePartition(waitDlt, partitionExt);
             }
         }
     }
@@ -947,37 +962,100 @@ public class RmtDataCache implements Closeable {
         }
     }
 
-    private void releaseIdlePartition(long waitDlt, String partitionKey) {
+    private void releaseIdlePartition(long waitDlt, PartitionExt partitionExt) {
+        String partitionKey = partitionExt.getPartitionKey();
         Long frozenTime = partitionFrozenMap.get(partitionKey);
         if (frozenTime == null) {
             if (waitDlt > 10) {
-                TimeoutTask timeoutTask = new TimeoutTask(partitionKey);
-                timeouts.put(partitionKey, timer.newTimeout(
-                        timeoutTask, waitDlt, TimeUnit.MILLISECONDS));
+                if (partitionExt.compareAndSetSelectStatus(
+                        PartitionExt.SELECT_STATUS_IDLE, PartitionExt.SELECT_STATUS_TIME_WAIT)) {
+                    TimeoutTask timeoutTask = new TimeoutTask(partitionKey);
+                    timeouts.put(partitionKey, timer.newTimeout(
+                            timeoutTask, waitDlt, TimeUnit.MILLISECONDS));
+                }
             } else {
-                releaseIdlePartition(partitionKey);
+                releaseIdlePartition(partitionExt);
             }
         }
     }
 
     private void releaseIdlePartition(String partitionKey) {
-        Long frozenTime = partitionFrozenMap.get(partitionKey);
         PartitionExt partitionExt = partitionMap.get(partitionKey);
-        Timeout timeout = timeouts.get(partitionKey);
-        Long usedTime = partitionUsedMap.get(partitionKey);
-        if (partitionExt == null
-                || frozenTime != null
-                || timeout != null
-                || usedTime != null) {
+        if (partitionExt != null) {
+            releaseIdlePartition(partitionExt);
+        }
+    }
+
+    private void releaseIdlePartition(PartitionExt partitionExt) {
+        String partitionKey = partitionExt.getPartitionKey();
+        if (partitionExt.isInUse()
+                || partitionFrozenMap.get(partitionKey) != null
+                || partitionMap.get(partitionKey) != partitionExt) {
             return;
         }
-        if (!indexPartition.contains(partitionKey)) {
-            try {
-                indexPartition.offer(partitionKey);
-            } catch (Throwable e) {
-                //
+        // queued only once, the time waiting partitions are not idle
+        if (partitionExt.compareAndSetSelectStatus(
+                PartitionExt.SELECT_STATUS_IDLE, PartitionExt.SELECT_STATUS_READY)) {
+            readyPartCnt.incrementAndGet();
+            readyPartitions.offer(partitionExt);
+        }
+    }
+
+    /**
+     * Release the partition whose delay timer is expired.
+     *
+     * @param partitionKey  the partition key
+     */
+    private void releaseWaitPartition(String partitionKey) {
+        PartitionExt partitionExt = partitionMap.get(partitionKey);
+        if (partitionExt != null
+                && partitionExt.compareAndSetSelectStatus(
+                        PartitionExt.SELECT_STATUS_TIME_WAIT, PartitionExt.SELECT_STATUS_IDLE)) {
+            releaseIdlePartition(partitionExt);
+        }
+    }
+
+    private PartitionExt pollReadyPartition() {
+        PartitionExt partitionExt;
+        while ((partitionExt = readyPartitions.poll()) != null) {
+            // skip the entries of the partitions taken out or removed
+            if (takeReadyPartition(partitionExt)
+                    && partitionMap.get(partitionExt.getPartitionKey()) == partitionExt) {
+                return partitionExt;
             }
         }
+        return null;
+    }
+
+    private boolean takeReadyPartition(PartitionExt partitionExt) {
+        if (partitionExt.compareAndSetSelectStatus(
+                PartitionExt.SELECT_STATUS_READY, PartitionExt.SELECT_STATUS_IDLE)) {
+            readyPartCnt.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean bookPartitionInUse(PartitionExt partitionExt, long usedToken) {
+        if (partitionExt.bookUsedToken(usedToken)) {
+            inUsePartCnt.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean relPartitionInUse(PartitionExt partitionExt, long usedToken) {
+        if (partitionExt.releaseUsedToken(usedToken)) {
+            inUsePartCnt.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    private void clearPartitionInUse(PartitionExt partitionExt) {
+        if (partitionExt.clearUsedToken() != TBaseConstants.META_VALUE_UNDEFINED) {
+            inUsePartCnt.decrementAndGet();
+        }
     }
 
     /**
@@ -1075,8 +1153,8 @@ public class RmtDataCache implements Closeable {
                             rmvPartitionFromMap(partition.getPartitionKey());
                     if (partitionExt != null) {
                         lastPackConsumed = partitionExt.isLastPackConsumed();
-                        if (!cancelTimeTask(partition.getPartitionKey())
-                                && !indexPartition.remove(partition.getPartitionKey())) {
+                        if (!cancelTimeTask(partitionExt)
+                                && !takeReadyPartition(partitionExt)) {
                             logger.info(sBuilder.append("[Process Interrupt] Partition : ")
                                     .append(partition.toString())
                                     .append(", data in processing, canceled").toString());
@@ -1104,7 +1182,7 @@ public class RmtDataCache implements Closeable {
                             }
                         }
                         partitionOffsetMap.remove(partition.getPartitionKey());
-                        partitionUsedMap.remove(partition.getPartitionKey());
+                        clearPartitionInUse(partitionExt);
                         PartitionSelectResult partitionRet =
                                 new PartitionSelectResult(true, TErrCodeConstants.SUCCESS,
                                         "Ok!", partition, 0, lastPackConsumed);
@@ -1147,8 +1225,8 @@ public class RmtDataCache implements Closeable {
                 return result.isSuccess();
             }
             lastPackConsumed = partitionExt.isLastPackConsumed();
-            if (!cancelTimeTask(partitionKey)
-                    && !indexPartition.remove(partitionKey)) {
+            if (!cancelTimeTask(partitionExt)
+                    && !takeReadyPartition(partitionExt)) {
                 logger.info(sBuffer.append("[Process Interrupt] Partition : ")
                         .append(partitionExt.toString())
                         .append(", data in processing, canceled").toString());
@@ -1176,7 +1254,7 @@ public class RmtDataCache implements Closeable {
                 }
             }
             partitionOffsetMap.remove(partitionKey);
-            partitionUsedMap.remove(partitionKey);
+            clearPartitionInUse(partitionExt);
             partitionExt.setLastPackConsumed(lastPackConsumed);
             result.setSuccResult(partitionExt);
             return result.isSuccess();
@@ -1191,10 +1269,12 @@ public class RmtDataCache implements Closeable {
      * @param partition partition to be removed
      */
     public void removePartition(Partition partition) {
-        rmvPartitionFromMap(partition.getPartitionKey());
-        cancelTimeTask(partition.getPartitionKey());
-        indexPartition.remove(partition.getPartitionKey());
-        partitionUsedMap.remove(partition.getPartitionKey());
+        PartitionExt partitionExt = rmvPartitionFromMap(partition.getPartitionKey());
+        if (partitionExt != null) {
+            cancelTimeTask(partitionExt);
+            takeReadyPartition(partitionExt);
+            clearPartitionInUse(partitionExt);
+        }
         partitionOffsetMap.remove(partition.getPartitionKey());
         ConcurrentLinkedQueue<Partition> oldPartitionList =
                 topicPartitionConMap.get(partition.getTopic());
@@ -1340,19 +1420,15 @@ public class RmtDataCache implements Closeable {
     public void resumeTimeoutConsumePartitions(boolean isPullConsume, long allowedPeriodTimes) {
         if (isPullConsume) {
             // For pull consume, do timeout check on partitions pulled without confirm
-            if (!partitionUsedMap.isEmpty()) {
-                List<String> partKeys = new ArrayList<>(partitionUsedMap.keySet());
-                for (String keyId : partKeys) {
-                    Long oldTime = partitionUsedMap.get(keyId);
-                    if (oldTime != null && System.currentTimeMillis() - oldTime > allowedPeriodTimes) {
-                        oldTime = partitionUsedMap.remove(keyId);
-                        if (oldTime != null) {
-                            PartitionExt partitionExt = partitionMap.get(keyId);
-                            if (partitionExt != null) {
-                                partitionExt.setLastPackConsumed(false);
-                                releaseIdlePartition(keyId);
-                            }
-                        }
+            if (inUsePartCnt.get() > 0) {
+                for (PartitionExt partitionExt : partitionMap.values()) {
+                    // the used token is the select time
+                    long oldTime = partitionExt.getUsedToken();
+                    if (oldTime != TBaseConstants.META_VALUE_UNDEFINED
+                            && System.currentTimeMillis() - oldTime > allowedPeriodTimes
+                            && relPartitionInUse(partitionExt, oldTime)) {
+                        partitionExt.setLastPackConsumed(false);
+                        releaseIdlePartition(partitionExt);
                     }
                 }
             }
@@ -1366,7 +1442,7 @@ public class RmtDataCache implements Closeable {
                 if (timeout1 != null && timeout1.isExpired()) {
                     timeout1 = timeouts.remove(keyId);
                     if (timeout1 != null) {
-                        releaseIdlePartition(keyId);
+                        releaseWaitPartition(keyId);
                     }
                 }
             }
@@ -1435,7 +1511,8 @@ public class RmtDataCache implements Closeable {
         do {
             needWait = false;
             for (String partitionKey : partitionKeys) {
-                if (partitionUsedMap.get(partitionKey) != null) {
+                PartitionExt partitionExt = partitionMap.get(partitionKey);
+                if (partitionExt != null && partitionExt.isInUse()) {
                     needWait = true;
                     break;
                 }
@@ -1509,12 +1586,12 @@ public class RmtDataCache implements Closeable {
             }
             updateOffsetCache(partition.getPartitionKey(),
                     entry.getValue().getCurrOffset(), entry.getValue().getMaxOffset());
-            addPartitionToMap(partition.getPartitionKey(),
+            PartitionExt partitionExt =
                     new PartitionExt(this.groupFlowCtrlRuleHandler,
                             this.defFlowCtrlRuleHandler, partition.getBroker(),
-                            partition.getTopic(), partition.getPartitionId()));
-            partitionUsedMap.remove(partition.getPartitionKey());
-            releaseIdlePartition(partition.getPartitionKey());
+                            partition.getTopic(), partition.getPartitionId());
+            addPartitionToMap(partition.getPartitionKey(), partitionExt);
+            releaseIdlePartition(partitionExt);
         }
     }
 
@@ -1555,19 +1632,17 @@ public class RmtDataCache implements Closeable {
         this.dataProcessSync.countDown();
     }
 
-    private boolean cancelTimeTask(String indexId) {
-        Timeout timeout = timeouts.remove(indexId);
+    private boolean cancelTimeTask(PartitionExt partitionExt) {
+        Timeout timeout = timeouts.remove(partitionExt.getPartitionKey());
         if (timeout != null) {
             timeout.cancel();
+            partitionExt.compareAndSetSelectStatus(
+                    PartitionExt.SELECT_STATUS_TIME_WAIT, PartitionExt.SELECT_STATUS_IDLE);
             return true;
         }
         return false;
     }
 
-    private boolean isTimeWait(String indexId) {
-        return (timeouts.get(indexId) != null);
-    }
-
     private boolean hasPartitionWait() {
         return !this.timeouts.isEmpty();
     }
@@ -1590,7 +1665,7 @@ public class RmtDataCache implements Closeable {
         public void run(Timeout timeout) throws Exception {
             Timeout timeout1 = timeouts.remove(indexId);
             if (timeout1 != null) {
-                releaseIdlePartition(indexId);
+                releaseWaitPartition(indexId);
             }
         }
     }
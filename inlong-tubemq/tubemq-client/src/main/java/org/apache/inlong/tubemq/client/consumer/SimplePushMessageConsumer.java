@@ -180,10 +180,22 @@ public class SimplePushMessageConsumer implements PushMessageConsumer {
         final long startTime = System.currentTimeMillis();
         FetchContext taskContext =
                 baseConsumer.fetchMessage(partSelectResult, sBuilder);
+        processFetchResult(taskContext, startTime, sBuilder);
+    }
+
+    /**
+     * Notify the listener of the fetched messages, then release the partition.
+     *
+     * @param taskContext   the fetch result of the partition
+     * @param startTime     the start time of the process
+     * @param sBuilder      the string buffer
+     */
+    protected void processFetchResult(FetchContext taskContext,
+            long startTime, final StringBuilder sBuilder) {
         if (!taskContext.isSuccess()) {
             if (logger.isDebugEnabled()) {
                 logger.debug(sBuilder.append("Fetch message error: partition:")
-                        .append(partSelectResult.getPartition().toString()).append(" error is ")
+                        .append(taskContext.getPartition().toString()).append(" error is ")
                         .append(taskContext.getErrMsg()).toString());
                 sBuilder.delete(0, sBuilder.length());
             }
@@ -222,7 +234,7 @@ public class SimplePushMessageConsumer implements PushMessageConsumer {
             logger.info(sBuilder.append("Consuming Partition; current processing thread ")
                     .append(Thread.currentThread().getName())
                     .append("-->Process[")
-                    .append(partSelectResult.getPartition().toString())
+                    .append(taskContext.getPartition().toString())
                     .append("] cost:").append(cost).append(" Ms").toString());
             sBuilder.delete(0, sBuilder.length());
         }
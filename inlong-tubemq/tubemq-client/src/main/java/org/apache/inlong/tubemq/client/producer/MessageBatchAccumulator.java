@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.client.producer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.apache.inlong.tubemq.corebase.Message;
+import org.apache.inlong.tubemq.corebase.cluster.Partition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Accumulate the asynchronously sent messages by partition, the batch of a partition
+ * is sent when its size reaches the max batch bytes or its linger time expires.
+ */
+public class MessageBatchAccumulator {
+
+    private static final Logger logger =
+            LoggerFactory.getLogger(MessageBatchAccumulator.class);
+    private final SimpleMessageProducer producer;
+    private final long lingerMs;
+    private final int maxBatchBytes;
+    // partition key, which contains the broker id, to the batch under accumulation
+    private final ConcurrentHashMap<String, BatchHolder> batchHolders =
+            new ConcurrentHashMap<>();
+    private final ScheduledExecutorService lingerService;
+
+    public MessageBatchAccumulator(final SimpleMessageProducer producer,
+            final String producerId, long lingerMs, int maxBatchBytes) {
+        this.producer = producer;
+        this.lingerMs = lingerMs;
+        this.maxBatchBytes = maxBatchBytes;
+        this.lingerService =
+                Executors.newScheduledThreadPool(1, new ThreadFactory() {
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, new StringBuilder(512)
+                                .append("Producer-Batch-Linger-Thread-")
+                                .append(producerId).toString());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        long checkPeriodMs = Math.max(1L, lingerMs / 2);
+        this.lingerService.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    sendExpiredBatches(false);
+                } catch (Throwable e) {
+                    logger.warn("[Batch Accumulator] send linger expired batches failure", e);
+                }
+            }
+        }, checkPeriodMs, checkPeriodMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Add the message into the batch of its partition, send the batch once it is full.
+     *
+     * @param partition     the partition selected for the message
+     * @param message       the message
+     * @param msgData       the encoded message data
+     * @param callback      the sent callback of the message
+     */
+    public void append(Partition partition, Message message,
+            byte[] msgData, MessageSentCallback callback) {
+        BatchHolder holder = batchHolders.get(partition.getPartitionKey());
+        if (holder == null) {
+            BatchHolder newHolder = new BatchHolder();
+            holder = batchHolders.putIfAbsent(partition.getPartitionKey(), newHolder);
+            if (holder == null) {
+                holder = newHolder;
+            }
+        }
+        MessageBatch readyBatch = holder.append(partition, message, msgData, callback);
+        if (readyBatch != null) {
+            producer.sendMessageBatch(readyBatch);
+        }
+    }
+
+    /**
+     * Send all the accumulated batches and stop the linger checking.
+     */
+    public void close() {
+        this.lingerService.shutdownNow();
+        sendExpiredBatches(true);
+    }
+
+    private void sendExpiredBatches(boolean isForce) {
+        long curTime = System.currentTimeMillis();
+        for (BatchHolder holder : batchHolders.values()) {
+            MessageBatch expiredBatch = holder.takeExpired(curTime, isForce);
+            if (expiredBatch != null) {
+                producer.sendMessageBatch(expiredBatch);
+            }
+        }
+    }
+
+    private class BatchHolder {
+
+        private MessageBatch curBatch = null;
+
+        public synchronized MessageBatch append(Partition partition, Message message,
+                byte[] msgData, MessageSentCallback callback) {
+            if (curBatch == null) {
+                curBatch = new MessageBatch(partition, System.currentTimeMillis());
+            }
+            curBatch.add(message, msgData, callback);
+            if (curBatch.batchBytes < maxBatchBytes) {
+                return null;
+            }
+            MessageBatch readyBatch = curBatch;
+            curBatch = null;
+            return readyBatch;
+        }
+
+        public synchronized MessageBatch takeExpired(long curTime, boolean isForce) {
+            if (curBatch == null
+                    || (!isForce && curTime - curBatch.createTime < lingerMs)) {
+                return null;
+            }
+            MessageBatch expiredBatch = curBatch;
+            curBatch = null;
+            return expiredBatch;
+        }
+    }
+
+    public static class MessageBatch {
+
+        private final Partition partition;
+        private final long createTime;
+        private final List<Message> messages = new ArrayList<>();
+        private final List<byte[]> msgDatas = new ArrayList<>();
+        private final List<MessageSentCallback> callbacks = new ArrayList<>();
+        private int batchBytes = 0;
+
+        public MessageBatch(Partition partition, long createTime) {
+            this.partition = partition;
+            this.createTime = createTime;
+        }
+
+        public void add(Message message, byte[] msgData, MessageSentCallback callback) {
+            this.messages.add(message);
+            this.msgDatas.add(msgData);
+            this.callbacks.add(callback);
+            this.batchBytes += msgData.length;
+        }
+
+        public Partition getPartition() {
+            return partition;
+        }
+
+        public List<Message> getMessages() {
+            return messages;
+        }
+
+        public List<byte[]> getMsgDatas() {
+            return msgDatas;
+        }
+
+        public List<MessageSentCallback> getCallbacks() {
+            return callbacks;
+        }
+
+        public int getBatchBytes() {
+            return batchBytes;
+        }
+    }
+}
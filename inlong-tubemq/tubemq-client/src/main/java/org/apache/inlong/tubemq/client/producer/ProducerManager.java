@@ -368,6 +368,16 @@ public class ProducerManager {
      */
     public ClientBroker.SendMessageRequestP2B.Builder setAuthorizedTokenInfo(
             ClientBroker.SendMessageRequestP2B.Builder builder) {
+        builder.setAuthInfo(genBrokerAuthorizedInfo());
+        return builder;
+    }
+
+    /**
+     * Build the authorized information carried in the send requests to broker
+     *
+     * @return    the authorized information
+     */
+    public ClientBroker.AuthorizedInfo genBrokerAuthorizedInfo() {
         ClientBroker.AuthorizedInfo.Builder authInfoBuilder =
                 ClientBroker.AuthorizedInfo.newBuilder();
         authInfoBuilder.setVisitAuthorizedToken(this.visitToken.get());
@@ -375,8 +385,7 @@ public class ProducerManager {
         if (TStringUtils.isNotBlank(authAuthorizedToken)) {
             authInfoBuilder.setAuthAuthorizedToken(authAuthorizedToken);
         }
-        builder.setAuthInfo(authInfoBuilder.build());
-        return builder;
+        return authInfoBuilder.build();
     }
 
     /**
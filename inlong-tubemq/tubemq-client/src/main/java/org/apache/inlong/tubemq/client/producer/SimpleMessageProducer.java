@@ -18,6 +18,7 @@
 package org.apache.inlong.tubemq.client.producer;
 
 import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import java.nio.ByteBuffer;
 import java.util.HashSet;
 import java.util.List;
@@ -65,6 +66,8 @@ public class SimpleMessageProducer implements MessageProducer {
     private final DefaultBrokerRcvQltyStats brokerRcvQltyStats;
     private final RpcConfig rpcConfig = new RpcConfig();
     private final AtomicBoolean isShutDown = new AtomicBoolean(false);
+    // accumulate the asynchronously sent messages when batch sending is enabled
+    private final MessageBatchAccumulator batchAccumulator;
 
     /**
      * Initial a producer object
@@ -102,6 +105,13 @@ public class SimpleMessageProducer implements MessageProducer {
                 tubeClientConfig.getRpcNettyWorkMemorySize());
         this.rpcConfig.put(RpcConstants.CALLBACK_WORKER_COUNT,
                 tubeClientConfig.getRpcRspCallBackThreadCnt());
+        if (tubeClientConfig.isEnableBatchSend()) {
+            this.batchAccumulator = new MessageBatchAccumulator(this,
+                    this.producerManager.getProducerId(),
+                    tubeClientConfig.getBatchLingerMs(), tubeClientConfig.getBatchMaxBytes());
+        } else {
+            this.batchAccumulator = null;
+        }
     }
 
     /**
@@ -198,6 +208,9 @@ public class SimpleMessageProducer implements MessageProducer {
             return;
         }
         if (this.isShutDown.compareAndSet(false, true)) {
+            if (this.batchAccumulator != null) {
+                this.batchAccumulator.close();
+            }
             this.producerManager.removeTopic(publishTopicMap.keySet());
             this.publishTopicMap.clear();
             this.sessionFactory.removeClient(this);
@@ -244,6 +257,10 @@ public class SimpleMessageProducer implements MessageProducer {
         checkMessageAndStatus(message);
         final Partition partition =
                 this.selectPartition(message, BrokerWriteService.AsyncService.class);
+        if (this.batchAccumulator != null) {
+            this.batchAccumulator.append(partition, message, encodePayload(message), cb);
+            return;
+        }
         final int brokerId = partition.getBrokerId();
         long startTime = System.currentTimeMillis();
         try {
@@ -295,6 +312,67 @@ public class SimpleMessageProducer implements MessageProducer {
         }
     }
 
+    /**
+     * Send the accumulated messages of a partition by one request.
+     *
+     * @param msgBatch    the message batch
+     */
+    void sendMessageBatch(final MessageBatchAccumulator.MessageBatch msgBatch) {
+        final Partition partition = msgBatch.getPartition();
+        final int brokerId = partition.getBrokerId();
+        final long startTime = System.currentTimeMillis();
+        try {
+            this.brokerRcvQltyStats.addSendStatistic(brokerId);
+            getAsyncBrokerService(partition.getBroker()).sendBatchMessageP2B(
+                    createSendBatchMessageRequest(msgBatch),
+                    AddressUtils.getLocalAddress(), producerConfig.isTlsEnable(),
+                    new Callback() {
+
+                        @Override
+                        public void handleResult(Object result) {
+                            if (!(result instanceof ClientBroker.SendBatchMessageResponseB2P)) {
+                                return;
+                            }
+                            final ClientBroker.SendBatchMessageResponseB2P responseB2P =
+                                    (ClientBroker.SendBatchMessageResponseB2P) result;
+                            partition.resetRetries();
+                            brokerRcvQltyStats.addReceiveStatistic(brokerId,
+                                    responseB2P.getSuccess());
+                            if (!responseB2P.getSuccess()
+                                    && responseB2P.getErrCode() == TErrCodeConstants.SERVICE_UNAVAILABLE) {
+                                rpcServiceFactory.addUnavailableBroker(brokerId);
+                            }
+                            long dltTime = System.currentTimeMillis() - startTime;
+                            for (int i = 0; i < msgBatch.getMessages().size(); i++) {
+                                msgBatch.getCallbacks().get(i).onMessageSent(
+                                        buildBatchMsgSentResult(dltTime, msgBatch, i, responseB2P));
+                            }
+                        }
+
+                        @Override
+                        public void handleError(Throwable error) {
+                            producerManager.getClientMetrics().bookFailRpcCall(
+                                    TErrCodeConstants.UNSPECIFIED_ABNORMAL);
+                            partition.increRetries(1);
+                            brokerRcvQltyStats.addReceiveStatistic(brokerId, false);
+                            for (MessageSentCallback callback : msgBatch.getCallbacks()) {
+                                callback.onException(error);
+                            }
+                        }
+                    });
+            rpcServiceFactory.resetRmtAddrErrCount(partition.getBroker().getBrokerAddr());
+        } catch (final Throwable e) {
+            if (e instanceof LocalConnException) {
+                rpcServiceFactory.addRmtAddrErrCount(partition.getBroker().getBrokerAddr());
+            }
+            partition.increRetries(1);
+            this.brokerRcvQltyStats.addReceiveStatistic(brokerId, false);
+            for (MessageSentCallback callback : msgBatch.getCallbacks()) {
+                callback.onException(e);
+            }
+        }
+    }
+
     private void checkMessageAndStatus(final Message message) throws TubeClientException {
         if (message == null) {
             throw new TubeClientException("Illegal parameter: null message package!");
@@ -348,10 +426,43 @@ public class SimpleMessageProducer implements MessageProducer {
         if (TStringUtils.isNotBlank(message.getMsgTime())) {
             builder.setMsgTime(message.getMsgTime());
         }
+        if (this.producerConfig.isRequireDurableAck()) {
+            builder.setRequireDurable(true);
+        }
         builder = this.producerManager.setAuthorizedTokenInfo(builder);
         return builder.build();
     }
 
+    private ClientBroker.SendBatchMessageRequestP2B createSendBatchMessageRequest(
+            MessageBatchAccumulator.MessageBatch msgBatch) {
+        ClientBroker.SendBatchMessageRequestP2B.Builder builder =
+                ClientBroker.SendBatchMessageRequestP2B.newBuilder();
+        builder.setClientId(this.producerManager.getProducerId());
+        builder.setTopicName(msgBatch.getPartition().getTopic());
+        builder.setPartitionId(msgBatch.getPartition().getPartitionId());
+        builder.setSentAddr(this.producerManager.getProducerAddrId());
+        for (int i = 0; i < msgBatch.getMessages().size(); i++) {
+            Message message = msgBatch.getMessages().get(i);
+            ClientBroker.BatchMessageItem.Builder itemBuilder =
+                    ClientBroker.BatchMessageItem.newBuilder();
+            itemBuilder.setData(UnsafeByteOperations.unsafeWrap(msgBatch.getMsgDatas().get(i)));
+            itemBuilder.setFlag(MessageFlagUtils.getFlag(message));
+            itemBuilder.setCheckSum(-1);
+            if (TStringUtils.isNotBlank(message.getMsgType())) {
+                itemBuilder.setMsgType(message.getMsgType());
+            }
+            if (TStringUtils.isNotBlank(message.getMsgTime())) {
+                itemBuilder.setMsgTime(message.getMsgTime());
+            }
+            builder.addMessages(itemBuilder);
+        }
+        if (this.producerConfig.isRequireDurableAck()) {
+            builder.setRequireDurable(true);
+        }
+        builder.setAuthInfo(this.producerManager.genBrokerAuthorizedInfo());
+        return builder.build();
+    }
+
     private byte[] encodePayload(final Message message) {
         final byte[] payload = message.getData();
         final String attribute = message.getAttribute();
@@ -391,6 +502,26 @@ public class SimpleMessageProducer implements MessageProducer {
         }
     }
 
+    private MessageSentResult buildBatchMsgSentResult(final long dltTime,
+            final MessageBatchAccumulator.MessageBatch msgBatch, final int msgIndex,
+            final ClientBroker.SendBatchMessageResponseB2P response) {
+        final Message message = msgBatch.getMessages().get(msgIndex);
+        final Partition partition = msgBatch.getPartition();
+        if (response.getErrCode() == TErrCodeConstants.SUCCESS
+                && msgIndex < response.getMessageIdsCount()) {
+            producerManager.getClientMetrics().bookSuccSendMsg(dltTime,
+                    message.getTopic(), partition.getPartitionKey(), message.getData().length);
+            return new MessageSentResult(true,
+                    response.getErrCode(), "Ok!",
+                    message, response.getMessageIds(msgIndex), partition,
+                    response.getAppendTime(), response.getAppendOffsets(msgIndex));
+        } else {
+            producerManager.getClientMetrics().bookFailRpcCall(response.getErrCode());
+            return new MessageSentResult(false, response.getErrCode(), response.getErrMsg(),
+                    message, TBaseConstants.META_VALUE_UNDEFINED, partition);
+        }
+    }
+
     private Partition selectPartition(final Message message,
             Class clazz) throws TubeClientException {
         String topic = message.getTopic();
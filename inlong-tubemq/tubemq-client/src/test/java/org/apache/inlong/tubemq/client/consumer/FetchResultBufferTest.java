@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.client.consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import com.google.protobuf.ByteString;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.inlong.tubemq.corebase.Message;
+import org.apache.inlong.tubemq.corebase.cluster.BrokerInfo;
+import org.apache.inlong.tubemq.corebase.cluster.Partition;
+import org.apache.inlong.tubemq.corebase.protobuf.generated.ClientBroker;
+import org.junit.Test;
+
+public class FetchResultBufferTest {
+
+    @Test
+    public void testFetchResultBuffer() throws Exception {
+        BrokerInfo brokerInfo = new BrokerInfo(1, "127.0.0.1", 18080);
+        FetchResultBuffer resultBuffer = new FetchResultBuffer(100);
+        assertTrue(resultBuffer.waitForSpace(10));
+        FetchContext context1 = buildFetchContext(new Partition(brokerInfo, "test", 1), 60);
+        FetchContext context2 = buildFetchContext(new Partition(brokerInfo, "test", 2), 60);
+        resultBuffer.put(context1);
+        assertTrue(resultBuffer.waitForSpace(10));
+        // the in-flight results are accepted over the bound
+        resultBuffer.put(context2);
+        assertEquals(120, resultBuffer.getBufferedBytes());
+        assertEquals(2, resultBuffer.size());
+        assertFalse(resultBuffer.waitForSpace(10));
+        assertSame(context1, resultBuffer.poll(10));
+        resultBuffer.release(context1);
+        assertTrue(resultBuffer.waitForSpace(10));
+        assertSame(context2, resultBuffer.poll());
+        resultBuffer.release(context2);
+        assertEquals(0, resultBuffer.getBufferedBytes());
+        assertTrue(resultBuffer.isEmpty());
+        assertNull(resultBuffer.poll(10));
+    }
+
+    @Test
+    public void testBufferedResponse() throws Exception {
+        BrokerInfo brokerInfo = new BrokerInfo(1, "127.0.0.1", 18080);
+        FetchResultBuffer resultBuffer = new FetchResultBuffer(100);
+        Partition partition = new Partition(brokerInfo, "test", 1);
+        FetchContext taskContext = new FetchContext(
+                new PartitionSelectResult(partition, System.currentTimeMillis(), false));
+        ClientBroker.GetMessageResponseB2C response = ClientBroker.GetMessageResponseB2C.newBuilder()
+                .setSuccess(true).setErrCode(200)
+                .addMessages(buildTransferedMessage(1L, 70))
+                .addMessages(buildTransferedMessage(2L, 50)).build();
+        taskContext.setFetchResponse(response, 10L);
+        // the response left to the consume worker is charged by its payload
+        resultBuffer.put(taskContext);
+        assertEquals(120, resultBuffer.getBufferedBytes());
+        assertFalse(resultBuffer.waitForSpace(10));
+        assertSame(taskContext, resultBuffer.poll(10));
+        assertSame(response, taskContext.takeFetchResponse());
+        assertFalse(taskContext.hasFetchResponse());
+        // released by the charged bytes even if the messages are filtered
+        List<Message> messageList = new ArrayList<>();
+        messageList.add(new Message(partition.getTopic(), new byte[50]));
+        taskContext.setSuccessProcessResult(0L, "", messageList, 0L);
+        resultBuffer.release(taskContext);
+        assertEquals(0, resultBuffer.getBufferedBytes());
+        assertTrue(resultBuffer.waitForSpace(10));
+    }
+
+    private ClientBroker.TransferedMessage buildTransferedMessage(long messageId, int dataSize) {
+        return ClientBroker.TransferedMessage.newBuilder().setMessageId(messageId)
+                .setCheckSum(0).setFlag(0).setPayLoadData(ByteString.copyFrom(new byte[dataSize])).build();
+    }
+
+    private FetchContext buildFetchContext(Partition partition, int dataSize) {
+        FetchContext taskContext = new FetchContext(
+                new PartitionSelectResult(partition, System.currentTimeMillis(), false));
+        List<Message> messageList = new ArrayList<>();
+        messageList.add(new Message(partition.getTopic(), new byte[dataSize / 2]));
+        messageList.add(new Message(partition.getTopic(), new byte[dataSize - dataSize / 2]));
+        taskContext.setSuccessProcessResult(0L, "", messageList, 0L);
+        return taskContext;
+    }
+}
@@ -18,6 +18,7 @@
 package org.apache.inlong.tubemq.client.consumer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -26,6 +27,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import org.apache.inlong.tubemq.client.config.ConsumerConfig;
+import org.apache.inlong.tubemq.corebase.TErrCodeConstants;
 import org.apache.inlong.tubemq.corebase.cluster.BrokerInfo;
 import org.apache.inlong.tubemq.corebase.cluster.Partition;
 import org.junit.Test;
@@ -74,4 +76,46 @@ public class RmtDataCacheTest {
         cache.succRspRelease("1:test:2", "test", 1000, true, true, 1000, 2000);
         cache.close();
     }
+
+    @Test
+    public void testSelectAndRelease() {
+        List<Partition> partitions = new ArrayList<>();
+        BrokerInfo brokerInfo = new BrokerInfo(1, "127.0.0.1", 18080);
+        for (int i = 0; i < 3; i++) {
+            partitions.add(new Partition(brokerInfo, "test", i));
+        }
+        ConsumerConfig consumerConfig = new ConsumerConfig("127.0.0.1:8069", "testGroup");
+        RmtDataCache cache = new RmtDataCache(consumerConfig, partitions);
+        List<PartitionSelectResult> selectResults = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            PartitionSelectResult selectResult = cache.pullSelect();
+            assertTrue(selectResult.isSuccess());
+            assertTrue(cache.isPartitionInUse(selectResult.getPartition().getPartitionKey(),
+                    selectResult.getUsedToken()));
+            selectResults.add(selectResult);
+        }
+        PartitionSelectResult selectResult = cache.pullSelect();
+        assertFalse(selectResult.isSuccess());
+        assertEquals(TErrCodeConstants.ALL_PARTITION_INUSE, selectResult.getErrCode());
+        // the release with a stale token is ignored
+        PartitionSelectResult firstResult = selectResults.get(0);
+        String firstKey = firstResult.getPartition().getPartitionKey();
+        cache.errReqRelease(firstKey, firstResult.getUsedToken() - 1, false);
+        assertFalse(cache.pullSelect().isSuccess());
+        cache.errReqRelease(firstKey, firstResult.getUsedToken(), true);
+        cache.errReqRelease(firstKey, firstResult.getUsedToken(), true);
+        selectResult = cache.pullSelect();
+        assertTrue(selectResult.isSuccess());
+        assertEquals(firstKey, selectResult.getPartition().getPartitionKey());
+        assertTrue(selectResult.isLastPackConsumed());
+        assertFalse(cache.pullSelect().isSuccess());
+        // the partitions of a broker are taken together
+        for (int i = 1; i < 3; i++) {
+            cache.errReqRelease(selectResults.get(i).getPartition().getPartitionKey(),
+                    selectResults.get(i).getUsedToken(), false);
+        }
+        assertEquals(2, cache.pushSelectBrokerParts(brokerInfo, 8).size());
+        assertEquals(0, cache.pushSelectBrokerParts(brokerInfo, 8).size());
+        cache.close();
+    }
 }
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.client.consumer.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.inlong.tubemq.client.config.ConsumerConfig;
+import org.apache.inlong.tubemq.client.consumer.PartitionSelectResult;
+import org.apache.inlong.tubemq.client.consumer.RmtDataCache;
+import org.apache.inlong.tubemq.corebase.TBaseConstants;
+import org.apache.inlong.tubemq.corebase.TErrCodeConstants;
+import org.apache.inlong.tubemq.corebase.cluster.BrokerInfo;
+import org.apache.inlong.tubemq.corebase.cluster.Partition;
+
+/**
+ * RmtDataCacheSelectBenchmark, measure the throughput of selecting and releasing
+ * the partitions of the remote data cache by many threads, as the fetch workers do.
+ *
+ * Usage: RmtDataCacheSelectBenchmark [partitionCount] [threadCount] [durationMs]
+ */
+public class RmtDataCacheSelectBenchmark {
+
+    private static final int BROKER_COUNT = 10;
+
+    private final int partitionCount;
+    private final int threadCount;
+    private final long durationMs;
+
+    public RmtDataCacheSelectBenchmark(int partitionCount, int threadCount, long durationMs) {
+        this.partitionCount = partitionCount;
+        this.threadCount = threadCount;
+        this.durationMs = durationMs;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int partitionCount = 1000;
+        int threadCount = 64;
+        long durationMs = 10000L;
+        if (args.length > 0) {
+            partitionCount = Integer.parseInt(args[0]);
+        }
+        if (args.length > 1) {
+            threadCount = Integer.parseInt(args[1]);
+        }
+        if (args.length > 2) {
+            durationMs = Long.parseLong(args[2]);
+        }
+        new RmtDataCacheSelectBenchmark(partitionCount, threadCount, durationMs).start();
+    }
+
+    /**
+     * Start benchmark test, warmed up before measured.
+     */
+    public void start() throws Exception {
+        List<Partition> partitions = new ArrayList<>(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            BrokerInfo brokerInfo =
+                    new BrokerInfo(i % BROKER_COUNT, "127.0.0.1", 8123 + i % BROKER_COUNT);
+            partitions.add(new Partition(brokerInfo, "topic_" + (i / 100), i % 100));
+        }
+        RmtDataCache dataCache = new RmtDataCache(
+                new ConsumerConfig("127.0.0.1:8715", "test_group"), partitions);
+        try {
+            runSelect(dataCache, durationMs / 5);
+            long[] result = runSelect(dataCache, durationMs);
+            double costSec = result[1] / 1000000000.0;
+            System.out.println(new StringBuilder(256)
+                    .append("[Benchmark] partitions=").append(partitionCount)
+                    .append(", threads=").append(threadCount)
+                    .append(", select-release count=").append(result[0])
+                    .append(", ops/s=").append((long) (result[0] / costSec))
+                    .append(", empty selects=").append(result[2])
+                    .toString());
+        } finally {
+            dataCache.close();
+        }
+    }
+
+    private long[] runSelect(final RmtDataCache dataCache, long runMs) throws Exception {
+        final AtomicBoolean isStopped = new AtomicBoolean(false);
+        final AtomicLong selectCount = new AtomicLong(0);
+        final AtomicLong emptyCount = new AtomicLong(0);
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final CountDownLatch stopLatch = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            Thread thread = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    long localCount = 0;
+                    long localEmpty = 0;
+                    try {
+                        startLatch.await();
+                        while (!isStopped.get()) {
+                            PartitionSelectResult selectResult = dataCache.pullSelect();
+                            if (!selectResult.isSuccess()) {
+                                localEmpty++;
+                                continue;
+                            }
+                            Partition partition = selectResult.getPartition();
+                            // release without delay, as a request of an unavailable broker
+                            dataCache.errRspRelease(partition.getPartitionKey(),
+                                    partition.getTopic(), selectResult.getUsedToken(), false,
+                                    TBaseConstants.META_VALUE_UNDEFINED, 0,
+                                    TErrCodeConstants.SERVICE_UNAVAILABLE, false, 0, 0,
+                                    false, TBaseConstants.META_VALUE_UNDEFINED,
+                                    TBaseConstants.META_VALUE_UNDEFINED);
+                            localCount++;
+                        }
+                    } catch (InterruptedException e) {
+                        //
+                    } finally {
+                        selectCount.addAndGet(localCount);
+                        emptyCount.addAndGet(localEmpty);
+                        stopLatch.countDown();
+                    }
+                }
+            }, "select-worker-" + i);
+            thread.start();
+        }
+        long startTime = System.nanoTime();
+        startLatch.countDown();
+        Thread.sleep(runMs);
+        isStopped.set(true);
+        stopLatch.await();
+        return new long[]{selectCount.get(), System.nanoTime() - startTime, emptyCount.get()};
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.client.producer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import java.util.List;
+import org.apache.inlong.tubemq.corebase.Message;
+import org.apache.inlong.tubemq.corebase.cluster.BrokerInfo;
+import org.apache.inlong.tubemq.corebase.cluster.Partition;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class MessageBatchAccumulatorTest {
+
+    private final Partition partition1 =
+            new Partition(new BrokerInfo("0:127.0.0.1:18080"), "test_topic", 1);
+    private final Partition partition2 =
+            new Partition(new BrokerInfo("0:127.0.0.1:18080"), "test_topic", 2);
+
+    @Test
+    public void testSendWhenFull() {
+        SimpleMessageProducer producer = mock(SimpleMessageProducer.class);
+        MessageBatchAccumulator accumulator =
+                new MessageBatchAccumulator(producer, "test_producer", 60000L, 100);
+        MessageSentCallback callback = mock(MessageSentCallback.class);
+        accumulator.append(partition1, buildMessage(), new byte[40], callback);
+        accumulator.append(partition2, buildMessage(), new byte[40], callback);
+        accumulator.append(partition1, buildMessage(), new byte[40], callback);
+        verify(producer, never()).sendMessageBatch(any(MessageBatchAccumulator.MessageBatch.class));
+        // the batch of partition 1 reaches the max bytes, the one of partition 2 is kept
+        accumulator.append(partition1, buildMessage(), new byte[40], callback);
+        ArgumentCaptor<MessageBatchAccumulator.MessageBatch> batchCaptor =
+                ArgumentCaptor.forClass(MessageBatchAccumulator.MessageBatch.class);
+        verify(producer, times(1)).sendMessageBatch(batchCaptor.capture());
+        MessageBatchAccumulator.MessageBatch batch = batchCaptor.getValue();
+        Assert.assertSame(partition1, batch.getPartition());
+        Assert.assertEquals(3, batch.getMessages().size());
+        Assert.assertEquals(3, batch.getMsgDatas().size());
+        Assert.assertEquals(3, batch.getCallbacks().size());
+        Assert.assertEquals(120, batch.getBatchBytes());
+        // the next message starts a new batch
+        accumulator.append(partition1, buildMessage(), new byte[40], callback);
+        verify(producer, times(1)).sendMessageBatch(any(MessageBatchAccumulator.MessageBatch.class));
+        accumulator.close();
+    }
+
+    @Test
+    public void testSendWhenLingerExpired() {
+        SimpleMessageProducer producer = mock(SimpleMessageProducer.class);
+        MessageBatchAccumulator accumulator =
+                new MessageBatchAccumulator(producer, "test_producer", 50L, 16 * 1024);
+        accumulator.append(partition1, buildMessage(), new byte[40],
+                mock(MessageSentCallback.class));
+        ArgumentCaptor<MessageBatchAccumulator.MessageBatch> batchCaptor =
+                ArgumentCaptor.forClass(MessageBatchAccumulator.MessageBatch.class);
+        verify(producer, timeout(2000).times(1)).sendMessageBatch(batchCaptor.capture());
+        Assert.assertEquals(1, batchCaptor.getValue().getMessages().size());
+        accumulator.close();
+    }
+
+    @Test
+    public void testSendAllWhenClose() {
+        SimpleMessageProducer producer = mock(SimpleMessageProducer.class);
+        MessageBatchAccumulator accumulator =
+                new MessageBatchAccumulator(producer, "test_producer", 60000L, 16 * 1024);
+        accumulator.append(partition1, buildMessage(), new byte[40],
+                mock(MessageSentCallback.class));
+        accumulator.append(partition2, buildMessage(), new byte[40],
+                mock(MessageSentCallback.class));
+        accumulator.append(partition2, buildMessage(), new byte[40],
+                mock(MessageSentCallback.class));
+        accumulator.close();
+        ArgumentCaptor<MessageBatchAccumulator.MessageBatch> batchCaptor =
+                ArgumentCaptor.forClass(MessageBatchAccumulator.MessageBatch.class);
+        verify(producer, times(2)).sendMessageBatch(batchCaptor.capture());
+        List<MessageBatchAccumulator.MessageBatch> batches = batchCaptor.getAllValues();
+        int msgCount = 0;
+        for (MessageBatchAccumulator.MessageBatch batch : batches) {
+            if (batch.getPartition() == partition1) {
+                Assert.assertEquals(1, batch.getMessages().size());
+            } else {
+                Assert.assertSame(partition2, batch.getPartition());
+                Assert.assertEquals(2, batch.getMessages().size());
+            }
+            msgCount += batch.getMessages().size();
+        }
+        Assert.assertEquals(3, msgCount);
+    }
+
+    private Message buildMessage() {
+        return new Message("test_topic", new byte[40]);
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.client.producer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.apache.inlong.tubemq.client.common.ClientStatsInfo;
+import org.apache.inlong.tubemq.client.config.TubeClientConfig;
+import org.apache.inlong.tubemq.client.factory.InnerSessionFactory;
+import org.apache.inlong.tubemq.client.producer.qltystats.DefaultBrokerRcvQltyStats;
+import org.apache.inlong.tubemq.corebase.Message;
+import org.apache.inlong.tubemq.corebase.TErrCodeConstants;
+import org.apache.inlong.tubemq.corebase.cluster.BrokerInfo;
+import org.apache.inlong.tubemq.corebase.cluster.Partition;
+import org.apache.inlong.tubemq.corebase.protobuf.generated.ClientBroker;
+import org.apache.inlong.tubemq.corebase.utils.AddressUtils;
+import org.apache.inlong.tubemq.corerpc.RpcConfig;
+import org.apache.inlong.tubemq.corerpc.RpcServiceFactory;
+import org.apache.inlong.tubemq.corerpc.client.Callback;
+import org.apache.inlong.tubemq.corerpc.service.BrokerWriteService;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+@PowerMockIgnore("javax.management.*")
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(AddressUtils.class)
+public class SimpleMessageProducerTest {
+
+    private final Partition partition =
+            new Partition(new BrokerInfo("0:127.0.0.1:18080"), "test_topic", 1);
+    private BrokerWriteService.AsyncService brokerService;
+    private MessageSentCallback callback1;
+    private MessageSentCallback callback2;
+    private SimpleMessageProducer producer;
+
+    @Before
+    public void setUp() throws Exception {
+        PowerMockito.mockStatic(AddressUtils.class);
+        PowerMockito.when(AddressUtils.getLocalAddress()).thenReturn("127.0.0.1");
+        brokerService = mock(BrokerWriteService.AsyncService.class);
+        RpcServiceFactory rpcServiceFactory = mock(RpcServiceFactory.class);
+        when(rpcServiceFactory.getService(eq(BrokerWriteService.AsyncService.class),
+                any(BrokerInfo.class), any(RpcConfig.class))).thenReturn(brokerService);
+        ProducerManager producerManager = mock(ProducerManager.class);
+        when(producerManager.getProducerId()).thenReturn("test_producer");
+        when(producerManager.getProducerAddrId()).thenReturn(2130706433);
+        when(producerManager.getClientMetrics()).thenReturn(mock(ClientStatsInfo.class));
+        when(producerManager.genBrokerAuthorizedInfo()).thenReturn(
+                ClientBroker.AuthorizedInfo.newBuilder().setVisitAuthorizedToken(1L).build());
+        InnerSessionFactory sessionFactory = mock(InnerSessionFactory.class);
+        when(sessionFactory.getRpcServiceFactory()).thenReturn(rpcServiceFactory);
+        when(sessionFactory.getProducerManager()).thenReturn(producerManager);
+        when(sessionFactory.getBrokerRcvQltyStats()).thenReturn(mock(DefaultBrokerRcvQltyStats.class));
+        producer = new SimpleMessageProducer(sessionFactory, mock(TubeClientConfig.class));
+        callback1 = mock(MessageSentCallback.class);
+        callback2 = mock(MessageSentCallback.class);
+    }
+
+    @Test
+    public void testSendBatchSuccess() throws Throwable {
+        Callback rpcCallback = sendTestBatch();
+        rpcCallback.handleResult(ClientBroker.SendBatchMessageResponseB2P.newBuilder()
+                .setSuccess(true).setErrCode(TErrCodeConstants.SUCCESS).setErrMsg("Ok")
+                .addMessageIds(11L).addMessageIds(12L)
+                .addAppendOffsets(280L).addAppendOffsets(308L)
+                .setAppendTime(1000L).build());
+        MessageSentResult result1 = captureResult(callback1);
+        Assert.assertTrue(result1.isSuccess());
+        Assert.assertEquals(11L, result1.getMessageId());
+        Assert.assertEquals(280L, result1.getAppendOffset());
+        Assert.assertEquals(1000L, result1.getAppendTime());
+        MessageSentResult result2 = captureResult(callback2);
+        Assert.assertTrue(result2.isSuccess());
+        Assert.assertEquals(12L, result2.getMessageId());
+        Assert.assertEquals(308L, result2.getAppendOffset());
+    }
+
+    @Test
+    public void testSendBatchFailure() throws Throwable {
+        Callback rpcCallback = sendTestBatch();
+        rpcCallback.handleResult(ClientBroker.SendBatchMessageResponseB2P.newBuilder()
+                .setSuccess(false).setErrCode(TErrCodeConstants.SERVER_RECEIVE_OVERFLOW)
+                .setErrMsg("overflow").build());
+        // the batch is appended all-or-none, every message fails
+        for (MessageSentCallback callback : new MessageSentCallback[]{callback1, callback2}) {
+            MessageSentResult result = captureResult(callback);
+            Assert.assertFalse(result.isSuccess());
+            Assert.assertEquals(TErrCodeConstants.SERVER_RECEIVE_OVERFLOW, result.getErrCode());
+        }
+    }
+
+    @Test
+    public void testSendBatchException() throws Throwable {
+        Callback rpcCallback = sendTestBatch();
+        Exception error = new Exception("connection lost");
+        rpcCallback.handleError(error);
+        verify(callback1, times(1)).onException(error);
+        verify(callback2, times(1)).onException(error);
+    }
+
+    private Callback sendTestBatch() throws Throwable {
+        Message message1 = new Message("test_topic", "message1".getBytes());
+        message1.setAttrKeyVal("type", "value");
+        Message message2 = new Message("test_topic", "message2".getBytes());
+        MessageBatchAccumulator.MessageBatch batch =
+                new MessageBatchAccumulator.MessageBatch(partition, System.currentTimeMillis());
+        batch.add(message1, "encoded1".getBytes(), callback1);
+        batch.add(message2, "encoded2".getBytes(), callback2);
+        producer.sendMessageBatch(batch);
+        ArgumentCaptor<ClientBroker.SendBatchMessageRequestP2B> requestCaptor =
+                ArgumentCaptor.forClass(ClientBroker.SendBatchMessageRequestP2B.class);
+        ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+        verify(brokerService, times(1)).sendBatchMessageP2B(requestCaptor.capture(),
+                anyString(), anyBoolean(), callbackCaptor.capture());
+        ClientBroker.SendBatchMessageRequestP2B request = requestCaptor.getValue();
+        Assert.assertEquals("test_producer", request.getClientId());
+        Assert.assertEquals("test_topic", request.getTopicName());
+        Assert.assertEquals(1, request.getPartitionId());
+        Assert.assertEquals(2130706433, request.getSentAddr());
+        Assert.assertEquals(2, request.getMessagesCount());
+        Assert.assertEquals("encoded1", request.getMessages(0).getData().toStringUtf8());
+        Assert.assertEquals("encoded2", request.getMessages(1).getData().toStringUtf8());
+        Assert.assertEquals(-1, request.getMessages(0).getCheckSum());
+        Assert.assertFalse(request.getRequireDurable());
+        return callbackCaptor.getValue();
+    }
+
+    private MessageSentResult captureResult(MessageSentCallback callback) {
+        ArgumentCaptor<MessageSentResult> resultCaptor =
+                ArgumentCaptor.forClass(MessageSentResult.class);
+        verify(callback, times(1)).onMessageSent(resultCaptor.capture());
+        return resultCaptor.getValue();
+    }
+}
@@ -33,6 +33,7 @@ public class TBaseConstants {
     public static final String META_DEFAULT_CHARSET_NAME = "UTF-8";
     public static final int META_MAX_MSGTYPE_LENGTH = 255;
     public static final int META_MAX_PARTITION_COUNT = 100;
+    public static final int META_MAX_MULTI_FETCH_PARTITION_COUNT = 8;
     public static final int META_MAX_BROKER_IP_LENGTH = 32;
     public static final int META_MAX_USERNAME_LENGTH = 64;
     public static final int META_MAX_CALLBACK_STRING_LENGTH = 128;
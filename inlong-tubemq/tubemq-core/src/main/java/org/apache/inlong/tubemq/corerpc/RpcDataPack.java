@@ -17,6 +17,8 @@
 
 package org.apache.inlong.tubemq.corerpc;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.util.ReferenceCountUtil;
 import java.nio.ByteBuffer;
 import java.util.List;
 
@@ -24,6 +26,8 @@ public class RpcDataPack {
 
     private int serialNo;
     private List<ByteBuffer> dataLst;
+    // the received frame slices which back the dataLst, null if not held
+    private List<ByteBuf> bufLst;
 
     public RpcDataPack() {
 
@@ -34,6 +38,20 @@ public class RpcDataPack {
         this.dataLst = dataLst;
     }
 
+    /**
+     * Construct a data pack whose data are views of the received frame slices,
+     * the caller must call release() once the data has been consumed
+     *
+     * @param serialNo   the serial number
+     * @param dataLst    the data list
+     * @param bufLst     the frame slices backing the data list
+     */
+    public RpcDataPack(int serialNo, List<ByteBuffer> dataLst, List<ByteBuf> bufLst) {
+        this.serialNo = serialNo;
+        this.dataLst = dataLst;
+        this.bufLst = bufLst;
+    }
+
     public int getSerialNo() {
         return serialNo;
     }
@@ -50,4 +68,17 @@ public class RpcDataPack {
         this.dataLst = dataLst;
     }
 
+    /**
+     * Release the held frame slices, the data list must not be read after this call
+     */
+    public void release() {
+        if (bufLst == null) {
+            return;
+        }
+        for (ByteBuf buf : bufLst) {
+            ReferenceCountUtil.release(buf);
+        }
+        bufLst = null;
+    }
+
 }
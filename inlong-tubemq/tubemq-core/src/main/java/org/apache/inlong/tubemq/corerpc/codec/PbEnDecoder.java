@@ -50,8 +50,12 @@ public class PbEnDecoder {
         rpcMethodMap.put("consumerRegisterC2B", RpcConstants.RPC_MSG_BROKER_CONSUMER_REGISTER);
         rpcMethodMap.put("consumerHeartbeatC2B", RpcConstants.RPC_MSG_BROKER_CONSUMER_HEARTBEAT);
         rpcMethodMap.put("getMessagesC2B", RpcConstants.RPC_MSG_BROKER_CONSUMER_GETMESSAGE);
+        rpcMethodMap.put("getMultiMessagesC2B",
+                RpcConstants.RPC_MSG_BROKER_CONSUMER_GETMULTIMESSAGE);
         rpcMethodMap.put("consumerCommitC2B", RpcConstants.RPC_MSG_BROKER_CONSUMER_COMMIT);
         rpcMethodMap.put("sendMessageP2B", RpcConstants.RPC_MSG_BROKER_PRODUCER_SENDMESSAGE);
+        rpcMethodMap.put("sendBatchMessageP2B",
+                RpcConstants.RPC_MSG_BROKER_PRODUCER_SENDBATCHMESSAGE);
         rpcMethodMap.put("consumerRegisterC2MV2",
                 RpcConstants.RPC_MSG_MASTER_CONSUMER_REGISTER_V2);
         rpcMethodMap.put("consumerHeartbeatC2MV2",
@@ -63,6 +67,8 @@ public class PbEnDecoder {
                 RpcConstants.RPC_SERVICE_TYPE_MASTER_SERVICE);
         rpcServiceMap.put("org.apache.inlong.tubemq.corerpc.service.BrokerReadService",
                 RpcConstants.RPC_SERVICE_TYPE_BROKER_READ_SERVICE);
+        rpcServiceMap.put("org.apache.inlong.tubemq.corerpc.service.BrokerReadService$AsyncService",
+                RpcConstants.RPC_SERVICE_TYPE_BROKER_READ_SERVICE);
         rpcServiceMap.put("org.apache.inlong.tubemq.corerpc.service.BrokerWriteService",
                 RpcConstants.RPC_SERVICE_TYPE_BROKER_WRITE_SERVICE);
         rpcServiceMap.put("org.apache.inlong.tubemq.corerpc.service.BrokerWriteService$AsyncService",
@@ -128,6 +134,9 @@ public class PbEnDecoder {
                 case RpcConstants.RPC_MSG_BROKER_PRODUCER_SENDMESSAGE: {
                     return ClientBroker.SendMessageRequestP2B.parseFrom(bytes);
                 }
+                case RpcConstants.RPC_MSG_BROKER_PRODUCER_SENDBATCHMESSAGE: {
+                    return ClientBroker.SendBatchMessageRequestP2B.parseFrom(bytes);
+                }
                 case RpcConstants.RPC_MSG_BROKER_CONSUMER_REGISTER: {
                     return ClientBroker.RegisterRequestC2B.parseFrom(bytes);
                 }
@@ -137,6 +146,9 @@ public class PbEnDecoder {
                 case RpcConstants.RPC_MSG_BROKER_CONSUMER_GETMESSAGE: {
                     return ClientBroker.GetMessageRequestC2B.parseFrom(bytes);
                 }
+                case RpcConstants.RPC_MSG_BROKER_CONSUMER_GETMULTIMESSAGE: {
+                    return ClientBroker.GetMultiMessageRequestC2B.parseFrom(bytes);
+                }
                 case RpcConstants.RPC_MSG_BROKER_CONSUMER_COMMIT: {
                     return ClientBroker.CommitOffsetRequestC2B.parseFrom(bytes);
                 }
@@ -191,6 +203,9 @@ public class PbEnDecoder {
                 case RpcConstants.RPC_MSG_BROKER_PRODUCER_SENDMESSAGE: {
                     return ClientBroker.SendMessageResponseB2P.parseFrom(bytes);
                 }
+                case RpcConstants.RPC_MSG_BROKER_PRODUCER_SENDBATCHMESSAGE: {
+                    return ClientBroker.SendBatchMessageResponseB2P.parseFrom(bytes);
+                }
                 case RpcConstants.RPC_MSG_BROKER_CONSUMER_REGISTER: {
                     return ClientBroker.RegisterResponseB2C.parseFrom(bytes);
                 }
@@ -200,6 +215,9 @@ public class PbEnDecoder {
                 case RpcConstants.RPC_MSG_BROKER_CONSUMER_GETMESSAGE: {
                     return ClientBroker.GetMessageResponseB2C.parseFrom(bytes);
                 }
+                case RpcConstants.RPC_MSG_BROKER_CONSUMER_GETMULTIMESSAGE: {
+                    return ClientBroker.GetMultiMessageResponseB2C.parseFrom(bytes);
+                }
                 case RpcConstants.RPC_MSG_BROKER_CONSUMER_COMMIT: {
                     return ClientBroker.CommitOffsetResponseB2C.parseFrom(bytes);
                 }
@@ -285,6 +303,7 @@ public class PbEnDecoder {
                     case RpcConstants.RPC_MSG_BROKER_CONSUMER_REGISTER:
                     case RpcConstants.RPC_MSG_BROKER_CONSUMER_HEARTBEAT:
                     case RpcConstants.RPC_MSG_BROKER_CONSUMER_GETMESSAGE:
+                    case RpcConstants.RPC_MSG_BROKER_CONSUMER_GETMULTIMESSAGE:
                     case RpcConstants.RPC_MSG_BROKER_CONSUMER_COMMIT:
                     case RpcConstants.RPC_MSG_BROKER_CONSUMER_CLOSE: {
                         return true;
@@ -304,6 +323,7 @@ public class PbEnDecoder {
                     case RpcConstants.RPC_MSG_BROKER_PRODUCER_REGISTER:
                     case RpcConstants.RPC_MSG_BROKER_PRODUCER_HEARTBEAT:
                     case RpcConstants.RPC_MSG_BROKER_PRODUCER_SENDMESSAGE:
+                    case RpcConstants.RPC_MSG_BROKER_PRODUCER_SENDBATCHMESSAGE:
                     case RpcConstants.RPC_MSG_BROKER_PRODUCER_CLOSE: {
                         return true;
                     }
@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.corerpc.codec;
+
+import com.google.protobuf.AbstractMessageLite;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.inlong.tubemq.corebase.protobuf.generated.ClientBroker;
+import org.apache.inlong.tubemq.corerpc.RpcConstants;
+
+/**
+ * Encode the response message into the protobuf wire format as a list of buffers.
+ *
+ * The GetMessage and GetMultiMessage responses are written by hand: their fields are
+ * copied into small buffers, while the payloads of the fetched messages are referenced
+ * in the list, so the payloads read from the store are not copied before they are
+ * written to the channel. The other messages are serialized as a whole.
+ */
+public class PbSegmentEncoder {
+
+    // the payloads smaller than this are copied, to keep the buffer list short
+    private static final int MIN_REF_PAYLOAD_SIZE = 1024;
+    // the max count of referenced payloads, leave room for the field buffers
+    private static final int MAX_REF_PAYLOAD_COUNT = RpcConstants.MAX_FRAME_MAX_LIST_SIZE / 4;
+    // the max length of the fields of a TransferedMessage except the payload
+    private static final int MAX_MSG_HEADER_SIZE = 64;
+
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private ByteBuffer current;
+    private int refCount = 0;
+
+    private PbSegmentEncoder() {
+        //
+    }
+
+    /**
+     * Encode the message object into buffers, the buffers are ready to read
+     * from position 0 to limit.
+     *
+     * @param object    the protobuf message object
+     * @return          the encoded buffers
+     */
+    public static List<ByteBuffer> encode(Object object) {
+        if (object instanceof ClientBroker.GetMessageResponseB2C) {
+            ClientBroker.GetMessageResponseB2C response =
+                    (ClientBroker.GetMessageResponseB2C) object;
+            if (response.getMessagesCount() > 0) {
+                PbSegmentEncoder encoder = new PbSegmentEncoder();
+                encoder.writeGetMessageResponse(response);
+                return encoder.finish();
+            }
+        } else if (object instanceof ClientBroker.GetMultiMessageResponseB2C) {
+            ClientBroker.GetMultiMessageResponseB2C response =
+                    (ClientBroker.GetMultiMessageResponseB2C) object;
+            if (response.getResponsesCount() > 0) {
+                PbSegmentEncoder encoder = new PbSegmentEncoder();
+                encoder.writeGetMultiMessageResponse(response);
+                return encoder.finish();
+            }
+        }
+        List<ByteBuffer> result = new ArrayList<>(1);
+        result.add(ByteBuffer.wrap(((AbstractMessageLite) object).toByteArray()));
+        return result;
+    }
+
+    /**
+     * Get the total length of the encoded buffers.
+     *
+     * @param segments   the encoded buffers
+     * @return           the total length
+     */
+    public static int getSerializedSize(List<ByteBuffer> segments) {
+        int totalSize = 0;
+        for (ByteBuffer segment : segments) {
+            totalSize += segment.remaining();
+        }
+        return totalSize;
+    }
+
+    private void writeGetMessageResponse(ClientBroker.GetMessageResponseB2C response) {
+        // the other fields are serialized by protobuf, the field order does not matter to parsers
+        writeBytes(response.toBuilder().clearMessages().buildPartial().toByteArray());
+        for (ClientBroker.TransferedMessage message : response.getMessagesList()) {
+            ByteString payLoad = message.getPayLoadData();
+            int payLoadSize = payLoad.size();
+            int msgSize = CodedOutputStream.computeInt64Size(
+                    ClientBroker.TransferedMessage.MESSAGEID_FIELD_NUMBER, message.getMessageId())
+                    + CodedOutputStream.computeInt32Size(
+                            ClientBroker.TransferedMessage.CHECKSUM_FIELD_NUMBER, message.getCheckSum())
+                    + CodedOutputStream.computeInt32Size(
+                            ClientBroker.TransferedMessage.FLAG_FIELD_NUMBER, message.getFlag())
+                    + CodedOutputStream.computeTagSize(
+                            ClientBroker.TransferedMessage.PAYLOADDATA_FIELD_NUMBER)
+                    + CodedOutputStream.computeUInt32SizeNoTag(payLoadSize)
+                    + payLoadSize;
+            ensureCapacity(MAX_MSG_HEADER_SIZE);
+            writeTag(ClientBroker.GetMessageResponseB2C.MESSAGES_FIELD_NUMBER,
+                    WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            writeVarint(msgSize);
+            writeTag(ClientBroker.TransferedMessage.MESSAGEID_FIELD_NUMBER,
+                    WireFormat.WIRETYPE_VARINT);
+            writeVarint(message.getMessageId());
+            writeTag(ClientBroker.TransferedMessage.CHECKSUM_FIELD_NUMBER,
+                    WireFormat.WIRETYPE_VARINT);
+            // negative int32 values are sign extended as int64
+            writeVarint(message.getCheckSum());
+            writeTag(ClientBroker.TransferedMessage.FLAG_FIELD_NUMBER,
+                    WireFormat.WIRETYPE_VARINT);
+            writeVarint(message.getFlag());
+            writeTag(ClientBroker.TransferedMessage.PAYLOADDATA_FIELD_NUMBER,
+                    WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            writeVarint(payLoadSize);
+            if (payLoadSize >= MIN_REF_PAYLOAD_SIZE && refCount < MAX_REF_PAYLOAD_COUNT) {
+                sealCurrent();
+                segments.add(payLoad.asReadOnlyByteBuffer().slice());
+                refCount++;
+            } else {
+                ensureCapacity(payLoadSize);
+                payLoad.copyTo(current);
+            }
+        }
+    }
+
+    private void writeGetMultiMessageResponse(ClientBroker.GetMultiMessageResponseB2C response) {
+        writeBytes(response.toBuilder().clearResponses().buildPartial().toByteArray());
+        for (ClientBroker.GetMessageResponseB2C subResponse : response.getResponsesList()) {
+            // the hand written encoding has the same length as the protobuf serialization
+            ensureCapacity(MAX_MSG_HEADER_SIZE);
+            writeTag(ClientBroker.GetMultiMessageResponseB2C.RESPONSES_FIELD_NUMBER,
+                    WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            writeVarint(subResponse.getSerializedSize());
+            writeGetMessageResponse(subResponse);
+        }
+    }
+
+    private List<ByteBuffer> finish() {
+        sealCurrent();
+        return segments;
+    }
+
+    private void writeBytes(byte[] data) {
+        ensureCapacity(data.length);
+        current.put(data);
+    }
+
+    private void writeTag(int fieldNumber, int wireType) {
+        writeVarint((fieldNumber << 3) | wireType);
+    }
+
+    private void writeVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            current.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        current.put((byte) value);
+    }
+
+    private void ensureCapacity(int size) {
+        if (current != null && current.remaining() >= size) {
+            return;
+        }
+        sealCurrent();
+        current = ByteBuffer.allocate(Math.max(size, RpcConstants.RPC_MAX_BUFFER_SIZE));
+    }
+
+    private void sealCurrent() {
+        if (current == null) {
+            return;
+        }
+        if (current.position() > 0) {
+            current.flip();
+            segments.add(current);
+        }
+        current = null;
+    }
+}
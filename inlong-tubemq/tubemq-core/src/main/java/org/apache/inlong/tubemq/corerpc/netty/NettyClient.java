@@ -359,8 +359,11 @@ public class NettyClient implements Client {
                             NettyClient.this.close();
                         }
                         callback.handleResult(responseWrapper);
+                    } finally {
+                        dataPack.release();
                     }
                 } else {
+                    dataPack.release();
                     if (logger.isDebugEnabled()) {
                         logger.debug("Missing previous call info, maybe it has been timeout.");
                     }
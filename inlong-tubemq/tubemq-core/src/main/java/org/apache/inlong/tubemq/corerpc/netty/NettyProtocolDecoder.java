@@ -20,11 +20,9 @@ package org.apache.inlong.tubemq.corerpc.netty;
 import static org.apache.inlong.tubemq.corebase.utils.AddressUtils.getRemoteAddressIP;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.MessageToMessageDecoder;
-import io.netty.util.ReferenceCountUtil;
+import io.netty.handler.codec.ByteToMessageDecoder;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
@@ -36,10 +34,18 @@ import org.apache.inlong.tubemq.corerpc.exception.UnknownProtocolException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class NettyProtocolDecoder extends MessageToMessageDecoder<ByteBuf> {
+/**
+ * Decode the RPC frames from the pooled cumulation buffer, each data body is handed
+ * to the RpcDataPack as a retained slice of the cumulation without copying,
+ * the consumer must release the RpcDataPack after parsing it.
+ */
+public class NettyProtocolDecoder extends ByteToMessageDecoder {
 
     private static final Logger logger = LoggerFactory.getLogger(NettyProtocolDecoder.class);
 
+    // a data body can not exceed the whole frame
+    private static final int MAX_BODY_SIZE =
+            RpcConstants.MAX_FRAME_MAX_LIST_SIZE * RpcConstants.RPC_MAX_BUFFER_SIZE;
     private static final ConcurrentHashMap<String, AtomicLong> errProtolAddrMap =
             new ConcurrentHashMap<>();
     private static final ConcurrentHashMap<String, AtomicLong> errSizeAddrMap =
@@ -48,77 +54,62 @@ public class NettyProtocolDecoder extends MessageToMessageDecoder<ByteBuf> {
     private static AtomicLong lastSizeTime = new AtomicLong(0);
     private boolean packHeaderRead = false;
     private int listSize;
-    private List<RpcDataPack> rpcDataPackList = new ArrayList<>();
-    private RpcDataPack dataPack;
-    private ByteBuf lastByteBuf;
+    private int serialNo;
+    private List<ByteBuffer> dataLst;
+    private List<ByteBuf> bufLst;
 
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf buffer, List<Object> out) throws Exception {
-        buffer = convertToNewBuf(buffer);
-        while (buffer.readableBytes() > 0) {
+        while (buffer.isReadable()) {
             if (!packHeaderRead) {
                 if (buffer.readableBytes() < 12) {
-                    saveRemainedByteBuf(buffer);
                     break;
                 }
                 int frameToken = buffer.readInt();
                 filterIllegalPkgToken(frameToken, RpcConstants.RPC_PROTOCOL_BEGIN_TOKEN, ctx.channel());
-                int serialNo = buffer.readInt();
+                int tmpSerialNo = buffer.readInt();
                 int tmpListSize = buffer.readInt();
                 filterIllegalPackageSize(true, tmpListSize,
                         RpcConstants.MAX_FRAME_MAX_LIST_SIZE, ctx.channel());
+                this.serialNo = tmpSerialNo;
                 this.listSize = tmpListSize;
-                this.dataPack = new RpcDataPack(serialNo, new ArrayList<>(this.listSize));
+                this.dataLst = new ArrayList<>(this.listSize);
+                this.bufLst = new ArrayList<>(this.listSize);
                 this.packHeaderRead = true;
             }
             // get PackBody
-            if (buffer.readableBytes() < 4) {
-                saveRemainedByteBuf(buffer);
-                break;
-            }
-            buffer.markReaderIndex();
-            int length = buffer.readInt();
-            if (buffer.readableBytes() < length) {
-                buffer.resetReaderIndex();
-                saveRemainedByteBuf(buffer);
-                break;
+            if (dataLst.size() < listSize) {
+                if (buffer.readableBytes() < 4) {
+                    break;
+                }
+                int length = buffer.getInt(buffer.readerIndex());
+                filterIllegalPackageSize(false, length, MAX_BODY_SIZE, ctx.channel());
+                if (buffer.readableBytes() - 4 < length) {
+                    break;
+                }
+                buffer.skipBytes(4);
+                ByteBuf bodyBuf = buffer.readRetainedSlice(length);
+                bufLst.add(bodyBuf);
+                dataLst.add(bodyBuf.nioBuffer());
             }
-            ByteBuffer bb = ByteBuffer.allocate(length);
-            buffer.readBytes(bb);
-            bb.flip();
-            dataPack.getDataLst().add(bb);
-            if (dataPack.getDataLst().size() == listSize) {
+            if (dataLst.size() == listSize) {
                 packHeaderRead = false;
-                rpcDataPackList.add(dataPack);
+                out.add(new RpcDataPack(serialNo, dataLst, bufLst));
+                dataLst = null;
+                bufLst = null;
             }
         }
-        if (rpcDataPackList.size() > 0) {
-            out.addAll(rpcDataPackList);
-            rpcDataPackList.clear();
-        }
-    }
-
-    private void saveRemainedByteBuf(ByteBuf byteBuf) {
-        if (byteBuf != null && byteBuf.readableBytes() > 0) {
-            lastByteBuf = Unpooled.copiedBuffer(byteBuf);
-        }
     }
 
-    private ByteBuf convertToNewBuf(ByteBuf byteBuf) {
-        ByteBuf newByteBuf = byteBuf;
-        int totalReadBytes = byteBuf.readableBytes();
-        if (lastByteBuf != null) {
-            try {
-                totalReadBytes += lastByteBuf.readableBytes();
-                newByteBuf = Unpooled.buffer(totalReadBytes);
-                newByteBuf.writeBytes(lastByteBuf);
-                newByteBuf.writeBytes(byteBuf);
-            } finally {
-                ReferenceCountUtil.release(lastByteBuf);
-            }
-            lastByteBuf = null;
+    @Override
+    protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
+        // release the slices of the incomplete pack
+        if (bufLst != null) {
+            new RpcDataPack(serialNo, dataLst, bufLst).release();
+            dataLst = null;
+            bufLst = null;
         }
-        return newByteBuf;
+        packHeaderRead = false;
     }
 
     private void filterIllegalPkgToken(int inParamValue, int allowTokenVal,
@@ -19,61 +19,56 @@ package org.apache.inlong.tubemq.corerpc.netty;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToMessageEncoder;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.Arrays;
-import java.util.Iterator;
 import java.util.List;
 import org.apache.inlong.tubemq.corerpc.RpcConstants;
 import org.apache.inlong.tubemq.corerpc.RpcDataPack;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
+/**
+ * Encode the RpcDataPack into a composite buffer: the pack header and the length fields
+ * are written into one pooled buffer, the data bodies are wrapped without copying.
+ */
 public class NettyProtocolEncoder extends MessageToMessageEncoder<RpcDataPack> {
 
-    private static final Logger logger = LoggerFactory.getLogger(NettyProtocolEncoder.class);
+    private static final int PACK_HEADER_SIZE = 12;
+    private static final int LENGTH_FIELD_SIZE = 4;
 
     @Override
     protected void encode(ChannelHandlerContext chx, RpcDataPack msg, List<Object> out) {
-        RpcDataPack dataPack = msg;
-        try (ByteArrayOutputStream byteOut = new ByteArrayOutputStream()) {
-            byteOut.write(getPackHeader(dataPack).array());
-            List<ByteBuffer> origs = dataPack.getDataLst();
-            Iterator<ByteBuffer> iter = origs.iterator();
-            while (iter.hasNext()) {
-                ByteBuffer entry = iter.next();
-                byteOut.write(getLengthHeader(entry).array());
-                byteOut.write(getLengthBody(entry));
+        List<ByteBuffer> dataLst = msg.getDataLst();
+        int listSize = dataLst.size();
+        ByteBuf headerBuf = ByteBufAllocator.DEFAULT.buffer(
+                PACK_HEADER_SIZE + LENGTH_FIELD_SIZE * listSize);
+        CompositeByteBuf frameBuf =
+                ByteBufAllocator.DEFAULT.compositeBuffer(1 + 2 * listSize);
+        try {
+            headerBuf.writeInt(RpcConstants.RPC_PROTOCOL_BEGIN_TOKEN);
+            headerBuf.writeInt(msg.getSerialNo());
+            headerBuf.writeInt(listSize);
+            frameBuf.addComponent(true, headerBuf.retainedSlice(0, PACK_HEADER_SIZE));
+            for (ByteBuffer entry : dataLst) {
+                // the body is [0, limit) of the buffer, as the list is already flipped
+                ByteBuffer body = entry.duplicate();
+                body.position(0);
+                int lengthPos = headerBuf.writerIndex();
+                headerBuf.writeInt(body.limit());
+                frameBuf.addComponent(true,
+                        headerBuf.retainedSlice(lengthPos, LENGTH_FIELD_SIZE));
+                if (body.hasRemaining()) {
+                    frameBuf.addComponent(true, Unpooled.wrappedBuffer(body));
+                }
+            }
+            out.add(frameBuf);
+            frameBuf = null;
+        } finally {
+            headerBuf.release();
+            if (frameBuf != null) {
+                frameBuf.release();
             }
-            byte[] body = byteOut.toByteArray();
-            ByteBuf buf = ByteBufAllocator.DEFAULT.buffer(body.length);
-            buf.writeBytes(body);
-            out.add(buf);
-        } catch (IOException e) {
-            logger.error("encode has exception ", e);
         }
     }
-
-    private ByteBuffer getPackHeader(RpcDataPack dataPack) {
-        ByteBuffer header = ByteBuffer.allocate(12);
-        header.putInt(RpcConstants.RPC_PROTOCOL_BEGIN_TOKEN);
-        header.putInt(dataPack.getSerialNo());
-        header.putInt(dataPack.getDataLst().size());
-        header.flip();
-        return header;
-    }
-
-    private ByteBuffer getLengthHeader(ByteBuffer buf) {
-        ByteBuffer header = ByteBuffer.allocate(4);
-        header.putInt(buf.limit());
-        header.flip();
-        return header;
-    }
-
-    private byte[] getLengthBody(ByteBuffer buf) {
-        return Arrays.copyOf(buf.array(), buf.limit());
-    }
 }
@@ -17,7 +17,8 @@
 
 package org.apache.inlong.tubemq.corerpc.netty;
 
-import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
@@ -30,8 +31,9 @@ import org.apache.inlong.tubemq.corebase.protobuf.generated.RPCProtos;
 import org.apache.inlong.tubemq.corerpc.RequestWrapper;
 import org.apache.inlong.tubemq.corerpc.ResponseWrapper;
 import org.apache.inlong.tubemq.corerpc.RpcDataPack;
-import org.apache.inlong.tubemq.corerpc.codec.PbEnDecoder;
+import org.apache.inlong.tubemq.corerpc.codec.PbSegmentEncoder;
 import org.apache.inlong.tubemq.corerpc.server.RequestContext;
+import org.apache.inlong.tubemq.corerpc.server.ResponseResourceHolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -78,11 +80,16 @@ public class NettyRequestContext implements RequestContext {
             return;
         }
         dataPack = new RpcDataPack(response.getSerialNo(), prepareResponse(response));
+        // the response may reference the resources, release them after it is written
+        final List<Runnable> releaseTasks = ResponseResourceHolder.detachAll();
         ChannelFuture wf = ctx.channel().writeAndFlush(dataPack);
         wf.addListener(new ChannelFutureListener() {
 
             @Override
             public void operationComplete(ChannelFuture future) throws Exception {
+                if (!releaseTasks.isEmpty()) {
+                    ResponseResourceHolder.release(releaseTasks);
+                }
                 if (!future.isSuccess()) {
                     Throwable exception = future.cause();
                     if (exception != null) {
@@ -121,13 +128,10 @@ public class NettyRequestContext implements RequestContext {
                 rpcBuilder.setStatus(RPCProtos.ResponseHeader.Status.SUCCESS);
                 rpcBuilder.setProtocolVer(response.getProtocolVersion());
                 rpcBuilder.build().writeDelimitedTo(out);
-                RPCProtos.RspResponseBody.Builder dataBuilder =
-                        RPCProtos.RspResponseBody.newBuilder();
-                dataBuilder.setMethod(response.getMethodId());
                 if (response.getResponseData() != null) {
+                    List<ByteBuffer> dataSegments = null;
                     try {
-                        dataBuilder.setData(ByteString
-                                .copyFrom(PbEnDecoder.pbEncode(response.getResponseData())));
+                        dataSegments = PbSegmentEncoder.encode(response.getResponseData());
                     } catch (Throwable ee) {
                         if (logger.isDebugEnabled()) {
                             logger.debug(new StringBuilder(512)
@@ -135,7 +139,18 @@ public class NettyRequestContext implements RequestContext {
                                     .append(ee).toString());
                         }
                     }
+                    if (dataSegments != null) {
+                        // write the body fields by hand, and append the encoded data as is
+                        writeRspBodyHeader(out, response.getMethodId(),
+                                PbSegmentEncoder.getSerializedSize(dataSegments));
+                        List<ByteBuffer> bufferList = buf.getBufferList();
+                        bufferList.addAll(dataSegments);
+                        return bufferList;
+                    }
                 }
+                RPCProtos.RspResponseBody.Builder dataBuilder =
+                        RPCProtos.RspResponseBody.newBuilder();
+                dataBuilder.setMethod(response.getMethodId());
                 dataBuilder.build().writeDelimitedTo(out);
             } else {
                 rpcBuilder.setStatus(RPCProtos.ResponseHeader.Status.ERROR);
@@ -155,6 +170,30 @@ public class NettyRequestContext implements RequestContext {
         return buf.getBufferList();
     }
 
+    /**
+     * Write the delimited RspResponseBody till the length of the data field.
+     *
+     * @param out        the output stream
+     * @param methodId   the method id
+     * @param dataSize   the length of the data field
+     * @throws IOException  the exception while writing
+     */
+    private void writeRspBodyHeader(DataOutputStream out,
+            int methodId, int dataSize) throws IOException {
+        int bodySize = CodedOutputStream.computeInt32Size(
+                RPCProtos.RspResponseBody.METHOD_FIELD_NUMBER, methodId)
+                + CodedOutputStream.computeTagSize(RPCProtos.RspResponseBody.DATA_FIELD_NUMBER)
+                + CodedOutputStream.computeUInt32SizeNoTag(dataSize)
+                + dataSize;
+        CodedOutputStream codedOut = CodedOutputStream.newInstance(out, 32);
+        codedOut.writeUInt32NoTag(bodySize);
+        codedOut.writeInt32(RPCProtos.RspResponseBody.METHOD_FIELD_NUMBER, methodId);
+        codedOut.writeTag(RPCProtos.RspResponseBody.DATA_FIELD_NUMBER,
+                WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        codedOut.writeUInt32NoTag(dataSize);
+        codedOut.flush();
+    }
+
     @Override
     public long getReceiveTime() {
         return this.receiveTime;
@@ -278,6 +278,7 @@ public class NettyRpcServer implements ServiceRpcServer {
             int rmtVersion = RpcProtocol.RPC_PROTOCOL_VERSION;
             Channel channel = ctx.channel();
             if (channel == null) {
+                dataPack.release();
                 return;
             }
             String rmtaddrIp = getRemoteAddressIP(channel);
@@ -325,6 +326,9 @@ public class NettyRpcServer implements ServiceRpcServer {
                     channel.writeAndFlush(dataPack);
                 }
                 return;
+            } finally {
+                // the request has been parsed out, release the received frame slices
+                dataPack.release();
             }
             try {
                 RequestWrapper requestWrapper =
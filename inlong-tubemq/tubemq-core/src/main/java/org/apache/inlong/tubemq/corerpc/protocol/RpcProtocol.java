@@ -20,8 +20,10 @@ package org.apache.inlong.tubemq.corerpc.protocol;
 import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import org.apache.inlong.tubemq.corebase.utils.ServiceStatusHolder;
 import org.apache.inlong.tubemq.corerpc.RequestWrapper;
 import org.apache.inlong.tubemq.corerpc.ResponseWrapper;
@@ -29,7 +31,9 @@ import org.apache.inlong.tubemq.corerpc.RpcConstants;
 import org.apache.inlong.tubemq.corerpc.codec.PbEnDecoder;
 import org.apache.inlong.tubemq.corerpc.exception.ServiceStoppingException;
 import org.apache.inlong.tubemq.corerpc.exception.StandbyException;
+import org.apache.inlong.tubemq.corerpc.server.DeferredResponseHolder;
 import org.apache.inlong.tubemq.corerpc.server.RequestContext;
+import org.apache.inlong.tubemq.corerpc.server.ResponseResourceHolder;
 import org.apache.inlong.tubemq.corerpc.utils.MixUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -126,6 +130,7 @@ public class RpcProtocol implements Protocol {
         }
         Method method = null;
         StringBuilder sBuilder = new StringBuilder(512);
+        CompletableFuture<Object> deferredResult = null;
         try {
             if (!PbEnDecoder.isValidServiceTypeAndMethod(requestWrapper.getServiceType(),
                     requestWrapper.getMethodId(), sBuilder)) {
@@ -145,34 +150,70 @@ public class RpcProtocol implements Protocol {
                         .append(requestWrapper.getServiceType())
                         .append(" found on the server").toString());
             }
-            Object result =
-                    method.invoke(processor, requestWrapper.getRequestData(), rmtAddress, isOverTLS);
-            responseWrapper =
-                    new ResponseWrapper(RpcConstants.RPC_FLAG_MSG_TYPE_RESPONSE,
-                            requestWrapper.getSerialNo(), requestWrapper.getServiceType(),
-                            RPC_PROTOCOL_VERSION, requestWrapper.getMethodId(), result);
-        } catch (Throwable e2) {
-            String errorClass = null;
-            String errorInfo = null;
-            if (e2.getCause() != null && e2.getCause() instanceof StandbyException) {
-                errorClass = e2.getCause().getClass().getName();
-                errorInfo = e2.getCause().getMessage();
-            } else {
-                errorClass = e2.getClass().getName();
-                errorInfo = e2.getMessage();
+            Object result;
+            try {
+                result = method.invoke(processor,
+                        requestWrapper.getRequestData(), rmtAddress, isOverTLS);
+            } finally {
+                deferredResult = DeferredResponseHolder.take();
             }
-            errorClass = MixUtils.replaceClassNamePrefix(errorClass,
-                    true, requestWrapper.getProtocolVersion());
-            responseWrapper =
-                    new ResponseWrapper(RpcConstants.RPC_FLAG_MSG_TYPE_RESPONSE,
-                            requestWrapper.getSerialNo(), requestWrapper.getServiceType(),
-                            RPC_PROTOCOL_VERSION, errorClass, errorInfo);
+            if (deferredResult == null) {
+                responseWrapper = buildSuccessResponse(requestWrapper, result);
+            }
+        } catch (Throwable e2) {
+            deferredResult = null;
+            responseWrapper = buildFailureResponse(requestWrapper, e2);
+        }
+        if (deferredResult != null) {
+            // the response will be written by the thread completing the result
+            ResponseResourceHolder.releaseAll();
+            final RequestWrapper deferredRequest = requestWrapper;
+            deferredResult.whenComplete(new BiConsumer<Object, Throwable>() {
+
+                @Override
+                public void accept(Object result, Throwable throwable) {
+                    writeResponse(context, (throwable == null)
+                            ? buildSuccessResponse(deferredRequest, result)
+                            : buildFailureResponse(deferredRequest, throwable));
+                }
+            });
+            return;
         }
+        writeResponse(context, responseWrapper);
+    }
+
+    private void writeResponse(RequestContext context, ResponseWrapper responseWrapper) {
         try {
             context.write(responseWrapper);
         } catch (Exception e) {
             logger.error("Write response error!", e);
+        } finally {
+            // release the resources which are not taken over by the written response
+            ResponseResourceHolder.releaseAll();
+        }
+    }
+
+    private ResponseWrapper buildSuccessResponse(RequestWrapper requestWrapper, Object result) {
+        return new ResponseWrapper(RpcConstants.RPC_FLAG_MSG_TYPE_RESPONSE,
+                requestWrapper.getSerialNo(), requestWrapper.getServiceType(),
+                RPC_PROTOCOL_VERSION, requestWrapper.getMethodId(), result);
+    }
+
+    private ResponseWrapper buildFailureResponse(RequestWrapper requestWrapper, Throwable e2) {
+        String errorClass = null;
+        String errorInfo = null;
+        if (e2.getCause() != null && e2.getCause() instanceof StandbyException) {
+            errorClass = e2.getCause().getClass().getName();
+            errorInfo = e2.getCause().getMessage();
+        } else {
+            errorClass = e2.getClass().getName();
+            errorInfo = e2.getMessage();
         }
+        errorClass = MixUtils.replaceClassNamePrefix(errorClass,
+                true, requestWrapper.getProtocolVersion());
+        return new ResponseWrapper(RpcConstants.RPC_FLAG_MSG_TYPE_RESPONSE,
+                requestWrapper.getSerialNo(), requestWrapper.getServiceType(),
+                RPC_PROTOCOL_VERSION, errorClass, errorInfo);
     }
 
 }
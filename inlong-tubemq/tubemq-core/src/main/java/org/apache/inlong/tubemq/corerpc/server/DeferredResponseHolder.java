@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.corerpc.server;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Holds the deferred response of the request being processed in current thread.
+ *
+ * A service method which can not produce its result immediately, such as a send
+ * waiting for the disk sync, registers a future here and returns; the response is
+ * written by the thread completing the future instead of the request thread.
+ */
+public class DeferredResponseHolder {
+
+    private static final ThreadLocal<CompletableFuture<Object>> deferredResults =
+            new ThreadLocal<>();
+
+    private DeferredResponseHolder() {
+        //
+    }
+
+    /**
+     * Defer the response of the current request, the value returned by the service
+     * method is ignored, the response is built from the future's result.
+     *
+     * @param result   the future completed with the response object
+     */
+    public static void defer(CompletableFuture<Object> result) {
+        deferredResults.set(result);
+    }
+
+    /**
+     * Take and clear the deferred response registered by the current thread.
+     *
+     * @return  the deferred result, null if the response is not deferred
+     */
+    public static CompletableFuture<Object> take() {
+        CompletableFuture<Object> result = deferredResults.get();
+        if (result != null) {
+            deferredResults.remove();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.corerpc.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the resources referenced by the response being processed in current thread,
+ * such as memory cache slices of the broker, they are released after the response
+ * has been serialized, or after it has been written when the response references them.
+ */
+public class ResponseResourceHolder {
+
+    private static final Logger logger =
+            LoggerFactory.getLogger(ResponseResourceHolder.class);
+    private static final ThreadLocal<List<Runnable>> releaseTasks =
+            new ThreadLocal<List<Runnable>>() {
+
+                @Override
+                protected List<Runnable> initialValue() {
+                    return new ArrayList<>();
+                }
+            };
+
+    private ResponseResourceHolder() {
+        //
+    }
+
+    /**
+     * Register a release task, it will be run after the response of the current
+     * request is serialized.
+     *
+     * @param releaseTask   the release task
+     */
+    public static void register(Runnable releaseTask) {
+        releaseTasks.get().add(releaseTask);
+    }
+
+    /**
+     * Run and clear all release tasks registered by the current thread.
+     */
+    public static void releaseAll() {
+        List<Runnable> tasks = releaseTasks.get();
+        if (tasks.isEmpty()) {
+            return;
+        }
+        release(tasks);
+        tasks.clear();
+    }
+
+    /**
+     * Take over the release tasks registered by the current thread, the caller must
+     * run them by {@link #release(List)} once the response has been written.
+     *
+     * @return   the detached release tasks
+     */
+    public static List<Runnable> detachAll() {
+        List<Runnable> tasks = releaseTasks.get();
+        if (tasks.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Runnable> detachedTasks = new ArrayList<>(tasks);
+        tasks.clear();
+        return detachedTasks;
+    }
+
+    /**
+     * Run the release tasks.
+     *
+     * @param tasks   the release tasks
+     */
+    public static void release(List<Runnable> tasks) {
+        for (Runnable task : tasks) {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                logger.warn("Release response resource failure!", e);
+            }
+        }
+    }
+}
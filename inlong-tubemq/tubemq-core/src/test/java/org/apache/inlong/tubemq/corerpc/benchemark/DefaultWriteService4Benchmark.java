@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.corerpc.benchemark;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.inlong.tubemq.corebase.TErrCodeConstants;
+import org.apache.inlong.tubemq.corebase.protobuf.generated.ClientBroker;
+import org.apache.inlong.tubemq.corerpc.service.BrokerWriteService;
+
+/**
+ * Write service for benchmark, acknowledges the sent messages without storing them.
+ */
+public class DefaultWriteService4Benchmark implements BrokerWriteService {
+
+    private final AtomicLong messageId = new AtomicLong(0);
+
+    @Override
+    public ClientBroker.SendMessageResponseB2P sendMessageP2B(
+            ClientBroker.SendMessageRequestP2B request,
+            String rmtAddress, boolean overtls) throws Throwable {
+        ClientBroker.SendMessageResponseB2P.Builder builder =
+                ClientBroker.SendMessageResponseB2P.newBuilder();
+        builder.setSuccess(true);
+        builder.setErrCode(TErrCodeConstants.SUCCESS);
+        builder.setErrMsg("Ok");
+        builder.setMessageId(messageId.incrementAndGet());
+        builder.setAppendTime(System.currentTimeMillis());
+        return builder.build();
+    }
+
+    @Override
+    public ClientBroker.SendBatchMessageResponseB2P sendBatchMessageP2B(
+            ClientBroker.SendBatchMessageRequestP2B request,
+            String rmtAddress, boolean overtls) throws Throwable {
+        ClientBroker.SendBatchMessageResponseB2P.Builder builder =
+                ClientBroker.SendBatchMessageResponseB2P.newBuilder();
+        builder.setSuccess(true);
+        builder.setErrCode(TErrCodeConstants.SUCCESS);
+        builder.setErrMsg("Ok");
+        long lastMsgId = messageId.addAndGet(request.getMessagesCount());
+        for (int i = request.getMessagesCount() - 1; i >= 0; i--) {
+            builder.addMessageIds(lastMsgId - i);
+            builder.addAppendOffsets(-1L);
+        }
+        builder.setAppendTime(System.currentTimeMillis());
+        return builder.build();
+    }
+}
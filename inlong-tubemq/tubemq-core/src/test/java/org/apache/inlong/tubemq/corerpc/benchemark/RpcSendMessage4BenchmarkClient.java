@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.corerpc.benchemark;
+
+import com.google.protobuf.ByteString;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.inlong.tubemq.corebase.cluster.BrokerInfo;
+import org.apache.inlong.tubemq.corebase.protobuf.generated.ClientBroker;
+import org.apache.inlong.tubemq.corerpc.RpcConfig;
+import org.apache.inlong.tubemq.corerpc.RpcConstants;
+import org.apache.inlong.tubemq.corerpc.RpcServiceFactory;
+import org.apache.inlong.tubemq.corerpc.netty.NettyClientFactory;
+import org.apache.inlong.tubemq.corerpc.service.BrokerWriteService;
+
+/**
+ * Benchmark client of the message sending against RpcWriteService4BenchmarkServer, compares
+ * the msgs/s of sending the 100-byte messages one by one against sending them in batches,
+ * and the throughput of the RPC framing with 1KB and 64KB payloads.
+ *
+ * Usage: RpcSendMessage4BenchmarkClient [msgSize] [msgCount] [batchSize]
+ */
+public class RpcSendMessage4BenchmarkClient {
+
+    private final RpcServiceFactory rpcServiceFactory;
+    private final NettyClientFactory clientFactory = new NettyClientFactory();
+    private final BrokerWriteService writeService;
+    private final int threadNum;
+
+    /**
+     * Initial a benchmark client
+     *
+     * @param targetHost    the target host
+     * @param targetPort    the target port
+     * @param threadNum     the thread count
+     */
+    public RpcSendMessage4BenchmarkClient(String targetHost, int targetPort, int threadNum) {
+        this.threadNum = threadNum;
+        RpcConfig config = new RpcConfig();
+        config.put(RpcConstants.CONNECT_TIMEOUT, 3000);
+        config.put(RpcConstants.REQUEST_TIMEOUT, 10000);
+        clientFactory.configure(config);
+        rpcServiceFactory = new RpcServiceFactory(clientFactory);
+        BrokerInfo brokerInfo = new BrokerInfo(1, targetHost, targetPort);
+        this.writeService =
+                rpcServiceFactory.getService(BrokerWriteService.class, brokerInfo, config);
+    }
+
+    public static void main(String[] args) throws Exception {
+        RpcSendMessage4BenchmarkClient client =
+                new RpcSendMessage4BenchmarkClient("127.0.0.1",
+                        RpcWriteService4BenchmarkServer.WRITE_SERVICE_PORT, 10);
+        if (args.length >= 3) {
+            client.start(Integer.parseInt(args[0]),
+                    Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+            return;
+        }
+        // 100-byte messages, sent one by one and in batches
+        client.start(100, 100000, 1);
+        client.start(100, 100000, 100);
+        // 1KB and 64KB payloads
+        client.start(1024, 100000, 1);
+        client.start(64 * 1024, 5000, 1);
+    }
+
+    /**
+     * Start benchmark test
+     *
+     * @param msgSize     the message size
+     * @param msgCount    the message count sent by each thread
+     * @param batchSize   the messages sent by each request, 1 for the single message request
+     * @throws Exception  the exception
+     */
+    public void start(int msgSize, final int msgCount, final int batchSize) throws Exception {
+        byte[] data = new byte[msgSize];
+        for (int i = 0; i < msgSize; i++) {
+            data[i] = (byte) ('a' + i % 26);
+        }
+        final ByteString msgData = ByteString.copyFrom(data);
+        final AtomicLong sentCount = new AtomicLong(0);
+        final ExecutorService workers = Executors.newFixedThreadPool(threadNum);
+        final ClientBroker.SendMessageRequestP2B singleRequest = buildSingleRequest(msgData);
+        final ClientBroker.SendBatchMessageRequestP2B batchRequest = buildBatchRequest(msgData, batchSize);
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < threadNum; i++) {
+            workers.submit(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < msgCount; j += batchSize) {
+                            if (batchSize == 1) {
+                                writeService.sendMessageP2B(singleRequest, "127.0.0.1", false);
+                            } else {
+                                writeService.sendBatchMessageP2B(batchRequest, "127.0.0.1", false);
+                            }
+                            sentCount.addAndGet(batchSize);
+                        }
+                    } catch (Throwable e) {
+                        e.printStackTrace();
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        long costTime = Math.max(1L, System.currentTimeMillis() - startTime);
+        System.out.println(new StringBuilder(256)
+                .append("[Benchmark] batchSize=").append(batchSize)
+                .append(", msgSize=").append(msgData.size())
+                .append(", threads=").append(threadNum)
+                .append(", msgCount=").append(sentCount.get())
+                .append(", cost time=").append(costTime).append(" ms")
+                .append(", msgs/s=").append(sentCount.get() * 1000 / costTime)
+                .append(", MB/s=").append(sentCount.get() * msgSize * 1000
+                        / costTime / (1024 * 1024))
+                .toString());
+    }
+
+    private ClientBroker.SendMessageRequestP2B buildSingleRequest(ByteString msgData) {
+        ClientBroker.SendMessageRequestP2B.Builder builder =
+                ClientBroker.SendMessageRequestP2B.newBuilder();
+        builder.setClientId("benchmark");
+        builder.setTopicName("benchmark");
+        builder.setPartitionId(0);
+        builder.setData(msgData);
+        builder.setFlag(0);
+        builder.setCheckSum(-1);
+        builder.setSentAddr(0);
+        return builder.build();
+    }
+
+    private ClientBroker.SendBatchMessageRequestP2B buildBatchRequest(ByteString msgData,
+            int batchSize) {
+        ClientBroker.SendBatchMessageRequestP2B.Builder builder =
+                ClientBroker.SendBatchMessageRequestP2B.newBuilder();
+        builder.setClientId("benchmark");
+        builder.setTopicName("benchmark");
+        builder.setPartitionId(0);
+        builder.setSentAddr(0);
+        for (int i = 0; i < batchSize; i++) {
+            ClientBroker.BatchMessageItem.Builder itemBuilder =
+                    ClientBroker.BatchMessageItem.newBuilder();
+            itemBuilder.setData(msgData);
+            itemBuilder.setFlag(0);
+            itemBuilder.setCheckSum(-1);
+            builder.addMessages(itemBuilder);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.corerpc.benchemark;
+
+import java.util.concurrent.Executors;
+import org.apache.inlong.tubemq.corerpc.RpcConfig;
+import org.apache.inlong.tubemq.corerpc.RpcServiceFactory;
+import org.apache.inlong.tubemq.corerpc.service.BrokerWriteService;
+
+/**
+ * Benchmark server of the message sending, publishes the write service which
+ * acknowledges the sent messages without storing them.
+ */
+public class RpcWriteService4BenchmarkServer {
+
+    public static final int WRITE_SERVICE_PORT = 8089;
+    private final RpcServiceFactory rpcServiceFactory =
+            new RpcServiceFactory();
+
+    public static void main(String[] args) throws Exception {
+        new RpcWriteService4BenchmarkServer().start();
+    }
+
+    public void start() throws Exception {
+        RpcConfig config = new RpcConfig();
+        rpcServiceFactory.publishService(BrokerWriteService.class,
+                new DefaultWriteService4Benchmark(), WRITE_SERVICE_PORT,
+                Executors.newCachedThreadPool(), config);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.corerpc.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import java.nio.ByteBuffer;
+import java.util.List;
+import org.apache.inlong.tubemq.corebase.protobuf.generated.ClientBroker;
+import org.junit.Test;
+
+public class PbSegmentEncoderTest {
+
+    @Test
+    public void testEncodeGetMessageResponse() throws Exception {
+        ClientBroker.GetMessageResponseB2C.Builder builder =
+                ClientBroker.GetMessageResponseB2C.newBuilder();
+        builder.setSuccess(true);
+        builder.setErrCode(200);
+        builder.setErrMsg("Ok");
+        builder.setCurrOffset(1024L);
+        builder.setMaxOffset(4096L);
+        // small heap payload, large heap payload and large direct payload
+        builder.addMessages(buildMessage(1L, -1, 0,
+                ByteString.copyFrom(buildData(100))));
+        builder.addMessages(buildMessage(2L, 12345, 1,
+                ByteString.copyFrom(buildData(64 * 1024))));
+        ByteBuffer directData = ByteBuffer.allocateDirect(4096);
+        directData.put(buildData(4096));
+        directData.flip();
+        builder.addMessages(buildMessage(Long.MAX_VALUE, Integer.MIN_VALUE, 3,
+                UnsafeByteOperations.unsafeWrap(directData)));
+        ClientBroker.GetMessageResponseB2C response = builder.build();
+        List<ByteBuffer> segments = PbSegmentEncoder.encode(response);
+        // the large payloads are referenced as buffers of their own
+        assertTrue(segments.size() > 1);
+        assertEquals(response.getSerializedSize(),
+                PbSegmentEncoder.getSerializedSize(segments));
+        ClientBroker.GetMessageResponseB2C decoded =
+                ClientBroker.GetMessageResponseB2C.parseFrom(concat(segments));
+        assertEquals(response, decoded);
+    }
+
+    @Test
+    public void testEncodeGetMultiMessageResponse() throws Exception {
+        ClientBroker.GetMultiMessageResponseB2C.Builder builder =
+                ClientBroker.GetMultiMessageResponseB2C.newBuilder();
+        builder.setSuccess(true);
+        builder.setErrCode(200);
+        builder.setErrMsg("Ok");
+        ClientBroker.GetMessageResponseB2C.Builder subBuilder =
+                ClientBroker.GetMessageResponseB2C.newBuilder();
+        subBuilder.setSuccess(true);
+        subBuilder.setErrCode(200);
+        subBuilder.setCurrOffset(2048L);
+        subBuilder.addMessages(buildMessage(1L, 1, 0,
+                ByteString.copyFrom(buildData(100))));
+        subBuilder.addMessages(buildMessage(2L, -2, 0,
+                ByteString.copyFrom(buildData(32 * 1024))));
+        builder.addResponses(subBuilder.build());
+        // a failed partition between the succeeded ones
+        subBuilder.clear();
+        subBuilder.setSuccess(false);
+        subBuilder.setErrCode(404);
+        subBuilder.setErrMsg("not found");
+        builder.addResponses(subBuilder.build());
+        subBuilder.clear();
+        subBuilder.setSuccess(true);
+        subBuilder.setErrCode(200);
+        subBuilder.addMessages(buildMessage(3L, 3, 1,
+                ByteString.copyFrom(buildData(200 * 1024))));
+        builder.addResponses(subBuilder.build());
+        ClientBroker.GetMultiMessageResponseB2C response = builder.build();
+        List<ByteBuffer> segments = PbSegmentEncoder.encode(response);
+        assertTrue(segments.size() > 1);
+        assertEquals(response.getSerializedSize(),
+                PbSegmentEncoder.getSerializedSize(segments));
+        assertEquals(response,
+                ClientBroker.GetMultiMessageResponseB2C.parseFrom(concat(segments)));
+    }
+
+    @Test
+    public void testEncodeOtherMessage() throws Exception {
+        ClientBroker.GetMessageResponseB2C.Builder builder =
+                ClientBroker.GetMessageResponseB2C.newBuilder();
+        builder.setSuccess(false);
+        builder.setErrCode(404);
+        builder.setErrMsg("not found");
+        ClientBroker.GetMessageResponseB2C response = builder.build();
+        List<ByteBuffer> segments = PbSegmentEncoder.encode(response);
+        assertEquals(1, segments.size());
+        assertEquals(response, ClientBroker.GetMessageResponseB2C.parseFrom(concat(segments)));
+    }
+
+    private ClientBroker.TransferedMessage buildMessage(long msgId,
+            int checkSum, int flag, ByteString payLoad) {
+        ClientBroker.TransferedMessage.Builder builder =
+                ClientBroker.TransferedMessage.newBuilder();
+        builder.setMessageId(msgId);
+        builder.setCheckSum(checkSum);
+        builder.setFlag(flag);
+        builder.setPayLoadData(payLoad);
+        return builder.build();
+    }
+
+    private byte[] buildData(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) ('a' + i % 26);
+        }
+        return data;
+    }
+
+    private byte[] concat(List<ByteBuffer> segments) {
+        ByteBuffer result = ByteBuffer.allocate(PbSegmentEncoder.getSerializedSize(segments));
+        for (ByteBuffer segment : segments) {
+            result.put(segment.duplicate());
+        }
+        return result.array();
+    }
+}
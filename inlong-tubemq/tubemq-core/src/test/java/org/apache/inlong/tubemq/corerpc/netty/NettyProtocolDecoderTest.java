@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.corerpc.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import org.apache.inlong.tubemq.corerpc.RpcDataPack;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * NettyProtocolDecoder test.
+ */
+public class NettyProtocolDecoderTest {
+
+    @Test
+    public void decodeSplitFrames() throws Exception {
+        // build two RpcDataPacks and encode them
+        ByteBuf frames = Unpooled.buffer();
+        writeAndRelease(frames, encodePack(123, "abc", "defgh"));
+        writeAndRelease(frames, encodePack(456, "ijklmn"));
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyProtocolDecoder());
+        // feed the frames in small fragments
+        while (frames.isReadable()) {
+            channel.writeInbound(frames.readRetainedSlice(Math.min(5, frames.readableBytes())));
+        }
+        frames.release();
+        RpcDataPack first = channel.readInbound();
+        Assert.assertEquals(123, first.getSerialNo());
+        Assert.assertEquals(2, first.getDataLst().size());
+        Assert.assertEquals("abc", readString(first.getDataLst().get(0)));
+        Assert.assertEquals("defgh", readString(first.getDataLst().get(1)));
+        first.release();
+        RpcDataPack second = channel.readInbound();
+        Assert.assertEquals(456, second.getSerialNo());
+        Assert.assertEquals(1, second.getDataLst().size());
+        Assert.assertEquals("ijklmn", readString(second.getDataLst().get(0)));
+        second.release();
+        Assert.assertNull(channel.readInbound());
+        Assert.assertFalse(channel.finish());
+    }
+
+    private ByteBuf encodePack(int serialNo, String... contents) {
+        List<ByteBuffer> dataList = new LinkedList<>();
+        for (String content : contents) {
+            dataList.add(ByteBuffer.wrap(content.getBytes()));
+        }
+        List<Object> out = new ArrayList<>();
+        new NettyProtocolEncoder().encode(null, new RpcDataPack(serialNo, dataList), out);
+        return (ByteBuf) out.get(0);
+    }
+
+    private void writeAndRelease(ByteBuf target, ByteBuf source) {
+        target.writeBytes(source);
+        source.release();
+    }
+
+    private String readString(ByteBuffer buffer) {
+        byte[] content = new byte[buffer.remaining()];
+        buffer.duplicate().get(content);
+        return new String(content);
+    }
+}
@@ -127,6 +127,30 @@ public class BrokerConfig extends AbstractFileConfig {
             TServerConstants.CFG_DEFAULT_GROUP_OFFSET_SCAN_DUR;
     // whether to enable the memory cache storage, the default is true, open the memory cache
     private boolean enableMemStore = true;
+    // the maximum count of memory caches per message store, the writing cache is sealed
+    // and handed to the flush thread while appends continue into a free one
+    private int memStoreRingSize = TServerConstants.CFG_DEFAULT_MEM_STORE_RING_SIZE;
+    // whether consumers read the memory cache by slices of the cache segment instead of copies,
+    // the hit cache is pinned against reuse until the response is serialized
+    private boolean enableMemSliceRead = false;
+    // whether lagging consumers read the data files by coalesced range reads
+    // instead of reading and copying the messages one by one
+    private boolean enableFileRangeRead = false;
+    // whether to map the immutable index segments, index reads are then served without system calls
+    private boolean enableIndexMmap = false;
+    // whether to skip the index blocks of the other partitions when reading from file
+    private boolean enableIndexPartitionSkip = false;
+    // whether the disk syncs are batched by the group commit thread, and producers
+    // can require the sends to be acknowledged after the messages are synced to disk
+    private boolean enableGroupCommit = false;
+    // the max duration that a durable send waits for the disk sync
+    private long groupCommitMaxWaitMs = 3000;
+    // whether the confirmed offsets are stored in the broker local offset journal
+    private boolean enableOffsetJournal = false;
+    // whether the offsets are also committed to ZooKeeper when the offset journal is enabled
+    private boolean offsetJournalMirrorZk = true;
+    // the journal size which triggers the offset snapshot
+    private long offsetJournalCompactBytes = 64 * 1024 * 1024L;
 
     public BrokerConfig() {
         super();
@@ -136,6 +160,46 @@ public class BrokerConfig extends AbstractFileConfig {
         return enableMemStore;
     }
 
+    public int getMemStoreRingSize() {
+        return memStoreRingSize;
+    }
+
+    public boolean isEnableMemSliceRead() {
+        return enableMemSliceRead;
+    }
+
+    public boolean isEnableFileRangeRead() {
+        return enableFileRangeRead;
+    }
+
+    public boolean isEnableIndexMmap() {
+        return enableIndexMmap;
+    }
+
+    public boolean isEnableIndexPartitionSkip() {
+        return enableIndexPartitionSkip;
+    }
+
+    public boolean isEnableGroupCommit() {
+        return enableGroupCommit;
+    }
+
+    public long getGroupCommitMaxWaitMs() {
+        return groupCommitMaxWaitMs;
+    }
+
+    public boolean isEnableOffsetJournal() {
+        return enableOffsetJournal;
+    }
+
+    public boolean isOffsetJournalMirrorZk() {
+        return offsetJournalMirrorZk;
+    }
+
+    public long getOffsetJournalCompactBytes() {
+        return offsetJournalCompactBytes;
+    }
+
     public boolean isUpdateConsumerOffsets() {
         return this.updateConsumerOffsets;
     }
@@ -401,6 +465,45 @@ public class BrokerConfig extends AbstractFileConfig {
         if (TStringUtils.isNotBlank(brokerSect.get("enableMemStore"))) {
             this.enableMemStore = this.getBoolean(brokerSect, "enableMemStore");
         }
+        if (TStringUtils.isNotBlank(brokerSect.get("memStoreRingSize"))) {
+            this.memStoreRingSize =
+                    MixedUtils.mid(getInt(brokerSect, "memStoreRingSize"),
+                            TServerConstants.CFG_MIN_MEM_STORE_RING_SIZE,
+                            TServerConstants.CFG_MAX_MEM_STORE_RING_SIZE);
+        }
+        if (TStringUtils.isNotBlank(brokerSect.get("enableMemSliceRead"))) {
+            this.enableMemSliceRead = this.getBoolean(brokerSect, "enableMemSliceRead");
+        }
+        if (TStringUtils.isNotBlank(brokerSect.get("enableFileRangeRead"))) {
+            this.enableFileRangeRead = this.getBoolean(brokerSect, "enableFileRangeRead");
+        }
+        if (TStringUtils.isNotBlank(brokerSect.get("enableIndexMmap"))) {
+            this.enableIndexMmap = this.getBoolean(brokerSect, "enableIndexMmap");
+        }
+        if (TStringUtils.isNotBlank(brokerSect.get("enableIndexPartitionSkip"))) {
+            this.enableIndexPartitionSkip = this.getBoolean(brokerSect, "enableIndexPartitionSkip");
+        }
+        if (TStringUtils.isNotBlank(brokerSect.get("enableGroupCommit"))) {
+            this.enableGroupCommit = this.getBoolean(brokerSect, "enableGroupCommit");
+        }
+        if (TStringUtils.isNotBlank(brokerSect.get("groupCommitMaxWaitMs"))) {
+            this.groupCommitMaxWaitMs = this.getLong(brokerSect, "groupCommitMaxWaitMs");
+            if (this.groupCommitMaxWaitMs < 100) {
+                this.groupCommitMaxWaitMs = 100;
+            }
+        }
+        if (TStringUtils.isNotBlank(brokerSect.get("enableOffsetJournal"))) {
+            this.enableOffsetJournal = this.getBoolean(brokerSect, "enableOffsetJournal");
+        }
+        if (TStringUtils.isNotBlank(brokerSect.get("offsetJournalMirrorZk"))) {
+            this.offsetJournalMirrorZk = this.getBoolean(brokerSect, "offsetJournalMirrorZk");
+        }
+        if (TStringUtils.isNotBlank(brokerSect.get("offsetJournalCompactBytes"))) {
+            this.offsetJournalCompactBytes = this.getLong(brokerSect, "offsetJournalCompactBytes");
+            if (this.offsetJournalCompactBytes < 1024 * 1024L) {
+                this.offsetJournalCompactBytes = 1024 * 1024L;
+            }
+        }
     }
 
     public long getLogClearupDurationMs() {
@@ -24,7 +24,9 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.commons.codec.binary.Base64;
@@ -35,14 +37,19 @@ import org.apache.inlong.tubemq.corebase.TErrCodeConstants;
 import org.apache.inlong.tubemq.corebase.TokenConstants;
 import org.apache.inlong.tubemq.corebase.cluster.Partition;
 import org.apache.inlong.tubemq.corebase.config.TLSConfig;
+import org.apache.inlong.tubemq.corebase.protobuf.generated.ClientBroker.BatchMessageItem;
 import org.apache.inlong.tubemq.corebase.protobuf.generated.ClientBroker.CommitOffsetRequestC2B;
 import org.apache.inlong.tubemq.corebase.protobuf.generated.ClientBroker.CommitOffsetResponseB2C;
 import org.apache.inlong.tubemq.corebase.protobuf.generated.ClientBroker.GetMessageRequestC2B;
 import org.apache.inlong.tubemq.corebase.protobuf.generated.ClientBroker.GetMessageResponseB2C;
+import org.apache.inlong.tubemq.corebase.protobuf.generated.ClientBroker.GetMultiMessageRequestC2B;
+import org.apache.inlong.tubemq.corebase.protobuf.generated.ClientBroker.GetMultiMessageResponseB2C;
 import org.apache.inlong.tubemq.corebase.protobuf.generated.ClientBroker.HeartBeatRequestC2B;
 import org.apache.inlong.tubemq.corebase.protobuf.generated.ClientBroker.HeartBeatResponseB2C;
 import org.apache.inlong.tubemq.corebase.protobuf.generated.ClientBroker.RegisterRequestC2B;
 import org.apache.inlong.tubemq.corebase.protobuf.generated.ClientBroker.RegisterResponseB2C;
+import org.apache.inlong.tubemq.corebase.protobuf.generated.ClientBroker.SendBatchMessageRequestP2B;
+import org.apache.inlong.tubemq.corebase.protobuf.generated.ClientBroker.SendBatchMessageResponseB2P;
 import org.apache.inlong.tubemq.corebase.protobuf.generated.ClientBroker.SendMessageRequestP2B;
 import org.apache.inlong.tubemq.corebase.protobuf.generated.ClientBroker.SendMessageResponseB2P;
 import org.apache.inlong.tubemq.corebase.protobuf.generated.ClientBroker.TransferedMessage;
@@ -55,11 +62,14 @@ import org.apache.inlong.tubemq.corebase.utils.ServiceStatusHolder;
 import org.apache.inlong.tubemq.corebase.utils.TStringUtils;
 import org.apache.inlong.tubemq.corerpc.RpcConfig;
 import org.apache.inlong.tubemq.corerpc.RpcConstants;
+import org.apache.inlong.tubemq.corerpc.server.DeferredResponseHolder;
+import org.apache.inlong.tubemq.corerpc.server.ResponseResourceHolder;
 import org.apache.inlong.tubemq.corerpc.service.BrokerReadService;
 import org.apache.inlong.tubemq.corerpc.service.BrokerWriteService;
 import org.apache.inlong.tubemq.server.Server;
 import org.apache.inlong.tubemq.server.broker.metadata.MetadataManager;
 import org.apache.inlong.tubemq.server.broker.metadata.TopicMetadata;
+import org.apache.inlong.tubemq.server.broker.msgstore.GroupCommitSyncer;
 import org.apache.inlong.tubemq.server.broker.msgstore.MessageStore;
 import org.apache.inlong.tubemq.server.broker.msgstore.MessageStoreManager;
 import org.apache.inlong.tubemq.server.broker.msgstore.disk.GetMessageResult;
@@ -67,6 +77,7 @@ import org.apache.inlong.tubemq.server.broker.nodeinfo.ConsumerNodeInfo;
 import org.apache.inlong.tubemq.server.broker.offset.OffsetHistoryInfo;
 import org.apache.inlong.tubemq.server.broker.offset.OffsetService;
 import org.apache.inlong.tubemq.server.broker.stats.BrokerSrvStatsHolder;
+import org.apache.inlong.tubemq.server.broker.stats.TrafficStatsKey;
 import org.apache.inlong.tubemq.server.broker.stats.TrafficStatsService;
 import org.apache.inlong.tubemq.server.broker.stats.audit.AuditUtils;
 import org.apache.inlong.tubemq.server.common.TServerConstants;
@@ -81,6 +92,7 @@ import org.apache.inlong.tubemq.server.common.heartbeat.TimeoutListener;
 import org.apache.inlong.tubemq.server.broker.offset.offsetstorage.OffsetStorageInfo;
 import org.apache.inlong.tubemq.server.common.paramcheck.PBParameterUtils;
 import org.apache.inlong.tubemq.server.common.utils.AppendResult;
+import org.apache.inlong.tubemq.server.common.utils.BatchAppendItem;
 import org.apache.inlong.tubemq.server.common.utils.RowLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -378,13 +390,27 @@ public class BrokerServiceServer implements BrokerReadService, BrokerWriteServic
             GetMessageResult msgResult =
                     getMessages(dataStore, consumerNodeInfo, groupName, topicName, partitionId,
                             request.getLastPackConsumed(), request.getManualCommitOffset(),
-                            clientId, this.tubeConfig.getHostName(), rmtAddrInfo, isEscFlowCtrl, strBuffer);
+                            isEscFlowCtrl, strBuffer);
             if (msgResult.isSuccess) {
                 long endTime = System.currentTimeMillis();
                 consumerNodeInfo.setLastProcInfo(endTime,
                         msgResult.lastRdDataOffset, msgResult.totalMsgSize);
-                getCounterGroup.add(msgResult.tmpCounters);
-                AuditUtils.addConsumeRecord(msgResult.tmpCounters);
+                if (!msgResult.tmpCounters.isEmpty()) {
+                    // the key is built once per consumer of the partition
+                    TrafficStatsKey statsKey = consumerNodeInfo.getTrafficStatsKey();
+                    if (statsKey == null) {
+                        statsKey = getCounterGroup.getStatsKey(strBuffer.append(topicName)
+                                .append(TokenConstants.SEGMENT_SEP).append(tubeConfig.getHostName())
+                                .append(TokenConstants.SEGMENT_SEP).append(clientId)
+                                .append(TokenConstants.SEGMENT_SEP).append(rmtAddrInfo)
+                                .append(TokenConstants.SEGMENT_SEP).append(groupName)
+                                .append(TokenConstants.SEGMENT_SEP).append(partitionId).toString());
+                        strBuffer.delete(0, strBuffer.length());
+                        consumerNodeInfo.setTrafficStatsKey(statsKey);
+                    }
+                    getCounterGroup.add(statsKey, msgResult.tmpCounters);
+                    AuditUtils.addConsumeRecord(topicName, groupName, msgResult.tmpCounters);
+                }
                 builder.setEscFlowCtrl(false);
                 builder.setRequireSlow(msgResult.isSlowFreq);
                 builder.setSuccess(true);
@@ -422,6 +448,50 @@ public class BrokerServiceServer implements BrokerReadService, BrokerWriteServic
         }
     }
 
+    /**
+     * Handle the multi-partition GetMessage request of a consumer, the partitions
+     * are read one by one as the single partition requests, and their responses
+     * are returned in the order of the requests.
+     *
+     * @param request        the multi-partition request
+     * @param rmtAddress     the remote node address
+     * @param overtls        whether over TLS
+     * @return               the response message
+     * @throws Throwable     the exception during processing
+     */
+    @Override
+    public GetMultiMessageResponseB2C getMultiMessagesC2B(GetMultiMessageRequestC2B request,
+            final String rmtAddress,
+            boolean overtls) throws Throwable {
+        final GetMultiMessageResponseB2C.Builder builder =
+                GetMultiMessageResponseB2C.newBuilder();
+        builder.setSuccess(false);
+        if (request.getRequestsCount() == 0
+                || request.getRequestsCount() > TBaseConstants.META_MAX_MULTI_FETCH_PARTITION_COUNT) {
+            builder.setErrCode(TErrCodeConstants.BAD_REQUEST);
+            builder.setErrMsg(new StringBuilder(512)
+                    .append("The partition count of the request must be in [1, ")
+                    .append(TBaseConstants.META_MAX_MULTI_FETCH_PARTITION_COUNT)
+                    .append("], current is ").append(request.getRequestsCount()).toString());
+            return builder.build();
+        }
+        for (GetMessageRequestC2B partRequest : request.getRequestsList()) {
+            if (!request.getClientId().equals(partRequest.getClientId())
+                    || !request.getGroupName().equals(partRequest.getGroupName())) {
+                builder.setErrCode(TErrCodeConstants.BAD_REQUEST);
+                builder.setErrMsg("The partition requests must belong to the requesting consumer!");
+                return builder.build();
+            }
+        }
+        for (GetMessageRequestC2B partRequest : request.getRequestsList()) {
+            builder.addResponses(getMessagesC2B(partRequest, rmtAddress, overtls));
+        }
+        builder.setSuccess(true);
+        builder.setErrCode(TErrCodeConstants.SUCCESS);
+        builder.setErrMsg("OK!");
+        return builder.build();
+    }
+
     /**
      * Query offset, then read data.
      *
@@ -432,9 +502,6 @@ public class BrokerServiceServer implements BrokerReadService, BrokerWriteServic
      * @param partitionId             the partition id
      * @param lastConsumed            whether the last messages has been consumed
      * @param isManualCommitOffset    whether manual commit offset
-     * @param sentAddr                the remote ip
-     * @param brokerAddr              the broker ip
-     * @param rmtAddrInfo             the remote address
      * @param isEscFlowCtrl           whether escape flow control
      * @param sb                      the string buffer
      * @return    the query result
@@ -444,9 +511,7 @@ public class BrokerServiceServer implements BrokerReadService, BrokerWriteServic
             final ConsumerNodeInfo consumerNodeInfo,
             final String group, final String topic,
             final int partitionId, final boolean lastConsumed,
-            final boolean isManualCommitOffset, final String sentAddr,
-            final String brokerAddr, final String rmtAddrInfo,
-            boolean isEscFlowCtrl, final StringBuilder sb) throws IOException {
+            final boolean isManualCommitOffset, boolean isEscFlowCtrl, final StringBuilder sb) throws IOException {
         long requestOffset =
                 offsetManager.getOffset(msgStore, group, topic,
                         partitionId, isManualCommitOffset, lastConsumed, sb);
@@ -469,13 +534,20 @@ public class BrokerServiceServer implements BrokerReadService, BrokerWriteServic
             }
         }
         try {
-            String baseKey = sb.append(topic).append("#").append(brokerAddr)
-                    .append("#").append(sentAddr).append("#").append(rmtAddrInfo)
-                    .append("#").append(group).append("#").append(partitionId).toString();
-            sb.delete(0, sb.length());
-            GetMessageResult msgQueryResult =
-                    msgStore.getMessages(reqSwitch, requestOffset,
-                            partitionId, consumerNodeInfo, baseKey, msgDataSizeLimit, 0);
+            final GetMessageResult msgQueryResult =
+                    msgStore.getMessages(reqSwitch, requestOffset, partitionId,
+                            consumerNodeInfo, msgDataSizeLimit, 0,
+                            tubeConfig.isEnableMemSliceRead());
+            if (msgQueryResult.hasPinnedMemStore()) {
+                // the payloads reference the memory cache, unpin it after the response is written
+                ResponseResourceHolder.register(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        msgQueryResult.releaseReadRef();
+                    }
+                });
+            }
             offsetManager.bookOffset(group, topic, partitionId,
                     msgQueryResult.lastReadOffset, isManualCommitOffset,
                     msgQueryResult.transferedMessageList.isEmpty(), sb);
@@ -695,6 +767,17 @@ public class BrokerServiceServer implements BrokerReadService, BrokerWriteServic
                 builder.setAppendTime(appendResult.getAppendTime());
                 builder.setAppendOffset(appendResult.getAppendIndexOffset());
                 BrokerSrvStatsHolder.updSendMsgLatency(System.currentTimeMillis() - startTime);
+                if (request.getRequireDurable() && store.isGroupCommitEnabled()) {
+                    final SendMessageResponseB2P successResponse = builder.build();
+                    strBuffer.delete(0, strBuffer.length());
+                    builder.setSuccess(false);
+                    builder.setErrCode(TErrCodeConstants.SERVICE_UNAVAILABLE);
+                    builder.setErrMsg(strBuffer.append("Sync message to disk failed from ")
+                            .append(tubeConfig.getHostName()).toString());
+                    deferDurableResponse(store, appendResult.getAppendIndexOffset(),
+                            successResponse, builder.build());
+                    return null;
+                }
                 return builder.build();
             } else {
                 builder.setErrCode(TErrCodeConstants.SERVER_RECEIVE_OVERFLOW);
@@ -715,6 +798,192 @@ public class BrokerServiceServer implements BrokerReadService, BrokerWriteServic
         }
     }
 
+    /**
+     * Handle producer's sendBatchMessage request, the messages of the batch
+     * are appended to the partition's store together.
+     *
+     * @param request       the request
+     * @param rmtAddress    the remote ip
+     * @param overtls       whether transfer over TLS
+     * @return              the response
+     * @throws Throwable    the exception during processing
+     */
+    @Override
+    public SendBatchMessageResponseB2P sendBatchMessageP2B(SendBatchMessageRequestP2B request,
+            final String rmtAddress,
+            boolean overtls) throws Throwable {
+        ProcessResult result = new ProcessResult();
+        final long startTime = System.currentTimeMillis();
+        final StringBuilder strBuffer = new StringBuilder(512);
+        SendBatchMessageResponseB2P.Builder builder = SendBatchMessageResponseB2P.newBuilder();
+        builder.setSuccess(false);
+        if (!this.started.get()
+                || ServiceStatusHolder.isWriteServiceStop()) {
+            builder.setErrCode(TErrCodeConstants.SERVICE_UNAVAILABLE);
+            builder.setErrMsg("Write StoreService temporary unavailable!");
+            return builder.build();
+        }
+        CertifiedResult certResult =
+                serverAuthHandler.identityValidUserInfo(request.getAuthInfo(), true);
+        if (!certResult.result) {
+            builder.setErrCode(certResult.errCode);
+            builder.setErrMsg(certResult.errInfo);
+            return builder.build();
+        }
+        // get and check clientId field
+        if (!PBParameterUtils.getStringParameter(WebFieldDef.CLIENTID,
+                request.getClientId(), strBuffer, result)) {
+            builder.setErrCode(result.getErrCode());
+            builder.setErrMsg(result.getErrMsg());
+            return builder.build();
+        }
+        // get and check topicName and partitionId field
+        final int partitionId = request.getPartitionId();
+        if (!PBParameterUtils.getTopicNamePartIdInfo(true, request.getTopicName(),
+                partitionId, this.metadataManager, strBuffer, result)) {
+            builder.setErrCode(result.getErrCode());
+            builder.setErrMsg(result.getErrMsg());
+            return builder.build();
+        }
+        final TopicMetadata topicMetadata = (TopicMetadata) result.getRetData();
+        final String topicName = topicMetadata.getTopic();
+        if (request.getMessagesCount() == 0) {
+            builder.setErrCode(TErrCodeConstants.BAD_REQUEST);
+            builder.setErrMsg("message batch is empty!");
+            return builder.build();
+        }
+        // check each message of the batch, a failed message rejects the whole batch
+        String lastAuthMsgType = null;
+        final List<BatchAppendItem> batchItems = new ArrayList<>(request.getMessagesCount());
+        for (BatchMessageItem msgItem : request.getMessagesList()) {
+            String msgType = null;
+            int msgTypeCode = -1;
+            if (TStringUtils.isNotBlank(msgItem.getMsgType())) {
+                msgType = msgItem.getMsgType().trim();
+                msgTypeCode = msgType.hashCode();
+            }
+            final byte[] msgData = msgItem.getData().toByteArray();
+            final int dataLength = msgData.length;
+            if (dataLength <= 0) {
+                builder.setErrCode(TErrCodeConstants.BAD_REQUEST);
+                builder.setErrMsg("data length is zero!");
+                return builder.build();
+            }
+            if (dataLength > topicMetadata.getMaxMsgSize()) {
+                builder.setErrCode(TErrCodeConstants.BAD_REQUEST);
+                builder.setErrMsg(strBuffer.append("data length over max length, allowed max length is ")
+                        .append(topicMetadata.getMaxMsgSize())
+                        .append(", data length is ").append(dataLength).toString());
+                return builder.build();
+            }
+            int checkSum = CheckSum.crc32(msgData);
+            if (msgItem.getCheckSum() != -1 && checkSum != msgItem.getCheckSum()) {
+                builder.setErrCode(TErrCodeConstants.FORBIDDEN);
+                builder.setErrMsg(strBuffer.append("Checksum msg data failure: ")
+                        .append(msgItem.getCheckSum()).append(" of ").append(topicName)
+                        .append(" not equal to the data's checksum of ")
+                        .append(checkSum).toString());
+                return builder.build();
+            }
+            // the messages of a batch mostly share the message type, authorize once for it
+            if (batchItems.isEmpty() || !Objects.equals(lastAuthMsgType, msgType)) {
+                CertifiedResult authorizeResult =
+                        serverAuthHandler.validProduceAuthorizeInfo(
+                                certResult.userName, topicName, msgType, rmtAddress);
+                if (!authorizeResult.result) {
+                    builder.setErrCode(authorizeResult.errCode);
+                    builder.setErrMsg(authorizeResult.errInfo);
+                    return builder.build();
+                }
+                lastAuthMsgType = msgType;
+            }
+            batchItems.add(new BatchAppendItem(dataLength,
+                    checkSum, msgData, msgTypeCode, msgItem.getFlag()));
+        }
+        try {
+            final MessageStore store =
+                    this.storeManager.getOrCreateMessageStore(topicName, partitionId);
+            if (store.appendMsgBatch(batchItems, partitionId, request.getSentAddr())) {
+                final String sentAddr = AddressUtils.intToIp(request.getSentAddr());
+                long maxIndexOffset = -1L;
+                for (int i = 0; i < batchItems.size(); i++) {
+                    BatchMessageItem msgItem = request.getMessages(i);
+                    AppendResult appendResult = batchItems.get(i).getAppendResult();
+                    strBuffer.delete(0, strBuffer.length());
+                    String baseKey = strBuffer.append(topicName)
+                            .append("#").append(sentAddr)
+                            .append("#").append(tubeConfig.getHostName())
+                            .append("#").append(partitionId)
+                            .append("#").append(msgItem.getMsgTime()).toString();
+                    putCounterGroup.add(baseKey, 1L, batchItems.get(i).getDataLength());
+                    AuditUtils.addProduceRecord(topicName, msgItem.getMsgType(),
+                            msgItem.getMsgTime(), 1, batchItems.get(i).getDataLength());
+                    builder.addMessageIds(appendResult.getMsgId());
+                    builder.addAppendOffsets(appendResult.getAppendIndexOffset());
+                    maxIndexOffset = Math.max(maxIndexOffset, appendResult.getAppendIndexOffset());
+                }
+                strBuffer.delete(0, strBuffer.length());
+                builder.setSuccess(true);
+                builder.setRequireAuth(certResult.reAuth);
+                builder.setErrCode(TErrCodeConstants.SUCCESS);
+                builder.setErrMsg("Ok");
+                builder.setAppendTime(batchItems.get(0).getAppendResult().getAppendTime());
+                BrokerSrvStatsHolder.updSendMsgLatency(System.currentTimeMillis() - startTime);
+                if (request.getRequireDurable() && store.isGroupCommitEnabled()) {
+                    final SendBatchMessageResponseB2P successResponse = builder.build();
+                    builder.clearMessageIds();
+                    builder.clearAppendOffsets();
+                    builder.setSuccess(false);
+                    builder.setErrCode(TErrCodeConstants.SERVICE_UNAVAILABLE);
+                    builder.setErrMsg(strBuffer.append("Sync message batch to disk failed from ")
+                            .append(tubeConfig.getHostName()).toString());
+                    deferDurableResponse(store, maxIndexOffset,
+                            successResponse, builder.build());
+                    return null;
+                }
+                return builder.build();
+            } else {
+                strBuffer.delete(0, strBuffer.length());
+                builder.setErrCode(TErrCodeConstants.SERVER_RECEIVE_OVERFLOW);
+                builder.setErrMsg(strBuffer.append("Put message batch failed from ")
+                        .append(tubeConfig.getHostName())
+                        .append(", server receive message overflow!").toString());
+                return builder.build();
+            }
+        } catch (final Throwable ex) {
+            logger.error("Put message batch failed ", ex);
+            strBuffer.delete(0, strBuffer.length());
+            builder.setSuccess(false);
+            builder.setErrCode(TErrCodeConstants.INTERNAL_SERVER_ERROR);
+            builder.setErrMsg(strBuffer.append("Put message batch failed from ")
+                    .append(tubeConfig.getHostName()).append(" ")
+                    .append((ex.getMessage() != null ? ex.getMessage() : " ")).toString());
+            return builder.build();
+        }
+    }
+
+    /**
+     * Defer the response of a durable send, it is written once the group commit
+     * thread has synced the appended messages to disk, or the wait failed.
+     *
+     * @param store             the message store of the appended messages
+     * @param maxIndexOffset    the max index offset of the appended messages
+     * @param successResponse   the response if synced
+     * @param failureResponse   the response if the sync failed or timeout
+     */
+    private void deferDurableResponse(MessageStore store, long maxIndexOffset,
+            final Object successResponse, final Object failureResponse) {
+        final CompletableFuture<Object> durableResult = new CompletableFuture<>();
+        DeferredResponseHolder.defer(durableResult);
+        store.waitForDurable(maxIndexOffset, new GroupCommitSyncer.DurableCallback() {
+
+            @Override
+            public void onDurable(boolean isSynced) {
+                durableResult.complete(isSynced ? successResponse : failureResponse);
+            }
+        });
+    }
+
     /**
      * append group current offset to storage
      *
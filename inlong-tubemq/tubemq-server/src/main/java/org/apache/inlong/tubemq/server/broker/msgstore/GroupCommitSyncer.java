@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.server.broker.msgstore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.inlong.tubemq.server.broker.stats.BrokerSrvStatsHolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Group commit thread of one disk.
+ *
+ * The message stores on the disk request their syncs here instead of forcing the
+ * files on the appending threads; the thread drains all the pending requests and
+ * syncs each store once, so the appends and the durable sends arrived during one
+ * sync are covered by the next single sync of their store.
+ */
+public class GroupCommitSyncer implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(GroupCommitSyncer.class);
+    private static final long SYNC_CHECK_WAIT_MS = 100L;
+    private final String storePath;
+    private final LinkedBlockingQueue<MessageStore> pendingStores =
+            new LinkedBlockingQueue<>();
+    private final AtomicBoolean stopped = new AtomicBoolean(false);
+    private final Thread syncThread;
+
+    public GroupCommitSyncer(String storePath) {
+        this.storePath = storePath;
+        this.syncThread = new Thread(this,
+                new StringBuilder(256).append("Broker Group Commit Thread-")
+                        .append(storePath).toString());
+        this.syncThread.setDaemon(true);
+    }
+
+    public void start() {
+        this.syncThread.start();
+        logger.info("[Group Commit] Started group commit thread of {}", storePath);
+    }
+
+    /**
+     * Request a sync of the message store, the store is queued once
+     * until its sync begins.
+     *
+     * @param messageStore   the message store to sync
+     */
+    public void requestSync(MessageStore messageStore) {
+        if (messageStore.markSyncPending()) {
+            pendingStores.offer(messageStore);
+        }
+    }
+
+    public void close() {
+        if (this.stopped.compareAndSet(false, true)) {
+            this.syncThread.interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        List<MessageStore> syncStores = new ArrayList<>();
+        while (!stopped.get()) {
+            try {
+                MessageStore firstStore =
+                        pendingStores.poll(SYNC_CHECK_WAIT_MS, TimeUnit.MILLISECONDS);
+                if (firstStore == null) {
+                    continue;
+                }
+                syncStores.add(firstStore);
+                pendingStores.drainTo(syncStores);
+                for (MessageStore messageStore : syncStores) {
+                    long startTime = System.currentTimeMillis();
+                    if (messageStore.groupCommit()) {
+                        BrokerSrvStatsHolder.updFileFsyncDlt(
+                                System.currentTimeMillis() - startTime);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Throwable e) {
+                logger.error("[Group Commit] Sync message stores failure", e);
+            } finally {
+                syncStores.clear();
+            }
+        }
+        logger.info("[Group Commit] Stopped group commit thread of {}", storePath);
+    }
+
+    /**
+     * Callback of a durable send, called by the group commit thread.
+     */
+    public interface DurableCallback {
+
+        /**
+         * Called once the messages are synced, or the wait failed.
+         *
+         * @param isSynced   whether the messages have been synced to disk
+         */
+        void onDurable(boolean isSynced);
+    }
+}
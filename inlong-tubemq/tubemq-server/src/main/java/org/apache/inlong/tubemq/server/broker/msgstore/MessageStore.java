@@ -20,9 +20,11 @@ package org.apache.inlong.tubemq.server.broker.msgstore;
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -46,10 +48,12 @@ import org.apache.inlong.tubemq.server.broker.msgstore.disk.Segment;
 import org.apache.inlong.tubemq.server.broker.msgstore.mem.GetCacheMsgResult;
 import org.apache.inlong.tubemq.server.broker.msgstore.mem.MsgMemStore;
 import org.apache.inlong.tubemq.server.broker.nodeinfo.ConsumerNodeInfo;
+import org.apache.inlong.tubemq.server.broker.stats.BrokerSrvStatsHolder;
+import org.apache.inlong.tubemq.server.broker.stats.FetchTrafficInfo;
 import org.apache.inlong.tubemq.server.broker.stats.MsgStoreStatsHolder;
-import org.apache.inlong.tubemq.server.broker.stats.TrafficInfo;
 import org.apache.inlong.tubemq.server.broker.utils.DataStoreUtils;
 import org.apache.inlong.tubemq.server.common.utils.AppendResult;
+import org.apache.inlong.tubemq.server.common.utils.BatchAppendItem;
 import org.apache.inlong.tubemq.server.common.utils.IdWorker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -64,7 +68,6 @@ public class MessageStore implements Closeable {
     private static final long FLUSH_CONDITION_WAIT_DLT_NS =
             TimeUnit.MILLISECONDS.toNanos(100);
     private final ReentrantLock flushMutex = new ReentrantLock();
-    private final AtomicBoolean hasFlushBeenTriggered = new AtomicBoolean(false);
     private final TopicMetadata topicMetadata;
     // sequencer id generator.
     private final IdWorker idWorker;
@@ -78,7 +81,6 @@ public class MessageStore implements Closeable {
     private final MsgFileStore msgFileStore;
     private final ReentrantReadWriteLock writeCacheMutex = new ReentrantReadWriteLock();
     private final Condition flushWriteCacheCondition = writeCacheMutex.writeLock().newCondition();
-    private final AtomicBoolean isFlushOngoing = new AtomicBoolean(false);
     private final ExecutorService executor = Executors.newSingleThreadExecutor();
     private final AtomicBoolean closed = new AtomicBoolean(false);
     private volatile int partitionNum;
@@ -101,8 +103,24 @@ public class MessageStore implements Closeable {
             new AtomicInteger(this.fileMaxFilterIndexReadCnt.get() * DataStoreUtils.STORE_INDEX_HEAD_LEN);
     private final AtomicInteger fileLowReqMaxFilterIndexReadSize =
             new AtomicInteger(this.fileLowReqMaxFilterIndexReadCnt.get() * DataStoreUtils.STORE_INDEX_HEAD_LEN);
+    // the maximum count of memory caches, include the writing one
+    private final int memStoreRingSize;
+    // the count of memory caches allocated
+    private int allocatedMemStoreCnt = 0;
+    // the sealed caches waiting to be flushed, ordered by offset
+    private final ArrayDeque<MsgMemStore> sealedMemStores = new ArrayDeque<>();
+    // the flushed caches can be reused for writing
+    private final ArrayDeque<MsgMemStore> idleMemStores = new ArrayDeque<>();
+    // whether the oldest sealed cache failed to flush and waits for the retry
+    private final AtomicBoolean flushRetryRequired = new AtomicBoolean(false);
     private MsgMemStore msgMemStore;
-    private MsgMemStore msgMemStoreBeingFlush;
+    // the group commit syncer of the store's disk, null if group commit is disabled
+    private final GroupCommitSyncer groupCommitSyncer;
+    // whether the store is queued in the group commit syncer
+    private final AtomicBoolean syncPending = new AtomicBoolean(false);
+    // the durable sends waiting for the disk sync
+    private final ConcurrentLinkedQueue<DurableWaiter> durableWaiters =
+            new ConcurrentLinkedQueue<>();
 
     /**
      * MessageStore, initial message store block
@@ -160,12 +178,17 @@ public class MessageStore implements Closeable {
         fileMaxFilterIndexReadSize.set(this.fileMaxFilterIndexReadCnt.get() * DataStoreUtils.STORE_INDEX_HEAD_LEN);
         fileLowReqMaxFilterIndexReadSize.set(
                 this.fileLowReqMaxFilterIndexReadCnt.get() * DataStoreUtils.STORE_INDEX_HEAD_LEN);
+        this.memStoreRingSize = tubeConfig.getMemStoreRingSize();
+        if (this.tubeConfig.isEnableGroupCommit() && messageStoreManager != null) {
+            this.groupCommitSyncer = messageStoreManager.getGroupCommitSyncer(this.primStorePath);
+        } else {
+            this.groupCommitSyncer = null;
+        }
         this.msgFileStore = new MsgFileStore(this, this.tubeConfig, this.primStorePath, offsetIfCreate);
         if (this.tubeConfig.isEnableMemStore()) {
             this.msgMemStore = new MsgMemStore(this.writeCacheMaxSize, this.writeCacheMaxCnt,
                     this.msgFileStore.getDataMaxOffset(), this.msgFileStore.getIndexMaxOffset());
-            this.msgMemStoreBeingFlush = new MsgMemStore(this.writeCacheMaxSize, this.writeCacheMaxCnt,
-                    this.msgFileStore.getDataMaxOffset(), this.msgFileStore.getIndexMaxOffset());
+            this.allocatedMemStoreCnt = 1;
             this.lastMemFlushTime.set(System.currentTimeMillis());
         }
     }
@@ -177,7 +200,6 @@ public class MessageStore implements Closeable {
      * @param requestOffset        the request offset to read
      * @param partitionId          the partitionId for reading messages
      * @param consumerNodeInfo     the consumer object
-     * @param statsKeyBase        the statistical key prefix
      * @param msgSizeLimit         the max read size
      * @param reqRcvTime           the timestamp of the record to be checked
      * @return                     read result
@@ -185,8 +207,33 @@ public class MessageStore implements Closeable {
      */
     public GetMessageResult getMessages(int reqSwitch, long requestOffset,
             int partitionId, ConsumerNodeInfo consumerNodeInfo,
-            String statsKeyBase, int msgSizeLimit,
+            int msgSizeLimit,
             long reqRcvTime) throws IOException {
+        return getMessages(reqSwitch, requestOffset, partitionId,
+                consumerNodeInfo, msgSizeLimit, reqRcvTime, false);
+    }
+
+    /**
+     * Get message from message store. Support the given offset, filter.
+     *
+     * When isSliceRead is true, messages read from the memory cache reference the
+     * cache segment directly, and the hit cache stays pinned until
+     * {@link GetMessageResult#releaseReadRef()} is called by the caller.
+     *
+     * @param reqSwitch            read message from where
+     * @param requestOffset        the request offset to read
+     * @param partitionId          the partitionId for reading messages
+     * @param consumerNodeInfo     the consumer object
+     * @param msgSizeLimit         the max read size
+     * @param reqRcvTime           the timestamp of the record to be checked
+     * @param isSliceRead          whether read the memory cache without copy
+     * @return                     read result
+     * @throws IOException         the exception during processing
+     */
+    public GetMessageResult getMessages(int reqSwitch, long requestOffset,
+            int partitionId, ConsumerNodeInfo consumerNodeInfo,
+            int msgSizeLimit,
+            long reqRcvTime, boolean isSliceRead) throws IOException {
         // #lizard forgives
         if (this.closed.get()) {
             throw new IllegalStateException(new StringBuilder(512)
@@ -195,6 +242,7 @@ public class MessageStore implements Closeable {
         }
         int result = 0;
         boolean inMemCache = false;
+        MsgMemStore pinnedMemStore = null;
         int maxIndexReadLength = memMaxIndexReadCnt.get();
         GetCacheMsgResult memMsgRlt = new GetCacheMsgResult(false, TErrCodeConstants.NOT_FOUND,
                 requestOffset, "Can't found Message by index in cache");
@@ -210,27 +258,55 @@ public class MessageStore implements Closeable {
                     this.writeCacheMutex.readLock().lock();
                     try {
                         maxIndexOffset = this.msgMemStore.getIndexLastWritePos();
-                        result = this.msgMemStoreBeingFlush.isOffsetInHold(requestOffset);
+                        // search the sealed caches from the oldest one
+                        result = 1;
+                        MsgMemStore holdMemStore = null;
+                        MsgMemStore readMemStore = null;
+                        for (MsgMemStore sealedStore : this.sealedMemStores) {
+                            result = sealedStore.isOffsetInHold(requestOffset);
+                            if (result <= 0) {
+                                holdMemStore = sealedStore;
+                                break;
+                            }
+                        }
                         if (result >= 0) {
                             inMemCache = true;
                             if (result > 0) {
                                 if (reqSwitch > 2) {
+                                    readMemStore = msgMemStore;
+                                    if (isSliceRead) {
+                                        readMemStore.incReadRef();
+                                    }
                                     memMsgRlt =
                                             // read from main memory.
-                                            msgMemStore.getMessages(consumerNodeInfo.getLastDataRdOffset(),
+                                            readMemStore.getMessages(consumerNodeInfo.getLastDataRdOffset(),
                                                     requestOffset, msgStoreMgr.getMaxMsgTransferSize(),
                                                     maxIndexReadLength, partitionId, false,
                                                     consumerNodeInfo.isFilterConsume(),
-                                                    consumerNodeInfo.getFilterCondCodeSet(), reqRcvTime);
+                                                    consumerNodeInfo.getFilterCondCodeSet(),
+                                                    reqRcvTime, isSliceRead);
                                 }
                             } else {
-                                // read from backup memory.
+                                readMemStore = holdMemStore;
+                                if (isSliceRead) {
+                                    readMemStore.incReadRef();
+                                }
+                                // read from sealed memory.
                                 memMsgRlt =
-                                        msgMemStoreBeingFlush.getMessages(consumerNodeInfo.getLastDataRdOffset(),
+                                        readMemStore.getMessages(consumerNodeInfo.getLastDataRdOffset(),
                                                 requestOffset, msgStoreMgr.getMaxMsgTransferSize(),
                                                 maxIndexReadLength, partitionId, true,
                                                 consumerNodeInfo.isFilterConsume(),
-                                                consumerNodeInfo.getFilterCondCodeSet(), reqRcvTime);
+                                                consumerNodeInfo.getFilterCondCodeSet(),
+                                                reqRcvTime, isSliceRead);
+                            }
+                            // keep the cache pinned only when slices are returned
+                            if (isSliceRead && readMemStore != null) {
+                                if (memMsgRlt.isSuccess && !memMsgRlt.cacheMsgList.isEmpty()) {
+                                    pinnedMemStore = readMemStore;
+                                } else {
+                                    readMemStore.decReadRef();
+                                }
                             }
                         }
                     } finally {
@@ -240,17 +316,14 @@ public class MessageStore implements Closeable {
                 if (inMemCache) {
                     // return not found when data is under memory sink operation.
                     if (memMsgRlt.isSuccess) {
-                        HashMap<String, TrafficInfo> countMap =
-                                new HashMap<>();
+                        FetchTrafficInfo trafficInfo = new FetchTrafficInfo();
                         List<ClientBroker.TransferedMessage> transferedMessageList =
                                 new ArrayList<>();
                         if (!memMsgRlt.cacheMsgList.isEmpty()) {
-                            final StringBuilder strBuffer = new StringBuilder(512);
                             for (ByteBuffer dataBuffer : memMsgRlt.cacheMsgList) {
                                 ClientBroker.TransferedMessage transferedMessage =
                                         DataStoreUtils.getTransferMsg(dataBuffer,
-                                                dataBuffer.array().length,
-                                                countMap, statsKeyBase, strBuffer);
+                                                dataBuffer.capacity(), trafficInfo);
                                 if (transferedMessage != null) {
                                     transferedMessageList.add(transferedMessage);
                                 }
@@ -259,8 +332,11 @@ public class MessageStore implements Closeable {
                         GetMessageResult getResult =
                                 new GetMessageResult(true, 0, memMsgRlt.errInfo, requestOffset,
                                         memMsgRlt.dltOffset, memMsgRlt.lastRdDataOff,
-                                        memMsgRlt.totalMsgSize, countMap, transferedMessageList);
+                                        memMsgRlt.totalMsgSize, trafficInfo, transferedMessageList);
                         getResult.setMaxOffset(maxIndexOffset);
+                        getResult.setPinnedMemStore(pinnedMemStore);
+                        BrokerSrvStatsHolder.addGetMsgReadBytes(
+                                pinnedMemStore != null, memMsgRlt.totalMsgSize);
                         return getResult;
                     } else {
                         return new GetMessageResult(false, memMsgRlt.retCode, requestOffset,
@@ -290,12 +366,19 @@ public class MessageStore implements Closeable {
                         reqNewOffset, 0, "current offset is exceed max offset!");
             }
         }
-        indexRecordView.read(indexBuffer, reqNewOffset);
+        // skip the index blocks only contain the other partitions' records
+        long readNewOffset = reqNewOffset;
+        if (tubeConfig.isEnableIndexPartitionSkip()) {
+            readNewOffset = this.msgFileStore.getPartitionReadOffset(
+                    indexRecordView, partitionId, reqNewOffset);
+        }
+        indexRecordView.read(indexBuffer, readNewOffset);
         indexBuffer.flip();
         indexRecordView.relViewRef();
-        if ((msgFileStore.getDataHighMaxOffset() - consumerNodeInfo.getLastDataRdOffset() >= this.tubeConfig
-                .getDoubleDefaultDeduceReadSize())
-                && msgSizeLimit > this.maxAllowRdSize) {
+        // the consumer lags far behind, catch up by range reads if enabled
+        boolean isCatchUpRead = (msgFileStore.getDataHighMaxOffset()
+                - consumerNodeInfo.getLastDataRdOffset() >= this.tubeConfig.getDoubleDefaultDeduceReadSize());
+        if (isCatchUpRead && msgSizeLimit > this.maxAllowRdSize) {
             msgSizeLimit = this.maxAllowRdSize;
         }
         GetMessageResult retResult =
@@ -303,7 +386,14 @@ public class MessageStore implements Closeable {
                         consumerNodeInfo.getLastDataRdOffset(), reqNewOffset,
                         indexBuffer, consumerNodeInfo.isFilterConsume(),
                         consumerNodeInfo.getFilterCondCodeSet(),
-                        statsKeyBase, msgSizeLimit, reqRcvTime);
+                        msgSizeLimit, reqRcvTime,
+                        isCatchUpRead && tubeConfig.isEnableFileRangeRead());
+        if (readNewOffset > reqNewOffset
+                && retResult.isSuccess
+                && retResult.getLastReadOffset() >= 0) {
+            retResult.setLastReadOffset(retResult.getLastReadOffset()
+                    + (int) (readNewOffset - reqNewOffset));
+        }
         if (reqSwitch <= 1) {
             retResult.setMaxOffset(getFileIndexMaxOffset());
         } else {
@@ -338,9 +428,11 @@ public class MessageStore implements Closeable {
         }
         this.writeCacheMutex.readLock().lock();
         try {
-            // read from backup memory.
-            if (timestamp <= this.msgMemStoreBeingFlush.getRightAppendTime()) {
-                return this.msgMemStoreBeingFlush.getIndexStartWritePos();
+            // read from sealed memory.
+            for (MsgMemStore sealedStore : this.sealedMemStores) {
+                if (timestamp <= sealedStore.getRightAppendTime()) {
+                    return sealedStore.getIndexStartWritePos();
+                }
             }
             // read from main memory.
             return this.msgMemStore.getIndexStartWritePos();
@@ -403,8 +495,36 @@ public class MessageStore implements Closeable {
                     .append(this.storeKey).toString());
         }
         long messageId = this.idWorker.nextId();
-        // build data buffer
         int msgBufLen = DataStoreUtils.STORE_DATA_HEADER_LEN + dataLength;
+        appendResult.putReceivedInfo(messageId, receivedTime);
+        boolean appendSuss = true;
+        long startTime = System.currentTimeMillis();
+        if (this.tubeConfig.isEnableMemStore()) {
+            // serialize message into the memory cache directly
+            MsgMemStore fullMemStore;
+            do {
+                this.writeCacheMutex.readLock().lock();
+                try {
+                    fullMemStore = this.msgMemStore;
+                    appendSuss = fullMemStore.appendMsg(msgStoreStatsHolder,
+                            partitionId, msgTypeCode, receivedTime, dataCheckSum,
+                            sentAddr, messageId, msgFlag, data, dataLength, appendResult);
+                } finally {
+                    this.writeCacheMutex.readLock().unlock();
+                }
+                if (appendSuss) {
+                    msgStoreStatsHolder.addMsgWriteSuccess(msgBufLen,
+                            System.currentTimeMillis() - startTime);
+                    return true;
+                }
+                if (!triggerFlushAndSwitchCache(fullMemStore, false)) {
+                    ThreadUtils.sleep(waitRetryMs);
+                }
+            } while (count-- >= 0);
+            msgStoreStatsHolder.addMsgWriteFailure();
+            return false;
+        }
+        // build data buffer
         final ByteBuffer dataBuffer = ByteBuffer.allocate(msgBufLen);
         dataBuffer.putInt(DataStoreUtils.STORE_DATA_PREFX_LEN + dataLength);
         dataBuffer.putInt(DataStoreUtils.STORE_DATA_TOKER_BEGIN_VALUE);
@@ -427,50 +547,89 @@ public class MessageStore implements Closeable {
         indexBuffer.putInt(msgTypeCode);
         indexBuffer.putLong(receivedTime);
         indexBuffer.flip();
-        appendResult.putReceivedInfo(messageId, receivedTime);
-        boolean appendSuss = true;
+        StringBuilder strBuffer =
+                new StringBuilder(TBaseConstants.BUILDER_DEFAULT_SIZE);
+        Tuple3<Boolean, Long, Long> appendRet =
+                this.msgFileStore.appendMsg(false, startTime, strBuffer, 1,
+                        DataStoreUtils.STORE_INDEX_HEAD_LEN, indexBuffer,
+                        msgBufLen, dataBuffer, receivedTime, receivedTime);
+        appendResult.putAppendResult(appendRet.getF1(), appendRet.getF2());
+        if (appendRet.getF0()) {
+            msgStoreStatsHolder.addMsgWriteSuccess(msgBufLen,
+                    System.currentTimeMillis() - startTime);
+        } else {
+            msgStoreStatsHolder.addMsgWriteFailure();
+        }
+        return appendRet.getF0();
+    }
+
+    /**
+     * Append a batch of messages of the partition to store, the batch is appended
+     * all-or-none: either all its messages are stored contiguously or none of them.
+     *
+     * @param batchItems      the messages to append, each one carries its append result
+     * @param partitionId     the partitionId for append messages
+     * @param sentAddr        the address to send the messages to
+     *
+     * @return                the process result
+     * @throws IOException    the exception during processing
+     */
+    public boolean appendMsgBatch(List<BatchAppendItem> batchItems,
+            int partitionId, int sentAddr) throws IOException {
+        if (this.closed.get()) {
+            throw new IllegalStateException(new StringBuilder(512)
+                    .append("[Data Store] Closed MessageStore for storeKey ")
+                    .append(this.storeKey).toString());
+        }
+        long receivedTime = System.currentTimeMillis();
+        int batchDataLength = 0;
+        for (BatchAppendItem batchItem : batchItems) {
+            batchItem.getAppendResult().putReceivedInfo(this.idWorker.nextId(), receivedTime);
+            batchDataLength += batchItem.getDataLength();
+        }
         long startTime = System.currentTimeMillis();
+        boolean appendSuss = false;
         if (this.tubeConfig.isEnableMemStore()) {
+            int count = 3;
+            boolean isOversize;
+            MsgMemStore fullMemStore;
             do {
                 this.writeCacheMutex.readLock().lock();
                 try {
-                    appendSuss = this.msgMemStore.appendMsg(msgStoreStatsHolder,
-                            partitionId, msgTypeCode, receivedTime, indexBuffer,
-                            msgBufLen, dataBuffer, appendResult);
+                    fullMemStore = this.msgMemStore;
+                    isOversize = fullMemStore.isOversizeBatch(batchItems.size(), batchDataLength);
+                    if (!isOversize) {
+                        appendSuss = fullMemStore.appendMsgBatch(msgStoreStatsHolder,
+                                partitionId, receivedTime, sentAddr, batchItems);
+                    }
                 } finally {
                     this.writeCacheMutex.readLock().unlock();
                 }
+                if (isOversize) {
+                    // the batch cannot be held by one cache, spread it over the free caches
+                    appendSuss = appendBatchAcrossCaches(batchItems, partitionId, receivedTime, sentAddr);
+                    break;
+                }
                 if (appendSuss) {
-                    msgStoreStatsHolder.addMsgWriteSuccess(msgBufLen,
-                            System.currentTimeMillis() - startTime);
-                    return true;
+                    break;
                 }
-                if (triggerFlushAndAddMsg(true, false, partitionId, msgTypeCode,
-                        receivedTime, indexBuffer, msgBufLen, dataBuffer, appendResult)) {
-                    msgStoreStatsHolder.addMsgWriteSuccess(msgBufLen,
-                            System.currentTimeMillis() - startTime);
-                    return true;
+                if (!triggerFlushAndSwitchCache(fullMemStore, false)) {
+                    ThreadUtils.sleep(1);
                 }
-                ThreadUtils.sleep(waitRetryMs);
             } while (count-- >= 0);
-            msgStoreStatsHolder.addMsgWriteFailure();
-            return false;
         } else {
-            StringBuilder strBuffer =
-                    new StringBuilder(TBaseConstants.BUILDER_DEFAULT_SIZE);
-            Tuple3<Boolean, Long, Long> appendRet =
-                    this.msgFileStore.appendMsg(false, startTime, strBuffer, 1,
-                            DataStoreUtils.STORE_INDEX_HEAD_LEN, indexBuffer,
-                            msgBufLen, dataBuffer, receivedTime, receivedTime);
-            appendResult.putAppendResult(appendRet.getF1(), appendRet.getF2());
-            if (appendRet.getF0()) {
-                msgStoreStatsHolder.addMsgWriteSuccess(msgBufLen,
-                        System.currentTimeMillis() - startTime);
-            } else {
-                msgStoreStatsHolder.addMsgWriteFailure();
+            appendSuss = appendBatchToFile(batchItems, partitionId, receivedTime, sentAddr);
+        }
+        if (appendSuss) {
+            long dltTime = System.currentTimeMillis() - startTime;
+            for (BatchAppendItem batchItem : batchItems) {
+                msgStoreStatsHolder.addMsgWriteSuccess(
+                        DataStoreUtils.STORE_DATA_HEADER_LEN + batchItem.getDataLength(), dltTime);
             }
-            return appendRet.getF0();
+        } else {
+            msgStoreStatsHolder.addMsgWriteFailure();
         }
+        return appendSuss;
     }
 
     public void getMsgStoreStatsInfo(boolean needRefresh, StringBuilder strBuff) {
@@ -559,13 +718,70 @@ public class MessageStore implements Closeable {
                     .append(this.storeKey).toString());
         }
         if (tubeConfig.isEnableMemStore()) {
+            if (flushRetryRequired.compareAndSet(true, false)) {
+                submitFlushTask();
+            }
             if (msgMemStore.getCurMsgCount() > 0
                     && (System.currentTimeMillis() - this.lastMemFlushTime.get()) >= this.writeCacheFlushIntvl) {
-                triggerFlushAndAddMsg(false, true, -1, 0, 0, null, 0, null, null);
+                triggerFlushAndSwitchCache(null, true);
             }
         }
     }
 
+    public boolean isGroupCommitEnabled() {
+        return this.groupCommitSyncer != null;
+    }
+
+    /**
+     * Request the group commit thread to sync this store.
+     */
+    public void requestGroupCommit() {
+        if (this.groupCommitSyncer != null) {
+            this.groupCommitSyncer.requestSync(this);
+        }
+    }
+
+    /**
+     * Wait for the disk sync covering the appended messages, the callback is called
+     * by the group commit thread once the messages are synced or the wait failed.
+     *
+     * @param indexOffset   the max index offset of the appended messages
+     * @param callback      the durable callback
+     */
+    public void waitForDurable(long indexOffset, GroupCommitSyncer.DurableCallback callback) {
+        if (this.groupCommitSyncer == null || this.closed.get()) {
+            callback.onDurable(false);
+            return;
+        }
+        durableWaiters.offer(new DurableWaiter(
+                indexOffset + DataStoreUtils.STORE_INDEX_HEAD_LEN, callback));
+        this.groupCommitSyncer.requestSync(this);
+    }
+
+    /**
+     * Mark the store queued in the group commit syncer.
+     *
+     * @return  whether the store is not queued before
+     */
+    boolean markSyncPending() {
+        return syncPending.compareAndSet(false, true);
+    }
+
+    /**
+     * Sync the store to disk by the group commit thread: flush the memory cache
+     * if there are durable sends waiting, sync the file store, then release
+     * the durable sends covered by the sync.
+     *
+     * @return  whether the store is synced
+     */
+    boolean groupCommit() {
+        syncPending.set(false);
+        if (this.closed.get()) {
+            return false;
+        }
+        return syncAndNotifyDurable(new StringBuilder(512));
+    }
+
     @Override
     public void close() throws IOException {
         if (this.closed.compareAndSet(false, true)) {
@@ -575,10 +791,25 @@ public class MessageStore implements Closeable {
             strBuffer.delete(0, strBuffer.length());
             if (tubeConfig.isEnableMemStore()) {
                 ThreadUtils.sleep(100);
-                flush(strBuffer);
-                this.msgMemStore.close();
-                this.msgMemStoreBeingFlush.close();
+                flushAllMemCache(strBuffer);
                 this.executor.shutdown();
+                this.writeCacheMutex.writeLock().lock();
+                try {
+                    this.msgMemStore.close();
+                    for (MsgMemStore sealedStore : this.sealedMemStores) {
+                        sealedStore.close();
+                    }
+                    this.sealedMemStores.clear();
+                    for (MsgMemStore idleStore : this.idleMemStores) {
+                        idleStore.close();
+                    }
+                    this.idleMemStores.clear();
+                } finally {
+                    this.writeCacheMutex.writeLock().unlock();
+                }
+            }
+            if (this.groupCommitSyncer != null) {
+                syncAndNotifyDurable(strBuffer);
             }
             this.msgFileStore.close();
             logger.info(strBuffer.append("[Data Store] Message store stopped")
@@ -691,8 +922,8 @@ public class MessageStore implements Closeable {
                 if (this.msgMemStore.getCurMsgCount() > 0) {
                     totalSize += this.msgMemStore.getIndexCacheSize();
                 }
-                if (this.msgMemStoreBeingFlush.getCurMsgCount() > 0) {
-                    totalSize += this.msgMemStoreBeingFlush.getIndexCacheSize();
+                for (MsgMemStore sealedStore : this.sealedMemStores) {
+                    totalSize += sealedStore.getIndexCacheSize();
                 }
             } finally {
                 this.writeCacheMutex.readLock().unlock();
@@ -717,8 +948,8 @@ public class MessageStore implements Closeable {
                 if (this.msgMemStore.getCurMsgCount() > 0) {
                     totalSize += this.msgMemStore.getCurDataCacheSize();
                 }
-                if (this.msgMemStoreBeingFlush.getCurMsgCount() > 0) {
-                    totalSize += this.msgMemStoreBeingFlush.getCurDataCacheSize();
+                for (MsgMemStore sealedStore : this.sealedMemStores) {
+                    totalSize += sealedStore.getCurDataCacheSize();
                 }
             } finally {
                 this.writeCacheMutex.readLock().unlock();
@@ -763,99 +994,403 @@ public class MessageStore implements Closeable {
     }
 
     /**
-     * Append message and trigger flush operation.
+     * Seal the full writing cache, hand it to the flush thread and switch to a free cache.
      *
-     * @param needAdd           whether to add a message
+     * Appends continue into a free cache immediately, producers only wait when
+     * all the caches of the ring are sealed and waiting to be flushed.
+     *
+     * @param fullMemStore      the cache which append failure, null if timer trigger
      * @param isTimeTrigger     whether is timer trigger
-     * @param partitionId       the partitionId for reading messages
-     * @param keyCode           the filter item hash code
-     * @param receivedTime      the received time of message
-     * @param indexEntry        the stored index entry
-     * @param dataLength        the stored data entry length
-     * @param dataEntry         the stored data entry
-     * @param appendResult      the append result
-     *
-     * @return                  the append result
+     *
+     * @return                  whether the writing cache has been switched
      * @throws IOException      the exception during processing
      */
-    private boolean triggerFlushAndAddMsg(boolean needAdd, boolean isTimeTrigger,
-            int partitionId, int keyCode,
-            long receivedTime, ByteBuffer indexEntry,
-            int dataLength, ByteBuffer dataEntry,
-            AppendResult appendResult) throws IOException {
-        long startTime;
+    private boolean triggerFlushAndSwitchCache(MsgMemStore fullMemStore,
+            boolean isTimeTrigger) throws IOException {
         writeCacheMutex.writeLock().lock();
         try {
-            if (!isFlushOngoing.get() && hasFlushBeenTriggered.compareAndSet(false, true)) {
-                this.executor.execute(new Runnable() {
-
-                    @Override
-                    public void run() {
-                        try {
-                            final StringBuilder strBuffer = new StringBuilder(512);
-                            flush(strBuffer);
-                        } catch (Throwable e) {
-                            logger.error("[Data Store] Error during flush", e);
-                        } finally {
-                            if (isTimeTrigger) {
-                                msgStoreStatsHolder.addCacheTimeoutFlush();
-                            }
-                        }
-                    }
-                });
-            } else {
-                msgStoreStatsHolder.addCachePending();
+            if (fullMemStore != null) {
+                // the full cache has been switched by others
+                if (fullMemStore != msgMemStore) {
+                    return true;
+                }
+            } else if (msgMemStore.getCurMsgCount() == 0) {
+                return false;
             }
-            startTime = System.currentTimeMillis();
-            while (hasFlushBeenTriggered.get()) {
-                flushWriteCacheCondition.awaitNanos(FLUSH_CONDITION_WAIT_DLT_NS);
-                if (System.currentTimeMillis() - startTime > 2000) {
-                    logger.warn(new StringBuilder(512)
-                            .append("[Data Store] StoreKey=").append(storeKey)
-                            .append(" Wait Cache flush write too long! wait time is ")
-                            .append(System.currentTimeMillis() - startTime).toString());
-                    break;
+            if (!hasReusableMemStore() && allocatedMemStoreCnt >= memStoreRingSize) {
+                msgStoreStatsHolder.addCachePending();
+                if (fullMemStore == null) {
+                    // the timer need not wait, the caches will be flushed in sequence
+                    return false;
+                }
+                long startTime = System.currentTimeMillis();
+                while (!hasReusableMemStore()) {
+                    flushWriteCacheCondition.awaitNanos(FLUSH_CONDITION_WAIT_DLT_NS);
+                    if (System.currentTimeMillis() - startTime > 2000) {
+                        logger.warn(new StringBuilder(512)
+                                .append("[Data Store] StoreKey=").append(storeKey)
+                                .append(" Wait Cache flush write too long! wait time is ")
+                                .append(System.currentTimeMillis() - startTime).toString());
+                        break;
+                    }
+                }
+                msgStoreStatsHolder.addCacheWaitDlt(System.currentTimeMillis() - startTime);
+                if (fullMemStore != msgMemStore) {
+                    return true;
+                }
+                if (!hasReusableMemStore()) {
+                    return false;
                 }
             }
-            if (needAdd) {
-                return msgMemStore.appendMsg(msgStoreStatsHolder, partitionId, keyCode,
-                        receivedTime, indexEntry, dataLength, dataEntry, appendResult);
+            sealWriteCache(true);
+            if (isTimeTrigger) {
+                msgStoreStatsHolder.addCacheTimeoutFlush();
             }
+            return true;
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new IOException(new StringBuilder(512)
                     .append("[Data Store] StoreKey=").append(storeKey)
-                    .append(" Interrupted when triggerFlushAndAddMsg process for storekey ")
+                    .append(" Interrupted when triggerFlushAndSwitchCache process for storekey ")
                     .append(storeKey).toString());
         } finally {
             writeCacheMutex.writeLock().unlock();
         }
+    }
+
+    /**
+     * Seal the writing cache and switch to a free one, must be called under the write lock.
+     *
+     * @param submitFlush   whether to submit the flush task of the sealed cache
+     */
+    private void sealWriteCache(boolean submitFlush) {
+        long lastDataPos = msgMemStore.getDataLastWritePos();
+        long lastIndexPos = msgMemStore.getIndexLastWritePos();
+        MsgMemStore newStore = pollReusableMemStore();
+        if (newStore == null) {
+            allocatedMemStoreCnt++;
+            newStore = new MsgMemStore(writeCacheMaxSize,
+                    writeCacheMaxCnt, lastDataPos, lastIndexPos);
+        } else if (newStore.getMaxAllowedMsgCount() != writeCacheMaxCnt
+                || newStore.getMaxDataCacheSize() != writeCacheMaxSize) {
+            newStore.close();
+            newStore = new MsgMemStore(writeCacheMaxSize,
+                    writeCacheMaxCnt, lastDataPos, lastIndexPos);
+            msgStoreStatsHolder.addCacheReAlloc();
+            logger.info(new StringBuilder(512).append("[Data Store] Found ").append(getStoreKey())
+                    .append(" Cache capacity change, new MemSize=")
+                    .append(writeCacheMaxSize).append(", new CacheCnt=")
+                    .append(writeCacheMaxCnt).toString());
+        } else {
+            newStore.resetMemStoreStatus(lastDataPos, lastIndexPos);
+        }
+        sealedMemStores.offerLast(msgMemStore);
+        msgMemStore = newStore;
+        lastMemFlushTime.set(System.currentTimeMillis());
+        msgStoreStatsHolder.addCacheSwap(sealedMemStores.size());
+        if (submitFlush) {
+            submitFlushTask();
+        }
+    }
+
+    /**
+     * Submit a task to flush the oldest sealed cache.
+     */
+    private void submitFlushTask() {
+        this.executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    final StringBuilder strBuffer = new StringBuilder(512);
+                    flushSealedCache(strBuffer);
+                } catch (Throwable e) {
+                    logger.error("[Data Store] Error during flush", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Whether there is an idle cache not pinned by slice readers, must be called under the lock.
+     *
+     * @return  whether an idle cache can be reused
+     */
+    private boolean hasReusableMemStore() {
+        for (MsgMemStore idleStore : idleMemStores) {
+            if (!idleStore.isReadReferenced()) {
+                return true;
+            }
+        }
         return false;
     }
 
-    private void flush(StringBuilder strBuffer) throws IOException {
+    /**
+     * Take the oldest idle cache not pinned by slice readers, must be called under the write lock.
+     *
+     * @return  the reusable cache, null if not found
+     */
+    private MsgMemStore pollReusableMemStore() {
+        Iterator<MsgMemStore> iterator = idleMemStores.iterator();
+        while (iterator.hasNext()) {
+            MsgMemStore idleStore = iterator.next();
+            if (!idleStore.isReadReferenced()) {
+                iterator.remove();
+                return idleStore;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Count the free caches can be switched to for writing, must be called under the lock.
+     *
+     * @return  the count of the free caches
+     */
+    private int getFreeMemStoreCount() {
+        int freeCnt = memStoreRingSize - allocatedMemStoreCnt;
+        for (MsgMemStore idleStore : idleMemStores) {
+            if (!idleStore.isReadReferenced()) {
+                freeCnt++;
+            }
+        }
+        return freeCnt;
+    }
+
+    /**
+     * Count the free caches required to append the batch after the writing cache,
+     * must be called under the lock.
+     *
+     * @param batchItems    the messages to append
+     * @return              the required free caches, -1 if a message exceeds an empty cache
+     */
+    private int calcRequiredMemStores(List<BatchAppendItem> batchItems) {
+        int requiredCnt = 0;
+        int cacheMsgCnt = msgMemStore.getCurMsgCount();
+        int cacheDataSize = msgMemStore.getCurDataCacheSize();
+        int maxMsgCnt = msgMemStore.getMaxAllowedMsgCount();
+        int maxDataSize = msgMemStore.getMaxDataCacheSize();
+        for (BatchAppendItem batchItem : batchItems) {
+            int dataEntryLength = DataStoreUtils.STORE_DATA_HEADER_LEN + batchItem.getDataLength();
+            if (cacheMsgCnt + 1 > maxMsgCnt || cacheDataSize + dataEntryLength > maxDataSize) {
+                requiredCnt++;
+                cacheMsgCnt = 0;
+                cacheDataSize = 0;
+                maxMsgCnt = writeCacheMaxCnt;
+                maxDataSize = writeCacheMaxSize;
+                if (dataEntryLength > maxDataSize) {
+                    return -1;
+                }
+            }
+            cacheMsgCnt++;
+            cacheDataSize += dataEntryLength;
+        }
+        return requiredCnt;
+    }
+
+    /**
+     * Append a batch larger than one cache, the messages are spread over the writing
+     * cache and the free caches under the write lock, so that no other message is
+     * inserted into the batch. The batch is appended only when enough free caches are
+     * available, otherwise nothing is appended.
+     *
+     * @param batchItems      the messages to append
+     * @param partitionId     the partitionId for append messages
+     * @param receivedTime    the received time of the messages
+     * @param sentAddr        the address to send the messages to
+     *
+     * @return                the process result
+     * @throws IOException    the exception during processing
+     */
+    private boolean appendBatchAcrossCaches(List<BatchAppendItem> batchItems,
+            int partitionId, long receivedTime, int sentAddr) throws IOException {
+        writeCacheMutex.writeLock().lock();
+        try {
+            int requiredCnt = calcRequiredMemStores(batchItems);
+            if (requiredCnt < 0 || requiredCnt >= memStoreRingSize) {
+                logger.warn(new StringBuilder(512)
+                        .append("[Data Store] StoreKey=").append(storeKey)
+                        .append(" Message batch exceeds the cache ring, message count is ")
+                        .append(batchItems.size()).toString());
+                return false;
+            }
+            if (getFreeMemStoreCount() < requiredCnt) {
+                msgStoreStatsHolder.addCachePending();
+                long startTime = System.currentTimeMillis();
+                do {
+                    if (System.currentTimeMillis() - startTime > 2000) {
+                        msgStoreStatsHolder.addCacheWaitDlt(System.currentTimeMillis() - startTime);
+                        return false;
+                    }
+                    flushWriteCacheCondition.awaitNanos(FLUSH_CONDITION_WAIT_DLT_NS);
+                    requiredCnt = calcRequiredMemStores(batchItems);
+                } while (getFreeMemStoreCount() < requiredCnt);
+                msgStoreStatsHolder.addCacheWaitDlt(System.currentTimeMillis() - startTime);
+            }
+            for (BatchAppendItem batchItem : batchItems) {
+                AppendResult appendResult = batchItem.getAppendResult();
+                if (!msgMemStore.appendMsg(msgStoreStatsHolder, partitionId,
+                        batchItem.getMsgTypeCode(), receivedTime, batchItem.getDataCheckSum(),
+                        sentAddr, appendResult.getMsgId(), batchItem.getMsgFlag(),
+                        batchItem.getData(), batchItem.getDataLength(), appendResult)) {
+                    // the free cache is counted before, the message fits in it
+                    sealWriteCache(true);
+                    msgMemStore.appendMsg(msgStoreStatsHolder, partitionId,
+                            batchItem.getMsgTypeCode(), receivedTime, batchItem.getDataCheckSum(),
+                            sentAddr, appendResult.getMsgId(), batchItem.getMsgFlag(),
+                            batchItem.getData(), batchItem.getDataLength(), appendResult);
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(new StringBuilder(512)
+                    .append("[Data Store] StoreKey=").append(storeKey)
+                    .append(" Interrupted when appendBatchAcrossCaches process for storekey ")
+                    .append(storeKey).toString());
+        } finally {
+            writeCacheMutex.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Append a batch to the file store directly by one append, the data and index
+     * entries are written in sequence and their offsets are filled by the file store.
+     *
+     * @param batchItems      the messages to append
+     * @param partitionId     the partitionId for append messages
+     * @param receivedTime    the received time of the messages
+     * @param sentAddr        the address to send the messages to
+     *
+     * @return                the process result
+     */
+    private boolean appendBatchToFile(List<BatchAppendItem> batchItems,
+            int partitionId, long receivedTime, int sentAddr) {
+        int batchDataSize = 0;
+        for (BatchAppendItem batchItem : batchItems) {
+            batchDataSize += DataStoreUtils.STORE_DATA_HEADER_LEN + batchItem.getDataLength();
+        }
+        int batchIndexSize = batchItems.size() * DataStoreUtils.STORE_INDEX_HEAD_LEN;
+        final ByteBuffer dataBuffer = ByteBuffer.allocate(batchDataSize);
+        final ByteBuffer indexBuffer = ByteBuffer.allocate(batchIndexSize);
+        for (BatchAppendItem batchItem : batchItems) {
+            int msgBufLen = DataStoreUtils.STORE_DATA_HEADER_LEN + batchItem.getDataLength();
+            dataBuffer.putInt(DataStoreUtils.STORE_DATA_PREFX_LEN + batchItem.getDataLength());
+            dataBuffer.putInt(DataStoreUtils.STORE_DATA_TOKER_BEGIN_VALUE);
+            dataBuffer.putInt(batchItem.getDataCheckSum());
+            dataBuffer.putInt(partitionId);
+            dataBuffer.putLong(-1L);
+            dataBuffer.putLong(receivedTime);
+            dataBuffer.putInt(sentAddr);
+            dataBuffer.putInt(batchItem.getMsgTypeCode());
+            dataBuffer.putLong(batchItem.getAppendResult().getMsgId());
+            dataBuffer.putInt(batchItem.getMsgFlag());
+            dataBuffer.put(batchItem.getData(), 0, batchItem.getDataLength());
+            indexBuffer.putInt(partitionId);
+            indexBuffer.putLong(-1L);
+            indexBuffer.putInt(msgBufLen);
+            indexBuffer.putInt(batchItem.getMsgTypeCode());
+            indexBuffer.putLong(receivedTime);
+        }
+        dataBuffer.flip();
+        indexBuffer.flip();
+        StringBuilder strBuffer =
+                new StringBuilder(TBaseConstants.BUILDER_DEFAULT_SIZE);
+        Tuple3<Boolean, Long, Long> appendRet =
+                this.msgFileStore.appendMsg(false, System.currentTimeMillis(), strBuffer,
+                        batchItems.size(), batchIndexSize, indexBuffer,
+                        batchDataSize, dataBuffer, receivedTime, receivedTime);
+        if (!appendRet.getF0()) {
+            return false;
+        }
+        long indexOffset = appendRet.getF1();
+        long dataOffset = appendRet.getF2();
+        for (BatchAppendItem batchItem : batchItems) {
+            batchItem.getAppendResult().putAppendResult(indexOffset, dataOffset);
+            indexOffset += DataStoreUtils.STORE_INDEX_HEAD_LEN;
+            dataOffset += DataStoreUtils.STORE_DATA_HEADER_LEN + batchItem.getDataLength();
+        }
+        return true;
+    }
+
+    /**
+     * Seal the writing cache and flush all the sealed caches to file.
+     *
+     * @param strBuffer     the string buffer
+     * @throws IOException  the exception during processing
+     */
+    private void flushAllMemCache(StringBuilder strBuffer) throws IOException {
+        writeCacheMutex.writeLock().lock();
+        try {
+            if (msgMemStore.getCurMsgCount() > 0) {
+                sealWriteCache(false);
+            }
+        } finally {
+            writeCacheMutex.writeLock().unlock();
+        }
+        while (flushSealedCache(strBuffer)) {
+            // flush until no sealed cache left
+        }
+    }
+
+    /**
+     * Flush the oldest sealed cache to file, and return it to the idle caches.
+     *
+     * A cache failed to flush stays sealed at the head of the ring, so the caches
+     * are still written in offset order, and is retried by the next flush task or
+     * by the timer, it is recycled only after its messages are in the file store.
+     *
+     * @param strBuffer     the string buffer
+     * @return              whether a sealed cache has been flushed
+     * @throws IOException  the exception during processing
+     */
+    private boolean flushSealedCache(StringBuilder strBuffer) throws IOException {
+        MsgMemStore sealedStore;
         long startTime = System.currentTimeMillis();
         flushMutex.lock();
-        this.lastMemFlushTime.set(System.currentTimeMillis());
         try {
-            swapWriteCache(strBuffer);
-            if (logger.isDebugEnabled()) {
-                logger.debug(strBuffer.append("[Data Store] StoreKey=").append(storeKey)
-                        .append(" Flushing entries.count:")
-                        .append(msgMemStoreBeingFlush.getCurMsgCount())
-                        .append(" -- getCachedSize ")
-                        .append(msgMemStoreBeingFlush.getCurDataCacheSize() / 1024.0 / 1024)
-                        .append(" Mb").toString());
-                strBuffer.delete(0, strBuffer.length());
+            writeCacheMutex.readLock().lock();
+            try {
+                sealedStore = sealedMemStores.peekFirst();
+            } finally {
+                writeCacheMutex.readLock().unlock();
             }
-        } catch (Throwable e) {
-            if (e instanceof IOException) {
-                throw (IOException) e;
-            } else {
-                throw new IOException(e);
+            if (sealedStore == null) {
+                return false;
+            }
+            // a failed append is rolled back by the file store, unless the cache had been
+            // appended before the failure, such a cache is not appended again
+            if (msgFileStore.getIndexMaxOffset() < sealedStore.getIndexLastWritePos()) {
+                try {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug(strBuffer.append("[Data Store] StoreKey=").append(storeKey)
+                                .append(" Flushing entries.count:")
+                                .append(sealedStore.getCurMsgCount())
+                                .append(" -- getCachedSize ")
+                                .append(sealedStore.getCurDataCacheSize() / 1024.0 / 1024)
+                                .append(" Mb").toString());
+                        strBuffer.delete(0, strBuffer.length());
+                    }
+                    flushMemStore(sealedStore, strBuffer);
+                } catch (Throwable e) {
+                    flushRetryRequired.set(true);
+                    msgStoreStatsHolder.addCacheFlushFailure();
+                    if (e instanceof IOException) {
+                        throw (IOException) e;
+                    } else {
+                        throw new IOException(e);
+                    }
+                }
+            }
+            writeCacheMutex.writeLock().lock();
+            try {
+                sealedMemStores.pollFirst();
+                idleMemStores.offerLast(sealedStore);
+                flushWriteCacheCondition.signalAll();
+            } finally {
+                writeCacheMutex.writeLock().unlock();
             }
         } finally {
-            isFlushOngoing.set(false);
             flushMutex.unlock();
             if (logger.isDebugEnabled()) {
                 logger.debug(strBuffer.append("[Data Store] StoreKey=")
@@ -864,43 +1399,135 @@ public class MessageStore implements Closeable {
                 strBuffer.delete(0, strBuffer.length());
             }
         }
+        return true;
+    }
+
+    /**
+     * Write the sealed cache to the file store.
+     *
+     * @param sealedStore   the sealed cache
+     * @param strBuffer     the string buffer
+     * @throws Throwable    the exception during processing
+     */
+    void flushMemStore(MsgMemStore sealedStore, StringBuilder strBuffer) throws Throwable {
+        sealedStore.batchFlush(msgFileStore, strBuffer);
+    }
+
+    MsgMemStore getWritingMemStore() {
+        writeCacheMutex.readLock().lock();
+        try {
+            return msgMemStore;
+        } finally {
+            writeCacheMutex.readLock().unlock();
+        }
+    }
+
+    long getFileIndexWriteOffset() {
+        return msgFileStore.getIndexMaxOffset();
+    }
+
+    long getFileDataWriteOffset() {
+        return msgFileStore.getDataMaxOffset();
+    }
+
+    int getSealedMemStoreCount() {
+        writeCacheMutex.readLock().lock();
+        try {
+            return sealedMemStores.size();
+        } finally {
+            writeCacheMutex.readLock().unlock();
+        }
+    }
+
+    int getIdleMemStoreCount() {
+        writeCacheMutex.readLock().lock();
+        try {
+            return idleMemStores.size();
+        } finally {
+            writeCacheMutex.readLock().unlock();
+        }
+    }
+
+    int getAllocatedMemStoreCount() {
+        writeCacheMutex.readLock().lock();
+        try {
+            return allocatedMemStoreCnt;
+        } finally {
+            writeCacheMutex.readLock().unlock();
+        }
+    }
+
+    private boolean syncAndNotifyDurable(StringBuilder strBuffer) {
+        long syncedIndexOffset = -1L;
+        boolean isSynced = false;
+        try {
+            if (tubeConfig.isEnableMemStore() && !durableWaiters.isEmpty()) {
+                flushMemCacheForDurable(strBuffer);
+            }
+            syncedIndexOffset = msgFileStore.syncToDisk();
+            isSynced = true;
+        } catch (Throwable e) {
+            logger.error(strBuffer.append("[Data Store] StoreKey=").append(storeKey)
+                    .append(" Group commit sync failure").toString(), e);
+            strBuffer.delete(0, strBuffer.length());
+        }
+        if (durableWaiters.isEmpty()) {
+            return isSynced;
+        }
+        long curTime = System.currentTimeMillis();
+        Iterator<DurableWaiter> iterator = durableWaiters.iterator();
+        while (iterator.hasNext()) {
+            DurableWaiter waiter = iterator.next();
+            if (isSynced && waiter.indexOffsetEnd <= syncedIndexOffset) {
+                iterator.remove();
+                BrokerSrvStatsHolder.updDurableAckDlt(curTime - waiter.registerTime);
+                waiter.callback.onDurable(true);
+            } else if (!isSynced || this.closed.get()
+                    || curTime - waiter.registerTime >= tubeConfig.getGroupCommitMaxWaitMs()) {
+                iterator.remove();
+                BrokerSrvStatsHolder.incDurableAckTimeoutCnt();
+                waiter.callback.onDurable(false);
+            }
+        }
+        if (!durableWaiters.isEmpty()) {
+            // the waiters appended after the cache was sealed wait for the next sync
+            requestGroupCommit();
+        }
+        return isSynced;
     }
 
-    private void swapWriteCache(final StringBuilder strBuffer) throws Throwable {
-        long lastDataPos;
-        long lastIndexPos;
-        MsgMemStore tmpStore = null;
-        boolean isRealloc = false;
+    /**
+     * Seal the writing cache if a free one is available, and flush the sealed caches
+     * to file, so that the waiting durable sends are covered by the following sync.
+     *
+     * @param strBuffer     the string buffer
+     * @throws IOException  the exception during processing
+     */
+    private void flushMemCacheForDurable(StringBuilder strBuffer) throws IOException {
         writeCacheMutex.writeLock().lock();
         try {
-            lastDataPos = msgMemStore.getDataLastWritePos();
-            lastIndexPos = msgMemStore.getIndexLastWritePos();
-            tmpStore = msgMemStoreBeingFlush;
-            msgMemStoreBeingFlush = msgMemStore;
-            if (tmpStore.getMaxAllowedMsgCount() == writeCacheMaxCnt
-                    && tmpStore.getMaxDataCacheSize() == writeCacheMaxSize) {
-                msgMemStore = tmpStore;
-                msgMemStore.resetMemStoreStatus(lastDataPos, lastIndexPos);
-            } else {
-                isRealloc = true;
-                msgMemStore = new MsgMemStore(writeCacheMaxSize,
-                        writeCacheMaxCnt, lastDataPos, lastIndexPos);
+            if (msgMemStore.getCurMsgCount() > 0
+                    && (hasReusableMemStore() || allocatedMemStoreCnt < memStoreRingSize)) {
+                sealWriteCache(false);
             }
-            hasFlushBeenTriggered.set(false);
-            flushWriteCacheCondition.signalAll();
         } finally {
-            isFlushOngoing.set(true);
             writeCacheMutex.writeLock().unlock();
-            if (isRealloc) {
-                tmpStore.close();
-                msgStoreStatsHolder.addCacheReAlloc();
-                logger.info(strBuffer.append("[Data Store] Found ").append(getStoreKey())
-                        .append(" Cache capacity change, new MemSize=")
-                        .append(writeCacheMaxSize).append(", new CacheCnt=")
-                        .append(writeCacheMaxCnt).toString());
-                strBuffer.delete(0, strBuffer.length());
-            }
         }
-        msgMemStoreBeingFlush.batchFlush(msgFileStore, strBuffer);
+        while (flushSealedCache(strBuffer)) {
+            // flush until no sealed cache left
+        }
+    }
+
+    private static class DurableWaiter {
+
+        private final long indexOffsetEnd;
+        private final GroupCommitSyncer.DurableCallback callback;
+        private final long registerTime = System.currentTimeMillis();
+
+        public DurableWaiter(long indexOffsetEnd,
+                GroupCommitSyncer.DurableCallback callback) {
+            this.indexOffsetEnd = indexOffsetEnd;
+            this.callback = callback;
+        }
     }
 }
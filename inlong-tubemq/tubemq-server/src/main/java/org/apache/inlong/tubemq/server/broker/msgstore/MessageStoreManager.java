@@ -84,6 +84,9 @@ public class MessageStoreManager implements StoreService {
     private final int maxMsgTransferSize;
     // the status that is deleting topic.
     private final AtomicBoolean isRemovingTopic = new AtomicBoolean(false);
+    // the group commit syncers, one per store path
+    private final ConcurrentHashMap<String, GroupCommitSyncer> groupCommitSyncers =
+            new ConcurrentHashMap<>();
 
     /**
      * Initial the message-store manager.
@@ -192,10 +195,33 @@ public class MessageStoreManager implements StoreService {
                 }
             }
             this.dataStores.clear();
+            for (GroupCommitSyncer syncer : this.groupCommitSyncers.values()) {
+                syncer.close();
+            }
+            this.groupCommitSyncers.clear();
             logger.info("[Store Manager] Store Manager stopped!");
         }
     }
 
+    /**
+     * Get the group commit syncer of the store path, create and start it if not exists.
+     *
+     * @param storePath   the store path
+     * @return            the group commit syncer
+     */
+    public GroupCommitSyncer getGroupCommitSyncer(String storePath) {
+        GroupCommitSyncer syncer = this.groupCommitSyncers.get(storePath);
+        if (syncer == null) {
+            GroupCommitSyncer newSyncer = new GroupCommitSyncer(storePath);
+            syncer = this.groupCommitSyncers.putIfAbsent(storePath, newSyncer);
+            if (syncer == null) {
+                syncer = newSyncer;
+                syncer.start();
+            }
+        }
+        return syncer;
+    }
+
     @Override
     public List<String> removeTopicStore() {
         if (isRemovingTopic.get()) {
@@ -380,7 +406,7 @@ public class MessageStoreManager implements StoreService {
             }
             requestOffset = maxOffset - maxIndexReadSize < 0 ? 0L : maxOffset - maxIndexReadSize;
             return msgStore.getMessages(303, requestOffset, partitionId,
-                    consumerNodeInfo, topic, this.maxMsgTransferSize, 0);
+                    consumerNodeInfo, this.maxMsgTransferSize, 0);
         } catch (Throwable e1) {
             return new GetMessageResult(false, TErrCodeConstants.INTERNAL_SERVER_ERROR,
                     requestOffset, 0, "Get message failure, errMsg=" + e1.getMessage());
@@ -21,6 +21,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
@@ -57,6 +58,16 @@ public class FileSegment implements Segment {
     // the latest record append time
     private final AtomicLong rightAppendTime =
             new AtomicLong(TBaseConstants.META_VALUE_UNDEFINED);
+    // the sparse time index of index segment, null for data segment
+    private final SparseTimeIndex timeIndex;
+    // whether the sparse time index covers all the records
+    private volatile boolean timeIndexReady = false;
+    // the partition block index of index segment, null for data segment
+    private final PartitionBlockIndex partitionIndex;
+    // whether the partition block index covers all the records
+    private volatile boolean partitionIndexReady = false;
+    // the read only mapping of the immutable index segment
+    private volatile MappedByteBuffer mappedBuffer = null;
 
     public FileSegment(long start, File file, SegmentType type) throws IOException {
         this(start, file, true, type, Long.MAX_VALUE);
@@ -83,6 +94,16 @@ public class FileSegment implements Segment {
         this.flushedSize = new AtomicLong(0);
         this.randFile = new RandomAccessFile(this.file, "rw");
         this.channel = this.randFile.getChannel();
+        if (this.segmentType == SegmentType.INDEX) {
+            this.timeIndex = new SparseTimeIndex(DataStoreUtils.STORE_TIME_INDEX_RECORD_INTERVAL);
+            // the writable segment rebuilds the time index while recovering
+            this.timeIndexReady = mutable;
+            this.partitionIndex = new PartitionBlockIndex(DataStoreUtils.STORE_PARTITION_BLOCK_RECORDS);
+            this.partitionIndexReady = mutable;
+        } else {
+            this.timeIndex = null;
+            this.partitionIndex = null;
+        }
         if (mutable) {
             final long startMs = System.currentTimeMillis();
             long remaining = checkOffset == Long.MAX_VALUE ? -1 : (checkOffset - this.start);
@@ -148,6 +169,8 @@ public class FileSegment implements Segment {
     @Override
     public void close() {
         if (this.closed.compareAndSet(false, true)) {
+            // the mapping is released by GC, readers may still hold it
+            this.mappedBuffer = null;
             try {
                 if (this.channel.isOpen()) {
                     if (this.mutable) {
@@ -171,6 +194,9 @@ public class FileSegment implements Segment {
     @Override
     public void deleteFile() {
         this.closed.set(true);
+        // not unmapped explicitly, the readers without view reference may still read the
+        // mapping, it is released by GC after the last reader drops it
+        this.mappedBuffer = null;
         try {
             if (this.channel.isOpen()) {
                 if (this.mutable) {
@@ -224,12 +250,26 @@ public class FileSegment implements Segment {
             throw new UnsupportedOperationException("[File Store] Segment is closed!");
         }
         final long offset = this.cachedSize.get();
+        final ByteBuffer records = buf.duplicate();
         int sizeInBytes = 0;
-        while (buf.hasRemaining()) {
-            sizeInBytes += this.channel.write(buf);
+        try {
+            while (buf.hasRemaining()) {
+                sizeInBytes += this.channel.write(buf);
+            }
+        } catch (IOException e) {
+            // discard the partial write, the next append starts from the same offset
+            this.channel.truncate(offset);
+            this.channel.position(offset);
+            throw e;
         }
         this.cachedSize.addAndGet(sizeInBytes);
         if (segmentType == SegmentType.INDEX) {
+            if (this.timeIndexReady) {
+                addTimeIndexRecords(records, offset);
+            }
+            if (this.partitionIndexReady) {
+                addPartitionIndexRecords(records, offset);
+            }
             this.rightAppendTime.set(rightTime);
             if (offset == 0) {
                 this.leftAppendTime.set(leftTime);
@@ -253,6 +293,28 @@ public class FileSegment implements Segment {
         return this.start + this.flushedSize.get();
     }
 
+    @Override
+    public void truncate(long last) throws IOException {
+        if (!this.mutable) {
+            throw new UnsupportedOperationException("[File Store] Segment is immutable!");
+        }
+        if (this.segmentType == SegmentType.INDEX) {
+            throw new UnsupportedOperationException("[File Store] Index Segment can not be truncated!");
+        }
+        long validBytes = last - this.start;
+        if (validBytes < 0 || validBytes > this.cachedSize.get()) {
+            throw new IllegalArgumentException(new StringBuilder(512)
+                    .append("[File Store] Illegal truncate position ").append(last)
+                    .append(" of ").append(this.file.getAbsoluteFile().toString()).toString());
+        }
+        this.channel.truncate(validBytes);
+        this.channel.position(validBytes);
+        this.cachedSize.set(validBytes);
+        if (this.flushedSize.get() > validBytes) {
+            this.flushedSize.set(validBytes);
+        }
+    }
+
     @Override
     public boolean isExpired() {
         return expired.get();
@@ -367,6 +429,9 @@ public class FileSegment implements Segment {
         }
         int size = 0;
         long startPos = absOffset - start;
+        if (readMapped(bf, startPos)) {
+            return;
+        }
         while (bf.hasRemaining()) {
             final int l = this.channel.read(bf, startPos + size);
             if (l < 0) {
@@ -381,6 +446,9 @@ public class FileSegment implements Segment {
         if (this.isExpired()) {
             // Todo: conduct file closed and expired cases.
         }
+        if (readMapped(bf, relOffset)) {
+            return;
+        }
         int size = 0;
         while (bf.hasRemaining()) {
             final int l = this.channel.read(bf, relOffset + size);
@@ -398,6 +466,11 @@ public class FileSegment implements Segment {
      */
     @Override
     public long getRecordTime(long reqOffset) throws IOException {
+        MappedByteBuffer tmpMapped = this.mappedBuffer;
+        if (tmpMapped != null
+                && reqOffset - start + DataStoreUtils.STORE_INDEX_HEAD_LEN <= tmpMapped.capacity()) {
+            return tmpMapped.getLong((int) (reqOffset - start) + DataStoreUtils.INDEX_POS_TIME_RECV);
+        }
         ByteBuffer readUnit = ByteBuffer.allocate(DataStoreUtils.STORE_INDEX_HEAD_LEN);
         int size = 0;
         while (readUnit.hasRemaining()) {
@@ -411,6 +484,119 @@ public class FileSegment implements Segment {
         return readUnit.getLong(DataStoreUtils.INDEX_POS_TIME_RECV);
     }
 
+    /**
+     * Map the immutable index segment read only, then the index reads
+     * are served from the mapping without system calls.
+     */
+    @Override
+    public void enableMappedRead() {
+        if (this.segmentType != SegmentType.INDEX
+                || this.mutable
+                || this.closed.get()
+                || this.mappedBuffer != null) {
+            return;
+        }
+        long mapSize = this.cachedSize.get();
+        if (mapSize <= 0 || mapSize > Integer.MAX_VALUE) {
+            return;
+        }
+        try {
+            this.mappedBuffer = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, mapSize);
+        } catch (Throwable e) {
+            if (e instanceof IOException) {
+                ServiceStatusHolder.addReadIOErrCnt();
+                BrokerSrvStatsHolder.incDiskIOExcCnt();
+            }
+            logger.warn(new StringBuilder(512).append("[File Store] Map ")
+                    .append(this.file.getAbsoluteFile().toString())
+                    .append(" failure, read by file channel").toString(), e);
+        }
+    }
+
+    /**
+     * Get the sparse time index of index segment, the index of a loaded
+     * immutable segment is built at the first call.
+     *
+     * @return  the sparse time index, null for data segment
+     */
+    @Override
+    public SparseTimeIndex getTimeIndex() {
+        if (this.timeIndex == null || this.timeIndexReady) {
+            return this.timeIndex;
+        }
+        synchronized (this.timeIndex) {
+            if (!this.timeIndexReady) {
+                try {
+                    long recordCnt = this.cachedSize.get() / DataStoreUtils.STORE_INDEX_HEAD_LEN;
+                    for (long recordNo = this.timeIndex.getNextSampledRecord(); recordNo < recordCnt;
+                            recordNo += this.timeIndex.getRecordInterval()) {
+                        this.timeIndex.addRecord(recordNo, getRecordTime(this.start
+                                + recordNo * DataStoreUtils.STORE_INDEX_HEAD_LEN));
+                    }
+                    this.timeIndexReady = true;
+                } catch (Throwable e) {
+                    if (e instanceof IOException) {
+                        ServiceStatusHolder.addReadIOErrCnt();
+                        BrokerSrvStatsHolder.incDiskIOExcCnt();
+                    }
+                    logger.warn(new StringBuilder(512).append("[File Store] Build time index of ")
+                            .append(this.file.getAbsoluteFile().toString())
+                            .append(" failure").toString(), e);
+                    return null;
+                }
+            }
+        }
+        return this.timeIndex;
+    }
+
+    /**
+     * Get the partition block index of index segment, the index of a loaded
+     * immutable segment is built by scanning its records at the first call.
+     *
+     * @return  the partition block index, null for data segment or build failure
+     */
+    @Override
+    public PartitionBlockIndex getPartitionIndex() {
+        if (this.partitionIndex == null || this.partitionIndexReady) {
+            return this.partitionIndex;
+        }
+        synchronized (this.partitionIndex) {
+            if (!this.partitionIndexReady) {
+                try {
+                    final long segSize = this.cachedSize.get();
+                    final ByteBuffer readBuf = ByteBuffer.allocate(
+                            DataStoreUtils.STORE_PARTITION_BLOCK_RECORDS * DataStoreUtils.STORE_INDEX_HEAD_LEN);
+                    long readPos = this.partitionIndex.getCoveredRecords() * DataStoreUtils.STORE_INDEX_HEAD_LEN;
+                    while (readPos + DataStoreUtils.STORE_INDEX_HEAD_LEN <= segSize) {
+                        readBuf.clear();
+                        if (readBuf.remaining() > segSize - readPos) {
+                            readBuf.limit((int) (segSize - readPos));
+                        }
+                        relRead(readBuf, readPos);
+                        readBuf.flip();
+                        if (readBuf.remaining() < DataStoreUtils.STORE_INDEX_HEAD_LEN) {
+                            break;
+                        }
+                        addPartitionIndexRecords(readBuf, readPos);
+                        readPos += readBuf.remaining()
+                                - readBuf.remaining() % DataStoreUtils.STORE_INDEX_HEAD_LEN;
+                    }
+                    this.partitionIndexReady = true;
+                } catch (Throwable e) {
+                    if (e instanceof IOException) {
+                        ServiceStatusHolder.addReadIOErrCnt();
+                        BrokerSrvStatsHolder.incDiskIOExcCnt();
+                    }
+                    logger.warn(new StringBuilder(512).append("[File Store] Build partition index of ")
+                            .append(this.file.getAbsoluteFile().toString())
+                            .append(" failure").toString(), e);
+                    return null;
+                }
+            }
+        }
+        return this.partitionIndex;
+    }
+
     /**
      * Check whether this FileSegment is expired, and set expire status.
      * The last FileSegment cannot be marked expired.
@@ -515,6 +701,9 @@ public class FileSegment implements Segment {
             this.cachedSize.set(totalBytes);
             this.flushedSize.set(totalBytes);
             this.channel.position(totalBytes);
+            // the records are not scanned, build the indexes lazily
+            this.timeIndexReady = (totalBytes == 0);
+            this.partitionIndexReady = (totalBytes == 0);
             return new RecoverResult(0, true);
         }
         long validBytes = 0L;
@@ -550,6 +739,8 @@ public class FileSegment implements Segment {
                     next = -1;
                     break;
                 }
+                this.timeIndex.addRecord(validBytes / DataStoreUtils.STORE_INDEX_HEAD_LEN, itemTimeRecv);
+                this.partitionIndex.addRecord(validBytes / DataStoreUtils.STORE_INDEX_HEAD_LEN, itemMsgPartId);
                 next = itemNext;
             } while (false);
             if (next >= 0) {
@@ -565,6 +756,43 @@ public class FileSegment implements Segment {
         return new RecoverResult(totalBytes - validBytes, false);
     }
 
+    private void addTimeIndexRecords(ByteBuffer buf, long offset) {
+        final long firstRecord = offset / DataStoreUtils.STORE_INDEX_HEAD_LEN;
+        final long endRecord = firstRecord + buf.remaining() / DataStoreUtils.STORE_INDEX_HEAD_LEN;
+        for (long recordNo = this.timeIndex.getNextSampledRecord(); recordNo < endRecord;
+                recordNo += this.timeIndex.getRecordInterval()) {
+            if (recordNo < firstRecord) {
+                continue;
+            }
+            this.timeIndex.addRecord(recordNo, buf.getLong(buf.position()
+                    + (int) (recordNo - firstRecord) * DataStoreUtils.STORE_INDEX_HEAD_LEN
+                    + DataStoreUtils.INDEX_POS_TIME_RECV));
+        }
+    }
+
+    private void addPartitionIndexRecords(ByteBuffer buf, long offset) {
+        final long firstRecord = offset / DataStoreUtils.STORE_INDEX_HEAD_LEN;
+        final int recordCnt = buf.remaining() / DataStoreUtils.STORE_INDEX_HEAD_LEN;
+        for (int i = 0; i < recordCnt; i++) {
+            this.partitionIndex.addRecord(firstRecord + i,
+                    buf.getInt(buf.position() + i * DataStoreUtils.STORE_INDEX_HEAD_LEN));
+        }
+    }
+
+    private boolean readMapped(ByteBuffer bf, long relOffset) {
+        MappedByteBuffer tmpMapped = this.mappedBuffer;
+        if (tmpMapped == null || relOffset < 0 || relOffset >= tmpMapped.capacity()) {
+            return false;
+        }
+        ByteBuffer readBuf = tmpMapped.duplicate();
+        readBuf.position((int) relOffset);
+        if (readBuf.remaining() > bf.remaining()) {
+            readBuf.limit((int) relOffset + bf.remaining());
+        }
+        bf.put(readBuf);
+        return true;
+    }
+
     private static class RecoverResult {
 
         private final long truncated;
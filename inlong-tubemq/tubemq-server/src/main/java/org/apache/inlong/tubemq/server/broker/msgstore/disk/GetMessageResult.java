@@ -18,11 +18,11 @@
 package org.apache.inlong.tubemq.server.broker.msgstore.disk;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import org.apache.inlong.tubemq.corebase.TBaseConstants;
 import org.apache.inlong.tubemq.corebase.protobuf.generated.ClientBroker.TransferedMessage;
-import org.apache.inlong.tubemq.server.broker.stats.TrafficInfo;
+import org.apache.inlong.tubemq.server.broker.msgstore.mem.MsgMemStore;
+import org.apache.inlong.tubemq.server.broker.stats.FetchTrafficInfo;
 
 /**
  * Broker's reply to Consumer's GetMessage request.
@@ -39,14 +39,16 @@ public class GetMessageResult {
     public long waitTime = -1;
     public boolean isSlowFreq = false;
     public boolean isFromSsdFile = false;
-    public HashMap<String, TrafficInfo> tmpCounters = new HashMap<>();
+    public FetchTrafficInfo tmpCounters = new FetchTrafficInfo();
     public List<TransferedMessage> transferedMessageList = new ArrayList<>();
     public long maxOffset = TBaseConstants.META_VALUE_UNDEFINED;
+    // the memory cache referenced by the message payloads, null if copied
+    private MsgMemStore pinnedMemStore = null;
 
     public GetMessageResult(boolean isSuccess, int retCode, final String errInfo,
             final long reqOffset, final int lastReadOffset,
             final long lastRdDataOffset, final int totalSize,
-            HashMap<String, TrafficInfo> tmpCounters,
+            FetchTrafficInfo tmpCounters,
             List<TransferedMessage> transferedMessageList) {
         this(isSuccess, retCode, errInfo, reqOffset, lastReadOffset,
                 lastRdDataOffset, totalSize, tmpCounters, transferedMessageList, false);
@@ -55,7 +57,7 @@ public class GetMessageResult {
     public GetMessageResult(boolean isSuccess, int retCode, final String errInfo,
             final long reqOffset, final int lastReadOffset,
             final long lastRdDataOffset, final int totalSize,
-            HashMap<String, TrafficInfo> tmpCounters,
+            FetchTrafficInfo tmpCounters,
             List<TransferedMessage> transferedMessageList,
             boolean isFromSsdFile) {
         this.isSuccess = isSuccess;
@@ -109,11 +111,11 @@ public class GetMessageResult {
         this.waitTime = waitTime;
     }
 
-    public HashMap<String, TrafficInfo> getTmpCounters() {
+    public FetchTrafficInfo getTmpCounters() {
         return tmpCounters;
     }
 
-    public void setTmpCounters(HashMap<String, TrafficInfo> tmpCounters) {
+    public void setTmpCounters(FetchTrafficInfo tmpCounters) {
         this.tmpCounters = tmpCounters;
     }
 
@@ -173,6 +175,26 @@ public class GetMessageResult {
         this.reqOffset = reqOffset;
     }
 
+    public void setPinnedMemStore(MsgMemStore pinnedMemStore) {
+        this.pinnedMemStore = pinnedMemStore;
+    }
+
+    public boolean hasPinnedMemStore() {
+        return pinnedMemStore != null;
+    }
+
+    /**
+     * Release the memory cache pinned by the slice read, the messages
+     * must not be accessed after the release.
+     */
+    public void releaseReadRef() {
+        MsgMemStore memStore = this.pinnedMemStore;
+        if (memStore != null) {
+            this.pinnedMemStore = null;
+            memStore.decReadRef();
+        }
+    }
+
     public long getMaxOffset() {
         return maxOffset;
     }
@@ -23,7 +23,6 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -38,10 +37,9 @@ import org.apache.inlong.tubemq.server.broker.BrokerConfig;
 import org.apache.inlong.tubemq.server.broker.msgstore.MessageStore;
 import org.apache.inlong.tubemq.server.broker.stats.MsgStoreStatsHolder;
 import org.apache.inlong.tubemq.server.broker.stats.BrokerSrvStatsHolder;
-import org.apache.inlong.tubemq.server.broker.stats.TrafficInfo;
+import org.apache.inlong.tubemq.server.broker.stats.FetchTrafficInfo;
 import org.apache.inlong.tubemq.server.broker.utils.DataStoreUtils;
 import org.apache.inlong.tubemq.server.broker.utils.DiskSamplePrint;
-import org.apache.inlong.tubemq.server.common.TServerConstants;
 import org.apache.inlong.tubemq.server.common.utils.FileUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -149,12 +147,13 @@ public class MsgFileStore implements Closeable {
         boolean pendingMsgSizeExceed = false;
         boolean pendingMsgTimeExceed = false;
         boolean isForceMetadata = false;
+        boolean groupCommitRequired = false;
         // flushed message count and data size info
         long flushedMsgCnt = 0;
         long flushedDataSize = 0;
         // Temporary variables in calculations
         long inIndexOffset;
-        Segment curDataSeg;
+        Segment curDataSeg = null;
         long dataOffset = -1;
         long inDataOffset;
         Segment curIndexSeg;
@@ -163,6 +162,7 @@ public class MsgFileStore implements Closeable {
         String newDataFilePath = null;
         String newIndexFilePath = null;
         boolean fileStoreOK = false;
+        long dataRollbackPos = -1;
         this.writeLock.lock();
         try {
             // position last segments
@@ -175,12 +175,25 @@ public class MsgFileStore implements Closeable {
             } else {
                 inIndexOffset = curIndexSeg.getLast();
                 inDataOffset = curDataSeg.getLast();
-                indexBuffer.putLong(DataStoreUtils.INDEX_POS_DATAOFFSET, inDataOffset);
-                dataBuffer.putLong(DataStoreUtils.STORE_HEADER_POS_QUEUE_LOGICOFF, inIndexOffset);
+                // fill the offsets of each message, the entries are stored in sequence
+                int indexEntryPos = 0;
+                int dataEntryPos = 0;
+                for (int i = 0; i < msgCnt; i++) {
+                    indexBuffer.putLong(indexEntryPos + DataStoreUtils.INDEX_POS_DATAOFFSET,
+                            inDataOffset + dataEntryPos);
+                    dataBuffer.putLong(dataEntryPos + DataStoreUtils.STORE_HEADER_POS_QUEUE_LOGICOFF,
+                            inIndexOffset + indexEntryPos);
+                    dataEntryPos += indexBuffer.getInt(indexEntryPos + DataStoreUtils.INDEX_POS_MSG_SIZE);
+                    indexEntryPos += DataStoreUtils.STORE_INDEX_HEAD_LEN;
+                }
             }
-            // filling data segment.
-            this.curUnflushSize.addAndGet(dataSize);
+            // filling data segment, then index data, each append is all-or-none,
+            // the data is truncated back if the index fails to be appended.
+            dataRollbackPos = curDataSeg.getLast();
             dataOffset = curDataSeg.append(dataBuffer, leftTime, rightTime);
+            indexOffset = curIndexSeg.append(indexBuffer, leftTime, rightTime);
+            dataRollbackPos = -1;
+            this.curUnflushSize.addAndGet(dataSize);
             // judge whether we need to create a new data segment.
             if (curDataSeg.getCachedSize() >= this.tubeConfig.getMaxSegmentSize()) {
                 isDataSegFlushed = true;
@@ -192,13 +205,14 @@ public class MsgFileStore implements Closeable {
                 newDataFilePath = newDataFile.getAbsolutePath();
                 this.dataSegments.append(new FileSegment(newDataOffset, newDataFile, SegmentType.DATA));
             }
-            // filling index data.
-            indexOffset = curIndexSeg.append(indexBuffer, leftTime, rightTime);
             // judge whether we need to create a new index segment.
             if (curIndexSeg.getCachedSize() >= this.tubeConfig.getMaxIndexSegmentSize()) {
                 isIndexSegFlushed = true;
                 long newIndexOffset = curIndexSeg.flush(true);
                 curIndexSeg.setMutable(false);
+                if (this.tubeConfig.isEnableIndexMmap()) {
+                    curIndexSeg.enableMappedRead();
+                }
                 File newIndexFile =
                         new File(this.indexDir,
                                 DataStoreUtils.nameFromOffset(newIndexOffset, DataStoreUtils.INDEX_FILE_SUFFIX));
@@ -213,7 +227,12 @@ public class MsgFileStore implements Closeable {
                     (this.curUnflushed.addAndGet(msgCnt) >= messageStore.getUnflushThreshold());
             pendingMsgTimeExceed =
                     (currTime - this.lastFlushTime.get() >= messageStore.getUnflushInterval());
-            if (pendingMsgCntExceed || pendingMsgTimeExceed
+            if (messageStore.isGroupCommitEnabled()
+                    && (pendingMsgCntExceed || pendingMsgTimeExceed || pendingMsgSizeExceed)
+                    && !isDataSegFlushed && !isIndexSegFlushed) {
+                // the group commit thread syncs the segments out of the write lock
+                groupCommitRequired = true;
+            } else if (pendingMsgCntExceed || pendingMsgTimeExceed
                     || pendingMsgSizeExceed || isDataSegFlushed || isIndexSegFlushed) {
                 isForceMetadata = (isDataSegFlushed || isIndexSegFlushed
                         || (currTime - this.lastMetaFlushTime.get() > MAX_META_REFRESH_DUR));
@@ -252,8 +271,20 @@ public class MsgFileStore implements Closeable {
                 BrokerSrvStatsHolder.incDiskIOExcCnt();
             }
             samplePrintCtrl.printExceptionCaught(e);
+            if (dataRollbackPos >= 0) {
+                try {
+                    curDataSeg.truncate(dataRollbackPos);
+                } catch (Throwable e1) {
+                    logger.error(sb.append("[File Store]: Roll back data of failed append error, storekey=")
+                            .append(this.storeKey).append(",dataPos=").append(dataRollbackPos).toString(), e1);
+                    sb.delete(0, sb.length());
+                }
+            }
         } finally {
             this.writeLock.unlock();
+            if (groupCommitRequired) {
+                messageStore.requestGroupCommit();
+            }
             // add statistics.
             if (fileStoreOK) {
                 msgStoreStatsHolder.addFileFlushStatsInfo(msgCnt, indexSize, dataSize,
@@ -284,7 +315,6 @@ public class MsgFileStore implements Closeable {
      * @param indexBuffer           the index read buffer
      * @param isFilterConsume       whether to filter consumption
      * @param filterKeySet          filter item set
-     * @param statsKeyBase         the statistical key prefix
      * @param maxMsgTransferSize    the max read message size
      * @param reqRcvTime            the timestamp of the record to be checked
      *
@@ -294,9 +324,41 @@ public class MsgFileStore implements Closeable {
             long reqOffset, ByteBuffer indexBuffer,
             boolean isFilterConsume,
             Set<Integer> filterKeySet,
-            String statsKeyBase,
             int maxMsgTransferSize,
             long reqRcvTime) {
+        return getMessages(partitionId, lastRdOffset, reqOffset, indexBuffer,
+                isFilterConsume, filterKeySet,
+                maxMsgTransferSize, reqRcvTime, false);
+    }
+
+    /**
+     * Get message from index and data files.
+     *
+     * When isRangeRead is true, the data of contiguous index hits is read from the data
+     * file by one range read, and the messages reference the payloads in the range
+     * buffer instead of copying them one by one, used by catch-up consumers. A range
+     * only covers the records to be served, it ends before the data of other partitions,
+     * the filtered out records, or a gap in the data file.
+     *
+     * @param partitionId           the partitionId for reading messages
+     * @param lastRdOffset          the recent data offset read before
+     * @param reqOffset             the request index offset
+     * @param indexBuffer           the index read buffer
+     * @param isFilterConsume       whether to filter consumption
+     * @param filterKeySet          filter item set
+     * @param maxMsgTransferSize    the max read message size
+     * @param reqRcvTime            the timestamp of the record to be checked
+     * @param isRangeRead           whether coalesce the data reads into range reads
+     *
+     * @return                      read result
+     */
+    public GetMessageResult getMessages(int partitionId, long lastRdOffset,
+            long reqOffset, ByteBuffer indexBuffer,
+            boolean isFilterConsume,
+            Set<Integer> filterKeySet,
+            int maxMsgTransferSize,
+            long reqRcvTime,
+            boolean isRangeRead) {
         // #lizard forgives
         // Orderly read from index file, then random read from data file.
         int retCode = 0;
@@ -317,9 +379,11 @@ public class MsgFileStore implements Closeable {
         final StringBuilder sBuilder = new StringBuilder(512);
         final long curDataMaxOffset = getDataMaxOffset();
         final long curDataMinOffset = getDataMinOffset();
-        HashMap<String, TrafficInfo> countMap = new HashMap<>();
-        ByteBuffer dataBuffer =
-                ByteBuffer.allocate(TServerConstants.CFG_STORE_DEFAULT_MSG_READ_UNIT);
+        final FetchTrafficInfo trafficInfo = new FetchTrafficInfo();
+        ByteBuffer dataBuffer = null;
+        ByteBuffer rangeBuffer = null;
+        long rangeStartOffset = 0L;
+        int rangeDataPos = 0;
         List<ClientBroker.TransferedMessage> transferedMessageList =
                 new ArrayList<>();
         // read data file by index.
@@ -373,14 +437,37 @@ public class MsgFileStore implements Closeable {
                         throw new Exception("Read Service has closed!");
                     }
                 }
-                if (dataBuffer.capacity() < curIndexDataSize) {
+                if (isRangeRead) {
+                    // read the following data together when out of the range read before
+                    if (rangeBuffer == null
+                            || curIndexDataOffset < rangeStartOffset
+                            || maxDataLimitOffset > rangeStartOffset + rangeBuffer.limit()) {
+                        long rangeEndOffset = Math.min(curDataMaxOffset,
+                                recordSeg.getStart() + recordSeg.getCommitSize());
+                        int rangeSize = getRangeReadSize(indexBuffer, curIndexOffset,
+                                partitionId, isFilterConsume, filterKeySet, reqRcvTime,
+                                curIndexDataOffset, curIndexDataSize, rangeEndOffset,
+                                Math.max(curIndexDataSize, maxMsgTransferSize - totalSize));
+                        rangeBuffer = ByteBuffer.allocate(rangeSize);
+                        recordSeg.read(rangeBuffer, curIndexDataOffset);
+                        rangeBuffer.flip();
+                        rangeStartOffset = curIndexDataOffset;
+                    }
+                    rangeDataPos = (int) (curIndexDataOffset - rangeStartOffset);
+                    dataRealLimit = rangeBuffer.limit() - rangeDataPos;
+                    if (dataRealLimit >= curIndexDataSize) {
+                        dataBuffer = rangeBuffer.duplicate();
+                        dataBuffer.position(rangeDataPos);
+                        dataBuffer.limit(rangeDataPos + curIndexDataSize);
+                        dataBuffer = dataBuffer.slice();
+                    }
+                } else {
+                    // read into a buffer of its own, so the payload is referenced without copy
                     dataBuffer = ByteBuffer.allocate(curIndexDataSize);
+                    recordSeg.read(dataBuffer, curIndexDataOffset);
+                    dataBuffer.flip();
+                    dataRealLimit = dataBuffer.limit();
                 }
-                dataBuffer.clear();
-                dataBuffer.limit(curIndexDataSize);
-                recordSeg.read(dataBuffer, curIndexDataOffset);
-                dataBuffer.flip();
-                dataRealLimit = dataBuffer.limit();
                 if (dataRealLimit < curIndexDataSize) {
                     lastRdDataOffset = curIndexDataOffset;
                     readedOffset = curIndexOffset + DataStoreUtils.STORE_INDEX_HEAD_LEN;
@@ -405,8 +492,8 @@ public class MsgFileStore implements Closeable {
             readedOffset = curIndexOffset + DataStoreUtils.STORE_INDEX_HEAD_LEN;
             lastRdDataOffset = maxDataLimitOffset;
             ClientBroker.TransferedMessage transferedMessage =
-                    DataStoreUtils.getTransferMsg(dataBuffer,
-                            curIndexDataSize, countMap, statsKeyBase, sBuilder);
+                    DataStoreUtils.getTransferMsg(dataBuffer, curIndexDataSize,
+                            trafficInfo, true);
             if (transferedMessage == null) {
                 continue;
             }
@@ -430,10 +517,61 @@ public class MsgFileStore implements Closeable {
         if (lastRdDataOffset <= 0L) {
             lastRdDataOffset = lastRdOffset;
         }
+        BrokerSrvStatsHolder.addGetMsgReadBytes(isRangeRead, totalSize);
         // return result.
         return new GetMessageResult(result, retCode, errInfo,
                 reqOffset, readedOffset, lastRdDataOffset,
-                totalSize, countMap, transferedMessageList);
+                totalSize, trafficInfo, transferedMessageList);
+    }
+
+    /**
+     * Get the size of the range read starting from the current index hit, the range covers
+     * the following index items that would be served and whose data are stored right after
+     * the data before, so neither other partitions' data nor the filtered out records are read,
+     * and the index items out of the read loop bound are not included either.
+     *
+     * @param indexBuffer       the index read buffer, positioned after the current index item
+     * @param indexOffset       the read loop offset of the current index item
+     * @param partitionId       the partitionId for reading messages
+     * @param isFilterConsume   whether to filter consumption
+     * @param filterKeySet      filter item set
+     * @param reqRcvTime        the timestamp of the record to be checked
+     * @param dataOffset        the data offset of the current index hit
+     * @param dataSize          the data size of the current index hit
+     * @param dataEndOffset     the end offset of the readable data in the segment
+     * @param maxRangeSize      the max range size, exceeded by the last record at most
+     *
+     * @return                  the size of the range read
+     */
+    private int getRangeReadSize(ByteBuffer indexBuffer, int indexOffset,
+            int partitionId, boolean isFilterConsume, Set<Integer> filterKeySet,
+            long reqRcvTime, long dataOffset, int dataSize, long dataEndOffset, int maxRangeSize) {
+        int rangeSize = dataSize;
+        long nextDataOffset = dataOffset + dataSize;
+        int indexPos = indexBuffer.position();
+        int nextIndexOffset = indexOffset + DataStoreUtils.STORE_INDEX_HEAD_LEN;
+        // same bound as the read loop, which stops when its offset reaches the unread index size
+        while (rangeSize < maxRangeSize
+                && nextIndexOffset < indexBuffer.limit() - indexPos
+                && indexPos + DataStoreUtils.STORE_INDEX_HEAD_LEN <= indexBuffer.limit()) {
+            int itemDataSize = indexBuffer.getInt(indexPos + DataStoreUtils.INDEX_POS_MSG_SIZE);
+            if (indexBuffer.getInt(indexPos + DataStoreUtils.INDEX_POS_PARTITIONID) != partitionId
+                    || indexBuffer.getLong(indexPos + DataStoreUtils.INDEX_POS_DATAOFFSET) != nextDataOffset
+                    || itemDataSize <= 0
+                    || itemDataSize > DataStoreUtils.STORE_MAX_MESSAGE_STORE_LEN
+                    || nextDataOffset + itemDataSize > dataEndOffset
+                    || (isFilterConsume && !filterKeySet.contains(
+                            indexBuffer.getInt(indexPos + DataStoreUtils.INDEX_POS_KEY_CODE)))
+                    || (reqRcvTime != 0
+                            && indexBuffer.getLong(indexPos + DataStoreUtils.INDEX_POS_TIME_RECV) < reqRcvTime)) {
+                break;
+            }
+            rangeSize += itemDataSize;
+            nextDataOffset += itemDataSize;
+            indexPos += DataStoreUtils.STORE_INDEX_HEAD_LEN;
+            nextIndexOffset += DataStoreUtils.STORE_INDEX_HEAD_LEN;
+        }
+        return rangeSize;
     }
 
     /**
@@ -472,6 +610,19 @@ public class MsgFileStore implements Closeable {
         long startPos = 0;
         long firstLowPos = 0;
         long firstEqualPos = -1;
+        // narrow the search range by the sparse time index
+        SparseTimeIndex timeIndex = recordSeg.getTimeIndex();
+        if (timeIndex != null) {
+            long lowerRecord = timeIndex.getLowerRecord(timestamp);
+            if (lowerRecord > 0 && lowerRecord <= endPos) {
+                startPos = lowerRecord;
+                firstLowPos = lowerRecord;
+            }
+            long upperRecord = timeIndex.getUpperRecord(timestamp);
+            if (upperRecord > startPos && upperRecord <= endPos) {
+                endPos = upperRecord - 1;
+            }
+        }
         // Dichotomy finds the first offset position less than the specified time
         while (startPos <= endPos) {
             midPos = endPos + startPos >>> 1;
@@ -533,6 +684,51 @@ public class MsgFileStore implements Closeable {
         return (hasExpiredDataSegs || hasExpiredIndexSegs);
     }
 
+    /**
+     * Sync the last data and index segments to disk, used by the group commit thread.
+     *
+     * The segments are forced out of the write lock, the appends go on meanwhile;
+     * the segments rolled before were forced while rolling.
+     *
+     * @return the index offset before which all the index entries are synced
+     * @throws IOException the exception during processing
+     */
+    public long syncToDisk() throws IOException {
+        if (this.closed.get()) {
+            throw new IllegalStateException(new StringBuilder(512)
+                    .append("Closed MessageStore for storeKey ")
+                    .append(this.storeKey).toString());
+        }
+        Segment curDataSeg;
+        Segment curIndexSeg;
+        long syncIndexOffset;
+        long flushedMsgCnt;
+        long flushedDataSize;
+        boolean forceMetadata;
+        long checkTimestamp = System.currentTimeMillis();
+        this.writeLock.lock();
+        try {
+            curDataSeg = this.dataSegments.last();
+            curIndexSeg = this.indexSegments.last();
+            syncIndexOffset = curIndexSeg.getLast();
+            forceMetadata = (checkTimestamp - lastMetaFlushTime.get()) > MAX_META_REFRESH_DUR;
+            if (forceMetadata) {
+                this.lastMetaFlushTime.set(checkTimestamp);
+            }
+            flushedMsgCnt = curUnflushed.getAndSet(0);
+            flushedDataSize = curUnflushSize.getAndSet(0);
+            lastFlushTime.set(checkTimestamp);
+        } finally {
+            this.writeLock.unlock();
+        }
+        // data first, the synced index entries always refer to synced data
+        curDataSeg.flush(forceMetadata);
+        curIndexSeg.flush(forceMetadata);
+        msgStoreStatsHolder.addFileGroupCommitStats(flushedMsgCnt,
+                flushedDataSize, forceMetadata);
+        return syncIndexOffset;
+    }
+
     /**
      * Flush data to disk at interval.
      *
@@ -540,6 +736,15 @@ public class MsgFileStore implements Closeable {
      */
     public void flushDiskFile() throws IOException {
         long checkTimestamp = System.currentTimeMillis();
+        if (messageStore.isGroupCommitEnabled()) {
+            // hand the timeout flush to the group commit thread
+            if ((curUnflushed.get() > 0)
+                    && (checkTimestamp - lastFlushTime.get() >= messageStore.getUnflushInterval())) {
+                messageStore.requestGroupCommit();
+            }
+            msgStoreStatsHolder.chkStatsExpired(checkTimestamp);
+            return;
+        }
         if ((curUnflushed.get() > 0)
                 && (checkTimestamp - lastFlushTime.get() >= messageStore.getUnflushInterval())) {
             long flushedMsgCnt = 0L;
@@ -610,6 +815,29 @@ public class MsgFileStore implements Closeable {
         return indexSegments.getRecordSeg(offset);
     }
 
+    /**
+     * Get the offset from which the partition's index records may be stored in the index segment,
+     * the index blocks that only contain the other partitions' records are skipped.
+     *
+     * @param indexSeg        the index segment contains the offset
+     * @param partitionId     the partition id
+     * @param offset          the request offset
+     * @return                the read offset, not less than the request offset
+     */
+    public long getPartitionReadOffset(Segment indexSeg, int partitionId, long offset) {
+        long relOffset = offset - indexSeg.getStart();
+        if (relOffset < 0 || relOffset % DataStoreUtils.STORE_INDEX_HEAD_LEN != 0) {
+            return offset;
+        }
+        PartitionBlockIndex partitionIndex = indexSeg.getPartitionIndex();
+        if (partitionIndex == null) {
+            return offset;
+        }
+        long readOffset = indexSeg.getStart() + partitionIndex.getNextRecord(partitionId,
+                relOffset / DataStoreUtils.STORE_INDEX_HEAD_LEN) * DataStoreUtils.STORE_INDEX_HEAD_LEN;
+        return Math.max(offset, Math.min(readOffset, indexSeg.getCommitLast()));
+    }
+
     private void loadSegments(SegmentType segType, long offsetIfCreate,
             StringBuilder sBuilder) throws IOException {
         String segTypeStr = "Data";
@@ -640,7 +868,11 @@ public class MsgFileStore implements Closeable {
                     final String filename = file.getName();
                     final long start =
                             Long.parseLong(filename.substring(0, filename.length() - fileSuffix.length()));
-                    accum.add(new FileSegment(start, file, false, segType));
+                    final FileSegment fileSegment = new FileSegment(start, file, false, segType);
+                    if (segType == SegmentType.INDEX && this.tubeConfig.isEnableIndexMmap()) {
+                        fileSegment.enableMappedRead();
+                    }
+                    accum.add(fileSegment);
                 }
             }
         }
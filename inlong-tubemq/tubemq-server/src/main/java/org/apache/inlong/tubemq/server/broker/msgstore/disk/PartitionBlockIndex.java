@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.server.broker.msgstore.disk;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Partition block index of an index segment, records for each partition the blocks of
+ * blockRecords index records that contain its messages, so that the reading of a partition
+ * skips the blocks filled only by the other partitions.
+ *
+ * Records are added by the single writer in order, readers need no lock.
+ */
+public class PartitionBlockIndex {
+
+    private final int blockRecords;
+    private final ConcurrentHashMap<Integer, BlockList> partitionBlocks =
+            new ConcurrentHashMap<>();
+    // the count of the records covered by the index
+    private volatile long coveredRecords = 0;
+
+    public PartitionBlockIndex(int blockRecords) {
+        this.blockRecords = blockRecords;
+    }
+
+    /**
+     * Add the partition of the index record, the records must be added one by one in order.
+     *
+     * @param recordNo      the record number in the segment
+     * @param partitionId   the partition id of the record
+     */
+    public void addRecord(long recordNo, int partitionId) {
+        // a gap leaves the following records uncovered, they are read without skipping
+        if (recordNo != this.coveredRecords) {
+            return;
+        }
+        BlockList blockList = partitionBlocks.get(partitionId);
+        if (blockList == null) {
+            blockList = new BlockList();
+            partitionBlocks.put(partitionId, blockList);
+        }
+        blockList.addBlock((int) (recordNo / blockRecords));
+        this.coveredRecords = recordNo + 1;
+    }
+
+    public long getCoveredRecords() {
+        return coveredRecords;
+    }
+
+    /**
+     * Get the first record from which the partition's messages may be stored.
+     *
+     * @param partitionId   the partition id
+     * @param fromRecord    the record number the search starts from
+     * @return              the record number, not less than fromRecord; the covered
+     *                      record count if no message of the partition follows
+     */
+    public long getNextRecord(int partitionId, long fromRecord) {
+        // read the covered count first, the blocks before it are all visible
+        final long tmpCovered = this.coveredRecords;
+        if (fromRecord >= tmpCovered) {
+            return fromRecord;
+        }
+        BlockList blockList = partitionBlocks.get(partitionId);
+        if (blockList == null) {
+            return tmpCovered;
+        }
+        long nextBlock = blockList.getNextBlock((int) (fromRecord / blockRecords));
+        if (nextBlock < 0) {
+            return tmpCovered;
+        }
+        return Math.min(tmpCovered, Math.max(fromRecord, nextBlock * blockRecords));
+    }
+
+    private static class BlockList {
+
+        private volatile int[] blocks = new int[8];
+        private volatile int blockCount = 0;
+
+        public void addBlock(int blockNo) {
+            int count = this.blockCount;
+            int[] tmpBlocks = this.blocks;
+            if (count > 0 && tmpBlocks[count - 1] == blockNo) {
+                return;
+            }
+            if (count == tmpBlocks.length) {
+                tmpBlocks = Arrays.copyOf(tmpBlocks, count * 2);
+                this.blocks = tmpBlocks;
+            }
+            tmpBlocks[count] = blockNo;
+            this.blockCount = count + 1;
+        }
+
+        public long getNextBlock(int fromBlock) {
+            final int count = this.blockCount;
+            final int[] tmpBlocks = this.blocks;
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (tmpBlocks[mid] < fromBlock) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low < count ? tmpBlocks[low] : -1L;
+        }
+    }
+}
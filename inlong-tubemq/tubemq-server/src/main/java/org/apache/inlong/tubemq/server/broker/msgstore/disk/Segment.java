@@ -42,6 +42,15 @@ public interface Segment {
 
     long flush(boolean force) throws IOException;
 
+    /**
+     * Discard the data appended after the position, used to roll back the data
+     * whose index failed to be appended. Only the mutable data segment supports it.
+     *
+     * @param last           the position to truncate to, not before the start
+     * @throws IOException   exception while truncating the file
+     */
+    void truncate(long last) throws IOException;
+
     int checkAndSetExpired(long checkTimestamp, long maxValidTimeMs);
 
     boolean isClosed();
@@ -95,4 +104,23 @@ public interface Segment {
     boolean containTime(long timestamp);
 
     long getRecordTime(long reqOffset) throws IOException;
+
+    /**
+     * Serve the reads of the immutable index segment from a read only mapping.
+     */
+    void enableMappedRead();
+
+    /**
+     * Get the sparse time index of the index segment.
+     *
+     * @return  the sparse time index, null if not supported
+     */
+    SparseTimeIndex getTimeIndex();
+
+    /**
+     * Get the partition block index of the index segment.
+     *
+     * @return  the partition block index, null if not supported
+     */
+    PartitionBlockIndex getPartitionIndex();
 }
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.server.broker.msgstore.disk;
+
+import java.util.Arrays;
+
+/**
+ * Sparse time index of an index segment, keeps the receive time of every
+ * recordInterval-th index record, used to narrow the records searched by timestamp.
+ *
+ * Records are added by the single writer in order, readers need no lock.
+ */
+public class SparseTimeIndex {
+
+    private final int recordInterval;
+    private volatile long[] recordTimes = new long[16];
+    private volatile int entryCount = 0;
+
+    public SparseTimeIndex(int recordInterval) {
+        this.recordInterval = recordInterval;
+    }
+
+    /**
+     * Add the receive time of the index record, only the sampled records are kept.
+     *
+     * @param recordNo      the record number in the segment
+     * @param recordTime    the receive time of the record
+     */
+    public void addRecord(long recordNo, long recordTime) {
+        if (recordNo % recordInterval != 0) {
+            return;
+        }
+        long entryIndex = recordNo / recordInterval;
+        if (entryIndex != entryCount) {
+            return;
+        }
+        long[] times = this.recordTimes;
+        if (entryIndex >= times.length) {
+            times = Arrays.copyOf(times, times.length * 2);
+            this.recordTimes = times;
+        }
+        times[(int) entryIndex] = recordTime;
+        this.entryCount = (int) entryIndex + 1;
+    }
+
+    /**
+     * Get the next record number to be sampled.
+     *
+     * @return  the next sampled record number
+     */
+    public long getNextSampledRecord() {
+        return (long) entryCount * recordInterval;
+    }
+
+    public int getRecordInterval() {
+        return recordInterval;
+    }
+
+    /**
+     * Get the last sampled record whose receive time is less than the timestamp.
+     *
+     * @param timestamp   the searched timestamp
+     * @return            the record number, -1 if not found
+     */
+    public long getLowerRecord(long timestamp) {
+        final int count = this.entryCount;
+        final long[] times = this.recordTimes;
+        int low = 0;
+        int high = count - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] < timestamp) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found < 0 ? -1L : (long) found * recordInterval;
+    }
+
+    /**
+     * Get the first sampled record whose receive time is greater than the timestamp.
+     *
+     * @param timestamp   the searched timestamp
+     * @return            the record number, -1 if not found
+     */
+    public long getUpperRecord(long timestamp) {
+        final int count = this.entryCount;
+        final long[] times = this.recordTimes;
+        int low = 0;
+        int high = count - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] > timestamp) {
+                found = mid;
+                high = mid - 1;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return found < 0 ? -1L : (long) found * recordInterval;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.server.broker.msgstore.mem;
+
+import java.util.Arrays;
+
+/**
+ * Posting list of the index positions in the memory cache, kept for each partition
+ * and each filter key so that reading jumps directly to the matching index entries.
+ *
+ * Positions are added in ascending order under the cache write lock, readers take the
+ * positions array and size under the same lock, then read them without the lock.
+ */
+public class IndexPostingList {
+
+    private int[] positions;
+    private int size = 0;
+
+    public IndexPostingList(int initCapacity) {
+        this.positions = new int[Math.max(initCapacity, 4)];
+    }
+
+    public void add(int indexPos) {
+        if (size == positions.length) {
+            positions = Arrays.copyOf(positions, size * 2);
+        }
+        positions[size++] = indexPos;
+    }
+
+    public void clear() {
+        this.size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int[] getPositions() {
+        return positions;
+    }
+
+    public int getLast() {
+        return size == 0 ? -1 : positions[size - 1];
+    }
+
+    /**
+     * Find the first position not less than the given index position.
+     *
+     * @param positions   the ascending positions
+     * @param size        the count of valid positions
+     * @param indexPos    the searched index position
+     * @return            the array index found, size if not found
+     */
+    public static int lowerBound(int[] positions, int size, int indexPos) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (positions[mid] < indexPos) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -21,6 +21,7 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -30,12 +31,14 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 import org.apache.inlong.tubemq.corebase.TBaseConstants;
 import org.apache.inlong.tubemq.corebase.TErrCodeConstants;
+import org.apache.inlong.tubemq.corebase.utils.Tuple3;
 import org.apache.inlong.tubemq.server.broker.metadata.ClusterConfigHolder;
 import org.apache.inlong.tubemq.server.broker.msgstore.disk.MsgFileStore;
 import org.apache.inlong.tubemq.server.broker.stats.BrokerSrvStatsHolder;
 import org.apache.inlong.tubemq.server.broker.stats.MsgStoreStatsHolder;
 import org.apache.inlong.tubemq.server.broker.utils.DataStoreUtils;
 import org.apache.inlong.tubemq.server.common.utils.AppendResult;
+import org.apache.inlong.tubemq.server.common.utils.BatchAppendItem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sun.nio.ch.DirectBuffer;
@@ -51,11 +54,11 @@ public class MsgMemStore implements Closeable {
     private final AtomicInteger cacheIndexOffset = new AtomicInteger(0);
     private final AtomicInteger curMessageCount = new AtomicInteger(0);
     private final ReentrantLock writeLock = new ReentrantLock();
-    // partitionId to index position, accelerate query
-    private final Map<Integer, Integer> queuesMap =
+    // partitionId to its index positions, accelerate query
+    private final Map<Integer, IndexPostingList> queuesMap =
             new HashMap<>(20);
-    // key to index position, used for filter consume
-    private final Map<Integer, Integer> keysMap =
+    // key to its index positions, used for filter consume
+    private final Map<Integer, IndexPostingList> keysMap =
             new HashMap<>(100);
     // where messages in memory will sink to disk
     private final int maxDataCacheSize;
@@ -69,6 +72,8 @@ public class MsgMemStore implements Closeable {
             new AtomicLong(TBaseConstants.META_VALUE_UNDEFINED);
     private final AtomicLong rightAppendTime =
             new AtomicLong(TBaseConstants.META_VALUE_UNDEFINED);
+    // count of readers still holding slices of the cache segments
+    private final AtomicInteger readRefCnt = new AtomicInteger(0);
 
     /**
      * MsgMemStore, initial message memory cache store block
@@ -99,7 +104,7 @@ public class MsgMemStore implements Closeable {
      */
     public void resetMemStoreStatus(long writeDataStartPos, long writeIndexStartPos) {
         this.keysMap.clear();
-        this.queuesMap.clear();
+        clearQueuePostings();
         this.cacheDataOffset.set(0);
         this.cacheIndexOffset.set(0);
         this.curMessageCount.set(0);
@@ -158,8 +163,7 @@ public class MsgMemStore implements Closeable {
             this.cachedIndexSegment.put(indexEntry.array());
             this.cacheDataOffset.getAndAdd(dataEntryLength);
             indexSizePos = cacheIndexOffset.getAndAdd(DataStoreUtils.STORE_INDEX_HEAD_LEN);
-            this.queuesMap.put(partitionId, indexSizePos);
-            this.keysMap.put(keyCode, indexSizePos);
+            addIndexPostings(partitionId, keyCode, indexSizePos);
             this.curMessageCount.getAndIncrement();
             this.rightAppendTime.set(timeRecv);
             if (indexSizePos == 0) {
@@ -175,6 +179,159 @@ public class MsgMemStore implements Closeable {
         return true;
     }
 
+    /**
+     * Append message to memory cache, the store header and index entry are
+     * serialized directly into the cache segments without temporary buffers.
+     *
+     * @param memStatsHolder    statistical information object
+     * @param partitionId       the partitionId for append messages
+     * @param keyCode           the filter item hash code
+     * @param timeRecv          the received timestamp
+     * @param dataCheckSum      the check sum of message data
+     * @param sentAddr          the address to send the message to
+     * @param messageId         the message id
+     * @param msgFlag           the message flag
+     * @param data              the message data
+     * @param dataLength        the message data length
+     * @param appendResult      the append result
+     *
+     * @return    the process result
+     */
+    public boolean appendMsg(MsgStoreStatsHolder memStatsHolder,
+            int partitionId, int keyCode, long timeRecv,
+            int dataCheckSum, int sentAddr, long messageId,
+            int msgFlag, byte[] data, int dataLength,
+            AppendResult appendResult) {
+        boolean isAppended = true;
+        boolean fullDataSize = false;
+        boolean fullIndexSize = false;
+        boolean fullCount = false;
+        int dataEntryLength = DataStoreUtils.STORE_DATA_HEADER_LEN + dataLength;
+        this.writeLock.lock();
+        try {
+            // judge whether can write to memory or not.
+            fullDataSize =
+                    (this.cacheDataOffset.get() + dataEntryLength > this.maxDataCacheSize);
+            fullCount =
+                    (this.curMessageCount.get() + 1 > maxAllowedMsgCount);
+            fullIndexSize =
+                    (this.cacheIndexOffset.get() + DataStoreUtils.STORE_INDEX_HEAD_LEN > this.maxIndexCacheSize);
+            if (fullDataSize || fullCount || fullIndexSize) {
+                isAppended = false;
+                return false;
+            }
+            // conduct message with filling process
+            putMsgEntry(partitionId, keyCode, timeRecv, dataCheckSum, sentAddr,
+                    messageId, msgFlag, data, dataLength, appendResult);
+        } finally {
+            this.writeLock.unlock();
+            if (!isAppended) {
+                memStatsHolder.addCacheFullType(fullDataSize, fullIndexSize, fullCount);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Append a batch of messages of the partition to memory cache under one lock acquisition,
+     * the batch is appended entirely or not at all.
+     *
+     * @param memStatsHolder    statistical information object
+     * @param partitionId       the partitionId for append messages
+     * @param timeRecv          the received timestamp
+     * @param sentAddr          the address to send the messages to
+     * @param batchItems        the messages, their message ids are set in their append results
+     *
+     * @return    the process result
+     */
+    public boolean appendMsgBatch(MsgStoreStatsHolder memStatsHolder,
+            int partitionId, long timeRecv, int sentAddr,
+            List<BatchAppendItem> batchItems) {
+        boolean isAppended = true;
+        boolean fullDataSize = false;
+        boolean fullIndexSize = false;
+        boolean fullCount = false;
+        int batchDataLength = 0;
+        for (BatchAppendItem batchItem : batchItems) {
+            batchDataLength += DataStoreUtils.STORE_DATA_HEADER_LEN + batchItem.getDataLength();
+        }
+        int batchIndexLength = batchItems.size() * DataStoreUtils.STORE_INDEX_HEAD_LEN;
+        this.writeLock.lock();
+        try {
+            // judge whether can write the whole batch to memory or not.
+            fullDataSize =
+                    (this.cacheDataOffset.get() + batchDataLength > this.maxDataCacheSize);
+            fullCount =
+                    (this.curMessageCount.get() + batchItems.size() > maxAllowedMsgCount);
+            fullIndexSize =
+                    (this.cacheIndexOffset.get() + batchIndexLength > this.maxIndexCacheSize);
+            if (fullDataSize || fullCount || fullIndexSize) {
+                isAppended = false;
+                return false;
+            }
+            for (BatchAppendItem batchItem : batchItems) {
+                putMsgEntry(partitionId, batchItem.getMsgTypeCode(), timeRecv,
+                        batchItem.getDataCheckSum(), sentAddr,
+                        batchItem.getAppendResult().getMsgId(), batchItem.getMsgFlag(),
+                        batchItem.getData(), batchItem.getDataLength(), batchItem.getAppendResult());
+            }
+        } finally {
+            this.writeLock.unlock();
+            if (!isAppended) {
+                memStatsHolder.addCacheFullType(fullDataSize, fullIndexSize, fullCount);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check whether the batch exceeds the capacity of an empty memory cache.
+     *
+     * @param msgCount          the message count of the batch
+     * @param batchDataLength   the total data length of the batch
+     * @return                  whether the batch can never be appended at once
+     */
+    public boolean isOversizeBatch(int msgCount, int batchDataLength) {
+        return (msgCount > this.maxAllowedMsgCount)
+                || (msgCount * DataStoreUtils.STORE_INDEX_HEAD_LEN > this.maxIndexCacheSize)
+                || (msgCount * DataStoreUtils.STORE_DATA_HEADER_LEN + batchDataLength > this.maxDataCacheSize);
+    }
+
+    // write the message and its index entry, must be called under the write lock
+    private void putMsgEntry(int partitionId, int keyCode, long timeRecv,
+            int dataCheckSum, int sentAddr, long messageId,
+            int msgFlag, byte[] data, int dataLength,
+            AppendResult appendResult) {
+        int dataEntryLength = DataStoreUtils.STORE_DATA_HEADER_LEN + dataLength;
+        long indexOffset = this.writeIndexStartPos + this.cacheIndexOffset.get();
+        long dataOffset = this.writeDataStartPos + this.cacheDataOffset.get();
+        this.cacheDataSegment.putInt(DataStoreUtils.STORE_DATA_PREFX_LEN + dataLength);
+        this.cacheDataSegment.putInt(DataStoreUtils.STORE_DATA_TOKER_BEGIN_VALUE);
+        this.cacheDataSegment.putInt(dataCheckSum);
+        this.cacheDataSegment.putInt(partitionId);
+        this.cacheDataSegment.putLong(indexOffset);
+        this.cacheDataSegment.putLong(timeRecv);
+        this.cacheDataSegment.putInt(sentAddr);
+        this.cacheDataSegment.putInt(keyCode);
+        this.cacheDataSegment.putLong(messageId);
+        this.cacheDataSegment.putInt(msgFlag);
+        this.cacheDataSegment.put(data, 0, dataLength);
+        this.cachedIndexSegment.putInt(partitionId);
+        this.cachedIndexSegment.putLong(dataOffset);
+        this.cachedIndexSegment.putInt(dataEntryLength);
+        this.cachedIndexSegment.putInt(keyCode);
+        this.cachedIndexSegment.putLong(timeRecv);
+        this.cacheDataOffset.getAndAdd(dataEntryLength);
+        int indexSizePos = cacheIndexOffset.getAndAdd(DataStoreUtils.STORE_INDEX_HEAD_LEN);
+        addIndexPostings(partitionId, keyCode, indexSizePos);
+        this.curMessageCount.getAndIncrement();
+        this.rightAppendTime.set(timeRecv);
+        if (indexSizePos == 0) {
+            this.leftAppendTime.set(timeRecv);
+        }
+        appendResult.putAppendResult(indexOffset, dataOffset);
+    }
+
     /**
      * Read from memory, read index, then data.
      *
@@ -195,8 +352,38 @@ public class MsgMemStore implements Closeable {
             int partitionId, boolean isSecond,
             boolean isFilterConsume, Set<Integer> filterKeySet,
             long reqRcvTime) {
+        return getMessages(lstRdDataOffset, lstRdIndexOffset, maxReadSize,
+                maxReadCount, partitionId, isSecond, isFilterConsume,
+                filterKeySet, reqRcvTime, false);
+    }
+
+    /**
+     * Read from memory, read index, then data.
+     *
+     * When isSliceRead is true, the returned message buffers are read-only slices
+     * of the direct cache segment instead of heap copies, the caller must hold a
+     * read reference on this store (see {@link #incReadRef()}) until the slices
+     * are no longer used, otherwise the store may be reused and overwritten.
+     *
+     * @param lstRdDataOffset       the recent data offset read before
+     * @param lstRdIndexOffset      the recent index offset read before
+     * @param maxReadSize           the max read size
+     * @param maxReadCount          the max read count
+     * @param partitionId           the partitionId for reading messages
+     * @param isSecond              whether read from secondary cache
+     * @param isFilterConsume       whether to filter consumption
+     * @param filterKeySet          filter item set
+     * @param reqRcvTime            the timestamp of the record to be checked
+     * @param isSliceRead           whether return slices of the cache segment
+     *
+     * @return                      read result
+     */
+    public GetCacheMsgResult getMessages(long lstRdDataOffset, long lstRdIndexOffset,
+            int maxReadSize, int maxReadCount,
+            int partitionId, boolean isSecond,
+            boolean isFilterConsume, Set<Integer> filterKeySet,
+            long reqRcvTime, boolean isSliceRead) {
         // #lizard forgives
-        Integer lastWritePos = 0;
         boolean hasMsg = false;
         // judge memory contains the given offset or not.
         List<ByteBuffer> cacheMsgList = new ArrayList<>();
@@ -213,29 +400,41 @@ public class MsgMemStore implements Closeable {
         int currDataOffset;
         long lastDataRdOff = lstRdDataOffset;
         int startReadOff = (int) (lstRdIndexOffset - this.writeIndexStartPos);
+        // the candidate index positions, and the position all entries before it are checked
+        int[] positions = null;
+        int posCount = 0;
+        int posIndex = 0;
+        int readEndOff;
+        List<int[]> keyPositions = null;
+        List<Integer> keyPosCounts = null;
         this.writeLock.lock();
         try {
+            currDataOffset = this.cacheDataOffset.get();
+            currIndexOffset = this.cacheIndexOffset.get();
+            lastDataRdOff = this.writeDataStartPos + currDataOffset;
             if (isFilterConsume) {
                 // filter conduct. accelerate by keysMap.
+                keyPositions = new ArrayList<>(filterKeySet.size());
+                keyPosCounts = new ArrayList<>(filterKeySet.size());
                 for (Integer keyCode : filterKeySet) {
                     if (keyCode != null) {
-                        lastWritePos = this.keysMap.get(keyCode);
-                        if ((lastWritePos != null) && (lastWritePos >= startReadOff)) {
+                        IndexPostingList keyPostings = this.keysMap.get(keyCode);
+                        if ((keyPostings != null) && (keyPostings.getLast() >= startReadOff)) {
                             hasMsg = true;
-                            break;
+                            keyPositions.add(keyPostings.getPositions());
+                            keyPosCounts.add(keyPostings.size());
                         }
                     }
                 }
             } else {
                 // orderly consume by partition id.
-                lastWritePos = this.queuesMap.get(partitionId);
-                if ((lastWritePos != null) && (lastWritePos >= startReadOff)) {
+                IndexPostingList queuePostings = this.queuesMap.get(partitionId);
+                if ((queuePostings != null) && (queuePostings.getLast() >= startReadOff)) {
                     hasMsg = true;
+                    positions = queuePostings.getPositions();
+                    posCount = queuePostings.size();
                 }
             }
-            currDataOffset = this.cacheDataOffset.get();
-            currIndexOffset = this.cacheIndexOffset.get();
-            lastDataRdOff = this.writeDataStartPos + currDataOffset;
         } finally {
             this.writeLock.unlock();
         }
@@ -251,25 +450,52 @@ public class MsgMemStore implements Closeable {
                         limitReadSize, lastDataRdOff, totalReadSize, cacheMsgList);
             }
         }
+        readEndOff = currIndexOffset;
+        if (isFilterConsume) {
+            // merge the positions of the filter keys, limited to the read count of each key
+            int[] keyPosStarts = new int[keyPositions.size()];
+            for (int i = 0; i < keyPositions.size(); i++) {
+                keyPosStarts[i] = IndexPostingList.lowerBound(
+                        keyPositions.get(i), keyPosCounts.get(i), startReadOff);
+                if (keyPosCounts.get(i) - keyPosStarts[i] > maxReadCount) {
+                    readEndOff = Math.min(readEndOff,
+                            keyPositions.get(i)[keyPosStarts[i] + maxReadCount]);
+                }
+            }
+            positions = new int[maxReadCount * keyPositions.size()];
+            for (int i = 0; i < keyPositions.size(); i++) {
+                int[] tmpPositions = keyPositions.get(i);
+                for (int j = keyPosStarts[i]; j < keyPosCounts.get(i); j++) {
+                    if (tmpPositions[j] >= readEndOff) {
+                        break;
+                    }
+                    positions[posCount++] = tmpPositions[j];
+                }
+            }
+            Arrays.sort(positions, 0, posCount);
+        } else {
+            posIndex = IndexPostingList.lowerBound(positions, posCount, startReadOff);
+        }
         // fetch data by index.
-        int readedSize = 0;
         int cPartitionId = 0;
         long cDataPos = 0L;
         int cDataSize = 0;
         int cKeyCode = 0;
         long cTimeRecv = 0L;
         int cDataOffset = 0;
+        int readPos = 0;
         ByteBuffer tmpIndexRdBuf = this.cachedIndexSegment.asReadOnlyBuffer();
         ByteBuffer tmpDataRdBuf = this.cacheDataSegment.asReadOnlyBuffer();
-        // loop read by index
-        for (int count = 0; count < maxReadCount; count++, startReadOff += DataStoreUtils.STORE_INDEX_HEAD_LEN) {
-            // cannot find matched message, return
-            if ((startReadOff >= currIndexOffset)
-                    || (startReadOff + DataStoreUtils.STORE_INDEX_HEAD_LEN > currIndexOffset)) {
+        // loop read by the index positions, the entries between them are mismatched
+        for (int count = 0; posIndex < posCount; count++, posIndex++) {
+            readPos = positions[posIndex];
+            if ((count >= maxReadCount)
+                    || (readPos + DataStoreUtils.STORE_INDEX_HEAD_LEN > readEndOff)) {
+                readEndOff = Math.min(readPos, readEndOff);
                 break;
             }
             // read index content.
-            tmpIndexRdBuf.position(startReadOff);
+            tmpIndexRdBuf.position(readPos);
             cPartitionId = tmpIndexRdBuf.getInt();
             cDataPos = tmpIndexRdBuf.getLong();
             cDataSize = tmpIndexRdBuf.getInt();
@@ -282,35 +508,40 @@ public class MsgMemStore implements Closeable {
                     || (cDataOffset >= currDataOffset)
                     || (cDataSize > ClusterConfigHolder.getMaxMsgSize())
                     || (cDataOffset + cDataSize > currDataOffset)) {
-                readedSize += DataStoreUtils.STORE_INDEX_HEAD_LEN;
                 continue;
             }
             if ((cPartitionId != partitionId)
                     || (isFilterConsume && (!filterKeySet.contains(cKeyCode)))) {
-                readedSize += DataStoreUtils.STORE_INDEX_HEAD_LEN;
                 continue;
             }
             if (reqRcvTime != 0 && cTimeRecv < reqRcvTime) {
                 continue;
             }
             // read data file.
-            byte[] tmpArray = new byte[cDataSize];
-            final ByteBuffer buffer = ByteBuffer.wrap(tmpArray);
-            tmpDataRdBuf.position(cDataOffset);
-            tmpDataRdBuf.get(tmpArray);
-            buffer.rewind();
-            cacheMsgList.add(buffer);
+            if (isSliceRead) {
+                tmpDataRdBuf.limit(tmpDataRdBuf.capacity());
+                tmpDataRdBuf.position(cDataOffset);
+                tmpDataRdBuf.limit(cDataOffset + cDataSize);
+                cacheMsgList.add(tmpDataRdBuf.slice());
+            } else {
+                byte[] tmpArray = new byte[cDataSize];
+                final ByteBuffer buffer = ByteBuffer.wrap(tmpArray);
+                tmpDataRdBuf.position(cDataOffset);
+                tmpDataRdBuf.get(tmpArray);
+                buffer.rewind();
+                cacheMsgList.add(buffer);
+            }
             lastDataRdOff = cDataPos + cDataSize;
-            readedSize += DataStoreUtils.STORE_INDEX_HEAD_LEN;
             totalReadSize += cDataSize;
             // break when exceed the max transfer size.
             if (totalReadSize >= maxReadSize) {
+                readEndOff = readPos + DataStoreUtils.STORE_INDEX_HEAD_LEN;
                 break;
             }
         }
         // return result
-        return new GetCacheMsgResult(true, 0, "Ok1",
-                lstRdIndexOffset, readedSize, lastDataRdOff, totalReadSize, cacheMsgList);
+        return new GetCacheMsgResult(true, 0, "Ok1", lstRdIndexOffset,
+                readEndOff - startReadOff, lastDataRdOff, totalReadSize, cacheMsgList);
     }
 
     /**
@@ -330,10 +561,18 @@ public class MsgMemStore implements Closeable {
         tmpIndexBuffer.flip();
         tmpDataReadBuf.flip();
         long startTime = System.currentTimeMillis();
-        msgFileStore.appendMsg(true, startTime, strBuffer, curMessageCount.get(),
-                cacheIndexOffset.get(), tmpIndexBuffer, cacheDataOffset.get(),
-                tmpDataReadBuf, leftAppendTime.get(), rightAppendTime.get());
+        Tuple3<Boolean, Long, Long> appendRet = msgFileStore.appendMsg(true, startTime,
+                strBuffer, curMessageCount.get(), cacheIndexOffset.get(), tmpIndexBuffer,
+                cacheDataOffset.get(), tmpDataReadBuf, leftAppendTime.get(), rightAppendTime.get());
         BrokerSrvStatsHolder.updDiskSyncDataDlt(System.currentTimeMillis() - startTime);
+        // the index offset is set once the messages are appended, a failure after it
+        // leaves the messages in the file and is not retried to avoid duplicates
+        if (appendRet.getF1() < 0) {
+            throw new IOException(new StringBuilder(512)
+                    .append("[Data Store] Append cached messages to file failure, indexStartPos=")
+                    .append(writeIndexStartPos).append(", indexLastPos=")
+                    .append(getIndexLastWritePos()).toString());
+        }
     }
 
     public int getCurMsgCount() {
@@ -394,13 +633,53 @@ public class MsgMemStore implements Closeable {
         return 0;
     }
 
+    /**
+     * Pin the cache segments against reuse, called before slice reading.
+     */
+    public void incReadRef() {
+        this.readRefCnt.incrementAndGet();
+    }
+
+    /**
+     * Release a reference taken by {@link #incReadRef()}.
+     */
+    public void decReadRef() {
+        this.readRefCnt.decrementAndGet();
+    }
+
+    public boolean isReadReferenced() {
+        return this.readRefCnt.get() > 0;
+    }
+
+    private void addIndexPostings(int partitionId, int keyCode, int indexSizePos) {
+        IndexPostingList queuePostings = this.queuesMap.get(partitionId);
+        if (queuePostings == null) {
+            queuePostings = new IndexPostingList(this.maxAllowedMsgCount / 8);
+            this.queuesMap.put(partitionId, queuePostings);
+        }
+        queuePostings.add(indexSizePos);
+        IndexPostingList keyPostings = this.keysMap.get(keyCode);
+        if (keyPostings == null) {
+            keyPostings = new IndexPostingList(4);
+            this.keysMap.put(keyCode, keyPostings);
+        }
+        keyPostings.add(indexSizePos);
+    }
+
+    private void clearQueuePostings() {
+        // partitions are few and stable, keep their lists for the next round
+        for (IndexPostingList queuePostings : this.queuesMap.values()) {
+            queuePostings.clear();
+        }
+    }
+
     public void clear() {
         this.writeDataStartPos = -1;
         this.writeIndexStartPos = -1;
         this.cacheDataOffset.set(0);
         this.cacheIndexOffset.set(0);
         this.curMessageCount.set(0);
-        this.queuesMap.clear();
+        clearQueuePostings();
         this.keysMap.clear();
         this.cacheDataSegment.rewind();
         this.cachedIndexSegment.rewind();
@@ -410,6 +689,10 @@ public class MsgMemStore implements Closeable {
 
     @Override
     public void close() {
+        // slices still held by readers, leave the segments to be reclaimed by GC
+        if (isReadReferenced()) {
+            return;
+        }
         ((DirectBuffer) this.cacheDataSegment).cleaner().clean();
         ((DirectBuffer) this.cachedIndexSegment).cleaner().clean();
     }
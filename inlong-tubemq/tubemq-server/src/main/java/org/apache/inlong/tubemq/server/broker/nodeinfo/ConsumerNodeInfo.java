@@ -24,6 +24,7 @@ import org.apache.inlong.tubemq.corebase.TBaseConstants;
 import org.apache.inlong.tubemq.corebase.policies.FlowCtrlResult;
 import org.apache.inlong.tubemq.corebase.policies.FlowCtrlRuleHandler;
 import org.apache.inlong.tubemq.server.broker.msgstore.MessageStoreManager;
+import org.apache.inlong.tubemq.server.broker.stats.TrafficStatsKey;
 import org.apache.inlong.tubemq.server.common.TServerConstants;
 
 /**
@@ -62,6 +63,8 @@ public class ConsumerNodeInfo {
     private final AtomicInteger qryPriorityId =
             new AtomicInteger(TBaseConstants.META_VALUE_UNDEFINED);
     private long createTime = System.currentTimeMillis();
+    // the fetch traffic statistic key, built on the first fetch of the consumer
+    private volatile TrafficStatsKey trafficStatsKey = null;
 
     /**
      * Initial consumer node information
@@ -216,6 +219,7 @@ public class ConsumerNodeInfo {
 
     public void setConsumerId(String consumerId) {
         this.consumerId = consumerId;
+        this.trafficStatsKey = null;
         if (consumerId.lastIndexOf("_") != -1) {
             String targetStr = consumerId.substring(consumerId.lastIndexOf("_") + 1);
             String[] strInfos = targetStr.split("-");
@@ -274,6 +278,14 @@ public class ConsumerNodeInfo {
         return this.rmtAddrInfo;
     }
 
+    public TrafficStatsKey getTrafficStatsKey() {
+        return trafficStatsKey;
+    }
+
+    public void setTrafficStatsKey(TrafficStatsKey trafficStatsKey) {
+        this.trafficStatsKey = trafficStatsKey;
+    }
+
     /**
      * Recalculate message limit value.
      *
@@ -17,6 +17,8 @@
 
 package org.apache.inlong.tubemq.server.broker.offset;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -31,10 +33,12 @@ import org.apache.inlong.tubemq.corebase.utils.TStringUtils;
 import org.apache.inlong.tubemq.corebase.utils.Tuple2;
 import org.apache.inlong.tubemq.corebase.utils.Tuple3;
 import org.apache.inlong.tubemq.server.broker.BrokerConfig;
+import org.apache.inlong.tubemq.server.broker.exception.StartupException;
 import org.apache.inlong.tubemq.server.broker.msgstore.MessageStore;
 import org.apache.inlong.tubemq.server.broker.stats.BrokerSrvStatsHolder;
 import org.apache.inlong.tubemq.server.broker.utils.DataStoreUtils;
 import org.apache.inlong.tubemq.server.common.TServerConstants;
+import org.apache.inlong.tubemq.server.broker.offset.offsetstorage.JournalOffsetStorage;
 import org.apache.inlong.tubemq.server.broker.offset.offsetstorage.OffsetStorage;
 import org.apache.inlong.tubemq.server.broker.offset.offsetstorage.OffsetStorageInfo;
 import org.apache.inlong.tubemq.server.broker.offset.offsetstorage.ZkOffsetStorage;
@@ -49,7 +53,7 @@ public class DefaultOffsetManager extends AbstractDaemonService implements Offse
 
     private static final Logger logger = LoggerFactory.getLogger(DefaultOffsetManager.class);
     private final BrokerConfig brokerConfig;
-    private final OffsetStorage zkOffsetStorage;
+    private final OffsetStorage offsetStorage;
     private final ConcurrentHashMap<String/* group */, ConcurrentHashMap<String/* topic - partitionId */, OffsetStorageInfo>> cfmOffsetMap =
             new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String/* group */, ConcurrentHashMap<String/* topic - partitionId */, Long>> tmpOffsetMap =
@@ -58,11 +62,35 @@ public class DefaultOffsetManager extends AbstractDaemonService implements Offse
     public DefaultOffsetManager(final BrokerConfig brokerConfig) {
         super("[Offset Manager]", brokerConfig.getZkConfig().getZkCommitPeriodMs());
         this.brokerConfig = brokerConfig;
-        zkOffsetStorage = new ZkOffsetStorage(brokerConfig.getZkConfig(),
-                true, brokerConfig.getBrokerId());
+        if (brokerConfig.isEnableOffsetJournal()) {
+            offsetStorage = createJournalOffsetStorage(brokerConfig);
+        } else {
+            offsetStorage = new ZkOffsetStorage(brokerConfig.getZkConfig(),
+                    true, brokerConfig.getBrokerId());
+        }
         super.start();
     }
 
+    private static OffsetStorage createJournalOffsetStorage(final BrokerConfig brokerConfig) {
+        OffsetStorage mirrorStorage = null;
+        if (brokerConfig.isOffsetJournalMirrorZk()) {
+            mirrorStorage = new ZkOffsetStorage(brokerConfig.getZkConfig(),
+                    true, brokerConfig.getBrokerId());
+        }
+        String journalPath = new StringBuilder(512)
+                .append(brokerConfig.getPrimaryPath()).append(File.separator)
+                .append(TServerConstants.OFFSET_JOURNAL_DIR_NAME).toString();
+        try {
+            return new JournalOffsetStorage(journalPath, brokerConfig.getBrokerId(),
+                    brokerConfig.getOffsetJournalCompactBytes(), mirrorStorage);
+        } catch (IOException e) {
+            if (mirrorStorage != null) {
+                mirrorStorage.close();
+            }
+            throw new StartupException("Initialize offset journal failed", e);
+        }
+    }
+
     @Override
     protected void loopProcess(StringBuilder strBuff) {
         try {
@@ -81,7 +109,7 @@ public class DefaultOffsetManager extends AbstractDaemonService implements Offse
         this.commitTmpOffsets();
         logger.info("[Offset Manager] begin reserve final Offset.....");
         this.commitCfmOffsets(true);
-        this.zkOffsetStorage.close();
+        this.offsetStorage.close();
         logger.info("[Offset Manager] Offset Manager service stopped!");
     }
 
@@ -339,7 +367,7 @@ public class DefaultOffsetManager extends AbstractDaemonService implements Offse
         Set<String> groupSet =
                 new HashSet<>(cfmOffsetMap.keySet());
         Map<String, Set<String>> localGroups =
-                zkOffsetStorage.queryZkAllGroupTopicInfos();
+                offsetStorage.queryZkAllGroupTopicInfos();
         groupSet.addAll(localGroups.keySet());
         return groupSet;
     }
@@ -362,7 +390,7 @@ public class DefaultOffsetManager extends AbstractDaemonService implements Offse
     public Set<String> getUnusedGroupInfo() {
         Set<String> unUsedGroups = new HashSet<>();
         Map<String, Set<String>> localGroups =
-                zkOffsetStorage.queryZkAllGroupTopicInfos();
+                offsetStorage.queryZkAllGroupTopicInfos();
         for (String groupName : localGroups.keySet()) {
             if (!cfmOffsetMap.containsKey(groupName)) {
                 unUsedGroups.add(groupName);
@@ -385,7 +413,7 @@ public class DefaultOffsetManager extends AbstractDaemonService implements Offse
             List<String> groupLst = new ArrayList<>(1);
             groupLst.add(group);
             Map<String, Set<String>> groupTopicInfo =
-                    zkOffsetStorage.queryZKGroupTopicInfo(groupLst);
+                    offsetStorage.queryZKGroupTopicInfo(groupLst);
             result = groupTopicInfo.get(group);
         } else {
             for (OffsetStorageInfo storageInfo : topicPartOffsetMap.values()) {
@@ -415,7 +443,7 @@ public class DefaultOffsetManager extends AbstractDaemonService implements Offse
                     continue;
                 }
                 Map<Integer, Long> qryResult =
-                        zkOffsetStorage.queryGroupOffsetInfo(group,
+                        offsetStorage.queryGroupOffsetInfo(group,
                                 entry.getKey(), entry.getValue());
                 Map<Integer, Tuple2<Long, Long>> offsetMap = new HashMap<>();
                 for (Map.Entry<Integer, Long> item : qryResult.entrySet()) {
@@ -561,7 +589,7 @@ public class DefaultOffsetManager extends AbstractDaemonService implements Offse
                     .append("[Offset Manager] delete offset from memory by modifier=")
                     .append(modifier).toString();
         } else {
-            zkOffsetStorage.deleteGroupOffsetInfo(groupTopicPartMap);
+            offsetStorage.deleteGroupOffsetInfo(groupTopicPartMap);
             printBase = strBuff
                     .append("[Offset Manager] delete offset from memory and zk by modifier=")
                     .append(modifier).toString();
@@ -642,7 +670,7 @@ public class DefaultOffsetManager extends AbstractDaemonService implements Offse
                     || entry.getValue() == null || entry.getValue().isEmpty()) {
                 continue;
             }
-            zkOffsetStorage.commitOffset(entry.getKey(), entry.getValue().values(), retryable);
+            offsetStorage.commitOffset(entry.getKey(), entry.getValue().values(), retryable);
         }
         BrokerSrvStatsHolder.updZKSyncDataDlt(System.currentTimeMillis() - startTime);
     }
@@ -671,7 +699,7 @@ public class DefaultOffsetManager extends AbstractDaemonService implements Offse
         OffsetStorageInfo regInfo = regInfoMap.get(offsetCacheKey);
         if (regInfo == null) {
             OffsetStorageInfo tmpRegInfo =
-                    zkOffsetStorage.loadOffset(group, topic, partitionId);
+                    offsetStorage.loadOffset(group, topic, partitionId);
             if (tmpRegInfo == null) {
                 tmpRegInfo = new OffsetStorageInfo(topic,
                         brokerConfig.getBrokerId(), partitionId, defOffset, 0);
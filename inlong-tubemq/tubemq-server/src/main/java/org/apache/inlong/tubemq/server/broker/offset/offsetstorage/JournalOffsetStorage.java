@@ -0,0 +1,621 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.server.broker.offset.offsetstorage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import org.apache.inlong.tubemq.corebase.TokenConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A offset storage implementation with a broker local append-only journal.
+ *
+ * Each commit appends the modified offsets to the current journal file and syncs it
+ * once. When the journal exceeds the compaction size, the latest offsets are written to
+ * a snapshot file and the journal is rolled to a new generation, so the recovery only
+ * replays the snapshot and the journals after it. A torn record at the journal tail is
+ * discarded on recovery.
+ *
+ * The ZooKeeper storage can be attached as a mirror; the offsets are then also committed
+ * to ZooKeeper, and the offsets not found in the journal are loaded from it.
+ */
+public class JournalOffsetStorage implements OffsetStorage {
+
+    private static final Logger logger = LoggerFactory.getLogger(JournalOffsetStorage.class);
+    private static final String SNAPSHOT_FILE_NAME = "offsets.snapshot";
+    private static final String JOURNAL_FILE_PREFIX = "offsets.journal.";
+    private static final int SNAPSHOT_MAGIC = 0x0FF5E701;
+    private static final byte RECORD_TYPE_COMMIT = 1;
+    private static final byte RECORD_TYPE_DELETE = 2;
+    // record length + record crc
+    private static final int RECORD_HEAD_LEN = 8;
+    // snapshot magic + snapshot generation
+    private static final int SNAPSHOT_HEAD_LEN = 12;
+
+    private final File journalDir;
+    private final int brokerId;
+    private final long compactBytes;
+    private final OffsetStorage mirrorStorage;
+    private final CRC32 crc32 = new CRC32();
+    private final ConcurrentHashMap<String/* group */, ConcurrentHashMap<String/* topic - partitionId */, OffsetStorageInfo>> offsetMap =
+            new ConcurrentHashMap<>();
+    private final Object journalLock = new Object();
+    private long generation = 0;
+    private RandomAccessFile journalFile;
+    private FileChannel journalChannel;
+    private boolean closed = false;
+
+    /**
+     * Initial journal offset storage object
+     *
+     * @param journalPath     the directory of journal and snapshot files
+     * @param brokerId        the broker id
+     * @param compactBytes    the journal size which triggers the snapshot
+     * @param mirrorStorage   the mirror storage, null if not required
+     */
+    public JournalOffsetStorage(String journalPath, int brokerId,
+            long compactBytes, OffsetStorage mirrorStorage) throws IOException {
+        this.journalDir = new File(journalPath);
+        this.brokerId = brokerId;
+        this.compactBytes = compactBytes;
+        this.mirrorStorage = mirrorStorage;
+        if (!this.journalDir.exists() && !this.journalDir.mkdirs()) {
+            throw new IOException(new StringBuilder(256)
+                    .append("[JournalOffsetStorage] Create directory failure, path = ")
+                    .append(journalPath).toString());
+        }
+        recover();
+        logger.info(new StringBuilder(256)
+                .append("[JournalOffsetStorage] Journal Offset Storage initiated, path=")
+                .append(journalPath).append(", generation=").append(generation)
+                .append(", mirror=").append(mirrorStorage != null).toString());
+    }
+
+    @Override
+    public void close() {
+        synchronized (journalLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            logger.info("Journal Offset Storage closing .......");
+            try {
+                journalChannel.force(true);
+                journalFile.close();
+            } catch (IOException e) {
+                logger.error("[JournalOffsetStorage] Close journal file failure", e);
+            }
+        }
+        if (this.mirrorStorage != null) {
+            this.mirrorStorage.close();
+        }
+        logger.info("Journal Offset Storage closed!");
+    }
+
+    @Override
+    public OffsetStorageInfo loadOffset(String group, String topic, int partitionId) {
+        Map<String, OffsetStorageInfo> partOffsetMap = offsetMap.get(group);
+        if (partOffsetMap != null) {
+            OffsetStorageInfo info = partOffsetMap.get(getOffsetKey(topic, partitionId));
+            if (info != null) {
+                return new OffsetStorageInfo(topic, brokerId, partitionId,
+                        info.getOffset(), info.getMessageId(), false);
+            }
+        }
+        if (this.mirrorStorage != null) {
+            return this.mirrorStorage.loadOffset(group, topic, partitionId);
+        }
+        return null;
+    }
+
+    @Override
+    public void commitOffset(String group,
+            Collection<OffsetStorageInfo> offsetInfoList,
+            boolean isFailRetry) {
+        if (offsetInfoList == null || offsetInfoList.isEmpty()) {
+            return;
+        }
+        List<OffsetStorageInfo> modifiedList = new ArrayList<>(offsetInfoList.size());
+        List<OffsetStorageInfo> commitList = new ArrayList<>(offsetInfoList.size());
+        for (final OffsetStorageInfo info : offsetInfoList) {
+            synchronized (info) {
+                if (!info.isModified()) {
+                    continue;
+                }
+                modifiedList.add(info);
+                commitList.add(new OffsetStorageInfo(info.getTopic(), info.getBrokerId(),
+                        info.getPartitionId(), info.getOffset(), info.getMessageId(), true));
+                info.setModified(false);
+            }
+        }
+        if (commitList.isEmpty()) {
+            return;
+        }
+        synchronized (journalLock) {
+            if (closed) {
+                return;
+            }
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate(
+                        commitList.size() * getRecordMaxLen(group, commitList));
+                for (OffsetStorageInfo info : commitList) {
+                    putRecord(buffer, RECORD_TYPE_COMMIT, group, info.getTopic(),
+                            info.getPartitionId(), info.getMessageId(), info.getOffset());
+                }
+                buffer.flip();
+                appendJournal(buffer);
+            } catch (IOException e) {
+                logger.error("[JournalOffsetStorage] Append offsets to journal failure", e);
+                // keep the offsets modified, they will be committed in the next round
+                for (OffsetStorageInfo info : modifiedList) {
+                    synchronized (info) {
+                        info.setModified(true);
+                    }
+                }
+                return;
+            }
+            for (OffsetStorageInfo info : commitList) {
+                applyCommit(group, info.getTopic(), info.getPartitionId(),
+                        info.getMessageId(), info.getOffset());
+            }
+            compactIfRequired();
+        }
+        if (this.mirrorStorage != null) {
+            this.mirrorStorage.commitOffset(group, commitList, isFailRetry);
+        }
+    }
+
+    @Override
+    public Map<String, Set<String>> queryZkAllGroupTopicInfos() {
+        return queryZKGroupTopicInfo(new ArrayList<>(offsetMap.keySet()));
+    }
+
+    @Override
+    public Map<String, Set<String>> queryZKGroupTopicInfo(List<String> groupSet) {
+        Map<String, Set<String>> groupTopicMap = new HashMap<>();
+        if (groupSet == null || groupSet.isEmpty()) {
+            return groupTopicMap;
+        }
+        for (String group : groupSet) {
+            if (group == null) {
+                continue;
+            }
+            Map<String, OffsetStorageInfo> partOffsetMap = offsetMap.get(group);
+            if (partOffsetMap == null) {
+                continue;
+            }
+            Set<String> topicSet = new HashSet<>();
+            for (OffsetStorageInfo info : partOffsetMap.values()) {
+                topicSet.add(info.getTopic());
+            }
+            if (!topicSet.isEmpty()) {
+                groupTopicMap.put(group, topicSet);
+            }
+        }
+        return groupTopicMap;
+    }
+
+    @Override
+    public Map<Integer, Long> queryGroupOffsetInfo(String group, String topic,
+            Set<Integer> partitionIds) {
+        Map<Integer, Long> result = new HashMap<>(partitionIds.size());
+        Map<String, OffsetStorageInfo> partOffsetMap = offsetMap.get(group);
+        for (Integer partitionId : partitionIds) {
+            OffsetStorageInfo info = (partOffsetMap == null)
+                    ? null
+                    : partOffsetMap.get(getOffsetKey(topic, partitionId));
+            result.put(partitionId, (info == null) ? null : info.getOffset());
+        }
+        return result;
+    }
+
+    @Override
+    public void deleteGroupOffsetInfo(
+            Map<String, Map<String, Set<Integer>>> groupTopicPartMap) {
+        int totalLen = 0;
+        for (Map.Entry<String, Map<String, Set<Integer>>> entry : groupTopicPartMap.entrySet()) {
+            if (entry.getKey() == null
+                    || entry.getValue() == null
+                    || entry.getValue().isEmpty()) {
+                continue;
+            }
+            for (Map.Entry<String, Set<Integer>> topicEntry : entry.getValue().entrySet()) {
+                if (topicEntry.getKey() == null
+                        || topicEntry.getValue() == null
+                        || topicEntry.getValue().isEmpty()) {
+                    continue;
+                }
+                totalLen += topicEntry.getValue().size()
+                        * getRecordLen(entry.getKey(), topicEntry.getKey());
+            }
+        }
+        if (totalLen == 0) {
+            return;
+        }
+        synchronized (journalLock) {
+            if (closed) {
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(totalLen);
+            for (Map.Entry<String, Map<String, Set<Integer>>> entry : groupTopicPartMap.entrySet()) {
+                if (entry.getKey() == null || entry.getValue() == null) {
+                    continue;
+                }
+                for (Map.Entry<String, Set<Integer>> topicEntry : entry.getValue().entrySet()) {
+                    if (topicEntry.getKey() == null || topicEntry.getValue() == null) {
+                        continue;
+                    }
+                    for (Integer partitionId : topicEntry.getValue()) {
+                        putRecord(buffer, RECORD_TYPE_DELETE, entry.getKey(),
+                                topicEntry.getKey(), partitionId, 0L, 0L);
+                    }
+                }
+            }
+            buffer.flip();
+            try {
+                appendJournal(buffer);
+            } catch (IOException e) {
+                // the offsets are kept in memory as in the journal, the deletion can be retried
+                logger.error("[JournalOffsetStorage] Append deletion to journal failure", e);
+                return;
+            }
+            for (Map.Entry<String, Map<String, Set<Integer>>> entry : groupTopicPartMap.entrySet()) {
+                if (entry.getKey() == null || entry.getValue() == null) {
+                    continue;
+                }
+                for (Map.Entry<String, Set<Integer>> topicEntry : entry.getValue().entrySet()) {
+                    if (topicEntry.getKey() == null || topicEntry.getValue() == null) {
+                        continue;
+                    }
+                    for (Integer partitionId : topicEntry.getValue()) {
+                        applyDelete(entry.getKey(), topicEntry.getKey(), partitionId);
+                    }
+                }
+            }
+            compactIfRequired();
+        }
+        if (this.mirrorStorage != null) {
+            this.mirrorStorage.deleteGroupOffsetInfo(groupTopicPartMap);
+        }
+    }
+
+    public long getGeneration() {
+        synchronized (journalLock) {
+            return generation;
+        }
+    }
+
+    /**
+     * Load the snapshot and replay the journals after it, then open the current journal.
+     */
+    private void recover() throws IOException {
+        long snapshotGen = 0;
+        File snapshot = new File(journalDir, SNAPSHOT_FILE_NAME);
+        if (snapshot.exists()) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(snapshot.toPath()));
+            if (buffer.remaining() < SNAPSHOT_HEAD_LEN || buffer.getInt() != SNAPSHOT_MAGIC) {
+                throw new IOException(new StringBuilder(256)
+                        .append("[JournalOffsetStorage] Illegal snapshot file ")
+                        .append(snapshot.getAbsolutePath()).toString());
+            }
+            snapshotGen = buffer.getLong();
+            if (replayRecords(buffer) != buffer.limit()) {
+                throw new IOException(new StringBuilder(256)
+                        .append("[JournalOffsetStorage] Corrupted snapshot file ")
+                        .append(snapshot.getAbsolutePath()).toString());
+            }
+        }
+        TreeMap<Long, File> journals = new TreeMap<>();
+        File[] files = journalDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.getName().startsWith(JOURNAL_FILE_PREFIX)) {
+                    continue;
+                }
+                try {
+                    journals.put(Long.parseLong(
+                            file.getName().substring(JOURNAL_FILE_PREFIX.length())), file);
+                } catch (NumberFormatException e) {
+                    logger.warn("[JournalOffsetStorage] Ignore unknown file " + file.getName());
+                }
+            }
+        }
+        this.generation = snapshotGen;
+        for (Map.Entry<Long, File> entry : journals.entrySet()) {
+            if (entry.getKey() < snapshotGen) {
+                // compacted into the snapshot
+                if (!entry.getValue().delete()) {
+                    logger.warn("[JournalOffsetStorage] Delete compacted journal failure "
+                            + entry.getValue().getName());
+                }
+                continue;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(entry.getValue().toPath()));
+            int validLen = replayRecords(buffer);
+            if (validLen != buffer.limit()) {
+                logger.warn(new StringBuilder(256)
+                        .append("[JournalOffsetStorage] Discard torn journal tail of ")
+                        .append(entry.getValue().getName()).append(", valid length=")
+                        .append(validLen).append(", file length=")
+                        .append(buffer.limit()).toString());
+                try (RandomAccessFile raf = new RandomAccessFile(entry.getValue(), "rw")) {
+                    raf.setLength(validLen);
+                }
+            }
+            this.generation = entry.getKey();
+        }
+        openJournal(this.generation);
+    }
+
+    /**
+     * Replay the records in buffer, stop at the first incomplete or corrupted record.
+     *
+     * @param buffer   the records buffer
+     * @return         the position after the last valid record
+     */
+    private int replayRecords(ByteBuffer buffer) {
+        while (buffer.remaining() >= RECORD_HEAD_LEN) {
+            int startPos = buffer.position();
+            int recordLen = buffer.getInt();
+            int recordCrc = buffer.getInt();
+            if (recordLen <= 0 || recordLen > buffer.remaining()) {
+                return startPos;
+            }
+            crc32.reset();
+            crc32.update(buffer.array(), buffer.position(), recordLen);
+            if ((int) crc32.getValue() != recordCrc) {
+                return startPos;
+            }
+            byte type = buffer.get();
+            String group = getString(buffer);
+            String topic = getString(buffer);
+            int partitionId = buffer.getInt();
+            long messageId = buffer.getLong();
+            long offset = buffer.getLong();
+            if (type == RECORD_TYPE_COMMIT) {
+                applyCommit(group, topic, partitionId, messageId, offset);
+            } else if (type == RECORD_TYPE_DELETE) {
+                applyDelete(group, topic, partitionId);
+            }
+        }
+        return buffer.position();
+    }
+
+    /**
+     * Write the latest offsets to the snapshot and roll the journal to a new generation.
+     * The new journal is opened before the snapshot is renamed into place, so that the
+     * recovery either replays the old snapshot with all the journals, or the new snapshot
+     * with the new journal.
+     */
+    private void compactIfRequired() {
+        try {
+            if (journalChannel.size() < compactBytes) {
+                return;
+            }
+        } catch (IOException e) {
+            logger.error("[JournalOffsetStorage] Get journal size failure", e);
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        long oldGeneration = generation;
+        try {
+            journalChannel.force(true);
+            journalFile.close();
+            openJournal(oldGeneration + 1);
+            File tmpSnapshot = new File(journalDir, SNAPSHOT_FILE_NAME + ".tmp");
+            try (RandomAccessFile raf = new RandomAccessFile(tmpSnapshot, "rw")) {
+                raf.setLength(0);
+                FileChannel channel = raf.getChannel();
+                ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEAD_LEN);
+                header.putInt(SNAPSHOT_MAGIC).putLong(generation);
+                header.flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                for (Map.Entry<String, ConcurrentHashMap<String, OffsetStorageInfo>> entry : offsetMap
+                        .entrySet()) {
+                    Collection<OffsetStorageInfo> infos = entry.getValue().values();
+                    if (infos.isEmpty()) {
+                        continue;
+                    }
+                    ByteBuffer buffer = ByteBuffer.allocate(
+                            infos.size() * getRecordMaxLen(entry.getKey(), infos));
+                    for (OffsetStorageInfo info : infos) {
+                        putRecord(buffer, RECORD_TYPE_COMMIT, entry.getKey(), info.getTopic(),
+                                info.getPartitionId(), info.getMessageId(), info.getOffset());
+                    }
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+                channel.force(true);
+            }
+            Files.move(tmpSnapshot.toPath(), new File(journalDir, SNAPSHOT_FILE_NAME).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("[JournalOffsetStorage] Compact offset journal failure", e);
+            return;
+        }
+        File oldJournal = getJournalFile(oldGeneration);
+        if (!oldJournal.delete()) {
+            logger.warn("[JournalOffsetStorage] Delete compacted journal failure "
+                    + oldJournal.getName());
+        }
+        logger.info(new StringBuilder(256)
+                .append("[JournalOffsetStorage] Compacted offset journal, generation=")
+                .append(generation).append(", cost=")
+                .append(System.currentTimeMillis() - startTime).toString());
+    }
+
+    /**
+     * Append the records to the journal and sync it. If the append fails, the journal
+     * is truncated back to the position before the append, so that no torn record is left
+     * in the middle of the journal to hide the records appended after it on recovery.
+     *
+     * @param buffer   the records to append
+     * @throws IOException   the records are not appended
+     */
+    private void appendJournal(ByteBuffer buffer) throws IOException {
+        if (!journalChannel.isOpen()) {
+            // the journal failed to be opened in the last roll
+            openJournal(generation + 1);
+        }
+        long startPos = journalChannel.position();
+        try {
+            while (buffer.hasRemaining()) {
+                journalChannel.write(buffer);
+            }
+            journalChannel.force(false);
+        } catch (IOException e) {
+            discardJournalTail(startPos);
+            throw e;
+        }
+    }
+
+    /**
+     * Truncate the journal back to the position, roll to a new journal if the truncation
+     * fails, the records in the new journal are replayed even if the old one has a torn tail.
+     *
+     * @param startPos   the journal position before the failed append
+     */
+    private void discardJournalTail(long startPos) {
+        try {
+            journalChannel.truncate(startPos);
+            journalChannel.position(startPos);
+            return;
+        } catch (IOException e) {
+            logger.error("[JournalOffsetStorage] Truncate journal failure, roll the journal", e);
+        }
+        try {
+            journalFile.close();
+        } catch (IOException e) {
+            logger.error("[JournalOffsetStorage] Close journal file failure", e);
+        }
+        try {
+            openJournal(generation + 1);
+        } catch (IOException e) {
+            logger.error("[JournalOffsetStorage] Open new journal failure", e);
+        }
+    }
+
+    private void openJournal(long newGeneration) throws IOException {
+        this.journalFile = new RandomAccessFile(getJournalFile(newGeneration), "rw");
+        this.journalChannel = journalFile.getChannel();
+        this.journalChannel.position(journalChannel.size());
+        this.generation = newGeneration;
+    }
+
+    private File getJournalFile(long fileGeneration) {
+        return new File(journalDir, new StringBuilder(64)
+                .append(JOURNAL_FILE_PREFIX)
+                .append(String.format("%020d", fileGeneration)).toString());
+    }
+
+    private void applyCommit(String group, String topic, int partitionId,
+            long messageId, long offset) {
+        ConcurrentHashMap<String, OffsetStorageInfo> partOffsetMap = offsetMap.get(group);
+        if (partOffsetMap == null) {
+            ConcurrentHashMap<String, OffsetStorageInfo> tmpPartOffsetMap = new ConcurrentHashMap<>();
+            partOffsetMap = offsetMap.putIfAbsent(group, tmpPartOffsetMap);
+            if (partOffsetMap == null) {
+                partOffsetMap = tmpPartOffsetMap;
+            }
+        }
+        partOffsetMap.put(getOffsetKey(topic, partitionId),
+                new OffsetStorageInfo(topic, brokerId, partitionId, offset, messageId, false));
+    }
+
+    private void applyDelete(String group, String topic, int partitionId) {
+        ConcurrentHashMap<String, OffsetStorageInfo> partOffsetMap = offsetMap.get(group);
+        if (partOffsetMap == null) {
+            return;
+        }
+        partOffsetMap.remove(getOffsetKey(topic, partitionId));
+        if (partOffsetMap.isEmpty()) {
+            offsetMap.remove(group);
+        }
+    }
+
+    private void putRecord(ByteBuffer buffer, byte type, String group, String topic,
+            int partitionId, long messageId, long offset) {
+        int startPos = buffer.position();
+        buffer.position(startPos + RECORD_HEAD_LEN);
+        buffer.put(type);
+        putString(buffer, group);
+        putString(buffer, topic);
+        buffer.putInt(partitionId);
+        buffer.putLong(messageId);
+        buffer.putLong(offset);
+        int recordLen = buffer.position() - startPos - RECORD_HEAD_LEN;
+        crc32.reset();
+        crc32.update(buffer.array(), startPos + RECORD_HEAD_LEN, recordLen);
+        buffer.putInt(startPos, recordLen);
+        buffer.putInt(startPos + 4, (int) crc32.getValue());
+    }
+
+    private int getRecordMaxLen(String group, Collection<OffsetStorageInfo> infos) {
+        int maxTopicLen = 0;
+        for (OffsetStorageInfo info : infos) {
+            maxTopicLen = Math.max(maxTopicLen,
+                    info.getTopic().getBytes(StandardCharsets.UTF_8).length);
+        }
+        return RECORD_HEAD_LEN + 1 + 2 + group.getBytes(StandardCharsets.UTF_8).length
+                + 2 + maxTopicLen + 4 + 8 + 8;
+    }
+
+    private int getRecordLen(String group, String topic) {
+        return RECORD_HEAD_LEN + 1 + 2 + group.getBytes(StandardCharsets.UTF_8).length
+                + 2 + topic.getBytes(StandardCharsets.UTF_8).length + 4 + 8 + 8;
+    }
+
+    private void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private String getString(ByteBuffer buffer) {
+        int len = buffer.getShort() & 0xFFFF;
+        String value = new String(buffer.array(), buffer.position(), len, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + len);
+        return value;
+    }
+
+    private String getOffsetKey(String topic, int partitionId) {
+        return new StringBuilder(256).append(topic)
+                .append(TokenConstants.HYPHEN).append(partitionId).toString();
+    }
+}
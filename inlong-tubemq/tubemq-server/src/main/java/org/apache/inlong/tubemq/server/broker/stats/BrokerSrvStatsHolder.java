@@ -96,6 +96,17 @@ public class BrokerSrvStatsHolder {
         return BrokerSrvStatsHolder.detailStatsClosed;
     }
 
+    public static void addGetMsgReadBytes(boolean isZeroCopy, long readBytes) {
+        if (detailStatsClosed || readBytes <= 0) {
+            return;
+        }
+        if (isZeroCopy) {
+            switchableSets[getIndex()].msgGetZeroCopyBytes.addValue(readBytes);
+        } else {
+            switchableSets[getIndex()].msgGetCopiedBytes.addValue(readBytes);
+        }
+    }
+
     // metric set operate APIs end
 
     // metric item operate APIs begin
@@ -133,6 +144,18 @@ public class BrokerSrvStatsHolder {
         switchableSets[getIndex()].fileSyncDltStats.update(dltTime);
     }
 
+    public static void updFileFsyncDlt(long dltTime) {
+        switchableSets[getIndex()].fileFsyncDltStats.update(dltTime);
+    }
+
+    public static void updDurableAckDlt(long dltTime) {
+        switchableSets[getIndex()].durableAckDltStats.update(dltTime);
+    }
+
+    public static void incDurableAckTimeoutCnt() {
+        switchableSets[getIndex()].durableAckTimeoutStats.incValue();
+    }
+
     public static void updZKSyncDataDlt(long dltTime) {
         switchableSets[getIndex()].zkSyncDltStats.update(dltTime);
     }
@@ -201,7 +224,15 @@ public class BrokerSrvStatsHolder {
                     statsSet.csmTimeoutStats.getAndResetValue());
             statsMap.put(statsSet.errPubOverFlowStats.getFullName(),
                     statsSet.errPubOverFlowStats.getAndResetValue());
+            statsMap.put(statsSet.msgGetZeroCopyBytes.getFullName(),
+                    statsSet.msgGetZeroCopyBytes.getAndResetValue());
+            statsMap.put(statsSet.msgGetCopiedBytes.getFullName(),
+                    statsSet.msgGetCopiedBytes.getAndResetValue());
+            statsMap.put(statsSet.durableAckTimeoutStats.getFullName(),
+                    statsSet.durableAckTimeoutStats.getAndResetValue());
             statsSet.fileSyncDltStats.snapShort(statsMap, false);
+            statsSet.fileFsyncDltStats.snapShort(statsMap, false);
+            statsSet.durableAckDltStats.snapShort(statsMap, false);
             statsSet.zkSyncDltStats.snapShort(statsMap, false);
             statsSet.msgPubLatencyStats.snapShort(statsMap, false);
             statsSet.msgSubLatencyStats.snapShort(statsMap, false);
@@ -221,7 +252,15 @@ public class BrokerSrvStatsHolder {
                     statsSet.csmTimeoutStats.getValue());
             statsMap.put(statsSet.errPubOverFlowStats.getFullName(),
                     statsSet.errPubOverFlowStats.getValue());
+            statsMap.put(statsSet.msgGetZeroCopyBytes.getFullName(),
+                    statsSet.msgGetZeroCopyBytes.getValue());
+            statsMap.put(statsSet.msgGetCopiedBytes.getFullName(),
+                    statsSet.msgGetCopiedBytes.getValue());
+            statsMap.put(statsSet.durableAckTimeoutStats.getFullName(),
+                    statsSet.durableAckTimeoutStats.getValue());
             statsSet.fileSyncDltStats.getValue(statsMap, false);
+            statsSet.fileFsyncDltStats.getValue(statsMap, false);
+            statsSet.durableAckDltStats.getValue(statsMap, false);
             statsSet.zkSyncDltStats.getValue(statsMap, false);
             statsSet.msgPubLatencyStats.getValue(statsMap, false);
             statsSet.msgSubLatencyStats.getValue(statsMap, false);
@@ -250,9 +289,19 @@ public class BrokerSrvStatsHolder {
                     .append("\":").append(statsSet.csmTimeoutStats.getAndResetValue())
                     .append(",\"").append(statsSet.errPubOverFlowStats.getFullName())
                     .append("\":").append(statsSet.errPubOverFlowStats.getAndResetValue())
+                    .append(",\"").append(statsSet.msgGetZeroCopyBytes.getFullName())
+                    .append("\":").append(statsSet.msgGetZeroCopyBytes.getAndResetValue())
+                    .append(",\"").append(statsSet.msgGetCopiedBytes.getFullName())
+                    .append("\":").append(statsSet.msgGetCopiedBytes.getAndResetValue())
+                    .append(",\"").append(statsSet.durableAckTimeoutStats.getFullName())
+                    .append("\":").append(statsSet.durableAckTimeoutStats.getAndResetValue())
                     .append(",");
             statsSet.fileSyncDltStats.snapShort(strBuff, false);
             strBuff.append(",");
+            statsSet.fileFsyncDltStats.snapShort(strBuff, false);
+            strBuff.append(",");
+            statsSet.durableAckDltStats.snapShort(strBuff, false);
+            strBuff.append(",");
             statsSet.zkSyncDltStats.snapShort(strBuff, false);
             strBuff.append(",");
             statsSet.msgPubLatencyStats.snapShort(strBuff, false);
@@ -276,9 +325,19 @@ public class BrokerSrvStatsHolder {
                     .append("\":").append(statsSet.csmTimeoutStats.getValue())
                     .append(",\"").append(statsSet.errPubOverFlowStats.getFullName())
                     .append("\":").append(statsSet.errPubOverFlowStats.getValue())
+                    .append(",\"").append(statsSet.msgGetZeroCopyBytes.getFullName())
+                    .append("\":").append(statsSet.msgGetZeroCopyBytes.getValue())
+                    .append(",\"").append(statsSet.msgGetCopiedBytes.getFullName())
+                    .append("\":").append(statsSet.msgGetCopiedBytes.getValue())
+                    .append(",\"").append(statsSet.durableAckTimeoutStats.getFullName())
+                    .append("\":").append(statsSet.durableAckTimeoutStats.getValue())
                     .append(",");
             statsSet.fileSyncDltStats.getValue(strBuff, false);
             strBuff.append(",");
+            statsSet.fileFsyncDltStats.getValue(strBuff, false);
+            strBuff.append(",");
+            statsSet.durableAckDltStats.getValue(strBuff, false);
+            strBuff.append(",");
             statsSet.zkSyncDltStats.getValue(strBuff, false);
             strBuff.append(",");
             statsSet.msgPubLatencyStats.getValue(strBuff, false);
@@ -321,6 +380,15 @@ public class BrokerSrvStatsHolder {
         // Delay statistics for syncing data to files
         protected final ESTHistogram fileSyncDltStats =
                 new ESTHistogram("file_sync_dlt", null);
+        // Delay statistics for the group commit disk syncs
+        protected final ESTHistogram fileFsyncDltStats =
+                new ESTHistogram("file_fsync_dlt", null);
+        // Delay statistics for the durable sends waiting for the disk syncs
+        protected final ESTHistogram durableAckDltStats =
+                new ESTHistogram("msg_durable_ack_dlt", null);
+        // durable sends not synced within the max wait duration
+        protected final LongStatsCounter durableAckTimeoutStats =
+                new LongStatsCounter("msg_durable_ack_timeout", null);
         // Disk IO Exception statistics
         protected final LongStatsCounter fileIOExcStats =
                 new LongStatsCounter("file_exc_cnt", null);
@@ -350,6 +418,12 @@ public class BrokerSrvStatsHolder {
         // confirm process latency statistics
         protected final ESTHistogram msgConfirmLatencyStats =
                 new ESTHistogram("msg_confirm_dlt", null);
+        // getMessage payload bytes served without intermediate copy
+        protected final LongStatsCounter msgGetZeroCopyBytes =
+                new LongStatsCounter("msg_get_zcopy_bytes", null);
+        // getMessage payload bytes copied message by message
+        protected final LongStatsCounter msgGetCopiedBytes =
+                new LongStatsCounter("msg_get_copied_bytes", null);
 
         public ServiceStatsSet() {
             resetSinceTime();
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.server.broker.stats;
+
+import java.util.Arrays;
+
+/**
+ * Statistic of the messages returned by a fetch, grouped by the message time.
+ *
+ * The messages of a fetch share the same statistic key except the message time,
+ * and mostly fall in a few minutes, so the counts are kept in primitive arrays
+ * instead of a map of string keys.
+ */
+public class FetchTrafficInfo {
+
+    // the message time of the messages without message time attribute
+    public static final long NO_MSG_TIME = -1L;
+
+    private long[] msgTimes = new long[4];
+    private long[] msgCnts = new long[4];
+    private long[] msgSizes = new long[4];
+    private int slotCnt = 0;
+    private int lastSlot = 0;
+
+    public void addMsgCntAndSize(long msgTime, long msgCount, long msgSize) {
+        int slot = lastSlot;
+        if (slot >= slotCnt || msgTimes[slot] != msgTime) {
+            slot = getOrAddSlot(msgTime);
+            lastSlot = slot;
+        }
+        msgCnts[slot] += msgCount;
+        msgSizes[slot] += msgSize;
+    }
+
+    public boolean isEmpty() {
+        return slotCnt == 0;
+    }
+
+    public int getSlotCount() {
+        return slotCnt;
+    }
+
+    public long getMsgTime(int slot) {
+        return msgTimes[slot];
+    }
+
+    public long getMsgCount(int slot) {
+        return msgCnts[slot];
+    }
+
+    public long getMsgSize(int slot) {
+        return msgSizes[slot];
+    }
+
+    /**
+     * Get the message time in yyyyMMddHHmm format.
+     *
+     * @param msgTime   the message time value
+     * @return          the message time string, blank if no message time
+     */
+    public static String msgTimeToString(long msgTime) {
+        return (msgTime == NO_MSG_TIME) ? "" : String.valueOf(msgTime);
+    }
+
+    private int getOrAddSlot(long msgTime) {
+        for (int i = 0; i < slotCnt; i++) {
+            if (msgTimes[i] == msgTime) {
+                return i;
+            }
+        }
+        if (slotCnt == msgTimes.length) {
+            int newLength = slotCnt * 2;
+            msgTimes = Arrays.copyOf(msgTimes, newLength);
+            msgCnts = Arrays.copyOf(msgCnts, newLength);
+            msgSizes = Arrays.copyOf(msgSizes, newLength);
+        }
+        msgTimes[slotCnt] = msgTime;
+        msgCnts[slotCnt] = 0L;
+        msgSizes[slotCnt] = 0L;
+        return slotCnt++;
+    }
+}
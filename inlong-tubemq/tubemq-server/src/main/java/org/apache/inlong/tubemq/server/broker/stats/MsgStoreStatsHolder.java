@@ -109,6 +109,42 @@ public class MsgStoreStatsHolder {
         msgStoreStatsSets[getIndex()].cacheReAllocCnt.incValue();
     }
 
+    /**
+     * Add cache swap statistics.
+     *
+     * @param sealedDepth   the count of sealed caches waiting to be flushed
+     */
+    public void addCacheSwap(int sealedDepth) {
+        if (isClosed) {
+            return;
+        }
+        MsgStoreStatsItemSet tmStatsSet = msgStoreStatsSets[getIndex()];
+        tmStatsSet.cacheSwapCnt.incValue();
+        tmStatsSet.cacheSealedDepthStats.update(sealedDepth);
+    }
+
+    /**
+     * Add cache flush failure count statistics.
+     */
+    public void addCacheFlushFailure() {
+        if (isClosed) {
+            return;
+        }
+        msgStoreStatsSets[getIndex()].cacheFlushFailCnt.incValue();
+    }
+
+    /**
+     * Add producer wait duration statistics while no writable cache is available.
+     *
+     * @param waitDlt   the wait duration
+     */
+    public void addCacheWaitDlt(long waitDlt) {
+        if (isClosed) {
+            return;
+        }
+        msgStoreStatsSets[getIndex()].cacheWaitDurStats.update(waitDlt);
+    }
+
     /**
      * Add flush trigger type statistics.
      *
@@ -227,6 +263,31 @@ public class MsgStoreStatsHolder {
         }
     }
 
+    /**
+     * Add the flush statistics of the group commit disk sync.
+     *
+     * @param flushedMsgCnt     the flushed message count
+     * @param flushedDataSize   the flushed message size
+     * @param isForceMetadata   whether force push metadata
+     */
+    public void addFileGroupCommitStats(long flushedMsgCnt,
+            long flushedDataSize,
+            boolean isForceMetadata) {
+        if (isClosed) {
+            return;
+        }
+        MsgStoreStatsItemSet tmStatsSet = msgStoreStatsSets[getIndex()];
+        if (flushedDataSize > 0) {
+            tmStatsSet.fileFlushedDataSize.update(flushedDataSize);
+        }
+        if (flushedMsgCnt > 0) {
+            tmStatsSet.fileFlushedMsgCnt.update(flushedMsgCnt);
+        }
+        if (isForceMetadata) {
+            tmStatsSet.fileMetaFlushCnt.incValue();
+        }
+    }
+
     /**
      * Check whether has exceeded the maximum self-statistics period.
      *
@@ -415,6 +476,12 @@ public class MsgStoreStatsHolder {
                 statsSet.cacheFlushPendingCnt.getValue());
         statsMap.put(statsSet.cacheReAllocCnt.getFullName(),
                 statsSet.cacheReAllocCnt.getValue());
+        statsMap.put(statsSet.cacheSwapCnt.getFullName(),
+                statsSet.cacheSwapCnt.getValue());
+        statsMap.put(statsSet.cacheFlushFailCnt.getFullName(),
+                statsSet.cacheFlushFailCnt.getValue());
+        statsSet.cacheSealedDepthStats.getValue(statsMap, false);
+        statsSet.cacheWaitDurStats.getValue(statsMap, false);
         // for file store
         statsMap.put(statsSet.fileAccumMsgCnt.getFullName(),
                 statsSet.fileAccumMsgCnt.getValue());
@@ -474,7 +541,15 @@ public class MsgStoreStatsHolder {
                 .append("\":").append(statsSet.cacheFlushPendingCnt.getValue())
                 .append(",\"").append(statsSet.cacheReAllocCnt.getFullName())
                 .append("\":").append(statsSet.cacheReAllocCnt.getValue())
-                .append(",\"").append(statsSet.cacheDataSizeFullCnt.getFullName())
+                .append(",\"").append(statsSet.cacheSwapCnt.getFullName())
+                .append("\":").append(statsSet.cacheSwapCnt.getValue())
+                .append(",\"").append(statsSet.cacheFlushFailCnt.getFullName())
+                .append("\":").append(statsSet.cacheFlushFailCnt.getValue())
+                .append(",");
+        statsSet.cacheSealedDepthStats.getValue(strBuff, false);
+        strBuff.append(",");
+        statsSet.cacheWaitDurStats.getValue(strBuff, false);
+        strBuff.append(",\"").append(statsSet.cacheDataSizeFullCnt.getFullName())
                 .append("\":").append(statsSet.cacheDataSizeFullCnt.getValue())
                 .append(",\"").append(statsSet.fileAccumMsgCnt.getFullName())
                 .append("\":").append(statsSet.fileAccumMsgCnt.getValue())
@@ -546,6 +621,18 @@ public class MsgStoreStatsHolder {
         // The cache re-alloc count
         protected final LongStatsCounter cacheReAllocCnt =
                 new LongStatsCounter("cache_realloc", null);
+        // The count of sealing the writing cache and switching to a free one
+        protected final LongStatsCounter cacheSwapCnt =
+                new LongStatsCounter("cache_swap", null);
+        // The count of sealed cache flushes failed and kept for retry
+        protected final LongStatsCounter cacheFlushFailCnt =
+                new LongStatsCounter("cache_flush_fail", null);
+        // The depth of sealed caches waiting for flush when swapped
+        protected final SimpleHistogram cacheSealedDepthStats =
+                new SimpleHistogram("cache_sealed_depth", null);
+        // The producer wait duration while no free cache is available
+        protected final ESTHistogram cacheWaitDurStats =
+                new ESTHistogram("cache_wait_dlt", null);
         // for file store
         // The accumulate message count statistics
         protected final LongStatsCounter fileAccumMsgCnt =
@@ -620,6 +707,10 @@ public class MsgStoreStatsHolder {
             this.cacheMsgCountFullCnt.clear();
             this.cacheFlushPendingCnt.clear();
             this.cacheReAllocCnt.clear();
+            this.cacheSwapCnt.clear();
+            this.cacheFlushFailCnt.clear();
+            this.cacheSealedDepthStats.clear();
+            this.cacheWaitDurStats.clear();
             this.cacheTimeFullCnt.clear();
             this.resetTime.reset();
         }
@@ -49,4 +49,20 @@ public interface TrafficService {
      * @param msgSize   the total message size
      */
     void add(String statsKey, long msgCnt, long msgSize);
+
+    /**
+     * Get the interned statistical key, register it if absent
+     *
+     * @param keyName   the statistical key name
+     * @return          the statistical key object
+     */
+    TrafficStatsKey getStatsKey(String keyName);
+
+    /**
+     * Add the traffic information of a fetch
+     *
+     * @param statsKey      the statistical key, the message time is appended to it
+     * @param trafficInfo   the traffic information grouped by message time
+     */
+    void add(TrafficStatsKey statsKey, FetchTrafficInfo trafficInfo);
 }
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.server.broker.stats;
+
+/**
+ * Statistic key interned by TrafficService, the counters are located by the key
+ * object instead of the key string concatenated for each record.
+ *
+ * The key may be cached by the caller after it is unregistered for idle, so the keys
+ * with the same name are equal and accumulate into the same counters.
+ */
+public class TrafficStatsKey {
+
+    private final String keyName;
+    private volatile long lastUseTime;
+
+    public TrafficStatsKey(String keyName) {
+        this.keyName = keyName;
+        this.lastUseTime = System.currentTimeMillis();
+    }
+
+    public String getKeyName() {
+        return keyName;
+    }
+
+    public long getLastUseTime() {
+        return lastUseTime;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TrafficStatsKey)) {
+            return false;
+        }
+        return keyName.equals(((TrafficStatsKey) o).keyName);
+    }
+
+    @Override
+    public int hashCode() {
+        return keyName.hashCode();
+    }
+
+    public void updLastUseTime(long currTime) {
+        // avoid writing the shared field on each use
+        if (currTime - this.lastUseTime >= 1000L) {
+            this.lastUseTime = currTime;
+        }
+    }
+}
@@ -17,10 +17,12 @@
 
 package org.apache.inlong.tubemq.server.broker.stats;
 
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import org.apache.inlong.tubemq.corebase.daemon.AbstractDaemonService;
 import org.apache.inlong.tubemq.corebase.metric.TrafficStatsUnit;
 import org.apache.inlong.tubemq.corebase.metric.impl.LongOnlineCounter;
@@ -33,6 +35,9 @@ import org.slf4j.LoggerFactory;
  *  Due to the large amount of traffic-related metric data, this statistics service uses
  *  a daemon thread to periodically refresh the data to the special metric file
  *  for metric data collection.
+ *
+ *  The traffic of fetches is recorded by interned statistic keys into striped counters,
+ *  the key strings with message time are only built when the data is output.
  */
 public class TrafficStatsService extends AbstractDaemonService implements TrafficService {
 
@@ -46,6 +51,11 @@ public class TrafficStatsService extends AbstractDaemonService implements Traffi
     private final WritableUnit[] switchableUnits = new WritableUnit[2];
     // Current writable index
     private final AtomicInteger writableIndex = new AtomicInteger(0);
+    // Interned statistic keys
+    private final ConcurrentHashMap<String, TrafficStatsKey> statsKeys =
+            new ConcurrentHashMap<>(512);
+    // The idle duration after which a statistic key is unregistered
+    private final long statsKeyExpiredMs;
 
     /**
      * Initial traffic statistics service
@@ -57,6 +67,7 @@ public class TrafficStatsService extends AbstractDaemonService implements Traffi
     public TrafficStatsService(String logFileName, String countType, long scanIntervalMs) {
         super(logFileName, scanIntervalMs);
         this.statsCat = countType;
+        this.statsKeyExpiredMs = scanIntervalMs * 3;
         if (logFileName == null) {
             this.logger = LoggerFactory.getLogger(TrafficStatsService.class);
         } else {
@@ -140,6 +151,80 @@ public class TrafficStatsService extends AbstractDaemonService implements Traffi
         }
     }
 
+    @Override
+    public TrafficStatsKey getStatsKey(String keyName) {
+        TrafficStatsKey statsKey = statsKeys.get(keyName);
+        if (statsKey == null) {
+            TrafficStatsKey tmpStatsKey = new TrafficStatsKey(keyName);
+            statsKey = statsKeys.putIfAbsent(keyName, tmpStatsKey);
+            if (statsKey == null) {
+                statsKey = tmpStatsKey;
+            }
+        }
+        statsKey.updLastUseTime(System.currentTimeMillis());
+        return statsKey;
+    }
+
+    @Override
+    public void add(TrafficStatsKey statsKey, FetchTrafficInfo trafficInfo) {
+        if (trafficInfo == null || trafficInfo.isEmpty()) {
+            return;
+        }
+        // keep the cached key registered while it is in use
+        statsKey.updLastUseTime(System.currentTimeMillis());
+        // Increment write reference count
+        WritableUnit selectedUnit = switchableUnits[getIndex()];
+        selectedUnit.refCnt.incValue();
+        try {
+            // Accumulate statistics information
+            ConcurrentHashMap<Long, TrafficAdder> timeStatsMap =
+                    selectedUnit.keyStatsMap.get(statsKey);
+            if (timeStatsMap == null) {
+                ConcurrentHashMap<Long, TrafficAdder> tmpTimeStatsMap = new ConcurrentHashMap<>();
+                timeStatsMap = selectedUnit.keyStatsMap.putIfAbsent(statsKey, tmpTimeStatsMap);
+                if (timeStatsMap == null) {
+                    timeStatsMap = tmpTimeStatsMap;
+                }
+            }
+            for (int i = 0; i < trafficInfo.getSlotCount(); i++) {
+                Long msgTime = trafficInfo.getMsgTime(i);
+                TrafficAdder trafficAdder = timeStatsMap.get(msgTime);
+                if (trafficAdder == null) {
+                    TrafficAdder tmpTrafficAdder = new TrafficAdder();
+                    trafficAdder = timeStatsMap.putIfAbsent(msgTime, tmpTrafficAdder);
+                    if (trafficAdder == null) {
+                        trafficAdder = tmpTrafficAdder;
+                    }
+                }
+                trafficAdder.msgCnt.add(trafficInfo.getMsgCount(i));
+                trafficAdder.msgSize.add(trafficInfo.getMsgSize(i));
+            }
+        } finally {
+            // Decrement write reference count
+            selectedUnit.refCnt.decValue();
+        }
+    }
+
+    /**
+     * Get the fetch traffic accumulated in the current writable block, not yet output
+     *
+     * @param statsKey   the statistical key
+     * @param msgTime    the message time
+     * @return           the traffic information, null if absent
+     */
+    TrafficInfo getWritingTraffic(TrafficStatsKey statsKey, long msgTime) {
+        ConcurrentHashMap<Long, TrafficAdder> timeStatsMap =
+                switchableUnits[getIndex()].keyStatsMap.get(statsKey);
+        if (timeStatsMap == null) {
+            return null;
+        }
+        TrafficAdder trafficAdder = timeStatsMap.get(msgTime);
+        if (trafficAdder == null) {
+            return null;
+        }
+        return new TrafficInfo(trafficAdder.msgCnt.sum(), trafficAdder.msgSize.sum());
+    }
+
     /**
      * Print statistics data to file
      *
@@ -171,6 +256,24 @@ public class TrafficStatsService extends AbstractDaemonService implements Traffi
                     entry.getValue().msgSize.getValue());
         }
         statsMap.clear();
+        for (Entry<TrafficStatsKey, ConcurrentHashMap<Long, TrafficAdder>> entry
+                : selectedUnit.keyStatsMap.entrySet()) {
+            for (Entry<Long, TrafficAdder> timeEntry : entry.getValue().entrySet()) {
+                logger.info("{}#{}#{}#{}#{}", statsCat, entry.getKey().getKeyName(),
+                        FetchTrafficInfo.msgTimeToString(timeEntry.getKey()),
+                        timeEntry.getValue().msgCnt.sum(),
+                        timeEntry.getValue().msgSize.sum());
+            }
+        }
+        selectedUnit.keyStatsMap.clear();
+        // Unregister the idle statistic keys, the keys still in use are output by name
+        long expiredTime = System.currentTimeMillis() - statsKeyExpiredMs;
+        Iterator<TrafficStatsKey> iterator = statsKeys.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getLastUseTime() < expiredTime) {
+                iterator.remove();
+            }
+        }
     }
 
     /**
@@ -207,5 +310,17 @@ public class TrafficStatsService extends AbstractDaemonService implements Traffi
         // statistic unit map
         protected ConcurrentHashMap<String, TrafficStatsUnit> statsUnitMap =
                 new ConcurrentHashMap<>(512);
+        // statistic key - message time - counters map
+        protected ConcurrentHashMap<TrafficStatsKey, ConcurrentHashMap<Long, TrafficAdder>> keyStatsMap =
+                new ConcurrentHashMap<>(512);
+    }
+
+    /**
+     * TrafficAdder, striped message count and size counters
+     */
+    private static class TrafficAdder {
+
+        protected final LongAdder msgCnt = new LongAdder();
+        protected final LongAdder msgSize = new LongAdder();
     }
 }
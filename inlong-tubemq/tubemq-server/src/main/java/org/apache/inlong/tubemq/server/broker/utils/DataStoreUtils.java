@@ -18,16 +18,16 @@
 package org.apache.inlong.tubemq.server.broker.utils;
 
 import com.google.protobuf.ByteString;
-import java.io.UnsupportedEncodingException;
+import com.google.protobuf.UnsafeByteOperations;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.text.NumberFormat;
-import java.util.HashMap;
 import org.apache.inlong.tubemq.corebase.TBaseConstants;
 import org.apache.inlong.tubemq.corebase.TokenConstants;
 import org.apache.inlong.tubemq.corebase.protobuf.generated.ClientBroker;
+import org.apache.inlong.tubemq.corebase.utils.DateTimeConvertUtils;
 import org.apache.inlong.tubemq.corebase.utils.MessageFlagUtils;
-import org.apache.inlong.tubemq.corebase.utils.TStringUtils;
-import org.apache.inlong.tubemq.server.broker.stats.TrafficInfo;
+import org.apache.inlong.tubemq.server.broker.stats.FetchTrafficInfo;
 
 /**
  * Storage util. Used for data and index file storage format.
@@ -81,6 +81,10 @@ public class DataStoreUtils {
     public static final int INDEX_POS_MSG_SIZE = 12;
     public static final int INDEX_POS_KEY_CODE = 16;
     public static final int INDEX_POS_TIME_RECV = 20;
+    // record interval of the sparse time index kept for each index segment
+    public static final int STORE_TIME_INDEX_RECORD_INTERVAL = 512;
+    // record count of the blocks in the partition block index of each index segment
+    public static final int STORE_PARTITION_BLOCK_RECORDS = 128;
 
     public static final int MAX_MSG_DATA_STORE_SIZE =
             TBaseConstants.META_MAX_MESSAGE_DATA_SIZE_UPPER_LIMIT
@@ -90,6 +94,11 @@ public class DataStoreUtils {
     public static final String DATA_FILE_SUFFIX = ".tube";
     public static final String INDEX_FILE_SUFFIX = ".index";
 
+    // the message time token and the attribute item separator
+    private static final byte[] MSG_TIME_TOKEN =
+            (TokenConstants.TOKEN_MSG_TIME + TokenConstants.EQ).getBytes(StandardCharsets.UTF_8);
+    private static final byte ATTR_ITEM_SEP = (byte) TokenConstants.ARRAY_SEP.charAt(0);
+
     public static int getInt(final int offset, final byte[] data) {
         return ByteBuffer.wrap(data, offset, 4).getInt();
     }
@@ -105,18 +114,34 @@ public class DataStoreUtils {
     /**
      * Convert inner message to protobuf format, then reply to client.
      *
+     * The payload of a heap buffer is copied, while the payload of a direct buffer,
+     * a slice of the memory cache, is referenced without copy, so the cache must be
+     * kept pinned until the response is written.
+     *
      * @param dataBuffer      the raw stored data
      * @param dataTotalSize   the data size
-     * @param countMap        the statistics map
-     * @param statisKeyBase   the statistics key prefix
-     * @param sBuilder        the string buffer
+     * @param trafficInfo     the traffic statistics of the fetch
      * @return                the converted messages
      */
-    public static ClientBroker.TransferedMessage getTransferMsg(ByteBuffer dataBuffer, int dataTotalSize,
-            HashMap<String, TrafficInfo> countMap,
-            String statisKeyBase,
-            StringBuilder sBuilder) {
-        if (dataBuffer.array().length < dataTotalSize) {
+    public static ClientBroker.TransferedMessage getTransferMsg(ByteBuffer dataBuffer,
+            int dataTotalSize, FetchTrafficInfo trafficInfo) {
+        return getTransferMsg(dataBuffer, dataTotalSize,
+                trafficInfo, !dataBuffer.hasArray());
+    }
+
+    /**
+     * Convert inner message to protobuf format, then reply to client.
+     *
+     * @param dataBuffer      the raw stored data
+     * @param dataTotalSize   the data size
+     * @param trafficInfo     the traffic statistics of the fetch
+     * @param isRefPayload    whether reference the payload in dataBuffer instead of copying it,
+     *                        dataBuffer must not be reused until the response is written
+     * @return                the converted messages
+     */
+    public static ClientBroker.TransferedMessage getTransferMsg(ByteBuffer dataBuffer,
+            int dataTotalSize, FetchTrafficInfo trafficInfo, boolean isRefPayload) {
+        if ((isRefPayload ? dataBuffer.capacity() : dataBuffer.array().length) < dataTotalSize) {
             return null;
         }
         final int msgLen =
@@ -135,65 +160,82 @@ public class DataStoreUtils {
         final long msgId = dataBuffer.getLong(DataStoreUtils.STORE_HEADER_POS_MSGID);
         final int flag = dataBuffer.getInt(DataStoreUtils.STORE_HEADER_POS_MSGFLAG);
         final int payLoadLen2 = payLoadLen;
-        final byte[] payLoadData = new byte[payLoadLen];
-        System.arraycopy(dataBuffer.array(), payLoadOffset, payLoadData, 0, payLoadLen);
         ClientBroker.TransferedMessage.Builder dataBuilder =
                 ClientBroker.TransferedMessage.newBuilder();
         dataBuilder.setMessageId(msgId);
         dataBuilder.setCheckSum(checkSum);
         dataBuilder.setFlag(flag);
-        dataBuilder.setPayLoadData(ByteString.copyFrom(payLoadData));
+        if (!isRefPayload) {
+            dataBuilder.setPayLoadData(
+                    ByteString.copyFrom(dataBuffer.array(), payLoadOffset, payLoadLen));
+        } else {
+            final ByteBuffer payLoadBuf = dataBuffer.duplicate();
+            payLoadBuf.limit(payLoadOffset + payLoadLen);
+            payLoadBuf.position(payLoadOffset);
+            dataBuilder.setPayLoadData(UnsafeByteOperations.unsafeWrap(payLoadBuf.slice()));
+        }
         // get statistic data
-        int attrLen = 0;
-        String attribute = null;
+        long msgTime = FetchTrafficInfo.NO_MSG_TIME;
         if (MessageFlagUtils.hasAttribute(flag)) {
             if (payLoadLen < 4) {
                 return null;
             }
-            attrLen = dataBuffer.getInt(DataStoreUtils.STORE_DATA_HEADER_LEN);
+            int attrLen = dataBuffer.getInt(DataStoreUtils.STORE_DATA_HEADER_LEN);
             payLoadOffset += 4;
             payLoadLen -= 4;
             if (attrLen > payLoadLen) {
                 return null;
             }
             if (attrLen > 0) {
-                final byte[] attrData = new byte[attrLen];
-                System.arraycopy(dataBuffer.array(), payLoadOffset, attrData, 0, attrLen);
-                try {
-                    attribute = new String(attrData, TBaseConstants.META_DEFAULT_CHARSET_NAME);
-                } catch (final UnsupportedEncodingException e) {
-                    throw new RuntimeException(e);
-                }
+                msgTime = getMsgTime(dataBuffer, payLoadOffset, attrLen);
             }
         }
-        String messageTime = "";
-        if (TStringUtils.isNotBlank(attribute)) {
-            if (attribute.contains(TokenConstants.TOKEN_MSG_TIME)) {
+        trafficInfo.addMsgCntAndSize(msgTime, 1L, payLoadLen2);
+        ClientBroker.TransferedMessage transferedMessage = dataBuilder.build();
+        dataBuilder.clear();
+        return transferedMessage;
+    }
 
-                String[] strAttrs = attribute.split(TokenConstants.ARRAY_SEP);
-                for (String strAttrItem : strAttrs) {
-                    if (TStringUtils.isNotBlank(strAttrItem)) {
-                        if (strAttrItem.contains(TokenConstants.TOKEN_MSG_TIME)) {
-                            String[] strItems = strAttrItem.split(TokenConstants.EQ);
-                            if (strItems.length > 1) {
-                                messageTime = strItems[1];
-                            }
-                        }
-                    }
+    /**
+     * Get the message time from the attribute bytes without decoding the attribute.
+     *
+     * The message time is set by the producer in yyyyMMddHHmm format, which is returned
+     * as the number of its digits, such as 202207041219L for "202207041219", so it can
+     * be formatted back by FetchTrafficInfo.msgTimeToString(). The values in other forms,
+     * which the producer rejects, are treated as no message time.
+     *
+     * @param dataBuffer   the raw stored data
+     * @param attrOffset   the attribute offset in dataBuffer
+     * @param attrLen      the attribute length
+     * @return             the message time, NO_MSG_TIME if absent or not in yyyyMMddHHmm format
+     */
+    public static long getMsgTime(ByteBuffer dataBuffer, int attrOffset, int attrLen) {
+        final int attrEnd = attrOffset + attrLen;
+        final int tokenLen = MSG_TIME_TOKEN.length;
+        for (int pos = attrOffset; pos + tokenLen <= attrEnd; pos++) {
+            int i = 0;
+            while (i < tokenLen && dataBuffer.get(pos + i) == MSG_TIME_TOKEN[i]) {
+                i++;
+            }
+            if (i < tokenLen) {
+                continue;
+            }
+            long msgTime = 0L;
+            int digitCnt = 0;
+            for (int valuePos = pos + tokenLen; valuePos < attrEnd; valuePos++) {
+                byte value = dataBuffer.get(valuePos);
+                if (value == ATTR_ITEM_SEP) {
+                    break;
+                }
+                if (value < '0' || value > '9'
+                        || ++digitCnt > DateTimeConvertUtils.LENGTH_YYYYMMDDHHMM) {
+                    return FetchTrafficInfo.NO_MSG_TIME;
                 }
+                msgTime = msgTime * 10 + (value - '0');
             }
+            return (digitCnt == DateTimeConvertUtils.LENGTH_YYYYMMDDHHMM
+                    && dataBuffer.get(pos + tokenLen) != '0') ? msgTime : FetchTrafficInfo.NO_MSG_TIME;
         }
-        String baseKey = sBuilder.append(statisKeyBase)
-                .append("#").append(messageTime).toString();
-        sBuilder.delete(0, sBuilder.length());
-        TrafficInfo getCount = countMap.get(baseKey);
-        if (getCount == null) {
-            countMap.put(baseKey, new TrafficInfo(1L, payLoadLen2));
-        } else {
-            getCount.addMsgCntAndSize(1L, payLoadLen2);
-        }
-        ClientBroker.TransferedMessage transferedMessage = dataBuilder.build();
-        dataBuilder.clear();
-        return transferedMessage;
+        return FetchTrafficInfo.NO_MSG_TIME;
     }
 }
@@ -886,7 +886,7 @@ public class BrokerAdminServlet extends AbstractWebHandler {
             qryThrow = null;
             try {
                 getMessageResult = msgStore.getMessages(303, itemInitOffset,
-                        partitionId, consumerNodeInfo, TServerConstants.OFFSET_HISTORY_NAME,
+                        partitionId, consumerNodeInfo,
                         maxTransferSize, recordStamp);
             } catch (Throwable e2) {
                 qryThrow = e2;
@@ -1181,7 +1181,7 @@ public class BrokerAdminServlet extends AbstractWebHandler {
             qryThrow = null;
             try {
                 getMessageResult = msgStore.getMessages(303, itemInitOffset,
-                        partitionId, consumerNodeInfo, TServerConstants.OFFSET_HISTORY_NAME,
+                        partitionId, consumerNodeInfo,
                         maxTransferSize, recStartTime);
             } catch (Throwable e2) {
                 qryThrow = e2;
@@ -78,6 +78,7 @@ public final class TServerConstants {
     public static final int CFG_MODAUTHTOKEN_MAX_LENGTH = 128;
     public static final int CFG_ROWLOCK_DEFAULT_DURATION = 30000;
     public static final int CFG_ZK_COMMIT_DEFAULT_RETRIES = 10;
+    public static final String OFFSET_JOURNAL_DIR_NAME = "offset_journal";
     public static final int CFG_STORE_DEFAULT_MSG_READ_UNIT = 327680;
     public static final int CFG_BATCH_BROKER_OPERATE_MAX_COUNT = 50;
     public static final int CFG_BATCH_RECORD_OPERATE_MAX_COUNT = 100;
@@ -99,6 +100,10 @@ public final class TServerConstants {
     public static final long CFG_DEFAULT_GROUP_OFFSET_SCAN_DUR = 60000L;
     public static final long CFG_MIN_GROUP_OFFSET_SCAN_DUR = 20000L;
     public static final long CFG_MAX_GROUP_OFFSET_SCAN_DUR = 480000L;
+    // the count of memory caches allocated per message store, 2 means active and standby
+    public static final int CFG_DEFAULT_MEM_STORE_RING_SIZE = 2;
+    public static final int CFG_MIN_MEM_STORE_RING_SIZE = 2;
+    public static final int CFG_MAX_MEM_STORE_RING_SIZE = 8;
 
     public static final long CFG_OFFSET_RESET_MIN_ALARM_CHECK =
             DataStoreUtils.STORE_INDEX_HEAD_LEN * 100000L;
@@ -20,15 +20,12 @@ package org.apache.inlong.tubemq.server.master.balance;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Queue;
 import java.util.Random;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.concurrent.LinkedBlockingQueue;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.inlong.tubemq.corebase.cluster.Partition;
 import org.apache.inlong.tubemq.server.master.metamanage.MetaDataService;
@@ -54,7 +51,7 @@ public class DefaultLoadBalancer implements LoadBalancer {
     }
 
     /**
-     * Load balance
+     * Load balance, the partitions are assigned incrementally and sticky to their consumers
      *
      * @param clusterState
      * @param consumerHolder
@@ -77,8 +74,7 @@ public class DefaultLoadBalancer implements LoadBalancer {
         Map<String/* consumer */, Map<String/* topic */, List<Partition>>> finalSubInfoMap =
                 new HashMap<>();
         Map<String, RebProcessInfo> rejGroupClientInfoMap = new HashMap<>();
-        Set<String> onlineOfflineGroupSet = new HashSet<>();
-        Set<String> boundGroupSet = new HashSet<>();
+        long movedPartCnt = 0;
         for (String group : groupSet) {
             if (group == null) {
                 continue;
@@ -94,7 +90,6 @@ public class DefaultLoadBalancer implements LoadBalancer {
             }
             // deal with regular consumer allocation, bound consume not in this part
             if (consumeGroupInfo.isUnReadyServerBalance()) {
-                boundGroupSet.add(group);
                 continue;
             }
             List<ConsumerInfo> newConsumerList = new ArrayList<>();
@@ -149,80 +144,10 @@ public class DefaultLoadBalancer implements LoadBalancer {
                     rejGroupClientInfoMap.put(group, rebProcessInfo);
                 }
             }
-            List<ConsumerInfo> newConsumerList2 = new ArrayList<>();
-            Map<String, Partition> partMap =
-                    brokerRunManager.getSubBrokerAcceptSubParts(topicSet);
-            Map<String, NodeRebInfo> rebProcessInfoMap = consumeGroupInfo.getBalanceMap();
-            for (ConsumerInfo consumer : newConsumerList) {
-                Map<String, List<Partition>> partitions = new HashMap<>();
-                finalSubInfoMap.put(consumer.getConsumerId(), partitions);
-                Map<String, Map<String, Partition>> relation = clusterState.get(consumer.getConsumerId());
-                if (relation != null) {
-                    // filter client which can not meet requirements
-                    if (rebProcessInfo.needProcessList.contains(consumer.getConsumerId())
-                            || rebProcessInfo.needEscapeList.contains(consumer.getConsumerId())) {
-                        NodeRebInfo tmpNodeRegInfo =
-                                rebProcessInfoMap.get(consumer.getConsumerId());
-                        if (tmpNodeRegInfo != null
-                                && tmpNodeRegInfo.getReqType() == 0) {
-                            newConsumerList2.add(consumer);
-                        }
-                        for (Entry<String, Map<String, Partition>> entry : relation.entrySet()) {
-                            partitions.put(entry.getKey(), new ArrayList<>());
-                        }
-                        continue;
-                    }
-                    newConsumerList2.add(consumer);
-                    for (Entry<String, Map<String, Partition>> entry : relation.entrySet()) {
-                        List<Partition> ps = new ArrayList<>();
-                        partitions.put(entry.getKey(), ps);
-                        Map<String, Partition> partitionMap = entry.getValue();
-                        if (partitionMap != null && !partitionMap.isEmpty()) {
-                            for (Partition partition : partitionMap.values()) {
-                                Partition curPart = partMap.remove(partition.getPartitionKey());
-                                if (curPart != null) {
-                                    ps.add(curPart);
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-            // random allocate
-            if (!partMap.isEmpty()) {
-                onlineOfflineGroupSet.add(group);
-                if (!newConsumerList2.isEmpty()) {
-                    this.randomAssign(partMap, newConsumerList2,
-                            finalSubInfoMap, clusterState, rebProcessInfo.needProcessList);
-                }
-            }
-        }
-        List<String> groupsNeedToBalance = new ArrayList<>();
-        if (onlineOfflineGroupSet.isEmpty()) {
-            for (String group : groupSet) {
-                if (group == null) {
-                    continue;
-                }
-                groupsNeedToBalance.add(group);
-            }
-        } else {
-            for (String group : groupSet) {
-                if (group == null) {
-                    continue;
-                }
-                if (!onlineOfflineGroupSet.contains(group)) {
-                    groupsNeedToBalance.add(group);
-                }
-            }
-        }
-        if (!boundGroupSet.isEmpty()) {
-            for (String group : boundGroupSet) {
-                groupsNeedToBalance.remove(group);
-            }
-        }
-        if (!groupsNeedToBalance.isEmpty()) {
-            balance(finalSubInfoMap, consumerHolder, brokerRunManager,
-                    groupsNeedToBalance, clusterState, rejGroupClientInfoMap);
+            movedPartCnt += stickyAssign(group, newConsumerList, rebProcessInfo,
+                    consumeGroupInfo.getBalanceMap(),
+                    brokerRunManager.getSubBrokerAcceptSubParts(topicSet),
+                    clusterState, finalSubInfoMap);
         }
         if (!rejGroupClientInfoMap.isEmpty()) {
             for (Entry<String, RebProcessInfo> entry : rejGroupClientInfoMap.entrySet()) {
@@ -230,188 +155,98 @@ public class DefaultLoadBalancer implements LoadBalancer {
                         entry.getValue().needProcessList);
             }
         }
+        MasterSrvStatsHolder.addSvrBalMovedPartCnt(movedPartCnt);
         return finalSubInfoMap;
     }
 
-    // #lizard forgives
-    private void balance(
-            Map<String, Map<String, List<Partition>>> clusterState,
-            ConsumerInfoHolder consumerHolder,
-            BrokerRunManager brokerRunManager,
-            List<String> groupSet,
-            Map<String, Map<String, Map<String, Partition>>> oldClusterState,
-            Map<String, RebProcessInfo> rejGroupClientInfoMap) {
-        // according to group
-        for (String group : groupSet) {
-            ConsumeGroupInfo consumeGroupInfo = consumerHolder.getConsumeGroupInfo(group);
-            if (consumeGroupInfo == null || consumeGroupInfo.isClientBalance()) {
-                continue;
-            }
-            // filter consumer which don't need to handle
-            List<ConsumerInfo> consumerList = new ArrayList<>();
-            List<ConsumerInfo> consumerList1 = consumeGroupInfo.getConsumerInfoList();
-            RebProcessInfo rebProcessInfo = rejGroupClientInfoMap.get(group);
-            if (rebProcessInfo != null) {
-                for (ConsumerInfo consumerInfo : consumerList1) {
-                    if (consumerInfo == null) {
-                        continue;
-                    }
-                    if (rebProcessInfo.needProcessList.contains(consumerInfo.getConsumerId())
-                            || rebProcessInfo.needEscapeList.contains(consumerInfo.getConsumerId())) {
-                        Map<String, List<Partition>> partitions2 =
-                                clusterState.computeIfAbsent(
-                                        consumerInfo.getConsumerId(), k -> new HashMap<>());
-                        Map<String, Map<String, Partition>> relation =
-                                oldClusterState.get(consumerInfo.getConsumerId());
-                        if (relation != null) {
-                            for (String topic : relation.keySet()) {
-                                partitions2.put(topic, new ArrayList<Partition>());
-                            }
+    /**
+     * Assign the partitions of a group incrementally, the consumers keep the partitions
+     * they hold, only the partitions over the quota of consumers and the unassigned
+     * partitions are moved. The groups of a balanceCluster call are assigned one after
+     * another, each with its own assignor, so the result of a group does not depend on
+     * the others; the parallelism comes from the master, which splits the groups of a
+     * balance round into rebalanceParallel subsets and balances each subset in its own
+     * executor task.
+     *
+     * @param group               the group name
+     * @param consumerList        the consumers of the group
+     * @param rebProcessInfo      the consumers required to release their partitions
+     * @param rebProcessInfoMap   the re-balance requests of the consumers
+     * @param partMap             the partitions subscribed by the group
+     * @param clusterState        the current assignment of the consumers
+     * @param finalSubInfoMap     the new assignment of the consumers
+     * @return                    the count of partitions moved to other consumers
+     */
+    private int stickyAssign(String group,
+            List<ConsumerInfo> consumerList,
+            RebProcessInfo rebProcessInfo,
+            Map<String, NodeRebInfo> rebProcessInfoMap,
+            Map<String, Partition> partMap,
+            Map<String, Map<String, Map<String, Partition>>> clusterState,
+            Map<String, Map<String, List<Partition>>> finalSubInfoMap) {
+        StickyGroupAssignor assignor = new StickyGroupAssignor();
+        for (ConsumerInfo consumer : consumerList) {
+            Map<String, List<Partition>> partitions = new HashMap<>();
+            finalSubInfoMap.put(consumer.getConsumerId(), partitions);
+            Map<String, Map<String, Partition>> relation = clusterState.get(consumer.getConsumerId());
+            // filter client which can not meet requirements
+            if (rebProcessInfo.needProcessList.contains(consumer.getConsumerId())
+                    || rebProcessInfo.needEscapeList.contains(consumer.getConsumerId())) {
+                NodeRebInfo tmpNodeRegInfo =
+                        rebProcessInfoMap.get(consumer.getConsumerId());
+                if (tmpNodeRegInfo != null
+                        && tmpNodeRegInfo.getReqType() == 0) {
+                    assignor.addConsumer(consumer.getConsumerId());
+                }
+                if (relation != null) {
+                    // the released partitions can not be assigned back in this round
+                    for (Entry<String, Map<String, Partition>> entry : relation.entrySet()) {
+                        partitions.put(entry.getKey(), new ArrayList<>());
+                        if (entry.getValue() == null) {
+                            continue;
+                        }
+                        for (String partitionKey : entry.getValue().keySet()) {
+                            assignor.excludePartition(consumer.getConsumerId(), partitionKey);
                         }
-                        continue;
                     }
-                    consumerList.add(consumerInfo);
                 }
-            } else {
-                consumerList = consumerList1;
+                continue;
             }
-            if (CollectionUtils.isEmpty(consumerList)) {
+            assignor.addConsumer(consumer.getConsumerId());
+            if (relation == null) {
                 continue;
             }
-            // sort consumer and partitions, then mod
-            Set<String> topics = consumeGroupInfo.getTopicSet();
-            Map<String, Partition> psPartMap =
-                    brokerRunManager.getSubBrokerAcceptSubParts(topics);
-            int min = psPartMap.size() / consumerList.size();
-            int max = psPartMap.size() % consumerList.size() == 0 ? min : min + 1;
-            int serverNumToLoadMax = psPartMap.size() % consumerList.size();
-            Queue<Partition> partitionToMove = new LinkedBlockingQueue<>();
-            Map<String, Integer> serverToTake = new HashMap<>();
-            for (ConsumerInfo consumer : consumerList) {
-                Map<String, List<Partition>> partitions =
-                        clusterState.get(consumer.getConsumerId());
-                if (partitions == null) {
-                    partitions = new HashMap<>();
-                }
-                int load = 0;
-                for (List<Partition> entry : partitions.values()) {
-                    load += entry.size();
-                }
-                if (load < max) {
-                    if (load == 0) {
-                        serverToTake.put(consumer.getConsumerId(), max - load);
-                    } else if (load < min) {
-                        serverToTake.put(consumer.getConsumerId(), max - load);
-                    }
+            for (Entry<String, Map<String, Partition>> entry : relation.entrySet()) {
+                partitions.put(entry.getKey(), new ArrayList<>());
+                Map<String, Partition> partitionMap = entry.getValue();
+                if (partitionMap == null || partitionMap.isEmpty()) {
                     continue;
                 }
-                int numToOffload;
-                if (serverNumToLoadMax > 0) {
-                    serverNumToLoadMax--;
-                    numToOffload = load - max;
-                } else {
-                    numToOffload = load - min;
-                }
-                // calculate if current consumer partition need to release or add
-                for (List<Partition> entry : partitions.values()) {
-                    if (entry.size() > numToOffload) {
-                        int condition = numToOffload;
-                        for (int i = 0; i < condition; i++) {
-                            partitionToMove.add(entry.remove(0));
-                            numToOffload--;
-                        }
-                        if (numToOffload <= 0) {
-                            break;
-                        }
-                    } else {
-                        numToOffload -= entry.size();
-                        partitionToMove.addAll(entry);
-                        entry.clear();
-                        if (numToOffload <= 0) {
-                            break;
-                        }
-                    }
-                }
-            }
-            // random allocate the rest partition
-            for (Entry<String, Integer> entry : serverToTake.entrySet()) {
-                for (int i = 0; i < entry.getValue() && partitionToMove.size() > 0; i++) {
-                    Partition partition = partitionToMove.poll();
-                    assign(partition, clusterState, entry.getKey());
-                }
-            }
-            // load balance partition between consumer
-            if (!partitionToMove.isEmpty()) {
-                for (String consumerId : serverToTake.keySet()) {
-                    if (partitionToMove.isEmpty()) {
-                        break;
+                for (Partition partition : partitionMap.values()) {
+                    Partition curPart = partMap.remove(partition.getPartitionKey());
+                    if (curPart != null) {
+                        assignor.addOwnedPartition(consumer.getConsumerId(), curPart);
                     }
-                    assign(partitionToMove.poll(), clusterState, consumerId);
                 }
             }
         }
-    }
-
-    private void assign(Partition partition,
-            Map<String, Map<String, List<Partition>>> clusterState,
-            String consumerId) {
-        Map<String, List<Partition>> partitions =
-                clusterState.computeIfAbsent(consumerId, k -> new HashMap<>());
-        List<Partition> ps = partitions.computeIfAbsent(
-                partition.getTopic(), k -> new ArrayList<>());
-        ps.add(partition);
-    }
-
-    /**
-     * Random assign partition
-     *
-     * @param partitionToAssignMap
-     * @param consumerList
-     * @param clusterState
-     * @param oldClusterState
-     * @param filterList
-     */
-    private void randomAssign(Map<String, Partition> partitionToAssignMap,
-            List<ConsumerInfo> consumerList,
-            Map<String, Map<String, List<Partition>>> clusterState,
-            Map<String, Map<String, Map<String, Partition>>> oldClusterState,
-            List<String> filterList) {
-        int searched = 1;
-        int consumerSize = consumerList.size();
-        for (Partition partition : partitionToAssignMap.values()) {
-            ConsumerInfo consumer = null;
-            int indeId = RANDOM.nextInt(consumerSize);
-            do {
-                searched = 1;
-                consumer = consumerList.get(indeId);
-                if (filterList.contains(consumer.getConsumerId())) {
-                    if (consumerList.size() == 1) {
-                        searched = 0;
-                        break;
-                    }
-                    Map<String, Map<String, Partition>> oldPartitionMap =
-                            oldClusterState.get(consumer.getConsumerId());
-                    if (oldPartitionMap != null) {
-                        Map<String, Partition> oldPartitions =
-                                oldPartitionMap.get(partition.getTopic());
-                        if (oldPartitions != null) {
-                            if (oldPartitions.get(partition.getPartitionKey()) != null) {
-                                searched = 2;
-                                indeId = (indeId + 1) % consumerSize;
-                            }
-                        }
-                    }
-                }
-            } while (searched >= 2);
-            if (searched == 0) {
-                return;
+        for (Partition partition : partMap.values()) {
+            assignor.addUnassignedPartition(partition);
+        }
+        for (Entry<String, List<Partition>> entry : assignor.assign().entrySet()) {
+            Map<String, List<Partition>> partitions = finalSubInfoMap.get(entry.getKey());
+            for (Partition partition : entry.getValue()) {
+                partitions.computeIfAbsent(partition.getTopic(),
+                        k -> new ArrayList<>()).add(partition);
             }
-            Map<String, List<Partition>> partitions =
-                    clusterState.computeIfAbsent(consumer.getConsumerId(), k -> new HashMap<>());
-            List<Partition> ps = partitions.computeIfAbsent(
-                    partition.getTopic(), k -> new ArrayList<>());
-            ps.add(partition);
         }
+        if (assignor.getMovedPartCnt() > 0 && logger.isDebugEnabled()) {
+            logger.debug(new StringBuilder(256).append("[Svr-Balance] group ")
+                    .append(group).append(" moved ").append(assignor.getMovedPartCnt())
+                    .append(" partitions among ").append(consumerList.size())
+                    .append(" consumers").toString());
+        }
+        return assignor.getMovedPartCnt();
     }
 
     /**
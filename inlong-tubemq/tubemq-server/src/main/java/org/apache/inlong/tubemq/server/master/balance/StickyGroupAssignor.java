@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.server.master.balance;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.inlong.tubemq.corebase.cluster.Partition;
+
+/**
+ * Sticky partition assignor of a consume group.
+ *
+ * The consumers keep the partitions they currently hold as far as possible, each consumer
+ * is given a quota of (partition count / consumer count) or one more, and only the
+ * partitions over the quota and the unassigned partitions are moved to the consumers
+ * under the quota. The object is used by one balance task of a group, it is not thread-safe.
+ */
+public class StickyGroupAssignor {
+
+    // the consumers in the order of registration
+    private final List<String> consumerIds = new ArrayList<>();
+    // the partitions held by the consumers
+    private final Map<String, List<Partition>> assignments = new HashMap<>();
+    // the partitions that must not be assigned to the consumers
+    private final Map<String, Set<String>> excludedParts = new HashMap<>();
+    private final List<Partition> unassignedParts = new ArrayList<>();
+    private int totalPartCnt = 0;
+    private int movedPartCnt = 0;
+
+    public StickyGroupAssignor() {
+        //
+    }
+
+    /**
+     * Add a consumer that can receive partitions.
+     *
+     * @param consumerId   the consumer id
+     */
+    public void addConsumer(String consumerId) {
+        if (assignments.containsKey(consumerId)) {
+            return;
+        }
+        consumerIds.add(consumerId);
+        assignments.put(consumerId, new ArrayList<Partition>());
+    }
+
+    /**
+     * Add a partition currently held by the consumer, the partition is
+     * treated as unassigned if the consumer can not receive partitions.
+     *
+     * @param consumerId   the consumer id
+     * @param partition    the partition held by the consumer
+     */
+    public void addOwnedPartition(String consumerId, Partition partition) {
+        List<Partition> ownedParts = assignments.get(consumerId);
+        if (ownedParts == null) {
+            addUnassignedPartition(partition);
+            return;
+        }
+        ownedParts.add(partition);
+        totalPartCnt++;
+    }
+
+    /**
+     * Add a partition held by none of the consumers.
+     *
+     * @param partition   the unassigned partition
+     */
+    public void addUnassignedPartition(Partition partition) {
+        unassignedParts.add(partition);
+        totalPartCnt++;
+    }
+
+    /**
+     * Forbid assigning the partition to the consumer.
+     *
+     * @param consumerId     the consumer id
+     * @param partitionKey   the partition key
+     */
+    public void excludePartition(String consumerId, String partitionKey) {
+        excludedParts.computeIfAbsent(consumerId, k -> new HashSet<>()).add(partitionKey);
+    }
+
+    /**
+     * Assign the partitions to the consumers.
+     *
+     * @return  the partitions assigned to each consumer
+     */
+    public Map<String, List<Partition>> assign() {
+        movedPartCnt = 0;
+        if (consumerIds.isEmpty()) {
+            return assignments;
+        }
+        // the consumers holding more partitions take the larger quota
+        List<String> sortedIds = new ArrayList<>(consumerIds);
+        Collections.sort(sortedIds, new Comparator<String>() {
+
+            @Override
+            public int compare(String o1, String o2) {
+                int result = Integer.compare(assignments.get(o2).size(),
+                        assignments.get(o1).size());
+                return result != 0 ? result : o1.compareTo(o2);
+            }
+        });
+        int minQuota = totalPartCnt / sortedIds.size();
+        int extraCnt = totalPartCnt % sortedIds.size();
+        int[] quotas = new int[sortedIds.size()];
+        Deque<Partition> pendingParts = new ArrayDeque<>(unassignedParts);
+        // release the partitions over the quota
+        for (int i = 0; i < sortedIds.size(); i++) {
+            quotas[i] = i < extraCnt ? minQuota + 1 : minQuota;
+            List<Partition> ownedParts = assignments.get(sortedIds.get(i));
+            while (ownedParts.size() > quotas[i]) {
+                pendingParts.add(ownedParts.remove(ownedParts.size() - 1));
+            }
+        }
+        // fill the consumers under the quota, the least loaded first
+        for (int i = sortedIds.size() - 1; i >= 0 && !pendingParts.isEmpty(); i--) {
+            List<Partition> ownedParts = assignments.get(sortedIds.get(i));
+            Set<String> excludedKeys = excludedParts.get(sortedIds.get(i));
+            if (excludedKeys == null) {
+                while (ownedParts.size() < quotas[i] && !pendingParts.isEmpty()) {
+                    ownedParts.add(pendingParts.poll());
+                    movedPartCnt++;
+                }
+                continue;
+            }
+            Iterator<Partition> it = pendingParts.iterator();
+            while (ownedParts.size() < quotas[i] && it.hasNext()) {
+                Partition partition = it.next();
+                if (!excludedKeys.contains(partition.getPartitionKey())) {
+                    it.remove();
+                    ownedParts.add(partition);
+                    movedPartCnt++;
+                }
+            }
+        }
+        // the rest are excluded by the consumers under the quota,
+        // give them to the least loaded consumers that accept them
+        for (Partition partition : pendingParts) {
+            List<Partition> targetParts = null;
+            for (String consumerId : sortedIds) {
+                Set<String> excludedKeys = excludedParts.get(consumerId);
+                if (excludedKeys != null
+                        && excludedKeys.contains(partition.getPartitionKey())) {
+                    continue;
+                }
+                List<Partition> ownedParts = assignments.get(consumerId);
+                if (targetParts == null || ownedParts.size() < targetParts.size()) {
+                    targetParts = ownedParts;
+                }
+            }
+            // left unassigned until the next balance if no consumer accepts it
+            if (targetParts != null) {
+                targetParts.add(partition);
+                movedPartCnt++;
+            }
+        }
+        return assignments;
+    }
+
+    /**
+     * Get the count of partitions assigned to a new consumer in the last assignment.
+     *
+     * @return  the moved partition count
+     */
+    public int getMovedPartCnt() {
+        return movedPartCnt;
+    }
+}
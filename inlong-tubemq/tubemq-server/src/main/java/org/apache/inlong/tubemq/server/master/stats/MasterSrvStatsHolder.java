@@ -32,6 +32,7 @@ import org.apache.inlong.tubemq.corebase.metric.impl.SinceTime;
  * This class counts the number of consumer groups, timeouts, the load balancing duration
  * distribution of consumer groups, as well as the total number of registered consumers
  * in the system, the number of timeouts, the number of tasks being processed,
+ * the number of partitions moved by load balancing,
  * the total number of producers, the total number of timeouts,
  * and Broker registration and timeouts, etc.
  */
@@ -211,6 +212,12 @@ public class MasterSrvStatsHolder {
     public static void updSvrBalResetDurations(long dltTime) {
         switchableSets[getIndex()].svrResetBalanceStats.update(dltTime);
     }
+
+    public static void addSvrBalMovedPartCnt(long movedPartCnt) {
+        if (movedPartCnt > 0) {
+            switchableSets[getIndex()].svrBalMovedPartCnt.addValue(movedPartCnt);
+        }
+    }
     // metric set operate APIs end
 
     // private functions
@@ -243,6 +250,8 @@ public class MasterSrvStatsHolder {
                     statsSet.cltBalGroupTmototCnt.getAndResetValue());
             statsSet.svrNormalBalanceStats.snapShort(statsMap, false);
             statsSet.svrResetBalanceStats.snapShort(statsMap, false);
+            statsMap.put(statsSet.svrBalMovedPartCnt.getFullName(),
+                    statsSet.svrBalMovedPartCnt.getAndResetValue());
             // for consumer
             statsMap.put(consumerOnlineCnt.getFullName(),
                     consumerOnlineCnt.getAndResetValue());
@@ -280,6 +289,8 @@ public class MasterSrvStatsHolder {
                     statsSet.cltBalGroupTmototCnt.getValue());
             statsSet.svrNormalBalanceStats.getValue(statsMap, false);
             statsSet.svrResetBalanceStats.getValue(statsMap, false);
+            statsMap.put(statsSet.svrBalMovedPartCnt.getFullName(),
+                    statsSet.svrBalMovedPartCnt.getValue());
             // for consumer
             statsMap.put(consumerOnlineCnt.getFullName(),
                     consumerOnlineCnt.getValue());
@@ -328,6 +339,8 @@ public class MasterSrvStatsHolder {
             statsSet.svrNormalBalanceStats.snapShort(strBuff, false);
             strBuff.append(",");
             statsSet.svrResetBalanceStats.snapShort(strBuff, false);
+            strBuff.append(",\"").append(statsSet.svrBalMovedPartCnt.getFullName())
+                    .append("\":").append(statsSet.svrBalMovedPartCnt.getAndResetValue());
             // for consumer
             strBuff.append(",\"").append(consumerOnlineCnt.getFullName())
                     .append("\":").append(consumerOnlineCnt.getAndResetValue())
@@ -368,6 +381,8 @@ public class MasterSrvStatsHolder {
             statsSet.svrNormalBalanceStats.getValue(strBuff, false);
             strBuff.append(",");
             statsSet.svrResetBalanceStats.getValue(strBuff, false);
+            strBuff.append(",\"").append(statsSet.svrBalMovedPartCnt.getFullName())
+                    .append("\":").append(statsSet.svrBalMovedPartCnt.getValue());
             // for consumer
             strBuff.append(",\"").append(consumerOnlineCnt.getFullName())
                     .append("\":").append(consumerOnlineCnt.getValue())
@@ -446,6 +461,9 @@ public class MasterSrvStatsHolder {
         // reset server balance delta time statistics
         protected final ESTHistogram svrResetBalanceStats =
                 new ESTHistogram("server_balance_reset", null);
+        // partitions moved to other consumers by server balance statistics
+        protected final LongStatsCounter svrBalMovedPartCnt =
+                new LongStatsCounter("server_balance_moved_part_cnt", null);
 
         public ServiceStatsSet() {
             resetSinceTime();
@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.server.broker.benchmark;
+
+import com.google.protobuf.UnsafeByteOperations;
+import java.io.DataOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.List;
+import org.apache.inlong.tubemq.corebase.protobuf.generated.ClientBroker;
+import org.apache.inlong.tubemq.corebase.protobuf.generated.RPCProtos;
+import org.apache.inlong.tubemq.corerpc.RpcConstants;
+import org.apache.inlong.tubemq.corerpc.codec.PbEnDecoder;
+import org.apache.inlong.tubemq.corerpc.codec.PbSegmentEncoder;
+import org.apache.inlong.tubemq.corerpc.netty.ByteBufferOutputStream;
+import org.apache.inlong.tubemq.server.broker.stats.FetchTrafficInfo;
+import org.apache.inlong.tubemq.server.broker.utils.DataStoreUtils;
+
+/**
+ * Benchmark of the GetMessage response assembly of the broker, the stored records are
+ * converted by DataStoreUtils.getTransferMsg, compares copying the payloads out of a reused
+ * read buffer and serializing the whole response, against referencing the payloads in the
+ * store buffer and encoding the response into buffers by PbSegmentEncoder. The bytes/s and
+ * the bytes allocated per fetch are printed.
+ *
+ * Usage: GetMessageResponseEncode4Benchmark [msgSize] [fetchSize] [fetchCount]
+ */
+public class GetMessageResponseEncode4Benchmark {
+
+    private final int msgSize;
+    private final int msgCount;
+    private final int recordSize;
+    private final ByteBuffer storeBuffer;
+    private final ByteBuffer readBuffer;
+
+    /**
+     * Initial a benchmark of the response assembly
+     *
+     * @param msgSize     the payload size of a message
+     * @param fetchSize   the total payload size of a fetch
+     */
+    public GetMessageResponseEncode4Benchmark(int msgSize, int fetchSize) {
+        this.msgSize = msgSize;
+        this.msgCount = Math.max(1, fetchSize / msgSize);
+        this.recordSize = DataStoreUtils.STORE_DATA_HEADER_LEN + msgSize;
+        // stands for the records read from the store
+        this.storeBuffer = ByteBuffer.allocate(recordSize * msgCount);
+        for (int i = 0; i < msgCount; i++) {
+            int recordPos = i * recordSize;
+            storeBuffer.putInt(recordPos + DataStoreUtils.STORE_HEADER_POS_LENGTH,
+                    DataStoreUtils.STORE_DATA_PREFX_LEN + msgSize);
+            storeBuffer.putInt(recordPos + DataStoreUtils.STORE_HEADER_POS_DATATYPE,
+                    DataStoreUtils.STORE_DATA_TOKER_BEGIN_VALUE);
+            storeBuffer.putInt(recordPos + DataStoreUtils.STORE_HEADER_POS_CHECKSUM, -1);
+            storeBuffer.putLong(recordPos + DataStoreUtils.STORE_HEADER_POS_MSGID, i);
+            storeBuffer.putInt(recordPos + DataStoreUtils.STORE_HEADER_POS_MSGFLAG, 0);
+            for (int j = 0; j < msgSize; j++) {
+                storeBuffer.put(recordPos + DataStoreUtils.STORE_DATA_HEADER_LEN + j,
+                        (byte) ('a' + j % 26));
+            }
+        }
+        this.readBuffer = ByteBuffer.allocate(recordSize);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 3) {
+            new GetMessageResponseEncode4Benchmark(Integer.parseInt(args[0]),
+                    Integer.parseInt(args[1])).start(Integer.parseInt(args[2]));
+            return;
+        }
+        // 1 MB fetches of 1KB and 64KB messages, 100-byte messages stay copied
+        new GetMessageResponseEncode4Benchmark(100, 1024 * 1024).start(2000);
+        new GetMessageResponseEncode4Benchmark(1024, 1024 * 1024).start(2000);
+        new GetMessageResponseEncode4Benchmark(64 * 1024, 1024 * 1024).start(2000);
+    }
+
+    /**
+     * Start benchmark test
+     *
+     * @param fetchCount  the count of the assembled responses of each round
+     * @throws Exception  the exception
+     */
+    public void start(int fetchCount) throws Exception {
+        // warm up
+        runRound(false, fetchCount / 4 + 1, false);
+        runRound(true, fetchCount / 4 + 1, false);
+        runRound(false, fetchCount, true);
+        runRound(true, fetchCount, true);
+    }
+
+    private void runRound(boolean isSegment, int fetchCount, boolean isPrint) throws Exception {
+        long totalBytes = 0L;
+        long startAlloc = getAllocatedBytes();
+        long startTime = System.nanoTime();
+        for (int i = 0; i < fetchCount; i++) {
+            List<ByteBuffer> bufferList = isSegment ? encodeBySegment() : encodeByCopy();
+            for (ByteBuffer buffer : bufferList) {
+                totalBytes += buffer.remaining();
+            }
+        }
+        long costNanos = Math.max(1L, System.nanoTime() - startTime);
+        long allocBytes = getAllocatedBytes() - startAlloc;
+        if (!isPrint) {
+            return;
+        }
+        System.out.println(new StringBuilder(256)
+                .append("[Benchmark] mode=").append(isSegment ? "segment" : "copy")
+                .append(", msgSize=").append(msgSize)
+                .append(", msgs/fetch=").append(msgCount)
+                .append(", fetches=").append(fetchCount)
+                .append(", cost time=").append(costNanos / 1000000L).append(" ms")
+                .append(", MB/s=").append(totalBytes * 1000000000L / costNanos / (1024 * 1024))
+                .append(", alloc bytes/fetch=").append(allocBytes / fetchCount)
+                .toString());
+    }
+
+    /**
+     * The copy assembly, each record is read into the reused read buffer and its payload
+     * is copied out, then the response is serialized into the response body.
+     */
+    private List<ByteBuffer> encodeByCopy() throws Exception {
+        FetchTrafficInfo trafficInfo = new FetchTrafficInfo();
+        ClientBroker.GetMessageResponseB2C.Builder builder = newResponseBuilder();
+        for (int i = 0; i < msgCount; i++) {
+            System.arraycopy(storeBuffer.array(), i * recordSize,
+                    readBuffer.array(), 0, recordSize);
+            builder.addMessages(DataStoreUtils.getTransferMsg(readBuffer,
+                    recordSize, trafficInfo, false));
+        }
+        ByteBufferOutputStream buf = new ByteBufferOutputStream();
+        DataOutputStream out = new DataOutputStream(buf);
+        RPCProtos.RspResponseBody.Builder dataBuilder =
+                RPCProtos.RspResponseBody.newBuilder();
+        dataBuilder.setMethod(RpcConstants.RPC_MSG_BROKER_CONSUMER_GETMESSAGE);
+        dataBuilder.setData(UnsafeByteOperations.unsafeWrap(
+                PbEnDecoder.pbEncode(builder.build())));
+        dataBuilder.build().writeDelimitedTo(out);
+        return buf.getBufferList();
+    }
+
+    /**
+     * The assembly with PbSegmentEncoder, the payloads in the store buffer are referenced.
+     */
+    private List<ByteBuffer> encodeBySegment() {
+        FetchTrafficInfo trafficInfo = new FetchTrafficInfo();
+        ClientBroker.GetMessageResponseB2C.Builder builder = newResponseBuilder();
+        for (int i = 0; i < msgCount; i++) {
+            ByteBuffer recordBuf = storeBuffer.duplicate();
+            recordBuf.position(i * recordSize);
+            recordBuf.limit((i + 1) * recordSize);
+            builder.addMessages(DataStoreUtils.getTransferMsg(recordBuf.slice(),
+                    recordSize, trafficInfo, true));
+        }
+        return PbSegmentEncoder.encode(builder.build());
+    }
+
+    private ClientBroker.GetMessageResponseB2C.Builder newResponseBuilder() {
+        ClientBroker.GetMessageResponseB2C.Builder builder =
+                ClientBroker.GetMessageResponseB2C.newBuilder();
+        builder.setSuccess(true);
+        builder.setErrCode(200);
+        builder.setErrMsg("Ok");
+        builder.setCurrOffset(0L);
+        builder.setMaxOffset(msgCount);
+        return builder;
+    }
+
+    private long getAllocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
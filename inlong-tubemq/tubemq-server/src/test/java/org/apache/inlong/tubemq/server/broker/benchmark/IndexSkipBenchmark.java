@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.server.broker.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Set;
+import org.apache.inlong.tubemq.server.broker.msgstore.disk.PartitionBlockIndex;
+import org.apache.inlong.tubemq.server.broker.msgstore.mem.GetCacheMsgResult;
+import org.apache.inlong.tubemq.server.broker.msgstore.mem.MsgMemStore;
+import org.apache.inlong.tubemq.server.broker.stats.MsgStoreStatsHolder;
+import org.apache.inlong.tubemq.server.broker.utils.DataStoreUtils;
+import org.apache.inlong.tubemq.server.common.utils.AppendResult;
+
+/**
+ * IndexSkipBenchmark, measure the partition read throughput of a store shared by
+ * 1, 10 and 100 partitions: the memory cache read through the partition and filter key
+ * posting lists against a full index scan, and the index records visited in the file
+ * index with and without the partition block index.
+ *
+ * Usage: IndexSkipBenchmark [msgCount] [rounds]
+ */
+public class IndexSkipBenchmark {
+
+    private static final int[] PARTITION_COUNTS = {1, 10, 100};
+    private static final int CACHE_DATA_SIZE = 64 * 1024 * 1024;
+    private static final int MSG_SIZE = 100;
+    private static final int READ_SIZE = 1024 * 1024;
+    private static final int READ_COUNT = 1000;
+    // the messages of a partition are written in bursts of this count into the file index
+    private static final int FILE_BURST_COUNT = 200;
+
+    private final int msgCount;
+    private final int rounds;
+    private final byte[] msgData = new byte[MSG_SIZE];
+    private final MsgStoreStatsHolder statsHolder = new MsgStoreStatsHolder();
+    private final AppendResult appendResult = new AppendResult();
+
+    public IndexSkipBenchmark(int msgCount, int rounds) {
+        this.msgCount = msgCount;
+        this.rounds = rounds;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int msgCount = 100000;
+        int rounds = 20;
+        if (args.length > 0) {
+            msgCount = Integer.parseInt(args[0]);
+        }
+        if (args.length > 1) {
+            rounds = Integer.parseInt(args[1]);
+        }
+        new IndexSkipBenchmark(msgCount, rounds).start();
+    }
+
+    /**
+     * Start benchmark test, each partition count is warmed up before measured.
+     */
+    public void start() {
+        for (int partCnt : PARTITION_COUNTS) {
+            MsgMemStore memStore = new MsgMemStore(CACHE_DATA_SIZE, msgCount, 0, 0);
+            try {
+                ByteBuffer indexCopy = fillMemStore(memStore, partCnt);
+                runMemRead(memStore, false, rounds / 5 + 1);
+                runIndexScan(indexCopy, rounds / 5 + 1);
+                printResult("mem-posting-read", partCnt, runMemRead(memStore, false, rounds));
+                printResult("mem-posting-filter-read", partCnt, runMemRead(memStore, true, rounds));
+                printResult("mem-full-index-scan", partCnt, runIndexScan(indexCopy, rounds));
+            } finally {
+                memStore.close();
+            }
+            runFileIndex(partCnt);
+        }
+    }
+
+    private ByteBuffer fillMemStore(MsgMemStore memStore, int partCnt) {
+        memStore.resetMemStoreStatus(0, 0);
+        ByteBuffer indexCopy = ByteBuffer.allocate(msgCount * DataStoreUtils.STORE_INDEX_HEAD_LEN);
+        long dataOffset = 0;
+        for (int i = 0; i < msgCount; i++) {
+            long recvTime = System.currentTimeMillis();
+            if (!memStore.appendMsg(statsHolder, i % partCnt, i % 100, recvTime,
+                    i, 0, i, 0, msgData, MSG_SIZE, appendResult)) {
+                break;
+            }
+            indexCopy.putInt(i % partCnt);
+            indexCopy.putLong(dataOffset);
+            indexCopy.putInt(DataStoreUtils.STORE_DATA_HEADER_LEN + MSG_SIZE);
+            indexCopy.putInt(i % 100);
+            indexCopy.putLong(recvTime);
+            dataOffset += DataStoreUtils.STORE_DATA_HEADER_LEN + MSG_SIZE;
+        }
+        indexCopy.flip();
+        return indexCopy;
+    }
+
+    private long[] runMemRead(MsgMemStore memStore, boolean isFilter, int count) {
+        final Set<Integer> filterKeys = Collections.singleton(0);
+        long readMsgCnt = 0;
+        long startTime = System.nanoTime();
+        for (int round = 0; round < count; round++) {
+            long indexOffset = 0;
+            long dataOffset = 0;
+            while (true) {
+                GetCacheMsgResult result = memStore.getMessages(dataOffset, indexOffset,
+                        READ_SIZE, READ_COUNT, 0, false, isFilter, filterKeys, 0L, true);
+                if (!result.isSuccess || result.dltOffset <= 0) {
+                    break;
+                }
+                readMsgCnt += result.cacheMsgList.size();
+                indexOffset += result.dltOffset;
+                dataOffset = result.lastRdDataOff;
+            }
+        }
+        return new long[]{readMsgCnt, System.nanoTime() - startTime};
+    }
+
+    private long[] runIndexScan(ByteBuffer indexCopy, int count) {
+        // the index walk of the reading before posting lists, every entry is visited
+        long readMsgCnt = 0;
+        long startTime = System.nanoTime();
+        for (int round = 0; round < count; round++) {
+            for (int pos = 0; pos < indexCopy.limit(); pos += DataStoreUtils.STORE_INDEX_HEAD_LEN) {
+                if (indexCopy.getInt(pos) == 0) {
+                    readMsgCnt++;
+                }
+            }
+        }
+        return new long[]{readMsgCnt, System.nanoTime() - startTime};
+    }
+
+    private void runFileIndex(int partCnt) {
+        PartitionBlockIndex blockIndex =
+                new PartitionBlockIndex(DataStoreUtils.STORE_PARTITION_BLOCK_RECORDS);
+        for (long recordNo = 0; recordNo < msgCount; recordNo++) {
+            blockIndex.addRecord(recordNo, (int) ((recordNo / FILE_BURST_COUNT) % partCnt));
+        }
+        long visited = 0;
+        long recordNo = blockIndex.getNextRecord(0, 0);
+        while (recordNo < msgCount) {
+            // visit the records of the block, then skip to the next block of the partition
+            long blockEnd = Math.min(msgCount,
+                    (recordNo / DataStoreUtils.STORE_PARTITION_BLOCK_RECORDS + 1)
+                            * DataStoreUtils.STORE_PARTITION_BLOCK_RECORDS);
+            visited += blockEnd - recordNo;
+            recordNo = blockIndex.getNextRecord(0, blockEnd);
+        }
+        System.out.println(new StringBuilder(256)
+                .append("[Benchmark] mode=file-block-skip")
+                .append(", partitions=").append(partCnt)
+                .append(", records=").append(msgCount)
+                .append(", visited with skip=").append(visited)
+                .append(", visited without skip=").append(msgCount)
+                .toString());
+    }
+
+    private void printResult(String mode, int partCnt, long[] result) {
+        double costSec = result[1] / 1000000000.0;
+        System.out.println(new StringBuilder(256)
+                .append("[Benchmark] mode=").append(mode)
+                .append(", partitions=").append(partCnt)
+                .append(", matched msgs=").append(result[0])
+                .append(", rounds/s=").append((long) (rounds / costSec))
+                .append(", matched msgs/s=").append((long) (result[0] / costSec))
+                .toString());
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.server.broker.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import org.apache.inlong.tubemq.server.broker.msgstore.mem.MsgMemStore;
+import org.apache.inlong.tubemq.server.broker.stats.MsgStoreStatsHolder;
+import org.apache.inlong.tubemq.server.broker.utils.DataStoreUtils;
+import org.apache.inlong.tubemq.server.common.utils.AppendResult;
+
+/**
+ * MsgMemStoreAppendBenchmark, compare the throughput and allocation rate of
+ * appending messages into the memory cache through temporary heap buffers
+ * and through direct serialization into the cache segments.
+ *
+ * Usage: MsgMemStoreAppendBenchmark [msgSize] [msgCount]
+ */
+public class MsgMemStoreAppendBenchmark {
+
+    private static final int CACHE_DATA_SIZE = 64 * 1024 * 1024;
+    private static final int CACHE_MSG_COUNT = 200000;
+
+    private final int msgSize;
+    private final int msgCount;
+    private final byte[] msgData;
+    private final MsgStoreStatsHolder statsHolder = new MsgStoreStatsHolder();
+    private final AppendResult appendResult = new AppendResult();
+
+    public MsgMemStoreAppendBenchmark(int msgSize, int msgCount) {
+        this.msgSize = msgSize;
+        this.msgCount = msgCount;
+        this.msgData = new byte[msgSize];
+        for (int i = 0; i < msgSize; i++) {
+            this.msgData[i] = (byte) ('a' + i % 26);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int msgSize = 100;
+        int msgCount = 5000000;
+        if (args.length > 0) {
+            msgSize = Integer.parseInt(args[0]);
+        }
+        if (args.length > 1) {
+            msgCount = Integer.parseInt(args[1]);
+        }
+        new MsgMemStoreAppendBenchmark(msgSize, msgCount).start();
+    }
+
+    /**
+     * Start benchmark test, each mode is warmed up before measured.
+     */
+    public void start() {
+        MsgMemStore memStore = new MsgMemStore(CACHE_DATA_SIZE, CACHE_MSG_COUNT, 0, 0);
+        try {
+            runAppend(memStore, false, msgCount / 5);
+            runAppend(memStore, true, msgCount / 5);
+            printResult("heap-buffer", runAppend(memStore, false, msgCount));
+            printResult("direct-serialize", runAppend(memStore, true, msgCount));
+        } finally {
+            memStore.close();
+        }
+    }
+
+    private long[] runAppend(MsgMemStore memStore, boolean isDirect, int count) {
+        long writePos = 0;
+        long indexPos = 0;
+        memStore.resetMemStoreStatus(writePos, indexPos);
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long startAlloc = threadMXBean.getThreadAllocatedBytes(threadId);
+        long startTime = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            long recvTime = System.currentTimeMillis();
+            boolean isSuccess = isDirect
+                    ? appendDirect(memStore, i, recvTime)
+                    : appendByBuffer(memStore, i, recvTime);
+            if (!isSuccess) {
+                writePos = memStore.getDataLastWritePos();
+                indexPos = memStore.getIndexLastWritePos();
+                memStore.resetMemStoreStatus(writePos, indexPos);
+                i--;
+            }
+        }
+        long costNs = System.nanoTime() - startTime;
+        long allocBytes = threadMXBean.getThreadAllocatedBytes(threadId) - startAlloc;
+        return new long[]{count, costNs, allocBytes};
+    }
+
+    private boolean appendDirect(MsgMemStore memStore, int seq, long recvTime) {
+        return memStore.appendMsg(statsHolder, seq % 10, seq % 100, recvTime,
+                seq, 0, seq, 0, msgData, msgSize, appendResult);
+    }
+
+    private boolean appendByBuffer(MsgMemStore memStore, int seq, long recvTime) {
+        int msgBufLen = DataStoreUtils.STORE_DATA_HEADER_LEN + msgSize;
+        final ByteBuffer dataBuffer = ByteBuffer.allocate(msgBufLen);
+        dataBuffer.putInt(DataStoreUtils.STORE_DATA_PREFX_LEN + msgSize);
+        dataBuffer.putInt(DataStoreUtils.STORE_DATA_TOKER_BEGIN_VALUE);
+        dataBuffer.putInt(seq);
+        dataBuffer.putInt(seq % 10);
+        dataBuffer.putLong(-1L);
+        dataBuffer.putLong(recvTime);
+        dataBuffer.putInt(0);
+        dataBuffer.putInt(seq % 100);
+        dataBuffer.putLong(seq);
+        dataBuffer.putInt(0);
+        dataBuffer.put(msgData);
+        dataBuffer.flip();
+        final ByteBuffer indexBuffer =
+                ByteBuffer.allocate(DataStoreUtils.STORE_INDEX_HEAD_LEN);
+        indexBuffer.putInt(seq % 10);
+        indexBuffer.putLong(-1L);
+        indexBuffer.putInt(msgBufLen);
+        indexBuffer.putInt(seq % 100);
+        indexBuffer.putLong(recvTime);
+        indexBuffer.flip();
+        return memStore.appendMsg(statsHolder, seq % 10, seq % 100, recvTime,
+                indexBuffer, msgBufLen, dataBuffer, appendResult);
+    }
+
+    private void printResult(String mode, long[] result) {
+        double costSec = result[1] / 1000000000.0;
+        System.out.println(new StringBuilder(256)
+                .append("[Benchmark] mode=").append(mode)
+                .append(", msgSize=").append(msgSize)
+                .append(", msgCount=").append(result[0])
+                .append(", msgs/s=").append((long) (result[0] / costSec))
+                .append(", alloc bytes/msg=").append(result[2] / result[0])
+                .append(", alloc MB/s=").append((long) (result[2] / costSec / 1024 / 1024))
+                .toString());
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.server.broker.msgstore;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.inlong.tubemq.corerpc.server.DeferredResponseHolder;
+import org.apache.inlong.tubemq.server.broker.BrokerConfig;
+import org.apache.inlong.tubemq.server.broker.metadata.BrokerDefMetadata;
+import org.apache.inlong.tubemq.server.broker.metadata.TopicMetadata;
+import org.apache.inlong.tubemq.server.broker.msgstore.mem.MsgMemStore;
+import org.apache.inlong.tubemq.server.broker.utils.DataStoreUtils;
+import org.apache.inlong.tubemq.server.common.utils.AppendResult;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * GroupCommitSyncer test, covers the durable sends waiting for the group sync.
+ */
+public class GroupCommitSyncerTest {
+
+    private static final int CACHE_MSG_CNT = 10;
+    private static final long MAX_WAIT_MS = 300L;
+    private static final byte[] TEST_DATA = "abcabdcdsdsdasdfasdfasdfsadfasdfasdf".getBytes();
+
+    private File storeDir;
+    private GroupCommitSyncer syncer;
+    private MessageStoreManager storeManager;
+    private MessageStore msgStore;
+
+    @Before
+    public void setUp() throws IOException {
+        storeDir = Files.createTempDirectory("groupcommit").toFile();
+        syncer = new GroupCommitSyncer(storeDir.getAbsolutePath());
+        storeManager = mock(MessageStoreManager.class);
+        when(storeManager.getGroupCommitSyncer(anyString())).thenReturn(syncer);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (msgStore != null) {
+            msgStore.close();
+        }
+        syncer.close();
+        deleteDir(storeDir);
+    }
+
+    @Test
+    public void testDeferredResponseReleasedAfterSync() throws Exception {
+        syncer.start();
+        msgStore = new MessageStore(storeManager, buildTopicMetadata(), 0,
+                buildBrokerConfig(MAX_WAIT_MS), 1024 * 1024);
+        Assert.assertTrue(msgStore.isGroupCommitEnabled());
+        AppendResult appendResult = null;
+        for (int i = 0; i < 3; i++) {
+            appendResult = appendMsg();
+        }
+        // the messages are still in the memory cache
+        Assert.assertEquals(0, msgStore.getFileIndexWriteOffset());
+        // defer the response as the send service does, then take it as the rpc server does
+        final CompletableFuture<Object> response = new CompletableFuture<>();
+        DeferredResponseHolder.defer(response);
+        msgStore.waitForDurable(appendResult.getAppendIndexOffset(),
+                new GroupCommitSyncer.DurableCallback() {
+
+                    @Override
+                    public void onDurable(boolean isSynced) {
+                        response.complete(isSynced ? "success" : "failure");
+                    }
+                });
+        Assert.assertSame(response, DeferredResponseHolder.take());
+        Assert.assertNull(DeferredResponseHolder.take());
+        Assert.assertEquals("success", response.get(5, TimeUnit.SECONDS));
+        // the sync flushed the cache and covers the waited offset
+        Assert.assertEquals(3 * DataStoreUtils.STORE_INDEX_HEAD_LEN,
+                msgStore.getFileIndexWriteOffset());
+    }
+
+    @Test
+    public void testWaiterTimeout() throws Exception {
+        syncer.start();
+        msgStore = new MessageStore(storeManager, buildTopicMetadata(), 0,
+                buildBrokerConfig(MAX_WAIT_MS), 1024 * 1024);
+        AppendResult appendResult = appendMsg();
+        // an offset not appended yet is never covered by the sync
+        CompletableFuture<Boolean> result = waitForDurable(
+                appendResult.getAppendIndexOffset() + DataStoreUtils.STORE_INDEX_HEAD_LEN);
+        long startTime = System.currentTimeMillis();
+        Assert.assertFalse(result.get(5, TimeUnit.SECONDS));
+        Assert.assertTrue(System.currentTimeMillis() - startTime >= MAX_WAIT_MS - 50);
+        // the appended message is still released by its own sync
+        Assert.assertTrue(waitForDurable(appendResult.getAppendIndexOffset())
+                .get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testWaiterFailedBySyncFailure() throws Exception {
+        final AtomicBoolean failFlush = new AtomicBoolean(true);
+        syncer.start();
+        msgStore = new MessageStore(storeManager, buildTopicMetadata(), 0,
+                buildBrokerConfig(60000L), 1024 * 1024) {
+
+            @Override
+            void flushMemStore(MsgMemStore sealedStore, StringBuilder strBuffer) throws Throwable {
+                if (failFlush.get()) {
+                    throw new IOException("flush failure");
+                }
+                super.flushMemStore(sealedStore, strBuffer);
+            }
+        };
+        AppendResult appendResult = appendMsg();
+        // the failure is reported without waiting for the max wait time
+        Assert.assertFalse(waitForDurable(appendResult.getAppendIndexOffset())
+                .get(5, TimeUnit.SECONDS));
+        failFlush.set(false);
+    }
+
+    @Test
+    public void testWaitersReleasedOnClose() throws Exception {
+        // the sync thread is not started, the waiters are pending until the store is closed
+        msgStore = new MessageStore(storeManager, buildTopicMetadata(), 0,
+                buildBrokerConfig(60000L), 1024 * 1024);
+        AppendResult appendResult = appendMsg();
+        CompletableFuture<Boolean> coveredResult =
+                waitForDurable(appendResult.getAppendIndexOffset());
+        CompletableFuture<Boolean> uncoveredResult = waitForDurable(
+                appendResult.getAppendIndexOffset() + DataStoreUtils.STORE_INDEX_HEAD_LEN);
+        Assert.assertFalse(coveredResult.isDone());
+        Assert.assertFalse(uncoveredResult.isDone());
+        msgStore.close();
+        Assert.assertTrue(coveredResult.get(1, TimeUnit.SECONDS));
+        Assert.assertFalse(uncoveredResult.get(1, TimeUnit.SECONDS));
+        // the sends after closed fail at once
+        Assert.assertFalse(waitForDurable(appendResult.getAppendIndexOffset())
+                .get(1, TimeUnit.SECONDS));
+    }
+
+    private AppendResult appendMsg() throws IOException {
+        AppendResult appendResult = new AppendResult();
+        Assert.assertTrue(msgStore.appendMsg(appendResult, TEST_DATA.length,
+                33, TEST_DATA, 0, 0, 0, 0));
+        return appendResult;
+    }
+
+    private CompletableFuture<Boolean> waitForDurable(long indexOffset) {
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        msgStore.waitForDurable(indexOffset, new GroupCommitSyncer.DurableCallback() {
+
+            @Override
+            public void onDurable(boolean isSynced) {
+                result.complete(isSynced);
+            }
+        });
+        return result;
+    }
+
+    private TopicMetadata buildTopicMetadata() {
+        return new TopicMetadata(new BrokerDefMetadata(), "test_topic", 1, 1) {
+
+            @Override
+            public int getMemCacheMsgCnt() {
+                return CACHE_MSG_CNT;
+            }
+
+            @Override
+            public int getMemCacheFlushIntvl() {
+                return 3600000;
+            }
+        };
+    }
+
+    private BrokerConfig buildBrokerConfig(final long maxWaitMs) {
+        return new BrokerConfig() {
+
+            @Override
+            public String getPrimaryPath() {
+                return storeDir.getAbsolutePath();
+            }
+
+            @Override
+            public boolean isEnableMemStore() {
+                return true;
+            }
+
+            @Override
+            public int getMemStoreRingSize() {
+                return 3;
+            }
+
+            @Override
+            public boolean isEnableGroupCommit() {
+                return true;
+            }
+
+            @Override
+            public long getGroupCommitMaxWaitMs() {
+                return maxWaitMs;
+            }
+
+            @Override
+            public int getMaxSegmentSize() {
+                return 4 * 1024 * 1024;
+            }
+        };
+    }
+
+    private void deleteDir(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteDir(child);
+            }
+        }
+        file.delete();
+    }
+}
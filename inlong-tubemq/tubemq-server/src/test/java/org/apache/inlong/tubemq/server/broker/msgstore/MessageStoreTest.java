@@ -0,0 +1,537 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.server.broker.msgstore;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.inlong.tubemq.corebase.protobuf.generated.ClientBroker;
+import org.apache.inlong.tubemq.server.broker.BrokerConfig;
+import org.apache.inlong.tubemq.server.broker.metadata.BrokerDefMetadata;
+import org.apache.inlong.tubemq.server.broker.metadata.TopicMetadata;
+import org.apache.inlong.tubemq.server.broker.msgstore.disk.GetMessageResult;
+import org.apache.inlong.tubemq.server.broker.msgstore.disk.MsgFileStore;
+import org.apache.inlong.tubemq.server.broker.msgstore.disk.Segment;
+import org.apache.inlong.tubemq.server.broker.msgstore.disk.SegmentList;
+import org.apache.inlong.tubemq.server.broker.msgstore.mem.MsgMemStore;
+import org.apache.inlong.tubemq.server.broker.utils.DataStoreUtils;
+import org.apache.inlong.tubemq.server.broker.utils.FailingFileChannel;
+import org.apache.inlong.tubemq.server.common.utils.AppendResult;
+import org.apache.inlong.tubemq.server.common.utils.BatchAppendItem;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * MessageStore test, covers the memory cache ring.
+ */
+public class MessageStoreTest {
+
+    private static final int CACHE_MSG_CNT = 10;
+    private static final int RANGE_MSG_CNT = 12;
+    private static final byte[] TEST_DATA = "abcabdcdsdsdasdfasdfasdfsadfasdfasdf".getBytes();
+
+    private File storeDir;
+    private MessageStore msgStore;
+
+    @Before
+    public void setUp() throws IOException {
+        storeDir = Files.createTempDirectory("msgstore").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (msgStore != null) {
+            msgStore.close();
+        }
+        deleteDir(storeDir);
+    }
+
+    @Test
+    public void testCacheSwap() throws Exception {
+        msgStore = new MessageStore(null, buildTopicMetadata(), 0, buildBrokerConfig(3, true), 1024 * 1024);
+        Map<String, Long> statsMap = activeStats();
+        for (int i = 0; i < 2 * CACHE_MSG_CNT + 5; i++) {
+            Assert.assertTrue(appendMsg());
+        }
+        waitSealedFlushed();
+        Assert.assertEquals(2 * CACHE_MSG_CNT * DataStoreUtils.STORE_INDEX_HEAD_LEN,
+                msgStore.getFileIndexWriteOffset());
+        Assert.assertEquals((2 * CACHE_MSG_CNT + 5) * DataStoreUtils.STORE_INDEX_HEAD_LEN,
+                msgStore.getIndexMaxOffset());
+        // the first cache may be flushed in time to be reused as the third one
+        Assert.assertEquals(msgStore.getAllocatedMemStoreCount() - 1, msgStore.getIdleMemStoreCount());
+        msgStore.getMsgStoreStatsHolder().getValue(statsMap);
+        Assert.assertEquals(2, statsMap.get("cache_swap").longValue());
+        Assert.assertEquals(2, statsMap.get("cache_sealed_depth_count").longValue());
+        Assert.assertEquals(0, statsMap.get("cache_flush_pending").longValue());
+        Assert.assertEquals(0, statsMap.get("cache_flush_fail").longValue());
+    }
+
+    @Test
+    public void testWriterWaitAllSealed() throws Exception {
+        final CountDownLatch flushLatch = new CountDownLatch(1);
+        msgStore = new MessageStore(null, buildTopicMetadata(), 0, buildBrokerConfig(2, true), 1024 * 1024) {
+
+            @Override
+            void flushMemStore(MsgMemStore sealedStore, StringBuilder strBuffer) throws Throwable {
+                flushLatch.await();
+                super.flushMemStore(sealedStore, strBuffer);
+            }
+        };
+        Map<String, Long> statsMap = activeStats();
+        // the first cache is sealed and its flush is blocked, the second one is filled
+        for (int i = 0; i < 2 * CACHE_MSG_CNT; i++) {
+            Assert.assertTrue(appendMsg());
+        }
+        Assert.assertEquals(1, msgStore.getSealedMemStoreCount());
+        new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                flushLatch.countDown();
+            }
+        }).start();
+        // no cache is writable, the writer waits until the blocked flush finishes
+        long startTime = System.currentTimeMillis();
+        Assert.assertTrue(appendMsg());
+        Assert.assertTrue(System.currentTimeMillis() - startTime >= 250);
+        msgStore.getMsgStoreStatsHolder().getValue(statsMap);
+        Assert.assertEquals(1, statsMap.get("cache_flush_pending").longValue());
+        Assert.assertEquals(1, statsMap.get("cache_wait_dlt_count").longValue());
+        Assert.assertEquals(2, statsMap.get("cache_swap").longValue());
+        waitSealedFlushed();
+        Assert.assertEquals(2 * CACHE_MSG_CNT * DataStoreUtils.STORE_INDEX_HEAD_LEN,
+                msgStore.getFileIndexWriteOffset());
+    }
+
+    @Test
+    public void testSkipPinnedCache() throws Exception {
+        msgStore = new MessageStore(null, buildTopicMetadata(), 0, buildBrokerConfig(3, true), 1024 * 1024);
+        MsgMemStore firstStore = msgStore.getWritingMemStore();
+        for (int i = 0; i < CACHE_MSG_CNT + 1; i++) {
+            Assert.assertTrue(appendMsg());
+        }
+        waitSealedFlushed();
+        Assert.assertEquals(1, msgStore.getIdleMemStoreCount());
+        // a slice reader still holds the flushed cache
+        firstStore.incReadRef();
+        MsgMemStore secondStore = msgStore.getWritingMemStore();
+        for (int i = 0; i < CACHE_MSG_CNT; i++) {
+            Assert.assertTrue(appendMsg());
+        }
+        MsgMemStore thirdStore = msgStore.getWritingMemStore();
+        Assert.assertNotSame(firstStore, thirdStore);
+        Assert.assertNotSame(secondStore, thirdStore);
+        waitSealedFlushed();
+        Assert.assertEquals(2, msgStore.getIdleMemStoreCount());
+        // the pinned cache is reused once released
+        firstStore.decReadRef();
+        for (int i = 0; i < CACHE_MSG_CNT; i++) {
+            Assert.assertTrue(appendMsg());
+        }
+        Assert.assertSame(firstStore, msgStore.getWritingMemStore());
+        Assert.assertEquals(3 * CACHE_MSG_CNT * DataStoreUtils.STORE_INDEX_HEAD_LEN,
+                firstStore.getIndexStartWritePos());
+    }
+
+    @Test
+    public void testFlushFailureRetry() throws Exception {
+        final AtomicBoolean failFlush = new AtomicBoolean(true);
+        msgStore = new MessageStore(null, buildTopicMetadata(), 0, buildBrokerConfig(2, true), 1024 * 1024) {
+
+            @Override
+            void flushMemStore(MsgMemStore sealedStore, StringBuilder strBuffer) throws Throwable {
+                if (failFlush.compareAndSet(true, false)) {
+                    throw new IOException("flush failure");
+                }
+                super.flushMemStore(sealedStore, strBuffer);
+            }
+        };
+        Map<String, Long> statsMap = activeStats();
+        for (int i = 0; i < CACHE_MSG_CNT + 1; i++) {
+            Assert.assertTrue(appendMsg());
+        }
+        long startTime = System.currentTimeMillis();
+        do {
+            statsMap.clear();
+            msgStore.getMsgStoreStatsHolder().getValue(statsMap);
+            Thread.sleep(10);
+        } while (statsMap.get("cache_flush_fail") == 0
+                && System.currentTimeMillis() - startTime < 5000);
+        Assert.assertEquals(1, statsMap.get("cache_flush_fail").longValue());
+        // the failed cache is kept sealed, not recycled
+        Assert.assertEquals(1, msgStore.getSealedMemStoreCount());
+        Assert.assertEquals(0, msgStore.getIdleMemStoreCount());
+        Assert.assertEquals(0, msgStore.getFileIndexWriteOffset());
+        // the timer retries the flush
+        msgStore.flushMemCacheData();
+        waitSealedFlushed();
+        Assert.assertEquals(1, msgStore.getIdleMemStoreCount());
+        Assert.assertEquals(CACHE_MSG_CNT * DataStoreUtils.STORE_INDEX_HEAD_LEN,
+                msgStore.getFileIndexWriteOffset());
+    }
+
+    @Test
+    public void testPartialFlushNotDuplicated() throws Exception {
+        msgStore = new MessageStore(null, buildTopicMetadata(), 0, buildBrokerConfig(2, true), 1024 * 1024);
+        // the data of the cache is appended, then the index append fails
+        FailingFileChannel failingChannel = injectFailingIndexChannel();
+        Map<String, Long> statsMap = activeStats();
+        for (int i = 0; i < CACHE_MSG_CNT + 1; i++) {
+            Assert.assertTrue(appendMsg());
+        }
+        long startTime = System.currentTimeMillis();
+        do {
+            statsMap.clear();
+            msgStore.getMsgStoreStatsHolder().getValue(statsMap);
+            Thread.sleep(10);
+        } while (statsMap.get("cache_flush_fail") == 0
+                && System.currentTimeMillis() - startTime < 5000);
+        Assert.assertEquals(1, statsMap.get("cache_flush_fail").longValue());
+        // the appended data is rolled back with the failed index
+        Assert.assertEquals(0, msgStore.getFileIndexWriteOffset());
+        Assert.assertEquals(0, msgStore.getFileDataWriteOffset());
+        failingChannel.setFailWrite(false);
+        msgStore.flushMemCacheData();
+        waitSealedFlushed();
+        // the retry appends the cache once
+        Assert.assertEquals(CACHE_MSG_CNT * DataStoreUtils.STORE_INDEX_HEAD_LEN,
+                msgStore.getFileIndexWriteOffset());
+        Assert.assertEquals(CACHE_MSG_CNT * (DataStoreUtils.STORE_DATA_HEADER_LEN + TEST_DATA.length),
+                msgStore.getFileDataWriteOffset());
+    }
+
+    @Test
+    public void testAppendBatch() throws Exception {
+        msgStore = new MessageStore(null, buildTopicMetadata(), 0, buildBrokerConfig(3, true), 1024 * 1024);
+        Assert.assertTrue(appendMsg());
+        Assert.assertTrue(appendMsg());
+        List<BatchAppendItem> batchItems = buildBatchItems(3);
+        Assert.assertTrue(msgStore.appendMsgBatch(batchItems, 0, 0));
+        assertBatchOffsets(batchItems, 2);
+        Assert.assertEquals(5 * DataStoreUtils.STORE_INDEX_HEAD_LEN, msgStore.getIndexMaxOffset());
+    }
+
+    @Test
+    public void testAppendBatchAcrossCaches() throws Exception {
+        msgStore = new MessageStore(null, buildTopicMetadata(), 0, buildBrokerConfig(3, true), 1024 * 1024);
+        Map<String, Long> statsMap = activeStats();
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(appendMsg());
+        }
+        // the batch is larger than one cache, it is spread over the writing and a free cache
+        List<BatchAppendItem> batchItems = buildBatchItems(CACHE_MSG_CNT + 2);
+        Assert.assertTrue(msgStore.appendMsgBatch(batchItems, 0, 0));
+        assertBatchOffsets(batchItems, 5);
+        Assert.assertEquals((CACHE_MSG_CNT + 7) * DataStoreUtils.STORE_INDEX_HEAD_LEN,
+                msgStore.getIndexMaxOffset());
+        msgStore.getMsgStoreStatsHolder().getValue(statsMap);
+        Assert.assertEquals(1, statsMap.get("cache_swap").longValue());
+        waitSealedFlushed();
+        Assert.assertEquals(CACHE_MSG_CNT * DataStoreUtils.STORE_INDEX_HEAD_LEN,
+                msgStore.getFileIndexWriteOffset());
+    }
+
+    @Test
+    public void testAppendBatchOverRing() throws Exception {
+        msgStore = new MessageStore(null, buildTopicMetadata(), 0, buildBrokerConfig(2, true), 1024 * 1024);
+        Map<String, Long> statsMap = activeStats();
+        // the batch needs two more caches, the ring has only one
+        Assert.assertFalse(msgStore.appendMsgBatch(buildBatchItems(2 * CACHE_MSG_CNT + 5), 0, 0));
+        Assert.assertEquals(0, msgStore.getIndexMaxOffset());
+        msgStore.getMsgStoreStatsHolder().getValue(statsMap);
+        Assert.assertEquals(1, statsMap.get("msg_append_fail").longValue());
+        Assert.assertEquals(0, statsMap.get("cache_swap").longValue());
+        List<BatchAppendItem> batchItems = buildBatchItems(CACHE_MSG_CNT + 5);
+        Assert.assertTrue(msgStore.appendMsgBatch(batchItems, 0, 0));
+        assertBatchOffsets(batchItems, 0);
+    }
+
+    @Test
+    public void testAppendBatchWaitFreeCache() throws Exception {
+        final CountDownLatch flushLatch = new CountDownLatch(1);
+        msgStore = new MessageStore(null, buildTopicMetadata(), 0, buildBrokerConfig(2, true), 1024 * 1024) {
+
+            @Override
+            void flushMemStore(MsgMemStore sealedStore, StringBuilder strBuffer) throws Throwable {
+                flushLatch.await();
+                super.flushMemStore(sealedStore, strBuffer);
+            }
+        };
+        for (int i = 0; i < CACHE_MSG_CNT + 1; i++) {
+            Assert.assertTrue(appendMsg());
+        }
+        // no free cache while the flush is blocked, nothing of the batch is appended
+        Assert.assertFalse(msgStore.appendMsgBatch(buildBatchItems(CACHE_MSG_CNT + 2), 0, 0));
+        Assert.assertEquals((CACHE_MSG_CNT + 1) * DataStoreUtils.STORE_INDEX_HEAD_LEN,
+                msgStore.getIndexMaxOffset());
+        new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                flushLatch.countDown();
+            }
+        }).start();
+        List<BatchAppendItem> batchItems = buildBatchItems(CACHE_MSG_CNT + 2);
+        Assert.assertTrue(msgStore.appendMsgBatch(batchItems, 0, 0));
+        assertBatchOffsets(batchItems, CACHE_MSG_CNT + 1);
+    }
+
+    @Test
+    public void testAppendBatchToFile() throws Exception {
+        msgStore = new MessageStore(null, buildTopicMetadata(), 0, buildBrokerConfig(2, false), 1024 * 1024);
+        Assert.assertTrue(appendMsg());
+        List<BatchAppendItem> batchItems = buildBatchItems(3);
+        Assert.assertTrue(msgStore.appendMsgBatch(batchItems, 0, 0));
+        assertBatchOffsets(batchItems, 1);
+        Assert.assertEquals(4 * DataStoreUtils.STORE_INDEX_HEAD_LEN, msgStore.getFileIndexWriteOffset());
+        Assert.assertEquals(4 * (DataStoreUtils.STORE_DATA_HEADER_LEN + TEST_DATA.length),
+                msgStore.getDataMaxOffset());
+    }
+
+    @Test
+    public void testRangeReadContiguous() throws Exception {
+        // all the records are served, each read only covers the index items it visits
+        List<Integer> expectIndexes = appendRangeMsgs(false);
+        assertRangeRead(false, Collections.<Integer>emptySet(), expectIndexes);
+    }
+
+    @Test
+    public void testRangeReadInterleavedPartitions() throws Exception {
+        // partition 1 records are interleaved, only the partition 0 ones are read
+        List<Integer> expectIndexes = appendRangeMsgs(true);
+        for (int i = expectIndexes.size() - 1; i >= 0; i--) {
+            if (expectIndexes.get(i) % 3 == 2) {
+                expectIndexes.remove(i);
+            }
+        }
+        assertRangeRead(false, Collections.<Integer>emptySet(), expectIndexes);
+    }
+
+    @Test
+    public void testRangeReadFiltered() throws Exception {
+        // the filtered out records are not read, nor are the other partitions' records
+        List<Integer> expectIndexes = appendRangeMsgs(true);
+        for (int i = expectIndexes.size() - 1; i >= 0; i--) {
+            if (expectIndexes.get(i) % 3 == 2 || expectIndexes.get(i) % 4 == 3) {
+                expectIndexes.remove(i);
+            }
+        }
+        assertRangeRead(true, Collections.singleton(33), expectIndexes);
+    }
+
+    private List<Integer> appendRangeMsgs(boolean isInterleaved) throws IOException {
+        msgStore = new MessageStore(null, buildTopicMetadata(), 0, buildBrokerConfig(2, false), 1024 * 1024);
+        List<Integer> msgIndexes = new ArrayList<>();
+        for (int i = 0; i < RANGE_MSG_CNT; i++) {
+            Assert.assertTrue(msgStore.appendMsg(new AppendResult(), TEST_DATA.length, 33,
+                    buildIndexedData(i), (i % 4 == 3) ? 44 : 33, 0, (isInterleaved && i % 3 == 2) ? 1 : 0, 0));
+            msgIndexes.add(i);
+        }
+        return msgIndexes;
+    }
+
+    private void assertRangeRead(boolean isFilterConsume, Set<Integer> filterKeySet,
+            List<Integer> expectIndexes) throws Exception {
+        // commit the data, so the range reads may cover several records
+        getLastSegment("dataSegments").flush(true);
+        FailingFileChannel dataChannel = injectFailingChannel("dataSegments");
+        dataChannel.setFailWrite(false);
+        MsgFileStore msgFileStore = getMsgFileStore();
+        List<byte[]> payloads = new ArrayList<>();
+        long totalMsgSize = 0;
+        long indexOffset = 0;
+        // read the index forward as the consumer does, until all the index items are read
+        while (indexOffset < RANGE_MSG_CNT * DataStoreUtils.STORE_INDEX_HEAD_LEN) {
+            ByteBuffer indexBuffer = ByteBuffer.allocate(
+                    (int) (RANGE_MSG_CNT * DataStoreUtils.STORE_INDEX_HEAD_LEN - indexOffset));
+            Segment indexRecordView = msgFileStore.indexSlice(indexOffset, indexBuffer.capacity());
+            indexRecordView.read(indexBuffer, indexOffset);
+            indexBuffer.flip();
+            indexRecordView.relViewRef();
+            GetMessageResult result = msgFileStore.getMessages(0, 0, indexOffset, indexBuffer,
+                    isFilterConsume, filterKeySet, 1024 * 1024, 0, true);
+            Assert.assertTrue(result.isSuccess);
+            Assert.assertTrue(result.lastReadOffset > 0);
+            for (ClientBroker.TransferedMessage message : result.transferedMessageList) {
+                payloads.add(message.getPayLoadData().toByteArray());
+            }
+            totalMsgSize += result.totalMsgSize;
+            indexOffset += result.lastReadOffset;
+        }
+        Assert.assertEquals(expectIndexes.size(), payloads.size());
+        for (int i = 0; i < expectIndexes.size(); i++) {
+            Assert.assertArrayEquals(buildIndexedData(expectIndexes.get(i)), payloads.get(i));
+        }
+        Assert.assertEquals(expectIndexes.size() * (DataStoreUtils.STORE_DATA_HEADER_LEN + TEST_DATA.length),
+                totalMsgSize);
+        // only the served records are read from the data file
+        Assert.assertEquals(totalMsgSize, dataChannel.getReadBytes());
+    }
+
+    private byte[] buildIndexedData(int msgIndex) {
+        byte[] data = TEST_DATA.clone();
+        data[0] = (byte) ('A' + msgIndex);
+        return data;
+    }
+
+    private FailingFileChannel injectFailingIndexChannel() throws Exception {
+        return injectFailingChannel("indexSegments");
+    }
+
+    private FailingFileChannel injectFailingChannel(String segmentsName) throws Exception {
+        Segment segment = getLastSegment(segmentsName);
+        Field channelField = segment.getClass().getDeclaredField("channel");
+        channelField.setAccessible(true);
+        FailingFileChannel failingChannel =
+                new FailingFileChannel((FileChannel) channelField.get(segment));
+        channelField.set(segment, failingChannel);
+        return failingChannel;
+    }
+
+    private Segment getLastSegment(String segmentsName) throws Exception {
+        Field segmentsField = MsgFileStore.class.getDeclaredField(segmentsName);
+        segmentsField.setAccessible(true);
+        return ((SegmentList) segmentsField.get(getMsgFileStore())).last();
+    }
+
+    private MsgFileStore getMsgFileStore() throws Exception {
+        Field fileStoreField = MessageStore.class.getDeclaredField("msgFileStore");
+        fileStoreField.setAccessible(true);
+        return (MsgFileStore) fileStoreField.get(msgStore);
+    }
+
+    private boolean appendMsg() throws IOException {
+        return msgStore.appendMsg(new AppendResult(), TEST_DATA.length,
+                33, TEST_DATA, 0, 0, 0, 0);
+    }
+
+    private List<BatchAppendItem> buildBatchItems(int msgCount) {
+        List<BatchAppendItem> batchItems = new ArrayList<>(msgCount);
+        for (int i = 0; i < msgCount; i++) {
+            batchItems.add(new BatchAppendItem(TEST_DATA.length, 33, TEST_DATA, 0, 0));
+        }
+        return batchItems;
+    }
+
+    private void assertBatchOffsets(List<BatchAppendItem> batchItems, int startMsgIndex) {
+        long dataEntryLength = DataStoreUtils.STORE_DATA_HEADER_LEN + TEST_DATA.length;
+        for (int i = 0; i < batchItems.size(); i++) {
+            AppendResult appendResult = batchItems.get(i).getAppendResult();
+            Assert.assertEquals((startMsgIndex + i) * DataStoreUtils.STORE_INDEX_HEAD_LEN,
+                    appendResult.getAppendIndexOffset());
+            Assert.assertEquals((startMsgIndex + i) * dataEntryLength,
+                    appendResult.getAppendDataOffset());
+        }
+    }
+
+    private Map<String, Long> activeStats() {
+        Map<String, Long> statsMap = new LinkedHashMap<>();
+        msgStore.getMsgStoreStatsHolder().getValue(statsMap);
+        statsMap.clear();
+        return statsMap;
+    }
+
+    private void waitSealedFlushed() throws InterruptedException {
+        long startTime = System.currentTimeMillis();
+        while (msgStore.getSealedMemStoreCount() > 0
+                && System.currentTimeMillis() - startTime < 5000) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        Assert.assertEquals(0, msgStore.getSealedMemStoreCount());
+    }
+
+    private TopicMetadata buildTopicMetadata() {
+        return new TopicMetadata(new BrokerDefMetadata(), "test_topic", 1, 1) {
+
+            @Override
+            public int getMemCacheMsgCnt() {
+                return CACHE_MSG_CNT;
+            }
+
+            @Override
+            public int getMemCacheFlushIntvl() {
+                return 3600000;
+            }
+        };
+    }
+
+    private BrokerConfig buildBrokerConfig(final int ringSize, final boolean enableMemStore) {
+        return new BrokerConfig() {
+
+            @Override
+            public String getPrimaryPath() {
+                return storeDir.getAbsolutePath();
+            }
+
+            @Override
+            public boolean isEnableMemStore() {
+                return enableMemStore;
+            }
+
+            @Override
+            public int getMemStoreRingSize() {
+                return ringSize;
+            }
+
+            @Override
+            public boolean isEnableGroupCommit() {
+                return false;
+            }
+
+            @Override
+            public int getMaxSegmentSize() {
+                return 4 * 1024 * 1024;
+            }
+        };
+    }
+
+    private void deleteDir(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteDir(child);
+            }
+        }
+        file.delete();
+    }
+}
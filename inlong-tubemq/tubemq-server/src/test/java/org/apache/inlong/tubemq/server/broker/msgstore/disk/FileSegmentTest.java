@@ -20,6 +20,8 @@ package org.apache.inlong.tubemq.server.broker.msgstore.disk;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import org.apache.inlong.tubemq.server.broker.utils.DataStoreUtils;
+import org.junit.Assert;
 
 /**
  * FileSegment test.
@@ -83,4 +85,70 @@ public class FileSegmentTest {
             }
         }
     }
-}
\ No newline at end of file
+
+    @org.junit.Test
+    public void mappedIndexRead() throws IOException {
+        File file = File.createTempFile("testindex", null);
+        int recordCnt = 2000;
+        long baseTime = 1000000L;
+        try {
+            fileSegment = new FileSegment(0, file, true, SegmentType.INDEX);
+            ByteBuffer indexBuffer =
+                    ByteBuffer.allocate(recordCnt * DataStoreUtils.STORE_INDEX_HEAD_LEN);
+            for (int i = 0; i < recordCnt; i++) {
+                indexBuffer.putInt(1);
+                indexBuffer.putLong(i * 100L);
+                indexBuffer.putInt(100);
+                indexBuffer.putInt(0);
+                indexBuffer.putLong(baseTime + i);
+            }
+            indexBuffer.flip();
+            fileSegment.append(indexBuffer, baseTime, baseTime + recordCnt - 1);
+            fileSegment.flush(true);
+            fileSegment.setMutable(false);
+            fileSegment.enableMappedRead();
+            // read the record time and records from the mapping
+            Assert.assertEquals(baseTime + 1500,
+                    fileSegment.getRecordTime(1500L * DataStoreUtils.STORE_INDEX_HEAD_LEN));
+            ByteBuffer readBuffer = ByteBuffer.allocate(DataStoreUtils.STORE_INDEX_HEAD_LEN);
+            fileSegment.read(readBuffer, 10L * DataStoreUtils.STORE_INDEX_HEAD_LEN);
+            readBuffer.flip();
+            Assert.assertEquals(DataStoreUtils.STORE_INDEX_HEAD_LEN, readBuffer.remaining());
+            Assert.assertEquals(1000L, readBuffer.getLong(DataStoreUtils.INDEX_POS_DATAOFFSET));
+            // the sparse time index narrows the records by timestamp
+            SparseTimeIndex timeIndex = fileSegment.getTimeIndex();
+            Assert.assertNotNull(timeIndex);
+            int interval = DataStoreUtils.STORE_TIME_INDEX_RECORD_INTERVAL;
+            Assert.assertEquals(interval, timeIndex.getLowerRecord(baseTime + interval + 10));
+            Assert.assertEquals(2L * interval, timeIndex.getUpperRecord(baseTime + interval + 10));
+            Assert.assertEquals(-1L, timeIndex.getLowerRecord(baseTime));
+        } finally {
+            fileSegment.close();
+            file.deleteOnExit();
+        }
+    }
+
+    @org.junit.Test
+    public void truncateFailedAppend() throws IOException {
+        File file = File.createTempFile("testdata", null);
+        try {
+            fileSegment = new FileSegment(100, file, true, SegmentType.DATA);
+            long appendTime = System.currentTimeMillis();
+            fileSegment.append(ByteBuffer.wrap("abc".getBytes()), appendTime, appendTime);
+            fileSegment.append(ByteBuffer.wrap("defg".getBytes()), appendTime, appendTime);
+            Assert.assertEquals(107, fileSegment.getLast());
+            // roll back the last append, the next append starts from the position
+            fileSegment.truncate(103);
+            Assert.assertEquals(103, fileSegment.getLast());
+            Assert.assertEquals(3, file.length());
+            Assert.assertEquals(103,
+                    fileSegment.append(ByteBuffer.wrap("xy".getBytes()), appendTime, appendTime));
+            ByteBuffer readBuffer = ByteBuffer.allocate(5);
+            fileSegment.read(readBuffer, 100);
+            Assert.assertEquals("abcxy", new String(readBuffer.array()));
+        } finally {
+            fileSegment.close();
+            file.deleteOnExit();
+        }
+    }
+}
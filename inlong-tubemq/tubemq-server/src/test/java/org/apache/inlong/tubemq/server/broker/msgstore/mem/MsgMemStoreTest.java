@@ -18,9 +18,11 @@
 package org.apache.inlong.tubemq.server.broker.msgstore.mem;
 
 import java.nio.ByteBuffer;
+import java.util.Collections;
 import org.apache.inlong.tubemq.server.broker.stats.MsgStoreStatsHolder;
 import org.apache.inlong.tubemq.server.broker.utils.DataStoreUtils;
 import org.apache.inlong.tubemq.server.common.utils.AppendResult;
+import org.junit.Assert;
 import org.junit.Test;
 
 /**
@@ -103,4 +105,106 @@ public class MsgMemStoreTest {
         // get messages
         GetCacheMsgResult getCacheMsgResult = msgMemStore.getMessages(0, 2, 1024, 1000, 0, false, false, null, 0);
     }
+
+    @Test
+    public void appendMsgDirect() {
+        byte[] testData = "abcabdcdsdsdasdfasdfasdfsadfasdfasdfasdfasdfaaaaaaaaaaa".getBytes();
+        AppendResult appendResult = new AppendResult();
+        int maxCacheSize = 2 * 1024 * 1024;
+        int maxMsgCount = 10000;
+        MsgMemStore msgMemStore = new MsgMemStore(maxCacheSize, maxMsgCount, 100, 280);
+        MsgStoreStatsHolder memStatsHolder = new MsgStoreStatsHolder();
+        long recvTime = System.currentTimeMillis();
+        Assert.assertTrue(msgMemStore.appendMsg(memStatsHolder, 1, 32, recvTime,
+                33, 255555, 222L, 1, testData, testData.length, appendResult));
+        Assert.assertEquals(280, appendResult.getAppendIndexOffset());
+        Assert.assertEquals(100, appendResult.getAppendDataOffset());
+        Assert.assertEquals(1, msgMemStore.getCurMsgCount());
+        Assert.assertEquals(DataStoreUtils.STORE_DATA_HEADER_LEN + testData.length,
+                msgMemStore.getCurDataCacheSize());
+        Assert.assertEquals(DataStoreUtils.STORE_INDEX_HEAD_LEN, msgMemStore.getIndexCacheSize());
+        // read back and check the stored header
+        GetCacheMsgResult getCacheMsgResult =
+                msgMemStore.getMessages(100, 280, 1024, 1000, 1, false, false, null, 0);
+        Assert.assertTrue(getCacheMsgResult.isSuccess);
+        Assert.assertEquals(1, getCacheMsgResult.cacheMsgList.size());
+        ByteBuffer dataBuffer = getCacheMsgResult.cacheMsgList.get(0);
+        Assert.assertEquals(DataStoreUtils.STORE_DATA_PREFX_LEN + testData.length,
+                dataBuffer.getInt(DataStoreUtils.STORE_HEADER_POS_LENGTH));
+        Assert.assertEquals(33, dataBuffer.getInt(DataStoreUtils.STORE_HEADER_POS_CHECKSUM));
+        Assert.assertEquals(1, dataBuffer.getInt(DataStoreUtils.STORE_HEADER_POS_QUEUEID));
+        Assert.assertEquals(280, dataBuffer.getLong(DataStoreUtils.STORE_HEADER_POS_QUEUE_LOGICOFF));
+        Assert.assertEquals(recvTime, dataBuffer.getLong(DataStoreUtils.STORE_HEADER_POS_RECEIVEDTIME));
+        Assert.assertEquals(32, dataBuffer.getInt(DataStoreUtils.STORE_HEADER_POS_KEYCODE));
+        Assert.assertEquals(222L, dataBuffer.getLong(DataStoreUtils.STORE_HEADER_POS_MSGID));
+        Assert.assertEquals(1, dataBuffer.getInt(DataStoreUtils.STORE_HEADER_POS_MSGFLAG));
+        msgMemStore.close();
+    }
+
+    @Test
+    public void getMessagesBySlice() {
+        byte[] testData = "abcabdcdsdsdasdfasdfasdfsadfasdfasdfasdfasdfaaaaaaaaaaa".getBytes();
+        AppendResult appendResult = new AppendResult();
+        MsgMemStore msgMemStore = new MsgMemStore(2 * 1024 * 1024, 10000, 100, 280);
+        MsgStoreStatsHolder memStatsHolder = new MsgStoreStatsHolder();
+        long recvTime = System.currentTimeMillis();
+        Assert.assertTrue(msgMemStore.appendMsg(memStatsHolder, 1, 32, recvTime,
+                33, 255555, 222L, 1, testData, testData.length, appendResult));
+        Assert.assertTrue(msgMemStore.appendMsg(memStatsHolder, 1, 32, recvTime,
+                34, 255555, 223L, 1, testData, testData.length, appendResult));
+        msgMemStore.incReadRef();
+        Assert.assertTrue(msgMemStore.isReadReferenced());
+        GetCacheMsgResult getCacheMsgResult =
+                msgMemStore.getMessages(100, 280, 1024, 1000, 1, false, false, null, 0, true);
+        Assert.assertTrue(getCacheMsgResult.isSuccess);
+        Assert.assertEquals(2, getCacheMsgResult.cacheMsgList.size());
+        // the slices reference the cache segment directly
+        ByteBuffer dataBuffer = getCacheMsgResult.cacheMsgList.get(1);
+        Assert.assertTrue(dataBuffer.isDirect());
+        Assert.assertTrue(dataBuffer.isReadOnly());
+        Assert.assertEquals(DataStoreUtils.STORE_DATA_HEADER_LEN + testData.length, dataBuffer.capacity());
+        Assert.assertEquals(34, dataBuffer.getInt(DataStoreUtils.STORE_HEADER_POS_CHECKSUM));
+        Assert.assertEquals(223L, dataBuffer.getLong(DataStoreUtils.STORE_HEADER_POS_MSGID));
+        Assert.assertEquals(testData[0], dataBuffer.get(DataStoreUtils.STORE_DATA_HEADER_LEN));
+        msgMemStore.decReadRef();
+        Assert.assertFalse(msgMemStore.isReadReferenced());
+        msgMemStore.close();
+    }
+
+    @Test
+    public void getMessagesByPartition() {
+        byte[] testData = "abcabdcdsdsdasdfasdfasdfsadfasdfasdfasdfasdfaaaaaaaaaaa".getBytes();
+        AppendResult appendResult = new AppendResult();
+        MsgMemStore msgMemStore = new MsgMemStore(2 * 1024 * 1024, 10000, 0, 0);
+        MsgStoreStatsHolder memStatsHolder = new MsgStoreStatsHolder();
+        long recvTime = System.currentTimeMillis();
+        // 100 messages of 10 partitions, the key of each message is its sequence modulo 7
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(msgMemStore.appendMsg(memStatsHolder, i % 10, i % 7, recvTime,
+                    i, 0, i, 0, testData, testData.length, appendResult));
+        }
+        // the read stops before the fifth message of partition 3
+        GetCacheMsgResult getCacheMsgResult =
+                msgMemStore.getMessages(0, 0, 1024 * 1024, 4, 3, false, false, null, 0);
+        Assert.assertTrue(getCacheMsgResult.isSuccess);
+        Assert.assertEquals(4, getCacheMsgResult.cacheMsgList.size());
+        Assert.assertEquals(43 * DataStoreUtils.STORE_INDEX_HEAD_LEN, getCacheMsgResult.dltOffset);
+        Assert.assertEquals(33, getCacheMsgResult.cacheMsgList.get(3)
+                .getInt(DataStoreUtils.STORE_HEADER_POS_CHECKSUM));
+        // the remaining messages, the entries of the other partitions are skipped
+        getCacheMsgResult = msgMemStore.getMessages(getCacheMsgResult.lastRdDataOff,
+                43 * DataStoreUtils.STORE_INDEX_HEAD_LEN, 1024 * 1024, 1000, 3, false, false, null, 0);
+        Assert.assertTrue(getCacheMsgResult.isSuccess);
+        Assert.assertEquals(6, getCacheMsgResult.cacheMsgList.size());
+        Assert.assertEquals(57 * DataStoreUtils.STORE_INDEX_HEAD_LEN, getCacheMsgResult.dltOffset);
+        // filter consume by key 0, only message 63 belongs to partition 3
+        getCacheMsgResult = msgMemStore.getMessages(0, 0, 1024 * 1024, 1000, 3,
+                false, true, Collections.singleton(0), 0);
+        Assert.assertTrue(getCacheMsgResult.isSuccess);
+        Assert.assertEquals(1, getCacheMsgResult.cacheMsgList.size());
+        Assert.assertEquals(63, getCacheMsgResult.cacheMsgList.get(0)
+                .getInt(DataStoreUtils.STORE_HEADER_POS_CHECKSUM));
+        Assert.assertEquals(100 * DataStoreUtils.STORE_INDEX_HEAD_LEN, getCacheMsgResult.dltOffset);
+        msgMemStore.close();
+    }
 }
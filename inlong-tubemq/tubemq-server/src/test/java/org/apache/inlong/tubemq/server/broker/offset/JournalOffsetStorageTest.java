@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.server.broker.offset;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.apache.inlong.tubemq.server.broker.offset.offsetstorage.JournalOffsetStorage;
+import org.apache.inlong.tubemq.server.broker.offset.offsetstorage.OffsetStorageInfo;
+import org.apache.inlong.tubemq.server.broker.utils.DataStoreUtils;
+import org.apache.inlong.tubemq.server.broker.utils.FailingFileChannel;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JournalOffsetStorage test.
+ */
+public class JournalOffsetStorageTest {
+
+    private static final long INDEX_LEN = DataStoreUtils.STORE_INDEX_HEAD_LEN;
+    private File journalDir;
+
+    @Before
+    public void setUp() throws Exception {
+        journalDir = Files.createTempDirectory("offsetjournal").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = journalDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        journalDir.delete();
+    }
+
+    @Test
+    public void testCommitAndRecover() throws Exception {
+        JournalOffsetStorage storage =
+                new JournalOffsetStorage(journalDir.getAbsolutePath(), 1, 1024 * 1024L, null);
+        storage.commitOffset("group1", Collections.singletonList(
+                new OffsetStorageInfo("topic1", 1, 0, 10 * INDEX_LEN, 2)), false);
+        storage.commitOffset("group1", Collections.singletonList(
+                new OffsetStorageInfo("topic1", 1, 0, 20 * INDEX_LEN, 4)), false);
+        storage.commitOffset("group2", Collections.singletonList(
+                new OffsetStorageInfo("topic2", 1, 1, 30 * INDEX_LEN, 6)), false);
+        storage.close();
+        // reload from the journal
+        storage = new JournalOffsetStorage(journalDir.getAbsolutePath(), 1, 1024 * 1024L, null);
+        OffsetStorageInfo info = storage.loadOffset("group1", "topic1", 0);
+        Assert.assertNotNull(info);
+        Assert.assertEquals(20 * INDEX_LEN, info.getOffset());
+        Assert.assertEquals(4, info.getMessageId());
+        Assert.assertFalse(info.isFirstCreate());
+        Assert.assertNull(storage.loadOffset("group1", "topic1", 1));
+        Map<String, Set<String>> groupTopicMap = storage.queryZkAllGroupTopicInfos();
+        Assert.assertEquals(2, groupTopicMap.size());
+        Assert.assertTrue(groupTopicMap.get("group2").contains("topic2"));
+        // delete group2 offsets
+        Map<String, Map<String, Set<Integer>>> deleteMap = new HashMap<>();
+        Map<String, Set<Integer>> topicPartMap = new HashMap<>();
+        topicPartMap.put("topic2", new HashSet<>(Collections.singletonList(1)));
+        deleteMap.put("group2", topicPartMap);
+        storage.deleteGroupOffsetInfo(deleteMap);
+        storage.close();
+        storage = new JournalOffsetStorage(journalDir.getAbsolutePath(), 1, 1024 * 1024L, null);
+        Assert.assertNull(storage.loadOffset("group2", "topic2", 1));
+        Assert.assertEquals(1, storage.queryZkAllGroupTopicInfos().size());
+        storage.close();
+    }
+
+    @Test
+    public void testUnmodifiedOffsetNotAppended() throws Exception {
+        JournalOffsetStorage storage =
+                new JournalOffsetStorage(journalDir.getAbsolutePath(), 1, 1024 * 1024L, null);
+        OffsetStorageInfo info = new OffsetStorageInfo("topic1", 1, 0, 10 * INDEX_LEN, 2);
+        storage.commitOffset("group1", Collections.singletonList(info), false);
+        Assert.assertFalse(info.isModified());
+        long journalLen = getJournalLength();
+        storage.commitOffset("group1", Collections.singletonList(info), false);
+        Assert.assertEquals(journalLen, getJournalLength());
+        storage.close();
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        JournalOffsetStorage storage =
+                new JournalOffsetStorage(journalDir.getAbsolutePath(), 1, 4096L, null);
+        for (int i = 1; i <= 500; i++) {
+            storage.commitOffset("group1", Collections.singletonList(
+                    new OffsetStorageInfo("topic1", 1, i % 3, i * INDEX_LEN, i)), false);
+        }
+        Assert.assertTrue(storage.getGeneration() > 0);
+        Assert.assertTrue(new File(journalDir, "offsets.snapshot").exists());
+        storage.close();
+        storage = new JournalOffsetStorage(journalDir.getAbsolutePath(), 1, 4096L, null);
+        Assert.assertEquals(500 * INDEX_LEN, storage.loadOffset("group1", "topic1", 2).getOffset());
+        Assert.assertEquals(499 * INDEX_LEN, storage.loadOffset("group1", "topic1", 1).getOffset());
+        Assert.assertEquals(498 * INDEX_LEN, storage.loadOffset("group1", "topic1", 0).getOffset());
+        storage.close();
+    }
+
+    @Test
+    public void testTornJournalTail() throws Exception {
+        JournalOffsetStorage storage =
+                new JournalOffsetStorage(journalDir.getAbsolutePath(), 1, 1024 * 1024L, null);
+        storage.commitOffset("group1", Collections.singletonList(
+                new OffsetStorageInfo("topic1", 1, 0, 10 * INDEX_LEN, 2)), false);
+        long validLen = getJournalLength();
+        storage.commitOffset("group1", Collections.singletonList(
+                new OffsetStorageInfo("topic1", 1, 0, 20 * INDEX_LEN, 4)), false);
+        storage.close();
+        // cut the last record as a crash in the middle of writing
+        try (RandomAccessFile raf = new RandomAccessFile(getJournalFile(), "rw")) {
+            raf.setLength(raf.length() - 5);
+        }
+        storage = new JournalOffsetStorage(journalDir.getAbsolutePath(), 1, 1024 * 1024L, null);
+        Assert.assertEquals(10 * INDEX_LEN, storage.loadOffset("group1", "topic1", 0).getOffset());
+        Assert.assertEquals(validLen, getJournalLength());
+        storage.close();
+    }
+
+    @Test
+    public void testFailedAppendTruncated() throws Exception {
+        JournalOffsetStorage storage =
+                new JournalOffsetStorage(journalDir.getAbsolutePath(), 1, 1024 * 1024L, null);
+        storage.commitOffset("group1", Collections.singletonList(
+                new OffsetStorageInfo("topic1", 1, 0, 10 * INDEX_LEN, 2)), false);
+        long validLen = getJournalLength();
+        FailingFileChannel failingChannel = injectFailingChannel(storage);
+        OffsetStorageInfo info = new OffsetStorageInfo("topic1", 1, 0, 20 * INDEX_LEN, 4);
+        storage.commitOffset("group1", Collections.singletonList(info), false);
+        // the torn record is truncated, the offset is committed in the next round
+        Assert.assertTrue(info.isModified());
+        Assert.assertEquals(validLen, getJournalLength());
+        Assert.assertEquals(10 * INDEX_LEN, storage.loadOffset("group1", "topic1", 0).getOffset());
+        failingChannel.setFailWrite(false);
+        storage.commitOffset("group1", Collections.singletonList(
+                new OffsetStorageInfo("topic1", 1, 1, 30 * INDEX_LEN, 6)), false);
+        storage.commitOffset("group1", Collections.singletonList(info), false);
+        Assert.assertFalse(info.isModified());
+        storage.close();
+        // the records after the failed append are all recovered
+        storage = new JournalOffsetStorage(journalDir.getAbsolutePath(), 1, 1024 * 1024L, null);
+        Assert.assertEquals(20 * INDEX_LEN, storage.loadOffset("group1", "topic1", 0).getOffset());
+        Assert.assertEquals(30 * INDEX_LEN, storage.loadOffset("group1", "topic1", 1).getOffset());
+        storage.close();
+    }
+
+    @Test
+    public void testFailedDeleteNotApplied() throws Exception {
+        JournalOffsetStorage storage =
+                new JournalOffsetStorage(journalDir.getAbsolutePath(), 1, 1024 * 1024L, null);
+        storage.commitOffset("group1", Collections.singletonList(
+                new OffsetStorageInfo("topic1", 1, 0, 10 * INDEX_LEN, 2)), false);
+        long validLen = getJournalLength();
+        Map<String, Map<String, Set<Integer>>> deleteMap = new HashMap<>();
+        Map<String, Set<Integer>> topicPartMap = new HashMap<>();
+        topicPartMap.put("topic1", new HashSet<>(Collections.singletonList(0)));
+        deleteMap.put("group1", topicPartMap);
+        FailingFileChannel failingChannel = injectFailingChannel(storage);
+        storage.deleteGroupOffsetInfo(deleteMap);
+        // the memory keeps the offsets as the journal does
+        Assert.assertEquals(validLen, getJournalLength());
+        Assert.assertNotNull(storage.loadOffset("group1", "topic1", 0));
+        failingChannel.setFailWrite(false);
+        storage.close();
+        storage = new JournalOffsetStorage(journalDir.getAbsolutePath(), 1, 1024 * 1024L, null);
+        Assert.assertEquals(10 * INDEX_LEN, storage.loadOffset("group1", "topic1", 0).getOffset());
+        storage.deleteGroupOffsetInfo(deleteMap);
+        Assert.assertNull(storage.loadOffset("group1", "topic1", 0));
+        storage.close();
+        storage = new JournalOffsetStorage(journalDir.getAbsolutePath(), 1, 1024 * 1024L, null);
+        Assert.assertNull(storage.loadOffset("group1", "topic1", 0));
+        storage.close();
+    }
+
+    private FailingFileChannel injectFailingChannel(JournalOffsetStorage storage) throws Exception {
+        Field field = JournalOffsetStorage.class.getDeclaredField("journalChannel");
+        field.setAccessible(true);
+        FailingFileChannel failingChannel = new FailingFileChannel((FileChannel) field.get(storage));
+        field.set(storage, failingChannel);
+        return failingChannel;
+    }
+
+    private File getJournalFile() {
+        File[] files = journalDir.listFiles();
+        Assert.assertNotNull(files);
+        for (File file : files) {
+            if (file.getName().startsWith("offsets.journal.")) {
+                return file;
+            }
+        }
+        Assert.fail("journal file not found");
+        return null;
+    }
+
+    private long getJournalLength() {
+        return getJournalFile().length();
+    }
+}
@@ -55,6 +55,10 @@ public class BrokerSrvStatsHolderTest {
         // add IO exception, add 2
         BrokerSrvStatsHolder.incDiskIOExcCnt();
         BrokerSrvStatsHolder.incDiskIOExcCnt();
+        // add group commit fsync dlt time, add 2, and a durable ack timeout
+        BrokerSrvStatsHolder.updFileFsyncDlt(3);
+        BrokerSrvStatsHolder.updFileFsyncDlt(20);
+        BrokerSrvStatsHolder.incDurableAckTimeoutCnt();
         // check result
         Map<String, Long> retMap = new LinkedHashMap<>();
         BrokerSrvStatsHolder.getValue(retMap);
@@ -75,6 +79,10 @@ public class BrokerSrvStatsHolderTest {
         Assert.assertEquals(10, retMap.get("file_sync_dlt_min").longValue());
         Assert.assertEquals(1, retMap.get("file_sync_dlt_cell_8t16").longValue());
         Assert.assertEquals(1, retMap.get("file_sync_dlt_cell_64t128").longValue());
+        Assert.assertEquals(2, retMap.get("file_fsync_dlt_count").longValue());
+        Assert.assertEquals(20, retMap.get("file_fsync_dlt_max").longValue());
+        Assert.assertEquals(3, retMap.get("file_fsync_dlt_min").longValue());
+        Assert.assertEquals(1, retMap.get("msg_durable_ack_timeout").longValue());
         final long sinceTime1 = retMap.get("reset_time");
         // verify snapshot
         BrokerSrvStatsHolder.snapShort(retMap);
@@ -38,6 +38,7 @@ public class MsgStoreStatsHolderTest {
         msgStoreStatsHolder.addCacheFullType(false, false, true);
         msgStoreStatsHolder.addCacheTimeoutFlush();
         msgStoreStatsHolder.addMsgWriteFailure();
+        msgStoreStatsHolder.addCacheFlushFailure();
         Map<String, Long> retMap = new LinkedHashMap<>();
         msgStoreStatsHolder.getValue(retMap);
         Assert.assertNotNull(retMap.get("reset_time"));
@@ -51,6 +52,7 @@ public class MsgStoreStatsHolderTest {
         Assert.assertEquals(0, retMap.get("cache_time_full").longValue());
         Assert.assertEquals(0, retMap.get("cache_flush_pending").longValue());
         Assert.assertEquals(0, retMap.get("cache_realloc").longValue());
+        Assert.assertEquals(0, retMap.get("cache_flush_fail").longValue());
         Assert.assertNotNull(retMap.get("end_time"));
         retMap.clear();
         // get content by StringBuilder
@@ -77,6 +79,7 @@ public class MsgStoreStatsHolderTest {
         msgStoreStatsHolder.addCachePending();
         msgStoreStatsHolder.addCachePending();
         msgStoreStatsHolder.addCachePending();
+        msgStoreStatsHolder.addCacheFlushFailure();
         msgStoreStatsHolder.getValue(retMap);
         Assert.assertNotNull(retMap.get("reset_time"));
         Assert.assertEquals(3, retMap.get("msg_append_size_count").longValue());
@@ -89,6 +92,7 @@ public class MsgStoreStatsHolderTest {
         Assert.assertEquals(2, retMap.get("cache_time_full").longValue());
         Assert.assertEquals(3, retMap.get("cache_flush_pending").longValue());
         Assert.assertEquals(2, retMap.get("cache_realloc").longValue());
+        Assert.assertEquals(1, retMap.get("cache_flush_fail").longValue());
         Assert.assertNotNull(retMap.get("end_time"));
         msgStoreStatsHolder.getMsgStoreStatsInfo(false, strBuff);
         System.out.println("\n the second is : " + strBuff.toString());
@@ -58,4 +58,60 @@ public class TrafficStatsServiceTest {
         trafficService.add(items);
         trafficService.add("key3", 3L, 500L);
     }
+
+    @Test
+    public void testFetchTrafficInfo() {
+        FetchTrafficInfo trafficInfo = new FetchTrafficInfo();
+        Assert.assertTrue(trafficInfo.isEmpty());
+        trafficInfo.addMsgCntAndSize(202207041219L, 1L, 100L);
+        trafficInfo.addMsgCntAndSize(202207041219L, 1L, 200L);
+        trafficInfo.addMsgCntAndSize(FetchTrafficInfo.NO_MSG_TIME, 1L, 50L);
+        for (int i = 0; i < 6; i++) {
+            trafficInfo.addMsgCntAndSize(202207041220L + i, 2L, 10L);
+        }
+        trafficInfo.addMsgCntAndSize(202207041219L, 1L, 300L);
+        Assert.assertEquals(8, trafficInfo.getSlotCount());
+        Assert.assertEquals(202207041219L, trafficInfo.getMsgTime(0));
+        Assert.assertEquals(3L, trafficInfo.getMsgCount(0));
+        Assert.assertEquals(600L, trafficInfo.getMsgSize(0));
+        Assert.assertEquals(FetchTrafficInfo.NO_MSG_TIME, trafficInfo.getMsgTime(1));
+        Assert.assertEquals(1L, trafficInfo.getMsgCount(1));
+        Assert.assertEquals(2L, trafficInfo.getMsgCount(7));
+        Assert.assertEquals("", FetchTrafficInfo.msgTimeToString(trafficInfo.getMsgTime(1)));
+        Assert.assertEquals("202207041225",
+                FetchTrafficInfo.msgTimeToString(trafficInfo.getMsgTime(7)));
+    }
+
+    @Test
+    public void testTrafficStatsKey() {
+        TrafficStatsService trafficService =
+                new TrafficStatsService("GetCounterGroup", "Consumer", 60 * 1000L);
+        TrafficStatsKey statsKey = trafficService.getStatsKey("key");
+        Assert.assertSame(statsKey, trafficService.getStatsKey("key"));
+        Assert.assertNotSame(statsKey, trafficService.getStatsKey("key1"));
+        FetchTrafficInfo trafficInfo = new FetchTrafficInfo();
+        trafficInfo.addMsgCntAndSize(202207041219L, 1L, 100L);
+        trafficInfo.addMsgCntAndSize(FetchTrafficInfo.NO_MSG_TIME, 1L, 100L);
+        // add counts
+        trafficService.add(statsKey, trafficInfo);
+        trafficService.add(statsKey, new FetchTrafficInfo());
+        trafficInfo = new FetchTrafficInfo();
+        trafficInfo.addMsgCntAndSize(202207041219L, 2L, 300L);
+        trafficService.add(statsKey, trafficInfo);
+        TrafficInfo result = trafficService.getWritingTraffic(statsKey, 202207041219L);
+        Assert.assertEquals(3L, result.getMsgCount());
+        Assert.assertEquals(400L, result.getMsgSize());
+        result = trafficService.getWritingTraffic(statsKey, FetchTrafficInfo.NO_MSG_TIME);
+        Assert.assertEquals(1L, result.getMsgCount());
+        Assert.assertEquals(100L, result.getMsgSize());
+        Assert.assertNull(trafficService.getWritingTraffic(statsKey, 202207041220L));
+        Assert.assertNull(trafficService.getWritingTraffic(
+                trafficService.getStatsKey("key1"), 202207041219L));
+        // a cached key which is unregistered accumulates into the same counters
+        TrafficStatsKey cachedKey = new TrafficStatsKey("key");
+        trafficService.add(cachedKey, trafficInfo);
+        result = trafficService.getWritingTraffic(statsKey, 202207041219L);
+        Assert.assertEquals(5L, result.getMsgCount());
+        Assert.assertEquals(700L, result.getMsgSize());
+    }
 }
@@ -18,6 +18,7 @@
 package org.apache.inlong.tubemq.server.broker.utils;
 
 import java.nio.ByteBuffer;
+import org.apache.inlong.tubemq.server.broker.stats.FetchTrafficInfo;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -36,4 +37,37 @@ public class DataStoreUtilsTest {
         // get int by DataStoreUtils
         Assert.assertEquals(val, 123);
     }
+
+    @Test
+    public void getMsgTime() {
+        ByteBuffer bf = ByteBuffer.wrap(
+                "$msgType$=test,$msgTime$=202207041219".getBytes());
+        Assert.assertEquals(202207041219L,
+                DataStoreUtils.getMsgTime(bf, 0, bf.capacity()));
+        bf = ByteBuffer.wrap("xx$msgTime$=202207041219,$msgType$=test".getBytes());
+        Assert.assertEquals(202207041219L,
+                DataStoreUtils.getMsgTime(bf, 2, bf.capacity() - 2));
+        // the message time out of the attribute range
+        Assert.assertEquals(-1L, DataStoreUtils.getMsgTime(bf, 2, 9));
+        bf = ByteBuffer.wrap("$msgType$=test".getBytes());
+        Assert.assertEquals(-1L, DataStoreUtils.getMsgTime(bf, 0, bf.capacity()));
+        bf = ByteBuffer.wrap("$msgTime$=2022a,$msgType$=test".getBytes());
+        Assert.assertEquals(-1L, DataStoreUtils.getMsgTime(bf, 0, bf.capacity()));
+        // only the yyyyMMddHHmm form is accepted, and it is formatted back as is
+        bf = ByteBuffer.wrap("$msgTime$=202207041219".getBytes());
+        Assert.assertEquals("202207041219", FetchTrafficInfo.msgTimeToString(
+                DataStoreUtils.getMsgTime(bf, 0, bf.capacity())));
+        bf = ByteBuffer.wrap("$msgTime$=20220704121,$msgType$=test".getBytes());
+        Assert.assertEquals(-1L, DataStoreUtils.getMsgTime(bf, 0, bf.capacity()));
+        bf = ByteBuffer.wrap("$msgTime$=2022070412190".getBytes());
+        Assert.assertEquals(-1L, DataStoreUtils.getMsgTime(bf, 0, bf.capacity()));
+        bf = ByteBuffer.wrap("$msgTime$=1656908340000".getBytes());
+        Assert.assertEquals(-1L, DataStoreUtils.getMsgTime(bf, 0, bf.capacity()));
+        bf = ByteBuffer.wrap("$msgTime$=022207041219".getBytes());
+        Assert.assertEquals(-1L, DataStoreUtils.getMsgTime(bf, 0, bf.capacity()));
+        bf = ByteBuffer.wrap("$msgTime$=2022-07-04 12:19".getBytes());
+        Assert.assertEquals(-1L, DataStoreUtils.getMsgTime(bf, 0, bf.capacity()));
+        bf = ByteBuffer.wrap("$msgTime$=,$msgType$=test".getBytes());
+        Assert.assertEquals(-1L, DataStoreUtils.getMsgTime(bf, 0, bf.capacity()));
+    }
 }
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.server.broker.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A file channel which writes a part of the buffer then fails, as a disk error,
+ * the other operations are delegated to the wrapped channel, and the bytes read
+ * through the channel are counted.
+ */
+public class FailingFileChannel extends FileChannel {
+
+    private final FileChannel delegate;
+    private volatile boolean failWrite = true;
+    private final AtomicLong readBytes = new AtomicLong(0);
+
+    public FailingFileChannel(FileChannel delegate) {
+        this.delegate = delegate;
+    }
+
+    public void setFailWrite(boolean failWrite) {
+        this.failWrite = failWrite;
+    }
+
+    public long getReadBytes() {
+        return readBytes.get();
+    }
+
+    private int countRead(int readCnt) {
+        if (readCnt > 0) {
+            readBytes.addAndGet(readCnt);
+        }
+        return readCnt;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        if (!failWrite) {
+            return delegate.write(src);
+        }
+        ByteBuffer part = src.duplicate();
+        part.limit(part.position() + Math.min(part.remaining(), 5));
+        src.position(src.position() + delegate.write(part));
+        throw new IOException("mock disk error");
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        return countRead(delegate.read(dst));
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+        return delegate.read(dsts, offset, length);
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        return delegate.write(srcs, offset, length);
+    }
+
+    @Override
+    public long position() throws IOException {
+        return delegate.position();
+    }
+
+    @Override
+    public FileChannel position(long newPosition) throws IOException {
+        delegate.position(newPosition);
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        return delegate.size();
+    }
+
+    @Override
+    public FileChannel truncate(long size) throws IOException {
+        delegate.truncate(size);
+        return this;
+    }
+
+    @Override
+    public void force(boolean metaData) throws IOException {
+        delegate.force(metaData);
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        return delegate.transferTo(position, count, target);
+    }
+
+    @Override
+    public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+        return delegate.transferFrom(src, position, count);
+    }
+
+    @Override
+    public int read(ByteBuffer dst, long position) throws IOException {
+        return countRead(delegate.read(dst, position));
+    }
+
+    @Override
+    public int write(ByteBuffer src, long position) throws IOException {
+        return delegate.write(src, position);
+    }
+
+    @Override
+    public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+        return delegate.map(mode, position, size);
+    }
+
+    @Override
+    public FileLock lock(long position, long size, boolean shared) throws IOException {
+        return delegate.lock(position, size, shared);
+    }
+
+    @Override
+    public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+        return delegate.tryLock(position, size, shared);
+    }
+
+    @Override
+    protected void implCloseChannel() throws IOException {
+        delegate.close();
+    }
+}
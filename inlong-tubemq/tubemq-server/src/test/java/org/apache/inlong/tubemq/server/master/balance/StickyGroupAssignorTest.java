@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.server.master.balance;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.inlong.tubemq.corebase.cluster.BrokerInfo;
+import org.apache.inlong.tubemq.corebase.cluster.Partition;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * StickyGroupAssignor test.
+ */
+public class StickyGroupAssignorTest {
+
+    @Test
+    public void testConsumerJoin() {
+        List<Partition> partitions = buildPartitions(10);
+        Map<String, List<Partition>> oldAssignment = new HashMap<>();
+        StickyGroupAssignor assignor = new StickyGroupAssignor();
+        assignor.addConsumer("c1");
+        assignor.addConsumer("c2");
+        for (Partition partition : partitions) {
+            assignor.addUnassignedPartition(partition);
+        }
+        Map<String, List<Partition>> result = assignor.assign();
+        Assert.assertEquals(10, assignor.getMovedPartCnt());
+        Assert.assertEquals(5, result.get("c1").size());
+        Assert.assertEquals(5, result.get("c2").size());
+        oldAssignment.put("c1", new ArrayList<>(result.get("c1")));
+        oldAssignment.put("c2", new ArrayList<>(result.get("c2")));
+        // a new consumer joins, only the partitions over the quota move
+        assignor = new StickyGroupAssignor();
+        assignor.addConsumer("c1");
+        assignor.addConsumer("c2");
+        assignor.addConsumer("c3");
+        for (Map.Entry<String, List<Partition>> entry : oldAssignment.entrySet()) {
+            for (Partition partition : entry.getValue()) {
+                assignor.addOwnedPartition(entry.getKey(), partition);
+            }
+        }
+        result = assignor.assign();
+        Assert.assertEquals(3, assignor.getMovedPartCnt());
+        Assert.assertEquals(3, result.get("c3").size());
+        Assert.assertEquals(10, checkAndCount(result));
+        Assert.assertTrue(oldAssignment.get("c1").containsAll(result.get("c1")));
+        Assert.assertTrue(oldAssignment.get("c2").containsAll(result.get("c2")));
+    }
+
+    @Test
+    public void testConsumerLeave() {
+        List<Partition> partitions = buildPartitions(9);
+        StickyGroupAssignor assignor = new StickyGroupAssignor();
+        assignor.addConsumer("c1");
+        assignor.addConsumer("c2");
+        for (int i = 0; i < partitions.size(); i++) {
+            if (i % 3 == 0) {
+                // held by the left consumer c3
+                assignor.addUnassignedPartition(partitions.get(i));
+            } else {
+                assignor.addOwnedPartition(i % 3 == 1 ? "c1" : "c2", partitions.get(i));
+            }
+        }
+        Map<String, List<Partition>> result = assignor.assign();
+        Assert.assertEquals(3, assignor.getMovedPartCnt());
+        Assert.assertEquals(9, checkAndCount(result));
+        Assert.assertTrue(Math.abs(result.get("c1").size() - result.get("c2").size()) <= 1);
+        // the owned partitions of unknown consumers are unassigned partitions
+        assignor = new StickyGroupAssignor();
+        assignor.addConsumer("c1");
+        assignor.addOwnedPartition("c4", partitions.get(0));
+        result = assignor.assign();
+        Assert.assertEquals(1, assignor.getMovedPartCnt());
+        Assert.assertEquals(1, result.get("c1").size());
+    }
+
+    @Test
+    public void testExcludedPartitions() {
+        List<Partition> partitions = buildPartitions(4);
+        StickyGroupAssignor assignor = new StickyGroupAssignor();
+        assignor.addConsumer("c1");
+        assignor.addConsumer("c2");
+        assignor.addOwnedPartition("c1", partitions.get(0));
+        assignor.addOwnedPartition("c1", partitions.get(1));
+        // c2 released its partitions and can not take them back
+        assignor.addUnassignedPartition(partitions.get(2));
+        assignor.addUnassignedPartition(partitions.get(3));
+        assignor.excludePartition("c2", partitions.get(2).getPartitionKey());
+        assignor.excludePartition("c2", partitions.get(3).getPartitionKey());
+        Map<String, List<Partition>> result = assignor.assign();
+        Assert.assertEquals(4, checkAndCount(result));
+        for (Partition partition : result.get("c2")) {
+            Assert.assertFalse(partition.equals(partitions.get(2))
+                    || partition.equals(partitions.get(3)));
+        }
+        // the excluded partitions are left if no consumer accepts them
+        assignor = new StickyGroupAssignor();
+        assignor.addConsumer("c2");
+        assignor.addUnassignedPartition(partitions.get(2));
+        assignor.excludePartition("c2", partitions.get(2).getPartitionKey());
+        result = assignor.assign();
+        Assert.assertEquals(0, assignor.getMovedPartCnt());
+        Assert.assertEquals(0, result.get("c2").size());
+    }
+
+    private int checkAndCount(Map<String, List<Partition>> result) {
+        Set<String> partKeys = new HashSet<>();
+        for (List<Partition> partList : result.values()) {
+            for (Partition partition : partList) {
+                Assert.assertTrue(partKeys.add(partition.getPartitionKey()));
+            }
+        }
+        return partKeys.size();
+    }
+
+    private List<Partition> buildPartitions(int count) {
+        List<Partition> partitions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            BrokerInfo brokerInfo = new BrokerInfo(i % 3 + 1, "127.0.0.1", 8123);
+            partitions.add(new Partition(brokerInfo, "topic" + (i % 2), i));
+        }
+        return partitions;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.inlong.tubemq.server.master.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.inlong.tubemq.corebase.cluster.BrokerInfo;
+import org.apache.inlong.tubemq.corebase.cluster.Partition;
+import org.apache.inlong.tubemq.server.master.balance.DefaultLoadBalancer;
+import org.apache.inlong.tubemq.server.master.balance.StickyGroupAssignor;
+
+/**
+ * GroupBalanceBenchmark, simulate the server balance of many consume groups when
+ * one consumer joins each group, and compare the moved partition count and the
+ * duration of the round-robin reassignment and the sticky assignment.
+ *
+ * The groups are split among the balance threads as the master does.
+ *
+ * Usage: GroupBalanceBenchmark [groupCount] [consumerCount] [partitionCount] [threadCount]
+ */
+public class GroupBalanceBenchmark {
+
+    private final int groupCount;
+    private final int consumerCount;
+    private final int partitionCount;
+    private final int threadCount;
+    private final List<Partition> partitions = new ArrayList<>();
+    private final DefaultLoadBalancer loadBalancer = new DefaultLoadBalancer();
+
+    public GroupBalanceBenchmark(int groupCount, int consumerCount,
+            int partitionCount, int threadCount) {
+        this.groupCount = groupCount;
+        this.consumerCount = consumerCount;
+        this.partitionCount = partitionCount;
+        this.threadCount = threadCount;
+        for (int i = 0; i < partitionCount; i++) {
+            BrokerInfo brokerInfo = new BrokerInfo(i % 50 + 1, "127.0.0.1", 8123);
+            this.partitions.add(new Partition(brokerInfo, "topic_" + (i % 10), i));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int groupCount = 5000;
+        int consumerCount = 500;
+        int partitionCount = 2000;
+        int threadCount = 20;
+        if (args.length > 0) {
+            groupCount = Integer.parseInt(args[0]);
+        }
+        if (args.length > 1) {
+            consumerCount = Integer.parseInt(args[1]);
+        }
+        if (args.length > 2) {
+            partitionCount = Integer.parseInt(args[2]);
+        }
+        if (args.length > 3) {
+            threadCount = Integer.parseInt(args[3]);
+        }
+        new GroupBalanceBenchmark(groupCount, consumerCount,
+                partitionCount, threadCount).start();
+    }
+
+    /**
+     * Start benchmark test, each mode is warmed up before measured.
+     */
+    public void start() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            runBalance(executor, false, groupCount / 10);
+            runBalance(executor, true, groupCount / 10);
+            printResult("round-robin", runBalance(executor, false, groupCount));
+            printResult("sticky", runBalance(executor, true, groupCount));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long[] runBalance(ExecutorService executor,
+            final boolean isSticky, int groups) throws Exception {
+        final AtomicLong movedCnt = new AtomicLong(0);
+        final int unitNum = (groups + threadCount - 1) / threadCount;
+        List<Future<?>> futures = new ArrayList<>();
+        long startTime = System.nanoTime();
+        for (int i = 0; i < threadCount; i++) {
+            final int groupNum = Math.max(0, Math.min(unitNum, groups - i * unitNum));
+            futures.add(executor.submit(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int j = 0; j < groupNum; j++) {
+                        movedCnt.addAndGet(isSticky ? stickyJoin() : roundRobinJoin());
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        return new long[]{groups, System.nanoTime() - startTime, movedCnt.get()};
+    }
+
+    // the current assignment of a group before the new consumer joins
+    private Map<String, String> buildOwners(Map<String, List<Partition>> assignment) {
+        Map<String, String> partOwners = new HashMap<>(partitionCount * 2);
+        for (Map.Entry<String, List<Partition>> entry : assignment.entrySet()) {
+            for (Partition partition : entry.getValue()) {
+                partOwners.put(partition.getPartitionKey(), entry.getKey());
+            }
+        }
+        return partOwners;
+    }
+
+    private List<String> buildConsumers(int count) {
+        List<String> consumers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            consumers.add("consumer_" + i);
+        }
+        return consumers;
+    }
+
+    private int roundRobinJoin() {
+        Map<String, String> partOwners = buildOwners(loadBalancer.roundRobinAssignment(
+                partitions, buildConsumers(consumerCount)));
+        return countMoved(partOwners,
+                loadBalancer.roundRobinAssignment(partitions, buildConsumers(consumerCount + 1)));
+    }
+
+    private int stickyJoin() {
+        StickyGroupAssignor assignor = new StickyGroupAssignor();
+        for (String consumerId : buildConsumers(consumerCount)) {
+            assignor.addConsumer(consumerId);
+        }
+        for (Partition partition : partitions) {
+            assignor.addUnassignedPartition(partition);
+        }
+        Map<String, String> partOwners = buildOwners(assignor.assign());
+        assignor = new StickyGroupAssignor();
+        for (String consumerId : buildConsumers(consumerCount + 1)) {
+            assignor.addConsumer(consumerId);
+        }
+        for (Partition partition : partitions) {
+            assignor.addOwnedPartition(partOwners.get(partition.getPartitionKey()), partition);
+        }
+        int movedCnt = countMoved(partOwners, assignor.assign());
+        if (movedCnt != assignor.getMovedPartCnt()) {
+            throw new IllegalStateException("Moved partition count mismatched");
+        }
+        return movedCnt;
+    }
+
+    private int countMoved(Map<String, String> partOwners,
+            Map<String, List<Partition>> assignment) {
+        int movedCnt = 0;
+        for (Map.Entry<String, List<Partition>> entry : assignment.entrySet()) {
+            for (Partition partition : entry.getValue()) {
+                if (!entry.getKey().equals(partOwners.get(partition.getPartitionKey()))) {
+                    movedCnt++;
+                }
+            }
+        }
+        return movedCnt;
+    }
+
+    private void printResult(String mode, long[] result) {
+        double costMs = result[1] / 1000000.0;
+        System.out.println(new StringBuilder(256)
+                .append("[Benchmark] mode=").append(mode)
+                .append(", groups=").append(result[0])
+                .append(", consumers/group=").append(consumerCount + 1)
+                .append(", partitions/group=").append(partitionCount)
+                .append(", threads=").append(threadCount)
+                .append(", cost ms=").append((long) costMs)
+                .append(", moved partitions/group=").append(result[2] / result[0])
+                .toString());
+    }
+}
@@ -97,6 +97,7 @@ public class MasterSrvStatsHolderTest {
         Assert.assertEquals(0, retMap.get("broker_forbidden_cnt").longValue());
         Assert.assertEquals(0, retMap.get("server_balance_normal_count").longValue());
         Assert.assertEquals(0, retMap.get("server_balance_reset_count").longValue());
+        Assert.assertEquals(0, retMap.get("server_balance_moved_part_cnt").longValue());
         retMap.clear();
         // get and snapshot content by StringBuilder
         StringBuilder strBuff = new StringBuilder(TBaseConstants.BUILDER_DEFAULT_SIZE);
@@ -105,6 +106,8 @@ public class MasterSrvStatsHolderTest {
         strBuff.delete(0, strBuff.length());
         MasterSrvStatsHolder.updSvrBalanceDurations(32);
         MasterSrvStatsHolder.updSvrBalResetDurations(100);
+        MasterSrvStatsHolder.addSvrBalMovedPartCnt(5);
+        MasterSrvStatsHolder.addSvrBalMovedPartCnt(0);
         MasterSrvStatsHolder.getValue(retMap);
         Assert.assertEquals(-6, retMap.get("csm_online_group_cnt").longValue());
         Assert.assertEquals(0, retMap.get("csm_group_timeout_cnt").longValue());
@@ -122,5 +125,6 @@ public class MasterSrvStatsHolderTest {
         Assert.assertEquals(0, retMap.get("broker_forbidden_cnt").longValue());
         Assert.assertEquals(1, retMap.get("server_balance_normal_count").longValue());
         Assert.assertEquals(1, retMap.get("server_balance_reset_count").longValue());
+        Assert.assertEquals(5, retMap.get("server_balance_moved_part_cnt").longValue());
     }
 }